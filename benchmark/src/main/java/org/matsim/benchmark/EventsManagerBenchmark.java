@@ -0,0 +1,183 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.benchmark;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.LinkEnterEvent;
+import org.matsim.api.core.v01.events.LinkLeaveEvent;
+import org.matsim.api.core.v01.events.handler.LinkEnterEventHandler;
+import org.matsim.api.core.v01.events.handler.LinkLeaveEventHandler;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.events.EventsUtils;
+import org.matsim.core.events.handler.PartitionedEventHandler;
+import org.matsim.vehicles.Vehicle;
+
+/**
+ * Measures the events throughput of the different EventsManager implementations with synthetic
+ * link enter/leave events, as produced by the mobsim. Every manager gets the same handlers: a few
+ * regular handlers and a few handlers partitioned by vehicle, each doing a bit of work per event.
+ * <br>
+ * Usage: <code>EventsManagerBenchmark [numberOfThreads [numberOfVehicles [numberOfTimeSteps]]]</code>
+ */
+public class EventsManagerBenchmark {
+
+	private static final Logger log = Logger.getLogger(EventsManagerBenchmark.class);
+
+	private static final int NUMBER_OF_HANDLERS = 4;
+
+	public static void main(String[] args) {
+		int numberOfThreads = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+		int numberOfVehicles = args.length > 1 ? Integer.parseInt(args[1]) : 100_000;
+		int numberOfTimeSteps = args.length > 2 ? Integer.parseInt(args[2]) : 100;
+
+		@SuppressWarnings("unchecked")
+		Id<Vehicle>[] vehicleIds = new Id[numberOfVehicles];
+		@SuppressWarnings("unchecked")
+		Id<Link>[] linkIds = new Id[numberOfVehicles];
+		for (int i = 0; i < numberOfVehicles; i++) {
+			vehicleIds[i] = Id.createVehicleId(i);
+			linkIds[i] = Id.createLinkId(i);
+		}
+
+		StringBuilder results = new StringBuilder();
+		for (String variant : new String[] { "single", "simStepParallel", "parallel", "oneThreadPerHandler", "sharded" }) {
+			Config config = ConfigUtils.createConfig();
+			switch (variant) {
+				case "single":
+					break;
+				case "simStepParallel":
+					config.parallelEventHandling().setNumberOfThreads(numberOfThreads);
+					config.parallelEventHandling().setSynchronizeOnSimSteps(true);
+					break;
+				case "parallel":
+					config.parallelEventHandling().setNumberOfThreads(numberOfThreads);
+					config.parallelEventHandling().setSynchronizeOnSimSteps(false);
+					break;
+				case "oneThreadPerHandler":
+					config.parallelEventHandling().setOneThreadPerHandler(true);
+					config.parallelEventHandling().setSynchronizeOnSimSteps(true);
+					break;
+				case "sharded":
+					config.parallelEventHandling().setNumberOfThreads(numberOfThreads);
+					config.parallelEventHandling().setShardedEventHandling(true);
+					break;
+				default:
+					throw new IllegalArgumentException(variant);
+			}
+			EventsManager events = "single".equals(variant) ? EventsUtils.createEventsManager() : EventsUtils.createEventsManager(config);
+
+			// warm-up
+			run(events, vehicleIds, linkIds, Math.max(1, numberOfTimeSteps / 10), numberOfVehicles);
+			long start = System.nanoTime();
+			long nOfEvents = run(events, vehicleIds, linkIds, numberOfTimeSteps, numberOfVehicles);
+			double seconds = (System.nanoTime() - start) / 1e9;
+
+			String result = String.format("%-20s %12d events in %8.2f s = %12.0f events/s", variant, nOfEvents, seconds, nOfEvents / seconds);
+			log.info(result);
+			results.append(result).append('\n');
+		}
+		log.info("Results (" + numberOfThreads + " threads, " + numberOfVehicles + " vehicles, " + numberOfTimeSteps + " time steps):\n" + results);
+	}
+
+	private static long run(EventsManager events, Id<Vehicle>[] vehicleIds, Id<Link>[] linkIds, int numberOfTimeSteps, int numberOfVehicles) {
+		CountingHandler[] handlers = new CountingHandler[2 * NUMBER_OF_HANDLERS];
+		for (int i = 0; i < NUMBER_OF_HANDLERS; i++) {
+			handlers[i] = new CountingHandler(numberOfVehicles);
+			handlers[NUMBER_OF_HANDLERS + i] = new PartitionedCountingHandler(numberOfVehicles);
+		}
+		for (CountingHandler handler : handlers) {
+			events.addHandler(handler);
+		}
+		events.resetHandlers(0);
+		events.initProcessing();
+		long nOfEvents = 0;
+		for (int time = 0; time < numberOfTimeSteps; time++) {
+			for (int v = 0; v < vehicleIds.length; v++) {
+				events.processEvent(new LinkLeaveEvent(time, vehicleIds[v], linkIds[v]));
+				events.processEvent(new LinkEnterEvent(time, vehicleIds[v], linkIds[(v + time + 1) % linkIds.length]));
+				nOfEvents += 2;
+			}
+			events.afterSimStep(time);
+		}
+		events.finishProcessing();
+		for (CountingHandler handler : handlers) {
+			events.removeHandler(handler);
+			if (handler.count() != nOfEvents) {
+				throw new RuntimeException("handler " + handler + " saw " + handler.count() + " instead of " + nOfEvents + " events.");
+			}
+		}
+		return nOfEvents;
+	}
+
+	/**
+	 * Counts the events per vehicle. Every slot of the arrays is only written for events of the
+	 * corresponding vehicle, which makes it safe to use as a handler partitioned by vehicle.
+	 */
+	private static class CountingHandler implements LinkEnterEventHandler, LinkLeaveEventHandler {
+
+		private final long[] eventsPerVehicle;
+		private final long[] linkIndexSum;
+
+		CountingHandler(int numberOfVehicles) {
+			int size = Math.max(numberOfVehicles, Id.getNumberOfIds(Vehicle.class));
+			this.eventsPerVehicle = new long[size];
+			this.linkIndexSum = new long[size];
+		}
+
+		@Override
+		public void handleEvent(LinkEnterEvent event) {
+			int index = event.getVehicleId().index();
+			this.eventsPerVehicle[index]++;
+			this.linkIndexSum[index] += event.getLinkId().index();
+		}
+
+		@Override
+		public void handleEvent(LinkLeaveEvent event) {
+			int index = event.getVehicleId().index();
+			this.eventsPerVehicle[index]++;
+			this.linkIndexSum[index] -= event.getLinkId().index();
+		}
+
+		long count() {
+			long sum = 0;
+			for (long c : this.eventsPerVehicle) {
+				sum += c;
+			}
+			return sum;
+		}
+	}
+
+	private static class PartitionedCountingHandler extends CountingHandler implements PartitionedEventHandler {
+
+		PartitionedCountingHandler(int numberOfVehicles) {
+			super(numberOfVehicles);
+		}
+
+		@Override
+		public PartitionKey getPartitionKey() {
+			return PartitionKey.vehicle;
+		}
+	}
+
+}
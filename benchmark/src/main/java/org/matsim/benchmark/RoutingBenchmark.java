@@ -0,0 +1,156 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.benchmark;
+
+import java.util.Random;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.core.config.groups.PlanCalcScoreConfigGroup;
+import org.matsim.core.controler.events.IterationStartsEvent;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.network.io.MatsimNetworkReader;
+import org.matsim.core.router.ContractionHierarchiesFactory;
+import org.matsim.core.router.FastAStarLandmarksFactory;
+import org.matsim.core.router.costcalculators.FreespeedTravelTimeAndDisutility;
+import org.matsim.core.router.util.LeastCostPathCalculator;
+import org.matsim.core.router.util.LeastCostPathCalculator.Path;
+import org.matsim.core.router.util.LeastCostPathCalculatorFactory;
+
+/**
+ * Compares {@link ContractionHierarchiesFactory} with {@link FastAStarLandmarksFactory} on a network: the time
+ * for preprocessing, for customizing the contraction hierarchy with new travel times (as done in every iteration)
+ * and for random queries, and the deviation of the path costs found by both routers.
+ * <br>
+ * Without a network file, a grid network with random free speeds is used.
+ * <br>
+ * Usage: <code>RoutingBenchmark [networkFile|grid:size [numberOfQueries [numberOfThreads]]]</code>
+ */
+public class RoutingBenchmark {
+
+	private static final Logger log = Logger.getLogger(RoutingBenchmark.class);
+
+	private static final double DEPARTURE_TIME = 8 * 3600;
+
+	public static void main(String[] args) {
+		String networkFile = args.length > 0 ? args[0] : "grid:500";
+		int numberOfQueries = args.length > 1 ? Integer.parseInt(args[1]) : 10_000;
+		int numberOfThreads = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+
+		Network network;
+		if (networkFile.startsWith("grid:")) {
+			network = createGrid(Integer.parseInt(networkFile.substring("grid:".length())), new Random(4711));
+		} else {
+			network = NetworkUtils.createNetwork();
+			new MatsimNetworkReader(network).readFile(networkFile);
+		}
+		FreespeedTravelTimeAndDisutility travelTimeCostCalculator = new FreespeedTravelTimeAndDisutility(new PlanCalcScoreConfigGroup());
+
+		Random random = new Random(42);
+		Node[] nodes = network.getNodes().values().toArray(new Node[0]);
+		Node[] fromNodes = new Node[numberOfQueries];
+		Node[] toNodes = new Node[numberOfQueries];
+		for (int i = 0; i < numberOfQueries; i++) {
+			fromNodes[i] = nodes[random.nextInt(nodes.length)];
+			toNodes[i] = nodes[random.nextInt(nodes.length)];
+		}
+
+		StringBuilder results = new StringBuilder();
+
+		long start = System.nanoTime();
+		LeastCostPathCalculatorFactory landmarksFactory = new FastAStarLandmarksFactory(numberOfThreads);
+		LeastCostPathCalculator landmarks = landmarksFactory.createPathCalculator(network, travelTimeCostCalculator, travelTimeCostCalculator);
+		append(results, "FastAStarLandmarks preprocessing", start);
+
+		start = System.nanoTime();
+		ContractionHierarchiesFactory chFactory = new ContractionHierarchiesFactory(15 * 60, 30 * 3600);
+		LeastCostPathCalculator ch = chFactory.createPathCalculator(network, travelTimeCostCalculator, travelTimeCostCalculator);
+		append(results, "ContractionHierarchies preprocessing", start);
+
+		for (int iteration = 0; iteration < 3; iteration++) {
+			chFactory.notifyIterationStarts(new IterationStartsEvent(null, iteration));
+			start = System.nanoTime();
+			ch = chFactory.createPathCalculator(network, travelTimeCostCalculator, travelTimeCostCalculator);
+			ch.calcLeastCostPath(nodes[0], nodes[0], DEPARTURE_TIME, null, null);
+			append(results, "ContractionHierarchies customization of one time bin", start);
+		}
+
+		Path[] expected = new Path[numberOfQueries];
+		for (int round = 0; round < 2; round++) {
+			start = System.nanoTime();
+			for (int i = 0; i < numberOfQueries; i++) {
+				expected[i] = landmarks.calcLeastCostPath(fromNodes[i], toNodes[i], DEPARTURE_TIME, null, null);
+			}
+			append(results, "FastAStarLandmarks " + numberOfQueries + " queries", start);
+
+			start = System.nanoTime();
+			double maxDeviation = 0.0;
+			for (int i = 0; i < numberOfQueries; i++) {
+				Path path = ch.calcLeastCostPath(fromNodes[i], toNodes[i], DEPARTURE_TIME, null, null);
+				if ((path == null) != (expected[i] == null)) {
+					throw new RuntimeException("only one router found a path from " + fromNodes[i].getId() + " to " + toNodes[i].getId());
+				}
+				if (path != null && expected[i].travelCost > 0) {
+					maxDeviation = Math.max(maxDeviation, Math.abs(path.travelCost - expected[i].travelCost) / expected[i].travelCost);
+				}
+			}
+			append(results, "ContractionHierarchies " + numberOfQueries + " queries", start);
+			results.append(String.format("%-55s %10.2e%n", "max. relative cost deviation", maxDeviation));
+		}
+
+		log.info("Results (" + network.getNodes().size() + " nodes, " + network.getLinks().size() + " links):\n" + results);
+	}
+
+	private static void append(StringBuilder results, String what, long start) {
+		String result = String.format("%-55s %10.3f s", what, (System.nanoTime() - start) / 1e9);
+		log.info(result);
+		results.append(result).append('\n');
+	}
+
+	private static Network createGrid(int size, Random random) {
+		Network network = NetworkUtils.createNetwork();
+		Node[][] nodes = new Node[size][size];
+		for (int x = 0; x < size; x++) {
+			for (int y = 0; y < size; y++) {
+				nodes[x][y] = NetworkUtils.createAndAddNode(network, Id.createNodeId(x + "_" + y), new Coord(x * 100.0, y * 100.0));
+			}
+		}
+		for (int x = 0; x < size; x++) {
+			for (int y = 0; y < size; y++) {
+				if (x + 1 < size) {
+					createLinks(network, nodes[x][y], nodes[x + 1][y], random);
+				}
+				if (y + 1 < size) {
+					createLinks(network, nodes[x][y], nodes[x][y + 1], random);
+				}
+			}
+		}
+		return network;
+	}
+
+	private static void createLinks(Network network, Node a, Node b, Random random) {
+		NetworkUtils.createAndAddLink(network, Id.createLinkId(a.getId() + "-" + b.getId()), a, b, 100, 5 + random.nextInt(30), 1000, 1);
+		NetworkUtils.createAndAddLink(network, Id.createLinkId(b.getId() + "-" + a.getId()), b, a, 100, 5 + random.nextInt(30), 1000, 1);
+	}
+
+}
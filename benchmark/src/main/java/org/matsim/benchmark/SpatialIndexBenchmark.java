@@ -0,0 +1,174 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.benchmark;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.log4j.Logger;
+import org.matsim.core.utils.collections.PackedKdTree;
+import org.matsim.core.utils.collections.QuadTree;
+
+/**
+ * Compares {@link PackedKdTree} with {@link QuadTree}: the time for loading the points, and for closest, k-nearest
+ * and disk queries at random locations. The points are clustered around a few centers, as facilities or nodes
+ * usually are. Each measurement is repeated, the first rounds serve as warm-up.
+ * <br>
+ * The {@link QuadTree} has no k-nearest query, so it is emulated by disk queries with growing radius.
+ * <br>
+ * Usage: <code>SpatialIndexBenchmark [numberOfPoints [numberOfQueries [numberOfThreads]]]</code>
+ */
+public class SpatialIndexBenchmark {
+
+	private static final Logger log = Logger.getLogger(SpatialIndexBenchmark.class);
+
+	private static final double SIZE = 100_000.0;
+	private static final int K = 10;
+	private static final double RADIUS = 500.0;
+	private static final int ROUNDS = 3;
+
+	public static void main(String[] args) {
+		int numberOfPoints = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+		int numberOfQueries = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+		int numberOfThreads = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+
+		Random random = new Random(4711);
+		double[] xs = new double[numberOfPoints];
+		double[] ys = new double[numberOfPoints];
+		double[] centers = new double[2 * 50];
+		for (int i = 0; i < centers.length; i++) {
+			centers[i] = random.nextDouble() * SIZE;
+		}
+		for (int i = 0; i < numberOfPoints; i++) {
+			int center = random.nextInt(centers.length / 2);
+			xs[i] = clamp(centers[2 * center] + random.nextGaussian() * SIZE / 20);
+			ys[i] = clamp(centers[2 * center + 1] + random.nextGaussian() * SIZE / 20);
+		}
+		double[] queryXs = new double[numberOfQueries];
+		double[] queryYs = new double[numberOfQueries];
+		for (int i = 0; i < numberOfQueries; i++) {
+			queryXs[i] = random.nextDouble() * SIZE;
+			queryYs[i] = random.nextDouble() * SIZE;
+		}
+
+		StringBuilder results = new StringBuilder();
+		for (int round = 0; round < ROUNDS; round++) {
+			results.append("round ").append(round).append('\n');
+
+			long start = System.nanoTime();
+			QuadTree<Integer> quadTree = new QuadTree<>(0.0, 0.0, SIZE, SIZE);
+			for (int i = 0; i < numberOfPoints; i++) {
+				quadTree.put(xs[i], ys[i], i);
+			}
+			append(results, "QuadTree put " + numberOfPoints + " points", start);
+
+			start = System.nanoTime();
+			PackedKdTree.Builder<Integer> builder = new PackedKdTree.Builder<>();
+			for (int i = 0; i < numberOfPoints; i++) {
+				builder.put(xs[i], ys[i], i);
+			}
+			PackedKdTree<Integer> kdTree = builder.build();
+			append(results, "PackedKdTree build " + numberOfPoints + " points", start);
+
+			start = System.nanoTime();
+			kdTree = builder.build(numberOfThreads);
+			append(results, "PackedKdTree build with " + numberOfThreads + " threads (without put)", start);
+
+			long checksum = 0;
+			start = System.nanoTime();
+			for (int q = 0; q < numberOfQueries; q++) {
+				checksum += quadTree.getClosest(queryXs[q], queryYs[q]);
+			}
+			append(results, "QuadTree " + numberOfQueries + " closest queries", start);
+
+			long kdChecksum = 0;
+			start = System.nanoTime();
+			for (int q = 0; q < numberOfQueries; q++) {
+				kdChecksum += kdTree.getClosest(queryXs[q], queryYs[q]);
+			}
+			append(results, "PackedKdTree " + numberOfQueries + " closest queries", start);
+			if (checksum != kdChecksum) {
+				log.warn("the closest points differ, probably due to points at the same distance.");
+			}
+
+			start = System.nanoTime();
+			for (int q = 0; q < numberOfQueries; q++) {
+				checksum += quadTree.getDisk(queryXs[q], queryYs[q], RADIUS).size();
+			}
+			append(results, "QuadTree " + numberOfQueries + " disk queries", start);
+
+			int[] counter = new int[1];
+			start = System.nanoTime();
+			for (int q = 0; q < numberOfQueries; q++) {
+				kdChecksum += kdTree.getDisk(queryXs[q], queryYs[q], RADIUS, (x, y, value) -> counter[0]++);
+			}
+			append(results, "PackedKdTree " + numberOfQueries + " disk queries", start);
+
+			start = System.nanoTime();
+			for (int q = 0; q < numberOfQueries; q++) {
+				checksum += getNearest(quadTree, xs, ys, queryXs[q], queryYs[q], K);
+			}
+			append(results, "QuadTree " + numberOfQueries + " " + K + "-nearest queries (by disk queries)", start);
+
+			PackedKdTree.Neighbors<Integer> neighbors = new PackedKdTree.Neighbors<>();
+			start = System.nanoTime();
+			for (int q = 0; q < numberOfQueries; q++) {
+				kdTree.getNearest(queryXs[q], queryYs[q], K, neighbors);
+				kdChecksum += neighbors.getValue(K - 1);
+			}
+			append(results, "PackedKdTree " + numberOfQueries + " " + K + "-nearest queries", start);
+
+			long[] sums = new long[numberOfQueries];
+			start = System.nanoTime();
+			kdTree.getNearest(queryXs, queryYs, K, numberOfThreads, (query, rank, value, distance) -> sums[query] += value);
+			append(results, "PackedKdTree " + numberOfQueries + " " + K + "-nearest queries with " + numberOfThreads + " threads", start);
+
+			results.append(String.format("%-75s %d%n", "checksums", checksum + kdChecksum + counter[0] + sums[0]));
+		}
+
+		log.info("Results:\n" + results);
+	}
+
+	/** the usual way of finding the k nearest points with a QuadTree */
+	private static int getNearest(QuadTree<Integer> quadTree, double[] xs, double[] ys, double x, double y, int k) {
+		double radius = RADIUS;
+		Collection<Integer> candidates = quadTree.getDisk(x, y, radius);
+		while (candidates.size() < k) {
+			radius *= 2;
+			candidates = quadTree.getDisk(x, y, radius);
+		}
+		List<Integer> sorted = new ArrayList<>(candidates);
+		sorted.sort((a, b) -> Double.compare(Math.hypot(xs[a] - x, ys[a] - y), Math.hypot(xs[b] - x, ys[b] - y)));
+		return sorted.get(k - 1);
+	}
+
+	private static double clamp(double coordinate) {
+		return Math.max(0.0, Math.min(SIZE, coordinate));
+	}
+
+	private static void append(StringBuilder results, String what, long start) {
+		String result = String.format("%-75s %10.3f s", what, (System.nanoTime() - start) / 1e9);
+		log.info(result);
+		results.append(result).append('\n');
+	}
+
+}
@@ -23,8 +23,8 @@ package org.matsim.analysis;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.IOException;
-import java.util.Map;
-import java.util.TreeMap;
+import java.util.Arrays;
+import java.util.Comparator;
 
 import org.apache.log4j.Logger;
 import org.matsim.api.core.v01.Id;
@@ -45,20 +45,30 @@ public class CalcLinkStats {
 
 	private final static Logger log = Logger.getLogger(CalcLinkStats.class);
 
+	/**
+	 * The statistics of one link, by statistic and hour. The arrays are the ones of the link in the matrices of all links.
+	 */
 	private static class LinkData {
 		public final double[][] volumes;
 		public final double[][] ttimes;
 
 		public LinkData(final double[][] linksVolumes, final double[][] linksTTimes) {
-			this.volumes = linksVolumes.clone();
-			this.ttimes = linksTTimes.clone();
+			this.volumes = linksVolumes;
+			this.ttimes = linksTTimes;
 		}
 	}
 
 	private double volScaleFactor = 1.0;
 
 	private int count = 0;
-	private final Map<Id<Link>, LinkData> linkData;
+	/*
+	 * The statistics are kept by link index, the volumes with an additional time bin for the daily values. The links
+	 * are kept in an array sorted by id, so adding the data of an iteration and writing the file go through them
+	 * without any map.
+	 */
+	private final LinkTimeBinValues[] volumes = new LinkTimeBinValues[NOF_STATS];
+	private final LinkTimeBinValues[] ttimes = new LinkTimeBinValues[NOF_STATS];
+	private Link[] links = new Link[0];
 	private final int nofHours;
 	private final Network network;
 
@@ -70,8 +80,11 @@ public class CalcLinkStats {
 	@Inject
 	public CalcLinkStats(final Network network) {
 		this.network = network;
-		this.linkData = new TreeMap<>();
 		this.nofHours = 24;
+		for (int stat = 0; stat < NOF_STATS; stat++) {
+			this.volumes[stat] = new LinkTimeBinValues(this.nofHours + 1);
+			this.ttimes[stat] = new LinkTimeBinValues(this.nofHours);
+		}
 		reset();
 	}
 
@@ -90,17 +103,19 @@ public class CalcLinkStats {
 		this.count++;
 		// TODO verify ttimes has hourly timeBin-Settings
 
+		// reused for all links, so adding the data does not allocate anything per link
+		double[] volumes = new double[24];
+
 		// go through all links
-		for (Id<Link> linkId : this.linkData.keySet()) {
-			
-			// retrieve link from link ID
-			Link link = this.network.getLinks().get(linkId);
+		for (Link link : this.links) {
+			Id<Link> linkId = link.getId();
 			
 			// get the volumes for the link ID from the analyzier
-			double[] volumes = analyzer.getVolumesPerHourForLink(linkId);
+			Arrays.fill(volumes, 0.0);
+			analyzer.addVolumesPerHourForLink(linkId, volumes);
 			
-			// get the destination container for the data from link data (could have gotten this through iterator right away)
-			LinkData data = this.linkData.get(linkId);
+			// get the destination container for the data from link data
+			LinkData data = getLinkData(linkId.index());
 			
 			// prepare the sum variables (for volumes);
 			long sumVolumes = 0; // daily (0-24) sum
@@ -146,19 +161,43 @@ public class CalcLinkStats {
 	}
 
 	public void reset() {
-		this.linkData.clear();
+		for (int stat = 0; stat < NOF_STATS; stat++) {
+			this.volumes[stat].clear();
+			this.ttimes[stat].clear();
+		}
 		this.count = 0;
 		log.info( " resetting `count' to zero.  This info is here since we want to check when this" +
 				" is happening during normal simulation runs.  kai, jan'11") ;
 
 		// initialize our data-table
-		for (Link link : this.network.getLinks().values()) {
-			LinkData data = new LinkData(new double[NOF_STATS][this.nofHours + 1], new double[NOF_STATS][this.nofHours]);
-			this.linkData.put(link.getId(), data);
+		this.links = this.network.getLinks().values().toArray(new Link[0]);
+		// sorted by id, so the links are always written in the same order
+		Arrays.sort(this.links, Comparator.comparing(Link::getId));
+		for (Link link : this.links) {
+			for (int stat = 0; stat < NOF_STATS; stat++) {
+				this.volumes[stat].getOrCreateValues(link.getId().index());
+				this.ttimes[stat].getOrCreateValues(link.getId().index());
+			}
 		}
 
 	}
 
+	/**
+	 * @return the statistics of the link, or <code>null</code> if the link is not part of the network
+	 */
+	private LinkData getLinkData(final int linkIndex) {
+		double[][] linkVolumes = new double[NOF_STATS][];
+		double[][] linkTTimes = new double[NOF_STATS][];
+		for (int stat = 0; stat < NOF_STATS; stat++) {
+			linkVolumes[stat] = this.volumes[stat].getValues(linkIndex);
+			linkTTimes[stat] = this.ttimes[stat].getValues(linkIndex);
+		}
+		if (linkVolumes[SUM] == null) {
+			return null;
+		}
+		return new LinkData(linkVolumes, linkTTimes);
+	}
+
 	public void writeFile(final String filename) {
 		BufferedWriter out = null;
 		try {
@@ -182,10 +221,9 @@ public class CalcLinkStats {
 			out.write("\n");
 
 			// write data
-			for (Map.Entry<Id<Link>, LinkData> entry : this.linkData.entrySet()) {
-				Id<Link> linkId = entry.getKey();
-				LinkData data = entry.getValue();
-				Link link = this.network.getLinks().get(linkId);
+			for (Link link : this.links) {
+				Id<Link> linkId = link.getId();
+				LinkData data = getLinkData(linkId.index());
 
 				out.write(linkId.toString());
 				out.write("\t"); // origId, no longer supported
@@ -274,7 +312,7 @@ public class CalcLinkStats {
 				String[] parts = StringUtils.explode(line, '\t');
 				if (parts.length == 154) {
 					Id<Link> linkId = Id.create(parts[0], Link.class);
-					LinkData data = this.linkData.get(linkId);
+					LinkData data = getLinkData(linkId.index());
 					if (data == null) {
 						System.err.println("CalcLinkStats.readFile(); unknown link: " + linkId.toString());
 					} else {
@@ -305,7 +343,7 @@ public class CalcLinkStats {
 				}
 				else if (parts.length == 153) {
 					String linkId = parts[0];
-					LinkData data = this.linkData.get(Id.create(linkId, Link.class));
+					LinkData data = getLinkData(Id.create(linkId, Link.class).index());
 					if (data == null) {
 						System.err.println("CalcLinkStats.readFile(); unknown link: " + linkId);
 					} else {
@@ -358,7 +396,7 @@ public class CalcLinkStats {
 	 * @return if no data is available, an array with length 0 is returned.
 	 */
 	public double[] getAvgLinkVolumes(final Id<Link> linkId) {
-		LinkData data = this.linkData.get(linkId);
+		LinkData data = getLinkData(linkId.index());
 		if (data == null) {
 			return new double[0];
 		}
@@ -381,7 +419,7 @@ public class CalcLinkStats {
 	 */
 	@Deprecated
 	protected double[] getAvgTravelTimes(final Id<Link> linkId) {
-		LinkData data = this.linkData.get(linkId);
+		LinkData data = getLinkData(linkId.index());
 		if (data == null) {
 			return new double[0];
 		}
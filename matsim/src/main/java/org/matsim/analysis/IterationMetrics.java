@@ -0,0 +1,272 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.analysis;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.core.utils.io.UncheckedIOException;
+
+/**
+ * Registry of always-on performance counters, complementing the coarse durations of the {@link IterationStopWatch}.
+ * Code on hot paths gets a {@link Timer} once by its name and records the duration of each operation, and
+ * optionally the number of items processed by it, for example the nodes settled by a router query.
+ * <br>
+ * The core records the following timers:
+ * <ul>
+ * <li>{@link #QSIM_TIME_STEP}: each time step of the QSim, with percentiles</li>
+ * <li>{@link #QSIM_ENGINE_PREFIX} + engine class: the <code>doSimStep</code> of each MobsimEngine</li>
+ * <li>{@link #EVENTS_HANDLER_PREFIX} + handler class: the events handled by each event handler</li>
+ * <li>{@link #ROUTER_QUERY}: least cost path queries, with the nodes settled as items</li>
+ * <li>{@link #ROUTER_CACHE_HIT}, {@link #ROUTER_CACHE_MISS}: queries answered (or not) by the route cache</li>
+ * <li>{@link #SCORING}: the scoring phase, with the scored persons as items</li>
+ * <li>{@link #CONTROLER_PREFIX} + operation: the operations of the {@link IterationStopWatch}</li>
+ * </ul>
+ * The controler resets all timers at the start of each iteration and appends their values to a tab-separated
+ * file at its end, see {@link #writeIteration(int, String)}.
+ */
+public final class IterationMetrics {
+
+	public static final String QSIM_TIME_STEP = "qsim.timeStep";
+	public static final String QSIM_ENGINE_PREFIX = "qsim.engine.";
+	public static final String EVENTS_HANDLER_PREFIX = "events.handler.";
+	public static final String ROUTER_QUERY = "router.query";
+	public static final String ROUTER_CACHE_HIT = "router.cache.hit";
+	public static final String ROUTER_CACHE_MISS = "router.cache.miss";
+	public static final String SCORING = "scoring";
+	public static final String CONTROLER_PREFIX = "controler.";
+
+	public static final String FILENAME = "iteration_metrics.txt";
+
+	private static final ConcurrentMap<String, Timer> timers = new ConcurrentHashMap<>();
+
+	private IterationMetrics() {
+	}
+
+	/**
+	 * @return the timer with the given name, creating it if necessary. The same timer is returned for the whole run,
+	 * so callers should keep it instead of looking it up for each operation.
+	 */
+	public static Timer getTimer(final String name) {
+		return timers.computeIfAbsent(name, Timer::new);
+	}
+
+	/**
+	 * @return all timers, sorted by name.
+	 */
+	public static Map<String, Timer> getTimers() {
+		return Collections.unmodifiableMap(new TreeMap<>(timers));
+	}
+
+	/**
+	 * Sets all timers back to zero. The timers themselves are kept, so references held by callers stay valid.
+	 */
+	public static void reset() {
+		for (Timer timer : timers.values()) {
+			timer.reset();
+		}
+	}
+
+	/**
+	 * Appends the values of all timers used in the current iteration to the given tab-separated file, one line per
+	 * timer. The header is written when the file is created. Times are in seconds, durations of single operations in
+	 * milliseconds; the percentiles are empty for timers without recorded single operations.
+	 */
+	public static void writeIteration(final int iteration, final String filename) {
+		boolean writeHeader = !new File(filename).exists();
+		try (BufferedWriter writer = IOUtils.getAppendingBufferedWriter(filename)) {
+			if (writeHeader) {
+				writer.write("iteration\tname\tcount\titems\ttotal_s\tcount_per_s\titems_per_s\titems_per_count\tmean_ms\tp50_ms\tp90_ms\tp99_ms\tmax_ms");
+				writer.newLine();
+			}
+			for (Timer timer : getTimers().values()) {
+				long count = timer.getCount();
+				if (count == 0) {
+					continue;
+				}
+				double seconds = timer.getTotalNanos() / 1e9;
+				long items = timer.getItems();
+				StringBuilder line = new StringBuilder();
+				line.append(iteration).append('\t').append(timer.getName());
+				line.append('\t').append(count);
+				line.append('\t').append(items);
+				line.append('\t').append(seconds);
+				line.append('\t').append(seconds > 0 ? count / seconds : 0.0);
+				line.append('\t').append(seconds > 0 ? items / seconds : 0.0);
+				line.append('\t').append((double) items / count);
+				line.append('\t').append(seconds * 1e3 / count);
+				if (timer.getRecordedOperations() > 0) {
+					line.append('\t').append(timer.getPercentileNanos(0.5) / 1e6);
+					line.append('\t').append(timer.getPercentileNanos(0.9) / 1e6);
+					line.append('\t').append(timer.getPercentileNanos(0.99) / 1e6);
+					line.append('\t').append(timer.getMaxNanos() / 1e6);
+				} else {
+					line.append("\t\t\t\t");
+				}
+				writer.write(line.toString());
+				writer.newLine();
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Accumulates the number and duration of operations and the items processed by them. Single operations
+	 * recorded with {@link #record(long, long)} also go into a histogram with a relative resolution of 1/8,
+	 * from which percentiles are estimated. All methods may be called concurrently.
+	 */
+	public static final class Timer {
+
+		private static final int SUB_BUCKETS = 8;
+		private static final int SUB_BUCKET_BITS = 3;
+
+		private final String name;
+		private final LongAdder count = new LongAdder();
+		private final LongAdder items = new LongAdder();
+		private final LongAdder totalNanos = new LongAdder();
+		private final LongAdder recordedOperations = new LongAdder();
+		private final AtomicLong maxNanos = new AtomicLong();
+		private final AtomicLongArray histogram = new AtomicLongArray(SUB_BUCKETS * 62);
+
+		private Timer(final String name) {
+			this.name = name;
+		}
+
+		public String getName() {
+			return this.name;
+		}
+
+		public void record(final long nanos) {
+			record(nanos, 0);
+		}
+
+		/**
+		 * Records a single operation.
+		 */
+		public void record(final long nanos, final long processedItems) {
+			long n = Math.max(0, nanos);
+			this.count.increment();
+			this.recordedOperations.increment();
+			this.items.add(processedItems);
+			this.totalNanos.add(n);
+			this.histogram.incrementAndGet(bucket(n));
+			long max = this.maxNanos.get();
+			while (n > max && !this.maxNanos.compareAndSet(max, n)) {
+				max = this.maxNanos.get();
+			}
+		}
+
+		/**
+		 * Records the total of many operations that were not measured one by one, e.g. because they are too short.
+		 */
+		public void add(final long operations, final long nanos) {
+			this.count.add(operations);
+			this.totalNanos.add(Math.max(0, nanos));
+		}
+
+		public long getCount() {
+			return this.count.sum();
+		}
+
+		public long getItems() {
+			return this.items.sum();
+		}
+
+		public long getTotalNanos() {
+			return this.totalNanos.sum();
+		}
+
+		public long getMaxNanos() {
+			return this.maxNanos.get();
+		}
+
+		/**
+		 * @return the number of operations recorded one by one, which are the base of the percentiles.
+		 */
+		public long getRecordedOperations() {
+			return this.recordedOperations.sum();
+		}
+
+		/**
+		 * @return an estimate of the given quantile (between 0 and 1) of the durations of the operations recorded one
+		 * by one, or 0 if there are none.
+		 */
+		public double getPercentileNanos(final double quantile) {
+			long total = 0;
+			for (int i = 0; i < this.histogram.length(); i++) {
+				total += this.histogram.get(i);
+			}
+			if (total == 0) {
+				return 0.0;
+			}
+			long rank = Math.max(1, (long) Math.ceil(quantile * total));
+			long seen = 0;
+			for (int i = 0; i < this.histogram.length(); i++) {
+				seen += this.histogram.get(i);
+				if (seen >= rank) {
+					return Math.min((lowerBound(i) + lowerBound(i + 1)) / 2.0, this.maxNanos.get());
+				}
+			}
+			return this.maxNanos.get();
+		}
+
+		private void reset() {
+			this.count.reset();
+			this.items.reset();
+			this.totalNanos.reset();
+			this.recordedOperations.reset();
+			this.maxNanos.set(0);
+			for (int i = 0; i < this.histogram.length(); i++) {
+				this.histogram.set(i, 0);
+			}
+		}
+
+		/* values below 8 get a bucket each, larger values 8 buckets per power of two */
+		/*package*/ static int bucket(final long nanos) {
+			if (nanos < SUB_BUCKETS) {
+				return (int) nanos;
+			}
+			int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+			int subBucket = (int) (nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+			return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+		}
+
+		/*package*/ static double lowerBound(final int bucket) {
+			if (bucket < SUB_BUCKETS) {
+				return bucket;
+			}
+			int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+			int subBucket = bucket % SUB_BUCKETS;
+			return (double) (SUB_BUCKETS + subBucket) * (1L << (exponent - SUB_BUCKET_BITS));
+		}
+	}
+
+}
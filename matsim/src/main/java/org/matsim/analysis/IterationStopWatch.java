@@ -36,7 +36,8 @@ import java.util.Map.Entry;
  * This class provides a mechanism similar to a stop watch, allowing to measure the duration of operations and
  * remembering time stamps. The class collects all the data and provides a simple analysis of the time stamps
  * and durations for operations for each iteration in the simulation. This analysis can be dumped to console
- * or to a file using the <code>write()</code>-methods.
+ * or to a file using the <code>write()</code>-methods. The durations of the operations are also recorded in the
+ * {@link IterationMetrics}, which hold finer counters for the hot paths of an iteration.
  *
  * @author mrieser
  */
@@ -163,7 +164,12 @@ public final class IterationStopWatch {
 		String ident = "END " + identifier;
 		ensureIdentifier(ident);
 		ensureOperation(identifier);
-		this.currentIterationValues.put(ident, Long.valueOf(System.currentTimeMillis()));
+		long now = System.currentTimeMillis();
+		this.currentIterationValues.put(ident, Long.valueOf(now));
+		Long begin = this.currentIterationValues.get("BEGIN " + identifier);
+		if (begin != null) {
+			IterationMetrics.getTimer(IterationMetrics.CONTROLER_PREFIX + identifier).record((now - begin.longValue()) * 1000000L);
+		}
 		
 		
 		this.currentMeasuredOperations.pop();
@@ -0,0 +1,221 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.analysis;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.matsim.api.core.v01.Id;
+
+/**
+ * Counts per link, mode and time bin in primitive arrays. Links are identified by the {@link Id#index() index} of
+ * their id, modes by the index handed out by {@link #getModeIndex(String)}. The arrays of a link are only allocated
+ * when the link is counted for the first time.
+ * <br>
+ * An instance is not thread-safe. To count in several threads, every thread counts into its own instance, and the
+ * instances are merged with {@link #addAll(LinkModeCounts)} afterwards.
+ */
+public final class LinkModeCounts {
+
+	private final int numberOfTimeBins;
+	private final Map<String, Integer> modeIndices = new HashMap<>();
+	private final List<String> modes = new ArrayList<>();
+	/** the counts of all modes, by link index */
+	private int[][] totals = new int[0][];
+	/** by mode index and link index */
+	private int[][][] modeCounts = new int[0][][];
+	private boolean empty = true;
+
+	public LinkModeCounts(final int numberOfTimeBins) {
+		this.numberOfTimeBins = numberOfTimeBins;
+	}
+
+	public int getNumberOfTimeBins() {
+		return this.numberOfTimeBins;
+	}
+
+	/**
+	 * @return the index of the mode, which is registered if it is not known yet. <code>null</code> is a valid mode.
+	 */
+	public int getModeIndex(final String mode) {
+		Integer index = this.modeIndices.get(mode);
+		if (index == null) {
+			index = this.modes.size();
+			this.modeIndices.put(mode, index);
+			this.modes.add(mode);
+			this.modeCounts = Arrays.copyOf(this.modeCounts, this.modes.size());
+			this.modeCounts[index] = new int[this.totals.length][];
+		}
+		return index;
+	}
+
+	/** @return the index of the mode, or -1 if the mode is not known */
+	public int findModeIndex(final String mode) {
+		Integer index = this.modeIndices.get(mode);
+		return index == null ? -1 : index;
+	}
+
+	/** @return the registered modes, ordered by their index */
+	public List<String> getModes() {
+		return this.modes;
+	}
+
+	/**
+	 * Counts one at the given link and time bin, for all modes and, unless <code>modeIndex</code> is negative, for
+	 * the given mode.
+	 */
+	public void increment(final int linkIndex, final int modeIndex, final int timeBin) {
+		add(linkIndex, modeIndex, timeBin, 1);
+	}
+
+	/**
+	 * Adds <code>count</code> at the given link and time bin, for all modes and, unless <code>modeIndex</code> is
+	 * negative, for the given mode.
+	 */
+	public void add(final int linkIndex, final int modeIndex, final int timeBin, final int count) {
+		if (linkIndex >= this.totals.length) {
+			grow(linkIndex);
+		}
+		int[] counts = this.totals[linkIndex];
+		if (counts == null) {
+			counts = new int[this.numberOfTimeBins];
+			this.totals[linkIndex] = counts;
+		}
+		counts[timeBin] += count;
+		if (modeIndex >= 0) {
+			int[][] linkCounts = this.modeCounts[modeIndex];
+			counts = linkCounts[linkIndex];
+			if (counts == null) {
+				counts = new int[this.numberOfTimeBins];
+				linkCounts[linkIndex] = counts;
+			}
+			counts[timeBin] += count;
+		}
+		this.empty = false;
+	}
+
+	private void grow(final int linkIndex) {
+		int length = Math.max(linkIndex + 1, Math.max(16, this.totals.length * 3 / 2));
+		this.totals = Arrays.copyOf(this.totals, length);
+		for (int mode = 0; mode < this.modeCounts.length; mode++) {
+			this.modeCounts[mode] = Arrays.copyOf(this.modeCounts[mode], length);
+		}
+	}
+
+	/** @return the counts of all modes per time bin, or <code>null</code> if the link was not counted */
+	public int[] getCounts(final int linkIndex) {
+		return linkIndex < this.totals.length ? this.totals[linkIndex] : null;
+	}
+
+	/** @return the counts of the mode per time bin, or <code>null</code> if the link was not counted for this mode */
+	public int[] getCounts(final int linkIndex, final int modeIndex) {
+		if (modeIndex < 0 || modeIndex >= this.modeCounts.length || linkIndex >= this.totals.length) {
+			return null;
+		}
+		return this.modeCounts[modeIndex][linkIndex];
+	}
+
+	/** @return <code>true</code> if any link was counted for the mode */
+	public boolean hasCounts(final int modeIndex) {
+		if (modeIndex < 0 || modeIndex >= this.modeCounts.length) {
+			return false;
+		}
+		return hasCounts(this.modeCounts[modeIndex]);
+	}
+
+	private static boolean hasCounts(final int[][] linkCounts) {
+		for (int[] counts : linkCounts) {
+			if (counts != null) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/** @return a number larger than the index of every counted link */
+	public int getLinkIndexBound() {
+		return this.totals.length;
+	}
+
+	public boolean isEmpty() {
+		return this.empty;
+	}
+
+	/**
+	 * Adds the counts of <code>other</code> to this instance. Modes are matched by their name, modes only known to
+	 * <code>other</code> are registered if <code>other</code> has counts for them.
+	 */
+	public void addAll(final LinkModeCounts other) {
+		if (other.numberOfTimeBins != this.numberOfTimeBins) {
+			throw new IllegalArgumentException("cannot add counts with " + other.numberOfTimeBins + " time bins to counts with "
+					+ this.numberOfTimeBins + " time bins.");
+		}
+		if (other.empty) {
+			return;
+		}
+		// the arrays of other are read only once, in case they are still growing in the thread counting into other
+		int[][] otherTotals = other.totals;
+		if (otherTotals.length > this.totals.length) {
+			grow(otherTotals.length - 1);
+		}
+		add(otherTotals, this.totals);
+		int[][][] otherModeCounts = other.modeCounts;
+		for (int otherMode = 0; otherMode < otherModeCounts.length; otherMode++) {
+			int[][] otherCounts = otherModeCounts[otherMode];
+			if (hasCounts(otherCounts)) {
+				int mode = getModeIndex(other.modes.get(otherMode));
+				if (otherCounts.length > this.totals.length) {
+					grow(otherCounts.length - 1);
+				}
+				add(otherCounts, this.modeCounts[mode]);
+			}
+		}
+		this.empty = false;
+	}
+
+	private void add(final int[][] from, final int[][] to) {
+		for (int link = 0; link < from.length; link++) {
+			int[] counts = from[link];
+			if (counts != null) {
+				if (to[link] == null) {
+					to[link] = counts.clone();
+				} else {
+					int[] sum = to[link];
+					for (int bin = 0; bin < counts.length; bin++) {
+						sum[bin] += counts[bin];
+					}
+				}
+			}
+		}
+	}
+
+	/** Removes all counts. The registered modes keep their indices. */
+	public void clear() {
+		Arrays.fill(this.totals, null);
+		for (int[][] counts : this.modeCounts) {
+			Arrays.fill(counts, null);
+		}
+		this.empty = true;
+	}
+
+}
@@ -0,0 +1,80 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.analysis;
+
+import java.util.Arrays;
+
+import org.matsim.api.core.v01.Id;
+
+/**
+ * Values per link and time bin in primitive arrays, the counterpart of {@link LinkModeCounts} for values which are not
+ * integer counts, e.g. volumes averaged or summed up over several iterations, or travel times. Links are identified by
+ * the {@link Id#index() index} of their id. The array of a link is only allocated when a value is stored for the link
+ * for the first time.
+ * <br>
+ * An instance is not thread-safe.
+ */
+public final class LinkTimeBinValues {
+
+	private final int numberOfTimeBins;
+	/** by link index */
+	private double[][] values = new double[0][];
+
+	public LinkTimeBinValues(final int numberOfTimeBins) {
+		this.numberOfTimeBins = numberOfTimeBins;
+	}
+
+	public int getNumberOfTimeBins() {
+		return this.numberOfTimeBins;
+	}
+
+	/** @return the values of the link per time bin, or <code>null</code> if nothing was stored for the link */
+	public double[] getValues(final int linkIndex) {
+		return linkIndex < this.values.length ? this.values[linkIndex] : null;
+	}
+
+	/**
+	 * @return the values of the link per time bin, which may be modified. They are initialized with zeros if nothing
+	 * was stored for the link yet.
+	 */
+	public double[] getOrCreateValues(final int linkIndex) {
+		if (linkIndex >= this.values.length) {
+			int length = Math.max(linkIndex + 1, Math.max(16, this.values.length * 3 / 2));
+			this.values = Arrays.copyOf(this.values, length);
+		}
+		double[] linkValues = this.values[linkIndex];
+		if (linkValues == null) {
+			linkValues = new double[this.numberOfTimeBins];
+			this.values[linkIndex] = linkValues;
+		}
+		return linkValues;
+	}
+
+	/** @return a number larger than the index of every link with values */
+	public int getLinkIndexBound() {
+		return this.values.length;
+	}
+
+	/** Removes all values. */
+	public void clear() {
+		Arrays.fill(this.values, null);
+	}
+
+}
@@ -20,41 +20,78 @@
 
 package org.matsim.analysis;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Set;
 import java.util.TreeSet;
 
 import org.apache.log4j.Logger;
 import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.IdSet;
 import org.matsim.api.core.v01.events.LinkLeaveEvent;
 import org.matsim.api.core.v01.events.VehicleEntersTrafficEvent;
 import org.matsim.api.core.v01.events.handler.LinkLeaveEventHandler;
 import org.matsim.api.core.v01.events.handler.VehicleEntersTrafficEventHandler;
 import org.matsim.api.core.v01.network.Link;
 import org.matsim.api.core.v01.network.Network;
-import org.matsim.vehicles.Vehicle;
 import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.events.handler.PartitionedEventHandler;
 
 import javax.inject.Inject;
 
 /**
  * Counts the number of vehicles leaving a link, aggregated into time bins of a specified size.
+ * <br>
+ * The analyzer is partitioned by vehicle, so it may be called from several threads at once. Every thread counts
+ * into its own {@link LinkModeCounts}. When the volumes are queried, the counts of all threads are added up into a
+ * separate instance, which answers all further queries until a thread has counted more vehicles. Querying is meant
+ * for when no events are handled at the same time, e.g. after the mobsim. Since a query never modifies the counts of
+ * the threads, an earlier query does not lose any vehicles, though.
+ * <br>
+ * The events of a vehicle are not necessarily handled by the same thread, e.g. if a synchronized events manager is
+ * called from the threads of the mobsim. The modes of the vehicles are thus shared by all threads.
  *
  * @author mrieser
  */
-public class VolumesAnalyzer implements LinkLeaveEventHandler, VehicleEntersTrafficEventHandler {
+public class VolumesAnalyzer implements LinkLeaveEventHandler, VehicleEntersTrafficEventHandler, PartitionedEventHandler {
 
 	private final static Logger log = Logger.getLogger(VolumesAnalyzer.class);
 	private final int timeBinSize;
 	private final int maxTime;
 	private final int maxSlotIndex;
-	private final Map<Id<Link>, int[]> links;
-	
+	private final List<ThreadCounts> allThreadCounts = new ArrayList<>();
+	/** the counts of all threads, added up when they were queried the last time, or <code>null</code> */
+	private LinkModeCounts counts = null;
+	/** the number of vehicles the threads had counted when {@link #counts} was added up */
+	private int numberOfCountsAddedUp = 0;
+	private volatile ThreadLocal<ThreadCounts> threadCounts = createThreadCounts();
+	/**
+	 * The mode by vehicle index, <code>null</code> if the mode is not known. Only written while holding the lock of
+	 * {@link #vehicleModesLock}, which happens once per departure. Reading without the lock is safe since the events of
+	 * a vehicle are handled in order, and a grown array is only published after the old entries are copied.
+	 */
+	private volatile String[] vehicleModes = new String[0];
+	private final Object vehicleModesLock = new Object();
+
 	// for multi-modal support
 	private final boolean observeModes;
-	private final Map<Id<Vehicle>, String> enRouteModes;
-	private final Map<Id<Link>, Map<String, int[]>> linksPerMode;
+
+	/**
+	 * The counts of one thread.
+	 */
+	private final static class ThreadCounts {
+		final LinkModeCounts counts;
+		/**
+		 * The number of counted vehicles, which tells whether the counts have changed since they were added up. Only
+		 * written by the thread that counts, and read after the events are handled.
+		 */
+		int numberOfCounts = 0;
+
+		ThreadCounts(final int numberOfTimeBins) {
+			this.counts = new LinkModeCounts(numberOfTimeBins);
+		}
+	}
 
 	@Inject
 	VolumesAnalyzer(Network network, EventsManager eventsManager) {
@@ -70,49 +107,51 @@ public class VolumesAnalyzer implements LinkLeaveEventHandler, VehicleEntersTraf
 		this.timeBinSize = timeBinSize;
 		this.maxTime = maxTime;
 		this.maxSlotIndex = (this.maxTime/this.timeBinSize) + 1;
-		this.links = new HashMap<>((int) (network.getLinks().size() * 1.1), 0.95f);
-		
 		this.observeModes = observeModes;
-		if (this.observeModes) {
-			this.enRouteModes = new HashMap<>();
-			this.linksPerMode = new HashMap<>((int) (network.getLinks().size() * 1.1), 0.95f);
-		} else {
-			this.enRouteModes = null;
-			this.linksPerMode = null;
-		}
 	}
-	
+
+	private ThreadLocal<ThreadCounts> createThreadCounts() {
+		return ThreadLocal.withInitial(() -> {
+			ThreadCounts counts = new ThreadCounts(this.maxSlotIndex + 1);
+			synchronized (this.allThreadCounts) {
+				this.allThreadCounts.add(counts);
+			}
+			return counts;
+		});
+	}
+
+	@Override
+	public PartitionKey getPartitionKey() {
+		return PartitionKey.vehicle;
+	}
+
 	@Override
 	public void handleEvent(VehicleEntersTrafficEvent event) {
 		if (observeModes) {
-			enRouteModes.put(event.getVehicleId(), event.getNetworkMode());
+			int vehicle = event.getVehicleId().index();
+			synchronized (this.vehicleModesLock) {
+				String[] modes = this.vehicleModes;
+				if (vehicle >= modes.length) {
+					modes = Arrays.copyOf(modes, Math.max(vehicle + 1, modes.length * 3 / 2));
+					this.vehicleModes = modes;
+				}
+				modes[vehicle] = event.getNetworkMode();
+			}
 		}
 	}
 	
 	@Override
 	public void handleEvent(final LinkLeaveEvent event) {
-		int[] volumes = this.links.get(event.getLinkId());
-		if (volumes == null) {
-			volumes = new int[this.maxSlotIndex + 1]; // initialized to 0 by default, according to JVM specs
-			this.links.put(event.getLinkId(), volumes);
-		}
-		int timeslot = getTimeSlotIndex(event.getTime());
-		volumes[timeslot]++;
-		
+		ThreadCounts counts = this.threadCounts.get();
+		int mode = -1;
 		if (observeModes) {
-			Map<String, int[]> modeVolumes = this.linksPerMode.get(event.getLinkId());
-			if (modeVolumes == null) {
-				modeVolumes = new HashMap<>();
-				this.linksPerMode.put(event.getLinkId(), modeVolumes);
-			}
-			String mode = enRouteModes.get(event.getVehicleId());
-			volumes = modeVolumes.get(mode);
-			if (volumes == null) {
-				volumes = new int[this.maxSlotIndex + 1]; // initialized to 0 by default, according to JVM specs
-				modeVolumes.put(mode, volumes);
-			}
-			volumes[timeslot]++;
+			int vehicle = event.getVehicleId().index();
+			String[] modes = this.vehicleModes;
+			// vehicles without a VehicleEntersTrafficEvent are counted with mode null
+			mode = counts.counts.getModeIndex(vehicle < modes.length ? modes[vehicle] : null);
 		}
+		counts.counts.increment(event.getLinkId().index(), mode, getTimeSlotIndex(event.getTime()));
+		counts.numberOfCounts++;
 	}
 
 	private int getTimeSlotIndex(final double time) {
@@ -122,13 +161,34 @@ public class VolumesAnalyzer implements LinkLeaveEventHandler, VehicleEntersTraf
 		return ((int)time / this.timeBinSize);
 	}
 
+	/**
+	 * @return the counts of all threads, added up again if any thread has counted a vehicle since the last query
+	 */
+	private LinkModeCounts getCounts() {
+		synchronized (this.allThreadCounts) {
+			int numberOfCounts = 0;
+			for (ThreadCounts threadCounts : this.allThreadCounts) {
+				numberOfCounts += threadCounts.numberOfCounts;
+			}
+			if (this.counts == null || numberOfCounts != this.numberOfCountsAddedUp) {
+				LinkModeCounts counts = new LinkModeCounts(this.maxSlotIndex + 1);
+				for (ThreadCounts threadCounts : this.allThreadCounts) {
+					counts.addAll(threadCounts.counts);
+				}
+				this.counts = counts;
+				this.numberOfCountsAddedUp = numberOfCounts;
+			}
+			return this.counts;
+		}
+	}
+
 	/**
 	 * @param linkId
 	 * @return Array containing the number of vehicles leaving the link <code>linkId</code> per time bin,
 	 * 		starting with time bin 0 from 0 seconds to (timeBinSize-1)seconds.
 	 */
 	public int[] getVolumesForLink(final Id<Link> linkId) {
-		return this.links.get(linkId);
+		return getCounts().getCounts(linkId.index());
 	}
 	
 	/**
@@ -139,8 +199,8 @@ public class VolumesAnalyzer implements LinkLeaveEventHandler, VehicleEntersTraf
 	 */
 	public int[] getVolumesForLink(final Id<Link> linkId, String mode) {
 		if (observeModes) {
-			Map<String, int[]> modeVolumes = this.linksPerMode.get(linkId);
-			if (modeVolumes != null) return modeVolumes.get(mode);
+			LinkModeCounts counts = getCounts();
+			return counts.getCounts(linkId.index(), counts.findModeIndex(mode));
 		} 
 		return null;
 	}
@@ -175,12 +235,42 @@ public class VolumesAnalyzer implements LinkLeaveEventHandler, VehicleEntersTraf
 	 * Thus, starting time = (hour = 0) * 3600.0
 	 */
 	public double[] getVolumesPerHourForLink(final Id<Link> linkId) {
-		if (3600.0 % this.timeBinSize != 0) log.error("Volumes per hour and per link probably not correct!");
-		
 		double[] volumes = new double[24];
-		
-		int[] volumesForLink = this.getVolumesForLink(linkId);
-		if (volumesForLink == null) return volumes;
+		addVolumesPerHourForLink(linkId, volumes);
+		return volumes;
+	}
+
+	public double[] getVolumesPerHourForLink(final Id<Link> linkId, String mode) {
+		if (observeModes) {
+			double[] volumes = new double[24];
+			addVolumesPerHourForLink(linkId, mode, volumes);
+			return volumes;
+		}
+		return null;
+	}
+
+	/**
+	 * Adds the number of vehicles leaving the link per hour to the first 24 elements of <code>volumes</code>, without
+	 * allocating any memory. Meant for adding up the volumes of many links and iterations.
+	 */
+	public void addVolumesPerHourForLink(final Id<Link> linkId, final double[] volumes) {
+		addVolumesPerHour(getCounts().getCounts(linkId.index()), volumes);
+	}
+
+	/**
+	 * Adds the number of vehicles using the specified mode leaving the link per hour to the first 24 elements of
+	 * <code>volumes</code>, see {@link #addVolumesPerHourForLink(Id, double[])}. Adds nothing if modes are not observed.
+	 */
+	public void addVolumesPerHourForLink(final Id<Link> linkId, final String mode, final double[] volumes) {
+		if (observeModes) {
+			LinkModeCounts counts = getCounts();
+			addVolumesPerHour(counts.getCounts(linkId.index(), counts.findModeIndex(mode)), volumes);
+		}
+	}
+
+	private void addVolumesPerHour(final int[] volumesForLink, final double[] volumes) {
+		if (3600.0 % this.timeBinSize != 0) log.error("Volumes per hour and per link probably not correct!");
+		if (volumesForLink == null) return;
 
 		int slotsPerHour = (int)(3600.0 / this.timeBinSize);
 		for (int hour = 0; hour < 24; hour++) {
@@ -190,32 +280,6 @@ public class VolumesAnalyzer implements LinkLeaveEventHandler, VehicleEntersTraf
 				time += this.timeBinSize;
 			}
 		}
-		return volumes;
-	}
-
-	public double[] getVolumesPerHourForLink(final Id<Link> linkId, String mode) {
-		if (observeModes) {
-			if (3600.0 % this.timeBinSize != 0) log.error("Volumes per hour and per link probably not correct!");
-			
-			double [] volumes = new double[24];
-			for (int hour = 0; hour < 24; hour++) {
-				volumes[hour] = 0.0;
-			}
-			
-			int[] volumesForLink = this.getVolumesForLink(linkId, mode);
-			if (volumesForLink == null) return volumes;
-	
-			int slotsPerHour = (int)(3600.0 / this.timeBinSize);
-			for (int hour = 0; hour < 24; hour++) {
-				double time = hour * 3600.0;
-				for (int i = 0; i < slotsPerHour; i++) {
-					volumes[hour] += volumesForLink[this.getTimeSlotIndex(time)];
-					time += this.timeBinSize;
-				}
-			}
-			return volumes;
-		}
-		return null;
 	}
 	
 	/**
@@ -223,11 +287,14 @@ public class VolumesAnalyzer implements LinkLeaveEventHandler, VehicleEntersTraf
 	 */
 	public Set<String> getModes() {
 		Set<String> modes = new TreeSet<>();
-		
-		for (Map<String, int[]> map : this.linksPerMode.values()) {
-			modes.addAll(map.keySet());
+		if (observeModes) {
+			LinkModeCounts counts = getCounts();
+			for (int mode = 0; mode < counts.getModes().size(); mode++) {
+				if (counts.getModes().get(mode) != null && counts.hasCounts(mode)) {
+					modes.add(counts.getModes().get(mode));
+				}
+			}
 		}
-		
 		return modes;
 	}
 	
@@ -235,15 +302,27 @@ public class VolumesAnalyzer implements LinkLeaveEventHandler, VehicleEntersTraf
 	 * @return Set of Strings containing all link ids for which counting-values are available.
 	 */
 	public Set<Id<Link>> getLinkIds() {
-		return this.links.keySet();
+		LinkModeCounts counts = getCounts();
+		Set<Id<Link>> linkIds = new IdSet<>(Link.class);
+		for (int link = 0; link < counts.getLinkIndexBound(); link++) {
+			if (counts.getCounts(link) != null) {
+				linkIds.add(Id.get(link, Link.class));
+			}
+		}
+		return linkIds;
 	}
 
 	@Override
 	public void reset(final int iteration) {
-		this.links.clear();
-		if (observeModes) {
-			this.linksPerMode.clear();
-			this.enRouteModes.clear();
+		synchronized (this.allThreadCounts) {
+			this.counts = null;
+			this.numberOfCountsAddedUp = 0;
+			// threads are usually not reused across iterations, so we start afresh rather than keeping their counts
+			this.allThreadCounts.clear();
+			this.threadCounts = createThreadCounts();
+		}
+		synchronized (this.vehicleModesLock) {
+			this.vehicleModes = new String[0];
 		}
 	}
 }
@@ -0,0 +1,331 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.api.core.v01;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Function;
+
+/**
+ * Thread-safe variant of {@link IdMap}, for maps that are read by several threads while entries are still being added,
+ * e.g. the link data of the travel time calculator, which is filled from the events and the routing threads.
+ * <br>
+ * Lookups are a volatile read of an array indexed by {@link Id#index()} and do not lock. Modifications are
+ * synchronized on the map; since they usually only happen once per id, this is not a bottleneck. When the array
+ * has to grow, it is copied and replaced, so readers either see the old or the new array, both of which contain all
+ * entries that were completely added before. Iterators are weakly consistent like the ones of a
+ * {@link java.util.concurrent.ConcurrentHashMap}: they never throw a {@link java.util.ConcurrentModificationException}
+ * and may or may not reflect modifications made after they were created.
+ * <br>
+ * Like for {@link IdMap}, all keys must be ids of type <code>T</code>, and the memory consumption depends on the
+ * highest index stored. As required by {@link ConcurrentMap}, neither <code>null</code> keys nor values are supported.
+ */
+public class ConcurrentIdMap<T, V> extends AbstractMap<Id<T>, V> implements ConcurrentMap<Id<T>, V>, Iterable<V> {
+
+	private static final int MIN_CAPACITY = 16;
+
+	private final Class<T> idClass;
+	private volatile AtomicReferenceArray<V> data;
+	private volatile int size = 0;
+
+	public ConcurrentIdMap(final Class<T> idClass) {
+		this(idClass, Id.getNumberOfIds(idClass));
+	}
+
+	public ConcurrentIdMap(final Class<T> idClass, final int initialCapacity) {
+		this.idClass = idClass;
+		this.data = new AtomicReferenceArray<>(Math.max(initialCapacity, MIN_CAPACITY));
+	}
+
+	@Override
+	public int size() {
+		return this.size;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return this.size == 0;
+	}
+
+	@Override
+	public boolean containsKey(final Object key) {
+		return get(key) != null;
+	}
+
+	public boolean containsKey(final int index) {
+		return get(index) != null;
+	}
+
+	@Override
+	public boolean containsValue(final Object value) {
+		if (value == null) {
+			return false;
+		}
+		AtomicReferenceArray<V> data = this.data;
+		for (int i = 0; i < data.length(); i++) {
+			if (value.equals(data.get(i))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public V get(final Object key) {
+		if (key instanceof Id) {
+			return get(((Id<?>) key).index());
+		}
+		return null;
+	}
+
+	public V get(final int index) {
+		AtomicReferenceArray<V> data = this.data;
+		if (index < 0 || index >= data.length()) {
+			return null;
+		}
+		return data.get(index);
+	}
+
+	@Override
+	public V put(final Id<T> key, final V value) {
+		return put(key.index(), value);
+	}
+
+	public synchronized V put(final int index, final V value) {
+		Objects.requireNonNull(value);
+		AtomicReferenceArray<V> data = ensureCapacity(index);
+		V old = data.getAndSet(index, value);
+		if (old == null) {
+			this.size++;
+		}
+		return old;
+	}
+
+	@Override
+	public synchronized V putIfAbsent(final Id<T> key, final V value) {
+		Objects.requireNonNull(value);
+		V old = get(key.index());
+		if (old == null) {
+			put(key.index(), value);
+		}
+		return old;
+	}
+
+	/**
+	 * Other than the default implementation of {@link ConcurrentMap}, this calls the mapping function at most once
+	 * per missing key, while holding the lock of the map.
+	 */
+	@Override
+	public V computeIfAbsent(final Id<T> key, final Function<? super Id<T>, ? extends V> mappingFunction) {
+		V value = get(key.index());
+		if (value != null) {
+			return value;
+		}
+		synchronized (this) {
+			value = get(key.index());
+			if (value == null) {
+				value = mappingFunction.apply(key);
+				if (value != null) {
+					put(key.index(), value);
+				}
+			}
+			return value;
+		}
+	}
+
+	@Override
+	public V remove(final Object key) {
+		if (key instanceof Id) {
+			return remove(((Id<?>) key).index());
+		}
+		return null;
+	}
+
+	public synchronized V remove(final int index) {
+		AtomicReferenceArray<V> data = this.data;
+		if (index < 0 || index >= data.length()) {
+			return null;
+		}
+		V old = data.getAndSet(index, null);
+		if (old != null) {
+			this.size--;
+		}
+		return old;
+	}
+
+	@Override
+	public synchronized boolean remove(final Object key, final Object value) {
+		if (key instanceof Id && value != null && value.equals(get(key))) {
+			remove(((Id<?>) key).index());
+			return true;
+		}
+		return false;
+	}
+
+	@Override
+	public synchronized boolean replace(final Id<T> key, final V oldValue, final V newValue) {
+		Objects.requireNonNull(newValue);
+		if (oldValue != null && oldValue.equals(get(key.index()))) {
+			put(key.index(), newValue);
+			return true;
+		}
+		return false;
+	}
+
+	@Override
+	public synchronized V replace(final Id<T> key, final V value) {
+		Objects.requireNonNull(value);
+		V old = get(key.index());
+		if (old != null) {
+			put(key.index(), value);
+		}
+		return old;
+	}
+
+	@Override
+	public synchronized void clear() {
+		this.data = new AtomicReferenceArray<>(this.data.length());
+		this.size = 0;
+	}
+
+	/** Must only be called while holding the lock of the map. */
+	private AtomicReferenceArray<V> ensureCapacity(final int index) {
+		AtomicReferenceArray<V> data = this.data;
+		if (index >= data.length()) {
+			AtomicReferenceArray<V> grown = new AtomicReferenceArray<>(Math.max(index + 1, data.length() * 2));
+			for (int i = 0; i < data.length(); i++) {
+				grown.lazySet(i, data.get(i));
+			}
+			// the volatile write publishes the copied entries
+			this.data = grown;
+			data = grown;
+		}
+		return data;
+	}
+
+	@Override
+	public Iterator<V> iterator() {
+		return new ConcurrentIdMapIterator<V>() {
+			@Override
+			V get(final int index, final V value) {
+				return value;
+			}
+		};
+	}
+
+	@Override
+	public Set<Entry<Id<T>, V>> entrySet() {
+		return new AbstractSet<Entry<Id<T>, V>>() {
+			@Override
+			public Iterator<Entry<Id<T>, V>> iterator() {
+				return new ConcurrentIdMapIterator<Entry<Id<T>, V>>() {
+					@Override
+					Entry<Id<T>, V> get(final int index, final V value) {
+						return new IdEntry(index, value);
+					}
+				};
+			}
+
+			@Override
+			public int size() {
+				return ConcurrentIdMap.this.size;
+			}
+
+			@Override
+			public void clear() {
+				ConcurrentIdMap.this.clear();
+			}
+		};
+	}
+
+	/**
+	 * Entry holding the value seen by the iterator, writing through to the map.
+	 */
+	private class IdEntry extends SimpleEntry<Id<T>, V> {
+
+		private static final long serialVersionUID = 1L;
+
+		IdEntry(final int index, final V value) {
+			super(Id.get(index, ConcurrentIdMap.this.idClass), value);
+		}
+
+		@Override
+		public V setValue(final V value) {
+			ConcurrentIdMap.this.put(getKey(), value);
+			return super.setValue(value);
+		}
+	}
+
+	/**
+	 * Iterates over the occupied positions of the array as it was when the iterator was created.
+	 */
+	private abstract class ConcurrentIdMapIterator<E> implements Iterator<E> {
+
+		private final AtomicReferenceArray<V> data = ConcurrentIdMap.this.data;
+		private int nextIndex = -1;
+		private V nextValue = null;
+		private int currentIndex = -1;
+
+		ConcurrentIdMapIterator() {
+			findNext();
+		}
+
+		abstract E get(int index, V value);
+
+		private void findNext() {
+			this.nextValue = null;
+			while (this.nextValue == null && ++this.nextIndex < this.data.length()) {
+				this.nextValue = this.data.get(this.nextIndex);
+			}
+		}
+
+		@Override
+		public boolean hasNext() {
+			return this.nextValue != null;
+		}
+
+		@Override
+		public E next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			this.currentIndex = this.nextIndex;
+			E element = get(this.nextIndex, this.nextValue);
+			findNext();
+			return element;
+		}
+
+		@Override
+		public void remove() {
+			if (this.currentIndex < 0) {
+				throw new IllegalStateException();
+			}
+			ConcurrentIdMap.this.remove(this.currentIndex);
+			this.currentIndex = -1;
+		}
+	}
+
+}
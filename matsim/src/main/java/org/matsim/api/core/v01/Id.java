@@ -20,6 +20,7 @@
 
 package org.matsim.api.core.v01;
 
+import java.util.Arrays;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -41,6 +42,7 @@ import org.matsim.vehicles.Vehicle;
 public abstract class Id<T> implements Comparable<Id<T>> {
 
 	private final static Map<Class<?>, Map<String, Id<?>>> cache = new ConcurrentHashMap<Class<?>, Map<String, Id<?>>>();
+	private final static Map<Class<?>, IndexedIds> indices = new ConcurrentHashMap<Class<?>, IndexedIds>();
 	
 	
 	public static <T> Id<T> create(final long key, final Class<T> type) {
@@ -55,24 +57,71 @@ public abstract class Id<T> implements Comparable<Id<T>> {
 	}
 	
 	/**
-	 * This method supports a cache where ids are stored and re-used per type.   
+	 * This method supports a cache where ids are stored and re-used per type.
+	 * Every newly created id additionally gets a dense index within its type, see {@link #index()}.
 	 */
+	@SuppressWarnings("unchecked")
 	public static <T> Id<T> create(final String key, final Class<T> type) {
+		Gbl.assertNotNull(key);
 		Map<String, Id<?>> map = cache.get(type);
-		if (map == null) {
-			map = new ConcurrentHashMap<String, Id<?>>();
-			cache.put(type, map);
+		if (map != null) {
+			Id<?> id = map.get(key);
+			if (id != null) {
+				return (Id<T>) id;
+			}
 		}
-		Gbl.assertNotNull(key);
-		Id<?> id = map.get(key);
-		if (id == null) {
-			id = new IdImpl<T>(key);
-			map.put(key, id);
+		// slow path: creating a new id must be atomic, otherwise the same index could be handed out twice
+		synchronized (cache) {
+			map = cache.get(type);
+			if (map == null) {
+				map = new ConcurrentHashMap<String, Id<?>>();
+				cache.put(type, map);
+			}
+			Id<?> id = map.get(key);
+			if (id == null) {
+				IndexedIds ids = indices.get(type);
+				if (ids == null) {
+					ids = new IndexedIds();
+					indices.put(type, ids);
+				}
+				id = new IdImpl<T>(key, ids.size);
+				ids.add(id);
+				map.put(key, id);
+			}
+			return (Id<T>) id;
 		}
-		
-		return (Id<T>) id;
 	}
-	
+
+	/**
+	 * Returns the id with the given index, as returned by {@link #index()}.
+	 *
+	 * @throws IndexOutOfBoundsException if no id with this index exists for the given type
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> Id<T> get(final int index, final Class<T> type) {
+		IndexedIds ids = indices.get(type);
+		if (ids == null || index < 0 || index >= ids.size) {
+			throw new IndexOutOfBoundsException("There is no id of type " + type.getName() + " with index " + index);
+		}
+		return (Id<T>) ids.data[index];
+	}
+
+	/**
+	 * @return the number of ids created so far for the given type. All indices of this type are
+	 * smaller than this number.
+	 */
+	public static <T> int getNumberOfIds(final Class<T> type) {
+		IndexedIds ids = indices.get(type);
+		return ids == null ? 0 : ids.size;
+	}
+
+	/**
+	 * @return a dense, non-negative index of this id, unique amongst all ids of the same type.
+	 * Indices are handed out consecutively starting at 0 in the order the ids are created, which
+	 * allows to use them as positions in arrays, see {@link IdMap} and {@link IdSet}.
+	 */
+	public abstract int index();
+
 	/**
 	 * @return <code>0</code> when the two objects being compared are the same objects, other values according to their ids being compared to each other.
 	 * 
@@ -113,9 +162,16 @@ public abstract class Id<T> implements Comparable<Id<T>> {
 	private static class IdImpl<T> extends Id<T> {
 
 		private final String id; 
+		private final int index;
 		
-		/*package*/ IdImpl(final String id) {
+		/*package*/ IdImpl(final String id, final int index) {
 			this.id = id;
+			this.index = index;
+		}
+
+		@Override
+		public int index() {
+			return this.index;
 		}
 
 		@Override
@@ -129,6 +185,26 @@ public abstract class Id<T> implements Comparable<Id<T>> {
 		}
 	}
 	
+	/**
+	 * Index to id lookup table of one id type. Only written while holding the lock on {@link Id#cache},
+	 * the volatile fields make sure readers always see a fully filled array.
+	 */
+	private static class IndexedIds {
+
+		private volatile Id<?>[] data = new Id<?>[1000];
+		private volatile int size = 0;
+
+		/*package*/ void add(final Id<?> id) {
+			Id<?>[] tmp = this.data;
+			if (this.size == tmp.length) {
+				tmp = Arrays.copyOf(tmp, tmp.length * 2);
+			}
+			tmp[this.size] = id;
+			this.data = tmp;
+			this.size++;
+		}
+	}
+
 	public static <T> String writeId( Id<T> id ) {
 		if ( id==null ) {
 			return "null" ;
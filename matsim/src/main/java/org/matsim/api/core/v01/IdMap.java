@@ -0,0 +1,368 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.api.core.v01;
+
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Map from {@link Id}s to values, backed by a plain array that is indexed by {@link Id#index()}.
+ * Lookups are a single array access without hashing, and no entry objects are created for the
+ * stored mappings, which makes this map a lot cheaper than a {@link java.util.HashMap} in terms
+ * of both memory and runtime when many ids of the same type are stored.
+ * <br>
+ * The map iterates in the order of the id indices, i.e. usually in the order the ids were created.
+ * <br>
+ * Some caveats:
+ * <ul>
+ * <li>All keys must be ids of type <code>T</code>. Ids of another type with the same index are
+ * indistinguishable for this map.</li>
+ * <li><code>null</code> values are not supported, storing <code>null</code> is the same as
+ * removing the key.</li>
+ * <li>The memory consumption depends on the highest index stored, not on the number of entries.
+ * It is thus not well suited for storing only a few ids out of many.</li>
+ * <li>This map is not synchronized.</li>
+ * </ul>
+ */
+public class IdMap<T, V> extends AbstractMap<Id<T>, V> implements Iterable<V> {
+
+	private static final int MIN_CAPACITY = 16;
+
+	private final Class<T> idClass;
+	private Object[] data;
+	private int size = 0;
+	private int modCount = 0;
+
+	public IdMap(final Class<T> idClass) {
+		this(idClass, Id.getNumberOfIds(idClass));
+	}
+
+	public IdMap(final Class<T> idClass, final int initialCapacity) {
+		this.idClass = idClass;
+		this.data = new Object[Math.max(initialCapacity, MIN_CAPACITY)];
+	}
+
+	@Override
+	public int size() {
+		return this.size;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return this.size == 0;
+	}
+
+	@Override
+	public boolean containsKey(final Object key) {
+		if (key instanceof Id) {
+			return containsKey(((Id<?>) key).index());
+		}
+		return false;
+	}
+
+	public boolean containsKey(final int index) {
+		return index >= 0 && index < this.data.length && this.data[index] != null;
+	}
+
+	@Override
+	public boolean containsValue(final Object value) {
+		if (value == null) {
+			return false;
+		}
+		for (Object o : this.data) {
+			if (value.equals(o)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public V get(final Object key) {
+		if (key instanceof Id) {
+			return get(((Id<?>) key).index());
+		}
+		return null;
+	}
+
+	@SuppressWarnings("unchecked")
+	public V get(final int index) {
+		if (index < 0 || index >= this.data.length) {
+			return null;
+		}
+		return (V) this.data[index];
+	}
+
+	@Override
+	public V put(final Id<T> key, final V value) {
+		return put(key.index(), value);
+	}
+
+	@SuppressWarnings("unchecked")
+	public V put(final int index, final V value) {
+		if (value == null) {
+			return remove(index);
+		}
+		if (index >= this.data.length) {
+			this.data = Arrays.copyOf(this.data, Math.max(index + 1, this.data.length * 2));
+		}
+		V old = (V) this.data[index];
+		this.data[index] = value;
+		if (old == null) {
+			this.size++;
+			this.modCount++;
+		}
+		return old;
+	}
+
+	@Override
+	public V remove(final Object key) {
+		if (key instanceof Id) {
+			return remove(((Id<?>) key).index());
+		}
+		return null;
+	}
+
+	@SuppressWarnings("unchecked")
+	public V remove(final int index) {
+		if (index < 0 || index >= this.data.length) {
+			return null;
+		}
+		V old = (V) this.data[index];
+		if (old != null) {
+			this.data[index] = null;
+			this.size--;
+			this.modCount++;
+		}
+		return old;
+	}
+
+	@Override
+	public void clear() {
+		Arrays.fill(this.data, null);
+		this.size = 0;
+		this.modCount++;
+	}
+
+	@Override
+	public Iterator<V> iterator() {
+		return new IdMapIterator<V>() {
+			@SuppressWarnings("unchecked")
+			@Override
+			V get(final int index) {
+				return (V) IdMap.this.data[index];
+			}
+		};
+	}
+
+	@Override
+	public Set<Id<T>> keySet() {
+		return new AbstractSet<Id<T>>() {
+			@Override
+			public Iterator<Id<T>> iterator() {
+				return new IdMapIterator<Id<T>>() {
+					@Override
+					Id<T> get(final int index) {
+						return Id.get(index, IdMap.this.idClass);
+					}
+				};
+			}
+
+			@Override
+			public int size() {
+				return IdMap.this.size;
+			}
+
+			@Override
+			public boolean contains(final Object o) {
+				return IdMap.this.containsKey(o);
+			}
+
+			@Override
+			public boolean remove(final Object o) {
+				return IdMap.this.remove(o) != null;
+			}
+
+			@Override
+			public void clear() {
+				IdMap.this.clear();
+			}
+		};
+	}
+
+	@Override
+	public Collection<V> values() {
+		return new AbstractCollection<V>() {
+			@Override
+			public Iterator<V> iterator() {
+				return IdMap.this.iterator();
+			}
+
+			@Override
+			public int size() {
+				return IdMap.this.size;
+			}
+
+			@Override
+			public void clear() {
+				IdMap.this.clear();
+			}
+		};
+	}
+
+	@Override
+	public Set<Entry<Id<T>, V>> entrySet() {
+		return new AbstractSet<Entry<Id<T>, V>>() {
+			@Override
+			public Iterator<Entry<Id<T>, V>> iterator() {
+				return new IdMapIterator<Entry<Id<T>, V>>() {
+					@Override
+					Entry<Id<T>, V> get(final int index) {
+						return new IdEntry(index);
+					}
+				};
+			}
+
+			@Override
+			public int size() {
+				return IdMap.this.size;
+			}
+
+			@Override
+			public void clear() {
+				IdMap.this.clear();
+			}
+		};
+	}
+
+	/**
+	 * Entry that reads and writes through to the map's array.
+	 */
+	private class IdEntry implements Entry<Id<T>, V> {
+
+		private final int index;
+
+		IdEntry(final int index) {
+			this.index = index;
+		}
+
+		@Override
+		public Id<T> getKey() {
+			return Id.get(this.index, IdMap.this.idClass);
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public V getValue() {
+			return (V) IdMap.this.data[this.index];
+		}
+
+		@Override
+		public V setValue(final V value) {
+			if (value == null) {
+				throw new NullPointerException("IdMap does not support null values.");
+			}
+			return IdMap.this.put(this.index, value);
+		}
+
+		@Override
+		public boolean equals(final Object o) {
+			if (!(o instanceof Entry)) {
+				return false;
+			}
+			Entry<?, ?> e = (Entry<?, ?>) o;
+			// the value is null once the mapping was removed from the map
+			return getKey().equals(e.getKey()) && Objects.equals(getValue(), e.getValue());
+		}
+
+		@Override
+		public int hashCode() {
+			return getKey().hashCode() ^ Objects.hashCode(getValue());
+		}
+
+		@Override
+		public String toString() {
+			return getKey() + "=" + getValue();
+		}
+	}
+
+	/**
+	 * Iterates over all occupied array positions, skipping empty ones.
+	 */
+	private abstract class IdMapIterator<E> implements Iterator<E> {
+
+		private int expectedModCount = IdMap.this.modCount;
+		private int nextIndex = -1;
+		private int currentIndex = -1;
+
+		IdMapIterator() {
+			findNext();
+		}
+
+		abstract E get(int index);
+
+		private void findNext() {
+			Object[] data = IdMap.this.data;
+			do {
+				this.nextIndex++;
+			} while (this.nextIndex < data.length && data[this.nextIndex] == null);
+		}
+
+		@Override
+		public boolean hasNext() {
+			return this.nextIndex < IdMap.this.data.length;
+		}
+
+		@Override
+		public E next() {
+			if (this.expectedModCount != IdMap.this.modCount) {
+				throw new ConcurrentModificationException();
+			}
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			this.currentIndex = this.nextIndex;
+			findNext();
+			return get(this.currentIndex);
+		}
+
+		@Override
+		public void remove() {
+			if (this.currentIndex < 0) {
+				throw new IllegalStateException();
+			}
+			if (this.expectedModCount != IdMap.this.modCount) {
+				throw new ConcurrentModificationException();
+			}
+			IdMap.this.remove(this.currentIndex);
+			this.expectedModCount = IdMap.this.modCount;
+			this.currentIndex = -1;
+		}
+	}
+
+}
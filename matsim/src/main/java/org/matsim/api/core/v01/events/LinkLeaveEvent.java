@@ -27,7 +27,7 @@ import org.matsim.api.core.v01.network.Link;
 import org.matsim.api.core.v01.population.Person;
 import org.matsim.vehicles.Vehicle;
 
-public class LinkLeaveEvent extends Event implements HasLinkId {
+public class LinkLeaveEvent extends Event implements HasLinkId, HasVehicleId {
 
 	public static final String EVENT_TYPE = "left link";
 	public static final String ATTRIBUTE_LINK = "link";
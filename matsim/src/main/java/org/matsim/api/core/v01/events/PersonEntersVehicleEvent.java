@@ -30,7 +30,7 @@ import org.matsim.vehicles.Vehicle;
 /**
  * @author mrieser
  */
-public class PersonEntersVehicleEvent extends Event implements HasPersonId {
+public class PersonEntersVehicleEvent extends Event implements HasPersonId, HasVehicleId {
 
 	public static final String EVENT_TYPE = "PersonEntersVehicle";
 	public static final String ATTRIBUTE_PERSON = "person";
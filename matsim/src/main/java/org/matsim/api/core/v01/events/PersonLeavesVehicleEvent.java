@@ -31,7 +31,7 @@ import org.matsim.vehicles.Vehicle;
  *
  * @author mrieser
  */
-public class PersonLeavesVehicleEvent extends Event implements HasPersonId {
+public class PersonLeavesVehicleEvent extends Event implements HasPersonId, HasVehicleId {
 
 	public static final String EVENT_TYPE = "PersonLeavesVehicle";
 	public static final String ATTRIBUTE_PERSON = "person";
@@ -31,7 +31,7 @@ import org.matsim.vehicles.Vehicle;
 /**
  * @author mrieser
  */
-public class TransitDriverStartsEvent extends Event {
+public class TransitDriverStartsEvent extends Event implements HasVehicleId {
 
 	public static final String EVENT_TYPE = "TransitDriverStarts";
 	public static final String ATTRIBUTE_DRIVER_ID = "driverId";
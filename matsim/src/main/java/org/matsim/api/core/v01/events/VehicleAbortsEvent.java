@@ -26,7 +26,7 @@ import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.network.Link;
 import org.matsim.vehicles.Vehicle;
 
-public class VehicleAbortsEvent extends Event {
+public class VehicleAbortsEvent extends Event implements HasVehicleId {
 
 	public static final String EVENT_TYPE = "vehicle aborts";
 	
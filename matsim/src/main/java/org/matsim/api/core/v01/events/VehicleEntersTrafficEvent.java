@@ -28,7 +28,7 @@ import org.matsim.api.core.v01.population.Person;
 import org.matsim.core.api.internal.HasPersonId;
 import org.matsim.vehicles.Vehicle;
 
-public class VehicleEntersTrafficEvent extends Event implements HasPersonId, HasLinkId {
+public class VehicleEntersTrafficEvent extends Event implements HasPersonId, HasLinkId, HasVehicleId {
 
 	public static final String EVENT_TYPE = "vehicle enters traffic";
 	public static final String ATTRIBUTE_VEHICLE = "vehicle";
@@ -26,6 +26,7 @@ import java.util.Map;
 
 import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.events.HasVehicleId;
 import org.matsim.api.core.v01.population.Person;
 import org.matsim.core.api.internal.HasPersonId;
 import org.matsim.vehicles.Vehicle;
@@ -35,8 +36,7 @@ import org.matsim.vehicles.Vehicle;
  * @author nagel
  *
  */
-public final class BoardingDeniedEvent extends Event implements HasPersonId 
-{
+public final class BoardingDeniedEvent extends Event implements HasPersonId, HasVehicleId {
 	public static final String EVENT_TYPE="BoardingDeniedEvent";
 	
 	public static final String ATTRIBUTE_PERSON_ID = "person";
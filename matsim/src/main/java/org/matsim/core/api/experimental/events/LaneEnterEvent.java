@@ -23,6 +23,7 @@ import java.util.Map;
 
 import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.events.HasVehicleId;
 import org.matsim.api.core.v01.network.Link;
 import org.matsim.lanes.Lane;
 import org.matsim.vehicles.Vehicle;
@@ -33,7 +34,7 @@ import org.matsim.vehicles.Vehicle;
  * @author dgrether
  *
  */
-public final class LaneEnterEvent extends Event  {
+public final class LaneEnterEvent extends Event implements HasVehicleId {
 	
 	public static final String EVENT_TYPE = "entered lane";
 	public static final String ATTRIBUTE_VEHICLE = "vehicle";
@@ -24,6 +24,7 @@ import java.util.Map;
 
 import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.events.HasVehicleId;
 import org.matsim.pt.transitSchedule.api.TransitStopFacility;
 import org.matsim.vehicles.Vehicle;
 
@@ -33,7 +34,7 @@ import org.matsim.vehicles.Vehicle;
  * Should be replaced by some more generic VehicleArrivalEvent
  * which supports both links and facilities.
  */
-public final class VehicleArrivesAtFacilityEvent extends Event {
+public final class VehicleArrivesAtFacilityEvent extends Event implements HasVehicleId {
 
 	public static final String EVENT_TYPE = "VehicleArrivesAtFacility";
 	public static final String ATTRIBUTE_VEHICLE = "vehicle";
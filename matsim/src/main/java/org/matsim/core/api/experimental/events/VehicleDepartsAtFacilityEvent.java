@@ -24,6 +24,7 @@ import java.util.Map;
 
 import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.events.HasVehicleId;
 import org.matsim.pt.transitSchedule.api.TransitStopFacility;
 import org.matsim.vehicles.Vehicle;
 
@@ -33,7 +34,7 @@ import org.matsim.vehicles.Vehicle;
  * Should be replaced by some more generic VehicleDepartsEvent
  * which supports both links and facilities.
  */
-public final class VehicleDepartsAtFacilityEvent extends Event {
+public final class VehicleDepartsAtFacilityEvent extends Event implements HasVehicleId {
 
 
 	public static final String EVENT_TYPE = "VehicleDepartsAtFacility";
@@ -156,6 +156,22 @@ public final class ConfigConsistencyCheckerImpl implements ConfigConsistencyChec
 				config.controler().getRoutingAlgorithmType() != RoutingAlgorithmType.Dijkstra ) {
 			log.warn("We don't know if non-Dijkstra routing works together with LinkToLink routing.");
 		}
+
+		if ( config.controler().getRoutingAlgorithmType() == RoutingAlgorithmType.ContractionHierarchies &&
+				config.plansCalcRoute().getRoutingRandomness() != 0. ) {
+			throw new IllegalStateException("ContractionHierarchies routing precomputes person-independent link costs " +
+					"and thus cannot be used with routing randomness. Set plansCalcRoute.routingRandomness to 0.");
+		}
+
+		if ( config.plansCalcRoute().getRouteCacheSize() > 0 && config.plansCalcRoute().getRoutingRandomness() != 0. ) {
+			throw new IllegalStateException("The route cache shares paths between persons " +
+					"and thus cannot be used with routing randomness. Set plansCalcRoute.routingRandomness to 0.");
+		}
+
+		if ( config.plansCalcRoute().getBatchedRoutingTimeBinSize() > 0. && config.plansCalcRoute().getRoutingRandomness() != 0. ) {
+			throw new IllegalStateException("Batched routing searches the paths of several persons at once " +
+					"and thus cannot be used with routing randomness. Set plansCalcRoute.routingRandomness to 0.");
+		}
 		
 	}
 
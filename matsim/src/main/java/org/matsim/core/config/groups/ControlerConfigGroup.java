@@ -27,6 +27,7 @@ import org.matsim.core.controler.OutputDirectoryHierarchy.OverwriteFileSetting;
 import org.matsim.core.utils.io.IOUtils;
 import org.matsim.core.utils.misc.StringUtils;
 
+import java.io.File;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.EnumSet;
@@ -37,9 +38,9 @@ import java.util.Set;
 public final class ControlerConfigGroup extends ReflectiveConfigGroup {
 	private static final Logger log = Logger.getLogger( ControlerConfigGroup.class );
 
-	public enum RoutingAlgorithmType {Dijkstra, AStarLandmarks, FastDijkstra, FastAStarLandmarks}
+	public enum RoutingAlgorithmType {Dijkstra, AStarLandmarks, FastDijkstra, FastAStarLandmarks, ContractionHierarchies}
 
-	public enum EventsFileFormat {xml}
+	public enum EventsFileFormat {xml, binary}
 
 	public static final String GROUP_NAME = "controler";
 
@@ -47,6 +48,7 @@ public final class ControlerConfigGroup extends ReflectiveConfigGroup {
 	private static final String FIRST_ITERATION = "firstIteration";
 	private static final String LAST_ITERATION = "lastIteration";
 	private static final String ROUTINGALGORITHM_TYPE = "routingAlgorithmType";
+	private static final String LANDMARKS_CACHE_DIRECTORY = "landmarksCacheDirectory";
 	private static final String RUNID = "runId";
 	private static final String LINKTOLINK_ROUTING_ENABLED = "enableLinkToLinkRouting";
 	/*package*/ static final String EVENTS_FILE_FORMAT = "eventsFileFormat";
@@ -56,6 +58,9 @@ public final class ControlerConfigGroup extends ReflectiveConfigGroup {
 	private static final String OVERWRITE_FILE = "overwriteFiles";
 	private static final String CREATE_GRAPHS = "createGraphs";
 	private static final String DUMP_DATA_AT_END = "dumpDataAtEnd";
+	private static final String COMPRESSION_THREADS = "compressionThreads";
+	private static final String CHECKPOINT_INTERVAL = "checkpointInterval";
+	private static final String RESUME_FROM_CHECKPOINT = "resumeFromCheckpoint";
 
 	/*package*/ static final String MOBSIM = "mobsim";
 	public enum MobsimType {qsim, JDEQSim}
@@ -67,6 +72,7 @@ public final class ControlerConfigGroup extends ReflectiveConfigGroup {
 	private int firstIteration = 0;
 	private int lastIteration = 1000;
 	private RoutingAlgorithmType routingAlgorithmType = RoutingAlgorithmType.AStarLandmarks;
+	private String landmarksCacheDirectory = null;
 
 	private boolean linkToLinkRoutingEnabled = false;
 
@@ -81,6 +87,9 @@ public final class ControlerConfigGroup extends ReflectiveConfigGroup {
 	private int writeSnapshotsInterval = 1;
 	private boolean createGraphs = true;
 	private boolean dumpDataAtEnd = true;
+	private int compressionThreads = 1;
+	private int checkpointInterval = 0;
+	private String resumeFromCheckpoint = null;
 	private OverwriteFileSetting overwriteFileSetting = OverwriteFileSetting.failIfDirectoryExists;
 
 	public ControlerConfigGroup() {
@@ -91,9 +100,15 @@ public final class ControlerConfigGroup extends ReflectiveConfigGroup {
 	public final Map<String, String> getComments() {
 		Map<String,String> map = super.getComments();
 		map.put(ROUTINGALGORITHM_TYPE, "The type of routing (least cost path) algorithm used, may have the values: " + RoutingAlgorithmType.Dijkstra + ", " + 
-				RoutingAlgorithmType.FastDijkstra + ", " + RoutingAlgorithmType.AStarLandmarks + " or "  + RoutingAlgorithmType.FastAStarLandmarks);
+				RoutingAlgorithmType.FastDijkstra + ", " + RoutingAlgorithmType.AStarLandmarks + ", " + RoutingAlgorithmType.FastAStarLandmarks + " or "
+				+ RoutingAlgorithmType.ContractionHierarchies + ". " + RoutingAlgorithmType.ContractionHierarchies + " needs "
+				+ "plansCalcRoute.routingRandomness = 0, since it does not consider person-dependent travel disutilities.");
+		map.put(LANDMARKS_CACHE_DIRECTORY, "Default=null; directory in which the landmark travel costs of " + RoutingAlgorithmType.AStarLandmarks + " and "
+				+ RoutingAlgorithmType.FastAStarLandmarks + " are stored. If it contains the travel costs for the same network and travel disutility "
+				+ "from a previous run, they are read from there instead of being calculated.");
 		map.put(RUNID, "An identifier for the current run which is used as prefix for output files and mentioned in output xml files etc.");
-		map.put(EVENTS_FILE_FORMAT, "Default="+EventsFileFormat.xml+"; Specifies the file format for writing events. Currently supported: xml."+IOUtils.NATIVE_NEWLINE+ "\t\t" +
+		map.put(EVENTS_FILE_FORMAT, "Default="+EventsFileFormat.xml+"; Specifies the file format for writing events. Currently supported: xml, binary "
+				+ "(columnar, much faster to write and read, see EventWriterBinary)."+IOUtils.NATIVE_NEWLINE+ "\t\t" +
 				"Multiple values can be specified separated by commas (',').");
 		map.put(WRITE_EVENTS_INTERVAL, "iterationNumber % writeEventsInterval == 0 defines in which iterations events are written " +
 				"to a file. `0' disables events writing completely.");
@@ -120,6 +135,14 @@ public final class ControlerConfigGroup extends ReflectiveConfigGroup {
 		map.put(WRITE_SNAPSHOTS_INTERVAL, "iterationNumber % " + WRITE_SNAPSHOTS_INTERVAL + " == 0 defines in which iterations snapshots are written " +
 				"to a file. `0' disables snapshots writing completely");
 		map.put(DUMP_DATA_AT_END, "true if at the end of a run, plans, network, config etc should be dumped to a file");
+		map.put(COMPRESSION_THREADS, "Default=1; number of threads used to compress the events and plans files, if they end with .gz or .zst. With more than one thread, gzip files are written as multi-member gzip files, which can be read by all gzip tools.");
+		map.put(CHECKPOINT_INTERVAL, "Default=0; iterationNumber % checkpointInterval == 0 defines after which iterations a checkpoint is "
+				+ "written to the output directory. It contains the plans with their scores, the observed travel times and the iteration, "
+				+ "and replaces the previous checkpoint. `0' disables checkpoints.");
+		map.put(RESUME_FROM_CHECKPOINT, "Default=null; a checkpoint written by an earlier run with the same config. If set, the run "
+				+ "continues with the state and the iteration after the checkpoint, as if the earlier run had not stopped. "
+				+ "To continue in the output directory of the earlier run, set " + OVERWRITE_FILE + " to "
+				+ OverwriteFileSetting.overwriteExistingFiles + ".");
 		return map;
 	}
 
@@ -164,6 +187,16 @@ public final class ControlerConfigGroup extends ReflectiveConfigGroup {
 		this.routingAlgorithmType = type;
 	}
 
+	@StringGetter( LANDMARKS_CACHE_DIRECTORY )
+	public String getLandmarksCacheDirectory() {
+		return this.landmarksCacheDirectory;
+	}
+
+	@StringSetter( LANDMARKS_CACHE_DIRECTORY )
+	public void setLandmarksCacheDirectory(final String landmarksCacheDirectory) {
+		this.landmarksCacheDirectory = landmarksCacheDirectory;
+	}
+
 	@StringGetter( RUNID )
 	public String getRunId() {
 		return this.runId;
@@ -342,6 +375,36 @@ public final class ControlerConfigGroup extends ReflectiveConfigGroup {
 	public void setDumpDataAtEnd(boolean dumpDataAtEnd) {
 		this.dumpDataAtEnd = dumpDataAtEnd;
 	}
+
+	@StringGetter( COMPRESSION_THREADS )
+	public int getCompressionThreads() {
+		return this.compressionThreads;
+	}
+
+	@StringSetter( COMPRESSION_THREADS )
+	public void setCompressionThreads(final int compressionThreads) {
+		this.compressionThreads = compressionThreads;
+	}
+
+	@StringGetter( CHECKPOINT_INTERVAL )
+	public int getCheckpointInterval() {
+		return this.checkpointInterval;
+	}
+
+	@StringSetter( CHECKPOINT_INTERVAL )
+	public void setCheckpointInterval(final int checkpointInterval) {
+		this.checkpointInterval = checkpointInterval;
+	}
+
+	@StringGetter( RESUME_FROM_CHECKPOINT )
+	public String getResumeFromCheckpoint() {
+		return this.resumeFromCheckpoint;
+	}
+
+	@StringSetter( RESUME_FROM_CHECKPOINT )
+	public void setResumeFromCheckpoint(final String resumeFromCheckpoint) {
+		this.resumeFromCheckpoint = resumeFromCheckpoint;
+	}
 	// ---
 	int writePlansUntilIteration = 1 ;
 	public int getWritePlansUntilIteration() {
@@ -360,6 +423,18 @@ public final class ControlerConfigGroup extends ReflectiveConfigGroup {
 	}
 	@Override 
 	protected void checkConsistency(Config config) {
+		if ( this.compressionThreads < 1 ) {
+			throw new RuntimeException( COMPRESSION_THREADS + " must be at least 1, but is " + this.compressionThreads );
+		}
+		if ( this.checkpointInterval < 0 ) {
+			throw new RuntimeException( CHECKPOINT_INTERVAL + " must not be negative, but is " + this.checkpointInterval );
+		}
+		if ( this.resumeFromCheckpoint != null && this.overwriteFileSetting == OverwriteFileSetting.deleteDirectoryIfExists
+				&& new File( this.resumeFromCheckpoint ).getAbsoluteFile().toPath().normalize()
+				.startsWith( new File( this.outputDirectory ).getAbsoluteFile().toPath().normalize() ) ) {
+			throw new RuntimeException( "the checkpoint to resume from, " + this.resumeFromCheckpoint + ", is in the output directory, "
+					+ "which would be deleted with " + OVERWRITE_FILE + "=" + this.overwriteFileSetting + "." );
+		}
 		if ( config.controler().getOverwriteFileSetting() == OverwriteFileSetting.overwriteExistingFiles ) {
 			log.warn( "setting overwriting behavior to "+overwriteFileSetting );
 			log.warn( "this is not recommended, as it might result in a directory containing output from several model runs" );
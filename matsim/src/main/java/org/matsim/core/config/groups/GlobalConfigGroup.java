@@ -42,12 +42,14 @@ public final class GlobalConfigGroup extends ReflectiveConfigGroup {
 	private static final String RANDOM_SEED = "randomSeed";
 	private static final String NUMBER_OF_THREADS = "numberOfThreads";
 	private static final String COORDINATE_SYSTEM = "coordinateSystem";
+	private static final String DYNAMIC_REPLANNING_SCHEDULING = "dynamicReplanningScheduling";
 
 	private long randomSeed = 4711L;
 	@PositiveOrZero
 	private int numberOfThreads = 2;
 	private String coordinateSystem = "Atlantis" ;
 	// see https://matsim.atlassian.net/browse/MATSIM-898
+	private boolean dynamicReplanningScheduling = false;
 
 	@Override
 	public Map<String, String> getComments() {
@@ -55,6 +57,10 @@ public final class GlobalConfigGroup extends ReflectiveConfigGroup {
 		map.put(NUMBER_OF_THREADS, "\"global\" number of threads.  "
 				+ "This number is used, e.g., for replanning, but NOT in the mobsim.  "
 				+ "This can typically be set to as many cores as you have available, or possibly even slightly more.") ;
+		map.put(DYNAMIC_REPLANNING_SCHEDULING, "If true, the replanning threads take the plans in chunks from a common queue, "
+				+ "which keeps all threads busy if some plans take much longer than others.  "
+				+ "As the plans are no longer handled by the same thread in every run, results may differ between runs.  "
+				+ "If false, the plans are distributed equally to the threads.") ;
 		return map ;
 	}
 
@@ -88,6 +94,15 @@ public final class GlobalConfigGroup extends ReflectiveConfigGroup {
 		this.coordinateSystem = coordinateSystem;
 	}
 
+	@StringGetter( DYNAMIC_REPLANNING_SCHEDULING )
+	public boolean isDynamicReplanningScheduling() {
+		return this.dynamicReplanningScheduling;
+	}
+	@StringSetter( DYNAMIC_REPLANNING_SCHEDULING )
+	public void setDynamicReplanningScheduling(final boolean dynamicReplanningScheduling) {
+		this.dynamicReplanningScheduling = dynamicReplanningScheduling;
+	}
+
 	private static final String INSITING_ON_DEPRECATED_CONFIG_VERSION = "insistingOnDeprecatedConfigVersion" ;
 	@StringGetter( INSITING_ON_DEPRECATED_CONFIG_VERSION )
 	public final boolean isInsistingOnDeprecatedConfigVersion() { return this.insistingOnDeprecatedConfigVersion ; }
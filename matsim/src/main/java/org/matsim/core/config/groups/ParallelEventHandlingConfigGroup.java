@@ -44,6 +44,12 @@ public final class ParallelEventHandlingConfigGroup extends ReflectiveConfigGrou
 	
 	private final static String ONE_THREAD_PER_HANDLER = "oneThreadPerHandler"; 
 	private Boolean oneThreadPerHandler = false;
+
+	private final static String SHARDED_EVENT_HANDLING = "shardedEventHandling";
+	private Boolean shardedEventHandling = false;
+
+	private final static String TIME_EVENT_HANDLERS = "timeEventHandlers";
+	private boolean timeEventHandlers = false;
 	
 	private boolean locked = false;
 
@@ -60,6 +66,11 @@ public final class ParallelEventHandlingConfigGroup extends ReflectiveConfigGrou
 				+ "before the next time step is simulated. E.g. neccessary when within-day replanning is used.");
 		comments.put(ONE_THREAD_PER_HANDLER, "If enabled, each event handler is assigned to its own thread. Note that enabling this feature disabled the " + NUMBER_OF_THREADS + " option! "
 				+ "This feature is still experimental!");
+		comments.put(SHARDED_EVENT_HANDLING, "If enabled, events are passed to the event handlers through a lock-free ring buffer. Regular event handlers run on one thread, "
+				+ "handlers that declare a partition key (PartitionedEventHandler) run on " + NUMBER_OF_THREADS + " parallel shards. Events are always synchronized on sim steps. "
+				+ "Takes precedence over " + ONE_THREAD_PER_HANDLER + ". This feature is still experimental!");
+		comments.put(TIME_EVENT_HANDLERS, "The time spent in each event handler is written to the iteration metrics. By default, it is measured for a sample "
+				+ "of the events and extrapolated. If enabled, it is measured for every event, which reads the clock twice per event and handler.");
 		return comments;
 	}
 
@@ -127,6 +138,34 @@ public final class ParallelEventHandlingConfigGroup extends ReflectiveConfigGrou
 		}
 	}
 	
+	@StringGetter( SHARDED_EVENT_HANDLING )
+	public Boolean getShardedEventHandling() {
+		return this.shardedEventHandling;
+	}
+
+	@StringSetter( SHARDED_EVENT_HANDLING )
+	public void setShardedEventHandling(Boolean shardedEventHandling) {
+		if ( !this.locked ) {
+			this.shardedEventHandling = shardedEventHandling;
+		} else {
+			throw new RuntimeException("it is too late in the control flow to modify this parameter");
+		}
+	}
+	
+	@StringGetter( TIME_EVENT_HANDLERS )
+	public boolean isTimeEventHandlers() {
+		return this.timeEventHandlers;
+	}
+
+	@StringSetter( TIME_EVENT_HANDLERS )
+	public void setTimeEventHandlers(boolean timeEventHandlers) {
+		if ( !this.locked ) {
+			this.timeEventHandlers = timeEventHandlers;
+		} else {
+			throw new RuntimeException("it is too late in the control flow to modify this parameter");
+		}
+	}
+
 	public void makeLocked() {
 		this.locked = true;
 	}
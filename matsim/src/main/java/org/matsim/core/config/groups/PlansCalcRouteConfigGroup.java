@@ -77,6 +77,14 @@ public final class PlansCalcRouteConfigGroup extends ConfigGroup {
 	
 	// ---
 
+	private static final String BATCHED_ROUTING_TIME_BIN_SIZE = "batchedRoutingTimeBinSize" ;
+	private double batchedRoutingTimeBinSize = 0. ;
+
+	private static final String ROUTE_CACHE_SIZE = "routeCacheSize" ;
+	private int routeCacheSize = 0 ;
+
+	// ---
+
 	public static class ModeRoutingParams extends ReflectiveConfigGroup implements MatsimParameters {
 		public static final String SET_TYPE = "teleportedModeParameters";
 		public static final String MODE = "mode";
@@ -396,6 +404,10 @@ public final class PlansCalcRouteConfigGroup extends ConfigGroup {
 			setTeleportedModeSpeed(TransportMode.bike, Double.parseDouble(value));
 		} else if (UNDEFINED_MODE_SPEED.equals(key)) {
 			setTeleportedModeSpeed(UNDEFINED, Double.parseDouble(value));
+		} else if (ROUTE_CACHE_SIZE.equals(key)) {
+			setRouteCacheSize(Integer.parseInt(value));
+		} else if (BATCHED_ROUTING_TIME_BIN_SIZE.equals(key)) {
+			setBatchedRoutingTimeBinSize(Double.parseDouble(value));
 		} else if (NETWORK_MODES.equals(key)) {
 			setNetworkModes(Arrays.asList(CollectionUtils.stringToArray(value)));
 		} else if (key.startsWith(TELEPORTED_MODE_SPEEDS)) {
@@ -411,6 +423,8 @@ public final class PlansCalcRouteConfigGroup extends ConfigGroup {
 	public final Map<String, String> getParams() {
 		Map<String, String> map = super.getParams();
 		map.put( NETWORK_MODES, CollectionUtils.arrayToString(this.networkModes.toArray(new String[this.networkModes.size()])));
+		map.put( BATCHED_ROUTING_TIME_BIN_SIZE, Double.toString(this.batchedRoutingTimeBinSize) );
+		map.put( ROUTE_CACHE_SIZE, Integer.toString(this.routeCacheSize) );
 
 		//		map.put( BEELINE_DISTANCE_FACTOR, Double.toString(this.getBeelineDistanceFactor()) );
 
@@ -436,6 +450,16 @@ public final class PlansCalcRouteConfigGroup extends ConfigGroup {
 	        map.put(RANDOMNESS, "strength of the randomness for the utility of money in routing under toll.  "
 	          		+ "Leads to Pareto-optimal route with randomly drawn money-vs-other-attributes tradeoff. "
 	          		+ "Technically the width parameter of a log-normal distribution. 3.0 seems to be a good value. " ) ;
+		map.put(BATCHED_ROUTING_TIME_BIN_SIZE, "if > 0, re-routing routes all network trips of a replanning thread which start at the same node "
+				+ "with a departure time in the same time bin of this size (in seconds) with a single search, at the start of the time bin. "
+				+ "This search is a plain Dijkstra, independent of the routingAlgorithmType, done with the first person of the batch for all its paths. "
+				+ "Cannot be used with routingRandomness, as the paths are shared between persons. "
+				+ "Trips which are the only ones of their start node and time bin are routed as usual. "
+				+ "Not used with insertingAccessEgressWalk. Default is 0, i.e. every trip is routed on its own.") ;
+		map.put(ROUTE_CACHE_SIZE, "if > 0, the network routers cache up to this number of paths by start node, end node and time bin "
+				+ "of the travel time calculator, and return a cached path for all later queries in the same time bin. "
+				+ "Cannot be used with routingRandomness, as the paths are shared between persons. "
+				+ "The cache is emptied at the start of each iteration. Default is 0, i.e. no cache.") ;
 		return map;
 	}
 
@@ -535,6 +559,24 @@ public final class PlansCalcRouteConfigGroup extends ConfigGroup {
 		this.routingRandomness = routingRandomness;
 	}
 
+	@StringGetter(BATCHED_ROUTING_TIME_BIN_SIZE)
+	public double getBatchedRoutingTimeBinSize() {
+		return batchedRoutingTimeBinSize;
+	}
+	@StringSetter(BATCHED_ROUTING_TIME_BIN_SIZE)
+	public void setBatchedRoutingTimeBinSize(double batchedRoutingTimeBinSize) {
+		this.batchedRoutingTimeBinSize = batchedRoutingTimeBinSize;
+	}
+
+	@StringGetter(ROUTE_CACHE_SIZE)
+	public int getRouteCacheSize() {
+		return routeCacheSize;
+	}
+	@StringSetter(ROUTE_CACHE_SIZE)
+	public void setRouteCacheSize(int routeCacheSize) {
+		this.routeCacheSize = routeCacheSize;
+	}
+
 	@Override protected void checkConsistency(Config config) {
 		super.checkConsistency(config);
 
@@ -87,6 +87,12 @@ public final class PlansConfigGroup extends ReflectiveConfigGroup {
 		comments.put(REMOVING_UNNECESSARY_PLAN_ATTRIBUTES, "(not tested) will remove plan attributes that are presumably not used, such as " +
                 "activityStartTime. default=false. Use with Caution!");
 
+		comments.put(USING_COMPACT_POPULATION, "If true, the activities, legs and routes of all plans are stored in primitive arrays " +
+				"instead of one object per plan element, which needs much less memory for large populations. default=false.");
+
+		comments.put(READING_IN_PARALLEL, "If true, the persons of population_v6 files are created by global.numberOfThreads " +
+				"threads while the file is parsed. default=false.");
+
 		comments.put( INPUT_CRS , "The Coordinates Reference System in which the coordinates are expressed in the input file." +
 				" At import, the coordinates will be converted to the coordinate system defined in \"global\", and will" +
 				"be converted back at export. If not specified, no conversion happens." );
@@ -180,6 +186,32 @@ public final class PlansConfigGroup extends ReflectiveConfigGroup {
 		this.removingUnneccessaryPlanAttributes = removingUnneccessaryPlanAttributes;
 	}
 
+	// ---
+
+	private static final String USING_COMPACT_POPULATION = "usingCompactPopulation";
+	private boolean usingCompactPopulation = false;
+	@StringGetter(USING_COMPACT_POPULATION)
+	public boolean isUsingCompactPopulation() {
+		return this.usingCompactPopulation;
+	}
+	@StringSetter(USING_COMPACT_POPULATION)
+	public void setUsingCompactPopulation(final boolean usingCompactPopulation) {
+		this.usingCompactPopulation = usingCompactPopulation;
+	}
+
+	// ---
+
+	private static final String READING_IN_PARALLEL = "readingInParallel";
+	private boolean readingInParallel = false;
+	@StringGetter(READING_IN_PARALLEL)
+	public boolean isReadingInParallel() {
+		return this.readingInParallel;
+	}
+	@StringSetter(READING_IN_PARALLEL)
+	public void setReadingInParallel(final boolean readingInParallel) {
+		this.readingInParallel = readingInParallel;
+	}
+
 
 	@StringGetter( INPUT_CRS )
 	public String getInputCRS() {
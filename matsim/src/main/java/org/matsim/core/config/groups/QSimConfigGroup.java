@@ -270,6 +270,12 @@ public final class QSimConfigGroup extends ReflectiveConfigGroup {
 		map.put(USE_PERSON_ID_FOR_MISSING_VEHICLE_ID, "If a route does not reference a vehicle, agents will use the vehicle with the same id as their own.");
 		map.put(USING_THREADPOOL, "if the qsim should use as many runners as there are threads (Christoph's dissertation version)"
 				+ " or more of them, together with a thread pool (seems to be faster in some situations, but is not tested).") ;
+		map.put(ADAPTIVE_LOAD_BALANCING, "If true, the time every QNetsimEngineRunner needs per time step is measured, and nodes together "
+				+ "with their outgoing links are moved from the busiest to the least busy runners every " + LOAD_BALANCING_INTERVAL + " seconds. "
+				+ "Only has an effect with more than one thread.  The processing order of nodes and links then depends on the run times, "
+				+ "so results are not exactly reproducible.  Default is false.") ;
+		map.put(LOAD_BALANCING_INTERVAL, "time in seconds.  Simulated time between two load balancing steps if "
+				+ ADAPTIVE_LOAD_BALANCING + " is true.") ;
 		map.put(FAST_CAPACITY_UPDATE, "If false, the qsim accumulates fractional flows up to one flow unit in every time step.  If true, "
 				+ "flows are updated only if an agent wants to enter the link or an agent is added to buffer. "
 				+ "Default is true.") ;
@@ -534,6 +540,34 @@ public final class QSimConfigGroup extends ReflectiveConfigGroup {
 		this.usingThreadpool = val ;
 	}
 
+	private static final String ADAPTIVE_LOAD_BALANCING = "usingAdaptiveLoadBalancing" ;
+	private boolean usingAdaptiveLoadBalancing = false ;
+	@StringGetter(ADAPTIVE_LOAD_BALANCING)
+	public boolean isUsingAdaptiveLoadBalancing() {
+		return this.usingAdaptiveLoadBalancing ;
+	}
+	@StringSetter(ADAPTIVE_LOAD_BALANCING)
+	public void setUsingAdaptiveLoadBalancing( boolean val ) {
+		testForLocked();
+		this.usingAdaptiveLoadBalancing = val ;
+	}
+
+	private static final String LOAD_BALANCING_INTERVAL = "loadBalancingInterval" ;
+	@Positive
+	private double loadBalancingInterval = 60. ;
+	@StringGetter(LOAD_BALANCING_INTERVAL)
+	public double getLoadBalancingInterval() {
+		return this.loadBalancingInterval ;
+	}
+	@StringSetter(LOAD_BALANCING_INTERVAL)
+	public void setLoadBalancingInterval( double val ) {
+		testForLocked();
+		if ( val <= 0. ) {
+			throw new IllegalArgumentException( LOAD_BALANCING_INTERVAL + " must be positive, but was " + val ) ;
+		}
+		this.loadBalancingInterval = val ;
+	}
+
 	private static final String USE_LANES="useLanes" ;
 	private boolean useLanes = false ;
 
@@ -44,11 +44,15 @@ public final class TravelTimeCalculatorConfigGroup extends ReflectiveConfigGroup
 
 	public enum TravelTimeCalculatorType {TravelTimeCalculatorArray,TravelTimeCalculatorHashMap}
 
+	public enum TravelTimeSnapshotType {none, heap, memoryMapped}
+
 	private static final String TRAVEL_TIME_CALCULATOR = "travelTimeCalculator";
 	private static final String TRAVEL_TIME_BIN_SIZE = "travelTimeBinSize";
 	private static final String TRAVEL_TIME_AGGREGATOR = "travelTimeAggregator";
 	private static final String TRAVEL_TIME_GETTER = "travelTimeGetter";
 	private static final String MAX_TIME = "maxTime";
+	private static final String TRAVEL_TIME_SNAPSHOT = "travelTimeSnapshot";
+	private static final String COLLECT_LINK_TRAVELTIMES_IN_MOBSIM = "collectLinkTravelTimesInMobsim";
 
 	private static final String CALCULATE_LINK_TRAVELTIMES = "calculateLinkTravelTimes";
 	private static final String CALCULATE_LINKTOLINK_TRAVELTIMES = "calculateLinkToLinkTravelTimes";
@@ -62,6 +66,8 @@ public final class TravelTimeCalculatorConfigGroup extends ReflectiveConfigGroup
 	private String travelTimeGetter = "average";
 	private int traveltimeBinSize = 15 * 60; // use a default of 15min time-bins for analyzing the travel times
 	private int maxTime = 30 * 3600;
+	private TravelTimeSnapshotType travelTimeSnapshot = TravelTimeSnapshotType.none;
+	private boolean collectLinkTravelTimesInMobsim = false;
 
 	private boolean calculateLinkTravelTimes = true;
 	private boolean calculateLinkToLinkTravelTimes = false;
@@ -90,6 +96,13 @@ public final class TravelTimeCalculatorConfigGroup extends ReflectiveConfigGroup
 							 "respected by the travel time collector. 'car' is default which includes also buses from the pt simulation module.");
 		map.put(FILTERMODES, "(only for backwards compatiblity; only used if " + SEPARATEMODES + "==false)  Only modes included in analyzedModes are included." ) ;
 		map.put(SEPARATEMODES, "(only for backwards compatibility) If false, link travel times are measured and aggregated over all vehicles using the link." ) ;
+		map.put(TRAVEL_TIME_SNAPSHOT, "If not none, the link travel times are frozen into a read-only float matrix after the mobsim, " +
+				"which is shared by all replanning threads without map lookups or locks. 'memoryMapped' keeps the matrix in a " +
+				"temporary file outside the heap. Possible values: " + Arrays.stream( TravelTimeSnapshotType.values() ).map( type -> type.toString() + ' ' ).collect( Collectors.joining() ) );
+		map.put(COLLECT_LINK_TRAVELTIMES_IN_MOBSIM, "If true and the mobsim is the qsim, the link travel times are collected by the qsim " +
+				"when vehicles leave links, instead of from link enter and leave events. The results are the same, but cheaper to " +
+				"compute. The travel times of an iteration are only available after its mobsim, so this must not be used with " +
+				"within-day replanning based on the current travel times.");
 		map.put( TRAVEL_TIME_CALCULATOR, "possible values: " + Arrays.stream( TravelTimeCalculatorType.values() ).map( type -> type.toString() + ' ' ).collect( Collectors.joining() ) );
 		return map;
 	}
@@ -155,6 +168,24 @@ public final class TravelTimeCalculatorConfigGroup extends ReflectiveConfigGroup
 		return maxTime;
 	}
 	// ---
+	@StringSetter( TRAVEL_TIME_SNAPSHOT )
+	public void setTravelTimeSnapshotType(final TravelTimeSnapshotType travelTimeSnapshot) {
+		this.travelTimeSnapshot = travelTimeSnapshot;
+	}
+	@StringGetter( TRAVEL_TIME_SNAPSHOT )
+	public TravelTimeSnapshotType getTravelTimeSnapshotType() {
+		return this.travelTimeSnapshot;
+	}
+	// ---
+	@StringSetter( COLLECT_LINK_TRAVELTIMES_IN_MOBSIM )
+	public void setCollectLinkTravelTimesInMobsim(final boolean collectLinkTravelTimesInMobsim) {
+		this.collectLinkTravelTimesInMobsim = collectLinkTravelTimesInMobsim;
+	}
+	@StringGetter( COLLECT_LINK_TRAVELTIMES_IN_MOBSIM )
+	public boolean isCollectLinkTravelTimesInMobsim() {
+		return this.collectLinkTravelTimesInMobsim;
+	}
+	// ---
 	@StringGetter( CALCULATE_LINK_TRAVELTIMES )
 	public boolean isCalculateLinkTravelTimes() {
 		return this.calculateLinkTravelTimes;
@@ -20,6 +20,7 @@
 package org.matsim.core.controler;
 
 import org.apache.log4j.Logger;
+import org.matsim.analysis.IterationMetrics;
 import org.matsim.analysis.IterationStopWatch;
 import org.matsim.core.config.Config;
 import org.matsim.core.controler.listener.ControlerListener;
@@ -107,8 +108,31 @@ import org.matsim.core.gbl.MatsimRandom;
      */
     protected abstract boolean continueIterations(int iteration);
 
+    /**
+     * Writes the state of the run after the given iteration, so that it can be resumed from there.
+     * Does nothing by default; controllers that support resuming override this together with
+     * {@link #restoreCheckpoint(String)}.
+     */
+    protected void writeCheckpoint(int iteration) {
+    }
+
+    /**
+     * Restores the state of the run from the given checkpoint.
+     *
+     * @return the iteration after which the checkpoint was written
+     */
+    protected int restoreCheckpoint(String filename) {
+        throw new IllegalStateException("cannot resume from checkpoint " + filename + ": "
+                + getClass().getSimpleName() + " does not support checkpoints.");
+    }
+
     private void doIterations(Config config) throws MatsimRuntimeModifications.UnexpectedShutdownException {
-        for (int iteration = config.controler().getFirstIteration(); continueIterations(iteration); iteration++) {
+        int firstIteration = config.controler().getFirstIteration();
+        if (config.controler().getResumeFromCheckpoint() != null) {
+            firstIteration = restoreCheckpoint(config.controler().getResumeFromCheckpoint()) + 1;
+            log.info(MARKER + "resuming the run with iteration " + firstIteration);
+        }
+        for (int iteration = firstIteration; continueIterations(iteration); iteration++) {
             iteration(config, iteration);
         }
     }
@@ -118,6 +142,7 @@ import org.matsim.core.gbl.MatsimRandom;
 
     private void iteration(final Config config, final int iteration) throws MatsimRuntimeModifications.UnexpectedShutdownException {
         this.thisIteration = iteration;
+        IterationMetrics.reset();
         this.getStopwatch().beginIteration(iteration);
 
         log.info(Controler.DIVIDER);
@@ -159,8 +184,19 @@ import org.matsim.core.gbl.MatsimRandom;
             }
         });
 
+        final int checkpointInterval = config.controler().getCheckpointInterval();
+        if (checkpointInterval > 0 && iteration % checkpointInterval == 0) {
+            iterationStep("checkpoint", new Runnable() {
+                @Override
+                public void run() {
+                    writeCheckpoint(iteration);
+                }
+            });
+        }
+
         this.getStopwatch().endIteration();
         this.getStopwatch().writeTextFile(this.getControlerIO().getOutputFilename("stopwatch"));
+        IterationMetrics.writeIteration(iteration, this.getControlerIO().getOutputFilename(IterationMetrics.FILENAME));
         if (config.controler().isCreateGraphs()) {
             this.getStopwatch().writeGraphFile(this.getControlerIO().getOutputFilename("stopwatch"));
         }
@@ -84,6 +84,7 @@ public abstract class AbstractModule implements Module {
 	private Multibinder<SnapshotWriter> snapshotWriterMultibinder;
 	private MapBinder<Class<?>, AttributeConverter<?>> attributeConverterMapBinder;
 	private Multibinder<AbstractQSimModule> qsimModulesMultibinder;
+	private Multibinder<Checkpointable> checkpointableMultibinder;
 
 	@Inject
 	com.google.inject.Injector bootstrapInjector;
@@ -115,6 +116,7 @@ public abstract class AbstractModule implements Module {
 						new TypeLiteral<Class<?>>(){},
 						new TypeLiteral<AttributeConverter<?>>() {} );
 		this.qsimModulesMultibinder = Multibinder.newSetBinder(this.binder, AbstractQSimModule.class);
+		this.checkpointableMultibinder = Multibinder.newSetBinder(this.binder, Checkpointable.class);
 		this.install();
 	}
 
@@ -146,6 +148,15 @@ public abstract class AbstractModule implements Module {
 		return controlerListenerMultibinder.addBinding();
 	}
 
+	/**
+	 * Adds state which is carried from one iteration to the next and thus needs to be part of checkpoints.
+	 *
+	 * @see Checkpointable
+	 */
+	protected final LinkedBindingBuilder<Checkpointable> addCheckpointableBinding() {
+		return checkpointableMultibinder.addBinding();
+	}
+
 	/**
 	 * See {@link tutorial.programming.planStrategyForRemoval.RunPlanSelectorForRemovalExample} for an example.
 	 * 
@@ -0,0 +1,54 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.controler;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import org.matsim.core.config.groups.ControlerConfigGroup;
+
+/**
+ * State which is carried from one iteration to the next, e.g. the plans or the observed travel times, and thus needs to
+ * be written to checkpoints, see {@link ControlerConfigGroup#getCheckpointInterval()}. A run resumed from a checkpoint
+ * continues with exactly this state. Everything else, e.g. the statistics collected by analysis listeners over the
+ * iterations, starts afresh.
+ * <br>
+ * Bind implementations with {@link AbstractModule#addCheckpointableBinding()}.
+ */
+public interface Checkpointable {
+
+	/**
+	 * @return the name identifying the state in the checkpoint, unique within a run
+	 */
+	String getCheckpointName();
+
+	/**
+	 * Writes the state at the end of an iteration.
+	 */
+	void writeCheckpoint(DataOutput out) throws IOException;
+
+	/**
+	 * Replaces the state by the one written with {@link #writeCheckpoint(DataOutput)}. This is called after the scenario
+	 * was prepared for the simulation and before the first resumed iteration starts.
+	 */
+	void readCheckpoint(DataInput in) throws IOException;
+
+}
@@ -0,0 +1,177 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.controler;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import javax.inject.Inject;
+
+import org.apache.log4j.Logger;
+import org.matsim.core.config.groups.ControlerConfigGroup;
+import org.matsim.core.config.groups.GlobalConfigGroup;
+import org.matsim.core.gbl.MatsimRandom;
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.core.utils.io.UncheckedIOException;
+
+/**
+ * Writes the {@link Checkpointable} state of a run to a checkpoint, and restores it when the run is resumed, see
+ * {@link ControlerConfigGroup#getCheckpointInterval()} and {@link ControlerConfigGroup#getResumeFromCheckpoint()}.
+ * <br>
+ * A new checkpoint is first written to a temporary file, which then replaces the previous checkpoint, so there is always
+ * one complete checkpoint even if the run dies while writing.
+ * <br>
+ * Random numbers need not be part of the checkpoint, since the controler re-seeds {@link MatsimRandom} from the random
+ * seed and the iteration at the start of each iteration. Neither do the weights of the replanning strategies, which the
+ * strategy manager derives from the iteration.
+ * <br>
+ * File layout (all numbers big-endian, compressed as a whole):
+ * <pre>
+ * MAGIC VERSION int iteration, long random seed
+ * int nOfStates, nOfStates * (UTF name, state as written by the checkpointable)
+ * MAGIC
+ * </pre>
+ */
+/* deliberately package */ final class Checkpointing {
+	private static final Logger log = Logger.getLogger(Checkpointing.class);
+
+	static final byte[] MAGIC = "MATSIMCP".getBytes(StandardCharsets.US_ASCII);
+	static final int VERSION = 1;
+
+	private final long randomSeed;
+	private final OutputDirectoryHierarchy controlerIO;
+	private final Map<String, Checkpointable> checkpointables = new TreeMap<>();
+
+	@Inject
+	Checkpointing(final GlobalConfigGroup globalConfig, final OutputDirectoryHierarchy controlerIO,
+			final Set<Checkpointable> checkpointables) {
+		this.randomSeed = globalConfig.getRandomSeed();
+		this.controlerIO = controlerIO;
+		for (Checkpointable checkpointable : checkpointables) {
+			Checkpointable previous = this.checkpointables.put(checkpointable.getCheckpointName(), checkpointable);
+			if (previous != null) {
+				throw new IllegalStateException("there are two states named " + checkpointable.getCheckpointName() + " in the checkpoint: "
+						+ previous.getClass().getName() + " and " + checkpointable.getClass().getName());
+			}
+		}
+	}
+
+	/**
+	 * Writes the state after the given iteration, replacing the previous checkpoint.
+	 */
+	void write(final int iteration) {
+		String filename = this.controlerIO.getOutputFilename(Controler.FILENAME_CHECKPOINT);
+		String incompleteFilename = this.controlerIO.getOutputFilename("incomplete_" + Controler.FILENAME_CHECKPOINT);
+		log.info("writing checkpoint after iteration " + iteration + " to " + filename);
+		try (DataOutputStream out = new DataOutputStream(IOUtils.getOutputStream(incompleteFilename))) {
+			out.write(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(iteration);
+			out.writeLong(this.randomSeed);
+			out.writeInt(this.checkpointables.size());
+			for (Map.Entry<String, Checkpointable> e : this.checkpointables.entrySet()) {
+				out.writeUTF(e.getKey());
+				e.getValue().writeCheckpoint(out);
+			}
+			out.write(MAGIC);
+		} catch (IOException e) {
+			throw new UncheckedIOException("could not write checkpoint " + incompleteFilename, e);
+		}
+
+		Path incomplete = Paths.get(incompleteFilename);
+		Path complete = Paths.get(filename);
+		try {
+			try {
+				Files.move(incomplete, complete, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(incomplete, complete, StandardCopyOption.REPLACE_EXISTING);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException("could not replace checkpoint " + filename, e);
+		}
+	}
+
+	/**
+	 * Restores the state from the checkpoint.
+	 *
+	 * @return the iteration after which the checkpoint was written
+	 */
+	int restore(final String filename) {
+		log.info("resuming from checkpoint " + filename);
+		try (DataInputStream in = new DataInputStream(IOUtils.getInputStream(filename))) {
+			readMagic(in, filename);
+			int version = in.readInt();
+			if (version != VERSION) {
+				throw new IllegalArgumentException("unsupported version " + version + " of checkpoint " + filename);
+			}
+			int iteration = in.readInt();
+			long randomSeed = in.readLong();
+			if (randomSeed != this.randomSeed) {
+				log.warn("the checkpoint was written with random seed " + randomSeed + ", but this run uses random seed " + this.randomSeed
+						+ ". The resumed iterations will differ from the ones of the original run.");
+			}
+
+			Set<String> restored = new HashSet<>();
+			int nOfStates = in.readInt();
+			for (int i = 0; i < nOfStates; i++) {
+				String name = in.readUTF();
+				Checkpointable checkpointable = this.checkpointables.get(name);
+				if (checkpointable == null) {
+					throw new IllegalStateException("the checkpoint contains the state " + name + ", but no component of this run restores it.");
+				}
+				log.info("restoring " + name);
+				checkpointable.readCheckpoint(in);
+				restored.add(name);
+			}
+			readMagic(in, filename);
+
+			for (String name : this.checkpointables.keySet()) {
+				if (!restored.contains(name)) {
+					log.warn("the checkpoint does not contain the state " + name + ", it is not restored.");
+				}
+			}
+			log.info("restored the state after iteration " + iteration);
+			return iteration;
+		} catch (IOException e) {
+			throw new UncheckedIOException("could not read checkpoint " + filename, e);
+		}
+	}
+
+	private static void readMagic(final DataInputStream in, final String filename) throws IOException {
+		byte[] magic = new byte[MAGIC.length];
+		in.readFully(magic);
+		if (!Arrays.equals(magic, MAGIC)) {
+			throw new IllegalArgumentException(filename + " is not a complete checkpoint.");
+		}
+	}
+
+}
@@ -51,6 +51,7 @@ class NewControler extends AbstractController implements ControlerI {
 	private final Set<ControlerListener> controlerListenersDeclaredByModules;
 	private final ControlerConfigGroup controlerConfigGroup;
 	private final OutputDirectoryHierarchy outputDirectoryHierarchy;
+	private final Provider<Checkpointing> checkpointingProvider;
 	
 	@Inject
 	NewControler(Config config, ControlerListenerManagerImpl controlerListenerManager, MatsimServices matsimServices,
@@ -59,7 +60,7 @@ class NewControler extends AbstractController implements ControlerI {
 			 PlansScoring plansScoring, TerminationCriterion terminationCriterion, DumpDataAtEnd dumpDataAtEnd,
 			 Set<ControlerListener> controlerListenersDeclaredByModules, ControlerConfigGroup controlerConfigGroup,
 			 OutputDirectoryHierarchy outputDirectoryHierarchy
-			, PrepareForMobsim prepareForMobsim
+			, PrepareForMobsim prepareForMobsim, Provider<Checkpointing> checkpointingProvider
  ) {
 		super(controlerListenerManager, stopWatch, matsimServices);
 		this.config = config;
@@ -76,6 +77,7 @@ class NewControler extends AbstractController implements ControlerI {
 		this.controlerListenersDeclaredByModules = controlerListenersDeclaredByModules;
 		this.controlerConfigGroup = controlerConfigGroup;
 		this.outputDirectoryHierarchy = outputDirectoryHierarchy;
+		this.checkpointingProvider = checkpointingProvider;
 	}
 
 	@Override
@@ -131,4 +133,14 @@ class NewControler extends AbstractController implements ControlerI {
 		return terminationCriterion.continueIterations(it);
 	}
 
+	@Override
+	protected final void writeCheckpoint(int iteration) {
+		this.checkpointingProvider.get().write(iteration);
+	}
+
+	@Override
+	protected final int restoreCheckpoint(String filename) {
+		return this.checkpointingProvider.get().restore(filename);
+	}
+
 }
@@ -1,6 +1,7 @@
 package org.matsim.core.controler;
 
 import org.matsim.analysis.IterationStopWatch;
+import org.matsim.core.population.io.PopulationCheckpoint;
 
 public final class NewControlerModule extends AbstractModule {
 	@Override
@@ -20,5 +21,7 @@ public final class NewControlerModule extends AbstractModule {
 
 		bind(PrepareForSim.class).to(PrepareForSimImpl.class);
 		bind(PrepareForMobsim.class).to(PrepareForMobsimImpl.class);
+
+		addCheckpointableBinding().to(PopulationCheckpoint.class);
 	}
 }
@@ -23,6 +23,7 @@ package org.matsim.core.controler.corelisteners;
 import org.matsim.api.core.v01.population.Population;
 import org.matsim.core.controler.events.ReplanningEvent;
 import org.matsim.core.controler.listener.ReplanningListener;
+import org.matsim.core.population.PopulationUtils;
 import org.matsim.core.replanning.ReplanningContext;
 import org.matsim.core.replanning.StrategyManager;
 
@@ -56,6 +57,7 @@ final class PlansReplanningImpl implements PlansReplanning, ReplanningListener {
 	@Override
 	public void notifyReplanning(final ReplanningEvent event) {
 		strategyManager.run(population, event.getIteration(), replanningContextProvider.get());
+		PopulationUtils.compact(population);
 	}
 
 }
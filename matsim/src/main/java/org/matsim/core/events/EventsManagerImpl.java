@@ -30,6 +30,7 @@ import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.log4j.Logger;
+import org.matsim.analysis.IterationMetrics;
 import org.matsim.api.core.v01.events.ActivityEndEvent;
 import org.matsim.api.core.v01.events.ActivityStartEvent;
 import org.matsim.api.core.v01.events.Event;
@@ -102,11 +103,30 @@ public final class EventsManagerImpl implements EventsManager {
 		protected final Class<?> eventClass;
 		protected final EventHandler eventHandler;
 		protected final Method method;
+		protected final HandlerStats stats;
 
-		protected HandlerInfo(final Class<?> eventClass, final EventHandler eventHandler, final Method method) {
+		protected HandlerInfo(final Class<?> eventClass, final EventHandler eventHandler, final Method method, final HandlerStats stats) {
 			this.eventClass = eventClass;
 			this.eventHandler = eventHandler;
 			this.method = method;
+			this.stats = stats;
+		}
+	}
+
+	/**
+	 * Events handled by a handler and the time spent in it, only changed while holding the lock of the handler.
+	 * They are added to the {@link IterationMetrics} when processing finishes, which is cheaper than updating
+	 * the shared counters for each event. Unless switched on with {@link #setTimeEventHandlers(boolean)}, the time is
+	 * only measured for every {@link #TIMING_SAMPLE_INTERVAL}th event and extrapolated to all events.
+	 */
+	static private class HandlerStats {
+		private final IterationMetrics.Timer timer;
+		private long events = 0;
+		private long timedEvents = 0;
+		private long nanos = 0;
+
+		private HandlerStats(final EventHandler handler) {
+			this.timer = IterationMetrics.getTimer(IterationMetrics.EVENTS_HANDLER_PREFIX + handler.getClass().getName());
 		}
 	}
 
@@ -114,9 +134,16 @@ public final class EventsManagerImpl implements EventsManager {
 
 	private final Map<Class<?>, HandlerInfo[]> cacheHandlers = new ConcurrentHashMap<Class<?>, HandlerInfo[]>(15);
 
+	private final Map<EventHandler, HandlerStats> handlerStats = new ConcurrentHashMap<>();
+
 	private long counter = 0;
 	private long nextCounterMsg = 1;
 
+	/** must be a power of two */
+	private static final int TIMING_SAMPLE_INTERVAL = 64;
+
+	private boolean timeEventHandlers = false;
+
 	private HandlerData findHandler(final Class<?> evklass) {
 		for (HandlerData handler : this.handlerData) {
 			if (handler.eventklass == evklass) {
@@ -163,6 +190,10 @@ public final class EventsManagerImpl implements EventsManager {
 			handlerList.removeHandler(handler);
 		}
 		this.cacheHandlers.clear();
+		HandlerStats stats = this.handlerStats.remove(handler);
+		if (stats != null) {
+			publishStats(handler, stats);
+		}
 	}
 
 	@Override
@@ -192,9 +223,30 @@ public final class EventsManagerImpl implements EventsManager {
 		// nothing to do in this implementation
 	}
 
+	/**
+	 * Measures the time spent in each event handler for every event. This reads the clock twice per event and
+	 * handler, so by default only a sample of the events is timed for the {@link IterationMetrics}.
+	 */
+	/*package*/ void setTimeEventHandlers(final boolean timeEventHandlers) {
+		this.timeEventHandlers = timeEventHandlers;
+	}
+
 	@Override
 	public void finishProcessing() {
-		// nothing to do in this implementation
+		for (Map.Entry<EventHandler, HandlerStats> entry : this.handlerStats.entrySet()) {
+			publishStats(entry.getKey(), entry.getValue());
+		}
+	}
+
+	private static void publishStats(final EventHandler handler, final HandlerStats stats) {
+		synchronized (handler) {
+			long nanos = stats.timedEvents == stats.events ? stats.nanos
+					: Math.round((double) stats.nanos * stats.events / Math.max(1, stats.timedEvents));
+			stats.timer.add(stats.events, nanos);
+			stats.events = 0;
+			stats.timedEvents = 0;
+			stats.nanos = 0;
+		}
 	}
 
 	private void addHandlerInterfaces(final EventHandler handler, final Class<?> handlerClass) {
@@ -219,15 +271,22 @@ public final class EventsManagerImpl implements EventsManager {
 	private void computeEvent(final Event event) {
 		for (HandlerInfo info : getHandlersForClass(event.getClass())) {
 			synchronized(info.eventHandler) {
-				if (callHandlerFast(info.eventClass, event, info.eventHandler)) {
-					continue;
+				HandlerStats stats = info.stats;
+				boolean timed = this.timeEventHandlers || (stats.events & (TIMING_SAMPLE_INTERVAL - 1)) == 0;
+				long start = timed ? System.nanoTime() : 0;
+				if (!callHandlerFast(info.eventClass, event, info.eventHandler)) {
+					try {
+						info.method.invoke(info.eventHandler, event);
+					} catch (IllegalArgumentException | IllegalAccessException e) {
+						throw new RuntimeException("problem invoking EventHandler " + info.eventHandler.getClass().getCanonicalName() + " for event-class " + info.eventClass.getCanonicalName(), e);
+					} catch (InvocationTargetException e) {
+						throw new RuntimeException("problem invoking EventHandler " + info.eventHandler.getClass().getCanonicalName() + " for event-class " + info.eventClass.getCanonicalName(), e.getCause());
+					}
 				}
-				try {
-					info.method.invoke(info.eventHandler, event);
-				} catch (IllegalArgumentException | IllegalAccessException e) {
-					throw new RuntimeException("problem invoking EventHandler " + info.eventHandler.getClass().getCanonicalName() + " for event-class " + info.eventClass.getCanonicalName(), e);
-				} catch (InvocationTargetException e) {
-					throw new RuntimeException("problem invoking EventHandler " + info.eventHandler.getClass().getCanonicalName() + " for event-class " + info.eventClass.getCanonicalName(), e.getCause());
+				stats.events++;
+				if (timed) {
+					stats.timedEvents++;
+					stats.nanos += System.nanoTime() - start;
 				}
 			}
 		}
@@ -246,7 +305,7 @@ public final class EventsManagerImpl implements EventsManager {
 			HandlerData dat = findHandler(klass);
 			if (dat != null) {
 				for(EventHandler handler: dat.handlerList) {
-					info.add(new HandlerInfo(klass, handler, dat.method));
+					info.add(new HandlerInfo(klass, handler, dat.method, this.handlerStats.computeIfAbsent(handler, HandlerStats::new)));
 				}
 			}
 			klass = klass.getSuperclass();
@@ -256,7 +315,7 @@ public final class EventsManagerImpl implements EventsManager {
 			HandlerData dat = findHandler(intfc);
 			if (dat != null) {
 				for(EventHandler handler: dat.handlerList) {
-					info.add(new HandlerInfo(intfc, handler, dat.method));
+					info.add(new HandlerInfo(intfc, handler, dat.method, this.handlerStats.computeIfAbsent(handler, HandlerStats::new)));
 				}
 			}
 		}
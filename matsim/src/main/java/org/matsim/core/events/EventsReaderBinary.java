@@ -0,0 +1,233 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.events;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.api.internal.MatsimReader;
+import org.matsim.core.events.EventsReaderXMLv1.CustomEventMapper;
+import org.matsim.core.events.algorithms.EventWriterBinary;
+import org.matsim.core.utils.io.UncheckedIOException;
+import org.xml.sax.helpers.AttributesImpl;
+
+/**
+ * Reads events files written by {@link EventWriterBinary}.
+ * <br>
+ * With {@link #setTimeWindow(double, double)} and {@link #setEventTypes(Collection)}, only the blocks of
+ * the file that may contain matching events are read and decompressed; all other blocks are skipped
+ * based on the block index at the end of the file.
+ * <br>
+ * The events are created by the same code as for xml events files, so custom event mappers work
+ * the same way for both formats.
+ */
+public final class EventsReaderBinary implements MatsimReader {
+
+	private final EventsReaderXMLv1 converter;
+
+	private double fromTime = Double.NEGATIVE_INFINITY;
+	private double toTime = Double.POSITIVE_INFINITY;
+	private Set<String> eventTypes = null;
+
+	public EventsReaderBinary(final EventsManager events) {
+		this.converter = new EventsReaderXMLv1(events);
+	}
+
+	public void addCustomEventMapper(final String eventType, final CustomEventMapper<?> cem) {
+		this.converter.addCustomEventMapper(eventType, cem);
+	}
+
+	/**
+	 * Only events with <code>fromTime &lt;= time &lt; toTime</code> are read.
+	 */
+	public void setTimeWindow(final double fromTime, final double toTime) {
+		this.fromTime = fromTime;
+		this.toTime = toTime;
+	}
+
+	/**
+	 * Only events of the given types are read, all events if <code>null</code>.
+	 */
+	public void setEventTypes(final Collection<String> eventTypes) {
+		this.eventTypes = eventTypes == null ? null : new HashSet<>(eventTypes);
+	}
+
+	@Override
+	public void readURL(final URL url) {
+		if (!"file".equals(url.getProtocol())) {
+			throw new IllegalArgumentException("binary events files can only be read from the local file system, got " + url);
+		}
+		readFile(url.getPath());
+	}
+
+	@Override
+	public void readFile(final String filename) {
+		try (RandomAccessFile file = new RandomAccessFile(filename, "r")) {
+			byte[] magic = new byte[EventWriterBinary.MAGIC.length];
+			file.readFully(magic);
+			if (!Arrays.equals(magic, EventWriterBinary.MAGIC)) {
+				throw new IllegalArgumentException(filename + " is not a binary events file.");
+			}
+			int version = file.readInt();
+			if (version != EventWriterBinary.VERSION) {
+				throw new IllegalArgumentException("Unsupported version " + version + " of binary events file " + filename);
+			}
+
+			long trailerOffset = file.length() - 8 - EventWriterBinary.MAGIC.length;
+			file.seek(trailerOffset);
+			long dictionaryOffset = file.readLong();
+			file.readFully(magic);
+			if (!Arrays.equals(magic, EventWriterBinary.MAGIC)) {
+				throw new IllegalArgumentException("binary events file " + filename + " is incomplete, was it closed properly?");
+			}
+
+			byte[] footer = new byte[(int) (trailerOffset - dictionaryOffset)];
+			file.seek(dictionaryOffset);
+			file.readFully(footer);
+			DataInputStream in = new DataInputStream(new ByteArrayInputStream(footer));
+			String[] dictionary = new String[in.readInt()];
+			for (int i = 0; i < dictionary.length; i++) {
+				dictionary[i] = in.readUTF().intern();
+			}
+			BitSet acceptedTypes = null;
+			if (this.eventTypes != null) {
+				acceptedTypes = new BitSet();
+				for (int i = 0; i < dictionary.length; i++) {
+					if (this.eventTypes.contains(dictionary[i])) {
+						acceptedTypes.set(i);
+					}
+				}
+			}
+			List<long[]> selectedBlocks = new ArrayList<>();
+			int nOfBlocks = in.readInt();
+			for (int b = 0; b < nOfBlocks; b++) {
+				long offset = in.readLong();
+				int compressedLength = in.readInt();
+				int length = in.readInt();
+				in.readInt(); // number of events
+				double startTime = in.readDouble();
+				double endTime = in.readDouble();
+				boolean containsAcceptedType = acceptedTypes == null;
+				int nOfTypes = in.readInt();
+				for (int t = 0; t < nOfTypes; t++) {
+					int type = in.readInt();
+					containsAcceptedType |= acceptedTypes != null && acceptedTypes.get(type);
+				}
+				if (containsAcceptedType && endTime >= this.fromTime && startTime < this.toTime) {
+					selectedBlocks.add(new long[] { offset, compressedLength, length });
+				}
+			}
+
+			Inflater inflater = new Inflater();
+			byte[] compressed = new byte[0];
+			byte[] raw = new byte[0];
+			for (long[] block : selectedBlocks) {
+				int compressedLength = (int) block[1];
+				int length = (int) block[2];
+				if (compressed.length < compressedLength) compressed = new byte[compressedLength];
+				if (raw.length < length) raw = new byte[length];
+				file.seek(block[0]);
+				file.readFully(compressed, 0, compressedLength);
+				inflater.reset();
+				inflater.setInput(compressed, 0, compressedLength);
+				int inflated = 0;
+				while (inflated < length && !inflater.finished() && !inflater.needsInput()) {
+					inflated += inflater.inflate(raw, inflated, length - inflated);
+				}
+				if (inflated != length) {
+					throw new IllegalArgumentException("corrupt block at offset " + block[0] + " in binary events file " + filename);
+				}
+				readBlock(new DataInputStream(new ByteArrayInputStream(raw, 0, length)), dictionary, acceptedTypes);
+			}
+			inflater.end();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		} catch (DataFormatException e) {
+			throw new RuntimeException("corrupt binary events file " + filename, e);
+		}
+	}
+
+	private void readBlock(final DataInputStream in, final String[] dictionary, final BitSet acceptedTypes) throws IOException {
+		int nOfEvents = in.readInt();
+		double[] times = new double[nOfEvents];
+		for (int i = 0; i < nOfEvents; i++) {
+			times[i] = in.readDouble();
+		}
+		int[] types = new int[nOfEvents];
+		for (int i = 0; i < nOfEvents; i++) {
+			types[i] = in.readInt();
+		}
+		int[] attributeCounts = new int[nOfEvents];
+		int nOfAttributes = 0;
+		for (int i = 0; i < nOfEvents; i++) {
+			attributeCounts[i] = in.readInt();
+			nOfAttributes += attributeCounts[i];
+		}
+		int[] keys = new int[nOfAttributes];
+		for (int i = 0; i < nOfAttributes; i++) {
+			keys[i] = in.readInt();
+		}
+		int[] values = new int[nOfAttributes];
+		for (int i = 0; i < nOfAttributes; i++) {
+			values[i] = in.readInt();
+		}
+
+		AttributesImpl atts = new AttributesImpl();
+		int attribute = 0;
+		for (int i = 0; i < nOfEvents; i++) {
+			boolean accepted = times[i] >= this.fromTime && times[i] < this.toTime
+					&& (acceptedTypes == null || acceptedTypes.get(types[i]));
+			atts.clear();
+			for (int a = 0; a < attributeCounts[i]; a++, attribute++) {
+				int value = values[attribute];
+				String string;
+				if (value == EventWriterBinary.LITERAL_VALUE) {
+					// literals must be read in any case to stay in sync with the stream
+					string = in.readUTF();
+				} else if (value == EventWriterBinary.NULL_VALUE) {
+					string = null;
+				} else {
+					string = dictionary[value];
+				}
+				if (accepted) {
+					String key = dictionary[keys[attribute]];
+					atts.addAttribute("", key, key, "CDATA", string);
+				}
+			}
+			if (accepted) {
+				this.converter.processEvent(times[i], dictionary[types[i]], atts);
+			}
+		}
+	}
+
+}
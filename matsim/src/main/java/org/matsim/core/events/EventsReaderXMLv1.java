@@ -22,6 +22,7 @@ package org.matsim.core.events;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 import java.util.Stack;
 
 import org.matsim.api.core.v01.Id;
@@ -70,6 +71,10 @@ public final class EventsReaderXMLv1 extends MatsimXmlEventsParser {
 	private final EventsManager events;
 	private final Map<String, CustomEventMapper> customEventMappers = new HashMap<>();
 
+	private double fromTime = Double.NEGATIVE_INFINITY;
+	private double toTime = Double.POSITIVE_INFINITY;
+	private Set<String> eventTypes = null;
+
 	public EventsReaderXMLv1(final EventsManager events) {
 		this.events = events;
 		this.setValidating(false);// events-files have no DTD, thus they cannot validate
@@ -79,6 +84,16 @@ public final class EventsReaderXMLv1 extends MatsimXmlEventsParser {
 		customEventMappers.put(eventType, cem);
 	}
 
+	/**
+	 * Only events with <code>fromTime &lt;= time &lt; toTime</code> and, if <code>eventTypes</code> is not
+	 * <code>null</code>, one of the given types are created and passed to the events manager.
+	 */
+	/*package*/ void setFilter(final double fromTime, final double toTime, final Set<String> eventTypes) {
+		this.fromTime = fromTime;
+		this.toTime = toTime;
+		this.eventTypes = eventTypes;
+	}
+
 	@Override
 	public void startTag(final String name, final Attributes atts, final Stack<String> context) {
 		if (EVENT.equals(name)) {
@@ -103,6 +118,18 @@ public final class EventsReaderXMLv1 extends MatsimXmlEventsParser {
 	private void startEvent(final Attributes atts) {
 		double time = Double.parseDouble(atts.getValue("time"));
 		String eventType = atts.getValue("type");
+		if (time < this.fromTime || time >= this.toTime || (this.eventTypes != null && !this.eventTypes.contains(eventType))) {
+			return;
+		}
+		processEvent(time, eventType, atts);
+	}
+
+	/**
+	 * Creates the event from its attributes, i.e. the key-value pairs of {@link Event#getAttributes()}, and
+	 * passes it to the events manager.  Also used by the {@link EventsReaderBinary}, so both formats
+	 * result in exactly the same events.  The attributes <code>time</code> and <code>type</code> are ignored.
+	 */
+	/*package*/ void processEvent(final double time, final String eventType, final Attributes atts) {
 
 		// === material related to wait2link below here ===
 		if (LinkLeaveEvent.EVENT_TYPE.equals(eventType)) {
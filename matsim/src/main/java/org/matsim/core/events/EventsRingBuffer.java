@@ -0,0 +1,252 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.events;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+import org.matsim.api.core.v01.events.Event;
+
+/**
+ * Pre-allocated, lock-free multi-producer / multi-consumer ring buffer for events.
+ * <br>
+ * Producers claim a sequence number, or a range of sequence numbers for a batch of events, with a
+ * single atomic increment, store the events in the corresponding slots and then mark the slots as
+ * published. Every consumer reads <i>all</i>
+ * events in the order of their sequence numbers and reports its progress through its own
+ * {@link Cursor}. A slot is only reused once all consumers have passed it, so producers only
+ * have to wait if the slowest consumer lags behind by more than the capacity of the buffer.
+ * <br>
+ * A consumer waiting for the next event spins and yields for a short time, then parks until a producer
+ * publishes further events, see {@link #waitFor(long, Cursor)}.
+ *
+ * @see ShardedEventsManagerImpl
+ */
+final class EventsRingBuffer {
+
+	private final Event[] entries;
+	private final AtomicLongArray published;
+	private final int mask;
+	private final AtomicLong claimed = new AtomicLong(-1);
+	private volatile Cursor[] cursors = new Cursor[0];
+
+	private static final int SPINS = 100;
+	private static final int YIELDS = 100;
+	/** in case a consumer is parked without a producer noticing it, it checks for new events at this interval */
+	private static final long MAX_PARK_NANOS = 1_000_000L;
+
+	/**
+	 * @param minCapacity the buffer's capacity will be the next power of two
+	 */
+	EventsRingBuffer(final int minCapacity) {
+		int capacity = Integer.highestOneBit(Math.max(minCapacity, 2) - 1) << 1;
+		this.entries = new Event[capacity];
+		this.published = new AtomicLongArray(capacity);
+		for (int i = 0; i < capacity; i++) {
+			this.published.set(i, -1);
+		}
+		this.mask = capacity - 1;
+	}
+
+	int getCapacity() {
+		return this.entries.length;
+	}
+
+	/**
+	 * Empties the buffer and removes all consumers so the buffer can be re-used, e.g. in the next iteration.
+	 * Must not be called while events are published or consumed.
+	 */
+	void reset() {
+		this.claimed.set(-1);
+		for (int i = 0; i < this.entries.length; i++) {
+			this.entries[i] = null;
+			this.published.set(i, -1);
+		}
+		this.cursors = new Cursor[0];
+	}
+
+	/**
+	 * Must be called before events are published.
+	 */
+	Cursor createCursor() {
+		Cursor cursor = new Cursor(this.claimed.get());
+		Cursor[] tmp = new Cursor[this.cursors.length + 1];
+		System.arraycopy(this.cursors, 0, tmp, 0, this.cursors.length);
+		tmp[this.cursors.length] = cursor;
+		this.cursors = tmp;
+		return cursor;
+	}
+
+	/**
+	 * Stores the event in the buffer, waiting for free capacity if required.
+	 *
+	 * @return the sequence number of the event
+	 */
+	long publish(final Event event) {
+		long sequence = this.claimed.incrementAndGet();
+		long wrapPoint = sequence - this.entries.length;
+		int idle = 0;
+		while (wrapPoint > getMinimumSequence()) {
+			idle = idle(idle);
+		}
+		int index = (int) sequence & this.mask;
+		this.entries[index] = event;
+		this.published.set(index, sequence);
+		signalConsumers();
+		return sequence;
+	}
+
+	/**
+	 * Stores the first <code>count</code> events of the array in consecutive slots of the buffer,
+	 * claiming all slots at once and waiting for free capacity if required. The count must not
+	 * exceed the capacity of the buffer.
+	 *
+	 * @return the sequence number of the last event
+	 */
+	long publish(final Event[] events, final int count) {
+		long last = this.claimed.addAndGet(count);
+		long wrapPoint = last - this.entries.length;
+		int idle = 0;
+		while (wrapPoint > getMinimumSequence()) {
+			idle = idle(idle);
+		}
+		long first = last - count + 1;
+		for (int i = count - 1; i >= 0; i--) {
+			int index = (int) (first + i) & this.mask;
+			this.entries[index] = events[i];
+			if (i > 0) {
+				this.published.lazySet(index, first + i);
+			} else {
+				/*
+				 * The first slot is the one a consumer waits for. Publishing it last with a volatile write makes
+				 * all other slots visible with it, and it cannot be reordered with reading the waiting consumers.
+				 */
+				this.published.set(index, first);
+			}
+		}
+		signalConsumers();
+		return last;
+	}
+
+	boolean isPublished(final long sequence) {
+		return this.published.get((int) sequence & this.mask) == sequence;
+	}
+
+	/**
+	 * Waits until the event with the given sequence is published. Spins first, then yields, then parks until a
+	 * producer publishes further events.
+	 *
+	 * @param cursor the cursor of the waiting consumer, through which producers find the parked thread
+	 */
+	void waitFor(final long sequence, final Cursor cursor) {
+		int idle = 0;
+		while (!isPublished(sequence)) {
+			if (idle < SPINS + YIELDS) {
+				idle = idle(idle);
+			} else {
+				cursor.waiter = Thread.currentThread();
+				// checked again after registering, so an event published in between is not missed
+				if (!isPublished(sequence)) {
+					LockSupport.parkNanos(this, MAX_PARK_NANOS);
+				}
+				cursor.waiter = null;
+			}
+		}
+	}
+
+	private void signalConsumers() {
+		for (Cursor cursor : this.cursors) {
+			Thread waiter = cursor.waiter;
+			if (waiter != null) {
+				LockSupport.unpark(waiter);
+			}
+		}
+	}
+
+	/**
+	 * Only valid if the sequence was published and the calling consumer did not yet advance
+	 * its cursor beyond it.
+	 */
+	Event get(final long sequence) {
+		return this.entries[(int) sequence & this.mask];
+	}
+
+	/**
+	 * @return the sequence of the last event claimed by a producer. The event may not yet be published.
+	 */
+	long getClaimedSequence() {
+		return this.claimed.get();
+	}
+
+	/**
+	 * @return the sequence up to which all consumers have processed the events.
+	 */
+	long getMinimumSequence() {
+		long min = Long.MAX_VALUE;
+		for (Cursor cursor : this.cursors) {
+			long seq = cursor.sequence;
+			if (seq < min) {
+				min = seq;
+			}
+		}
+		return min;
+	}
+
+	/**
+	 * Progressive back-off while waiting: spin first, then yield, then park for short periods.
+	 *
+	 * @return the updated idle counter to be passed to the next call
+	 */
+	static int idle(final int counter) {
+		if (counter < SPINS) {
+			// busy spin
+		} else if (counter < SPINS + YIELDS) {
+			Thread.yield();
+		} else {
+			LockSupport.parkNanos(10_000L);
+			return counter;
+		}
+		return counter + 1;
+	}
+
+	/**
+	 * The progress of one consumer, i.e. the sequence of the last event it has completely processed.
+	 */
+	static final class Cursor {
+
+		private volatile long sequence;
+		/** the consumer thread, while it is parked waiting for events */
+		private volatile Thread waiter = null;
+
+		Cursor(final long initialSequence) {
+			this.sequence = initialSequence;
+		}
+
+		long get() {
+			return this.sequence;
+		}
+
+		void set(final long sequence) {
+			this.sequence = sequence;
+		}
+	}
+
+}
@@ -1,5 +1,7 @@
 package org.matsim.core.events;
 
+import java.util.Collection;
+
 import org.matsim.core.api.experimental.events.EventsManager;
 import org.matsim.core.config.Config;
 import org.matsim.core.controler.Injector;
@@ -20,7 +22,7 @@ public class EventsUtils {
     }
 
     /**
-     * The SimStepParallelEventsManagerImpl can handle events from multiple threads.
+     * The SimStepParallelEventsManagerImpl and the ShardedEventsManagerImpl can handle events from multiple threads.
      * The (Parallel)EventsMangerImpl cannot, therefore it has to be wrapped into a
      * SynchronizedEventsManagerImpl.
      */
@@ -29,6 +31,8 @@ public class EventsUtils {
     		return events;
     	} else if (events instanceof ParallelEventsManager) {
     		return events;
+    	} else if (events instanceof ShardedEventsManagerImpl) {
+    		return events;
     	}
     	else if (events instanceof SynchronizedEventsManagerImpl) {
     		return events;
@@ -40,6 +44,18 @@ public class EventsUtils {
     	new MatsimEventsReader(events).readFile(filename) ;
 	}
 
+	/**
+	 * Reads only the events with <code>fromTime &lt;= time &lt; toTime</code> and one of the given event types
+	 * (all types if <code>eventTypes</code> is <code>null</code>).  This is much faster for binary events files,
+	 * where the parts of the file without such events are skipped.
+	 */
+	public static void readEvents( EventsManager events, String filename, double fromTime, double toTime, Collection<String> eventTypes ) {
+		MatsimEventsReader reader = new MatsimEventsReader(events);
+		reader.setTimeWindow(fromTime, toTime);
+		reader.setEventTypes(eventTypes);
+		reader.readFile(filename);
+	}
+
 	public static EventsFileComparator.Result compareEventsFiles( String filename1, String filename2 ) {
 		EventsFileComparator.Result result = EventsFileComparator.compare( filename1, filename2 );
 		return result ;
@@ -22,15 +22,19 @@ package org.matsim.core.events;
 
 import java.io.InputStream;
 import java.net.URL;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 import java.util.Stack;
 
 import org.apache.log4j.Logger;
 import org.matsim.core.api.experimental.events.EventsManager;
 import org.matsim.core.api.internal.MatsimReader;
 import org.matsim.core.events.EventsReaderXMLv1.CustomEventMapper;
+import org.matsim.core.events.algorithms.EventWriterBinary;
 import org.matsim.core.utils.io.MatsimXmlParser;
 import org.xml.sax.Attributes;
 import org.xml.sax.SAXException;
@@ -38,20 +42,45 @@ import org.xml.sax.SAXException;
 /**
  * A reader for events-files of MATSim. This reader recognizes the format of the events-file and uses
  * the correct reader for the specific events-version, without manual setting.
+ * <br>
+ * Binary events files (see {@link EventWriterBinary}) are recognized by their file extension
+ * <code>.bin</code>.
  *
  * @author mrieser
  */
 public final class MatsimEventsReader implements MatsimReader {
 
 	private final static Logger log = Logger.getLogger(MatsimEventsReader.class);
+	private final static String BINARY_EXTENSION = ".bin";
 	private final EventsManager events;
 
 	private final Map<String, CustomEventMapper> map = new LinkedHashMap<>(  ) ;
 
+	private double fromTime = Double.NEGATIVE_INFINITY;
+	private double toTime = Double.POSITIVE_INFINITY;
+	private Set<String> eventTypes = null;
+
 	public void addCustomEventMapper( String eventType, CustomEventMapper mapper ) {
 		map.put( eventType, mapper ) ;
 	}
 
+	/**
+	 * Only events with <code>fromTime &lt;= time &lt; toTime</code> are passed to the events manager.
+	 * For binary events files, parts of the file outside of the time window are not even read.
+	 */
+	public void setTimeWindow( double fromTime, double toTime ) {
+		this.fromTime = fromTime;
+		this.toTime = toTime;
+	}
+
+	/**
+	 * Only events of the given types are passed to the events manager, all events if <code>null</code>.
+	 * For binary events files, parts of the file without such events are not even read.
+	 */
+	public void setEventTypes( Collection<String> eventTypes ) {
+		this.eventTypes = eventTypes == null ? null : new HashSet<>( eventTypes );
+	}
+
 	/**
 	 * Creates a new reader for MATSim events files.
 	 *
@@ -69,8 +98,10 @@ public final class MatsimEventsReader implements MatsimReader {
 	@Override
 	public void readFile(final String filename) {
 		String lcFilename = filename.toLowerCase(Locale.ROOT);
-		if (lcFilename.endsWith(".xml") || lcFilename.endsWith(".xml.gz")) {
-			new XmlEventsReader(this.events, map ).readFile(filename );
+		if (lcFilename.endsWith(".xml") || lcFilename.endsWith(".xml.gz") || lcFilename.endsWith(".xml.zst")) {
+			createXmlEventsReader().readFile(filename );
+		} else if (lcFilename.endsWith(BINARY_EXTENSION)) {
+			createBinaryEventsReader().readFile(filename);
 		} else if (lcFilename.endsWith(".txt") || lcFilename.endsWith(".txt.gz")) {
 			throw new RuntimeException("text events are no longer supported. Please use MATSim 0.6.1 or earlier to read text events.");
 		} else {
@@ -78,13 +109,34 @@ public final class MatsimEventsReader implements MatsimReader {
 		}
 	}
 
+	/**
+	 * Only supports xml events, as binary events files are read with random access.
+	 */
 	public void readStream(final InputStream stream) {
-		new XmlEventsReader(this.events, map ).parse(stream );
+		createXmlEventsReader().parse(stream );
 	}
 
 	@Override
 	public void readURL( final URL url ) {
-		new XmlEventsReader( this.events, map ).readURL( url );
+		if ( url.getPath().toLowerCase(Locale.ROOT).endsWith(BINARY_EXTENSION) ) {
+			createBinaryEventsReader().readURL( url );
+		} else {
+			createXmlEventsReader().readURL( url );
+		}
+	}
+
+	private XmlEventsReader createXmlEventsReader() {
+		return new XmlEventsReader( this.events, map, this.fromTime, this.toTime, this.eventTypes );
+	}
+
+	private EventsReaderBinary createBinaryEventsReader() {
+		EventsReaderBinary reader = new EventsReaderBinary(this.events);
+		for( Map.Entry<String, CustomEventMapper> entry : map.entrySet() ){
+			reader.addCustomEventMapper( entry.getKey(), entry.getValue() );
+		}
+		reader.setTimeWindow(this.fromTime, this.toTime);
+		reader.setEventTypes(this.eventTypes);
+		return reader;
 	}
 
 	private static class XmlEventsReader extends MatsimXmlParser {
@@ -94,10 +146,17 @@ public final class MatsimEventsReader implements MatsimReader {
 		private MatsimXmlEventsParser delegate = null;
 
 		private final Map<String, CustomEventMapper> map ;
+		private final double fromTime;
+		private final double toTime;
+		private final Set<String> eventTypes;
 
-		private XmlEventsReader( final EventsManager events, Map<String, CustomEventMapper> map ) {
+		private XmlEventsReader( final EventsManager events, Map<String, CustomEventMapper> map,
+				double fromTime, double toTime, Set<String> eventTypes ) {
 			this.events = events;
 			this.map = map;
+			this.fromTime = fromTime;
+			this.toTime = toTime;
+			this.eventTypes = eventTypes;
 			this.setValidating(false); // events-files have no DTD, thus they cannot validate
 			setDoctype("events_v1.dtd"); // manually set a doctype, otherwise delegate would not be initialized
 		}
@@ -128,7 +187,9 @@ public final class MatsimEventsReader implements MatsimReader {
 			super.setDoctype(doctype);
 			// Currently the only events-type is v1
 			if (EVENTS_V1.equals(doctype)) {
-				this.delegate = new EventsReaderXMLv1(this.events);
+				EventsReaderXMLv1 reader = new EventsReaderXMLv1(this.events);
+				reader.setFilter(this.fromTime, this.toTime, this.eventTypes);
+				this.delegate = reader;
 				for( Map.Entry<String, CustomEventMapper> entry : map.entrySet() ){
 					this.delegate.addCustomEventMapper( entry.getKey(),entry.getValue() );
 				}
@@ -69,6 +69,7 @@ public final class ParallelEventsManager implements EventsManager {
 	private ExceptionHandler uncaughtExceptionHandler;
 	
 	private boolean locked = false;
+	private boolean timeEventHandlers = false;
 
 	/*
 	 * Processed events are collected in an ArrayBlockingQueue. The distributor retrieves them and collects
@@ -93,6 +94,8 @@ public final class ParallelEventsManager implements EventsManager {
 	@Inject
 	ParallelEventsManager(Config config) {
 		this(config.parallelEventHandling().getSynchronizeOnSimSteps() != null ? config.parallelEventHandling().getSynchronizeOnSimSteps() : true);
+		this.timeEventHandlers = config.parallelEventHandling().isTimeEventHandlers();
+		((EventsManagerImpl) this.singleThreadEventsHandler).setTimeEventHandlers(this.timeEventHandlers);
 	}
 
 	public ParallelEventsManager(final boolean syncOnTimeSteps) {
@@ -172,7 +175,11 @@ public final class ParallelEventsManager implements EventsManager {
 		if (this.oneThreadPerHandler) {
 			for (int i = 0; i < this.eventsHandlers.size(); i++) this.eventsManagers[i] = new SingleHandlerEventsManager(this.eventsHandlers.get(i));
 		} else {
-			for (int i = 0; i < this.numOfThreads; i++) this.eventsManagers[i] = new EventsManagerImpl();
+			for (int i = 0; i < this.numOfThreads; i++) {
+				EventsManagerImpl eventsManager = new EventsManagerImpl();
+				eventsManager.setTimeEventHandlers(this.timeEventHandlers);
+				this.eventsManagers[i] = eventsManager;
+			}
 			for (int i = 0; i < this.eventsHandlers.size(); i++) this.eventsManagers[this.eventsHandlers.size() % numOfThreads].addHandler(this.eventsHandlers.get(i));
 		}
 		
@@ -81,11 +81,14 @@ public final class ParallelEventsManagerImpl implements EventsManager {
 	// quite well for larger simulations with 10 million events
 	private int preInputBufferMaxLength = 100000;
 
+	private boolean timeEventHandlers = false;
+
 	@Inject
 	ParallelEventsManagerImpl(Config config) {
 		if (config.parallelEventHandling().getEstimatedNumberOfEvents() != null) {
 			preInputBufferMaxLength = (int) (config.parallelEventHandling().getEstimatedNumberOfEvents() / 10);
 		}
+		this.timeEventHandlers = config.parallelEventHandling().isTimeEventHandlers();
 		init(config.parallelEventHandling().getNumberOfThreads());
 	}
 
@@ -166,6 +169,7 @@ public final class ParallelEventsManagerImpl implements EventsManager {
 		// the additional 1 is for the simulation barrier
 		for (int i = 0; i < numberOfThreads; i++) {
 			events[i] = (EventsManagerImpl) EventsUtils.createEventsManager();
+			events[i].setTimeEventHandlers(this.timeEventHandlers);
 		}
 	}
 
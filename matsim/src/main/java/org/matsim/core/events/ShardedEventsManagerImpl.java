@@ -0,0 +1,488 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.events;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.inject.Inject;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.events.HasLinkId;
+import org.matsim.api.core.v01.events.HasVehicleId;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.api.internal.HasPersonId;
+import org.matsim.core.config.groups.ParallelEventHandlingConfigGroup;
+import org.matsim.core.events.handler.EventHandler;
+import org.matsim.core.events.handler.PartitionedEventHandler;
+import org.matsim.core.events.handler.PartitionedEventHandler.PartitionKey;
+
+/**
+ * An EventsManager that hands events to its handlers through a pre-allocated, lock-free
+ * {@link EventsRingBuffer} instead of blocking queues and barriers.
+ * <br>
+ * Regular event handlers are all called from one single consumer thread, in the order the
+ * events were created. Handlers implementing {@link PartitionedEventHandler} are additionally
+ * split into <code>numberOfShards</code> shards: every shard thread reads all events, but only
+ * hands those to the handlers whose person, link or vehicle id (depending on the handler's
+ * {@link PartitionKey}) belongs to the shard. This allows to run expensive, per-agent handlers
+ * like scoring or travel time collection on multiple cores at once. Events without the id are handed
+ * to one shard per partition key, so each handler still gets them in order and from one thread;
+ * spreading them over all shards would require the handlers to cope with them concurrently.
+ * <br>
+ * The producers (the mobsim threads) collect their events in a batch per thread, which is published
+ * with a single claim on the ring buffer once it is full or at the end of the time step. Consumers
+ * process all events that are available in one batch and only then publish their progress. The
+ * events of one thread keep their order. The thread calling {@link #afterSimStep(double)} publishes
+ * its batch before another thread adds an event and vice versa, so the events it creates before and
+ * after the other threads' part of a time step (like the main thread of the mobsim around the
+ * QNetsimEngineRunners) stay in order as well. Events of threads working at the same time may be
+ * handed on grouped by thread.
+ * <br>
+ * At the end of each time step, {@link #afterSimStep(double)} waits until all consumers have
+ * processed all events of the step, including events created by event handlers in the meantime.
+ * <br>
+ * Event handlers may create additional events, but only up to the capacity of the ring buffer
+ * per time step, as a consumer thread cannot wait for free capacity when it is itself the
+ * slowest consumer.
+ */
+final class ShardedEventsManagerImpl implements EventsManager {
+
+	private final static Logger log = Logger.getLogger(ShardedEventsManagerImpl.class);
+
+	/*package*/ final static int DEFAULT_BUFFER_CAPACITY = 1 << 20;
+	/*package*/ final static int MAX_BATCH_SIZE = 1 << 10;
+	private final static PartitionKey[] PARTITION_KEYS = PartitionKey.values();
+
+	private final int numberOfShards;
+	private final EventsRingBuffer ringBuffer;
+	private final int batchSize;
+	private final List<Batch> batches = new CopyOnWriteArrayList<>();
+	private volatile ThreadLocal<Batch> batch = createBatches();
+	// the batch of the thread calling afterSimStep()
+	private volatile Batch stepBatch = null;
+	private final EventsManagerImpl delegate = new EventsManagerImpl();
+	private final List<EventHandler> handlers = new ArrayList<>();
+
+	private final List<ConsumerThread> consumers = new ArrayList<>();
+	private final AtomicReference<Throwable> hadException = new AtomicReference<>();
+	private volatile boolean parallelMode = false;
+	private boolean timeEventHandlers = false;
+
+	@Inject
+	ShardedEventsManagerImpl(ParallelEventHandlingConfigGroup config) {
+		this(config.getNumberOfThreads() != null ? config.getNumberOfThreads() : 1);
+		this.timeEventHandlers = config.isTimeEventHandlers();
+		this.delegate.setTimeEventHandlers(this.timeEventHandlers);
+	}
+
+	public ShardedEventsManagerImpl(int numberOfShards) {
+		this(numberOfShards, DEFAULT_BUFFER_CAPACITY);
+	}
+
+	public ShardedEventsManagerImpl(int numberOfShards, int bufferCapacity) {
+		if (numberOfShards < 1) {
+			throw new IllegalArgumentException("The number of shards must be at least 1, but is " + numberOfShards);
+		}
+		this.numberOfShards = numberOfShards;
+		this.ringBuffer = new EventsRingBuffer(bufferCapacity);
+		// a batch must fit into the buffer
+		this.batchSize = Math.min(MAX_BATCH_SIZE, this.ringBuffer.getCapacity());
+		log.info("number of shards=" + numberOfShards + ", ring buffer capacity=" + this.ringBuffer.getCapacity());
+	}
+
+	@Override
+	public void processEvent(final Event event) {
+		if (this.parallelMode) {
+			if (Thread.currentThread() instanceof ConsumerThread) {
+				if (this.ringBuffer.getClaimedSequence() - this.ringBuffer.getMinimumSequence() >= this.ringBuffer.getCapacity()) {
+					throw new RuntimeException("The events ring buffer is full and the event was created by an event handler, " +
+							"which would block the events processing forever. Increase the capacity of the ring buffer.");
+				}
+				// an event handler cannot wait for the end of the time step to publish its events
+				this.ringBuffer.publish(event);
+			} else {
+				add(this.batch.get(), event);
+			}
+		} else {
+			this.delegate.processEvent(event);
+		}
+	}
+
+	private void add(final Batch batch, final Event event) {
+		// the events of the step thread and the other threads of a time step are not interleaved
+		Batch stepBatch = this.stepBatch;
+		if (batch == stepBatch) {
+			for (Batch other : this.batches) {
+				if (other != batch && other.size > 0) {
+					publish(other);
+				}
+			}
+		} else if (stepBatch.size > 0) {
+			publish(stepBatch);
+		}
+		synchronized (batch) {
+			batch.events[batch.size] = event;
+			batch.size++;
+			if (batch.size == batch.events.length) {
+				publish(batch);
+			}
+		}
+	}
+
+	private void publish(final Batch batch) {
+		synchronized (batch) {
+			if (batch.size > 0) {
+				this.ringBuffer.publish(batch.events, batch.size);
+				Arrays.fill(batch.events, 0, batch.size, null);
+				batch.size = 0;
+			}
+		}
+	}
+
+	private void publishBatches() {
+		for (Batch batch : this.batches) {
+			publish(batch);
+		}
+	}
+
+	private ThreadLocal<Batch> createBatches() {
+		return ThreadLocal.withInitial(() -> {
+			Batch batch = new Batch(this.batchSize);
+			this.batches.add(batch);
+			return batch;
+		});
+	}
+
+	@Override
+	public void addHandler(final EventHandler handler) {
+		this.handlers.add(handler);
+		this.delegate.addHandler(handler);
+	}
+
+	@Override
+	public void removeHandler(final EventHandler handler) {
+		if (this.parallelMode) {
+			log.warn("Removing EventHandler while ShardedEventsManagerImpl is in 'parallel' mode. This is not expected to happen :?");
+		}
+		this.handlers.remove(handler);
+		this.delegate.removeHandler(handler);
+		for (ConsumerThread consumer : this.consumers) {
+			consumer.removeHandler(handler);
+		}
+	}
+
+	@Override
+	public void resetHandlers(int iteration) {
+		this.delegate.resetHandlers(iteration);
+	}
+
+	@Override
+	public void initProcessing() {
+		this.delegate.initProcessing();
+		this.ringBuffer.reset();
+		this.hadException.set(null);
+		this.consumers.clear();
+		this.batches.clear();
+		this.batch = createBatches();
+		this.stepBatch = this.batch.get();
+
+		EventsManagerImpl ordered = new EventsManagerImpl();
+		ordered.setTimeEventHandlers(this.timeEventHandlers);
+		EventsManagerImpl[][] partitioned = new EventsManagerImpl[this.numberOfShards][PARTITION_KEYS.length];
+		boolean hasOrdered = false;
+		boolean hasPartitioned = false;
+		for (EventHandler handler : this.handlers) {
+			if (handler instanceof PartitionedEventHandler) {
+				int key = ((PartitionedEventHandler) handler).getPartitionKey().ordinal();
+				for (int shard = 0; shard < this.numberOfShards; shard++) {
+					if (partitioned[shard][key] == null) {
+						partitioned[shard][key] = new EventsManagerImpl();
+						partitioned[shard][key].setTimeEventHandlers(this.timeEventHandlers);
+					}
+					partitioned[shard][key].addHandler(handler);
+				}
+				hasPartitioned = true;
+			} else {
+				ordered.addHandler(handler);
+				hasOrdered = true;
+			}
+		}
+
+		if (hasOrdered || !hasPartitioned) {
+			this.consumers.add(new OrderedConsumerThread(ordered, this.ringBuffer.createCursor()));
+		}
+		if (hasPartitioned) {
+			for (int shard = 0; shard < this.numberOfShards; shard++) {
+				this.consumers.add(new ShardConsumerThread(shard, this.numberOfShards, partitioned[shard], this.ringBuffer.createCursor()));
+			}
+		}
+
+		for (ConsumerThread consumer : this.consumers) {
+			consumer.setDaemon(true);
+			consumer.start();
+		}
+
+		/*
+		 * During the simulation Events are processed in the consumer threads.
+		 */
+		this.parallelMode = true;
+	}
+
+	@Override
+	public void afterSimStep(double time) {
+		this.stepBatch = this.batch.get();
+		publishBatches();
+		/*
+		 * If an exception occurred, at least one of the consumer threads has stopped.
+		 * The exception is re-thrown in finishProcessing().
+		 */
+		if (this.hadException.get() != null) {
+			return;
+		}
+		waitUntilAllEventsProcessed();
+	}
+
+	/*
+	 * In some cases Events are created after this method has been called. To ensure that they are processed
+	 * in real time, we process them in the main thread afterwards.
+	 */
+	@Override
+	public synchronized void finishProcessing() {
+		if (this.parallelMode) {
+			publishBatches();
+			this.ringBuffer.publish(new LastEventOfIteration(Double.POSITIVE_INFINITY));
+			for (ConsumerThread consumer : this.consumers) {
+				try {
+					consumer.join();
+				} catch (InterruptedException e) {
+					throw new RuntimeException(e);
+				}
+			}
+			this.parallelMode = false;
+		}
+		for (ConsumerThread consumer : this.consumers) {
+			consumer.finishProcessing();
+		}
+		this.consumers.clear();
+		this.delegate.finishProcessing();
+
+		Throwable throwable = this.hadException.get();
+		if (throwable != null) {
+			throw new RuntimeException("Exception while processing events. Cannot guarantee that all events have been fully processed.", throwable);
+		}
+	}
+
+	private void waitUntilAllEventsProcessed() {
+		/*
+		 * Event handlers might create additional events while we are waiting, which must also be
+		 * processed within this time step. The claimed sequence is thus re-read in every check:
+		 * once all consumers have caught up with it, no handler is running anymore that could
+		 * create further events.
+		 */
+		int idle = 0;
+		while (this.ringBuffer.getMinimumSequence() < this.ringBuffer.getClaimedSequence()) {
+			if (this.hadException.get() != null) {
+				return;
+			}
+			idle = EventsRingBuffer.idle(idle);
+		}
+	}
+
+	private static int getPartitionIndex(final Event event, final PartitionKey key) {
+		Id<?> id = null;
+		switch (key) {
+			case person:
+				if (event instanceof HasPersonId) {
+					id = ((HasPersonId) event).getPersonId();
+				}
+				break;
+			case link:
+				if (event instanceof HasLinkId) {
+					id = ((HasLinkId) event).getLinkId();
+				}
+				break;
+			case vehicle:
+				if (event instanceof HasVehicleId) {
+					id = ((HasVehicleId) event).getVehicleId();
+				}
+				break;
+			default:
+				throw new IllegalArgumentException("unknown partition key " + key);
+		}
+		return id == null ? -1 : id.index();
+	}
+
+	/**
+	 * The events one producer thread has created, but not yet published. Only the owning thread
+	 * adds events, but other threads may publish them.
+	 */
+	private static final class Batch {
+
+		final Event[] events;
+		volatile int size = 0;
+
+		Batch(final int capacity) {
+			this.events = new Event[capacity];
+		}
+	}
+
+	/**
+	 * Reads all events from the ring buffer and hands them to its events managers.
+	 */
+	private abstract class ConsumerThread extends Thread {
+
+		private final EventsRingBuffer.Cursor cursor;
+
+		ConsumerThread(final String name, final EventsRingBuffer.Cursor cursor) {
+			super(name);
+			this.cursor = cursor;
+		}
+
+		abstract void handle(Event event);
+
+		abstract void removeHandler(EventHandler handler);
+
+		abstract void finishProcessing();
+
+		@Override
+		public void run() {
+			EventsRingBuffer buffer = ShardedEventsManagerImpl.this.ringBuffer;
+			try {
+				long next = this.cursor.get() + 1;
+				while (true) {
+					buffer.waitFor(next, this.cursor);
+					long last = next;
+					while (buffer.isPublished(last + 1)) {
+						last++;
+					}
+					for (long seq = next; seq <= last; seq++) {
+						Event event = buffer.get(seq);
+						if (event instanceof LastEventOfIteration) {
+							this.cursor.set(seq);
+							return;
+						}
+						handle(event);
+					}
+					this.cursor.set(last);
+					next = last + 1;
+				}
+			} catch (Throwable e) {
+				ShardedEventsManagerImpl.this.hadException.compareAndSet(null, e);
+				log.error("Thread " + getName() + " died with exception while handling events.", e);
+				/*
+				 * Make sure nobody waits for this consumer anymore.
+				 */
+				this.cursor.set(Long.MAX_VALUE);
+			}
+		}
+	}
+
+	/**
+	 * Hands all events in their original order to the regular event handlers.
+	 */
+	private final class OrderedConsumerThread extends ConsumerThread {
+
+		private final EventsManagerImpl eventsManager;
+
+		OrderedConsumerThread(final EventsManagerImpl eventsManager, final EventsRingBuffer.Cursor cursor) {
+			super("ShardedEventsManager-ordered", cursor);
+			this.eventsManager = eventsManager;
+			this.eventsManager.initProcessing();
+		}
+
+		@Override
+		void handle(final Event event) {
+			this.eventsManager.processEvent(event);
+		}
+
+		@Override
+		void removeHandler(final EventHandler handler) {
+			this.eventsManager.removeHandler(handler);
+		}
+
+		@Override
+		void finishProcessing() {
+			this.eventsManager.finishProcessing();
+		}
+	}
+
+	/**
+	 * Hands the events of one shard to the partitioned event handlers.
+	 */
+	private final class ShardConsumerThread extends ConsumerThread {
+
+		private final int shard;
+		private final int numberOfShards;
+		private final EventsManagerImpl[] eventsManagers;
+
+		ShardConsumerThread(final int shard, final int numberOfShards, final EventsManagerImpl[] eventsManagers,
+				final EventsRingBuffer.Cursor cursor) {
+			super("ShardedEventsManager-shard" + shard, cursor);
+			this.shard = shard;
+			this.numberOfShards = numberOfShards;
+			this.eventsManagers = eventsManagers;
+			for (EventsManagerImpl eventsManager : this.eventsManagers) {
+				if (eventsManager != null) {
+					eventsManager.initProcessing();
+				}
+			}
+		}
+
+		@Override
+		void handle(final Event event) {
+			for (int key = 0; key < this.eventsManagers.length; key++) {
+				EventsManagerImpl eventsManager = this.eventsManagers[key];
+				if (eventsManager != null) {
+					int index = getPartitionIndex(event, PARTITION_KEYS[key]);
+					// events without the partition id all go to the same shard, a different one for each key
+					int eventShard = (index < 0 ? key : index) % this.numberOfShards;
+					if (eventShard == this.shard) {
+						eventsManager.processEvent(event);
+					}
+				}
+			}
+		}
+
+		@Override
+		void removeHandler(final EventHandler handler) {
+			for (EventsManagerImpl eventsManager : this.eventsManagers) {
+				if (eventsManager != null) {
+					eventsManager.removeHandler(handler);
+				}
+			}
+		}
+
+		@Override
+		void finishProcessing() {
+			for (EventsManagerImpl eventsManager : this.eventsManagers) {
+				if (eventsManager != null) {
+					eventsManager.finishProcessing();
+				}
+			}
+		}
+	}
+
+}
@@ -68,6 +68,8 @@ class SimStepParallelEventsManagerImpl implements EventsManager {
 	@Inject
 	SimStepParallelEventsManagerImpl(ParallelEventHandlingConfigGroup config) {
 		this(config.getNumberOfThreads() != null ? config.getNumberOfThreads() : 1);
+		this.delegate.setTimeEventHandlers(config.isTimeEventHandlers());
+		for (EventsManagerImpl eventsManager : this.eventsManagers) eventsManager.setTimeEventHandlers(config.isTimeEventHandlers());
 	}
 
     public SimStepParallelEventsManagerImpl() {
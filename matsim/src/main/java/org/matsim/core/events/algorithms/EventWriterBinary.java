@@ -0,0 +1,320 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.events.algorithms;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.core.events.handler.BasicEventHandler;
+import org.matsim.core.utils.io.UncheckedIOException;
+
+/**
+ * Writes events in a columnar binary format which is much faster to write and to read than xml.
+ * <br>
+ * The events are stored in blocks of consecutive events covering a limited time span. Within a block,
+ * the data is stored column by column (times, event types, attribute keys, attribute values) and compressed
+ * as a whole. All strings that are likely to repeat (event types, attribute keys, ids, modes, ...) are
+ * replaced by indices into one dictionary for the whole file. At the end of the file follow the dictionary
+ * and an index of all blocks with their time span and the event types they contain, so readers can skip
+ * blocks that are outside of a time window or contain none of the requested event types, see
+ * {@link org.matsim.core.events.EventsReaderBinary}.
+ * <br>
+ * File layout (all numbers big-endian):
+ * <pre>
+ * MAGIC VERSION
+ * block*            each block deflate-compressed, see {@link #flushBlock()}
+ * dictionary        int size, size * UTF string
+ * block index       int size, size * (long offset, int compressed length, int length, int nOfEvents,
+ *                                     double start time, double end time, int nOfTypes, nOfTypes * int type)
+ * long offset of the dictionary, MAGIC
+ * </pre>
+ * Like the xml format, every event is stored as the key-value pairs of {@link Event#getAttributes()}, so
+ * reading such a file results in exactly the same events as reading the corresponding xml file.
+ */
+public class EventWriterBinary implements EventWriter, BasicEventHandler {
+
+	public static final byte[] MAGIC = "MATSIMEV".getBytes(StandardCharsets.US_ASCII);
+	public static final int VERSION = 1;
+
+	/** value index for attributes with value <code>null</code> */
+	public static final int NULL_VALUE = -1;
+	/** value index for attribute values that are not part of the dictionary, but stored directly in the block */
+	public static final int LITERAL_VALUE = -2;
+
+	public static final double DEFAULT_BLOCK_DURATION = 900.0;
+	public static final int DEFAULT_MAX_EVENTS_PER_BLOCK = 1 << 16;
+
+	private final DataOutputStream out;
+	private long position = 0;
+
+	private final double blockDuration;
+	private final int maxEventsPerBlock;
+
+	private final Map<String, Integer> dictionary = new HashMap<>();
+	private final List<String> dictionaryEntries = new ArrayList<>();
+	private final List<BlockInfo> blocks = new ArrayList<>();
+
+	// the columns of the current block
+	private int nOfEvents = 0;
+	private double[] times;
+	private int[] types;
+	private int[] attributeCounts;
+	private int nOfAttributes = 0;
+	private int[] keys = new int[1024];
+	private int[] values = new int[1024];
+	private final List<String> literals = new ArrayList<>();
+	private double blockStartTime;
+	private double blockEndTime;
+
+	private final ByteArrayOutputStream rawBlock = new ByteArrayOutputStream(1 << 20);
+	private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+	private byte[] compressed = new byte[1 << 16];
+
+	public EventWriterBinary(final String filename) {
+		this(filename, DEFAULT_BLOCK_DURATION, DEFAULT_MAX_EVENTS_PER_BLOCK);
+	}
+
+	/**
+	 * @param blockDuration the maximum time span of events in one block. Smaller values allow more precise
+	 * skipping of events outside of a time window, but result in a bigger index and slightly worse compression.
+	 * @param maxEventsPerBlock the maximum number of events in one block, limits the memory required for
+	 * writing and reading
+	 */
+	public EventWriterBinary(final String filename, final double blockDuration, final int maxEventsPerBlock) {
+		this.blockDuration = blockDuration;
+		this.maxEventsPerBlock = maxEventsPerBlock;
+		this.times = new double[maxEventsPerBlock];
+		this.types = new int[maxEventsPerBlock];
+		this.attributeCounts = new int[maxEventsPerBlock];
+		try {
+			this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(filename), 1 << 16));
+			this.out.write(MAGIC);
+			this.out.writeInt(VERSION);
+			this.position = MAGIC.length + 4;
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	@Override
+	public void reset(final int iter) {
+	}
+
+	@Override
+	public void handleEvent(final Event event) {
+		double time = event.getTime();
+		if (this.nOfEvents == this.maxEventsPerBlock
+				|| (this.nOfEvents > 0 && time >= this.blockStartTime + this.blockDuration)) {
+			flushBlock();
+		}
+		if (this.nOfEvents == 0) {
+			this.blockStartTime = time;
+			this.blockEndTime = time;
+		} else {
+			// events should be ordered by time, but we do not rely on it
+			this.blockStartTime = Math.min(this.blockStartTime, time);
+			this.blockEndTime = Math.max(this.blockEndTime, time);
+		}
+
+		int index = this.nOfEvents;
+		this.times[index] = time;
+		this.types[index] = intern(event.getEventType());
+		int count = 0;
+		for (Map.Entry<String, String> attribute : event.getAttributes().entrySet()) {
+			String key = attribute.getKey();
+			if (Event.ATTRIBUTE_TIME.equals(key) || Event.ATTRIBUTE_TYPE.equals(key)) {
+				continue;
+			}
+			if (this.nOfAttributes == this.keys.length) {
+				this.keys = Arrays.copyOf(this.keys, this.keys.length * 2);
+				this.values = Arrays.copyOf(this.values, this.values.length * 2);
+			}
+			this.keys[this.nOfAttributes] = intern(key);
+			String value = attribute.getValue();
+			if (value == null) {
+				this.values[this.nOfAttributes] = NULL_VALUE;
+			} else if (isLiteral(value)) {
+				this.values[this.nOfAttributes] = LITERAL_VALUE;
+				this.literals.add(value);
+			} else {
+				this.values[this.nOfAttributes] = intern(value);
+			}
+			this.nOfAttributes++;
+			count++;
+		}
+		this.attributeCounts[index] = count;
+		this.nOfEvents++;
+	}
+
+	/*
+	 * Decimal numbers, e.g. positions, distances or amounts of money, hardly ever repeat and would only
+	 * bloat the dictionary. Integral numbers are typically ids and thus kept in the dictionary.
+	 */
+	private static boolean isLiteral(final String value) {
+		if (value.isEmpty()) {
+			return false;
+		}
+		char first = value.charAt(0);
+		if (!(first == '-' || (first >= '0' && first <= '9'))) {
+			return false;
+		}
+		return value.indexOf('.') >= 0 || value.indexOf('E') >= 0;
+	}
+
+	private int intern(final String string) {
+		Integer index = this.dictionary.get(string);
+		if (index == null) {
+			index = this.dictionaryEntries.size();
+			this.dictionary.put(string, index);
+			this.dictionaryEntries.add(string);
+		}
+		return index;
+	}
+
+	/**
+	 * Writes the current block. The uncompressed block consists of the columns
+	 * <pre>
+	 * int nOfEvents
+	 * nOfEvents * double time
+	 * nOfEvents * int type
+	 * nOfEvents * int nOfAttributes
+	 * nOfAttributes(total) * int key
+	 * nOfAttributes(total) * int value (dictionary index, NULL_VALUE or LITERAL_VALUE)
+	 * nOfLiterals * UTF string
+	 * </pre>
+	 */
+	private void flushBlock() {
+		if (this.nOfEvents == 0) {
+			return;
+		}
+		try {
+			this.rawBlock.reset();
+			DataOutputStream block = new DataOutputStream(this.rawBlock);
+			block.writeInt(this.nOfEvents);
+			for (int i = 0; i < this.nOfEvents; i++) {
+				block.writeDouble(this.times[i]);
+			}
+			BitSet blockTypes = new BitSet();
+			for (int i = 0; i < this.nOfEvents; i++) {
+				block.writeInt(this.types[i]);
+				blockTypes.set(this.types[i]);
+			}
+			for (int i = 0; i < this.nOfEvents; i++) {
+				block.writeInt(this.attributeCounts[i]);
+			}
+			for (int i = 0; i < this.nOfAttributes; i++) {
+				block.writeInt(this.keys[i]);
+			}
+			for (int i = 0; i < this.nOfAttributes; i++) {
+				block.writeInt(this.values[i]);
+			}
+			for (String literal : this.literals) {
+				block.writeUTF(literal);
+			}
+			block.flush();
+
+			byte[] raw = this.rawBlock.toByteArray();
+			this.deflater.reset();
+			this.deflater.setInput(raw);
+			this.deflater.finish();
+			int compressedLength = 0;
+			while (!this.deflater.finished()) {
+				if (compressedLength == this.compressed.length) {
+					this.compressed = Arrays.copyOf(this.compressed, this.compressed.length * 2);
+				}
+				compressedLength += this.deflater.deflate(this.compressed, compressedLength, this.compressed.length - compressedLength);
+			}
+			this.out.write(this.compressed, 0, compressedLength);
+
+			this.blocks.add(new BlockInfo(this.position, compressedLength, raw.length, this.nOfEvents,
+					this.blockStartTime, this.blockEndTime, blockTypes));
+			this.position += compressedLength;
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		this.nOfEvents = 0;
+		this.nOfAttributes = 0;
+		this.literals.clear();
+	}
+
+	@Override
+	public void closeFile() {
+		flushBlock();
+		try {
+			long dictionaryOffset = this.position;
+			this.out.writeInt(this.dictionaryEntries.size());
+			for (String entry : this.dictionaryEntries) {
+				this.out.writeUTF(entry);
+			}
+			this.out.writeInt(this.blocks.size());
+			for (BlockInfo block : this.blocks) {
+				this.out.writeLong(block.offset);
+				this.out.writeInt(block.compressedLength);
+				this.out.writeInt(block.length);
+				this.out.writeInt(block.nOfEvents);
+				this.out.writeDouble(block.startTime);
+				this.out.writeDouble(block.endTime);
+				this.out.writeInt(block.types.cardinality());
+				for (int type = block.types.nextSetBit(0); type >= 0; type = block.types.nextSetBit(type + 1)) {
+					this.out.writeInt(type);
+				}
+			}
+			this.out.writeLong(dictionaryOffset);
+			this.out.write(MAGIC);
+			this.out.close();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		this.deflater.end();
+	}
+
+	private static final class BlockInfo {
+		final long offset;
+		final int compressedLength;
+		final int length;
+		final int nOfEvents;
+		final double startTime;
+		final double endTime;
+		final BitSet types;
+
+		BlockInfo(long offset, int compressedLength, int length, int nOfEvents, double startTime, double endTime, BitSet types) {
+			this.offset = offset;
+			this.compressedLength = compressedLength;
+			this.length = length;
+			this.nOfEvents = nOfEvents;
+			this.startTime = startTime;
+			this.endTime = endTime;
+			this.types = types;
+		}
+	}
+
+}
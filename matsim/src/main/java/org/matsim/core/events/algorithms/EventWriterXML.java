@@ -36,7 +36,14 @@ public class EventWriterXML implements EventWriter, BasicEventHandler {
 	private final BufferedWriter out;
 
 	public EventWriterXML(final String outfilename) {
-		this.out = IOUtils.getBufferedWriter(outfilename);
+		this(outfilename, 1);
+	}
+
+	/**
+	 * @param compressionThreads the number of threads compressing the file, if its name ends with .gz or .zst
+	 */
+	public EventWriterXML(final String outfilename, final int compressionThreads) {
+		this.out = IOUtils.getBufferedWriter(outfilename, IOUtils.CHARSET_UTF8, false, compressionThreads);
 		this.writeHeader();
 	}
 
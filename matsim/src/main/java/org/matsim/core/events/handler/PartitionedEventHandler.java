@@ -0,0 +1,43 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.events.handler;
+
+/**
+ * An event handler whose state is partitioned by a person, link or vehicle id, i.e. events
+ * referring to different ids never interact inside the handler.
+ * <br>
+ * Events managers that support it (currently the ShardedEventsManagerImpl) may call such a handler
+ * concurrently from several threads. All events with the same partition id are still handed to
+ * the handler in order and from the same thread, but events with different ids may be handled
+ * at the same time. The handler must thus be able to cope with concurrent calls for different ids,
+ * e.g. by storing its per-id state in pre-allocated arrays or a concurrent map.
+ * <br>
+ * Events that do not carry the id the handler is partitioned by (e.g. a link enter event for a
+ * handler partitioned by person) are all handed to the handler from one single thread.
+ * <br>
+ * Events managers that do not support partitioning just treat these handlers as regular event handlers.
+ */
+public interface PartitionedEventHandler extends EventHandler {
+
+	enum PartitionKey { person, link, vehicle }
+
+	PartitionKey getPartitionKey();
+
+}
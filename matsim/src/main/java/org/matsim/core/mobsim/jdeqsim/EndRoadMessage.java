@@ -19,6 +19,11 @@
 
 package org.matsim.core.mobsim.jdeqsim;
 
+import java.util.List;
+
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.PlanElement;
+
 /**
  * The micro-simulation internal handler, when the end of a road is reached.
  *
@@ -48,6 +53,18 @@ public class EndRoadMessage extends EventMessage {
 		}
 	}
 
+	/**
+	 * @return the road, which the vehicle requests to enter when this message
+	 *         is handled
+	 */
+	Road getNextRoad() {
+		if (vehicle.isCurrentLegFinished()) {
+			List<? extends PlanElement> actsLegs = vehicle.getOwnerPerson().getSelectedPlan().getPlanElements();
+			return Road.getRoad(((Activity) actsLegs.get(vehicle.getLegIndex() + 1)).getLinkId());
+		}
+		return Road.getRoad(vehicle.getCurrentLinkRoute()[vehicle.getLinkIndex() + 1]);
+	}
+
 	public EndRoadMessage(Scheduler scheduler, Vehicle vehicle) {
 		super(scheduler, vehicle);
 	}
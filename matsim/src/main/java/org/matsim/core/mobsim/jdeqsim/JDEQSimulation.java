@@ -24,15 +24,18 @@ import org.apache.log4j.Logger;
 import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.Scenario;
 import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
 import org.matsim.api.core.v01.population.Person;
 import org.matsim.core.api.experimental.events.EventsManager;
 import org.matsim.core.config.groups.PlansConfigGroup;
 import org.matsim.core.mobsim.framework.Mobsim;
 import org.matsim.core.mobsim.jdeqsim.util.Timer;
+import org.matsim.core.network.TimeDependentNetwork;
 
 import javax.inject.Inject;
 
 import java.util.HashMap;
+import java.util.function.Function;
 
 
 /**
@@ -62,28 +65,55 @@ public class JDEQSimulation implements Mobsim {
 
 	@Override
 	public void run() {
+		boolean parallel = config.getNumberOfThreads() > 1;
+		if (parallel && isTimeVariantNetwork()) {
+			// the time windows of the partitions are derived from the free speeds at the start of the simulation
+			log.warn("The parallel JDEQSim does not support time variant networks, the simulation runs on a single thread.");
+			parallel = false;
+		}
+		if (parallel) {
+			run(new ParallelScheduler(config, config.getNumberOfThreads(), this.scenario.getNetwork(), this.scenario.getPopulation()));
+		} else {
+			Scheduler scheduler = new Scheduler(new MessageQueue(), config.getSimulationEndTime());
+			run(link -> scheduler, scheduler);
+		}
+	}
+
+	/* deliberately package */ void run(ParallelScheduler scheduler) {
+		run(scheduler::getScheduler, scheduler.getVehicleScheduler());
+	}
+
+	private void run(Function<Link, Scheduler> roadScheduler, Scheduler vehicleScheduler) {
 		events.initProcessing();
 		Timer t = new Timer();
 		t.startTimer();
 
-		Scheduler scheduler = new Scheduler(new MessageQueue(), config.getSimulationEndTime());
+		initialize(roadScheduler, vehicleScheduler);
+		vehicleScheduler.startSimulation();
+
+		t.endTimer();
+		log.info("Time needed for one iteration (only JDEQSimulation part): " + t.getMeasuredTime() + "[ms]");
+		events.finishProcessing();
+	}
+
+	private boolean isTimeVariantNetwork() {
+		Network network = this.scenario.getNetwork();
+		return this.scenario.getConfig().network().isTimeVariantNetwork()
+				|| (network instanceof TimeDependentNetwork && !((TimeDependentNetwork) network).getNetworkChangeEvents().isEmpty());
+	}
+
+	private void initialize(Function<Link, Scheduler> roadScheduler, Scheduler vehicleScheduler) {
 		Road.setAllRoads(new HashMap<Id<Link>, Road>());
 
 		// initialize network
 		Road road;
 		for (Link link : this.scenario.getNetwork().getLinks().values()) {
-			road = new Road(scheduler, link);
+			road = new Road(roadScheduler.apply(link), link);
 			Road.getAllRoads().put(link.getId(), road);
 		}
 
 		for (Person person : this.scenario.getPopulation().getPersons().values()) {
-			new Vehicle(scheduler, person, activityDurationInterpretation); // the vehicle registers itself to the scheduler
+			new Vehicle(vehicleScheduler, person, activityDurationInterpretation); // the vehicle registers itself to the scheduler
 		}
-
-		scheduler.startSimulation();
-
-		t.endTimer();
-		log.info("Time needed for one iteration (only JDEQSimulation part): " + t.getMeasuredTime() + "[ms]");
-		events.finishProcessing();
 	}
 }
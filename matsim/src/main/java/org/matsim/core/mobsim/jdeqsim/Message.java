@@ -40,6 +40,9 @@ public abstract class Message implements Comparable<Message> {
 	private SimUnit receivingUnit;
 	protected int priority = 0;
 	private boolean isAlive = true;
+	// only used by the ParallelScheduler, to order the events of the messages arriving at the same time
+	int eventPriority = 0;
+	int eventGeneration = 0;
 
 	public Message() {
 	}
@@ -19,6 +19,7 @@
 
 package org.matsim.core.mobsim.jdeqsim;
 
+import java.util.Comparator;
 import java.util.PriorityQueue;
 
 /**
@@ -27,9 +28,24 @@ import java.util.PriorityQueue;
  * @author rashid_waraich
  */
 public class MessageQueue {
-	private PriorityQueue<Message> queue1 = new PriorityQueue<Message>();
+	private PriorityQueue<Message> queue1;
 	private int queueSize = 0;
 
+	public MessageQueue() {
+		queue1 = new PriorityQueue<Message>();
+	}
+
+	/**
+	 * 
+	 * A queue ordering the messages by the given comparator instead of their
+	 * natural order.
+	 *
+	 * @param order
+	 */
+	public MessageQueue(Comparator<? super Message> order) {
+		queue1 = new PriorityQueue<Message>(order);
+	}
+
 	/**
 	 * 
 	 * Putting a message into the queue
@@ -80,6 +96,21 @@ public class MessageQueue {
 		return m;
 	}
 
+	/**
+	 * 
+	 * get the first message in the queue (with least time stamp) without removing it
+	 *
+	 * @return the message, or null if there is no message in the queue
+	 */
+	public Message peekNextMessage() {
+		Message m;
+		// drop dead messages at the head of the queue
+		while ((m = queue1.peek()) != null && !m.isAlive()) {
+			queue1.poll();
+		}
+		return m;
+	}
+
 	public boolean isEmpty() {
 		return queue1.size() == 0;
 	}
@@ -88,4 +119,4 @@ public class MessageQueue {
 		return queueSize;
 	}
 
-}
\ No newline at end of file
+}
\ No newline at end of file
@@ -0,0 +1,774 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.jdeqsim;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.PlanElement;
+import org.matsim.api.core.v01.population.Population;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.events.handler.EventHandler;
+import org.matsim.core.population.routes.NetworkRoute;
+
+/**
+ * Runs the micro-simulation on several threads. The network is split into
+ * spatial partitions by recursive coordinate bisection of the nodes, a road
+ * belongs to the partition of its from-node. Each partition has its own
+ * message queue and handles all messages which access its roads, the end of a
+ * road is handled by the partition of the road to be entered next.
+ * <br>
+ * The partitions are synchronized conservatively in time windows: within a
+ * window, each partition handles its messages independently of the others,
+ * messages to other partitions are exchanged at the end of the window. The
+ * length of the windows is the lookahead of the messages crossing a partition
+ * border, that is the smallest free speed travel time, inverse outflow
+ * capacity and gap travel time of the roads at the borders, the squeeze time
+ * and the travel time of the legs not simulated on the network which end in
+ * another partition, as far as they take time. If there is no lookahead, the
+ * partitions are simulated one after the other in time order.
+ * <br>
+ * Leaving a road which ends in another partition has no lookahead, as the
+ * entry into the next road is granted at the time of the request. Such a
+ * message may arrive in the window in which it is due. The partition owning
+ * the road therefore does not handle any message accessing the road which
+ * comes after the end of road or the deadlock prevention message of its first
+ * car, until the next window, and handles the message directly after the one
+ * sending it if it is due at the same time. So the vehicles cross the borders
+ * at the same time and in the same order as in the sequential simulation. If
+ * no partition can handle a message in a window, the messages of the earliest
+ * time are handled one after the other.
+ * <br>
+ * The end of a leg to another partition without travel time, that is a car
+ * leg with an empty route or a leg not simulated on the network with a travel
+ * time of zero or none, has no lookahead either. It is handled directly after
+ * the start of the leg as well, which may be after later messages of the
+ * partition of the next activity. These do not depend on the arrival of the
+ * agent, except for the departure to the next leg on the network: until the
+ * end of the leg is handled, the partition does not handle any message
+ * accessing the road of the next activity which comes after the start of the
+ * leg. Only if the agent starts the leg and departs again within one time
+ * window, while the road is accessed in between, the departure may be handled
+ * out of order.
+ * <br>
+ * The events of all partitions are buffered and passed on ordered by time and
+ * message priority, events of the same time and priority in the order of the
+ * partitions. So the events do not depend on the number of threads used to
+ * process the partitions. A message sent for the time at which it is sent
+ * comes after the sending message, regardless of its priority, as in the
+ * sequential simulation. Messages of the same time and priority are ordered by
+ * the persons of their vehicles, as their order in the sequential message
+ * queue depends on the other messages in the queue.
+ */
+/* deliberately package */ final class ParallelScheduler {
+
+	private static final Logger log = Logger.getLogger(ParallelScheduler.class);
+
+	private static final Comparator<BufferedEvent> EVENT_ORDER = Comparator.<BufferedEvent> comparingDouble(e -> e.time)
+			.thenComparingInt(e -> -e.eventPriority).thenComparingInt(e -> e.eventGeneration).thenComparingInt(e -> -e.priority);
+
+	/*
+	 * The order of the messages in the partitions. Unlike the natural order of
+	 * the messages, it does not leave the order of messages of the same time
+	 * and priority to the queue.
+	 */
+	private static final Comparator<Message> MESSAGE_ORDER = Comparator.<Message> naturalOrder()
+			.thenComparing(ParallelScheduler::getPersonId, Comparator.nullsFirst(Comparator.<Id<Person>> naturalOrder()));
+
+	private static final ThreadLocal<Partition> currentPartition = new ThreadLocal<>();
+
+	private final Partition[] partitions;
+	private final Map<Node, Partition> partitionOfNode = new IdentityHashMap<>();
+	private final Map<Road, BorderRoad> borderRoads = new IdentityHashMap<>();
+	// by the links of the activities after legs to another partition without travel time
+	private final Map<Link, LegEndRoad> legEndRoads = new IdentityHashMap<>();
+	// by the persons, the roads of the legs in the plan elements which are in legEndRoads
+	private final Map<Person, LegEndRoad[]> legEnds = new IdentityHashMap<>();
+	private final JDEQSimConfigGroup config;
+	private final List<BufferedEvent> eventBuffer = new ArrayList<>();
+	// the lookahead of the legs not simulated on the network
+	private double legLookahead = Double.POSITIVE_INFINITY;
+	private double windowStart = Double.NEGATIVE_INFINITY;
+	private double windowEnd = Double.NEGATIVE_INFINITY;
+	private int numberOfTimeWindows = 0;
+	// while set, the messages are handled one after the other in time order
+	private boolean sequential = false;
+
+	ParallelScheduler(final JDEQSimConfigGroup config, final int numberOfPartitions, final Network network, final Population population) {
+		this.config = config;
+		this.partitions = new Partition[numberOfPartitions];
+		for (int i = 0; i < this.partitions.length; i++) {
+			this.partitions[i] = new Partition(i);
+		}
+		List<Node> nodes = new ArrayList<>(network.getNodes().values());
+		bisect(nodes, 0, nodes.size(), 0, this.partitions.length);
+		findLegsToOtherPartitions(network, population);
+	}
+
+	private void bisect(final List<Node> nodes, final int from, final int to, final int firstPartition, final int numberOfPartitions) {
+		if (numberOfPartitions == 1) {
+			for (int i = from; i < to; i++) {
+				this.partitionOfNode.put(nodes.get(i), this.partitions[firstPartition]);
+			}
+			return;
+		}
+		double minX = Double.POSITIVE_INFINITY;
+		double maxX = Double.NEGATIVE_INFINITY;
+		double minY = Double.POSITIVE_INFINITY;
+		double maxY = Double.NEGATIVE_INFINITY;
+		for (int i = from; i < to; i++) {
+			Node node = nodes.get(i);
+			minX = Math.min(minX, node.getCoord().getX());
+			maxX = Math.max(maxX, node.getCoord().getX());
+			minY = Math.min(minY, node.getCoord().getY());
+			maxY = Math.max(maxY, node.getCoord().getY());
+		}
+		// split along the longer side, the ids make the order independent of the order of the nodes in the network
+		Comparator<Node> order = maxX - minX >= maxY - minY ? Comparator.comparingDouble(node -> node.getCoord().getX())
+				: Comparator.comparingDouble(node -> node.getCoord().getY());
+		nodes.subList(from, to).sort(order.thenComparing(Node::getId));
+
+		int numberOfFirstPartitions = numberOfPartitions / 2;
+		int split = from + (int) ((long) (to - from) * numberOfFirstPartitions / numberOfPartitions);
+		bisect(nodes, from, split, firstPartition, numberOfFirstPartitions);
+		bisect(nodes, split, to, firstPartition + numberOfFirstPartitions, numberOfPartitions - numberOfFirstPartitions);
+	}
+
+	/*
+	 * The end of a leg not simulated on the network is handled by the partition
+	 * of the next activity, after the travel time of the leg.
+	 */
+	private void findLegsToOtherPartitions(final Network network, final Population population) {
+		for (Person person : population.getPersons().values()) {
+			List<? extends PlanElement> actsLegs = person.getSelectedPlan().getPlanElements();
+			for (int i = 1; i < actsLegs.size() - 1; i += 2) {
+				Leg leg = (Leg) actsLegs.get(i);
+				if (isOnNetwork(leg)) {
+					continue;
+				}
+				Link from = network.getLinks().get(((Activity) actsLegs.get(i - 1)).getLinkId());
+				Link to = network.getLinks().get(((Activity) actsLegs.get(i + 1)).getLinkId());
+				if (getScheduler(from) == getScheduler(to)) {
+					continue;
+				}
+				double travelTime = TransportMode.car.equals(leg.getMode()) ? 0 : leg.getTravelTime();
+				if (travelTime > 0) {
+					this.legLookahead = Math.min(this.legLookahead, travelTime);
+				} else if (i + 2 < actsLegs.size() && isOnNetwork((Leg) actsLegs.get(i + 2))) {
+					// also without a defined travel time, the end of the leg is sent at the start of the leg
+					this.legEnds.computeIfAbsent(person, p -> new LegEndRoad[actsLegs.size()])[i] = this.legEndRoads
+							.computeIfAbsent(to, link -> new LegEndRoad());
+				}
+			}
+		}
+	}
+
+	private static boolean isOnNetwork(final Leg leg) {
+		return TransportMode.car.equals(leg.getMode()) && leg.getRoute() instanceof NetworkRoute
+				&& !((NetworkRoute) leg.getRoute()).getLinkIds().isEmpty();
+	}
+
+	/**
+	 * @return the scheduler of the partition the road of the link belongs to
+	 */
+	Scheduler getScheduler(final Link link) {
+		return this.partitionOfNode.get(link.getFromNode());
+	}
+
+	/**
+	 * @return a scheduler for the vehicles. Messages are always put into the
+	 *         queue of the partition which handles them, so vehicles do not
+	 *         belong to a partition.
+	 */
+	Scheduler getVehicleScheduler() {
+		return this.partitions[0];
+	}
+
+	/**
+	 * Simulates until all messages are handled or the end time is reached. The
+	 * roads and vehicles must have been created before. The events are passed
+	 * on to the events manager of the messages.
+	 */
+	void startSimulation() {
+		EventsManager events = Message.eventsManager;
+		for (Road road : Road.getAllRoads().values()) {
+			Link link = road.getLink();
+			if (this.partitionOfNode.get(link.getFromNode()) != this.partitionOfNode.get(link.getToNode())) {
+				this.borderRoads.put(road, new BorderRoad());
+			}
+		}
+		double lookahead = getLookahead();
+		this.numberOfTimeWindows = 0;
+
+		Message.setEventsManager(new EventsBuffer(events));
+		try {
+			if (lookahead > 0) {
+				log.info("Simulating " + this.partitions.length + " partitions in time windows of " + lookahead + "[s]");
+				simulateInTimeWindows(lookahead, events);
+			} else {
+				log.warn("Simulating " + this.partitions.length + " partitions one after the other, as messages to other partitions have no lookahead");
+				simulateInTimeOrder(events);
+			}
+			// like the sequential scheduler, handle the first message at or after the end time as well
+			processInTimeOrder(Double.POSITIVE_INFINITY, 1);
+			flushEvents(Double.POSITIVE_INFINITY, events);
+		} finally {
+			Message.setEventsManager(events);
+		}
+	}
+
+	/**
+	 * @return the number of time windows of the last simulation, zero if the
+	 *         partitions were simulated one after the other
+	 */
+	int getNumberOfTimeWindows() {
+		return this.numberOfTimeWindows;
+	}
+
+	/*
+	 * The smallest time between sending a message to another partition and its
+	 * arrival, apart from leaving a road and ending a leg without travel time.
+	 */
+	private double getLookahead() {
+		double lookahead = Math.min(this.config.getSqueezeTime(), this.legLookahead);
+		for (Road road : this.borderRoads.keySet()) {
+			// the end of the road is handled by the partition of the next road
+			Link link = road.getLink();
+			lookahead = Math.min(lookahead, Math.min(link.getLength() / link.getFreespeed(), road.inverseOutFlowCapacity));
+			// the road is left after the gap has reached the back of the next road, or this road after the road has been left
+			lookahead = Math.min(lookahead, link.getLength() / this.config.getGapTravelSpeed());
+			for (Link nextLink : link.getToNode().getOutLinks().values()) {
+				lookahead = Math.min(lookahead, nextLink.getLength() / this.config.getGapTravelSpeed());
+			}
+		}
+		return lookahead;
+	}
+
+	private void simulateInTimeWindows(final double windowLength, final EventsManager events) {
+		List<Callable<Integer>> tasks = new ArrayList<>();
+		for (Partition partition : this.partitions) {
+			tasks.add(partition::processWindow);
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(this.partitions.length, runnable -> {
+			Thread thread = new Thread(runnable, "JDEQSim");
+			thread.setDaemon(true);
+			return thread;
+		});
+		try {
+			double hourlyLogTime = 3600;
+			this.windowStart = getNextMessageArrivalTime();
+			while (this.windowStart < this.config.getSimulationEndTime()) {
+				this.windowEnd = Math.min(this.windowStart + windowLength, this.config.getSimulationEndTime());
+				this.numberOfTimeWindows++;
+				int handledMessages = 0;
+				for (Future<Integer> future : executor.invokeAll(tasks)) {
+					handledMessages += future.get();
+				}
+				deliverMessages();
+				if (handledMessages == 0) {
+					// each partition waits for another one, handle the earliest messages in their order
+					processInTimeOrder(Math.nextUp(this.windowStart), Integer.MAX_VALUE);
+				}
+				this.windowStart = getNextMessageArrivalTime();
+				flushEvents(this.windowStart, events);
+
+				if (this.windowStart >= hourlyLogTime && this.windowStart < Double.MAX_VALUE) {
+					hourlyLogTime = this.windowStart + 3600;
+					log.info("Simulation at " + this.windowStart / 3600 + "[h]");
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	private void simulateInTimeOrder(final EventsManager events) {
+		double time = getNextMessageArrivalTime();
+		while (time < this.config.getSimulationEndTime()) {
+			processInTimeOrder(Math.min(time + 3600, this.config.getSimulationEndTime()), Integer.MAX_VALUE);
+			time = getNextMessageArrivalTime();
+			flushEvents(time, events);
+			if (time < Double.MAX_VALUE) {
+				log.info("Simulation at " + time / 3600 + "[h]");
+			}
+		}
+	}
+
+	/*
+	 * Handles the messages of all partitions before the given time on this
+	 * thread, in the order of the sequential scheduler, and at most the given
+	 * number of messages.
+	 */
+	private void processInTimeOrder(final double until, final int maxMessages) {
+		this.sequential = true;
+		try {
+			for (int i = 0; i < maxMessages; i++) {
+				Partition next = null;
+				Message first = null;
+				for (Partition partition : this.partitions) {
+					Message m = partition.peekNextPlace();
+					if (m != null && (first == null || MESSAGE_ORDER.compare(m, first) < 0)) {
+						next = partition;
+						first = m;
+					}
+				}
+				if (first == null || first.getMessageArrivalTime() >= until) {
+					return;
+				}
+				currentPartition.set(next);
+				next.processNextMessage();
+			}
+		} finally {
+			currentPartition.remove();
+			this.sequential = false;
+		}
+	}
+
+	private double getNextMessageArrivalTime() {
+		double time = Double.MAX_VALUE;
+		for (Partition partition : this.partitions) {
+			Message m = partition.peekNextPlace();
+			if (m != null) {
+				time = Math.min(time, m.getMessageArrivalTime());
+			}
+		}
+		return time;
+	}
+
+	private void deliverMessages() {
+		for (Partition source : this.partitions) {
+			for (Partition target : this.partitions) {
+				List<Message> outbox = source.outboxes.get(target.index);
+				for (Message m : outbox) {
+					target.queue.putMessage(m);
+				}
+				outbox.clear();
+				target.immediateMessages.addAll(source.immediateOutboxes.get(target.index));
+				source.immediateOutboxes.get(target.index).clear();
+			}
+		}
+	}
+
+	/*
+	 * Passes on the events of the messages before the given time, later
+	 * messages might still be preceded by messages arriving from other
+	 * partitions.
+	 */
+	private void flushEvents(final double until, final EventsManager events) {
+		for (Partition partition : this.partitions) {
+			List<BufferedEvent> remaining = new ArrayList<>();
+			for (BufferedEvent event : partition.events) {
+				(event.time < until ? this.eventBuffer : remaining).add(event);
+			}
+			partition.events.clear();
+			partition.events.addAll(remaining);
+		}
+		// the sort is stable, so the events of one message and of one partition keep their order
+		this.eventBuffer.sort(EVENT_ORDER);
+		for (BufferedEvent event : this.eventBuffer) {
+			events.processEvent(event.event);
+		}
+		this.eventBuffer.clear();
+	}
+
+	private Partition getTargetPartition(final Message m) {
+		if (m instanceof EndRoadMessage) {
+			// handling the message accesses the road to be entered next, not the one which ends
+			return (Partition) ((EndRoadMessage) m).getNextRoad().getScheduler();
+		}
+		return (Partition) m.getReceivingUnit().getScheduler();
+	}
+
+	private static Id<Person> getPersonId(final Message m) {
+		if (m instanceof EventMessage && ((EventMessage) m).vehicle != null) {
+			return ((EventMessage) m).vehicle.getOwnerPerson().getId();
+		}
+		return null;
+	}
+
+	private LegEndRoad getLegEndRoad(final Vehicle vehicle) {
+		LegEndRoad[] roads = this.legEnds.get(vehicle.getOwnerPerson());
+		return roads == null ? null : roads[vehicle.getLegIndex()];
+	}
+
+	/*
+	 * @return the road whose state is changed by handling the message, except
+	 *         for leaving a road
+	 */
+	private static Road getAccessedRoad(final Message m) {
+		if (m instanceof EndRoadMessage) {
+			return ((EndRoadMessage) m).getNextRoad();
+		}
+		if (m instanceof StartingLegMessage) {
+			Vehicle vehicle = ((StartingLegMessage) m).vehicle;
+			return TransportMode.car.equals(vehicle.getCurrentLeg().getMode()) && vehicle.getCurrentLinkRoute().length > 0
+					? (Road) m.getReceivingUnit() : null;
+		}
+		if (m instanceof EnterRoadMessage || m instanceof DeadlockPreventionMessage) {
+			return (Road) m.getReceivingUnit();
+		}
+		return null;
+	}
+
+	private final class Partition extends Scheduler {
+
+		private final int index;
+		private final List<List<Message>> outboxes = new ArrayList<>();
+		private final List<List<ImmediateMessage>> immediateOutboxes = new ArrayList<>();
+		private final PriorityQueue<ImmediateMessage> immediateMessages = new PriorityQueue<>(Comparator.comparing(m -> m.sender));
+		private final List<BufferedEvent> events = new ArrayList<>();
+		private Message currentMessage = null;
+		private double simTime = 0;
+		private int messagePriority = 0;
+		private int eventPriority = 0;
+		private int eventGeneration = 0;
+
+		Partition(final int index) {
+			super(new MessageQueue(MESSAGE_ORDER));
+			this.index = index;
+			for (int i = 0; i < ParallelScheduler.this.partitions.length; i++) {
+				this.outboxes.add(new ArrayList<>());
+				this.immediateOutboxes.add(new ArrayList<>());
+			}
+		}
+
+		@Override
+		public void schedule(final Message m) {
+			recordLeavingBorderRoad(m);
+			recordStartOfLegToOtherPartition(m);
+			Partition current = currentPartition.get();
+			if (current != null && m.getMessageArrivalTime() == current.simTime) {
+				m.eventPriority = Math.min(m.priority, current.eventPriority);
+				m.eventGeneration = current.eventGeneration + 1;
+			} else {
+				m.eventPriority = m.priority;
+				m.eventGeneration = 0;
+			}
+			Partition target = getTargetPartition(m);
+			if (current == null || target == current || ParallelScheduler.this.sequential) {
+				// while setting up, messages go directly into the queue of their partition
+				target.queue.putMessage(m);
+				return;
+			}
+			if (m.getMessageArrivalTime() < ParallelScheduler.this.windowEnd) {
+				if (m.getMessageArrivalTime() <= current.simTime) {
+					// leaving a road, or the end of a leg without travel time, which may be undefined
+					current.immediateOutboxes.get(target.index).add(new ImmediateMessage(m, current.currentMessage));
+					return;
+				}
+				if (!(m instanceof LeaveRoadMessage)) {
+					throw new IllegalStateException("A message to another partition arrives at " + m.getMessageArrivalTime()
+							+ ", before the end of the time window at " + ParallelScheduler.this.windowEnd
+							+ ". Is the network time variant?");
+				}
+			}
+			current.outboxes.get(target.index).add(m);
+		}
+
+		/*
+		 * The first car on a border road leaves it after the end of the road at
+		 * the earliest, or when it is squeezed into the next road.
+		 */
+		private void recordLeavingBorderRoad(final Message m) {
+			if (m instanceof EndRoadMessage) {
+				BorderRoad borderRoad = ParallelScheduler.this.borderRoads.get(m.getReceivingUnit());
+				if (borderRoad != null) {
+					borderRoad.endRoad = (EndRoadMessage) m;
+				}
+			} else if (m instanceof DeadlockPreventionMessage) {
+				Vehicle vehicle = ((DeadlockPreventionMessage) m).vehicle;
+				BorderRoad borderRoad = vehicle.getLinkIndex() >= 0
+						? ParallelScheduler.this.borderRoads.get(vehicle.getPreviousRoad()) : null;
+				if (borderRoad != null) {
+					borderRoad.deadlockPrevention = (DeadlockPreventionMessage) m;
+				}
+			}
+		}
+
+		/*
+		 * Until the end of a leg to another partition without travel time is
+		 * handled, the next departure of the agent is not known.
+		 */
+		private void recordStartOfLegToOtherPartition(final Message m) {
+			if (m instanceof StartingLegMessage) {
+				Vehicle vehicle = ((StartingLegMessage) m).vehicle;
+				LegEndRoad legEndRoad = getLegEndRoad(vehicle);
+				if (legEndRoad != null) {
+					legEndRoad.legStarts.put(vehicle, m);
+				}
+			}
+		}
+
+		/**
+		 * Simulates all partitions, see {@link ParallelScheduler#startSimulation()}.
+		 */
+		@Override
+		public void startSimulation() {
+			ParallelScheduler.this.startSimulation();
+		}
+
+		@Override
+		public double getSimTime() {
+			return this.simTime;
+		}
+
+		/*
+		 * @return the number of messages handled in the current time window
+		 */
+		int processWindow() {
+			currentPartition.set(this);
+			try {
+				int handledMessages = 0;
+				Message m;
+				while ((m = peekNextMessage()) != null && m.getMessageArrivalTime() < ParallelScheduler.this.windowEnd
+						&& !mustWait(m)) {
+					processNextMessage();
+					handledMessages++;
+				}
+				return handledMessages;
+			} finally {
+				currentPartition.remove();
+			}
+		}
+
+		/*
+		 * A message accessing a border road must wait for the road to be left
+		 * by a message of another partition, which may still arrive in this
+		 * window. A message accessing the road of an activity must wait for
+		 * the agents which may still arrive there to depart again.
+		 */
+		private boolean mustWait(final Message m) {
+			Road road = getAccessedRoad(m);
+			if (road == null) {
+				return false;
+			}
+			BorderRoad borderRoad = ParallelScheduler.this.borderRoads.get(road);
+			if (borderRoad != null && borderRoad.mayBeLeftBefore(m, ParallelScheduler.this.windowStart)) {
+				return true;
+			}
+			LegEndRoad legEndRoad = ParallelScheduler.this.legEndRoads.get(road.getLink());
+			return legEndRoad != null && legEndRoad.mayBeEnteredBefore(m);
+		}
+
+		private boolean isImmediateMessageNext() {
+			ImmediateMessage immediate = this.immediateMessages.peek();
+			if (immediate == null) {
+				return false;
+			}
+			Message m = this.queue.peekNextMessage();
+			return m == null || MESSAGE_ORDER.compare(m, immediate.sender) > 0;
+		}
+
+		private Message peekNextMessage() {
+			return isImmediateMessageNext() ? this.immediateMessages.peek().message : this.queue.peekNextMessage();
+		}
+
+		/*
+		 * @return the next message, or the one sending it, if it is an
+		 *         immediate message, as it takes the place of that message in
+		 *         the order of all messages
+		 */
+		Message peekNextPlace() {
+			return isImmediateMessageNext() ? this.immediateMessages.peek().sender : this.queue.peekNextMessage();
+		}
+
+		void processNextMessage() {
+			Message m = isImmediateMessageNext() ? this.immediateMessages.poll().message : this.queue.getNextMessage();
+			if (m instanceof LeaveRoadMessage) {
+				BorderRoad borderRoad = ParallelScheduler.this.borderRoads.get(m.getReceivingUnit());
+				if (borderRoad != null) {
+					borderRoad.endRoad = null;
+				}
+			} else if (m instanceof EndLegMessage) {
+				Vehicle vehicle = ((EndLegMessage) m).vehicle;
+				LegEndRoad legEndRoad = getLegEndRoad(vehicle);
+				if (legEndRoad != null) {
+					legEndRoad.legStarts.remove(vehicle);
+				}
+			}
+			this.currentMessage = m;
+			this.simTime = m.getMessageArrivalTime();
+			this.messagePriority = m.priority;
+			this.eventPriority = m.eventPriority;
+			this.eventGeneration = m.eventGeneration;
+			m.processEvent();
+			m.handleMessage();
+		}
+	}
+
+	/**
+	 * A road ending in another partition than its own. It is only changed by
+	 * its own partition, but left by the other one.
+	 */
+	private static final class BorderRoad {
+		// the end of road message of the first car, only used by the own partition
+		EndRoadMessage endRoad;
+		// the deadlock prevention message of the first car, set by the other partition
+		volatile DeadlockPreventionMessage deadlockPrevention;
+
+		/*
+		 * @return whether the road may be left by a message which has not been
+		 *         handled before the window and comes before the given one
+		 */
+		boolean mayBeLeftBefore(final Message m, final double windowStart) {
+			if (this.endRoad != null && this.endRoad.getMessageArrivalTime() >= windowStart
+					&& MESSAGE_ORDER.compare(m, this.endRoad) >= 0) {
+				return true;
+			}
+			DeadlockPreventionMessage deadlockPrevention = this.deadlockPrevention;
+			return deadlockPrevention != null && deadlockPrevention.isAlive()
+					&& deadlockPrevention.getMessageArrivalTime() >= windowStart && MESSAGE_ORDER.compare(m, deadlockPrevention) >= 0;
+		}
+	}
+
+	/**
+	 * The road of an activity after a leg from another partition without
+	 * travel time, followed by a leg on the network. It is only changed by its
+	 * own partition, but the end of the leg is sent by the other one.
+	 */
+	private static final class LegEndRoad {
+		// the starting leg messages of the agents whose end of leg has not been handled yet
+		final Map<Vehicle, Message> legStarts = new ConcurrentHashMap<>();
+
+		/*
+		 * @return whether an agent may depart from the road before the given
+		 *         message, as it started its leg to the road before
+		 */
+		boolean mayBeEnteredBefore(final Message m) {
+			for (Message legStart : this.legStarts.values()) {
+				if (MESSAGE_ORDER.compare(m, legStart) >= 0) {
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+
+	/**
+	 * A message to another partition, which is due at or before the time of the
+	 * message sending it. It is handled directly after the sending message, as
+	 * in the sequential simulation, regardless of its priority.
+	 */
+	private static final class ImmediateMessage {
+		final Message message;
+		final Message sender;
+
+		ImmediateMessage(final Message message, final Message sender) {
+			this.message = message;
+			this.sender = sender;
+		}
+	}
+
+	private static final class BufferedEvent {
+		final double time;
+		final int eventPriority;
+		final int eventGeneration;
+		final int priority;
+		final Event event;
+
+		BufferedEvent(final Partition partition, final Event event) {
+			this.time = partition.simTime;
+			this.eventPriority = partition.eventPriority;
+			this.eventGeneration = partition.eventGeneration;
+			this.priority = partition.messagePriority;
+			this.event = event;
+		}
+	}
+
+	/**
+	 * Collects the events of the partition which is simulated by the current
+	 * thread, together with the time and priority of the message creating them.
+	 * Everything else is passed on to the events manager of the simulation.
+	 */
+	private static final class EventsBuffer implements EventsManager {
+
+		private final EventsManager events;
+
+		EventsBuffer(final EventsManager events) {
+			this.events = events;
+		}
+
+		@Override
+		public void processEvent(final Event event) {
+			Partition partition = currentPartition.get();
+			if (partition == null) {
+				this.events.processEvent(event);
+			} else {
+				partition.events.add(new BufferedEvent(partition, event));
+			}
+		}
+
+		@Override
+		public void addHandler(final EventHandler handler) {
+			this.events.addHandler(handler);
+		}
+
+		@Override
+		public void removeHandler(final EventHandler handler) {
+			this.events.removeHandler(handler);
+		}
+
+		@Override
+		public void resetHandlers(final int iteration) {
+			this.events.resetHandlers(iteration);
+		}
+
+		@Override
+		public void initProcessing() {
+			this.events.initProcessing();
+		}
+
+		@Override
+		public void afterSimStep(final double time) {
+			this.events.afterSimStep(time);
+		}
+
+		@Override
+		public void finishProcessing() {
+			this.events.finishProcessing();
+		}
+	}
+
+}
@@ -246,6 +246,13 @@ public class Vehicle extends SimUnit {
 	}
 
 	public void scheduleLeavePreviousRoadMessage(double scheduleTime) {
+		scheduleLeaveRoadMessage(scheduleTime, getPreviousRoad());
+	}
+
+	/**
+	 * @return the road, which is left when the vehicle enters the next road
+	 */
+	Road getPreviousRoad() {
 		Road previousRoad = null;
 		Id<Link> previousLinkId = null;
 		/*
@@ -264,7 +271,7 @@ public class Vehicle extends SimUnit {
 			log.error("Some thing is wrong with the simulation: Why is this.getLinkIndex() negative");
 		}
 
-		scheduleLeaveRoadMessage(scheduleTime, previousRoad);
+		return previousRoad;
 	}
 
 	protected void _scheduleEnterRoadMessage(double scheduleTime, Road road) {
@@ -0,0 +1,220 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.qsim;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Calendar queue for the ends of activities. Each scheduled end goes into the bucket of the second it falls in,
+ * so scheduling, rescheduling and removing an item take constant time, and polling the due items of a time step
+ * only looks at the buckets of the seconds since the previous poll.
+ * <br>
+ * The buckets form a ring covering {@link #BUCKETS} seconds, more than a simulated day and a half. Items scheduled
+ * further ahead share a bucket with earlier seconds and stay there until they are due. Removed items are only
+ * marked as such and dropped when their bucket is polled.
+ * <br>
+ * The due items of a time step are polled one by one from a heap. Items which become due while the items of the same
+ * time step are processed, e.g. because an agent ending its activity reschedules another one, are merged into that
+ * heap, so all items are polled in the same order as from a single priority queue.
+ * <br>
+ * Items may be added and removed concurrently, e.g. by the threads of the QNetsimEngine, but not while
+ * {@link #poll(double)} runs.
+ */
+/* deliberately package */ final class ActivityEndCalendar<T> {
+
+	/*package*/ static final int BUCKETS = 1 << 17;
+	private static final int MASK = BUCKETS - 1;
+
+	/*package*/ static final class Entry<T> {
+		final T item;
+		final double time;
+
+		private Entry(final T item, final double time) {
+			this.item = item;
+			this.time = time;
+		}
+	}
+
+	private final Comparator<Entry<T>> order;
+	private final ConcurrentMap<T, Entry<T>> scheduled = new ConcurrentHashMap<>();
+	private final AtomicReferenceArray<List<Entry<T>>> buckets = new AtomicReferenceArray<>(BUCKETS);
+	/* entries taken from the buckets which are due, but not polled yet */
+	private final PriorityQueue<Entry<T>> due;
+
+	/* the first second which may contain due items, Long.MIN_VALUE before the first poll */
+	private long cursor = Long.MIN_VALUE;
+	/* the time of the last poll, the buckets only have to be looked at again if it changes or items were added */
+	private double polledTime = Double.NaN;
+	/* set when an item is added to the bucket of the cursor, which may already have been looked at for this time */
+	private volatile boolean addedAtCursor = false;
+
+	/**
+	 * @param tieBreaker orders items scheduled for the same time.
+	 */
+	ActivityEndCalendar(final Comparator<? super T> tieBreaker) {
+		this.order = (e1, e2) -> {
+			int cmp = Double.compare(e1.time, e2.time);
+			return cmp != 0 ? cmp : tieBreaker.compare(e1.item, e2.item);
+		};
+		this.due = new PriorityQueue<>(this.order);
+	}
+
+	/**
+	 * Schedules the item for the given time, replacing an earlier schedule of the item. Items scheduled for a time
+	 * before the last poll are due at the next poll.
+	 */
+	void add(final T item, final double time) {
+		Entry<T> entry = new Entry<>(item, time);
+		this.scheduled.put(item, entry);
+		long second = Math.max(toSecond(time), this.cursor);
+		List<Entry<T>> bucket = getBucket(second);
+		synchronized (bucket) {
+			bucket.add(entry);
+		}
+		if (second == this.cursor) {
+			this.addedAtCursor = true;
+		}
+	}
+
+	/**
+	 * @return <code>true</code> if the item was scheduled.
+	 */
+	boolean remove(final T item) {
+		return this.scheduled.remove(item) != null;
+	}
+
+	int size() {
+		return this.scheduled.size();
+	}
+
+	/**
+	 * Removes and returns the next item scheduled up to the given time, ordered by their time and then by the tie
+	 * breaker. Items added for a time up to the given time after an earlier poll are merged into that order.
+	 *
+	 * @return the next due item, or <code>null</code> if there is none.
+	 */
+	T poll(final double time) {
+		if (time != this.polledTime || this.addedAtCursor) {
+			collectDue(time);
+		}
+		Entry<T> entry;
+		while ((entry = this.due.poll()) != null) {
+			if (this.scheduled.remove(entry.item, entry)) {
+				return entry.item;
+			}
+			// removed or rescheduled after it was taken from its bucket
+		}
+		return null;
+	}
+
+	/**
+	 * Removes and returns all items scheduled up to the given time, in the order of {@link #poll(double)}.
+	 */
+	List<T> pollDue(final double time) {
+		List<T> items = new ArrayList<>();
+		T item;
+		while ((item = poll(time)) != null) {
+			items.add(item);
+		}
+		return items;
+	}
+
+	/**
+	 * @return all scheduled items with their times, in the order they would be polled.
+	 */
+	List<Entry<T>> getEntries() {
+		List<Entry<T>> entries = new ArrayList<>(this.scheduled.values());
+		entries.sort(this.order);
+		return entries;
+	}
+
+	void clear() {
+		this.scheduled.clear();
+		for (int i = 0; i < BUCKETS; i++) {
+			this.buckets.set(i, null);
+		}
+		this.due.clear();
+		this.cursor = Long.MIN_VALUE;
+		this.polledTime = Double.NaN;
+		this.addedAtCursor = false;
+	}
+
+	private void collectDue(final double time) {
+		// reset before looking at the buckets, so items added meanwhile are looked for at the next poll
+		this.addedAtCursor = false;
+		long last = toSecond(time);
+		if (this.cursor == Long.MIN_VALUE || last - this.cursor >= BUCKETS) {
+			for (int i = 0; i < BUCKETS; i++) {
+				List<Entry<T>> bucket = this.buckets.get(i);
+				if (bucket != null) {
+					collectDue(bucket, time);
+				}
+			}
+		} else {
+			for (long second = this.cursor; second <= last; second++) {
+				List<Entry<T>> bucket = this.buckets.get((int) (second & MASK));
+				if (bucket != null) {
+					collectDue(bucket, time);
+				}
+			}
+		}
+		this.cursor = Math.max(this.cursor, last);
+		this.polledTime = time;
+	}
+
+	private void collectDue(final List<Entry<T>> bucket, final double time) {
+		synchronized (bucket) {
+			int kept = 0;
+			for (int i = 0; i < bucket.size(); i++) {
+				Entry<T> entry = bucket.get(i);
+				if (this.scheduled.get(entry.item) != entry) {
+					continue; // removed or rescheduled
+				}
+				if (entry.time <= time) {
+					this.due.add(entry);
+				} else {
+					bucket.set(kept++, entry);
+				}
+			}
+			bucket.subList(kept, bucket.size()).clear();
+		}
+	}
+
+	private List<Entry<T>> getBucket(final long second) {
+		int index = (int) (second & MASK);
+		List<Entry<T>> bucket = this.buckets.get(index);
+		if (bucket == null) {
+			this.buckets.compareAndSet(index, null, new ArrayList<>());
+			bucket = this.buckets.get(index);
+		}
+		return bucket;
+	}
+
+	private static long toSecond(final double time) {
+		return (long) Math.floor(time);
+	}
+
+}
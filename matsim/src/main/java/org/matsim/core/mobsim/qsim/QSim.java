@@ -21,6 +21,7 @@
 package org.matsim.core.mobsim.qsim;
 
 import org.apache.log4j.Logger;
+import org.matsim.analysis.IterationMetrics;
 import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.Scenario;
 import org.matsim.api.core.v01.events.PersonDepartureEvent;
@@ -133,6 +134,10 @@ public final class QSim extends Thread implements VisMobsim, Netsim, ActivityEnd
 		else this.mobsimEngineRunTimes = null;
 	}
 
+	// always-on counters, cheap enough for production runs
+	private final IterationMetrics.Timer timeStepTimer = IterationMetrics.getTimer(IterationMetrics.QSIM_TIME_STEP);
+	private final Map<MobsimEngine, IterationMetrics.Timer> mobsimEngineTimers = new IdentityHashMap<>();
+
 	/*package (for tests)*/ final InternalInterface internalInterface = new InternalInterface() {
 
 		// These methods must be synchronized, because they are called back
@@ -335,7 +340,8 @@ public final class QSim extends Thread implements VisMobsim, Netsim, ActivityEnd
 	 * @return true if the simulation needs to continue
 	 */
 	/*package*/ boolean doSimStep() {
-		if (analyzeRunTimes) this.startTime = System.nanoTime();
+		final long stepStartTime = System.nanoTime();
+		if (analyzeRunTimes) this.startTime = stepStartTime;
 
 		final double now = this.getSimTimer().getTimeOfDay();
 
@@ -348,21 +354,23 @@ public final class QSim extends Thread implements VisMobsim, Netsim, ActivityEnd
 		 * the other engines simulate the sim step.
 		 */
 		if (this.withindayEngine != null) {
-			if (analyzeRunTimes) startTime = System.nanoTime();
+			this.startTime = System.nanoTime();
 			this.withindayEngine.doSimStep(now);
-			if (analyzeRunTimes) this.mobsimEngineRunTimes.get(this.withindayEngine).addAndGet(System.nanoTime() - this.startTime);
+			long duration = System.nanoTime() - this.startTime;
+			this.mobsimEngineTimers.get(this.withindayEngine).record(duration);
+			if (analyzeRunTimes) this.mobsimEngineRunTimes.get(this.withindayEngine).addAndGet(duration);
 		}
 
 		// "added" engines
 		for (MobsimEngine mobsimEngine : this.mobsimEngines) {
-			if (analyzeRunTimes) this.startTime = System.nanoTime();
-			
 			// withindayEngine.doSimStep(time) has already been called
 			if (mobsimEngine == this.withindayEngine) continue;
 
+			this.startTime = System.nanoTime();
 			mobsimEngine.doSimStep(now);
-			
-			if (analyzeRunTimes) this.mobsimEngineRunTimes.get(mobsimEngine).addAndGet(System.nanoTime() - this.startTime);
+			long duration = System.nanoTime() - this.startTime;
+			this.mobsimEngineTimers.get(mobsimEngine).record(duration);
+			if (analyzeRunTimes) this.mobsimEngineRunTimes.get(mobsimEngine).addAndGet(duration);
 		}
 
 		if (analyzeRunTimes) this.startTime = System.nanoTime();
@@ -386,7 +394,9 @@ public final class QSim extends Thread implements VisMobsim, Netsim, ActivityEnd
 			this.simTimer.incrementTime();
 		}
 		
-		if (analyzeRunTimes) this.qSimInternalTime += System.nanoTime() - this.startTime;
+		long endTime = System.nanoTime();
+		if (analyzeRunTimes) this.qSimInternalTime += endTime - this.startTime;
+		this.timeStepTimer.record(endTime - stepStartTime);
 
 		return doContinue;
 	}
@@ -571,6 +581,8 @@ public final class QSim extends Thread implements VisMobsim, Netsim, ActivityEnd
 		this.mobsimEngines.add(mobsimEngine);
 		
 		if (analyzeRunTimes) this.mobsimEngineRunTimes.put(mobsimEngine, new AtomicLong());
+		this.mobsimEngineTimers.put(mobsimEngine,
+				IterationMetrics.getTimer(IterationMetrics.QSIM_ENGINE_PREFIX + mobsimEngine.getClass().getName()));
 	}
 
 	@Override
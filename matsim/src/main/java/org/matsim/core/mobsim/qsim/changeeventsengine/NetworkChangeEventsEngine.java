@@ -3,8 +3,8 @@ package org.matsim.core.mobsim.qsim.changeeventsengine;
 import org.apache.log4j.Logger;
 import org.matsim.api.core.v01.network.Link;
 import org.matsim.api.core.v01.network.Network;
-import org.matsim.core.mobsim.jdeqsim.Message;
-import org.matsim.core.mobsim.jdeqsim.MessageQueue;
+import org.matsim.core.mobsim.framework.events.MobsimBeforeSimStepEvent;
+import org.matsim.core.mobsim.framework.listeners.MobsimBeforeSimStepListener;
 import org.matsim.core.mobsim.qsim.InternalInterface;
 import org.matsim.core.mobsim.qsim.interfaces.NetsimLink;
 import org.matsim.core.mobsim.qsim.interfaces.TimeVariantLink;
@@ -12,54 +12,68 @@ import org.matsim.core.network.NetworkChangeEvent;
 import org.matsim.core.network.NetworkUtils;
 
 import javax.inject.Inject;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.PriorityQueue;
 import java.util.Queue;
+import java.util.Set;
 
-class NetworkChangeEventsEngine implements NetworkChangeEventsEngineI {
+/**
+ * Lets the netsim links recalculate their time variant attributes when network change events start. The pending
+ * events are kept in a queue ordered by start time. At each time step, all events that have started are taken from
+ * it as one batch, and each affected link is recalculated once. This happens before the engines move the vehicles.
+ */
+class NetworkChangeEventsEngine implements NetworkChangeEventsEngineI, MobsimBeforeSimStepListener {
 	private static final Logger log = Logger.getLogger( NetworkChangeEventsEngine.class ) ;
 
-	private final MessageQueue messageQueue;
 	private final Network network;
+	private final Queue<NetworkChangeEvent> pendingChangeEvents = new PriorityQueue<>(
+			Comparator.comparingDouble(NetworkChangeEvent::getStartTime));
+	private final Set<Link> linksToRecalc = new LinkedHashSet<>();
 	private InternalInterface internalInterface;
 
 	@Inject
-	NetworkChangeEventsEngine(Network network, MessageQueue messageQueue) {
+	NetworkChangeEventsEngine(Network network) {
 		this.network = network;
-		this.messageQueue = messageQueue;
 	}
 
 	@Override
 	public void onPrepareSim() {
-		Queue<NetworkChangeEvent> changeEvents = NetworkUtils.getNetworkChangeEvents(this.network);
-		for (final NetworkChangeEvent changeEvent : changeEvents) {
-			addNetworkChangeEventToMessageQ(changeEvent);
-		}
+		this.pendingChangeEvents.clear();
+		this.pendingChangeEvents.addAll(NetworkUtils.getNetworkChangeEvents(this.network));
 	}
-	
-	private void addNetworkChangeEventToMessageQ(NetworkChangeEvent changeEvent) {
-		Message m = new Message() {
-			@Override
-			public void processEvent() {
 
-			}
+	@Override
+	public void notifyMobsimBeforeSimStep(MobsimBeforeSimStepEvent e) {
+		applyStartedChangeEvents(e.getSimulationTime());
+	}
 
-			@Override
-			public void handleMessage() {
-				applyTheChangeEvent(changeEvent);
-			}
-		};
-		m.setMessageArrivalTime(changeEvent.getStartTime());
-		this.messageQueue.putMessage(m);
+	private void applyStartedChangeEvents(double time) {
+		while (!this.pendingChangeEvents.isEmpty() && this.pendingChangeEvents.peek().getStartTime() <= time) {
+			this.linksToRecalc.addAll(this.pendingChangeEvents.poll().getLinks());
+		}
+		if (!this.linksToRecalc.isEmpty()) {
+			recalcLinks();
+		}
 	}
-	
+
 	private void applyTheChangeEvent(NetworkChangeEvent changeEvent) {
-		for (Link link : changeEvent.getLinks()) {
-			final NetsimLink netsimLink = this.internalInterface.getMobsim().getNetsimNetwork().getNetsimLink(link.getId());
-			if ( netsimLink instanceof TimeVariantLink) {
-				((TimeVariantLink) netsimLink).recalcTimeVariantAttributes();
-			} else {
-				throw new RuntimeException("link not time variant") ;
-			}
+		this.linksToRecalc.addAll(changeEvent.getLinks());
+		recalcLinks();
+	}
 
+	private void recalcLinks() {
+		try {
+			for (Link link : this.linksToRecalc) {
+				final NetsimLink netsimLink = this.internalInterface.getMobsim().getNetsimNetwork().getNetsimLink(link.getId());
+				if ( netsimLink instanceof TimeVariantLink) {
+					((TimeVariantLink) netsimLink).recalcTimeVariantAttributes();
+				} else {
+					throw new RuntimeException("link not time variant") ;
+				}
+			}
+		} finally {
+			this.linksToRecalc.clear();
 		}
 	}
 	
@@ -81,7 +95,7 @@ class NetworkChangeEventsEngine implements NetworkChangeEventsEngineI {
 		if ( event.getStartTime()<= this.internalInterface.getMobsim().getSimTimer().getTimeOfDay() ) {
 			this.applyTheChangeEvent(event);
 		} else {
-			this.addNetworkChangeEventToMessageQ(event);
+			this.pendingChangeEvents.add(event);
 		}
 		
 	}
@@ -99,6 +113,7 @@ class NetworkChangeEventsEngine implements NetworkChangeEventsEngineI {
 
 	@Override
 	public void doSimStep(double time) {
-
+		// the events of this time step have normally been applied before the sim step already
+		applyStartedChangeEvents(time);
 	}
 }
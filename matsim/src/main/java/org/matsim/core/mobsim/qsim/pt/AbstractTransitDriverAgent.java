@@ -35,6 +35,7 @@ import org.matsim.core.mobsim.framework.PlanAgent;
 import org.matsim.core.mobsim.qsim.InternalInterface;
 import org.matsim.core.mobsim.qsim.agents.PersonDriverAgentImpl;
 import org.matsim.core.mobsim.qsim.interfaces.MobsimVehicle;
+import org.matsim.core.mobsim.qsim.qnetsimengine.QVehicle;
 import org.matsim.core.population.routes.NetworkRoute;
 import org.matsim.core.utils.misc.Time;
 import org.matsim.pt.transitSchedule.api.Departure;
@@ -237,6 +238,10 @@ public abstract class AbstractTransitDriverAgent implements TransitDriverAgent,
 			}
 			eventsManager.processEvent(new VehicleArrivesAtFacilityEvent(now, this.vehicle.getVehicle().getId(), stop.getId(),
 					delay));
+			if (this.vehicle instanceof QVehicle) {
+				// the stop time does not count as link travel time, see TravelTimeCalculator
+				((QVehicle) this.vehicle).setLinkEnterTime(Time.UNDEFINED_TIME);
+			}
 		}
 	}
 
@@ -35,6 +35,7 @@ import org.matsim.core.mobsim.qsim.qnetsimengine.QueueWithBuffer.Hole;
 import org.matsim.vis.snapshotwriters.AgentSnapshotInfo;
 import org.matsim.vis.snapshotwriters.AgentSnapshotInfo.AgentState;
 import org.matsim.vis.snapshotwriters.AgentSnapshotInfoFactory;
+import org.matsim.vis.snapshotwriters.SnapshotFrame;
 import org.matsim.vis.snapshotwriters.SnapshotLinkWidthCalculator;
 import org.matsim.vis.snapshotwriters.VisVehicle;
 
@@ -61,21 +62,30 @@ abstract class AbstractAgentSnapshotInfoBuilder {
 	 */
 	public final int positionVehiclesFromWaitingList(final Collection<AgentSnapshotInfo> positions,
 			final Link link, int cnt2, final Queue<QVehicle> waitingList) {
+		return positionVehiclesFromWaitingList(new CollectionTarget(positions), link, cnt2, waitingList);
+	}
+
+	public final int positionVehiclesFromWaitingList(final SnapshotFrame frame, final int linkIndex,
+			final Link link, int cnt2, final Queue<QVehicle> waitingList) {
+		return positionVehiclesFromWaitingList(new FrameTarget(frame, linkIndex), link, cnt2, waitingList);
+	}
+
+	private int positionVehiclesFromWaitingList(final PositionTarget positions,
+			final Link link, int cnt2, final Queue<QVehicle> waitingList) {
 		for (QVehicle veh : waitingList) {
 			Collection<Identifiable<?>> peopleInVehicle = VisUtils.getPeopleInVehicle(veh);
 			boolean first = true;
 			for (Identifiable passenger : peopleInVehicle) {
 				cnt2++ ;
-				AgentSnapshotInfo passengerPosition = snapshotInfoFactory.createAgentSnapshotInfo(passenger.getId(), link, 
-						0.9*link.getLength(), cnt2); // for the time being, same position as facilities
+				final AgentState state;
 				if (passenger.getId().toString().startsWith("pt")) {
-					passengerPosition.setAgentState(AgentState.TRANSIT_DRIVER);
+					state = AgentState.TRANSIT_DRIVER;
 				} else if (first) {
-					passengerPosition.setAgentState(AgentState.PERSON_DRIVING_CAR);
+					state = AgentState.PERSON_DRIVING_CAR;
 				} else {
-					passengerPosition.setAgentState(AgentState.PERSON_OTHER_MODE);
+					state = AgentState.PERSON_OTHER_MODE;
 				}
-				positions.add(passengerPosition);
+				positions.add(passenger.getId(), link, 0.9*link.getLength(), cnt2, state); // for the time being, same position as facilities
 				first = false;
 			}
 		}
@@ -84,10 +94,18 @@ abstract class AbstractAgentSnapshotInfoBuilder {
 
 	public final int positionAgentsInActivities(final Collection<AgentSnapshotInfo> positions, Link link,
 			Collection<MobsimAgent> agentsInActivities,  int cnt2) {
+		return positionAgentsInActivities(new CollectionTarget(positions), link, agentsInActivities, cnt2);
+	}
+
+	public final int positionAgentsInActivities(final SnapshotFrame frame, final int linkIndex, Link link,
+			Collection<MobsimAgent> agentsInActivities,  int cnt2) {
+		return positionAgentsInActivities(new FrameTarget(frame, linkIndex), link, agentsInActivities, cnt2);
+	}
+
+	private int positionAgentsInActivities(final PositionTarget positions, Link link,
+			Collection<MobsimAgent> agentsInActivities,  int cnt2) {
 		for (MobsimAgent pa : agentsInActivities) {
-			AgentSnapshotInfo agInfo = snapshotInfoFactory.createAgentSnapshotInfo(pa.getId(), link, 0.9*link.getLength(), cnt2) ;
-			agInfo.setAgentState( AgentState.PERSON_AT_ACTIVITY ) ;
-			positions.add(agInfo) ;
+			positions.add(pa.getId(), link, 0.9*link.getLength(), cnt2, AgentState.PERSON_AT_ACTIVITY) ;
 			cnt2++ ;
 		}
 		return cnt2;
@@ -99,6 +117,16 @@ abstract class AbstractAgentSnapshotInfoBuilder {
 	 */
 	public final int positionVehiclesFromTransitStop(final Collection<AgentSnapshotInfo> positions, Link link, 
 			Queue<QVehicle> transitVehicleStopQueue, int cnt2 ) {
+		return positionVehiclesFromTransitStop(new CollectionTarget(positions), link, transitVehicleStopQueue, cnt2);
+	}
+
+	public final int positionVehiclesFromTransitStop(final SnapshotFrame frame, final int linkIndex, Link link, 
+			Queue<QVehicle> transitVehicleStopQueue, int cnt2 ) {
+		return positionVehiclesFromTransitStop(new FrameTarget(frame, linkIndex), link, transitVehicleStopQueue, cnt2);
+	}
+
+	private int positionVehiclesFromTransitStop(final PositionTarget positions, Link link, 
+			Queue<QVehicle> transitVehicleStopQueue, int cnt2 ) {
 		if (transitVehicleStopQueue.size() > 0) {
 			for (QVehicle veh : transitVehicleStopQueue) {
 				List<Identifiable<?>> peopleInVehicle = VisUtils.getPeopleInVehicle(veh);
@@ -109,15 +137,15 @@ abstract class AbstractAgentSnapshotInfoBuilder {
 					if ( !it.hasPrevious() ) {
 						last = true ;
 					}
-					AgentSnapshotInfo passengerPosition = snapshotInfoFactory.createAgentSnapshotInfo(passenger.getId(), link, 0.9*link.getLength(), cnt2); // for the time being, same position as facilities
+					final AgentState state;
 					if ( passenger.getId().toString().startsWith("pt")) {
-						passengerPosition.setAgentState(AgentState.TRANSIT_DRIVER);
+						state = AgentState.TRANSIT_DRIVER;
 					} else if (last) {
-						passengerPosition.setAgentState(AgentState.PERSON_DRIVING_CAR);
+						state = AgentState.PERSON_DRIVING_CAR;
 					} else {
-						passengerPosition.setAgentState(AgentState.PERSON_OTHER_MODE);
+						state = AgentState.PERSON_OTHER_MODE;
 					}
-					positions.add(passengerPosition);
+					positions.add(passenger.getId(), link, 0.9*link.getLength(), cnt2, state); // for the time being, same position as facilities
 					cnt2-- ;
 				}
 				cnt2 += peopleInVehicle.size() ; // setting it correctly for the next output
@@ -133,27 +161,31 @@ abstract class AbstractAgentSnapshotInfoBuilder {
 			Integer lane,	double speedValueBetweenZeroAndOne){
 		// I think that the main reason why this exists as public method is that AssignmentEmulatingQLane wants to use it directly.
 		// The reason for this, in return, is that positionVehiclesAlongLine(...) is a service method for queue models only.  kai, apr'16
-		
+		positionAgentGivenDistanceFromFNode(new CollectionTarget(positions), startCoord, endCoord, lengthOfCurve, veh,
+				distanceFromFromNode, lane, speedValueBetweenZeroAndOne);
+	}
+
+	private void positionAgentGivenDistanceFromFNode(final PositionTarget positions, Coord startCoord, Coord endCoord,
+			double lengthOfCurve, QVehicle veh, double distanceFromFromNode, 
+			int lane,	double speedValueBetweenZeroAndOne){
 		MobsimDriverAgent driverAgent = veh.getDriver();
-		AgentSnapshotInfo pos = snapshotInfoFactory.createAgentSnapshotInfo(driverAgent.getId(), startCoord, endCoord, 
-				distanceFromFromNode, lane, lengthOfCurve);
-		pos.setColorValueBetweenZeroAndOne(speedValueBetweenZeroAndOne);
-		if (driverAgent instanceof TransitDriverAgent){
-			pos.setAgentState(AgentState.TRANSIT_DRIVER);
+		final AgentState state;
+		if ( scenario.getPopulation().getPersonAttributes().getAttribute( driverAgent.getId().toString(), AgentSnapshotInfo.marker ) != null ) {
+			state = AgentState.PERSON_OTHER_MODE ;
+		} else if (driverAgent instanceof TransitDriverAgent){
+			state = AgentState.TRANSIT_DRIVER;
 		} else if ( driverAgent.getMode().equals(TransportMode.car)) {
-			pos.setAgentState(AgentState.PERSON_DRIVING_CAR);
+			state = AgentState.PERSON_DRIVING_CAR;
 		} else {
-			pos.setAgentState(AgentState.PERSON_OTHER_MODE );
-		}
-		if ( scenario.getPopulation().getPersonAttributes().getAttribute( driverAgent.getId().toString(), AgentSnapshotInfo.marker ) != null ) {
-			pos.setAgentState( AgentState.PERSON_OTHER_MODE ) ;
+			state = AgentState.PERSON_OTHER_MODE ;
 		}
 
-		this.positionPassengers(positions, veh.getPassengers(), distanceFromFromNode, startCoord, 
+		positionPassengers(positions, veh.getPassengers(), distanceFromFromNode, startCoord, 
 				endCoord, lengthOfCurve, lane+5, speedValueBetweenZeroAndOne);
-		// (this is deliberately first memorizing "pos" but then filling in the passengers first)
+		// (this is deliberately first memorizing the driver state but then filling in the passengers first)
 
-		positions.add(pos);
+		positions.add(driverAgent.getId(), startCoord, endCoord, distanceFromFromNode, lane, lengthOfCurve, state,
+				speedValueBetweenZeroAndOne);
 	}
 	
 	private static int wrnCnt = 0 ;
@@ -162,6 +194,25 @@ abstract class AbstractAgentSnapshotInfoBuilder {
 			double now, Collection<MobsimVehicle> vehs, double curvedLength, double storageCapacity, 
 			Coord upstreamCoord, Coord downstreamCoord, double inverseFlowCapPerTS, double freeSpeed, 
 			int numberOfLanesAsInt, Queue<Hole> holes)
+	{
+		positionVehiclesAlongLine(new CollectionTarget(positions), now, vehs, curvedLength, storageCapacity, upstreamCoord,
+				downstreamCoord, inverseFlowCapPerTS, freeSpeed, numberOfLanesAsInt, holes);
+		return positions;
+	}
+
+	public final void positionVehiclesAlongLine(SnapshotFrame frame, int linkIndex,
+			double now, Collection<MobsimVehicle> vehs, double curvedLength, double storageCapacity, 
+			Coord upstreamCoord, Coord downstreamCoord, double inverseFlowCapPerTS, double freeSpeed, 
+			int numberOfLanesAsInt, Queue<Hole> holes)
+	{
+		positionVehiclesAlongLine(new FrameTarget(frame, linkIndex), now, vehs, curvedLength, storageCapacity, upstreamCoord,
+				downstreamCoord, inverseFlowCapPerTS, freeSpeed, numberOfLanesAsInt, holes);
+	}
+
+	private void positionVehiclesAlongLine(PositionTarget positions,
+			double now, Collection<MobsimVehicle> vehs, double curvedLength, double storageCapacity, 
+			Coord upstreamCoord, Coord downstreamCoord, double inverseFlowCapPerTS, double freeSpeed, 
+			int numberOfLanesAsInt, Queue<Hole> holes)
 	{
 		double spacingOfOnePCE = this.calculateVehicleSpacing( curvedLength, storageCapacity, vehs );
 
@@ -236,7 +287,7 @@ abstract class AbstractAgentSnapshotInfoBuilder {
 					now, freespeedTraveltime, remainingTravelTime);
 			// (starts off relatively large (rightmost vehicle))
 			
-			Integer lane = VisUtils.guessLane(veh, numberOfLanesAsInt );
+			int lane = VisUtils.guessLane(veh, numberOfLanesAsInt );
 			double speedValue = VisUtils.calcSpeedValueBetweenZeroAndOne(veh, inverseFlowCapPerTS, now, freeSpeed);
 			Gbl.assertNotNull( upstreamCoord ) ;
 			Gbl.assertNotNull( downstreamCoord ) ;
@@ -260,7 +311,6 @@ abstract class AbstractAgentSnapshotInfoBuilder {
 		 * the holes that this generates.  That space is added up until a full vehicle fits into it.  There must be some better way of
 		 * explaining this, but I don't know it right now.  kai, apr'16
 		 */
-		return positions;
 	}
 
 
@@ -271,37 +321,82 @@ abstract class AbstractAgentSnapshotInfoBuilder {
 		return distanceFromFromNode;
 	}
 		
-	private void addHolePosition(final Collection<AgentSnapshotInfo> positions, double distanceFromFromNode, Hole veh, 
+	private static void addHolePosition(final PositionTarget positions, double distanceFromFromNode, Hole veh, 
 			double curvedLength, Coord upstreamCoord, Coord downstreamCoord)
 	{
-		Integer lane = 20 ;
+		int lane = 20 ;
 		double speedValue = 1. ;
-		AgentSnapshotInfo pos = this.snapshotInfoFactory.createAgentSnapshotInfo(Id.create("hole", Person.class), upstreamCoord, downstreamCoord, 
-				distanceFromFromNode, lane, curvedLength);
-		pos.setColorValueBetweenZeroAndOne(speedValue);
-		pos.setAgentState(AgentState.PERSON_OTHER_MODE );
-		positions.add(pos);
+		positions.add(Id.create("hole", Person.class), upstreamCoord, downstreamCoord, distanceFromFromNode, lane, curvedLength,
+				AgentState.PERSON_OTHER_MODE, speedValue);
 	}
 	
-	final void positionPassengers(Collection<AgentSnapshotInfo> positions,
+	private static void positionPassengers(PositionTarget positions,
 			Collection<? extends PassengerAgent> passengers, double distanceOnLink, Coord startCoord, Coord endCoord,
-			double lengthOfCurve, Integer lane, double speedValueBetweenZeroAndOne) {
+			double lengthOfCurve, int lane, double speedValueBetweenZeroAndOne) {
 		int cnt = passengers.size();
-		int laneInt = 2*(cnt+1);
-		if (lane != null){
-			laneInt += lane;
-		}
+		int laneInt = 2*(cnt+1) + lane;
 		for (PassengerAgent passenger : passengers) {
 			int lanePos = laneInt - 2*cnt ;
-			AgentSnapshotInfo passengerPosition = snapshotInfoFactory.createAgentSnapshotInfo(passenger.getId(), startCoord, endCoord, 
-					distanceOnLink, lanePos, lengthOfCurve);
-			passengerPosition.setColorValueBetweenZeroAndOne(speedValueBetweenZeroAndOne);
-			passengerPosition.setAgentState(AgentState.PERSON_OTHER_MODE); // in 2010, probably a passenger
-			positions.add(passengerPosition);
+			positions.add(passenger.getId(), startCoord, endCoord, distanceOnLink, lanePos, lengthOfCurve,
+					AgentState.PERSON_OTHER_MODE, speedValueBetweenZeroAndOne); // in 2010, probably a passenger
 			cnt-- ;
 		}
 	}
 
+	/**
+	 * Where the positions go: into {@link AgentSnapshotInfo}s, or straight into the arrays of a {@link SnapshotFrame}
+	 * without creating an object per agent.
+	 */
+	private abstract class PositionTarget {
+
+		abstract void add(Id<Person> agentId, Coord startCoord, Coord endCoord, double distanceOnLink, int lane,
+				double curveLength, AgentState state, double colorValueBetweenZeroAndOne);
+
+		final void add(Id<Person> agentId, Link link, double distanceOnLink, int lane, AgentState state) {
+			add(agentId, link.getFromNode().getCoord(), link.getToNode().getCoord(), distanceOnLink, lane, link.getLength(), state, 0.);
+		}
+
+	}
+
+	private final class CollectionTarget extends PositionTarget {
+
+		private final Collection<AgentSnapshotInfo> positions;
+
+		CollectionTarget(Collection<AgentSnapshotInfo> positions) {
+			this.positions = positions;
+		}
+
+		@Override
+		void add(Id<Person> agentId, Coord startCoord, Coord endCoord, double distanceOnLink, int lane,
+				double curveLength, AgentState state, double colorValueBetweenZeroAndOne) {
+			AgentSnapshotInfo pos = snapshotInfoFactory.createAgentSnapshotInfo(agentId, startCoord, endCoord,
+					distanceOnLink, lane, curveLength);
+			pos.setColorValueBetweenZeroAndOne(colorValueBetweenZeroAndOne);
+			pos.setAgentState(state);
+			this.positions.add(pos);
+		}
+
+	}
+
+	private final class FrameTarget extends PositionTarget {
+
+		private final SnapshotFrame frame;
+		private final int linkIndex;
+
+		FrameTarget(SnapshotFrame frame, int linkIndex) {
+			this.frame = frame;
+			this.linkIndex = linkIndex;
+		}
+
+		@Override
+		void add(Id<Person> agentId, Coord startCoord, Coord endCoord, double distanceOnLink, int lane,
+				double curveLength, AgentState state, double colorValueBetweenZeroAndOne) {
+			snapshotInfoFactory.addAgentPosition(this.frame, agentId.index(), this.linkIndex, startCoord, endCoord,
+					distanceOnLink, lane, curveLength, state, colorValueBetweenZeroAndOne);
+		}
+
+	}
+
 	public abstract double calculateVehicleSpacing(double linkLength, double overallStorageCapacity, Collection<? extends VisVehicle> vehs);
 
 	public abstract double calculateOdometerDistanceFromFromNode(double length, double spacing, double lastDistanceFromFromNode, 
@@ -52,6 +52,7 @@ import org.matsim.core.mobsim.qsim.pt.TransitDriverAgent;
 import org.matsim.core.mobsim.qsim.qnetsimengine.QNetsimEngine.NetsimInternalInterface;
 import org.matsim.core.mobsim.qsim.qnetsimengine.linkspeedcalculator.LinkSpeedCalculator;
 import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.utils.misc.Time;
 import org.matsim.vehicles.Vehicle;
 
 /**
@@ -156,6 +157,7 @@ abstract class AbstractQLink implements QLinkI {
 	
 	/* package */ final void letVehicleArrive(QVehicle qveh) {
 		addParkedVehicle(qveh);
+		qveh.setLinkEnterTime(Time.UNDEFINED_TIME);
 		double now = context.getSimTimer().getTimeOfDay();;
 		context.getEventsManager().processEvent(new VehicleLeavesTrafficEvent(now , qveh.getDriver().getId(), 
 				this.link.getId(), qveh.getId(), qveh.getDriver().getMode(), 1.0 ) ) ;
@@ -409,6 +411,10 @@ abstract class AbstractQLink implements QLinkI {
 		this.netElementActivationRegistry = qSimEngineRunner;
 	}
 
+	/*package*/ NetElementActivationRegistry getNetElementActivationRegistry() {
+		return this.netElementActivationRegistry;
+	}
+
 	@Override
 	public void registerDriverAgentWaitingForCar(final MobsimDriverAgent agent) {
 		final Id<Vehicle> vehicleId = agent.getPlannedVehicleId() ;
@@ -33,6 +33,7 @@ import org.matsim.core.mobsim.qsim.interfaces.AgentCounter;
 import org.matsim.core.mobsim.qsim.pt.TransitStopAgentTracker;
 import org.matsim.core.mobsim.qsim.qnetsimengine.QNetsimEngine.NetsimInternalInterface;
 import org.matsim.core.mobsim.qsim.qnetsimengine.vehicleq.VehicleQ;
+import org.matsim.core.trafficmonitoring.LinkTravelTimeCollector;
 import org.matsim.vis.snapshotwriters.AgentSnapshotInfoFactory;
 import org.matsim.vis.snapshotwriters.SnapshotLinkWidthCalculator;
 
@@ -68,11 +69,17 @@ public final class DefaultQNetworkFactory implements QNetworkFactory {
 	// (vis needs network and may need population attributes and config; in consequence, makes sense to have scenario here. kai, apr'16)
 	private NetsimEngineContext context;
 	private NetsimInternalInterface netsimEngine ;
+	private LinkTravelTimeCollector linkTravelTimeCollector = null;
 	@Inject
 	DefaultQNetworkFactory( EventsManager events, Scenario scenario ) {
 		this.events = events;
 		this.scenario = scenario;
 	}
+	@com.google.inject.Inject(optional = true)
+	void setLinkTravelTimeCollector( LinkTravelTimeCollector linkTravelTimeCollector ) {
+		// (only bound if the link travel times are collected by the mobsim, see TravelTimeCalculatorModule)
+		this.linkTravelTimeCollector = linkTravelTimeCollector;
+	}
 	@Override
 	public void initializeFactory( AgentCounter agentCounter, MobsimTimer mobsimTimer, NetsimInternalInterface netsimEngine1 ) {
 		this.netsimEngine = netsimEngine1;
@@ -86,6 +93,7 @@ public final class DefaultQNetworkFactory implements QNetworkFactory {
 
 		context = new NetsimEngineContext( events, effectiveCellSize, agentCounter, agentSnapshotInfoBuilder, scenario.getConfig().qsim(), 
 				mobsimTimer, linkWidthCalculator );
+		context.setLinkTravelTimeCollector( linkTravelTimeCollector );
 	}
 	@Override
 	public QLinkI createNetsimLink( final Link link, final QNodeI toQueueNode ) {
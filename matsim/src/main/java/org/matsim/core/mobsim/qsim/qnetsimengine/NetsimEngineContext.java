@@ -4,6 +4,7 @@ import org.matsim.core.api.experimental.events.EventsManager;
 import org.matsim.core.config.groups.QSimConfigGroup;
 import org.matsim.core.mobsim.framework.MobsimTimer;
 import org.matsim.core.mobsim.qsim.interfaces.AgentCounter;
+import org.matsim.core.trafficmonitoring.LinkTravelTimeCollector;
 import org.matsim.vis.snapshotwriters.SnapshotLinkWidthCalculator;
 
 public class NetsimEngineContext {
@@ -14,6 +15,7 @@ public class NetsimEngineContext {
 	final QSimConfigGroup qsimConfig;
 	private final MobsimTimer mobsimTimer;
 	final SnapshotLinkWidthCalculator linkWidthCalculator;
+	private LinkTravelTimeCollector linkTravelTimeCollector = null;
 
 	public NetsimEngineContext(EventsManager events, double effectiveCellSize, AgentCounter agentCounter,
 			AbstractAgentSnapshotInfoBuilder snapshotInfoBuilder, QSimConfigGroup qsimConfig, MobsimTimer mobsimTimer, 
@@ -39,4 +41,15 @@ public class NetsimEngineContext {
 		return agentCounter;
 	}
 
+	/**
+	 * @return the collector of the link travel times, or <code>null</code> if they are only computed from the events.
+	 */
+	LinkTravelTimeCollector getLinkTravelTimeCollector() {
+		return linkTravelTimeCollector;
+	}
+
+	public void setLinkTravelTimeCollector(LinkTravelTimeCollector linkTravelTimeCollector) {
+		this.linkTravelTimeCollector = linkTravelTimeCollector;
+	}
+
 }
\ No newline at end of file
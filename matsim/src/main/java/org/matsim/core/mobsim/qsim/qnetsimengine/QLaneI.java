@@ -19,6 +19,7 @@
 
 package org.matsim.core.mobsim.qsim.qnetsimengine;
 
+import java.util.ArrayList;
 import java.util.Collection;
 
 import org.matsim.api.core.v01.Id;
@@ -27,6 +28,7 @@ import org.matsim.core.mobsim.qsim.interfaces.MobsimVehicle;
 import org.matsim.lanes.Lane;
 import org.matsim.vehicles.Vehicle;
 import org.matsim.vis.snapshotwriters.AgentSnapshotInfo;
+import org.matsim.vis.snapshotwriters.SnapshotFrame;
 
 
 /**
@@ -53,6 +55,16 @@ public interface QLaneI extends Identifiable<Lane> {
 	
 	static interface VisData {
 		public Collection<AgentSnapshotInfo> addAgentSnapshotInfo(Collection<AgentSnapshotInfo> positions, double now ) ;
+
+		/**
+		 * Writes the positions straight into the frame, see {@link org.matsim.vis.snapshotwriters.VisData#addAgentPositions}.
+		 */
+		public default void addAgentPositions(SnapshotFrame frame, int linkIndex, double now ) {
+			for ( AgentSnapshotInfo info : addAgentSnapshotInfo(new ArrayList<>(), now) ) {
+				frame.add(info.getId().index(), linkIndex, info.getEasting(), info.getNorthing(), info.getAgentState(),
+						info.getColorValueBetweenZeroAndOne());
+			}
+		}
 	}
 
 	VisData getVisData();
@@ -30,6 +30,7 @@ import org.matsim.core.config.groups.QSimConfigGroup;
 import org.matsim.core.mobsim.framework.MobsimTimer;
 import org.matsim.core.mobsim.qsim.interfaces.AgentCounter;
 import org.matsim.core.mobsim.qsim.qnetsimengine.QNetsimEngine.NetsimInternalInterface;
+import org.matsim.core.trafficmonitoring.LinkTravelTimeCollector;
 import org.matsim.lanes.ModelLane;
 import org.matsim.lanes.Lanes;
 import org.matsim.lanes.LanesToLinkAssignment;
@@ -45,7 +46,7 @@ public final class QLanesNetworkFactory implements QNetworkFactory {
 
 	private Lanes laneDefinitions;
 	
-	private final QNetworkFactory delegate ;
+	private final DefaultQNetworkFactory delegate ;
 
 	private NetsimEngineContext context;
 
@@ -58,6 +59,8 @@ public final class QLanesNetworkFactory implements QNetworkFactory {
 	private Scenario scenario;
 
 	private NetsimInternalInterface netsimEngine;
+
+	private LinkTravelTimeCollector linkTravelTimeCollector = null;
 	
 	@Inject 
 	public QLanesNetworkFactory( EventsManager events, Scenario scenario ) {
@@ -69,6 +72,13 @@ public final class QLanesNetworkFactory implements QNetworkFactory {
 		delegate = new DefaultQNetworkFactory( events, scenario ) ;
 	}
 
+	@com.google.inject.Inject(optional = true)
+	void setLinkTravelTimeCollector( LinkTravelTimeCollector linkTravelTimeCollector ) {
+		// (only bound if the link travel times are collected by the mobsim, see TravelTimeCalculatorModule)
+		this.linkTravelTimeCollector = linkTravelTimeCollector;
+		delegate.setLinkTravelTimeCollector( linkTravelTimeCollector );
+	}
+
 	@Override
 	public void initializeFactory( AgentCounter agentCounter, MobsimTimer mobsimTimer, NetsimInternalInterface netsimEngine1 ) {
 		this.netsimEngine = netsimEngine1 ;
@@ -80,6 +90,7 @@ public final class QLanesNetworkFactory implements QNetworkFactory {
 		}
 		AbstractAgentSnapshotInfoBuilder agentSnapshotInfoBuilder = QNetsimEngine.createAgentSnapshotInfoBuilder( scenario, linkWidthCalculator );
 		context = new NetsimEngineContext( events, effectiveCellSize, agentCounter, agentSnapshotInfoBuilder, qsimConfig, mobsimTimer, linkWidthCalculator );
+		context.setLinkTravelTimeCollector( linkTravelTimeCollector );
 		delegate.initializeFactory(agentCounter, mobsimTimer, netsimEngine1);
 	}
 
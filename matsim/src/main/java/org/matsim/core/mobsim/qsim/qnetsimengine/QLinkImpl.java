@@ -40,6 +40,7 @@ import org.matsim.lanes.VisLaneModelBuilder;
 import org.matsim.lanes.VisLinkWLanes;
 import org.matsim.vehicles.Vehicle;
 import org.matsim.vis.snapshotwriters.AgentSnapshotInfo;
+import org.matsim.vis.snapshotwriters.SnapshotFrame;
 import org.matsim.vis.snapshotwriters.VisData;
 
 /**
@@ -285,11 +286,7 @@ public final class QLinkImpl extends AbstractQLink implements SignalizeableItem
 		public Collection<AgentSnapshotInfo> addAgentSnapshotInfo( Collection<AgentSnapshotInfo> positions) {
 //			AbstractAgentSnapshotInfoBuilder snapshotInfoBuilder = qnetwork.simEngine.getAgentSnapshotInfoBuilder();
 
-			QLaneI.VisData roadVisData = getAcceptingQLane().getVisData() ;
-			if (visLink != null) {
-				((QueueWithBuffer.VisDataImpl)roadVisData).setVisInfo(visLink.getLinkStartCoord(), visLink.getLinkEndCoord()) ;
-				// yyyy not so great but an elegant solution needs more thinking about visualizer structure. kai, jun'13
-			}
+			QLaneI.VisData roadVisData = getRoadVisData() ;
 
 			double now = context.getSimTimer().getTimeOfDay() ;
 			positions = roadVisData.addAgentSnapshotInfo(positions,now) ;
@@ -310,6 +307,29 @@ public final class QLinkImpl extends AbstractQLink implements SignalizeableItem
 			return positions;
 		}
 
+		@Override
+		public void addAgentPositions(SnapshotFrame frame, int linkIndex) {
+			double now = context.getSimTimer().getTimeOfDay() ;
+			getRoadVisData().addAgentPositions(frame, linkIndex, now) ;
+
+			int cnt2 = 10 ;
+			cnt2 = context.snapshotInfoBuilder.positionVehiclesFromTransitStop(frame, linkIndex, getLink(),
+					getTransitQLink().getTransitVehicleStopQueue(), cnt2 );
+			cnt2 = context.snapshotInfoBuilder.positionVehiclesFromWaitingList(frame, linkIndex, QLinkImpl.this.getLink(), cnt2,
+					QLinkImpl.this.getWaitingList());
+			context.snapshotInfoBuilder.positionAgentsInActivities(frame, linkIndex, QLinkImpl.this.getLink(),
+					QLinkImpl.this.getAdditionalAgentsOnLink(), cnt2);
+		}
+
+		private QLaneI.VisData getRoadVisData() {
+			QLaneI.VisData roadVisData = getAcceptingQLane().getVisData() ;
+			if (visLink != null) {
+				((QueueWithBuffer.VisDataImpl)roadVisData).setVisInfo(visLink.getLinkStartCoord(), visLink.getLinkEndCoord()) ;
+				// yyyy not so great but an elegant solution needs more thinking about visualizer structure. kai, jun'13
+			}
+			return roadVisData;
+		}
+
 	}
 
 	@Override
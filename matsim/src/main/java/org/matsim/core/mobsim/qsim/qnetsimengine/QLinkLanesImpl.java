@@ -38,6 +38,7 @@ import org.matsim.lanes.VisLaneModelBuilder;
 import org.matsim.lanes.VisLinkWLanes;
 import org.matsim.vehicles.Vehicle;
 import org.matsim.vis.snapshotwriters.AgentSnapshotInfo;
+import org.matsim.vis.snapshotwriters.SnapshotFrame;
 import org.matsim.vis.snapshotwriters.VisData;
 
 import java.util.ArrayList;
@@ -548,15 +549,7 @@ public final class QLinkLanesImpl extends AbstractQLink {
 			
 			double now = context.getSimTimer().getTimeOfDay() ;
 
-
-			if (visLink != null) {
-				for (QLaneI ql : QLinkLanesImpl.this.laneQueues.values()) {
-					VisLane otfLane = visLink.getLaneData().get(
-							ql.getId().toString());
-					((QueueWithBuffer.VisDataImpl) ql.getVisData()).setVisInfo(
-							otfLane.getStartCoord(), otfLane.getEndCoord());
-				}
-			}
+			setLaneVisInfo();
 
 			for (QLaneI road : QLinkLanesImpl.this.getQueueLanes().values()) {
 				road.getVisData().addAgentSnapshotInfo(positions, now);
@@ -576,6 +569,37 @@ public final class QLinkLanesImpl extends AbstractQLink {
 
 			return positions;
 		}
+
+		@Override
+		public void addAgentPositions(final SnapshotFrame frame, final int linkIndex) {
+			double now = context.getSimTimer().getTimeOfDay() ;
+
+			setLaneVisInfo();
+
+			for (QLaneI road : QLinkLanesImpl.this.getQueueLanes().values()) {
+				road.getVisData().addAgentPositions(frame, linkIndex, now);
+			}
+
+			int cnt2 = 10;
+			cnt2 = context.snapshotInfoBuilder.positionVehiclesFromTransitStop(frame, linkIndex, getLink(),
+					getTransitQLink().getTransitVehicleStopQueue(), cnt2);
+			context.snapshotInfoBuilder.positionVehiclesFromWaitingList(frame, linkIndex,
+					QLinkLanesImpl.this.getLink(), cnt2, QLinkLanesImpl.this.getWaitingList());
+			cnt2 = QLinkLanesImpl.this.getWaitingList().size();
+			context.snapshotInfoBuilder.positionAgentsInActivities(frame, linkIndex, QLinkLanesImpl.this.getLink(),
+					QLinkLanesImpl.this.getAdditionalAgentsOnLink(), cnt2);
+		}
+
+		private void setLaneVisInfo() {
+			if (visLink != null) {
+				for (QLaneI ql : QLinkLanesImpl.this.laneQueues.values()) {
+					VisLane otfLane = visLink.getLaneData().get(
+							ql.getId().toString());
+					((QueueWithBuffer.VisDataImpl) ql.getVisData()).setVisInfo(
+							otfLane.getStartCoord(), otfLane.getEndCoord());
+				}
+			}
+		}
 	}
 	
 	@Override
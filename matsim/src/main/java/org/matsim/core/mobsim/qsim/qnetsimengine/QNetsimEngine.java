@@ -43,6 +43,7 @@ import org.matsim.core.mobsim.qsim.interfaces.AgentCounter;
 import org.matsim.core.mobsim.qsim.interfaces.MobsimEngine;
 import org.matsim.core.mobsim.qsim.interfaces.MobsimVehicle;
 import org.matsim.core.mobsim.qsim.interfaces.NetsimNetwork;
+import org.matsim.core.mobsim.qsim.interfaces.NetsimNode;
 import org.matsim.core.utils.misc.Time;
 import org.matsim.vehicles.Vehicle;
 import org.matsim.vis.snapshotwriters.SnapshotLinkWidthCalculator;
@@ -52,6 +53,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -119,6 +121,22 @@ public class QNetsimEngine implements MobsimEngine, NetsimEngine {
 	private ExecutorService pool;
 
 	private final boolean usingThreadpool;
+
+	/*
+	 * Adaptive load balancing, see balanceLoad().  The imbalance of a time step is the run time
+	 * of the slowest runner divided by the mean run time of all runners, i.e. 1.0 means perfectly
+	 * balanced.
+	 */
+	private static final double LOAD_BALANCING_TOLERANCE = 1.05;
+	private final boolean usingAdaptiveLoadBalancing;
+	private final double loadBalancingInterval;
+	private boolean balancingLoad = false;
+	private double nextLoadBalancingTime = 0;
+	private double[] stepImbalances = null;
+	private double periodImbalanceSum = 0;
+	private double periodImbalanceMax = 0;
+	private int periodSteps = 0;
+	private int periodMigratedNodes = 0;
 	
 	// for detailed run time analysis - used in combination with QSim.analyzeRunTimes
 	public static int numObservedTimeSteps = 24*3600;
@@ -140,6 +158,8 @@ public class QNetsimEngine implements MobsimEngine, NetsimEngine {
 		final Config config = sim.getScenario().getConfig();
 		final QSimConfigGroup qsimConfigGroup = config.qsim();
 		this.usingThreadpool = qsimConfigGroup.isUsingThreadpool();
+		this.usingAdaptiveLoadBalancing = qsimConfigGroup.isUsingAdaptiveLoadBalancing();
+		this.loadBalancingInterval = qsimConfigGroup.getLoadBalancingInterval();
 
 
 		// configuring the car departure hander (including the vehicle behavior)
@@ -335,6 +355,115 @@ public class QNetsimEngine implements MobsimEngine, NetsimEngine {
 			this.startBarrier.arriveAndAwaitAdvance();
 			this.endBarrier.arriveAndAwaitAdvance();
 		}
+
+		if (this.balancingLoad) {
+			recordImbalance(time);
+			if (time >= this.nextLoadBalancingTime) {
+				balanceLoad();
+				this.nextLoadBalancingTime = time + this.loadBalancingInterval;
+			}
+		}
+	}
+
+	private void recordImbalance(double time) {
+		long sum = 0;
+		long max = 0;
+		for (QNetsimEngineRunner engine : this.engines) {
+			long stepTime = engine.getStepTime();
+			sum += stepTime;
+			if (stepTime > max) max = stepTime;
+		}
+		if (sum == 0) return;
+		double imbalance = max * this.engines.size() / (double) sum;
+		int bin = (int) time;
+		if (bin >= 0 && bin < this.stepImbalances.length) this.stepImbalances[bin] = imbalance;
+		this.periodImbalanceSum += imbalance;
+		if (imbalance > this.periodImbalanceMax) this.periodImbalanceMax = imbalance;
+		this.periodSteps++;
+	}
+
+	/*
+	 * Moves nodes, together with their out-links, from the runners that needed the most time since
+	 * the last load balancing step to the runners that needed the least.  Only nodes that are active or
+	 * have active out-links are moved, since these are the ones that cause the load.  A node is assumed
+	 * to cost the average time per processed node or link of its current runner times the number of its
+	 * active elements.  This is executed between two time steps, i.e. while no runner moves nodes or links.
+	 * The out-links of a node are always handled by the same runner as the node itself, thus links are
+	 * still only activated by their own runner.
+	 */
+	private void balanceLoad() {
+		int n = this.engines.size();
+		double[] load = new double[n];
+		double sum = 0;
+		for (int i = 0; i < n; i++) {
+			load[i] = this.engines.get(i).getAccumulatedTime();
+			sum += load[i];
+		}
+		double mean = sum / n;
+		if (mean > 0) {
+			for (int round = 0; round < n - 1; round++) {
+				int heaviest = 0;
+				int lightest = 0;
+				for (int i = 1; i < n; i++) {
+					if (load[i] > load[heaviest]) heaviest = i;
+					if (load[i] < load[lightest]) lightest = i;
+				}
+				if (load[heaviest] < LOAD_BALANCING_TOLERANCE * mean) break;
+				double moved = moveLoad(this.engines.get(heaviest), this.engines.get(lightest),
+						Math.min(load[heaviest] - mean, mean - load[lightest]));
+				if (moved == 0) break;
+				load[heaviest] -= moved;
+				load[lightest] += moved;
+			}
+			for (QNetsimEngineRunner engine : this.engines) {
+				engine.handOverReassignedElements();
+			}
+		}
+		for (QNetsimEngineRunner engine : this.engines) {
+			engine.resetAccumulatedLoad();
+		}
+	}
+
+	private double moveLoad(QNetsimEngineRunner from, QNetsimEngineRunner to, double maxLoad) {
+		long elements = from.getAccumulatedElements();
+		if (elements == 0) return 0;
+		double loadPerElement = from.getAccumulatedTime() / (double) elements;
+
+		// collect the nodes which cause load, together with their number of active elements
+		Map<QNodeImpl, Integer> candidates = new LinkedHashMap<>();
+		for (QNodeImpl node : from.getActiveNodes()) {
+			candidates.merge(node, 1, Integer::sum);
+		}
+		for (QLinkI link : from.getActiveLinks()) {
+			NetsimNode fromNode = this.network.getNetsimNode(link.getLink().getFromNode().getId());
+			if (fromNode instanceof QNodeImpl) {
+				candidates.merge((QNodeImpl) fromNode, 1, Integer::sum);
+			}
+		}
+
+		double moved = 0;
+		for (Map.Entry<QNodeImpl, Integer> candidate : candidates.entrySet()) {
+			if (moved >= maxLoad) break;
+			QNodeImpl node = candidate.getKey();
+			double nodeLoad = candidate.getValue() * loadPerElement;
+			// the node may already have been re-assigned in a previous round, but still be in the runner's queue
+			if (moved + nodeLoad > maxLoad || node.getNetElementActivationRegistry() != from) continue;
+			node.setNetElementActivationRegistry(to);
+			for (Link outLink : node.getNode().getOutLinks().values()) {
+				((AbstractQLink) this.network.getNetsimLink(outLink.getId())).setNetElementActivationRegistry(to);
+			}
+			moved += nodeLoad;
+			this.periodMigratedNodes++;
+		}
+		return moved;
+	}
+
+	/**
+	 * @return the imbalance of the runners' run times per observed time step, i.e. the run time of the
+	 * slowest runner divided by the mean run time; <code>null</code> if adaptive load balancing is not used.
+	 */
+	/*package*/ double[] getStepImbalances() {
+		return this.stepImbalances;
 	}
 
 
@@ -343,9 +472,19 @@ public class QNetsimEngine implements MobsimEngine, NetsimEngine {
 			this.infoTime += INFO_PERIOD;
 			int nofActiveLinks = this.getNumberOfSimulatedLinks();
 			int nofActiveNodes = this.getNumberOfSimulatedNodes();
+			String loadBalancing = "";
+			if (this.balancingLoad && this.periodSteps > 0) {
+				loadBalancing = String.format(" imbalance(mean/max)=%.2f/%.2f #migratedNodes=%d",
+						this.periodImbalanceSum / this.periodSteps, this.periodImbalanceMax, this.periodMigratedNodes);
+				this.periodImbalanceSum = 0;
+				this.periodImbalanceMax = 0;
+				this.periodSteps = 0;
+				this.periodMigratedNodes = 0;
+			}
 			log.info("SIMULATION (QNetsimEngine) AT " + Time.writeTime(time)
 					+ " : #links=" + nofActiveLinks
-					+ " #nodes=" + nofActiveNodes);
+					+ " #nodes=" + nofActiveNodes
+					+ loadBalancing);
 		}
 	}
 
@@ -456,6 +595,15 @@ public class QNetsimEngine implements MobsimEngine, NetsimEngine {
 		 *  should become obsolete.
 		 */
 		assignNetElementActivators();
+
+		this.balancingLoad = this.usingAdaptiveLoadBalancing && this.numOfRunners > 1;
+		if (this.balancingLoad) {
+			for (QNetsimEngineRunner engine : this.engines) {
+				engine.setMeasuringLoad(true);
+			}
+			this.stepImbalances = new double[numObservedTimeSteps];
+			this.nextLoadBalancingTime = internalInterface.getMobsim().getSimTimer().getSimStartTime() + this.loadBalancingInterval;
+		}
 	}
 
 	/*
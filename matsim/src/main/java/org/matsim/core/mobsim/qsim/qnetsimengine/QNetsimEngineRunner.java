@@ -78,6 +78,17 @@ class QNetsimEngineRunner extends NetElementActivationRegistry implements Runnab
 
 	/*package*/ long[] runTimes;
 	private long startTime = 0;
+
+	/*
+	 * Only used for the adaptive load balancing: the time spent moving nodes and links in the
+	 * current time step, and the time and number of processed nodes and links since the last
+	 * load balancing step.  Written by the runner while moving, read and reset by the
+	 * QNetsimEngine between two time steps.
+	 */
+	private boolean measuringLoad = false;
+	private long stepTime = 0;
+	private long accumulatedTime = 0;
+	private long accumulatedElements = 0;
 	{	
 		if (QSim.analyzeRunTimes) runTimes = new long[QNetsimEngine.numObservedTimeSteps];
 		else runTimes = null;
@@ -98,6 +109,11 @@ class QNetsimEngineRunner extends NetElementActivationRegistry implements Runnab
 
 	/*package*/ void setTime(final double t) {
 		time = t;
+		this.stepTime = 0;
+	}
+
+	/*package*/ void setMeasuringLoad(boolean measuringLoad) {
+		this.measuringLoad = measuringLoad;
 	}
 
 	public void afterSim() {
@@ -116,10 +132,15 @@ class QNetsimEngineRunner extends NetElementActivationRegistry implements Runnab
 			return false;
 		}
 
+		long start = this.measuringLoad ? System.nanoTime() : 0;
+		int processed;
 		if (this.movingNodes) {
-			moveNodes();
+			processed = moveNodes();
 		} else {
-			moveLinks();
+			processed = moveLinks();
+		}
+		if (this.measuringLoad) {
+			addLoad(System.nanoTime() - start, processed);
 		}
 		return true ;
 	}
@@ -144,12 +165,21 @@ class QNetsimEngineRunner extends NetElementActivationRegistry implements Runnab
 				return;
 			}
 
-			moveNodes();
+			long start = this.measuringLoad ? System.nanoTime() : 0;
+			int processed = moveNodes();
+			if (this.measuringLoad) {
+				// the waiting time at the separation barrier must not be counted as load
+				addLoad(System.nanoTime() - start, processed);
+			}
 
 			// After moving the QNodes all we use a Phaser to synchronize the threads.
 			this.separationBarrier.arriveAndAwaitAdvance();
 
-			moveLinks();
+			start = this.measuringLoad ? System.nanoTime() : 0;
+			processed = moveLinks();
+			if (this.measuringLoad) {
+				addLoad(System.nanoTime() - start, processed);
+			}
 
 			if (QSim.analyzeRunTimes) {
 				long end = System.nanoTime();
@@ -164,7 +194,14 @@ class QNetsimEngineRunner extends NetElementActivationRegistry implements Runnab
 			this.endBarrier.arriveAndAwaitAdvance();
 		}
 	}
-	private void moveNodes() {
+	private void addLoad(long nanos, int processedElements) {
+		this.stepTime += nanos;
+		this.accumulatedTime += nanos;
+		this.accumulatedElements += processedElements;
+	}
+
+	private int moveNodes() {
+		int processed = 0;
 		boolean remainsActive;
 		this.lockNodes = true;
 		QNodeImpl node;
@@ -173,10 +210,13 @@ class QNetsimEngineRunner extends NetElementActivationRegistry implements Runnab
 			node = simNodes.next();
 			remainsActive = node.doSimStep(time);
 			if (!remainsActive) simNodes.remove();
+			processed++;
 		}
 		this.lockNodes = false;
+		return processed;
 	}
-	private void moveLinks() {
+	private int moveLinks() {
+		int processed = 0;
 		boolean remainsActive;
 		lockLinks = true;
 		QLinkI link;
@@ -187,8 +227,63 @@ class QNetsimEngineRunner extends NetElementActivationRegistry implements Runnab
 			remainsActive = link.doSimStep();
 
 			if (!remainsActive) simLinks.remove();
+			processed++;
 		}
 		lockLinks = false;
+		return processed;
+	}
+
+	/*package*/ long getStepTime() {
+		return this.stepTime;
+	}
+
+	/*package*/ long getAccumulatedTime() {
+		return this.accumulatedTime;
+	}
+
+	/*package*/ long getAccumulatedElements() {
+		return this.accumulatedElements;
+	}
+
+	/*package*/ void resetAccumulatedLoad() {
+		this.accumulatedTime = 0;
+		this.accumulatedElements = 0;
+	}
+
+	/*package*/ Collection<QNodeImpl> getActiveNodes() {
+		return Collections.unmodifiableCollection(this.nodesQueue);
+	}
+
+	/*package*/ Collection<QLinkI> getActiveLinks() {
+		return Collections.unmodifiableCollection(this.linksList);
+	}
+
+	/*
+	 * Hands all active nodes and links which were re-assigned to another runner by the
+	 * load balancing over to their new runner.  Must only be called between two time steps,
+	 * i.e. while no runner moves nodes or links.
+	 */
+	/*package*/ void handOverReassignedElements() {
+		Iterator<QNodeImpl> nodes = this.nodesQueue.iterator();
+		while (nodes.hasNext()) {
+			QNodeImpl node = nodes.next();
+			NetElementActivationRegistry registry = node.getNetElementActivationRegistry();
+			if (registry != this) {
+				nodes.remove();
+				registry.registerNodeAsActive(node);
+			}
+		}
+		Iterator<QLinkI> links = this.linksList.iterator();
+		while (links.hasNext()) {
+			QLinkI link = links.next();
+			if (link instanceof AbstractQLink) {
+				NetElementActivationRegistry registry = ((AbstractQLink) link).getNetElementActivationRegistry();
+				if (registry != this) {
+					links.remove();
+					registry.registerLinkAsActive(link);
+				}
+			}
+		}
 	}
 
 	/*
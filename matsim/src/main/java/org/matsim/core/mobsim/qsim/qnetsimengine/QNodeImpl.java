@@ -40,6 +40,8 @@ import org.matsim.core.mobsim.framework.PassengerAgent;
 import org.matsim.core.mobsim.qsim.interfaces.NetsimLink;
 import org.matsim.core.mobsim.qsim.qnetsimengine.QNetsimEngine.NetsimInternalInterface;
 import org.matsim.core.mobsim.qsim.qnetsimengine.TurnAcceptanceLogic.AcceptTurn;
+import org.matsim.core.trafficmonitoring.LinkTravelTimeCollector;
+import org.matsim.core.utils.misc.Time;
 
 /**
  * Represents a node in the QSimulation.
@@ -145,6 +147,10 @@ final class QNodeImpl implements QNodeI {
 		
 		this.activator = activator;
 	}
+
+	/*package*/ NetElementActivationRegistry getNetElementActivationRegistry() {
+		return this.activator;
+	}
 	
 	/**
 	 * This method is called from QueueWithBuffer.addToBuffer(...) which is triggered at 
@@ -296,6 +302,7 @@ final class QNodeImpl implements QNodeI {
 		// -->
 		this.context.getEventsManager().processEvent(new LinkLeaveEvent(now, veh.getId(), currentLinkId));
 		// <--
+		collectLinkTravelTime(veh, currentLinkId, now);
 		
 		// first treat the passengers:
 		for ( PassengerAgent pp : veh.getPassengers() ) {
@@ -323,15 +330,29 @@ final class QNodeImpl implements QNodeI {
 		//		network.simEngine.getMobsim().getEventsManager().processEvent(new LaneLeaveEvent(now, veh.getId(), currentLinkId, fromLane.getId()));
 		this.context.getEventsManager().processEvent(new LinkLeaveEvent(now, veh.getId(), currentLinkId));
 		// <--
+		collectLinkTravelTime(veh, currentLinkId, now);
 		
 		veh.getDriver().notifyMoveOverNode( nextLinkId );
 		
 		// -->
 		this.context.getEventsManager().processEvent(new LinkEnterEvent(now, veh.getId(), nextLinkId ));
 		// <--
+		veh.setLinkEnterTime(now);
 		nextQueueLane.addFromUpstream(veh);
 	}
 	
+	/* the travel time is only defined if the vehicle has entered the link over this node's upstream node, in the same way
+	 * as the TravelTimeCalculator needs a link enter event.  Each link is left over one node only, so every link is
+	 * collected by one runner. */
+	private void collectLinkTravelTime(final QVehicle veh, final Id<Link> linkId, final double now) {
+		LinkTravelTimeCollector collector = this.context.getLinkTravelTimeCollector();
+		double enterTime = veh.getLinkEnterTime();
+		if (collector != null && !Time.isUndefinedTime(enterTime)) {
+			collector.addLinkTravelTime(linkId, enterTime, now, veh.getDriver().getMode());
+		}
+		veh.setLinkEnterTime(Time.UNDEFINED_TIME);
+	}
+
 	private boolean vehicleIsStuck(final QLaneI fromLaneBuffer, final double now) {
 		//		final double stuckTime = network.simEngine.getStuckTime();
 		final double stuckTime = this.context.qsimConfig.getStuckTime() ;
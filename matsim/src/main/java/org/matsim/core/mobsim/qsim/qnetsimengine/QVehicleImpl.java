@@ -28,6 +28,7 @@ import org.matsim.core.mobsim.framework.DriverAgent;
 import org.matsim.core.mobsim.framework.MobsimDriverAgent;
 import org.matsim.core.mobsim.framework.PassengerAgent;
 import org.matsim.core.mobsim.qsim.interfaces.MobsimVehicle;
+import org.matsim.core.utils.misc.Time;
 import org.matsim.vehicles.Vehicle;
 import org.matsim.vehicles.VehicleCapacity;
 
@@ -54,7 +55,7 @@ public class QVehicleImpl implements QVehicle {
 
 	private static int warnCount = 0;
 
-	private double linkEnterTime = 0. ;
+	private double linkEnterTime = Time.UNDEFINED_TIME ;
 	private double earliestLinkExitTime = 0;
 	private DriverAgent driver = null;
 	private Collection<PassengerAgent> passengers = null;
@@ -224,7 +225,8 @@ public class QVehicleImpl implements QVehicle {
 	}
 	@Override
 	public final void setLinkEnterTime( double linkEnterTime ) {
-		// yyyyyy use in code!
+		// (used to collect the link travel times in the mobsim, see LinkTravelTimeCollector.  Undefined while the vehicle did not enter
+		// its current link from upstream.)
 		this.linkEnterTime = linkEnterTime;
 	}
 }
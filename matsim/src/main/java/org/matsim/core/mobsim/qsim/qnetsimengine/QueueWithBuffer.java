@@ -47,6 +47,7 @@ import org.matsim.core.utils.misc.Time;
 import org.matsim.lanes.Lane;
 import org.matsim.vehicles.Vehicle;
 import org.matsim.vis.snapshotwriters.AgentSnapshotInfo;
+import org.matsim.vis.snapshotwriters.SnapshotFrame;
 import org.matsim.vis.snapshotwriters.VisVehicle;
 
 import java.util.*;
@@ -905,15 +906,10 @@ final class QueueWithBuffer implements QLaneI, SignalizeableItem {
 
 		@Override
 		public final Collection<AgentSnapshotInfo> addAgentSnapshotInfo(Collection<AgentSnapshotInfo> positions, double now) {
-			if ( !buffer.isEmpty() || !vehQueue.isEmpty() || !holes.isEmpty() ) {
+			if ( hasVehiclesOrHoles() ) {
 				Gbl.assertNotNull(positions);
 				Gbl.assertNotNull( context.snapshotInfoBuilder );
-				if ( this.upstreamCoord==null ) {
-					this.upstreamCoord = qLink.getFromNode().getCoord() ;
-				}
-				if ( this.downstreamCoord==null ) {
-					this.downstreamCoord = qLink.getToNode().getCoord() ;
-				}
+				initVisInfo();
 				// vehicle positions are computed in snapshotInfoBuilder as a service:
 				positions = context.snapshotInfoBuilder.positionVehiclesAlongLine(
 						positions,
@@ -933,6 +929,41 @@ final class QueueWithBuffer implements QLaneI, SignalizeableItem {
 			return positions ;
 		}
 
+		@Override
+		public final void addAgentPositions(SnapshotFrame frame, int linkIndex, double now) {
+			if ( hasVehiclesOrHoles() ) {
+				Gbl.assertNotNull( context.snapshotInfoBuilder );
+				initVisInfo();
+				context.snapshotInfoBuilder.positionVehiclesAlongLine(
+						frame,
+						linkIndex,
+						now,
+						getAllVehicles(),
+						length,
+						storageCapacity + getBufferStorageCapacity(),
+						this.upstreamCoord,
+						this.downstreamCoord,
+						inverseFlowCapacityPerTimeStep,
+						qLink.getFreespeed(now),
+						qLink.getNumberOfLanesAsInt(now) ,
+						holes
+						);
+			}
+		}
+
+		private boolean hasVehiclesOrHoles() {
+			return !buffer.isEmpty() || !vehQueue.isEmpty() || !holes.isEmpty() ;
+		}
+
+		private void initVisInfo() {
+			if ( this.upstreamCoord==null ) {
+				this.upstreamCoord = qLink.getFromNode().getCoord() ;
+			}
+			if ( this.downstreamCoord==null ) {
+				this.downstreamCoord = qLink.getToNode().getCoord() ;
+			}
+		}
+
 		void setVisInfo(Coord upstreamCoord, Coord downstreamCoord) {
 			this.upstreamCoord = upstreamCoord;
 			this.downstreamCoord = downstreamCoord;
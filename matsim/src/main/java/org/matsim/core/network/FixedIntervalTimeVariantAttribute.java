@@ -36,11 +36,12 @@ implements TimeVariantAttribute
 	private final int timeSlice;
 	private final int numSlots;
 
-	private double baseValue;
-	private double[] values;
+	private volatile double baseValue;
+	/** replaced as a whole by {@link #recalc}, so {@link #getValue(double)} needs no lock */
+	private volatile double[] values;
 
-	private int eventsCount = 0;
-	private int eventsCountWhenLastRecalc = -1;
+	private volatile int eventsCount = 0;
+	private volatile int eventsCountWhenLastRecalc = -1;
 
 
 	public FixedIntervalTimeVariantAttribute(int timeSlice, int maxTime)
@@ -59,7 +60,7 @@ implements TimeVariantAttribute
 
 	//TODO before calling this method we could convert changeEvents into a sequence of non-null changeValues
 	@Override
-	public void recalc(TreeMap<Double, NetworkChangeEvent> changeEvents,
+	public void recalc(List<NetworkChangeEvent> changeEvents,
 			ChangeValueGetter valueGetter, double baseValue1)
 	{
 		this.baseValue = baseValue1;
@@ -71,15 +72,13 @@ implements TimeVariantAttribute
 		//To save memory, the array is constructed only if there is at least one ChangeEvent.
 		//This saves a lot of memory in cases when only one attribute is time variant, while
 		//the remaining two are invariant.
-		if (values == null) {
-			values = new double[numSlots];
-		}
+		double[] values = new double[numSlots];
 
 		int numEvent = 0;
 		int fromBin = 0;//inclusive
 		double currentValue = baseValue1;
 		if (changeEvents != null) {
-			for (NetworkChangeEvent event : changeEvents.values()) {
+			for (NetworkChangeEvent event : changeEvents) {
 				ChangeValue value = valueGetter.getChangeValue(event);
 				if (value != null) {
 					numEvent++;
@@ -105,6 +104,7 @@ implements TimeVariantAttribute
 			}
 		}
 		Arrays.fill(values, fromBin, values.length, currentValue);
+		this.values = values;
 		eventsCountWhenLastRecalc = eventsCount;
 
 		if (numEvent != this.eventsCount) {
@@ -19,7 +19,7 @@
 
 package org.matsim.core.network;
 
-import java.util.TreeMap;
+import java.util.List;
 
 import org.matsim.core.network.NetworkChangeEvent.ChangeValue;
 
@@ -49,11 +49,19 @@ public interface TimeVariantAttribute
 		}
 	};
 
+	/**
+	 * May be called concurrently, also while {@link #recalc} runs: implementations publish the recalculated values
+	 * at once, so that readers see either the old or the new values.
+	 */
 	double getValue(final double time);
 
 	boolean isRecalcRequired();
 
-	void recalc(TreeMap<Double, NetworkChangeEvent> changeEvents, ChangeValueGetter valueGetter, double baseValue);
+	/**
+	 * @param changeEvents the change events of the link, ordered by their start time; events with the same start
+	 * time are applied in the order of the list. May be <code>null</code>.
+	 */
+	void recalc(List<NetworkChangeEvent> changeEvents, ChangeValueGetter valueGetter, double baseValue);
 
 	void incChangeEvents();
 
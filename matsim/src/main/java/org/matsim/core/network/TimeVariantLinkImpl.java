@@ -20,12 +20,17 @@
 
 package org.matsim.core.network;
 
-import java.util.TreeMap;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.network.*;
 
 /**
+ * The change events of the link are kept in a list ordered by start time, from which each time variant attribute
+ * compiles its values into primitive arrays when needed. The attribute getters only take the lock of the link if the
+ * values have to be compiled again, so routers in several threads can query the link concurrently.
+ *
  * @author laemmel
  * @author illenberger
  *
@@ -36,7 +41,8 @@ import org.matsim.api.core.v01.network.*;
 	// member variables
 	//////////////////////////////////////////////////////////////////////
 
-	private TreeMap<Double,NetworkChangeEvent> changeEvents;
+	/** ordered by start time, events with the same start time in the order they were applied */
+	private List<NetworkChangeEvent> changeEvents;
 
 	private final TimeVariantAttribute variableFreespeed;
 	private final TimeVariantAttribute variableFlowCapacity;
@@ -85,9 +91,14 @@ import org.matsim.api.core.v01.network.*;
 	 */
 	protected synchronized void applyEvent(final NetworkChangeEvent event) {
 		if(this.changeEvents == null)
-			this.changeEvents = new TreeMap<>();
+			this.changeEvents = new ArrayList<>(2);
 
-		this.changeEvents.put(event.getStartTime(), event);
+		// events are usually applied in chronological order, so this mostly appends
+		int index = this.changeEvents.size();
+		while (index > 0 && this.changeEvents.get(index - 1).getStartTime() > event.getStartTime()) {
+			index--;
+		}
+		this.changeEvents.add(index, event);
 
 		if (event.getFreespeedChange() != null) {
 			this.variableFreespeed.incChangeEvents();
@@ -121,7 +132,7 @@ import org.matsim.api.core.v01.network.*;
 	 * @return the freespeed at time <tt>time</tt>.
 	 */
 	@Override
-	public synchronized double getFreespeed(final double time) {
+	public double getFreespeed(final double time) {
 
 		if (variableFreespeed.isRecalcRequired()) {
 			recalcFreespeed();
@@ -147,7 +158,7 @@ import org.matsim.api.core.v01.network.*;
 	 * @return the flow capacity at time <tt>time</tt>.
 	 */
 	@Override
-	public synchronized double getFlowCapacityPerSec(final double time) {
+	public double getFlowCapacityPerSec(final double time) {
 
 		if (variableFlowCapacity.isRecalcRequired()) {
 			recalcFlowCapacity();
@@ -171,7 +182,7 @@ import org.matsim.api.core.v01.network.*;
 	 * @return the capacity per network's capperiod timestep
 	 */
 	@Override
-	public synchronized double getCapacity(final double time) {
+	public double getCapacity(final double time) {
 		return getFlowCapacityPerSec(time) * getCapacityPeriod();
 	}
 
@@ -193,7 +204,7 @@ import org.matsim.api.core.v01.network.*;
 	 * encode the (min) width of the link to calculate the flow capacity - [GL] 13may08
 	 */
 	@Override
-	public synchronized double getNumberOfLanes(final double time) {
+	public double getNumberOfLanes(final double time) {
 		if (variableLanes.isRecalcRequired()) {
 			recalcLanes();
 		}
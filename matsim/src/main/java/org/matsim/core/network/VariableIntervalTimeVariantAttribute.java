@@ -27,15 +27,19 @@ import org.matsim.core.network.NetworkChangeEvent.ChangeValue;
 final class VariableIntervalTimeVariantAttribute
 implements TimeVariantAttribute
 {
-	private int aEvents = 1;
-	private double[] aValues;
-	private double[] aTimes;
+	private volatile int aEvents = 1;
+	/**
+	 * The start times of the values in the first half, the values in the second half. The array is replaced as a whole
+	 * by {@link #recalc}, so {@link #getValue(double)} needs no lock.
+	 */
+	private volatile double[] aTimesAndValues;
 
 
 	@Override
 	public boolean isRecalcRequired()
 	{
-		return (this.aTimes == null) || (this.aTimes.length != this.aEvents);
+		double[] timesAndValues = this.aTimesAndValues;
+		return (timesAndValues == null) || (timesAndValues.length != 2 * this.aEvents);
 		// The first condition just says if there is no material, we don't need to do anything.
 		// yyyy The second condition is a bit weird.  It essentially checks if the cached data structure (aTimes) has
 		// as many entries as it should have (given by aEvents).  This does need, however, an honest calling of
@@ -49,36 +53,37 @@ implements TimeVariantAttribute
 
 
 	@Override
-	public void recalc(TreeMap<Double, NetworkChangeEvent> changeEvents,
+	public void recalc(List<NetworkChangeEvent> changeEvents,
 			ChangeValueGetter valueGetter, double baseValue)
 	{
-		this.aTimes = new double[this.aEvents];
-		this.aValues = new double[this.aEvents];
-		this.aTimes[0] = Double.NEGATIVE_INFINITY;
-		this.aValues[0] = baseValue;
+		int events = this.aEvents;
+		double[] aTimes = new double[events];
+		double[] aValues = new double[events];
+		aTimes[0] = Double.NEGATIVE_INFINITY;
+		aValues[0] = baseValue;
 
 		int numEvent = 0;
 		if (changeEvents != null) {
 			// go through all change events in chronological sequence:
-			for (NetworkChangeEvent event : changeEvents.values()) {
+			for (NetworkChangeEvent event : changeEvents) {
 				ChangeValue value = valueGetter.getChangeValue(event);
 				if (value != null) {
 					switch( value.getType() ) {
 					case ABSOLUTE_IN_SI_UNITS:
 						// here, we just need to replace the value:
-						this.aValues[++numEvent] = value.getValue();
-						this.aTimes[numEvent] = event.getStartTime();
+						aValues[++numEvent] = value.getValue();
+						aTimes[numEvent] = event.getStartTime();
 						break;
 					case FACTOR: {
 						// there, the change event multiplies what we have so far:
-						double currentValue = this.aValues[numEvent];
-						this.aValues[++numEvent] = currentValue * value.getValue();
-						this.aTimes[numEvent] = event.getStartTime();
+						double currentValue = aValues[numEvent];
+						aValues[++numEvent] = currentValue * value.getValue();
+						aTimes[numEvent] = event.getStartTime();
 						break; }
 					case OFFSET_IN_SI_UNITS: {
-						double currentValue = this.aValues[numEvent];
-						this.aValues[++numEvent] = currentValue + value.getValue();
-						this.aTimes[numEvent] = event.getStartTime();
+						double currentValue = aValues[numEvent];
+						aValues[++numEvent] = currentValue + value.getValue();
+						aTimes[numEvent] = event.getStartTime();
 						break; }
 					default:
 						throw new RuntimeException( "unknown ChangeType" ) ;
@@ -87,10 +92,14 @@ implements TimeVariantAttribute
 			}
 		}
 
-		if (numEvent != this.aEvents - 1) {
-			throw new RuntimeException("Expected number of change events (" + (this.aEvents - 1)
+		if (numEvent != events - 1) {
+			throw new RuntimeException("Expected number of change events (" + (events - 1)
 					+ ") differs from the number of events found (" + numEvent + ")!");
 		}
+
+		double[] timesAndValues = Arrays.copyOf(aTimes, 2 * events);
+		System.arraycopy(aValues, 0, timesAndValues, events, events);
+		this.aTimesAndValues = timesAndValues;
 	}
 
 
@@ -98,9 +107,18 @@ implements TimeVariantAttribute
 	public double getValue(final double time)
 	{
 		// after we have put everything into an array by recalc, we just need a binary search:
-		int key = Arrays.binarySearch(this.aTimes, time);
-		key = key >= 0 ? key : -key - 2;
-		return this.aValues[key];
+		double[] timesAndValues = this.aTimesAndValues;
+		int events = timesAndValues.length / 2;
+		int key = Arrays.binarySearch(timesAndValues, 0, events, time);
+		if (key >= 0) {
+			// with several events at this time, the last one holds
+			while (key + 1 < events && timesAndValues[key + 1] == time) {
+				key++;
+			}
+		} else {
+			key = -key - 2;
+		}
+		return timesAndValues[events + key];
 	}
 
 
@@ -114,8 +132,7 @@ implements TimeVariantAttribute
 	@Override
 	public void clearEvents()
 	{
-		aTimes = null;
-		aValues = null;
+		aTimesAndValues = null;
 		aEvents = 1;
 	}
 }
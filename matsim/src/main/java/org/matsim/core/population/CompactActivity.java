@@ -0,0 +1,152 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.population;
+
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.core.utils.misc.Time;
+import org.matsim.facilities.ActivityFacility;
+import org.matsim.utils.objectattributes.attributable.Attributes;
+
+/**
+ * Flyweight view on an activity row of a {@link CompactPlanStore}. All getters and setters directly read
+ * and write the columns of the store.
+ */
+/* deliberately package */ final class CompactActivity implements Activity {
+
+	/* volatile, so a thread that sees the new store also sees the new row */
+	private volatile CompactPlanStore store;
+	int row;
+
+	CompactActivity(final CompactPlanStore store, final int row) {
+		this.store = store;
+		this.row = row;
+	}
+
+	/**
+	 * @return the store of the row, after following the row if {@link CompactPopulation#compact()} moved it to
+	 * another store. Read {@link #row} only after calling this.
+	 */
+	CompactPlanStore store() {
+		CompactPlanStore current = this.store;
+		return current.successor() == null ? current : relocate();
+	}
+
+	private synchronized CompactPlanStore relocate() {
+		CompactPlanStore current = this.store;
+		int currentRow = this.row;
+		while (current.successor() != null) {
+			currentRow = current.movedActivityRow(currentRow);
+			current = current.successor();
+		}
+		this.row = currentRow;
+		this.store = current;
+		return current;
+	}
+
+	@Override
+	public double getEndTime() {
+		return store().actEndTime.get(this.row);
+	}
+
+	@Override
+	public void setEndTime(final double seconds) {
+		store().actEndTime.set(this.row, seconds);
+	}
+
+	@Override
+	public String getType() {
+		return store().string(store().actType.get(this.row));
+	}
+
+	@Override
+	public void setType(final String type) {
+		store().actType.set(this.row, store().index(type));
+	}
+
+	@Override
+	public Coord getCoord() {
+		return store().getCoord(this.row);
+	}
+
+	@Override
+	public void setCoord(final Coord coord) {
+		store().setCoord(this.row, coord);
+	}
+
+	@Override
+	public double getStartTime() {
+		return store().actStartTime.get(this.row);
+	}
+
+	@Override
+	public void setStartTime(final double seconds) {
+		store().actStartTime.set(this.row, seconds);
+	}
+
+	@Override
+	public double getMaximumDuration() {
+		return store().actMaxDuration.get(this.row);
+	}
+
+	@Override
+	public void setMaximumDuration(final double seconds) {
+		store().actMaxDuration.set(this.row, seconds);
+	}
+
+	@Override
+	public Id<Link> getLinkId() {
+		return CompactPlanStore.id(store().actLink.get(this.row), Link.class);
+	}
+
+	@Override
+	public void setLinkId(final Id<Link> id) {
+		store().actLink.set(this.row, CompactPlanStore.index(id));
+	}
+
+	@Override
+	public Id<ActivityFacility> getFacilityId() {
+		return CompactPlanStore.id(store().actFacility.get(this.row), ActivityFacility.class);
+	}
+
+	@Override
+	public void setFacilityId(final Id<ActivityFacility> id) {
+		store().actFacility.set(this.row, CompactPlanStore.index(id));
+	}
+
+	@Override
+	public Attributes getAttributes() {
+		return store().activityAttributes.computeIfAbsent(this.row, row -> new Attributes());
+	}
+
+	@Override
+	public String toString() {
+		return "[type=" + this.getType() + "]" +
+				"[coord=" + this.getCoord() + "]" +
+				"[linkId=" + this.getLinkId() + "]" +
+				"[startTime=" + Time.writeTime(this.getStartTime()) + "]" +
+				"[endTime=" + Time.writeTime(this.getEndTime()) + "]" +
+				"[duration=" + Time.writeTime(this.getMaximumDuration()) + "]" +
+				"[facilityId=" + this.getFacilityId() + "]" ;
+	}
+
+}
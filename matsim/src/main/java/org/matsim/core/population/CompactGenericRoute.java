@@ -0,0 +1,139 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.population;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.population.Route;
+import org.matsim.core.population.routes.RouteUtils;
+
+/**
+ * Flyweight view on a generic route row of a {@link CompactPlanStore}, i.e. the store's replacement for
+ * {@link org.matsim.core.population.routes.GenericRouteImpl}.
+ */
+/* deliberately package */ final class CompactGenericRoute implements Route {
+
+	/* volatile, so a thread that sees the new store also sees the new row */
+	private volatile CompactPlanStore store;
+	int row;
+
+	CompactGenericRoute(final CompactPlanStore store, final int row) {
+		this.store = store;
+		this.row = row;
+	}
+
+	/**
+	 * @return the store of the row, after following the row if {@link CompactPopulation#compact()} moved it to
+	 * another store. Read {@link #row} only after calling this.
+	 */
+	CompactPlanStore store() {
+		CompactPlanStore current = this.store;
+		return current.successor() == null ? current : relocate();
+	}
+
+	private synchronized CompactPlanStore relocate() {
+		CompactPlanStore current = this.store;
+		int currentRow = this.row;
+		while (current.successor() != null) {
+			currentRow = current.movedRouteRow(currentRow);
+			current = current.successor();
+		}
+		this.row = currentRow;
+		this.store = current;
+		return current;
+	}
+
+	@Override
+	public double getDistance() {
+		return store().routeDistance.get(this.row);
+	}
+
+	@Override
+	public void setDistance(final double distance) {
+		store().routeDistance.set(this.row, distance);
+	}
+
+	@Override
+	public double getTravelTime() {
+		return store().routeTravelTime.get(this.row);
+	}
+
+	@Override
+	public void setTravelTime(final double travelTime) {
+		store().routeTravelTime.set(this.row, travelTime);
+	}
+
+	@Override
+	public Id<Link> getStartLinkId() {
+		return CompactPlanStore.id(store().routeStartLink.get(this.row), Link.class);
+	}
+
+	@Override
+	public Id<Link> getEndLinkId() {
+		return CompactPlanStore.id(store().routeEndLink.get(this.row), Link.class);
+	}
+
+	@Override
+	public void setStartLinkId(final Id<Link> linkId) {
+		store().routeStartLink.set(this.row, CompactPlanStore.index(linkId));
+	}
+
+	@Override
+	public void setEndLinkId(final Id<Link> linkId) {
+		store().routeEndLink.set(this.row, CompactPlanStore.index(linkId));
+	}
+
+	@Override
+	public String getRouteDescription() {
+		return store().routeDescriptions.get(this.row);
+	}
+
+	@Override
+	public void setRouteDescription(final String routeDescription) {
+		if (routeDescription == null) {
+			store().routeDescriptions.remove(this.row);
+		} else {
+			store().routeDescriptions.put(this.row, routeDescription);
+		}
+	}
+
+	@Override
+	public String getRouteType() {
+		return CompactPlanStore.GENERIC_ROUTE_TYPE;
+	}
+
+	/**
+	 * @return a regular generic route object with the same content, not backed by the store
+	 */
+	@Override
+	public Route clone() {
+		Route route = RouteUtils.createGenericRouteImpl(getStartLinkId(), getEndLinkId());
+		route.setDistance(getDistance());
+		route.setTravelTime(getTravelTime());
+		route.setRouteDescription(getRouteDescription());
+		return route;
+	}
+
+	@Override
+	public String toString() {
+		return clone().toString();
+	}
+
+}
@@ -0,0 +1,154 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.population;
+
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Route;
+import org.matsim.core.utils.misc.Time;
+import org.matsim.utils.objectattributes.attributable.Attributes;
+
+/**
+ * Flyweight view on a leg row of a {@link CompactPlanStore}. Routes are returned as views on the route
+ * rows as well, so changes to the route (e.g. setting the vehicle) are written to the store.
+ */
+/* deliberately package */ final class CompactLeg implements Leg {
+
+	/* volatile, so a thread that sees the new store also sees the new row */
+	private volatile CompactPlanStore store;
+	int row;
+
+	private int routeRef = CompactPlanStore.NO_INDEX;
+	private Route route = null;
+
+	CompactLeg(final CompactPlanStore store, final int row) {
+		this.store = store;
+		this.row = row;
+	}
+
+	/**
+	 * @return the store of the row, after following the row if {@link CompactPopulation#compact()} moved it to
+	 * another store. Read {@link #row} only after calling this.
+	 */
+	CompactPlanStore store() {
+		CompactPlanStore current = this.store;
+		return current.successor() == null ? current : relocate();
+	}
+
+	private synchronized CompactPlanStore relocate() {
+		CompactPlanStore current = this.store;
+		int currentRow = this.row;
+		while (current.successor() != null) {
+			currentRow = current.movedLegRow(currentRow);
+			current = current.successor();
+		}
+		this.row = currentRow;
+		this.routeRef = CompactPlanStore.NO_INDEX;
+		this.route = null;
+		this.store = current;
+		return current;
+	}
+
+	@Override
+	public String getMode() {
+		return store().string(store().legMode.get(this.row));
+	}
+
+	@Override
+	public void setMode(final String mode) {
+		store().legMode.set(this.row, store().index(mode));
+	}
+
+	@Override
+	public Route getRoute() {
+		CompactPlanStore store = store();
+		int ref = store.legRoute.get(this.row);
+		if (ref != this.routeRef || (ref == CompactPlanStore.OBJECT_ROUTE && this.route != store.routeObjects.get(this.row))) {
+			// the view is cached so repeated calls return the same route object
+			if (ref == CompactPlanStore.NO_INDEX) {
+				this.route = null;
+			} else if (ref == CompactPlanStore.OBJECT_ROUTE) {
+				this.route = store.routeObjects.get(this.row);
+			} else if (store.routeKind.get(ref) == CompactPlanStore.NETWORK_ROUTE) {
+				this.route = new CompactNetworkRoute(store, ref);
+			} else {
+				this.route = new CompactGenericRoute(store, ref);
+			}
+			this.routeRef = ref;
+		}
+		return this.route;
+	}
+
+	/**
+	 * Sets the route of this leg. The route of another leg of the population is copied, so the two legs do not
+	 * share their route.
+	 */
+	@Override
+	public void setRoute(final Route route) {
+		CompactPlanStore store = store();
+		Route ownRoute = route;
+		int ref = store.ownRouteRef(route, this.row);
+		if (ref == CompactPlanStore.OBJECT_ROUTE) {
+			if (CompactPlanStore.isView(route)) {
+				ownRoute = route.clone();
+			}
+			store.routeObjects.put(this.row, ownRoute);
+		} else {
+			store.routeObjects.remove(this.row);
+		}
+		store.legRoute.set(this.row, ref);
+		this.routeRef = ref;
+		this.route = ownRoute;
+	}
+
+	@Override
+	public double getDepartureTime() {
+		return store().legDepartureTime.get(this.row);
+	}
+
+	@Override
+	public void setDepartureTime(final double seconds) {
+		store().legDepartureTime.set(this.row, seconds);
+	}
+
+	@Override
+	public double getTravelTime() {
+		return store().legTravelTime.get(this.row);
+	}
+
+	@Override
+	public void setTravelTime(final double seconds) {
+		store().legTravelTime.set(this.row, seconds);
+	}
+
+	@Override
+	public Attributes getAttributes() {
+		return store().legAttributes.computeIfAbsent(this.row, row -> new Attributes());
+	}
+
+	@Override
+	public String toString() {
+		return "[mode=" + this.getMode() + "]" +
+				"[depTime=" + Time.writeTime(this.getDepartureTime()) + "]" +
+				"[travTime=" + Time.writeTime(this.getTravelTime()) + "]" +
+				"[arrTime=" + Time.writeTime(this.getDepartureTime() + this.getTravelTime()) + "]" +
+				"[route=" + this.getRoute() + "]";
+	}
+
+}
@@ -0,0 +1,201 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.population;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.core.population.routes.NetworkRoute;
+import org.matsim.core.population.routes.RouteUtils;
+import org.matsim.vehicles.Vehicle;
+
+/**
+ * Flyweight view on a network route row of a {@link CompactPlanStore}. The links of the route are stored
+ * as a range of link indices.
+ */
+/* deliberately package */ final class CompactNetworkRoute implements NetworkRoute {
+
+	/* volatile, so a thread that sees the new store also sees the new row */
+	private volatile CompactPlanStore store;
+	int row;
+
+	CompactNetworkRoute(final CompactPlanStore store, final int row) {
+		this.store = store;
+		this.row = row;
+	}
+
+	/**
+	 * @return the store of the row, after following the row if {@link CompactPopulation#compact()} moved it to
+	 * another store. Read {@link #row} only after calling this.
+	 */
+	CompactPlanStore store() {
+		CompactPlanStore current = this.store;
+		return current.successor() == null ? current : relocate();
+	}
+
+	private synchronized CompactPlanStore relocate() {
+		CompactPlanStore current = this.store;
+		int currentRow = this.row;
+		while (current.successor() != null) {
+			currentRow = current.movedRouteRow(currentRow);
+			current = current.successor();
+		}
+		this.row = currentRow;
+		this.store = current;
+		return current;
+	}
+
+	@Override
+	public double getDistance() {
+		return store().routeDistance.get(this.row);
+	}
+
+	@Override
+	public void setDistance(final double distance) {
+		store().routeDistance.set(this.row, distance);
+	}
+
+	@Override
+	public double getTravelTime() {
+		return store().routeTravelTime.get(this.row);
+	}
+
+	@Override
+	public void setTravelTime(final double travelTime) {
+		store().routeTravelTime.set(this.row, travelTime);
+	}
+
+	@Override
+	public Id<Link> getStartLinkId() {
+		return CompactPlanStore.id(store().routeStartLink.get(this.row), Link.class);
+	}
+
+	@Override
+	public Id<Link> getEndLinkId() {
+		return CompactPlanStore.id(store().routeEndLink.get(this.row), Link.class);
+	}
+
+	@Override
+	public void setStartLinkId(final Id<Link> linkId) {
+		store().routeStartLink.set(this.row, CompactPlanStore.index(linkId));
+	}
+
+	@Override
+	public void setEndLinkId(final Id<Link> linkId) {
+		store().routeEndLink.set(this.row, CompactPlanStore.index(linkId));
+	}
+
+	@Override
+	public String getRouteDescription() {
+		return clone().getRouteDescription();
+	}
+
+	@Override
+	public void setRouteDescription(final String routeDescription) {
+		NetworkRoute route = clone();
+		route.setRouteDescription(routeDescription);
+		setLinkIds(route.getStartLinkId(), route.getLinkIds(), route.getEndLinkId());
+	}
+
+	@Override
+	public String getRouteType() {
+		return CompactPlanStore.NETWORK_ROUTE_TYPE;
+	}
+
+	@Override
+	public void setLinkIds(final Id<Link> startLinkId, final List<Id<Link>> linkIds, final Id<Link> endLinkId) {
+		setStartLinkId(startLinkId);
+		setEndLinkId(endLinkId);
+		store().setLinkIds(this.row, linkIds);
+	}
+
+	@Override
+	public void setTravelCost(final double travelCost) {
+		store().routeTravelCost.set(this.row, travelCost);
+	}
+
+	@Override
+	public double getTravelCost() {
+		return store().routeTravelCost.get(this.row);
+	}
+
+	/**
+	 * @return an unmodifiable view on the current links of the route
+	 */
+	@Override
+	public List<Id<Link>> getLinkIds() {
+		return new LinkIds();
+	}
+
+	@Override
+	public NetworkRoute getSubRoute(final Id<Link> fromLinkId, final Id<Link> toLinkId) {
+		return clone().getSubRoute(fromLinkId, toLinkId);
+	}
+
+	@Override
+	public void setVehicleId(final Id<Vehicle> vehicleId) {
+		store().routeVehicle.set(this.row, CompactPlanStore.index(vehicleId));
+	}
+
+	@Override
+	public Id<Vehicle> getVehicleId() {
+		return CompactPlanStore.id(store().routeVehicle.get(this.row), Vehicle.class);
+	}
+
+	/**
+	 * @return a regular network route object with the same content, not backed by the store
+	 */
+	@Override
+	public NetworkRoute clone() {
+		NetworkRoute route = RouteUtils.createLinkNetworkRouteImpl(getStartLinkId(), getLinkIds(), getEndLinkId());
+		route.setDistance(getDistance());
+		route.setTravelTime(getTravelTime());
+		route.setTravelCost(getTravelCost());
+		route.setVehicleId(getVehicleId());
+		return route;
+	}
+
+	@Override
+	public String toString() {
+		return clone().toString();
+	}
+
+	private final class LinkIds extends AbstractList<Id<Link>> implements RandomAccess {
+
+		@Override
+		public Id<Link> get(final int index) {
+			CompactPlanStore store = store();
+			int size = store.routeLinksCount.get(row);
+			if (index < 0 || index >= size) {
+				throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+			}
+			return Id.get(store.routeLinks.get(store.routeLinksStart.get(row) + index), Link.class);
+		}
+
+		@Override
+		public int size() {
+			return store().routeLinksCount.get(row);
+		}
+	}
+
+}
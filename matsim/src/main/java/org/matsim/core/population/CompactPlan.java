@@ -0,0 +1,295 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.population;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+import org.matsim.api.core.v01.Customizable;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.api.core.v01.population.PlanElement;
+import org.matsim.core.scenario.CustomizableUtils;
+import org.matsim.utils.objectattributes.attributable.Attributes;
+
+/**
+ * Plan of a {@link CompactPopulation}. A plan is either
+ * <ul>
+ * <li> <i>packed</i>: its elements are a range of element references in a {@link CompactPlanStore}, and
+ * {@link #getPlanElements()} returns views on the rows of the store. Modifying the views modifies the store.
+ * <li> <i>unpacked</i>: its elements are kept in a regular list, like in {@link PlanImpl}.
+ * </ul>
+ * Structurally modifying a packed plan (adding, removing or replacing elements) unpacks it. The views handed
+ * out before stay valid and are part of the unpacked list, so references to elements are not invalidated.
+ * Unpacked plans are packed again by {@link CompactPopulation#compact()}, which keeps the views valid as well,
+ * also if it moves the rows to a new store.
+ */
+/* deliberately package */ final class CompactPlan implements Plan {
+
+	private CompactPlanStore store;
+
+	// packed state
+	private int firstRef = 0;
+	private int nOfElements = 0;
+	private PlanElement[] views = null;
+
+	// unpacked state
+	private List<PlanElement> elements;
+
+	private final PlanElements planElements = new PlanElements();
+
+	private Double score = null;
+	private Person person = null;
+	private String type = null;
+
+	private Customizable customizableDelegate;
+	private Attributes attributes;
+
+	/* deliberately package */ CompactPlan(final CompactPlanStore store) {
+		this.store = store;
+		this.elements = new ArrayList<>();
+	}
+
+	boolean isPacked() {
+		return this.elements == null;
+	}
+
+	/**
+	 * @return a new, empty plan for the same population
+	 */
+	CompactPlan createEmptyPlan() {
+		return new CompactPlan(this.store);
+	}
+
+	/**
+	 * Stores all elements of this plan in the given store. Elements that are views on the rows of the
+	 * given store are kept, rows of other stores are moved to the given store, so views on them follow. All other
+	 * elements are copied, so references to them do not reflect the content of this plan anymore afterwards.
+	 */
+	void pack(final CompactPlanStore target) {
+		int[] refs;
+		if (this.elements == null) {
+			if (target == this.store) {
+				return;
+			}
+			refs = new int[this.nOfElements];
+			for (int i = 0; i < refs.length; i++) {
+				int ref = this.store.elementRefs.get(this.firstRef + i);
+				refs[i] = ref >= 0 ? target.moveActivity(this.store, ref) : ~target.moveLeg(this.store, ~ref);
+			}
+		} else {
+			refs = new int[this.elements.size()];
+			for (int i = 0; i < refs.length; i++) {
+				PlanElement pe = this.elements.get(i);
+				if (pe instanceof CompactActivity) {
+					CompactActivity act = (CompactActivity) pe;
+					CompactPlanStore store = act.store();
+					refs[i] = store == target ? act.row : target.moveActivity(store, act.row);
+				} else if (pe instanceof CompactLeg) {
+					CompactLeg leg = (CompactLeg) pe;
+					CompactPlanStore store = leg.store();
+					refs[i] = ~(store == target ? leg.row : target.moveLeg(store, leg.row));
+				} else if (pe instanceof Activity) {
+					refs[i] = target.addActivity((Activity) pe);
+				} else if (pe instanceof Leg) {
+					refs[i] = ~target.addLeg((Leg) pe);
+				} else {
+					throw new IllegalArgumentException("unrecognized plan element type discovered");
+				}
+			}
+		}
+		this.store = target;
+		this.firstRef = target.addElementRefs(refs);
+		this.nOfElements = refs.length;
+		this.views = null;
+		this.elements = null;
+	}
+
+	/**
+	 * Releases the views of a packed plan, so they do not take memory while the plan is not used.
+	 */
+	void releaseViews() {
+		this.views = null;
+	}
+
+	private void unpack() {
+		if (this.elements == null) {
+			List<PlanElement> list = new ArrayList<>(this.nOfElements + 2);
+			for (int i = 0; i < this.nOfElements; i++) {
+				list.add(view(i));
+			}
+			this.views = null;
+			this.elements = list;
+		}
+	}
+
+	private PlanElement view(final int index) {
+		if (this.store.successor() != null) {
+			throw new IllegalStateException("The plan was not part of the population anymore when the population " +
+					"was compacted, so its elements are not available anymore.");
+		}
+		if (this.views == null) {
+			this.views = new PlanElement[this.nOfElements];
+		}
+		PlanElement view = this.views[index];
+		if (view == null) {
+			int ref = this.store.elementRefs.get(this.firstRef + index);
+			view = ref >= 0 ? new CompactActivity(this.store, ref) : new CompactLeg(this.store, ~ref);
+			this.views[index] = view;
+		}
+		return view;
+	}
+
+	@Override
+	public List<PlanElement> getPlanElements() {
+		return this.planElements;
+	}
+
+	@Override
+	public void addLeg(final Leg leg) {
+		this.planElements.add(leg);
+	}
+
+	@Override
+	public void addActivity(final Activity act) {
+		this.planElements.add(act);
+	}
+
+	@Override
+	public Person getPerson() {
+		return this.person;
+	}
+
+	@Override
+	public void setPerson(final Person person) {
+		this.person = person;
+	}
+
+	@Override
+	public Double getScore() {
+		return this.score;
+	}
+
+	@Override
+	public void setScore(final Double score) {
+		this.score = score;
+	}
+
+	@Override
+	public String getType() {
+		return this.type;
+	}
+
+	@Override
+	public void setType(final String type) {
+		this.type = type;
+	}
+
+	@Override
+	public Map<String, Object> getCustomAttributes() {
+		if (this.customizableDelegate == null) {
+			this.customizableDelegate = CustomizableUtils.createCustomizable();
+		}
+		return this.customizableDelegate.getCustomAttributes();
+	}
+
+	@Override
+	public Attributes getAttributes() {
+		if (this.attributes == null) {
+			this.attributes = new Attributes();
+		}
+		return this.attributes;
+	}
+
+	@Override
+	public String toString() {
+		String scoreString = "undefined";
+		if (this.getScore() != null) {
+			scoreString = this.getScore().toString();
+		}
+		String personIdString = "undefined" ;
+		if ( this.getPerson() != null ) {
+			personIdString = this.getPerson().getId().toString() ;
+		}
+
+		return "[score=" + scoreString + "]" +
+				"[nof_acts_legs=" + getPlanElements().size() + "]" +
+				"[type=" + this.type + "]" +
+				"[personId=" + personIdString + "]" +
+				"[packed=" + isPacked() + "]" ;
+	}
+
+	/**
+	 * The list returned by {@link CompactPlan#getPlanElements()}. Reads from the store while the plan is packed,
+	 * structural modifications unpack the plan first.
+	 */
+	private final class PlanElements extends AbstractList<PlanElement> implements RandomAccess {
+
+		@Override
+		public PlanElement get(final int index) {
+			if (elements != null) {
+				return elements.get(index);
+			}
+			if (index < 0 || index >= nOfElements) {
+				throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + nOfElements);
+			}
+			return view(index);
+		}
+
+		@Override
+		public int size() {
+			return elements != null ? elements.size() : nOfElements;
+		}
+
+		@Override
+		public PlanElement set(final int index, final PlanElement element) {
+			unpack();
+			return elements.set(index, element);
+		}
+
+		@Override
+		public void add(final int index, final PlanElement element) {
+			unpack();
+			elements.add(index, element);
+			this.modCount++;
+		}
+
+		@Override
+		public PlanElement remove(final int index) {
+			unpack();
+			this.modCount++;
+			return elements.remove(index);
+		}
+
+		@Override
+		public void clear() {
+			views = null;
+			nOfElements = 0;
+			elements = new ArrayList<>();
+			this.modCount++;
+		}
+	}
+
+}
@@ -0,0 +1,573 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.population;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.PlanElement;
+import org.matsim.api.core.v01.population.Route;
+import org.matsim.core.population.routes.GenericRouteImpl;
+import org.matsim.core.population.routes.NetworkRoute;
+import org.matsim.utils.objectattributes.attributable.Attributes;
+import org.matsim.utils.objectattributes.attributable.AttributesUtils;
+
+/**
+ * The struct-of-arrays storage behind {@link CompactPopulation}.
+ * <br>
+ * Activities, legs and routes are rows in columns of primitive values. Strings (activity types, modes) are
+ * stored as indices into a dictionary, ids as their {@link Id#index()}. A plan is a range of element
+ * references, where a reference <code>r &gt;= 0</code> denotes activity row <code>r</code> and
+ * <code>r &lt; 0</code> denotes leg row <code>~r</code>. Network routes store their links as a range of link
+ * indices.
+ * <br>
+ * Routes set on a leg view are kept as objects, as the caller may still modify them; they are moved to the
+ * columns by {@link #packRouteObjects()}. Routes of other types than network routes and generic routes are
+ * always kept as objects. Every route row belongs to exactly one leg row, so legs never share a route row.
+ * <br>
+ * The columns consist of fixed-size pages that are never moved once allocated, so rows can be read and written
+ * concurrently (e.g. by the replanning threads, each working on its own persons) while other threads append
+ * new rows. Appending rows and adding strings to the dictionary is synchronized.
+ * <br>
+ * Rows are never freed; rows of removed plans or replaced routes stay unused until
+ * {@link CompactPopulation#compact()} moves all plans into a fresh store. The old store then only remembers
+ * where its rows were moved to, so views on it follow their rows into the new store on their next access.
+ */
+/* deliberately package */ final class CompactPlanStore {
+
+	/** index for <code>null</code> ids, strings and routes */
+	static final int NO_INDEX = -1;
+	/** route reference of legs whose route is kept as object */
+	static final int OBJECT_ROUTE = -2;
+
+	static final int GENERIC_ROUTE = 0;
+	static final int NETWORK_ROUTE = 1;
+
+	static final String NETWORK_ROUTE_TYPE = "links";
+	static final String GENERIC_ROUTE_TYPE = "generic";
+
+	private final Map<String, Integer> stringIndices = new HashMap<>();
+	private volatile String[] strings = new String[64];
+	private int nOfStrings = 0;
+
+	// activity rows
+	final IntColumn actType = new IntColumn();
+	final IntColumn actLink = new IntColumn();
+	final IntColumn actFacility = new IntColumn();
+	final DoubleColumn actX = new DoubleColumn();
+	final DoubleColumn actY = new DoubleColumn();
+	final DoubleColumn actZ = new DoubleColumn();
+	final DoubleColumn actStartTime = new DoubleColumn();
+	final DoubleColumn actEndTime = new DoubleColumn();
+	final DoubleColumn actMaxDuration = new DoubleColumn();
+	private int nOfActivities = 0;
+
+	// leg rows
+	final IntColumn legMode = new IntColumn();
+	final IntColumn legRoute = new IntColumn();
+	final DoubleColumn legDepartureTime = new DoubleColumn();
+	final DoubleColumn legTravelTime = new DoubleColumn();
+	private int nOfLegs = 0;
+
+	// route rows
+	final IntColumn routeKind = new IntColumn();
+	final IntColumn routeLeg = new IntColumn();
+	final IntColumn routeStartLink = new IntColumn();
+	final IntColumn routeEndLink = new IntColumn();
+	final IntColumn routeVehicle = new IntColumn();
+	final IntColumn routeLinksStart = new IntColumn();
+	final IntColumn routeLinksCount = new IntColumn();
+	final DoubleColumn routeDistance = new DoubleColumn();
+	final DoubleColumn routeTravelTime = new DoubleColumn();
+	final DoubleColumn routeTravelCost = new DoubleColumn();
+	private int nOfRoutes = 0;
+
+	final IntColumn routeLinks = new IntColumn();
+	private int nOfRouteLinks = 0;
+
+	final IntColumn elementRefs = new IntColumn();
+	private int nOfElementRefs = 0;
+
+	/* Routes which are not (yet) stored in the columns, by leg row. */
+	final Map<Integer, Route> routeObjects = new ConcurrentHashMap<>();
+
+	/* Plan element attributes are rare, so they are kept aside and only created on demand. */
+	final Map<Integer, Attributes> activityAttributes = new ConcurrentHashMap<>();
+	final Map<Integer, Attributes> legAttributes = new ConcurrentHashMap<>();
+	final Map<Integer, String> routeDescriptions = new ConcurrentHashMap<>();
+
+	/* Set once all rows in use were moved to another store; the new rows by old row, NO_INDEX if not moved. */
+	private volatile CompactPlanStore successor = null;
+	private int[] movedActivities = null;
+	private int[] movedLegs = null;
+	private int[] movedRoutes = null;
+
+	// --- strings and ids
+
+	synchronized int index(final String string) {
+		if (string == null) {
+			return NO_INDEX;
+		}
+		Integer index = this.stringIndices.get(string);
+		if (index == null) {
+			index = this.nOfStrings;
+			if (index == this.strings.length) {
+				this.strings = Arrays.copyOf(this.strings, index * 2);
+			}
+			this.strings[index] = string.intern();
+			this.nOfStrings++;
+			this.stringIndices.put(string, index);
+		}
+		return index;
+	}
+
+	String string(final int index) {
+		return index == NO_INDEX ? null : this.strings[index];
+	}
+
+	static int index(final Id<?> id) {
+		return id == null ? NO_INDEX : id.index();
+	}
+
+	static <T> Id<T> id(final int index, final Class<T> type) {
+		return index == NO_INDEX ? null : Id.get(index, type);
+	}
+
+	// --- adding rows
+
+	int addActivity(final Activity act) {
+		int row;
+		synchronized (this) {
+			row = this.nOfActivities++;
+			ensureCapacity(row + 1, this.actType, this.actLink, this.actFacility);
+			ensureCapacity(row + 1, this.actX, this.actY, this.actZ, this.actStartTime, this.actEndTime, this.actMaxDuration);
+		}
+		this.actType.set(row, index(act.getType()));
+		this.actLink.set(row, index(act.getLinkId()));
+		this.actFacility.set(row, index(act.getFacilityId()));
+		setCoord(row, act.getCoord());
+		this.actStartTime.set(row, act.getStartTime());
+		this.actEndTime.set(row, act.getEndTime());
+		this.actMaxDuration.set(row, act.getMaximumDuration());
+		Attributes attributes = existingAttributes(act);
+		if (attributes != null && !attributes.isEmpty()) {
+			Attributes copy = new Attributes();
+			AttributesUtils.copyTo(attributes, copy);
+			this.activityAttributes.put(row, copy);
+		}
+		return row;
+	}
+
+	void setCoord(final int row, final Coord coord) {
+		if (coord == null) {
+			this.actX.set(row, Double.NaN);
+			this.actY.set(row, Double.NaN);
+			this.actZ.set(row, Double.NaN);
+		} else {
+			this.actX.set(row, coord.getX());
+			this.actY.set(row, coord.getY());
+			this.actZ.set(row, coord.hasZ() ? coord.getZ() : Double.NaN);
+		}
+	}
+
+	Coord getCoord(final int row) {
+		double x = this.actX.get(row);
+		if (Double.isNaN(x)) {
+			return null;
+		}
+		double z = this.actZ.get(row);
+		return Double.isNaN(z) ? new Coord(x, this.actY.get(row)) : new Coord(x, this.actY.get(row), z);
+	}
+
+	int addLeg(final Leg leg) {
+		int row;
+		synchronized (this) {
+			row = this.nOfLegs++;
+			ensureCapacity(row + 1, this.legMode, this.legRoute);
+			ensureCapacity(row + 1, this.legDepartureTime, this.legTravelTime);
+		}
+		this.legMode.set(row, index(leg.getMode()));
+		this.legDepartureTime.set(row, leg.getDepartureTime());
+		this.legTravelTime.set(row, leg.getTravelTime());
+		Route route = leg.getRoute();
+		int routeRef = packRoute(route, row);
+		if (routeRef == OBJECT_ROUTE) {
+			this.routeObjects.put(row, route);
+		}
+		this.legRoute.set(row, routeRef);
+		Attributes attributes = existingAttributes(leg);
+		if (attributes != null && !attributes.isEmpty()) {
+			Attributes copy = new Attributes();
+			AttributesUtils.copyTo(attributes, copy);
+			this.legAttributes.put(row, copy);
+		}
+		return row;
+	}
+
+	/**
+	 * @return the row of a route which is stored in this store and belongs to the given leg row, {@link #NO_INDEX}
+	 * for <code>null</code> and {@link #OBJECT_ROUTE} otherwise
+	 */
+	int ownRouteRef(final Route route, final int legRow) {
+		if (route == null) {
+			return NO_INDEX;
+		}
+		int row = NO_INDEX;
+		if (route instanceof CompactNetworkRoute) {
+			CompactNetworkRoute view = (CompactNetworkRoute) route;
+			if (view.store() == this) {
+				row = view.row;
+			}
+		} else if (route instanceof CompactGenericRoute) {
+			CompactGenericRoute view = (CompactGenericRoute) route;
+			if (view.store() == this) {
+				row = view.row;
+			}
+		}
+		return row != NO_INDEX && this.routeLeg.get(row) == legRow ? row : OBJECT_ROUTE;
+	}
+
+	static boolean isView(final Route route) {
+		return route instanceof CompactNetworkRoute || route instanceof CompactGenericRoute;
+	}
+
+	/**
+	 * @return the reference to use for the route in a leg row, copying the route to the columns if necessary.
+	 * {@link #OBJECT_ROUTE} if the route cannot be stored in the columns.
+	 */
+	private int packRoute(final Route route, final int legRow) {
+		int ref = ownRouteRef(route, legRow);
+		if (ref != OBJECT_ROUTE) {
+			return ref;
+		}
+		if (route instanceof NetworkRoute && NETWORK_ROUTE_TYPE.equals(route.getRouteType())) {
+			NetworkRoute networkRoute = (NetworkRoute) route;
+			int row = addRoute(NETWORK_ROUTE, route, legRow);
+			setLinkIds(row, networkRoute.getLinkIds());
+			this.routeVehicle.set(row, index(networkRoute.getVehicleId()));
+			this.routeTravelCost.set(row, networkRoute.getTravelCost());
+			return row;
+		}
+		if (route instanceof GenericRouteImpl || route instanceof CompactGenericRoute) {
+			int row = addRoute(GENERIC_ROUTE, route, legRow);
+			if (route.getRouteDescription() != null) {
+				this.routeDescriptions.put(row, route.getRouteDescription());
+			}
+			return row;
+		}
+		return OBJECT_ROUTE;
+	}
+
+	/**
+	 * Moves the routes that were set on leg views since the last call to the columns, as far as possible.
+	 */
+	void packRouteObjects() {
+		for (Iterator<Map.Entry<Integer, Route>> iter = this.routeObjects.entrySet().iterator(); iter.hasNext(); ) {
+			Map.Entry<Integer, Route> entry = iter.next();
+			int ref = packRoute(entry.getValue(), entry.getKey());
+			if (ref != OBJECT_ROUTE) {
+				this.legRoute.set(entry.getKey(), ref);
+				iter.remove();
+			}
+		}
+	}
+
+	private int addRoute(final int kind, final Route route, final int legRow) {
+		int row;
+		synchronized (this) {
+			row = this.nOfRoutes++;
+			ensureCapacity(row + 1, this.routeKind, this.routeLeg, this.routeStartLink, this.routeEndLink, this.routeVehicle,
+					this.routeLinksStart, this.routeLinksCount);
+			ensureCapacity(row + 1, this.routeDistance, this.routeTravelTime, this.routeTravelCost);
+		}
+		this.routeKind.set(row, kind);
+		this.routeLeg.set(row, legRow);
+		this.routeStartLink.set(row, index(route.getStartLinkId()));
+		this.routeEndLink.set(row, index(route.getEndLinkId()));
+		this.routeVehicle.set(row, NO_INDEX);
+		this.routeLinksStart.set(row, 0);
+		this.routeLinksCount.set(row, 0);
+		this.routeDistance.set(row, route.getDistance());
+		this.routeTravelTime.set(row, route.getTravelTime());
+		this.routeTravelCost.set(row, Double.NaN);
+		return row;
+	}
+
+	/**
+	 * Sets the links of a network route. The links are overwritten in place if they fit into the current range,
+	 * otherwise a new range is appended.
+	 */
+	void setLinkIds(final int routeRow, final List<? extends Id<?>> linkIds) {
+		int count = linkIds == null ? 0 : linkIds.size();
+		int[] indices = new int[count];
+		for (int i = 0; i < count; i++) {
+			indices[i] = index(linkIds.get(i));
+		}
+		int start = this.routeLinksStart.get(routeRow);
+		if (count > this.routeLinksCount.get(routeRow)) {
+			synchronized (this) {
+				start = this.nOfRouteLinks;
+				this.nOfRouteLinks += count;
+				ensureCapacity(this.nOfRouteLinks, this.routeLinks);
+			}
+		}
+		for (int i = 0; i < count; i++) {
+			this.routeLinks.set(start + i, indices[i]);
+		}
+		this.routeLinksStart.set(routeRow, start);
+		this.routeLinksCount.set(routeRow, count);
+	}
+
+	/**
+	 * @return the start of the new range of element references
+	 */
+	int addElementRefs(final int[] refs) {
+		int start;
+		synchronized (this) {
+			start = this.nOfElementRefs;
+			this.nOfElementRefs += refs.length;
+			ensureCapacity(this.nOfElementRefs, this.elementRefs);
+		}
+		for (int i = 0; i < refs.length; i++) {
+			this.elementRefs.set(start + i, refs[i]);
+		}
+		return start;
+	}
+
+	synchronized int getNumberOfElements() {
+		return this.nOfActivities + this.nOfLegs;
+	}
+
+	// --- moving rows to another store
+
+	/**
+	 * Starts recording which rows are moved to another store by {@link #moveActivity(CompactPlanStore, int)} and
+	 * {@link #moveLeg(CompactPlanStore, int)}.
+	 */
+	synchronized void startMove() {
+		this.movedActivities = newMovedRows(this.nOfActivities);
+		this.movedLegs = newMovedRows(this.nOfLegs);
+		this.movedRoutes = newMovedRows(this.nOfRoutes);
+	}
+
+	private static int[] newMovedRows(final int size) {
+		int[] rows = new int[size];
+		Arrays.fill(rows, NO_INDEX);
+		return rows;
+	}
+
+	/**
+	 * Releases the columns once all rows in use are moved. Views on this store follow their rows to the
+	 * successor from now on, see {@link #movedActivityRow(int)}.
+	 */
+	void finishMove(final CompactPlanStore successor) {
+		for (IntColumn column : new IntColumn[] { this.actType, this.actLink, this.actFacility, this.legMode,
+				this.legRoute, this.routeKind, this.routeLeg, this.routeStartLink, this.routeEndLink, this.routeVehicle,
+				this.routeLinksStart, this.routeLinksCount, this.routeLinks, this.elementRefs }) {
+			column.release();
+		}
+		for (DoubleColumn column : new DoubleColumn[] { this.actX, this.actY, this.actZ, this.actStartTime,
+				this.actEndTime, this.actMaxDuration, this.legDepartureTime, this.legTravelTime, this.routeDistance,
+				this.routeTravelTime, this.routeTravelCost }) {
+			column.release();
+		}
+		this.routeObjects.clear();
+		this.activityAttributes.clear();
+		this.legAttributes.clear();
+		this.routeDescriptions.clear();
+		this.successor = successor;
+	}
+
+	/**
+	 * @return the store the rows of this store were moved to, <code>null</code> if they are still here
+	 */
+	CompactPlanStore successor() {
+		return this.successor;
+	}
+
+	/**
+	 * Copies an activity row of the given store into this store, or returns the row it was already moved to.
+	 */
+	int moveActivity(final CompactPlanStore source, final int sourceRow) {
+		int[] moved = source.movedActivities;
+		if (moved != null && moved[sourceRow] != NO_INDEX) {
+			return moved[sourceRow];
+		}
+		int row = addActivity(new CompactActivity(source, sourceRow));
+		if (moved != null) {
+			moved[sourceRow] = row;
+		}
+		return row;
+	}
+
+	/**
+	 * Copies a leg row and its route of the given store into this store, or returns the row it was already
+	 * moved to.
+	 */
+	int moveLeg(final CompactPlanStore source, final int sourceRow) {
+		int[] moved = source.movedLegs;
+		if (moved != null && moved[sourceRow] != NO_INDEX) {
+			return moved[sourceRow];
+		}
+		int row = addLeg(new CompactLeg(source, sourceRow));
+		if (moved != null) {
+			moved[sourceRow] = row;
+			int sourceRoute = source.legRoute.get(sourceRow);
+			if (sourceRoute >= 0) {
+				source.movedRoutes[sourceRoute] = this.legRoute.get(row);
+			}
+		}
+		return row;
+	}
+
+	int movedActivityRow(final int row) {
+		return movedRow(this.movedActivities, row, "activity");
+	}
+
+	int movedLegRow(final int row) {
+		return movedRow(this.movedLegs, row, "leg");
+	}
+
+	int movedRouteRow(final int row) {
+		return movedRow(this.movedRoutes, row, "route");
+	}
+
+	private static int movedRow(final int[] moved, final int row, final String what) {
+		int movedRow = row < moved.length ? moved[row] : NO_INDEX;
+		if (movedRow == NO_INDEX) {
+			throw new IllegalStateException("The " + what + " was not part of a plan of the population anymore when the " +
+					"population was compacted, so it is not available anymore.");
+		}
+		return movedRow;
+	}
+
+	/*
+	 * The attributes of views are only looked at if they exist, so copying between stores does not create
+	 * empty attributes in the source store.
+	 */
+	private static Attributes existingAttributes(final PlanElement element) {
+		if (element instanceof CompactActivity) {
+			CompactActivity act = (CompactActivity) element;
+			return act.store().activityAttributes.get(act.row);
+		}
+		if (element instanceof CompactLeg) {
+			CompactLeg leg = (CompactLeg) element;
+			return leg.store().legAttributes.get(leg.row);
+		}
+		return element.getAttributes();
+	}
+
+	private static void ensureCapacity(final int size, final IntColumn... columns) {
+		for (IntColumn column : columns) {
+			column.ensureCapacity(size);
+		}
+	}
+
+	private static void ensureCapacity(final int size, final DoubleColumn... columns) {
+		for (DoubleColumn column : columns) {
+			column.ensureCapacity(size);
+		}
+	}
+
+	// --- columns
+
+	private static final int PAGE_BITS = 12;
+	private static final int PAGE_SIZE = 1 << PAGE_BITS;
+	private static final int PAGE_MASK = PAGE_SIZE - 1;
+
+	static final class IntColumn {
+		private volatile int[][] pages = new int[0][];
+
+		private void release() {
+			this.pages = new int[0][];
+		}
+
+		int get(final int index) {
+			return this.pages[index >>> PAGE_BITS][index & PAGE_MASK];
+		}
+
+		void set(final int index, final int value) {
+			this.pages[index >>> PAGE_BITS][index & PAGE_MASK] = value;
+		}
+
+		private void ensureCapacity(final int size) {
+			int nOfPages = (size + PAGE_MASK) >>> PAGE_BITS;
+			int[][] current = this.pages;
+			if (nOfPages > current.length) {
+				int[][] grown = Arrays.copyOf(current, Math.max(nOfPages, current.length * 2));
+				for (int i = current.length; i < nOfPages; i++) {
+					grown[i] = new int[PAGE_SIZE];
+				}
+				this.pages = grown;
+			} else if (nOfPages > 0 && current[nOfPages - 1] == null) {
+				for (int i = 0; i < nOfPages; i++) {
+					if (current[i] == null) {
+						current[i] = new int[PAGE_SIZE];
+					}
+				}
+				this.pages = current; // publish the new pages
+			}
+		}
+	}
+
+	static final class DoubleColumn {
+		private volatile double[][] pages = new double[0][];
+
+		private void release() {
+			this.pages = new double[0][];
+		}
+
+		double get(final int index) {
+			return this.pages[index >>> PAGE_BITS][index & PAGE_MASK];
+		}
+
+		void set(final int index, final double value) {
+			this.pages[index >>> PAGE_BITS][index & PAGE_MASK] = value;
+		}
+
+		private void ensureCapacity(final int size) {
+			int nOfPages = (size + PAGE_MASK) >>> PAGE_BITS;
+			double[][] current = this.pages;
+			if (nOfPages > current.length) {
+				double[][] grown = Arrays.copyOf(current, Math.max(nOfPages, current.length * 2));
+				for (int i = current.length; i < nOfPages; i++) {
+					grown[i] = new double[PAGE_SIZE];
+				}
+				this.pages = grown;
+			} else if (nOfPages > 0 && current[nOfPages - 1] == null) {
+				for (int i = 0; i < nOfPages; i++) {
+					if (current[i] == null) {
+						current[i] = new double[PAGE_SIZE];
+					}
+				}
+				this.pages = current; // publish the new pages
+			}
+		}
+	}
+
+}
@@ -0,0 +1,235 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.population;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.api.core.v01.population.Population;
+import org.matsim.api.core.v01.population.PopulationFactory;
+import org.matsim.core.population.routes.RouteFactories;
+import org.matsim.core.scenario.Lockable;
+import org.matsim.facilities.ActivityFacility;
+import org.matsim.utils.objectattributes.ObjectAttributes;
+import org.matsim.utils.objectattributes.attributable.Attributes;
+
+/**
+ * A population that stores the activities, legs and routes of all plans in primitive columns instead of
+ * one object per plan element, see {@link CompactPlanStore}. This needs a fraction of the memory of
+ * {@link PopulationImpl} for very large scenarios. Persons and plans are still objects, but the plan elements
+ * returned by {@link Plan#getPlanElements()} are lightweight views on the columns.
+ * <br>
+ * Plans are packed into the columns when their person is added to the population and in {@link #compact()}.
+ * In between, new or structurally modified plans hold regular plan element objects, so code that creates
+ * plans and keeps references to their elements works as usual. However, after packing, modifications of
+ * element objects created before are not reflected in the plan anymore; use the elements of the plan instead.
+ * The plans themselves and the views returned by their elements stay valid when packing. Only plans created
+ * by the factory of this population (and copies of them) are packed, plans of other types are kept as they are.
+ * <br>
+ * Use {@link PopulationUtils#createPopulation(org.matsim.core.config.groups.PlansConfigGroup, org.matsim.api.core.v01.network.Network)}
+ * with {@link org.matsim.core.config.groups.PlansConfigGroup#isUsingCompactPopulation()} to create one.
+ */
+/* deliberately package */ final class CompactPopulation implements Population, Lockable {
+	private static final Logger log = Logger.getLogger(CompactPopulation.class);
+
+	/* rebuild the store in compact() if less than this share of its plan elements is still in use */
+	private static final double MIN_SHARE_OF_USED_ELEMENTS = 0.5;
+
+	private final Attributes attributes = new Attributes();
+	private String name;
+	private final Map<Id<Person>, Person> persons = new LinkedHashMap<>();
+	private final PopulationFactory populationFactory;
+	private final ObjectAttributes personAttributes = new ObjectAttributes();
+	private long counter = 0;
+	private long nextMsg = 1;
+
+	private volatile CompactPlanStore store = new CompactPlanStore();
+
+	CompactPopulation(final PopulationFactory delegate) {
+		this.populationFactory = new CompactPopulationFactory(delegate);
+	}
+
+	@Override
+	public void addPerson(final Person p) {
+		// validation
+		if (this.getPersons().containsKey(p.getId())) {
+			throw new IllegalArgumentException("Person with id = " + p.getId() + " already exists.");
+		}
+		if ( p instanceof Lockable ) {
+			((Lockable) p).setLocked();
+		}
+
+		// show counter
+		this.counter++;
+		if (this.counter % this.nextMsg == 0) {
+			this.nextMsg *= 4;
+			log.info(" person # " + this.counter);
+		}
+
+		packPlans(p, this.store);
+		this.persons.put( p.getId(), p ) ;
+	}
+
+	@Override
+	public Person removePerson(final Id<Person> personId) {
+		return this.persons.remove(personId) ;
+	}
+
+	@Override
+	public Map<Id<Person>, ? extends Person> getPersons() {
+		return this.persons ;
+	}
+
+	/**
+	 * Packs all plans that were created or structurally modified since the last call, and releases the
+	 * views on the plan elements. If a large part of the store is not used anymore (e.g. because plans
+	 * were removed), all plans are moved into a new store.
+	 * <br>
+	 * This must only be called when no other code is working on the plans, e.g. after replanning.
+	 * Views on plan elements obtained before stay valid and follow their rows into the new store. Only views
+	 * on elements that were not part of a plan of the population anymore fail with an
+	 * {@link IllegalStateException} after moving.
+	 */
+	void compact() {
+		CompactPlanStore source = this.store;
+		source.packRouteObjects();
+		long usedElements = 0;
+		for (Person person : this.persons.values()) {
+			for (Plan plan : person.getPlans()) {
+				usedElements += plan.getPlanElements().size();
+			}
+		}
+		CompactPlanStore target = source;
+		int storedElements = source.getNumberOfElements();
+		if (storedElements > 0 && usedElements < MIN_SHARE_OF_USED_ELEMENTS * storedElements) {
+			log.info("rebuilding compact plan store, " + usedElements + " of " + storedElements + " plan elements in use.");
+			target = new CompactPlanStore();
+			source.startMove();
+		}
+		for (Person person : this.persons.values()) {
+			packPlans(person, target);
+		}
+		if (target != source) {
+			source.finishMove(target);
+		}
+		this.store = target;
+	}
+
+	private static void packPlans(final Person person, final CompactPlanStore target) {
+		for (Plan plan : person.getPlans()) {
+			if (plan instanceof CompactPlan) {
+				CompactPlan compactPlan = (CompactPlan) plan;
+				compactPlan.pack(target);
+				compactPlan.releaseViews();
+			}
+		}
+	}
+
+	@Override
+	public ObjectAttributes getPersonAttributes() {
+		return this.personAttributes;
+	}
+
+	@Override
+	public PopulationFactory getFactory() {
+		return this.populationFactory;
+	}
+
+	@Override
+	public String getName() {
+		return this.name ;
+	}
+
+	@Override
+	public void setName(final String name) {
+		this.name = name ;
+	}
+
+	@Override
+	public void setLocked() {
+		for ( Person person : this.persons.values() ) {
+			if ( person instanceof Lockable ) {
+				((Lockable)person).setLocked() ;
+			}
+		}
+	}
+
+	@Override
+	public Attributes getAttributes() {
+		return this.attributes;
+	}
+
+	/**
+	 * Creates compact plans; activities, legs and routes are created by the default factory and packed
+	 * together with their plan.
+	 */
+	private final class CompactPopulationFactory implements PopulationFactory {
+
+		private final PopulationFactory delegate;
+
+		CompactPopulationFactory(final PopulationFactory delegate) {
+			this.delegate = delegate;
+		}
+
+		@Override
+		public Person createPerson(final Id<Person> id) {
+			return this.delegate.createPerson(id);
+		}
+
+		@Override
+		public Plan createPlan() {
+			return new CompactPlan(store);
+		}
+
+		@Override
+		public Activity createActivityFromCoord(final String actType, final Coord coord) {
+			return this.delegate.createActivityFromCoord(actType, coord);
+		}
+
+		@Override
+		public Activity createActivityFromLinkId(final String actType, final Id<Link> linkId) {
+			return this.delegate.createActivityFromLinkId(actType, linkId);
+		}
+
+		@Override
+		public Activity createActivityFromActivityFacilityId(final String actType, final Id<ActivityFacility> activityFacilityId) {
+			return this.delegate.createActivityFromActivityFacilityId(actType, activityFacilityId);
+		}
+
+		@Override
+		public Leg createLeg(final String legMode) {
+			return this.delegate.createLeg(legMode);
+		}
+
+		@Override
+		public RouteFactories getRouteFactories() {
+			return this.delegate.getRouteFactories();
+		}
+	}
+
+}
@@ -80,7 +80,9 @@ import org.matsim.utils.objectattributes.attributable.Attributes;
 		if (oldPlan == null) {
 			return null;
 		}
-		Plan newPlan = PopulationUtils.createPlan(oldPlan.getPerson());
+		// copies of compact plans are compact plans, so the population can pack them
+		Plan newPlan = oldPlan instanceof CompactPlan ? ((CompactPlan) oldPlan).createEmptyPlan() : PopulationUtils.createPlan();
+		newPlan.setPerson(oldPlan.getPerson());
 		PopulationUtils.copyFromTo(oldPlan, newPlan);
 		this.getPlans().add(newPlan);
 		this.setSelectedPlan(newPlan);
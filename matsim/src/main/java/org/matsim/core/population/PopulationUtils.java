@@ -127,9 +127,23 @@ public final class PopulationUtils {
 			throw new IllegalArgumentException("The type \"" + networkRouteType + "\" is not a supported type for network routes.");
 		}
 		routeFactory.setRouteFactory(NetworkRoute.class, factory);
+		if (plansConfigGroup.isUsingCompactPopulation()) {
+			return new CompactPopulation(new PopulationFactoryImpl(routeFactory));
+		}
 		return new PopulationImpl(new PopulationFactoryImpl(routeFactory));
 	}
 
+	/**
+	 * Packs the plans that were created or modified since the last call into the compact representation,
+	 * if the population uses one (see {@link PlansConfigGroup#isUsingCompactPopulation()}); does nothing
+	 * otherwise.  Must only be called while no one else is working on the plans.
+	 */
+	public static void compact(Population population) {
+		if (population instanceof CompactPopulation) {
+			((CompactPopulation) population).compact();
+		}
+	}
+
 	//	public static Population createStreamingPopulation(PlansConfigGroup plansConfigGroup, Network network) {
 	//		// yyyy my intuition would be to rather get this out of a standard scenario. kai, jun'16
 	//		RouteFactories routeFactory = new RouteFactories();
@@ -0,0 +1,35 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.population.algorithms;
+
+import java.util.List;
+
+import org.matsim.api.core.v01.population.Plan;
+
+/**
+ * A {@link PlanAlgorithm} which may handle several plans more efficiently at once than one by one, for example
+ * because computations can be shared between the plans. Multi-threaded strategy modules pass all plans of a thread
+ * to {@link #run(List)}.
+ */
+public interface BatchPlanAlgorithm extends PlanAlgorithm {
+
+	public void run(List<Plan> plans);
+
+}
@@ -0,0 +1,499 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.population.io;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Stack;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import com.google.inject.Inject;
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Population;
+import org.matsim.api.core.v01.population.PopulationFactory;
+import org.matsim.core.config.Config;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.utils.geometry.CoordinateTransformation;
+import org.matsim.facilities.ActivityFacilities;
+import org.matsim.facilities.ActivityFacility;
+import org.matsim.households.Households;
+import org.matsim.lanes.Lanes;
+import org.matsim.pt.transitSchedule.api.TransitSchedule;
+import org.matsim.utils.objectattributes.AttributeConverter;
+import org.matsim.utils.objectattributes.ObjectAttributes;
+import org.matsim.vehicles.Vehicles;
+import org.xml.sax.Attributes;
+import org.xml.sax.helpers.AttributesImpl;
+
+/**
+ * Parallel implementation of the PopulationReaderMatsimV6, organized as a pipeline:
+ * <ul>
+ * <li>The parsing thread decompresses and tokenizes the file and collects the tags of
+ * {@value #CHUNK_SIZE} persons at a time into a chunk.</li>
+ * <li>A pool of workers, each with its own PopulationReaderMatsimV6, creates the persons
+ * of the chunks.</li>
+ * <li>The parsing thread adds the persons of finished chunks to the population in the order of
+ * the file, waiting for the oldest chunk if too many are in the pipeline.</li>
+ * </ul>
+ * Since the persons are added by the parsing thread in file order, this also works with the
+ * StreamingPopulation of the {@link StreamingPopulationReader}, whose algorithms run on the
+ * calling thread as with the sequential reader.
+ * <br>
+ * The ids of persons, links, facilities and vehicles are created by the parsing thread in the
+ * order of the file, so they get the same indices as with the sequential reader.
+ * <br>
+ * The population element and its attributes are handled by the parsing thread, before any person
+ * is parsed. The workers are stopped when the population element ends, or by {@link #shutdown()}
+ * if parsing fails.
+ */
+/* deliberately package */ class ParallelPopulationReaderMatsimV6 extends PopulationReaderMatsimV6 {
+
+	private static final Logger log = Logger.getLogger(ParallelPopulationReaderMatsimV6.class);
+
+	private final static String POPULATION = "population";
+	private final static String PERSON = "person";
+	private final static String ACT = "activity";
+	private final static String LEG = "leg";
+	private final static String ROUTE = "route";
+
+	/*package*/ final static int CHUNK_SIZE = 100;
+
+	private final Scenario scenario;
+	private final int numThreads;
+	private final Map<Class<?>, AttributeConverter<?>> attributeConverters = new HashMap<>();
+
+	private BlockingQueue<PersonChunk> workerQueue = null;
+	private final Queue<PersonChunk> pendingChunks = new ArrayDeque<>();
+	private Thread[] workers = null;
+
+	private PersonChunk currentChunk = null;
+	private List<Tag> currentPersonTags = null;
+	private String currentLegMode = null;
+	private String currentRouteType = null;
+
+	ParallelPopulationReaderMatsimV6(
+			final String inputCRS,
+			final String targetCRS,
+			final Scenario scenario) {
+		super(inputCRS, targetCRS, scenario);
+		this.scenario = scenario;
+		this.numThreads = Math.max(1, scenario.getConfig().global().getNumberOfThreads());
+	}
+
+	@Override
+	public void putAttributeConverter( final Class<?> clazz , AttributeConverter<?> converter ) {
+		super.putAttributeConverter( clazz, converter );
+		this.attributeConverters.put( clazz, converter );
+	}
+
+	@Override
+	@Inject
+	public void putAttributeConverters( final Map<Class<?>, AttributeConverter<?>> converters ) {
+		super.putAttributeConverters( converters );
+		this.attributeConverters.putAll( converters );
+	}
+
+	@Override
+	public void startTag(final String name, final Attributes atts, final Stack<String> context) {
+		if (PERSON.equals(name)) {
+			if (this.workers == null) {
+				// the coordinate transformation is final once the population attributes are read
+				startWorkers();
+			}
+			this.currentPersonTags = new ArrayList<>();
+		}
+		if (this.currentPersonTags == null) {
+			super.startTag(name, atts, context);
+			return;
+		}
+		createIds(name, atts);
+		// We have to create copies of the attributes because the object is re-used by the parser!
+		this.currentPersonTags.add(new StartTag(name, new AttributesImpl(atts)));
+	}
+
+	@Override
+	public void endTag(final String name, final String content, final Stack<String> context) {
+		if (this.currentPersonTags != null) {
+			if (ROUTE.equals(name) && "links".equals(this.currentRouteType)) {
+				// the description of a network route is the list of its links
+				NetworkUtils.getLinkIds(content);
+			}
+			this.currentPersonTags.add(new EndTag(name, content));
+			if (PERSON.equals(name)) {
+				if (this.currentChunk == null) {
+					this.currentChunk = new PersonChunk();
+				}
+				this.currentChunk.persons.add(this.currentPersonTags);
+				this.currentPersonTags = null;
+				if (this.currentChunk.persons.size() == CHUNK_SIZE) {
+					submit(this.currentChunk);
+					this.currentChunk = null;
+				}
+			}
+			return;
+		}
+		if (POPULATION.equals(name) && this.workers != null) {
+			if (this.currentChunk != null) {
+				submit(this.currentChunk);
+				this.currentChunk = null;
+			}
+			while (!this.pendingChunks.isEmpty()) {
+				addPersons(this.pendingChunks.poll());
+			}
+			shutdown();
+			log.info("Finished parallel population reading...");
+		}
+		super.endTag(name, content, context);
+	}
+
+	/*
+	 * Creates the ids the sequential reader would create for this tag, in the same order.
+	 */
+	private void createIds(final String name, final Attributes atts) {
+		switch (name) {
+			case PERSON:
+				Id.createPersonId(atts.getValue("id"));
+				break;
+			case ACT:
+				if (atts.getValue("link") != null) {
+					Id.createLinkId(atts.getValue("link"));
+				}
+				if (atts.getValue("facility") != null) {
+					Id.create(atts.getValue("facility"), ActivityFacility.class);
+				}
+				break;
+			case LEG:
+				this.currentLegMode = atts.getValue("mode");
+				break;
+			case ROUTE:
+				this.currentRouteType = atts.getValue("type");
+				if (this.currentRouteType == null && "car".equals(this.currentLegMode)) {
+					this.currentRouteType = "links";
+				}
+				if (atts.getValue("start_link") != null) {
+					Id.createLinkId(atts.getValue("start_link"));
+				}
+				if (atts.getValue("end_link") != null) {
+					Id.createLinkId(atts.getValue("end_link"));
+				}
+				String vehicleRefId = atts.getValue("vehicleRefId");
+				if (vehicleRefId != null && !vehicleRefId.equals("null") && "links".equals(this.currentRouteType)) {
+					Id.createVehicleId(vehicleRefId);
+				}
+				break;
+			default:
+				break;
+		}
+	}
+
+	private void startWorkers() {
+		log.info("Start parallel population reading with " + this.numThreads + " threads...");
+		this.workerQueue = new LinkedBlockingQueue<>();
+
+		CoordinateTransformation transformation = getCoordinateTransformation();
+		this.workers = new Thread[this.numThreads];
+		for (int i = 0; i < this.numThreads; i++) {
+			CollectorScenario workerScenario = new CollectorScenario(this.scenario);
+			PopulationReaderMatsimV6 reader = new PopulationReaderMatsimV6(transformation, workerScenario);
+			reader.putAttributeConverters(this.attributeConverters);
+			Thread thread = new Thread(new Worker(reader, workerScenario.population, this.workerQueue));
+			thread.setDaemon(true);
+			thread.setName(ParallelPopulationReaderMatsimV6.class.getSimpleName() + "Worker" + i);
+			this.workers[i] = thread;
+			thread.start();
+		}
+	}
+
+	private void submit(final PersonChunk chunk) {
+		this.workerQueue.add(chunk);
+		this.pendingChunks.add(chunk);
+		// add the persons created so far, and wait for the oldest chunk while the pipeline is full
+		while (!this.pendingChunks.isEmpty()
+				&& (this.pendingChunks.peek().result.isDone() || this.pendingChunks.size() > 4 * this.numThreads)) {
+			addPersons(this.pendingChunks.poll());
+		}
+	}
+
+	private void addPersons(final PersonChunk chunk) {
+		List<Person> persons;
+		try {
+			persons = chunk.result.get();
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			Throwable t = e.getCause();
+			if (t instanceof RuntimeException) {
+				throw (RuntimeException) t;
+			}
+			if (t instanceof Error) {
+				throw (Error) t;
+			}
+			throw new RuntimeException(t);
+		}
+		Population population = this.scenario.getPopulation();
+		for (Person person : persons) {
+			population.addPerson(person);
+		}
+	}
+
+	/**
+	 * Stops the workers, without waiting for the chunks still in the pipeline. Does nothing if they
+	 * are already stopped.
+	 */
+	void shutdown() {
+		if (this.workers == null || this.workerQueue == null) {
+			return;
+		}
+		this.workerQueue.clear();
+		for (int i = 0; i < this.numThreads; i++) {
+			this.workerQueue.add(PersonChunk.END);
+		}
+		try {
+			for (Thread worker : this.workers) {
+				worker.join();
+			}
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		} finally {
+			this.workerQueue = null;
+			this.pendingChunks.clear();
+		}
+	}
+
+	private static class Worker implements Runnable {
+
+		private final PopulationReaderMatsimV6 reader;
+		private final CollectorPopulation population;
+		private final BlockingQueue<PersonChunk> queue;
+
+		Worker(final PopulationReaderMatsimV6 reader, final CollectorPopulation population, final BlockingQueue<PersonChunk> queue) {
+			this.reader = reader;
+			this.population = population;
+			this.queue = queue;
+		}
+
+		@Override
+		public void run() {
+			while (true) {
+				PersonChunk chunk;
+				try {
+					chunk = this.queue.take();
+				} catch (InterruptedException e) {
+					throw new RuntimeException(e);
+				}
+				if (chunk == PersonChunk.END) {
+					return;
+				}
+				List<Person> persons = new ArrayList<>(chunk.persons.size());
+				this.population.persons = persons;
+				try {
+					for (List<Tag> tags : chunk.persons) {
+						parsePerson(tags);
+					}
+					chunk.result.complete(persons);
+				} catch (RuntimeException | Error e) {
+					chunk.result.completeExceptionally(e);
+				}
+			}
+		}
+
+		/* replays the tags of one person, with the context the parsing thread had */
+		private void parsePerson(final List<Tag> tags) {
+			Stack<String> context = new Stack<>();
+			context.push(POPULATION);
+			for (Tag tag : tags) {
+				if (tag instanceof StartTag) {
+					this.reader.startTag(tag.name, ((StartTag) tag).atts, context);
+					context.push(tag.name);
+				} else {
+					context.pop();
+					this.reader.endTag(tag.name, ((EndTag) tag).content, context);
+				}
+			}
+		}
+	}
+
+	private static class PersonChunk {
+		/*
+		 * Marker chunk to inform the threads that no further data has to be parsed.
+		 */
+		static final PersonChunk END = new PersonChunk();
+
+		final List<List<Tag>> persons = new ArrayList<>(CHUNK_SIZE);
+		final CompletableFuture<List<Person>> result = new CompletableFuture<>();
+	}
+
+	private abstract static class Tag {
+		final String name;
+
+		Tag(final String name) {
+			this.name = name;
+		}
+	}
+
+	private static final class StartTag extends Tag {
+		final Attributes atts;
+
+		StartTag(final String name, final Attributes atts) {
+			super(name);
+			this.atts = atts;
+		}
+	}
+
+	private static final class EndTag extends Tag {
+		final String content;
+
+		EndTag(final String name, final String content) {
+			super(name);
+			this.content = content;
+		}
+	}
+
+	/*
+	 * The scenario of a worker, which gives access to everything but the population. Persons added to its
+	 * population are collected for the current chunk.
+	 */
+	private static class CollectorScenario implements Scenario {
+
+		private final Scenario delegate;
+		private final CollectorPopulation population;
+
+		CollectorScenario(final Scenario scenario) {
+			this.delegate = scenario;
+			this.population = new CollectorPopulation(scenario.getPopulation());
+		}
+
+		@Override
+		public Network getNetwork() {
+			return this.delegate.getNetwork();
+		}
+
+		@Override
+		public Population getPopulation() {
+			return this.population;
+		}
+
+		@Override
+		public ActivityFacilities getActivityFacilities() {
+			return this.delegate.getActivityFacilities();
+		}
+
+		@Override
+		public TransitSchedule getTransitSchedule() {
+			return this.delegate.getTransitSchedule();
+		}
+
+		@Override
+		public Config getConfig() {
+			return this.delegate.getConfig();
+		}
+
+		@Override
+		public void addScenarioElement(String name, Object o) {
+			this.delegate.addScenarioElement(name, o);
+		}
+
+		@Override
+		public Object getScenarioElement(String name) {
+			return this.delegate.getScenarioElement(name);
+		}
+
+		@Override
+		public Vehicles getTransitVehicles() {
+			return this.delegate.getTransitVehicles();
+		}
+
+		@Override
+		public Households getHouseholds() {
+			return this.delegate.getHouseholds();
+		}
+
+		@Override
+		public Lanes getLanes() {
+			return this.delegate.getLanes();
+		}
+
+		@Override
+		public Vehicles getVehicles() {
+			return this.delegate.getVehicles();
+		}
+	}
+
+	private static class CollectorPopulation implements Population {
+
+		private final Population population;
+		private List<Person> persons = null;
+
+		CollectorPopulation(final Population population) {
+			this.population = population;
+		}
+
+		@Override
+		public PopulationFactory getFactory() {
+			return this.population.getFactory();
+		}
+
+		@Override
+		public void addPerson(Person p) {
+			this.persons.add(p);
+		}
+
+		@Override
+		public ObjectAttributes getPersonAttributes() {
+			throw new RuntimeException("Calls to this method are not expected to happen...");
+		}
+
+		@Override
+		public String getName() {
+			throw new RuntimeException("Calls to this method are not expected to happen...");
+		}
+
+		@Override
+		public void setName(String name) {
+			throw new RuntimeException("Calls to this method are not expected to happen...");
+		}
+
+		@Override
+		public Map<Id<Person>, ? extends Person> getPersons() {
+			throw new RuntimeException("Calls to this method are not expected to happen...");
+		}
+
+		@Override
+		public Person removePerson(Id<Person> personId) {
+			throw new RuntimeException("Calls to this method are not expected to happen...");
+		}
+
+		@Override
+		public org.matsim.utils.objectattributes.attributable.Attributes getAttributes() {
+			throw new RuntimeException("Calls to this method are not expected to happen...");
+		}
+	}
+}
@@ -0,0 +1,463 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.population.io;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.inject.Inject;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.api.core.v01.population.PlanElement;
+import org.matsim.api.core.v01.population.Population;
+import org.matsim.api.core.v01.population.PopulationFactory;
+import org.matsim.api.core.v01.population.Route;
+import org.matsim.core.controler.Checkpointable;
+import org.matsim.core.population.PopulationUtils;
+import org.matsim.core.population.routes.NetworkRoute;
+import org.matsim.facilities.ActivityFacility;
+import org.matsim.utils.objectattributes.ObjectAttributesConverter;
+import org.matsim.utils.objectattributes.attributable.Attributes;
+import org.matsim.vehicles.Vehicle;
+
+/**
+ * Writes the plans of the population, including their scores, to a checkpoint and restores them from it.
+ * <br>
+ * All doubles are written as they are, so a restored plan is identical to the original one. Strings are written once
+ * and referenced by their index afterwards, since ids and types repeat all over the population. Attributes of types
+ * other than the usual boxed primitives are written by means of their {@link org.matsim.utils.objectattributes.AttributeConverter}s,
+ * attributes without converter are lost, like in the plans file.
+ * <br>
+ * The (deprecated) person attributes of the population are not part of the checkpoint.
+ */
+public final class PopulationCheckpoint implements Checkpointable {
+	private static final Logger log = Logger.getLogger(PopulationCheckpoint.class);
+
+	private static final byte NULL = 0;
+	private static final byte ACTIVITY = 1;
+	private static final byte LEG = 2;
+	private static final byte ROUTE = 3;
+	private static final byte NETWORK_ROUTE = 4;
+
+	private static final byte STRING = 1;
+	private static final byte DOUBLE = 2;
+	private static final byte INTEGER = 3;
+	private static final byte LONG = 4;
+	private static final byte BOOLEAN = 5;
+	private static final byte CONVERTED = 6;
+
+	private final Population population;
+	private final ObjectAttributesConverter attributesConverter;
+
+	@Inject
+	public PopulationCheckpoint(final Population population, final ObjectAttributesConverter attributesConverter) {
+		this.population = population;
+		this.attributesConverter = attributesConverter;
+	}
+
+	@Override
+	public String getCheckpointName() {
+		return "population";
+	}
+
+	@Override
+	public void writeCheckpoint(final DataOutput out) throws IOException {
+		Writer writer = new Writer(out);
+		writer.writeAttributes(this.population.getAttributes());
+		out.writeInt(this.population.getPersons().size());
+		for (Person person : this.population.getPersons().values()) {
+			writer.writeString(person.getId().toString());
+			writer.writeAttributes(person.getAttributes());
+			out.writeInt(person.getPlans().size());
+			for (Plan plan : person.getPlans()) {
+				writer.writePlan(plan, plan == person.getSelectedPlan());
+			}
+		}
+	}
+
+	@Override
+	public void readCheckpoint(final DataInput in) throws IOException {
+		Reader reader = new Reader(in, this.population.getFactory());
+		this.population.getAttributes().clear();
+		reader.readAttributes(this.population.getAttributes());
+
+		int nOfPersons = in.readInt();
+		Set<Id<Person>> personIds = new HashSet<>();
+		for (int i = 0; i < nOfPersons; i++) {
+			Id<Person> personId = Id.createPersonId(reader.readString());
+			personIds.add(personId);
+			Person person = this.population.getPersons().get(personId);
+			if (person == null) {
+				person = this.population.getFactory().createPerson(personId);
+				this.population.addPerson(person);
+			}
+			person.getAttributes().clear();
+			reader.readAttributes(person.getAttributes());
+
+			// not removePlan(), which selects a random plan and thus draws from MatsimRandom
+			person.setSelectedPlan(null);
+			person.getPlans().clear();
+			Plan selectedPlan = null;
+			int nOfPlans = in.readInt();
+			for (int j = 0; j < nOfPlans; j++) {
+				Plan plan = this.population.getFactory().createPlan();
+				boolean selected = reader.readPlan(plan);
+				person.addPlan(plan);
+				if (selected) {
+					selectedPlan = plan;
+				}
+			}
+			person.setSelectedPlan(selectedPlan);
+		}
+
+		List<Id<Person>> removedPersonIds = new ArrayList<>();
+		for (Id<Person> personId : this.population.getPersons().keySet()) {
+			if (!personIds.contains(personId)) {
+				removedPersonIds.add(personId);
+			}
+		}
+		if (!removedPersonIds.isEmpty()) {
+			log.warn("removing " + removedPersonIds.size() + " persons that are not in the checkpoint.");
+			for (Id<Person> personId : removedPersonIds) {
+				this.population.removePerson(personId);
+			}
+		}
+		PopulationUtils.compact(this.population);
+	}
+
+	private final class Writer {
+		private final DataOutput out;
+		private final Map<String, Integer> strings = new HashMap<>();
+
+		Writer(final DataOutput out) {
+			this.out = out;
+		}
+
+		void writeString(final String s) throws IOException {
+			if (s == null) {
+				this.out.writeInt(-1);
+				return;
+			}
+			Integer index = this.strings.get(s);
+			if (index != null) {
+				this.out.writeInt(index);
+				return;
+			}
+			this.strings.put(s, this.strings.size());
+			// not writeUTF(), which is limited to 64k bytes
+			byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+			this.out.writeInt(-2);
+			this.out.writeInt(bytes.length);
+			this.out.write(bytes);
+		}
+
+		void writeId(final Id<?> id) throws IOException {
+			writeString(id == null ? null : id.toString());
+		}
+
+		void writeNullableDouble(final Double d) throws IOException {
+			this.out.writeBoolean(d != null);
+			if (d != null) {
+				this.out.writeDouble(d);
+			}
+		}
+
+		void writePlan(final Plan plan, final boolean selected) throws IOException {
+			this.out.writeBoolean(selected);
+			writeNullableDouble(plan.getScore());
+			writeString(plan.getType());
+			writeAttributes(plan.getAttributes());
+			this.out.writeInt(plan.getPlanElements().size());
+			for (PlanElement pe : plan.getPlanElements()) {
+				if (pe instanceof Activity) {
+					writeActivity((Activity) pe);
+				} else if (pe instanceof Leg) {
+					writeLeg((Leg) pe);
+				} else {
+					throw new IllegalArgumentException("unknown plan element " + pe.getClass().getName());
+				}
+			}
+		}
+
+		private void writeActivity(final Activity act) throws IOException {
+			this.out.writeByte(ACTIVITY);
+			writeString(act.getType());
+			Coord coord = act.getCoord();
+			if (coord == null) {
+				this.out.writeByte(0);
+			} else if (coord.hasZ()) {
+				this.out.writeByte(3);
+				this.out.writeDouble(coord.getX());
+				this.out.writeDouble(coord.getY());
+				this.out.writeDouble(coord.getZ());
+			} else {
+				this.out.writeByte(2);
+				this.out.writeDouble(coord.getX());
+				this.out.writeDouble(coord.getY());
+			}
+			writeId(act.getLinkId());
+			writeId(act.getFacilityId());
+			this.out.writeDouble(act.getStartTime());
+			this.out.writeDouble(act.getEndTime());
+			this.out.writeDouble(act.getMaximumDuration());
+			writeAttributes(act.getAttributes());
+		}
+
+		private void writeLeg(final Leg leg) throws IOException {
+			this.out.writeByte(LEG);
+			writeString(leg.getMode());
+			this.out.writeDouble(leg.getDepartureTime());
+			this.out.writeDouble(leg.getTravelTime());
+			writeAttributes(leg.getAttributes());
+			Route route = leg.getRoute();
+			if (route == null) {
+				this.out.writeByte(NULL);
+				return;
+			}
+			this.out.writeByte(route instanceof NetworkRoute ? NETWORK_ROUTE : ROUTE);
+			writeString(route.getRouteType());
+			writeId(route.getStartLinkId());
+			writeId(route.getEndLinkId());
+			this.out.writeDouble(route.getTravelTime());
+			this.out.writeDouble(route.getDistance());
+			if (route instanceof NetworkRoute) {
+				NetworkRoute networkRoute = (NetworkRoute) route;
+				List<Id<Link>> linkIds = networkRoute.getLinkIds();
+				this.out.writeInt(linkIds.size());
+				for (Id<Link> linkId : linkIds) {
+					writeId(linkId);
+				}
+				writeId(networkRoute.getVehicleId());
+				this.out.writeDouble(networkRoute.getTravelCost());
+			} else {
+				writeString(route.getRouteDescription());
+			}
+		}
+
+		void writeAttributes(final Attributes attributes) throws IOException {
+			int n = 0;
+			for (Map.Entry<String, Object> e : attributes.getAsMap().entrySet()) {
+				if (e.getValue() != null) {
+					n++;
+				}
+			}
+			this.out.writeInt(n);
+			for (Map.Entry<String, Object> e : attributes.getAsMap().entrySet()) {
+				Object value = e.getValue();
+				if (value == null) {
+					continue;
+				}
+				writeString(e.getKey());
+				if (value instanceof String) {
+					this.out.writeByte(STRING);
+					writeString((String) value);
+				} else if (value instanceof Double) {
+					this.out.writeByte(DOUBLE);
+					this.out.writeDouble((Double) value);
+				} else if (value instanceof Integer) {
+					this.out.writeByte(INTEGER);
+					this.out.writeInt((Integer) value);
+				} else if (value instanceof Long) {
+					this.out.writeByte(LONG);
+					this.out.writeLong((Long) value);
+				} else if (value instanceof Boolean) {
+					this.out.writeByte(BOOLEAN);
+					this.out.writeBoolean((Boolean) value);
+				} else {
+					this.out.writeByte(CONVERTED);
+					writeString(value.getClass().getCanonicalName());
+					writeString(PopulationCheckpoint.this.attributesConverter.convertToString(value));
+				}
+			}
+		}
+	}
+
+	private final class Reader {
+		private final DataInput in;
+		private final PopulationFactory factory;
+		private final List<String> strings = new ArrayList<>();
+
+		Reader(final DataInput in, final PopulationFactory factory) {
+			this.in = in;
+			this.factory = factory;
+		}
+
+		String readString() throws IOException {
+			int index = this.in.readInt();
+			if (index == -1) {
+				return null;
+			}
+			if (index >= 0) {
+				return this.strings.get(index);
+			}
+			byte[] bytes = new byte[this.in.readInt()];
+			this.in.readFully(bytes);
+			String s = new String(bytes, StandardCharsets.UTF_8);
+			this.strings.add(s);
+			return s;
+		}
+
+		<T> Id<T> readId(final Class<T> type) throws IOException {
+			String s = readString();
+			return s == null ? null : Id.create(s, type);
+		}
+
+		/**
+		 * @return whether the plan is the selected one
+		 */
+		boolean readPlan(final Plan plan) throws IOException {
+			boolean selected = this.in.readBoolean();
+			if (this.in.readBoolean()) {
+				plan.setScore(this.in.readDouble());
+			}
+			plan.setType(readString());
+			readAttributes(plan.getAttributes());
+			int nOfElements = this.in.readInt();
+			for (int i = 0; i < nOfElements; i++) {
+				byte kind = this.in.readByte();
+				if (kind == ACTIVITY) {
+					plan.addActivity(readActivity());
+				} else if (kind == LEG) {
+					plan.addLeg(readLeg());
+				} else {
+					throw new IllegalStateException("unknown plan element kind " + kind + " in checkpoint");
+				}
+			}
+			return selected;
+		}
+
+		private Activity readActivity() throws IOException {
+			String type = readString();
+			Coord coord = null;
+			byte dimensions = this.in.readByte();
+			if (dimensions == 2) {
+				coord = new Coord(this.in.readDouble(), this.in.readDouble());
+			} else if (dimensions == 3) {
+				coord = new Coord(this.in.readDouble(), this.in.readDouble(), this.in.readDouble());
+			}
+			Id<Link> linkId = readId(Link.class);
+			Id<ActivityFacility> facilityId = readId(ActivityFacility.class);
+			Activity act;
+			if (linkId != null) {
+				act = this.factory.createActivityFromLinkId(type, linkId);
+				act.setCoord(coord);
+				act.setFacilityId(facilityId);
+			} else if (coord != null) {
+				act = this.factory.createActivityFromCoord(type, coord);
+				act.setFacilityId(facilityId);
+			} else {
+				act = this.factory.createActivityFromActivityFacilityId(type, facilityId);
+			}
+			act.setStartTime(this.in.readDouble());
+			act.setEndTime(this.in.readDouble());
+			act.setMaximumDuration(this.in.readDouble());
+			readAttributes(act.getAttributes());
+			return act;
+		}
+
+		private Leg readLeg() throws IOException {
+			Leg leg = this.factory.createLeg(readString());
+			leg.setDepartureTime(this.in.readDouble());
+			leg.setTravelTime(this.in.readDouble());
+			readAttributes(leg.getAttributes());
+			byte kind = this.in.readByte();
+			if (kind == NULL) {
+				return leg;
+			}
+			String routeType = readString();
+			Id<Link> startLinkId = readId(Link.class);
+			Id<Link> endLinkId = readId(Link.class);
+			Route route = this.factory.getRouteFactories().createRoute(
+					this.factory.getRouteFactories().getRouteClassForType(routeType), startLinkId, endLinkId);
+			route.setTravelTime(this.in.readDouble());
+			route.setDistance(this.in.readDouble());
+			if (kind == NETWORK_ROUTE) {
+				int nOfLinks = this.in.readInt();
+				List<Id<Link>> linkIds = new ArrayList<>(nOfLinks);
+				for (int i = 0; i < nOfLinks; i++) {
+					linkIds.add(readId(Link.class));
+				}
+				NetworkRoute networkRoute = (NetworkRoute) route;
+				networkRoute.setLinkIds(startLinkId, linkIds, endLinkId);
+				networkRoute.setVehicleId(readId(Vehicle.class));
+				networkRoute.setTravelCost(this.in.readDouble());
+			} else {
+				String description = readString();
+				if (description != null) {
+					route.setRouteDescription(description);
+				}
+			}
+			leg.setRoute(route);
+			return leg;
+		}
+
+		void readAttributes(final Attributes attributes) throws IOException {
+			int n = this.in.readInt();
+			for (int i = 0; i < n; i++) {
+				String name = readString();
+				byte type = this.in.readByte();
+				Object value;
+				switch (type) {
+				case STRING:
+					value = readString();
+					break;
+				case DOUBLE:
+					value = this.in.readDouble();
+					break;
+				case INTEGER:
+					value = this.in.readInt();
+					break;
+				case LONG:
+					value = this.in.readLong();
+					break;
+				case BOOLEAN:
+					value = this.in.readBoolean();
+					break;
+				case CONVERTED:
+					String className = readString();
+					String s = readString();
+					value = s == null ? null : PopulationCheckpoint.this.attributesConverter.convert(className, s);
+					break;
+				default:
+					throw new IllegalStateException("unknown attribute type " + type + " in checkpoint");
+				}
+				if (value != null) {
+					attributes.putAttribute(name, value);
+				}
+			}
+		}
+	}
+
+}
@@ -128,6 +128,21 @@ import java.util.Stack;
 	    }
 	}
 
+	/**
+	 * Creates a reader for the persons of a population whose coordinate transformation is already known, as used by the
+	 * workers of {@link ParallelPopulationReaderMatsimV6}.
+	 */
+	PopulationReaderMatsimV6(
+			final CoordinateTransformation coordinateTransformation,
+			final Scenario scenario) {
+		this(null, null, scenario);
+		this.coordinateTransformation = coordinateTransformation;
+	}
+
+	CoordinateTransformation getCoordinateTransformation() {
+		return this.coordinateTransformation;
+	}
+
 	public void putAttributeConverter( final Class<?> clazz , AttributeConverter<?> converter ) {
 		attributesReader.putAttributeConverter( clazz , converter );
 	}
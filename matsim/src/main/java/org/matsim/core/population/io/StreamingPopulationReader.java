@@ -41,6 +41,14 @@ import org.matsim.core.utils.geometry.transformations.IdentityTransformation;
 import org.matsim.utils.objectattributes.ObjectAttributes;
 import org.matsim.utils.objectattributes.attributable.Attributes;
 
+/**
+ * Reads a population file and runs the added {@link PersonAlgorithm}s on each person instead of keeping the persons.
+ * <br>
+ * If {@link org.matsim.core.config.groups.PlansConfigGroup#isReadingInParallel()} is set, the persons of
+ * <code>population_v6</code> files are created in parallel while the file is parsed, see
+ * {@link ParallelPopulationReaderMatsimV6}. The algorithms still run on the calling thread, one person at a time and
+ * in the order of the file.
+ */
 public final class StreamingPopulationReader implements MatsimReader {
 	private static final Logger log = Logger.getLogger(StreamingPopulationReader.class);
 	
@@ -24,13 +24,20 @@ import org.apache.log4j.Logger;
 import org.matsim.api.core.v01.population.Plan;
 import org.matsim.api.core.v01.replanning.PlanStrategyModule;
 import org.matsim.core.config.groups.GlobalConfigGroup;
+import org.matsim.core.population.algorithms.BatchPlanAlgorithm;
 import org.matsim.core.population.algorithms.PlanAlgorithm;
 import org.matsim.core.replanning.ReplanningContext;
 import org.matsim.core.utils.misc.Counter;
 
-import java.lang.Thread.UncaughtExceptionHandler;
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
 /**
@@ -40,15 +47,25 @@ import java.util.concurrent.atomic.AtomicReference;
  * Just overwrite getPlanAlgoInstance() to return an instance of your plan
  * algorithm.
  * <p></p>
- * <code>initThreads()</code> creates the threads, but does not yet start them.
+ * <code>prepareReplanning()</code> creates one plan algorithm instance per thread.
  * <p></p>
- * <code>handlePlan(Plan)</code> distributes the plans equally to all threads.
+ * <code>handlePlan(Plan)</code> collects the plans.
  * <p></p>
- * <code>finishReplanning()</code> finally starts the threads and waits for all threads to be finished.
+ * <code>finishReplanning()</code> finally runs one worker per plan algorithm instance and waits for all of them
+ * to be finished. The workers run on an executor which is shared by all modules with the same number of threads
+ * and kept for the whole run, so no threads are started for each module and iteration.
  * <p></p>
+ * By default, the plans are distributed equally to the workers, as it always was.
  * While this approach does not lead to optimal performance gains ("slow threads" vs.
- * "fast threads"), it helps building reproducible runs.  Additionally, as the threads are only
- * started after all to-be-handled plans are added, we can use unsynchronized data structures.
+ * "fast threads"), it helps building reproducible runs.  If
+ * {@link GlobalConfigGroup#isDynamicReplanningScheduling()} is set, the workers instead take the plans in chunks
+ * from a common queue, starting with large chunks and going down to single plans towards the end, so that a few
+ * expensive persons do not stall a whole thread.  Which plan algorithm instance handles which plan then depends on
+ * the timing, so runs are no longer reproducible if the plan algorithms have state such as random number generators.
+ * <p></p>
+ * If the plan algorithm is a {@link BatchPlanAlgorithm}, it gets all plans of a worker, or of a chunk, at once.
+ * <p></p>
+ * The timing and queue statistics of the last replanning are logged and available from {@link #getStatistics()}.
  * <p></p>
  * Design comments/questions:<ul>
  * <li> As a consequence of the design, the instances that getPlanAlgoInstance() returns, need to be thread-safe.  kai, dec'12
@@ -59,16 +76,18 @@ import java.util.concurrent.atomic.AtomicReference;
  */
 abstract public class AbstractMultithreadedModule implements PlanStrategyModule {
 	private final int numOfThreads;
+	private final boolean dynamicScheduling;
+
+	private static final Map<Integer, ForkJoinPool> executors = new ConcurrentHashMap<>();
 
-	private PlanAlgoThread[] algothreads = null;
-	private Thread[] threads = null;
+	private PlanAlgorithm[] algos = null;
+	private Counter counter = null;
 	private PlanAlgorithm directAlgo = null;
+	private final List<Plan> plans = new ArrayList<>();
 	private String name = null;
-
-	private int count = 0;
+	private Statistics statistics = null;
 
 	private final AtomicReference<Throwable> hadException = new AtomicReference<>(null);
-	private final ExceptionHandler exceptionHandler = new ExceptionHandler(this.hadException);
 
 	private ReplanningContext replanningContext;
 
@@ -84,10 +103,16 @@ abstract public class AbstractMultithreadedModule implements PlanStrategyModule
 
 	public AbstractMultithreadedModule(GlobalConfigGroup globalConfigGroup) {
 		this.numOfThreads = globalConfigGroup.getNumberOfThreads();
+		this.dynamicScheduling = globalConfigGroup.isDynamicReplanningScheduling();
 	}
 
 	public AbstractMultithreadedModule(final int numOfThreads) {
+		this(numOfThreads, false);
+	}
+
+	public AbstractMultithreadedModule(final int numOfThreads, final boolean dynamicScheduling) {
 		this.numOfThreads = numOfThreads;
+		this.dynamicScheduling = dynamicScheduling;
 	}
 	
 	protected void beforePrepareReplanningHook(@SuppressWarnings("unused") ReplanningContext replanningContextTmp) {
@@ -106,7 +131,7 @@ abstract public class AbstractMultithreadedModule implements PlanStrategyModule
 			// it seems, no threads are desired :(
 			this.directAlgo = getPlanAlgoInstance();
 		} else {
-			initThreads();
+			initAlgos();
 		}
 		this.afterPrepareReplanningHook(replanningContextTmp);
 	}
@@ -117,9 +142,8 @@ abstract public class AbstractMultithreadedModule implements PlanStrategyModule
 
 	@Override
 	public final void handlePlan(final Plan plan) {
-		if (this.directAlgo == null) {
-			this.algothreads[this.count % this.numOfThreads].addPlanToThread(plan);
-			this.count++;
+		if (this.directAlgo == null || this.directAlgo instanceof BatchPlanAlgorithm) {
+			this.plans.add(plan);
 		} else {
 			this.directAlgo.run(plan);
 		}
@@ -137,103 +161,289 @@ abstract public class AbstractMultithreadedModule implements PlanStrategyModule
 		this.beforeFinishReplanningHook();
 		
 		if (this.directAlgo == null) {
-			// only try to start threads if we did not directly work on all the plans
-			log.info("[" + this.name + "] starting " + this.threads.length + " threads, handling " + this.count + " plans");
-
-			// start threads
-			for (Thread thread : this.threads) {
-				thread.start();
-			}
-
-			// wait until each thread is finished
-			try {
-				for (Thread thread : this.threads) {
-					thread.join();
-				}
-			} catch (InterruptedException e) {
-				throw new RuntimeException(e);
-			}
-			log.info("[" + this.name + "] all " + this.threads.length + " threads finished.");
+			// only use the executor if we did not directly work on all the plans
+			log.info("[" + this.name + "] starting " + this.algos.length + " workers, handling " + this.plans.size() + " plans");
+			this.statistics = runWorkers();
+			log.info("[" + this.name + "] all " + this.algos.length + " workers finished. " + this.statistics);
 			Throwable throwable = this.hadException.get();
 			if (throwable != null) {
 				throw new RuntimeException("Some threads crashed, thus not all plans may have been handled.", throwable);
 			}
+		} else if (!this.plans.isEmpty()) {
+			((BatchPlanAlgorithm) this.directAlgo).run(this.plans);
 		}
 		// reset
-		this.algothreads = null;
-		this.threads = null;
+		this.plans.clear();
+		this.algos = null;
+		this.counter = null;
 		this.replanningContext = null;
-		this.count = 0;
 		
 		this.afterFinishReplanningHook();
 	}
 
-	private void initThreads() {
-		if (this.threads != null) {
+	private void initAlgos() {
+		if (this.algos != null) {
 			throw new RuntimeException("threads are already initialized");
 		}
 
 		this.hadException.set(null);
-		this.threads = new Thread[this.numOfThreads];
-		this.algothreads = new PlanAlgoThread[this.numOfThreads];
-
-		Counter counter = null;
-		// setup threads
+		this.algos = new PlanAlgorithm[this.numOfThreads];
 		for (int i = 0; i < this.numOfThreads; i++) {
 			PlanAlgorithm algo = getPlanAlgoInstance();
 			if (i == 0) {
 				this.name = algo.getClass().getSimpleName();
-				counter = new Counter("[" + this.name + "] handled plan # ");
+				this.counter = new Counter("[" + this.name + "] handled plan # ");
 			}
-			PlanAlgoThread algothread = new PlanAlgoThread(algo, counter);
-			Thread thread = new Thread(algothread, this.name + "." + i);
-			thread.setUncaughtExceptionHandler(this.exceptionHandler);
-			this.threads[i] = thread;
-			this.algothreads[i] = algothread;
+			this.algos[i] = algo;
 		}
 	}
 
+	private Statistics runWorkers() {
+		ForkJoinPool executor = getExecutor(this.numOfThreads);
+		Scheduler scheduler = this.dynamicScheduling ? new Scheduler(this.plans.size(), this.numOfThreads, executor) : null;
+		Worker[] workers = new Worker[this.algos.length];
+		List<Future<?>> futures = new ArrayList<>(workers.length);
+		long start = System.nanoTime();
+		for (int i = 0; i < workers.length; i++) {
+			workers[i] = new Worker(this.name + "." + i, i, workers.length, this.algos[i], this.plans, scheduler, this.counter, this.hadException);
+			futures.add(executor.submit(workers[i]));
+		}
+		int maxQueuedTasks = executor.getQueuedSubmissionCount();
+		try {
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} catch (InterruptedException | ExecutionException e) {
+			throw new RuntimeException(e);
+		}
+		long wallTime = System.nanoTime() - start;
+
+		long[] busyTimes = new long[workers.length];
+		int[] handledPlans = new int[workers.length];
+		int chunks = 0;
+		for (int i = 0; i < workers.length; i++) {
+			busyTimes[i] = workers[i].busyTime;
+			handledPlans[i] = workers[i].handledPlans;
+			chunks += workers[i].chunks;
+		}
+		if (scheduler != null) {
+			maxQueuedTasks = Math.max(maxQueuedTasks, scheduler.maxQueuedTasks);
+		}
+		return new Statistics(this.plans.size(), chunks, wallTime, busyTimes, handledPlans, maxQueuedTasks);
+	}
+
+	/**
+	 * @return the executor for the given number of threads, which is created on first use and then kept
+	 */
+	private static ForkJoinPool getExecutor(final int numOfThreads) {
+		return executors.computeIfAbsent(numOfThreads, n -> new ForkJoinPool(n, pool -> {
+			ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+			thread.setName("replanning-" + n + "." + thread.getPoolIndex());
+			return thread;
+		}, null, true));
+	}
+
+	/**
+	 * @return the statistics of the last call to {@link #finishReplanning()} which used the workers, or
+	 * <code>null</code> if there was none
+	 */
+	public final Statistics getStatistics() {
+		return this.statistics;
+	}
+
 	/* package (for a test) */ final int getNumOfThreads() {
 		return numOfThreads;
 	}
 
-	private final static class ExceptionHandler implements UncaughtExceptionHandler {
+	/**
+	 * Hands out the plans in chunks of decreasing size: each chunk is a fraction of the plans which are still
+	 * queued, so the workers get large chunks at first and single plans at the end.
+	 */
+	private final static class Scheduler {
+
+		private final AtomicInteger next = new AtomicInteger(0);
+		private final int size;
+		private final int divisor;
+		private final ForkJoinPool executor;
+		private volatile int maxQueuedTasks = 0;
+
+		Scheduler(final int size, final int numOfThreads, final ForkJoinPool executor) {
+			this.size = size;
+			this.divisor = 2 * numOfThreads;
+			this.executor = executor;
+		}
+
+		/**
+		 * @return the start and end (exclusive) index of the next chunk, packed into a long, or -1 if all plans
+		 * are handed out
+		 */
+		long nextChunk() {
+			int queued = this.executor.getQueuedSubmissionCount();
+			if (queued > this.maxQueuedTasks) {
+				this.maxQueuedTasks = queued;
+			}
+			while (true) {
+				int from = this.next.get();
+				if (from >= this.size) {
+					return -1;
+				}
+				int chunkSize = Math.max(1, (this.size - from) / this.divisor);
+				int to = from + chunkSize;
+				if (this.next.compareAndSet(from, to)) {
+					return ((long) from << 32) | to;
+				}
+			}
+		}
+	}
+
+	private final static class Worker implements Runnable {
 
+		private final String name;
+		private final int index;
+		private final int numOfWorkers;
+		private final PlanAlgorithm planAlgo;
+		private final List<Plan> plans;
+		private final Scheduler scheduler;
+		private final Counter counter;
 		private final AtomicReference<Throwable> hadException;
 
-		public ExceptionHandler(final AtomicReference<Throwable> hadException) {
+		long busyTime = 0;
+		int handledPlans = 0;
+		int chunks = 0;
+
+		Worker(final String name, final int index, final int numOfWorkers, final PlanAlgorithm algo, final List<Plan> plans,
+				final Scheduler scheduler, final Counter counter, final AtomicReference<Throwable> hadException) {
+			this.name = name;
+			this.index = index;
+			this.numOfWorkers = numOfWorkers;
+			this.planAlgo = algo;
+			this.plans = plans;
+			this.scheduler = scheduler;
+			this.counter = counter;
 			this.hadException = hadException;
 		}
 
 		@Override
-		public void uncaughtException(Thread t, Throwable e) {
-			log.error("Thread " + t.getName() + " died with exception. Will stop after all threads finished.", e);
-			this.hadException.set(e);
+		public void run() {
+			long start = System.nanoTime();
+			try {
+				if (this.scheduler == null) {
+					// fixed round-robin assignment, as the plans were distributed to the threads before
+					List<Plan> myPlans = new ArrayList<>();
+					for (int i = this.index; i < this.plans.size(); i += this.numOfWorkers) {
+						myPlans.add(this.plans.get(i));
+					}
+					handle(myPlans);
+				} else {
+					for (long chunk = this.scheduler.nextChunk(); chunk >= 0; chunk = this.scheduler.nextChunk()) {
+						handle(this.plans.subList((int) (chunk >>> 32), (int) chunk));
+					}
+				}
+			} catch (Throwable e) {
+				log.error("Worker " + this.name + " died with exception. Will stop after all workers finished.", e);
+				this.hadException.set(e);
+			}
+			this.busyTime = System.nanoTime() - start;
 		}
 
+		private void handle(final List<Plan> chunk) {
+			this.chunks++;
+			if (this.planAlgo instanceof BatchPlanAlgorithm) {
+				((BatchPlanAlgorithm) this.planAlgo).run(chunk);
+				for (int i = 0; i < chunk.size(); i++) {
+					this.counter.incCounter();
+				}
+			} else {
+				for (Plan plan : chunk) {
+					this.planAlgo.run(plan);
+					this.counter.incCounter();
+				}
+			}
+			this.handledPlans += chunk.size();
+		}
 	}
 
-	private final static class PlanAlgoThread implements Runnable {
+	/**
+	 * Timing and queue statistics of one replanning of a module. The busy time of a worker is the time from its
+	 * start to its end, so the difference to the wall time shows how long it waited for the other workers.
+	 */
+	public static final class Statistics {
+
+		private final int numberOfPlans;
+		private final int numberOfChunks;
+		private final long wallTime;
+		private final long[] busyTimes;
+		private final int[] handledPlans;
+		private final int maxQueuedTasks;
+
+		Statistics(final int numberOfPlans, final int numberOfChunks, final long wallTime, final long[] busyTimes,
+				final int[] handledPlans, final int maxQueuedTasks) {
+			this.numberOfPlans = numberOfPlans;
+			this.numberOfChunks = numberOfChunks;
+			this.wallTime = wallTime;
+			this.busyTimes = busyTimes;
+			this.handledPlans = handledPlans;
+			this.maxQueuedTasks = maxQueuedTasks;
+		}
 
-		private final PlanAlgorithm planAlgo;
-		private final List<Plan> plans = new LinkedList<>();
-		private final Counter counter;
+		public int getNumberOfPlans() {
+			return this.numberOfPlans;
+		}
 
-		public PlanAlgoThread(final PlanAlgorithm algo, final Counter counter) {
-			this.planAlgo = algo;
-			this.counter = counter;
+		/**
+		 * @return the number of chunks the plans were handed out in, which is the number of workers for the
+		 * round-robin assignment
+		 */
+		public int getNumberOfChunks() {
+			return this.numberOfChunks;
 		}
 
-		public void addPlanToThread(final Plan plan) {
-			this.plans.add(plan);
+		/**
+		 * @return the time in nanoseconds from starting the first worker until all workers were finished
+		 */
+		public long getWallTime() {
+			return this.wallTime;
 		}
 
-		@Override
-		public void run() {
-			for (Plan plan : this.plans) {
-				this.planAlgo.run(plan);
-				this.counter.incCounter();
+		/**
+		 * @return the time in nanoseconds each worker was running
+		 */
+		public long[] getBusyTimes() {
+			return this.busyTimes.clone();
+		}
+
+		/**
+		 * @return the number of plans each worker handled
+		 */
+		public int[] getHandledPlans() {
+			return this.handledPlans.clone();
+		}
+
+		/**
+		 * @return the largest number of tasks waiting in the queue of the executor which was seen, e.g. workers
+		 * of this module which could not start yet because the executor was busy
+		 */
+		public int getMaxQueuedTasks() {
+			return this.maxQueuedTasks;
+		}
+
+		/**
+		 * @return the sum of the busy times divided by the wall time of all workers, 1.0 if all workers were busy
+		 * all the time
+		 */
+		public double getUtilization() {
+			long busyTime = 0;
+			for (long time : this.busyTimes) {
+				busyTime += time;
 			}
+			return this.wallTime == 0 ? 1.0 : (double) busyTime / ((double) this.wallTime * this.busyTimes.length);
+		}
+
+		@Override
+		public String toString() {
+			return "plans: " + this.numberOfPlans + ", chunks: " + this.numberOfChunks + ", time: "
+					+ (this.wallTime / 1000000) + " ms, utilization: " + Math.round(100 * getUtilization())
+					+ "%, max. queued tasks: " + this.maxQueuedTasks;
 		}
 	}
 }
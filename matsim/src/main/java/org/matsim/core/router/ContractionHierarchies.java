@@ -0,0 +1,243 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+import org.matsim.analysis.IterationMetrics;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.router.ContractionHierarchiesMetric.Customization;
+import org.matsim.core.router.util.LeastCostPathCalculator;
+import org.matsim.core.router.util.TravelDisutility;
+import org.matsim.core.router.util.TravelTime;
+import org.matsim.vehicles.Vehicle;
+
+/**
+ * Least cost path calculator using a customizable contraction hierarchy. The node order and the shortcuts are
+ * computed once per network, see {@link ContractionHierarchiesGraph}, while the costs of the shortcuts are
+ * customized for each time bin of the travel disutility, see {@link ContractionHierarchiesMetric}.
+ * <br>
+ * A query searches upward from both the start and the end node, which only visits the ancestors of both nodes
+ * in the elimination tree of the hierarchy, and then unpacks the shortcuts of the best path into links.
+ * <br>
+ * Queries are approximately time-dependent: the path is searched with the link costs of the time bin containing
+ * the departure time. The travel time and cost of the returned path are then computed link by link, as for the
+ * other routers. Person- and vehicle-dependent parts of the travel disutility are not considered when searching
+ * the path.
+ * <br>
+ * Instances should be created by {@link ContractionHierarchiesFactory}. An instance must not be used by
+ * several threads concurrently.
+ */
+public class ContractionHierarchies implements LeastCostPathCalculator {
+	private static final Logger log = Logger.getLogger(ContractionHierarchies.class);
+
+	private final ContractionHierarchiesGraph graph;
+	private final ContractionHierarchiesMetric metric;
+	private final TravelDisutility travelDisutility;
+	private final TravelTime travelTime;
+	/* the customizations used by this path calculator, by time bin */
+	private final Customization[] customizations;
+
+	private final double[] forwardCost;
+	private final double[] backwardCost;
+	private final int[] forwardArc;
+	private final int[] backwardArc;
+	private int[] stack = new int[64];
+
+	private final IterationMetrics.Timer queryTimer = IterationMetrics.getTimer(IterationMetrics.ROUTER_QUERY);
+
+	/* deliberately package */ ContractionHierarchies(final ContractionHierarchiesMetric metric,
+			final TravelDisutility travelDisutility, final TravelTime travelTime) {
+		this.graph = metric.getGraph();
+		this.metric = metric;
+		this.travelDisutility = travelDisutility;
+		this.travelTime = travelTime;
+		this.customizations = new Customization[metric.getNumberOfTimeBins()];
+		this.forwardCost = new double[this.graph.nodeCount];
+		this.backwardCost = new double[this.graph.nodeCount];
+		this.forwardArc = new int[this.graph.nodeCount];
+		this.backwardArc = new int[this.graph.nodeCount];
+		Arrays.fill(this.forwardCost, Double.POSITIVE_INFINITY);
+		Arrays.fill(this.backwardCost, Double.POSITIVE_INFINITY);
+	}
+
+	@Override
+	public Path calcLeastCostPath(final Node fromNode, final Node toNode, final double starttime, final Person person, final Vehicle vehicle) {
+		int source = this.graph.getRank(fromNode);
+		int target = this.graph.getRank(toNode);
+		if (source < 0 || target < 0) {
+			throw new IllegalArgumentException("Node " + (source < 0 ? fromNode : toNode).getId()
+					+ " is not part of the network this contraction hierarchy was built for.");
+		}
+		int bin = this.metric.getTimeBin(starttime);
+		Customization customization = this.customizations[bin];
+		if (customization == null) {
+			customization = this.metric.getCustomization(bin, this.travelDisutility);
+			this.customizations[bin] = customization;
+		}
+
+		long queryStartTime = System.nanoTime();
+		int settledNodes = search(source, customization.up, this.forwardCost, this.forwardArc)
+				+ search(target, customization.down, this.backwardCost, this.backwardArc);
+
+		int meetingNode = -1;
+		double bestCost = Double.POSITIVE_INFINITY;
+		for (int v = source; v >= 0; v = this.graph.parent[v]) {
+			double cost = this.forwardCost[v] + this.backwardCost[v];
+			if (cost < bestCost) {
+				bestCost = cost;
+				meetingNode = v;
+			}
+		}
+
+		List<Link> links = null;
+		if (meetingNode >= 0) {
+			links = unpack(source, target, meetingNode, customization);
+		}
+		reset(source, this.forwardCost);
+		reset(target, this.backwardCost);
+		this.queryTimer.record(System.nanoTime() - queryStartTime, settledNodes);
+
+		if (links == null) {
+			log.warn("No route was found from node " + fromNode.getId() + " to node " + toNode.getId() + ". Some possible reasons:");
+			log.warn("  * Network is not connected.  Run NetworkCleaner().") ;
+			log.warn("  * Network for considered mode does not even exist.  Modes need to be entered for each link in network.xml.");
+			log.warn("  * Network for considered mode is not connected to starting or ending point of route.  Setting insertingAccessEgressWalk to true may help.");
+			log.warn("This will now return null, but it may fail later with a NullPointerException.");
+			return null;
+		}
+
+		List<Node> nodes = new ArrayList<>(links.size() + 1);
+		nodes.add(fromNode);
+		double time = starttime;
+		double cost = 0.0;
+		for (Link link : links) {
+			cost += this.travelDisutility.getLinkTravelDisutility(link, time, person, vehicle);
+			time += this.travelTime.getLinkTravelTime(link, time, person, vehicle);
+			nodes.add(link.getToNode());
+		}
+		return new Path(nodes, links, time - starttime, cost);
+	}
+
+	/* relaxes the upward arcs of all ancestors of the start node, in rank order, returns the number of reached ancestors */
+	private int search(final int start, final float[] arcCosts, final double[] costs, final int[] arcs) {
+		ContractionHierarchiesGraph g = this.graph;
+		int settledNodes = 0;
+		costs[start] = 0.0;
+		for (int v = start; v >= 0; v = g.parent[v]) {
+			double cost = costs[v];
+			if (cost == Double.POSITIVE_INFINITY) {
+				continue;
+			}
+			settledNodes++;
+			for (int arc = g.firstArc[v]; arc < g.firstArc[v + 1]; arc++) {
+				double newCost = cost + arcCosts[arc];
+				int head = g.arcHead[arc];
+				if (newCost < costs[head]) {
+					costs[head] = newCost;
+					arcs[head] = arc;
+				}
+			}
+		}
+		return settledNodes;
+	}
+
+	private void reset(final int start, final double[] costs) {
+		for (int v = start; v >= 0; v = this.graph.parent[v]) {
+			costs[v] = Double.POSITIVE_INFINITY;
+		}
+	}
+
+	/* the stack holds arcs with their direction: 2 * arc + 1 for up, 2 * arc for down */
+	private List<Link> unpack(final int source, final int target, final int meetingNode, final Customization customization) {
+		ContractionHierarchiesGraph g = this.graph;
+		int size = 0;
+		// the path from the meeting node to the target, last arc on the bottom of the stack
+		List<Integer> downward = new ArrayList<>();
+		for (int v = meetingNode; v != target; v = g.arcTail[this.backwardArc[v]]) {
+			downward.add(2 * this.backwardArc[v]);
+		}
+		for (int i = downward.size() - 1; i >= 0; i--) {
+			size = push(size, downward.get(i));
+		}
+		// the path from the source to the meeting node, first arc on the top of the stack
+		for (int v = meetingNode; v != source; v = g.arcTail[this.forwardArc[v]]) {
+			size = push(size, 2 * this.forwardArc[v] + 1);
+		}
+
+		List<Link> links = new ArrayList<>();
+		while (size > 0) {
+			int entry = this.stack[--size];
+			int arc = entry >> 1;
+			boolean up = (entry & 1) == 1;
+			boolean shortcut = up ? customization.upShortcuts.get(arc) : customization.downShortcuts.get(arc);
+			if (!shortcut) {
+				Link link = this.metric.getCheapestLink(customization, arc, up);
+				if (link == null) {
+					return null;
+				}
+				links.add(link);
+				continue;
+			}
+			// find the lower triangle (v, tail, head) the cost of the arc stems from
+			int tail = g.arcTail[arc];
+			int head = g.arcHead[arc];
+			float cost = up ? customization.up[arc] : customization.down[arc];
+			boolean found = false;
+			for (int i = g.firstLowerArc[tail]; i < g.firstLowerArc[tail + 1] && !found; i++) {
+				int toTail = g.lowerArcs[i];
+				int toHead = g.findArc(g.arcTail[toTail], head);
+				if (toHead < 0) {
+					continue;
+				}
+				if (up && customization.down[toTail] + customization.up[toHead] == cost) {
+					// tail -> v -> head
+					size = push(size, 2 * toHead + 1);
+					size = push(size, 2 * toTail);
+					found = true;
+				} else if (!up && customization.down[toHead] + customization.up[toTail] == cost) {
+					// head -> v -> tail
+					size = push(size, 2 * toTail + 1);
+					size = push(size, 2 * toHead);
+					found = true;
+				}
+			}
+			if (!found) {
+				throw new IllegalStateException("could not unpack shortcut between nodes " + g.nodes[tail].getId()
+						+ " and " + g.nodes[head].getId());
+			}
+		}
+		return links;
+	}
+
+	private int push(final int size, final int entry) {
+		if (size == this.stack.length) {
+			this.stack = Arrays.copyOf(this.stack, 2 * size);
+		}
+		this.stack[size] = entry;
+		return size + 1;
+	}
+
+}
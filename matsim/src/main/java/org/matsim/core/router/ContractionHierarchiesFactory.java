@@ -0,0 +1,85 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.core.config.groups.TravelTimeCalculatorConfigGroup;
+import org.matsim.core.controler.events.IterationStartsEvent;
+import org.matsim.core.controler.listener.IterationStartsListener;
+import org.matsim.core.router.util.LeastCostPathCalculator;
+import org.matsim.core.router.util.LeastCostPathCalculatorFactory;
+import org.matsim.core.router.util.TravelDisutility;
+import org.matsim.core.router.util.TravelTime;
+
+/**
+ * Creates {@link ContractionHierarchies}. The contraction hierarchy of each network is built when the first path
+ * calculator for it is created and kept for the whole run. The customizations of a time bin are computed when a
+ * path calculator first needs them, and shared by all path calculators with the same network and travel time whose
+ * travel disutilities have the same link costs in this time bin. They are discarded at the start of each iteration,
+ * so they are computed again from the new travel times when they are needed.
+ * <br>
+ * The time bins of the customizations are the ones of the {@link TravelTimeCalculatorConfigGroup}.
+ */
+@Singleton
+public class ContractionHierarchiesFactory implements LeastCostPathCalculatorFactory, IterationStartsListener {
+
+	private final int timeBinSize;
+	private final int numberOfTimeBins;
+	private final Map<Network, ContractionHierarchiesGraph> graphs = new HashMap<>();
+	private final Map<Network, Map<TravelTime, ContractionHierarchiesMetric>> metrics = new HashMap<>();
+
+	@Inject
+	public ContractionHierarchiesFactory(final TravelTimeCalculatorConfigGroup travelTimeCalculatorConfigGroup) {
+		this(travelTimeCalculatorConfigGroup.getTraveltimeBinSize(), travelTimeCalculatorConfigGroup.getMaxTime());
+	}
+
+	public ContractionHierarchiesFactory(final int timeBinSize, final int maxTime) {
+		this.timeBinSize = timeBinSize;
+		this.numberOfTimeBins = maxTime / timeBinSize + 1;
+	}
+
+	@Override
+	public synchronized LeastCostPathCalculator createPathCalculator(final Network network, final TravelDisutility travelCosts, final TravelTime travelTimes) {
+		ContractionHierarchiesGraph graph = this.graphs.get(network);
+		if (graph == null) {
+			graph = new ContractionHierarchiesGraph(network);
+			this.graphs.put(network, graph);
+		}
+
+		// travel disutilities are usually created for each path calculator, so the metric compares them by their link
+		// costs, one time bin at a time when the bin is needed
+		final ContractionHierarchiesGraph metricGraph = graph;
+		ContractionHierarchiesMetric metric = this.metrics.computeIfAbsent(network, n -> new HashMap<>())
+				.computeIfAbsent(travelTimes, t -> new ContractionHierarchiesMetric(metricGraph, this.timeBinSize, this.numberOfTimeBins));
+		return new ContractionHierarchies(metric, travelCosts, travelTimes);
+	}
+
+	@Override
+	public synchronized void notifyIterationStarts(final IterationStartsEvent event) {
+		this.metrics.clear();
+	}
+
+}
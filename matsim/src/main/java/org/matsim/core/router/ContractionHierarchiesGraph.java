@@ -0,0 +1,414 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router;
+
+import java.util.Arrays;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+
+/**
+ * The metric-independent part of a (customizable) contraction hierarchy of a network, used by
+ * {@link ContractionHierarchies}.
+ * <br>
+ * The nodes are ordered by a nested dissection of the network, using recursive bisections along the node
+ * coordinates: the nodes separating two halves of a cell get a higher rank than all nodes within the halves.
+ * The nodes are then contracted in this order without any witness searches, i.e. all higher-ranked neighbors
+ * of a contracted node are connected with each other. The resulting <i>upward arcs</i> only depend on the
+ * topology of the network and not on travel times or costs, so they can be reused for any metric, see
+ * {@link ContractionHierarchiesMetric}.
+ * <br>
+ * All node indices in this class are ranks. Each arc connects a lower-ranked <i>tail</i> with a higher-ranked
+ * <i>head</i> and can be used in both directions: <i>up</i> from tail to head and <i>down</i> from head to tail.
+ * The higher-ranked neighbors of a node are always ancestors of the node in the elimination tree, where the
+ * parent of a node is its lowest-ranked higher neighbor.
+ */
+/* deliberately package */ final class ContractionHierarchiesGraph {
+	private static final Logger log = Logger.getLogger(ContractionHierarchiesGraph.class);
+
+	/* cells with at most this number of nodes are not dissected further */
+	private static final int MAX_CELL_SIZE = 16;
+
+	final int nodeCount;
+	final int arcCount;
+
+	final Node[] nodes; // by rank
+	final Link[] links; // by link index
+	private final int[] rankByNodeIdIndex;
+
+	// upward arcs of each node, sorted by the rank of their head
+	final int[] firstArc;
+	final int[] arcHead;
+	final int[] arcTail;
+	final int[] parent;
+
+	// arcs with the given node as head
+	final int[] firstLowerArc;
+	final int[] lowerArcs;
+
+	// links represented by each arc
+	final int[] linkArc;
+	final boolean[] linkIsUpward;
+	final int[] firstArcLink;
+	final int[] arcLinks;
+
+	ContractionHierarchiesGraph(final Network network) {
+		long startTime = System.currentTimeMillis();
+		this.nodeCount = network.getNodes().size();
+		Node[] nodesByIndex = network.getNodes().values().toArray(new Node[this.nodeCount]);
+		int[] indexByNodeIdIndex = new int[Id.getNumberOfIds(Node.class)];
+		Arrays.fill(indexByNodeIdIndex, -1);
+		for (int i = 0; i < this.nodeCount; i++) {
+			indexByNodeIdIndex[nodesByIndex[i].getId().index()] = i;
+		}
+		this.links = network.getLinks().values().toArray(new Link[network.getLinks().size()]);
+
+		// undirected adjacency, by node index
+		int[] firstNeighbor = new int[this.nodeCount + 1];
+		for (Link link : this.links) {
+			int from = indexByNodeIdIndex[link.getFromNode().getId().index()];
+			int to = indexByNodeIdIndex[link.getToNode().getId().index()];
+			if (from != to) {
+				firstNeighbor[from + 1]++;
+				firstNeighbor[to + 1]++;
+			}
+		}
+		for (int i = 0; i < this.nodeCount; i++) {
+			firstNeighbor[i + 1] += firstNeighbor[i];
+		}
+		int[] neighbors = new int[firstNeighbor[this.nodeCount]];
+		int[] fill = Arrays.copyOf(firstNeighbor, this.nodeCount);
+		for (Link link : this.links) {
+			int from = indexByNodeIdIndex[link.getFromNode().getId().index()];
+			int to = indexByNodeIdIndex[link.getToNode().getId().index()];
+			if (from != to) {
+				neighbors[fill[from]++] = to;
+				neighbors[fill[to]++] = from;
+			}
+		}
+
+		// node order
+		int[] order = new NestedDissection(nodesByIndex, firstNeighbor, neighbors).run();
+		this.nodes = new Node[this.nodeCount];
+		int[] rankByIndex = new int[this.nodeCount];
+		for (int rank = 0; rank < this.nodeCount; rank++) {
+			this.nodes[rank] = nodesByIndex[order[rank]];
+			rankByIndex[order[rank]] = rank;
+		}
+		this.rankByNodeIdIndex = indexByNodeIdIndex;
+		for (int i = 0; i < this.rankByNodeIdIndex.length; i++) {
+			if (this.rankByNodeIdIndex[i] >= 0) {
+				this.rankByNodeIdIndex[i] = rankByIndex[this.rankByNodeIdIndex[i]];
+			}
+		}
+
+		// contraction: the higher neighbors of a node become neighbors of its lowest higher neighbor
+		int[][] upper = new int[this.nodeCount][];
+		int[] upperSize = new int[this.nodeCount];
+		for (int i = 0; i < this.nodeCount; i++) {
+			for (int j = firstNeighbor[i]; j < firstNeighbor[i + 1]; j++) {
+				int a = rankByIndex[i];
+				int b = rankByIndex[neighbors[j]];
+				if (a < b) {
+					add(upper, upperSize, a, b);
+				}
+			}
+		}
+		int arcs = 0;
+		for (int rank = 0; rank < this.nodeCount; rank++) {
+			int[] list = upper[rank];
+			int size = upperSize[rank];
+			if (size == 0) {
+				continue;
+			}
+			Arrays.sort(list, 0, size);
+			int unique = 1;
+			for (int j = 1; j < size; j++) {
+				if (list[j] != list[unique - 1]) {
+					list[unique++] = list[j];
+				}
+			}
+			upper[rank] = Arrays.copyOf(list, unique);
+			upperSize[rank] = unique;
+			arcs += unique;
+			int p = list[0];
+			for (int j = 1; j < unique; j++) {
+				add(upper, upperSize, p, list[j]);
+			}
+		}
+
+		this.arcCount = arcs;
+		this.firstArc = new int[this.nodeCount + 1];
+		this.arcHead = new int[arcs];
+		this.arcTail = new int[arcs];
+		this.parent = new int[this.nodeCount];
+		int[] lowerCount = new int[this.nodeCount + 1];
+		int arc = 0;
+		for (int rank = 0; rank < this.nodeCount; rank++) {
+			this.firstArc[rank] = arc;
+			this.parent[rank] = upperSize[rank] > 0 ? upper[rank][0] : -1;
+			for (int j = 0; j < upperSize[rank]; j++) {
+				this.arcHead[arc] = upper[rank][j];
+				this.arcTail[arc] = rank;
+				lowerCount[upper[rank][j] + 1]++;
+				arc++;
+			}
+			upper[rank] = null;
+		}
+		this.firstArc[this.nodeCount] = arc;
+
+		for (int rank = 0; rank < this.nodeCount; rank++) {
+			lowerCount[rank + 1] += lowerCount[rank];
+		}
+		this.firstLowerArc = lowerCount;
+		this.lowerArcs = new int[arcs];
+		fill = Arrays.copyOf(this.firstLowerArc, this.nodeCount);
+		for (arc = 0; arc < arcs; arc++) {
+			this.lowerArcs[fill[this.arcHead[arc]]++] = arc;
+		}
+
+		// links
+		this.linkArc = new int[this.links.length];
+		this.linkIsUpward = new boolean[this.links.length];
+		this.firstArcLink = new int[arcs + 1];
+		for (int i = 0; i < this.links.length; i++) {
+			int from = getRank(this.links[i].getFromNode());
+			int to = getRank(this.links[i].getToNode());
+			if (from == to) {
+				this.linkArc[i] = -1;
+			} else {
+				this.linkArc[i] = findArc(Math.min(from, to), Math.max(from, to));
+				this.linkIsUpward[i] = from < to;
+				this.firstArcLink[this.linkArc[i] + 1]++;
+			}
+		}
+		for (arc = 0; arc < arcs; arc++) {
+			this.firstArcLink[arc + 1] += this.firstArcLink[arc];
+		}
+		this.arcLinks = new int[this.firstArcLink[arcs]];
+		fill = Arrays.copyOf(this.firstArcLink, arcs);
+		for (int i = 0; i < this.links.length; i++) {
+			if (this.linkArc[i] >= 0) {
+				this.arcLinks[fill[this.linkArc[i]]++] = i;
+			}
+		}
+
+		log.info("contraction hierarchy with " + this.nodeCount + " nodes, " + this.links.length + " links and "
+				+ arcs + " arcs built in " + (System.currentTimeMillis() - startTime) + " ms.");
+	}
+
+	private static void add(final int[][] lists, final int[] sizes, final int list, final int value) {
+		int[] values = lists[list];
+		if (values == null) {
+			values = new int[4];
+			lists[list] = values;
+		} else if (sizes[list] == values.length) {
+			values = Arrays.copyOf(values, values.length * 2);
+			lists[list] = values;
+		}
+		values[sizes[list]++] = value;
+	}
+
+	/**
+	 * @return the rank of the node, or -1 if the node is not part of the network this hierarchy was built for
+	 */
+	int getRank(final Node node) {
+		int index = node.getId().index();
+		if (index >= this.rankByNodeIdIndex.length) {
+			return -1;
+		}
+		int rank = this.rankByNodeIdIndex[index];
+		return rank >= 0 && this.nodes[rank] == node ? rank : -1;
+	}
+
+	/**
+	 * @return the arc from the lower-ranked node <code>tail</code> to the higher-ranked node <code>head</code>, or -1
+	 */
+	int findArc(final int tail, final int head) {
+		int low = this.firstArc[tail];
+		int high = this.firstArc[tail + 1] - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int midHead = this.arcHead[mid];
+			if (midHead < head) {
+				low = mid + 1;
+			} else if (midHead > head) {
+				high = mid - 1;
+			} else {
+				return mid;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Orders the nodes by recursively bisecting cells along the longer side of their bounding box. The nodes of
+	 * a greedy vertex cover of the links between both halves form the separator of the cell and are ordered after
+	 * the (recursively ordered) remaining nodes of both halves.
+	 */
+	private static final class NestedDissection {
+
+		private final Node[] nodes;
+		private final int[] firstNeighbor;
+		private final int[] neighbors;
+		private final int[] label;
+		private final int[] crossingDegree;
+		private final int[] order;
+		private final int[] buffer;
+		private int nextLabel = 0;
+
+		NestedDissection(final Node[] nodes, final int[] firstNeighbor, final int[] neighbors) {
+			this.nodes = nodes;
+			this.firstNeighbor = firstNeighbor;
+			this.neighbors = neighbors;
+			this.label = new int[nodes.length];
+			this.crossingDegree = new int[nodes.length];
+			this.order = new int[nodes.length];
+			this.buffer = new int[nodes.length];
+		}
+
+		int[] run() {
+			for (int i = 0; i < this.order.length; i++) {
+				this.order[i] = i;
+			}
+			dissect(0, this.order.length);
+			return this.order;
+		}
+
+		/* orders the nodes order[from..to) in place */
+		private void dissect(final int from, final int to) {
+			if (to - from <= MAX_CELL_SIZE) {
+				return;
+			}
+			double minX = Double.POSITIVE_INFINITY;
+			double maxX = Double.NEGATIVE_INFINITY;
+			double minY = Double.POSITIVE_INFINITY;
+			double maxY = Double.NEGATIVE_INFINITY;
+			for (int i = from; i < to; i++) {
+				Node node = this.nodes[this.order[i]];
+				minX = Math.min(minX, node.getCoord().getX());
+				maxX = Math.max(maxX, node.getCoord().getX());
+				minY = Math.min(minY, node.getCoord().getY());
+				maxY = Math.max(maxY, node.getCoord().getY());
+			}
+			boolean byX = maxX - minX >= maxY - minY;
+			int mid = (from + to) >>> 1;
+			select(from, to - 1, mid, byX);
+
+			int labelA = ++this.nextLabel;
+			int labelB = ++this.nextLabel;
+			int labelSeparator = ++this.nextLabel;
+			for (int i = from; i < to; i++) {
+				this.label[this.order[i]] = i < mid ? labelA : labelB;
+			}
+			for (int i = from; i < mid; i++) {
+				int node = this.order[i];
+				for (int j = this.firstNeighbor[node]; j < this.firstNeighbor[node + 1]; j++) {
+					int neighbor = this.neighbors[j];
+					if (this.label[neighbor] == labelB) {
+						this.crossingDegree[node]++;
+						this.crossingDegree[neighbor]++;
+					}
+				}
+			}
+			for (int i = from; i < mid; i++) {
+				int node = this.order[i];
+				for (int j = this.firstNeighbor[node]; j < this.firstNeighbor[node + 1] && this.label[node] != labelSeparator; j++) {
+					int neighbor = this.neighbors[j];
+					if (this.label[neighbor] == labelB) {
+						if (this.crossingDegree[node] >= this.crossingDegree[neighbor]) {
+							this.label[node] = labelSeparator;
+						} else {
+							this.label[neighbor] = labelSeparator;
+						}
+					}
+				}
+			}
+
+			int sizeA = 0;
+			int sizeB = 0;
+			for (int i = from; i < to; i++) {
+				int node = this.order[i];
+				this.crossingDegree[node] = 0;
+				if (this.label[node] == labelA) {
+					sizeA++;
+				} else if (this.label[node] == labelB) {
+					sizeB++;
+				}
+			}
+			int nextA = from;
+			int nextB = from + sizeA;
+			int nextSeparator = from + sizeA + sizeB;
+			for (int i = from; i < to; i++) {
+				int node = this.order[i];
+				if (this.label[node] == labelA) {
+					this.buffer[nextA++] = node;
+				} else if (this.label[node] == labelB) {
+					this.buffer[nextB++] = node;
+				} else {
+					this.buffer[nextSeparator++] = node;
+				}
+			}
+			System.arraycopy(this.buffer, from, this.order, from, to - from);
+
+			dissect(from, from + sizeA);
+			dissect(from + sizeA, from + sizeA + sizeB);
+		}
+
+		/* partially sorts order[left..right] by coordinate, such that order[k] is at its sorted position */
+		private void select(int left, int right, final int k, final boolean byX) {
+			while (right > left) {
+				double pivot = coordinate(this.order[(left + right) >>> 1], byX);
+				int i = left;
+				int j = right;
+				while (i <= j) {
+					while (coordinate(this.order[i], byX) < pivot) {
+						i++;
+					}
+					while (coordinate(this.order[j], byX) > pivot) {
+						j--;
+					}
+					if (i <= j) {
+						int tmp = this.order[i];
+						this.order[i] = this.order[j];
+						this.order[j] = tmp;
+						i++;
+						j--;
+					}
+				}
+				if (k <= j) {
+					right = j;
+				} else if (k >= i) {
+					left = i;
+				} else {
+					return;
+				}
+			}
+		}
+
+		private double coordinate(final int node, final boolean byX) {
+			return byX ? this.nodes[node].getCoord().getX() : this.nodes[node].getCoord().getY();
+		}
+	}
+
+}
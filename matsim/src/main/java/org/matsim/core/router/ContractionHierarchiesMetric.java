@@ -0,0 +1,201 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.core.router.util.TravelDisutility;
+
+/**
+ * The metric-dependent part of a contraction hierarchy: the costs of the arcs of a
+ * {@link ContractionHierarchiesGraph} for a travel disutility. There is one <i>customization</i> for each time bin,
+ * computed from the link disutilities at the start of the bin when it is first needed.
+ * <br>
+ * A metric is shared by path calculators with different travel disutility objects. When a path calculator needs a
+ * time bin, it evaluates its link disutilities for this bin only, and gets the customization of another path
+ * calculator if that one had exactly the same link costs. So travel disutilities which only differ in some time bins
+ * share the customizations of the other bins.
+ * <br>
+ * Customizing processes the nodes in rank order and improves the cost of each arc between two higher-ranked
+ * neighbors of a node by the path via that node (the lower triangles of the arc). This takes a fraction of the time
+ * needed for ordering and contracting the network, so it can be repeated whenever the travel times change.
+ * <br>
+ * The travel disutility is evaluated without person and vehicle, so person-dependent parts of it are ignored.
+ */
+/* deliberately package */ final class ContractionHierarchiesMetric {
+
+	private final ContractionHierarchiesGraph graph;
+	private final int timeBinSize;
+	/* the customizations of each time bin, for the different link costs seen in this bin */
+	private final List<List<Customization>> customizations;
+
+	ContractionHierarchiesMetric(final ContractionHierarchiesGraph graph, final int timeBinSize, final int numberOfTimeBins) {
+		this.graph = graph;
+		this.timeBinSize = timeBinSize;
+		this.customizations = new ArrayList<>(numberOfTimeBins);
+		for (int i = 0; i < numberOfTimeBins; i++) {
+			this.customizations.add(new ArrayList<>(1));
+		}
+	}
+
+	ContractionHierarchiesGraph getGraph() {
+		return this.graph;
+	}
+
+	int getNumberOfTimeBins() {
+		return this.customizations.size();
+	}
+
+	/**
+	 * @return the time bin containing <code>time</code>; times after the last time bin use the last bin.
+	 */
+	int getTimeBin(final double time) {
+		return Math.max(0, Math.min((int) (time / this.timeBinSize), this.customizations.size() - 1));
+	}
+
+	/**
+	 * @return the customization for the link costs of the travel disutility at the start of the time bin, computing
+	 * it if no customization for exactly these costs exists yet. Callers should keep the result, as this evaluates the
+	 * travel disutility of all links.
+	 */
+	Customization getCustomization(final int bin, final TravelDisutility travelDisutility) {
+		double time = (double) bin * this.timeBinSize;
+		ContractionHierarchiesGraph g = this.graph;
+		float[] linkCosts = new float[g.links.length];
+		for (int i = 0; i < g.links.length; i++) {
+			linkCosts[i] = (float) travelDisutility.getLinkTravelDisutility(g.links[i], time, null, null);
+		}
+		int linkCostsHash = Arrays.hashCode(linkCosts);
+		List<Customization> candidates = this.customizations.get(bin);
+		synchronized (candidates) {
+			for (Customization candidate : candidates) {
+				if (candidate.linkCostsHash == linkCostsHash && Arrays.equals(candidate.linkCosts, linkCosts)) {
+					return candidate;
+				}
+			}
+			// customizing while holding the lock lets other threads with the same costs wait for the result
+			Customization customization = customize(time, linkCosts, linkCostsHash);
+			candidates.add(customization);
+			return customization;
+		}
+	}
+
+	private Customization customize(final double time, final float[] linkCosts, final int linkCostsHash) {
+		ContractionHierarchiesGraph g = this.graph;
+		Customization c = new Customization(time, g.arcCount, linkCosts, linkCostsHash);
+		Arrays.fill(c.up, Float.POSITIVE_INFINITY);
+		Arrays.fill(c.down, Float.POSITIVE_INFINITY);
+		for (int i = 0; i < g.links.length; i++) {
+			int arc = g.linkArc[i];
+			if (arc >= 0) {
+				float cost = linkCosts[i];
+				if (g.linkIsUpward[i]) {
+					c.up[arc] = Math.min(c.up[arc], cost);
+				} else {
+					c.down[arc] = Math.min(c.down[arc], cost);
+				}
+			}
+		}
+
+		// the arcs of u are final once all lower triangles (v, u, w) with v < u have been considered
+		int[] arcTo = new int[g.nodeCount];
+		for (int u = 0; u < g.nodeCount; u++) {
+			for (int arc = g.firstArc[u]; arc < g.firstArc[u + 1]; arc++) {
+				arcTo[g.arcHead[arc]] = arc;
+			}
+			for (int i = g.firstLowerArc[u]; i < g.firstLowerArc[u + 1]; i++) {
+				int a = g.lowerArcs[i];
+				float upA = c.up[a];
+				float downA = c.down[a];
+				if (upA == Float.POSITIVE_INFINITY && downA == Float.POSITIVE_INFINITY) {
+					continue;
+				}
+				// the higher neighbors of v after u are higher neighbors of u as well
+				int v = g.arcTail[a];
+				for (int b = a + 1; b < g.firstArc[v + 1]; b++) {
+					int arc = arcTo[g.arcHead[b]];
+					// u -> v -> w
+					float cost = downA + c.up[b];
+					if (cost < c.up[arc]) {
+						c.up[arc] = cost;
+						c.upShortcuts.set(arc);
+					}
+					// w -> v -> u
+					cost = c.down[b] + upA;
+					if (cost < c.down[arc]) {
+						c.down[arc] = cost;
+						c.downShortcuts.set(arc);
+					}
+				}
+			}
+		}
+		return c;
+	}
+
+	/**
+	 * The arc costs for one time bin. An arc is a <i>shortcut</i> in one direction if its cost in this direction
+	 * stems from a lower triangle rather than from a link.
+	 */
+	static final class Customization {
+		final double time;
+		final float[] linkCosts;
+		final int linkCostsHash;
+		final float[] up;
+		final float[] down;
+		final BitSet upShortcuts;
+		final BitSet downShortcuts;
+
+		Customization(final double time, final int arcCount, final float[] linkCosts, final int linkCostsHash) {
+			this.time = time;
+			this.linkCosts = linkCosts;
+			this.linkCostsHash = linkCostsHash;
+			this.up = new float[arcCount];
+			this.down = new float[arcCount];
+			this.upShortcuts = new BitSet(arcCount);
+			this.downShortcuts = new BitSet(arcCount);
+		}
+	}
+
+	/**
+	 * @return the link with the lowest disutility represented by the given arc in the given direction, at the time
+	 * of the customization
+	 */
+	Link getCheapestLink(final Customization customization, final int arc, final boolean upward) {
+		ContractionHierarchiesGraph g = this.graph;
+		Link best = null;
+		double bestCost = Double.POSITIVE_INFINITY;
+		for (int i = g.firstArcLink[arc]; i < g.firstArcLink[arc + 1]; i++) {
+			int link = g.arcLinks[i];
+			if (g.linkIsUpward[link] == upward) {
+				double cost = customization.linkCosts[link];
+				if (best == null || cost < bestCost) {
+					best = g.links[link];
+					bestCost = cost;
+				}
+			}
+		}
+		return best;
+	}
+
+}
@@ -21,6 +21,7 @@
 package org.matsim.core.router;
 
 import org.apache.log4j.Logger;
+import org.matsim.analysis.IterationMetrics;
 import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.network.Link;
 import org.matsim.api.core.v01.network.Network;
@@ -133,6 +134,13 @@ import java.util.Set;
 	/*package*/ Person person = null;
 	/*package*/ Vehicle vehicle = null;
 
+	/**
+	 * The number of nodes taken from the priority queue by the current query, for the {@link IterationMetrics}.
+	 */
+	/*package*/ int settledNodes = 0;
+
+	/*package*/ final IterationMetrics.Timer queryTimer = IterationMetrics.getTimer(IterationMetrics.ROUTER_QUERY);
+
 	/**
 	 * Default constructor.
 	 *
@@ -223,6 +231,8 @@ import java.util.Set;
 		checkNodeBelongToNetwork(fromNode);
 		checkNodeBelongToNetwork(toNode);
 		
+		long queryStartTime = System.nanoTime();
+		this.settledNodes = 0;
 		augmentIterationId(); // this call makes the class not thread-safe
 		this.person = person2;
 		this.vehicle = vehicle2;
@@ -236,14 +246,16 @@ import java.util.Set;
 
 		Node foundToNode = searchLogic(fromNode, toNode, pendingNodes);
 		
-		if (foundToNode == null) return null;
-		else {
+		Path path = null;
+		if (foundToNode != null) {
 			DijkstraNodeData outData = getData(foundToNode);
 			double arrivalTime = outData.getTime();
 			
 			// now construct and return the path
-			return constructPath(fromNode, foundToNode, startTime, arrivalTime);			
+			path = constructPath(fromNode, foundToNode, startTime, arrivalTime);
 		}
+		this.queryTimer.record(System.nanoTime() - queryStartTime, this.settledNodes);
+		return path;
 	}
 
 	/*
@@ -312,6 +324,7 @@ import java.util.Set;
 				return null;
 			}
 
+			this.settledNodes++;
 			if (outNode == toNode) {
 				stillSearching = false;
 			} else {
@@ -28,6 +28,7 @@ import javax.inject.Singleton;
 
 import org.matsim.api.core.v01.network.Network;
 import org.matsim.core.config.Config;
+import org.matsim.core.config.groups.ControlerConfigGroup;
 import org.matsim.core.config.groups.GlobalConfigGroup;
 import org.matsim.core.router.util.ArrayRoutingNetworkFactory;
 import org.matsim.core.router.util.LeastCostPathCalculator;
@@ -51,7 +52,14 @@ public class FastAStarLandmarksFactory implements LeastCostPathCalculatorFactory
 
 	private final int nThreads;
 
+	private String cacheDirectory = null;
+
 	@Inject
+	FastAStarLandmarksFactory(final GlobalConfigGroup globalConfigGroup, final ControlerConfigGroup controlerConfigGroup) {
+		this(FastRouterType.ARRAY, globalConfigGroup.getNumberOfThreads());
+		this.cacheDirectory = controlerConfigGroup.getLandmarksCacheDirectory();
+	}
+
 	public FastAStarLandmarksFactory(final GlobalConfigGroup globalConfigGroup) {
 		this(FastRouterType.ARRAY, globalConfigGroup.getNumberOfThreads());
 	}
@@ -93,6 +101,7 @@ public class FastAStarLandmarksFactory implements LeastCostPathCalculatorFactory
 			if (preProcessLandmarks == null) {
 				preProcessLandmarks = new PreProcessLandmarks(travelCosts);
 				preProcessLandmarks.setNumberOfThreads(nThreads);
+				preProcessLandmarks.setCacheDirectory(cacheDirectory);
 				preProcessLandmarks.run(network);
 				this.preProcessData.put(network, preProcessLandmarks);
 				
@@ -0,0 +1,272 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.apache.log4j.Logger;
+import org.matsim.analysis.IterationMetrics;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.config.groups.PlansCalcRouteConfigGroup;
+import org.matsim.core.config.groups.TravelTimeCalculatorConfigGroup;
+import org.matsim.core.controler.events.IterationEndsEvent;
+import org.matsim.core.controler.events.IterationStartsEvent;
+import org.matsim.core.controler.listener.IterationEndsListener;
+import org.matsim.core.controler.listener.IterationStartsListener;
+import org.matsim.core.router.util.LeastCostPathCalculator;
+import org.matsim.core.router.util.TravelDisutility;
+import org.matsim.core.router.util.TravelTime;
+import org.matsim.core.utils.misc.Time;
+import org.matsim.vehicles.Vehicle;
+
+/**
+ * Caches the least cost paths found by the {@link NetworkRoutingModule}s, by start node, end node and departure time
+ * bin, separately for each network and routing mode. The paths are stored as the indices of the ids of their links,
+ * in least recently used order, and the cache keeps about the configured number of paths.
+ * <br>
+ * A cached path is returned for all queries with the same start and end node in the same time bin of the travel
+ * times, with its travel time and cost computed for the departure time, person and vehicle of the query. As the path
+ * is searched only for the first of these queries, the cache requires a travel disutility without routing randomness,
+ * which the {@link org.matsim.core.config.consistency.ConfigConsistencyCheckerImpl} ensures.
+ * <br>
+ * All paths are discarded at the start of each iteration, when the travel times of the previous iteration become
+ * available. The hits and misses are counted in the {@link IterationMetrics} and logged at the end of each iteration.
+ */
+@Singleton
+public final class LeastCostPathCache implements IterationStartsListener, IterationEndsListener {
+	private static final Logger log = Logger.getLogger(LeastCostPathCache.class);
+
+	private static final int SEGMENTS = 16;
+
+	private final int maxPaths;
+	private final double timeBinSize;
+	private final Map<Network, Map<String, Table>> tables = new HashMap<>();
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final IterationMetrics.Timer hitTimer = IterationMetrics.getTimer(IterationMetrics.ROUTER_CACHE_HIT);
+	private final IterationMetrics.Timer missTimer = IterationMetrics.getTimer(IterationMetrics.ROUTER_CACHE_MISS);
+
+	@Inject
+	LeastCostPathCache(final PlansCalcRouteConfigGroup plansCalcRouteConfigGroup,
+			final TravelTimeCalculatorConfigGroup travelTimeCalculatorConfigGroup) {
+		this(plansCalcRouteConfigGroup.getRouteCacheSize(), travelTimeCalculatorConfigGroup.getTraveltimeBinSize());
+	}
+
+	public LeastCostPathCache(final int maxPaths, final double timeBinSize) {
+		this.maxPaths = maxPaths;
+		this.timeBinSize = timeBinSize;
+	}
+
+	public boolean isEnabled() {
+		return this.maxPaths > 0;
+	}
+
+	/**
+	 * @return a path calculator answering queries from this cache, and from <code>delegate</code> if the path is not
+	 * cached yet. The travel disutility and time are used to compute the travel cost and time of cached paths.
+	 */
+	public synchronized LeastCostPathCalculator createCachingPathCalculator(final LeastCostPathCalculator delegate,
+			final Network network, final String routingMode, final TravelDisutility travelDisutility,
+			final TravelTime travelTime) {
+		Table table = this.tables.computeIfAbsent(network, n -> new HashMap<>())
+				.computeIfAbsent(routingMode, m -> new Table(network, Math.max(1, this.maxPaths / SEGMENTS)));
+		return new CachingPathCalculator(this, table, delegate, travelDisutility, travelTime);
+	}
+
+	public long getHits() {
+		return this.hits.sum();
+	}
+
+	public long getMisses() {
+		return this.misses.sum();
+	}
+
+	@Override
+	public synchronized void notifyIterationStarts(final IterationStartsEvent event) {
+		// the path calculators keep their tables, so only the paths are discarded
+		for (Map<String, Table> networkTables : this.tables.values()) {
+			for (Table table : networkTables.values()) {
+				table.clear();
+			}
+		}
+		this.hits.reset();
+		this.misses.reset();
+	}
+
+	@Override
+	public void notifyIterationEnds(final IterationEndsEvent event) {
+		long hitCount = this.hits.sum();
+		long missCount = this.misses.sum();
+		if (hitCount + missCount > 0) {
+			log.info("route cache: " + hitCount + " hits, " + missCount + " misses, hit rate "
+					+ (100.0 * hitCount / (hitCount + missCount)) + "%");
+		}
+	}
+
+	private static final class Table {
+		private final Network network;
+		private final Segment[] segments = new Segment[SEGMENTS];
+
+		Table(final Network network, final int segmentCapacity) {
+			this.network = network;
+			for (int i = 0; i < SEGMENTS; i++) {
+				this.segments[i] = new Segment(segmentCapacity);
+			}
+		}
+
+		int[] get(final PathKey key) {
+			Segment segment = this.segments[Math.floorMod(key.hashCode(), SEGMENTS)];
+			synchronized (segment) {
+				return segment.get(key);
+			}
+		}
+
+		void put(final PathKey key, final int[] links) {
+			Segment segment = this.segments[Math.floorMod(key.hashCode(), SEGMENTS)];
+			synchronized (segment) {
+				segment.put(key, links);
+			}
+		}
+
+		void clear() {
+			for (Segment segment : this.segments) {
+				synchronized (segment) {
+					segment.clear();
+				}
+			}
+		}
+	}
+
+	private static final class Segment extends LinkedHashMap<PathKey, int[]> {
+		private static final long serialVersionUID = 1L;
+		private final int capacity;
+
+		Segment(final int capacity) {
+			super(16, 0.75f, true);
+			this.capacity = capacity;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(final Map.Entry<PathKey, int[]> eldest) {
+			return size() > this.capacity;
+		}
+	}
+
+	private static final class PathKey {
+		private final int fromNode;
+		private final int toNode;
+		private final int timeBin;
+
+		PathKey(final int fromNode, final int toNode, final int timeBin) {
+			this.fromNode = fromNode;
+			this.toNode = toNode;
+			this.timeBin = timeBin;
+		}
+
+		@Override
+		public boolean equals(final Object obj) {
+			if (!(obj instanceof PathKey)) {
+				return false;
+			}
+			PathKey other = (PathKey) obj;
+			return this.fromNode == other.fromNode && this.toNode == other.toNode && this.timeBin == other.timeBin;
+		}
+
+		@Override
+		public int hashCode() {
+			return (31 * this.fromNode + this.toNode) * 31 + this.timeBin;
+		}
+	}
+
+	private static final class CachingPathCalculator implements LeastCostPathCalculator {
+		private final LeastCostPathCache cache;
+		private final Table table;
+		private final LeastCostPathCalculator delegate;
+		private final TravelDisutility travelDisutility;
+		private final TravelTime travelTime;
+
+		CachingPathCalculator(final LeastCostPathCache cache, final Table table, final LeastCostPathCalculator delegate,
+				final TravelDisutility travelDisutility, final TravelTime travelTime) {
+			this.cache = cache;
+			this.table = table;
+			this.delegate = delegate;
+			this.travelDisutility = travelDisutility;
+			this.travelTime = travelTime;
+		}
+
+		@Override
+		public Path calcLeastCostPath(final Node fromNode, final Node toNode, final double starttime,
+				final Person person, final Vehicle vehicle) {
+			if (Time.isUndefinedTime(starttime)) {
+				return this.delegate.calcLeastCostPath(fromNode, toNode, starttime, person, vehicle);
+			}
+			PathKey key = new PathKey(fromNode.getId().index(), toNode.getId().index(),
+					(int) Math.floor(starttime / this.cache.timeBinSize));
+			int[] linkIndices = this.table.get(key);
+			if (linkIndices != null) {
+				this.cache.hits.increment();
+				this.cache.hitTimer.add(1, 0);
+				return createPath(fromNode, linkIndices, starttime, person, vehicle);
+			}
+
+			this.cache.misses.increment();
+			this.cache.missTimer.add(1, 0);
+			Path path = this.delegate.calcLeastCostPath(fromNode, toNode, starttime, person, vehicle);
+			if (path != null) {
+				linkIndices = new int[path.links.size()];
+				for (int i = 0; i < linkIndices.length; i++) {
+					linkIndices[i] = path.links.get(i).getId().index();
+				}
+				this.table.put(key, linkIndices);
+			}
+			return path;
+		}
+
+		private Path createPath(final Node fromNode, final int[] linkIndices, final double starttime,
+				final Person person, final Vehicle vehicle) {
+			List<Node> nodes = new ArrayList<>(linkIndices.length + 1);
+			List<Link> links = new ArrayList<>(linkIndices.length);
+			nodes.add(fromNode);
+			double time = starttime;
+			double cost = 0.0;
+			for (int index : linkIndices) {
+				Link link = this.table.network.getLinks().get(Id.get(index, Link.class));
+				cost += this.travelDisutility.getLinkTravelDisutility(link, time, person, vehicle);
+				time += this.travelTime.getLinkTravelTime(link, time, person, vehicle);
+				links.add(link);
+				nodes.add(link.getToNode());
+			}
+			return new Path(nodes, links, time - starttime, cost);
+		}
+	}
+
+}
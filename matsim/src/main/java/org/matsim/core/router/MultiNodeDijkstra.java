@@ -159,6 +159,7 @@ public class MultiNodeDijkstra extends Dijkstra implements MultiNodePathCalculat
 					endNodes.clear();
 					stillSearching = false;
 				} else {
+					this.settledNodes++;
 					DijkstraNodeData data = getData(outNode);
 					InitialNode initData = endNodes.remove(outNode.getId());
 										
@@ -18,8 +18,11 @@
  * *********************************************************************** */
 package org.matsim.core.router;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.matsim.api.core.v01.network.Link;
 import org.matsim.api.core.v01.network.Network;
@@ -34,11 +37,18 @@ import org.matsim.core.population.routes.NetworkRoute;
 import org.matsim.core.population.routes.RouteUtils;
 import org.matsim.core.router.util.LeastCostPathCalculator;
 import org.matsim.core.router.util.LeastCostPathCalculator.Path;
+import org.matsim.core.router.util.TravelDisutility;
+import org.matsim.core.router.util.TravelTime;
+import org.matsim.core.utils.misc.Time;
 import org.matsim.facilities.Facility;
 
 /**
  * This wraps a "computer science" {@link LeastCostPathCalculator}, which routes from a node to another node, into something that
  * routes from a {@link Facility} to another {@link Facility}, as we need in MATSim.
+ * <p></p>
+ * If it is created with a {@link OneToManyDijkstra}, {@link #calcRoutes(List)} routes all trips with the same start
+ * node and a departure time in the same time bin with a single search, at the start of the time bin. Trips without
+ * such companions are routed with the regular router at their departure time.
  * 
  * @author thibautd
  */
@@ -51,6 +61,10 @@ public final class NetworkRoutingModule implements RoutingModule {
 
 	private final Network network;
 	private final LeastCostPathCalculator routeAlgo;
+	private final OneToManyDijkstra batchRouteAlgo;
+	private final TravelDisutility travelDisutility;
+	private final TravelTime travelTime;
+	private final double batchTimeBinSize;
 
 
 	 public NetworkRoutingModule(
@@ -58,6 +72,18 @@ public final class NetworkRoutingModule implements RoutingModule {
 			final PopulationFactory populationFactory,
 			final Network network,
 			final LeastCostPathCalculator routeAlgo) {
+		 this(mode, populationFactory, network, routeAlgo, null, null, null, 0.0);
+	}
+
+	/* deliberately package */ NetworkRoutingModule(
+			final String mode,
+			final PopulationFactory populationFactory,
+			final Network network,
+			final LeastCostPathCalculator routeAlgo,
+			final OneToManyDijkstra batchRouteAlgo,
+			final TravelDisutility travelDisutility,
+			final TravelTime travelTime,
+			final double batchTimeBinSize) {
 		 Gbl.assertNotNull(network);
 //		 Gbl.assertIf( network.getLinks().size()>0 ) ; // otherwise network for mode probably not defined
 		 // makes many tests fail.  
@@ -65,36 +91,128 @@ public final class NetworkRoutingModule implements RoutingModule {
 		 this.routeAlgo = routeAlgo;
 		 this.mode = mode;
 		 this.populationFactory = populationFactory;
+		 this.batchRouteAlgo = batchRouteAlgo;
+		 this.travelDisutility = travelDisutility;
+		 this.travelTime = travelTime;
+		 this.batchTimeBinSize = batchTimeBinSize;
 	}
 
 	@Override
 	public List<? extends PlanElement> calcRoute(final Facility fromFacility, final Facility toFacility, final double departureTime,
 			final Person person) {		
-		Leg newLeg = this.populationFactory.createLeg( this.mode );
-
 		Gbl.assertNotNull(fromFacility);
 		Gbl.assertNotNull(toFacility);
 
-		Link fromLink = this.network.getLinks().get(fromFacility.getLinkId());
-		if ( fromLink==null ) {
-			Gbl.assertNotNull( fromFacility.getCoord() ) ;
-			fromLink = NetworkUtils.getNearestLink( network, fromFacility.getCoord()) ;
-		}
-		Link toLink = this.network.getLinks().get(toFacility.getLinkId());
-		if ( toLink==null ) {
-			Gbl.assertNotNull( toFacility.getCoord() ) ;
-			toLink = NetworkUtils.getNearestLink(network, toFacility.getCoord());
-		}
-		Gbl.assertNotNull(fromLink);
-		Gbl.assertNotNull(toLink);
+		Link fromLink = getLink(fromFacility);
+		Link toLink = getLink(toFacility);
 		
+		Path path = null;
 		if (toLink != fromLink) {
 			// (a "true" route)
 			Node startNode = fromLink.getToNode(); // start at the end of the "current" link
 			Node endNode = toLink.getFromNode(); // the target is the start of the link
-			Path path = this.routeAlgo.calcLeastCostPath(startNode, endNode, departureTime, person, null);
+			path = this.routeAlgo.calcLeastCostPath(startNode, endNode, departureTime, person, null);
 			if (path == null)
 				throw new RuntimeException("No route found from node " + startNode.getId() + " to node " + endNode.getId() + " by mode " + this.mode + ".");
+		}
+		return createTrip(fromLink, toLink, path, departureTime);
+	}
+
+	/**
+	 * Routes several trips, as {@link #calcRoute(Facility, Facility, double, Person)} would route each of them. If this
+	 * module has a {@link OneToManyDijkstra}, the trips with the same start node and departure time bin are routed
+	 * together: the paths are searched at the start of the time bin, with the person of the first of these trips, and
+	 * the travel times and costs of the paths are then computed for the departure time and person of each trip. The
+	 * paths are thus only the ones of each person if the travel disutility has no routing randomness, which the
+	 * {@link org.matsim.core.config.consistency.ConfigConsistencyCheckerImpl} ensures when batching is configured.
+	 * A trip which is the only one of its start node and time bin is routed by {@link #calcRoute(Facility, Facility, double, Person)},
+	 * so it is searched with the configured routing algorithm, at its departure time and with its person.
+	 *
+	 * @return the trips, in the order of the requests
+	 */
+	/* deliberately package */ List<List<? extends PlanElement>> calcRoutes(final List<RoutingRequest> requests) {
+		List<List<? extends PlanElement>> trips = new ArrayList<>(requests.size());
+		for (int i = 0; i < requests.size(); i++) {
+			trips.add(null);
+		}
+
+		Map<BatchKey, List<Integer>> batches = new LinkedHashMap<>();
+		Link[] fromLinks = new Link[requests.size()];
+		Link[] toLinks = new Link[requests.size()];
+		for (int i = 0; i < requests.size(); i++) {
+			RoutingRequest request = requests.get(i);
+			if (this.batchRouteAlgo == null || Time.isUndefinedTime(request.departureTime)) {
+				trips.set(i, calcRoute(request.fromFacility, request.toFacility, request.departureTime, request.person));
+				continue;
+			}
+			Gbl.assertNotNull(request.fromFacility);
+			Gbl.assertNotNull(request.toFacility);
+			fromLinks[i] = getLink(request.fromFacility);
+			toLinks[i] = getLink(request.toFacility);
+			if (fromLinks[i] == toLinks[i]) {
+				trips.set(i, createTrip(fromLinks[i], toLinks[i], null, request.departureTime));
+				continue;
+			}
+			BatchKey key = new BatchKey(fromLinks[i].getToNode(), (int) (request.departureTime / this.batchTimeBinSize));
+			batches.computeIfAbsent(key, k -> new ArrayList<>()).add(i);
+		}
+
+		for (Map.Entry<BatchKey, List<Integer>> batch : batches.entrySet()) {
+			Node startNode = batch.getKey().startNode;
+			List<Integer> indices = batch.getValue();
+			if (indices.size() == 1) {
+				int i = indices.get(0);
+				RoutingRequest request = requests.get(i);
+				trips.set(i, calcRoute(request.fromFacility, request.toFacility, request.departureTime, request.person));
+				continue;
+			}
+			List<Node> endNodes = new ArrayList<>(indices.size());
+			for (int i : indices) {
+				endNodes.add(toLinks[i].getFromNode());
+			}
+			Person firstPerson = requests.get(indices.get(0)).person;
+			Path[] paths = this.batchRouteAlgo.calcLeastCostPaths(startNode, endNodes,
+					batch.getKey().timeBin * this.batchTimeBinSize, firstPerson, null);
+			for (int j = 0; j < indices.size(); j++) {
+				int i = indices.get(j);
+				RoutingRequest request = requests.get(i);
+				if (paths[j] == null)
+					throw new RuntimeException("No route found from node " + startNode.getId() + " to node " + endNodes.get(j).getId() + " by mode " + this.mode + ".");
+				Path path = retime(paths[j], request.departureTime, request.person);
+				trips.set(i, createTrip(fromLinks[i], toLinks[i], path, request.departureTime));
+			}
+		}
+		return trips;
+	}
+
+	/* deliberately package */ boolean isBatching() {
+		return this.batchRouteAlgo != null;
+	}
+
+	private Path retime(final Path path, final double departureTime, final Person person) {
+		double time = departureTime;
+		double cost = 0.0;
+		for (Link link : path.links) {
+			cost += this.travelDisutility.getLinkTravelDisutility(link, time, person, null);
+			time += this.travelTime.getLinkTravelTime(link, time, person, null);
+		}
+		return new Path(path.nodes, path.links, time - departureTime, cost);
+	}
+
+	private Link getLink(final Facility facility) {
+		Link link = this.network.getLinks().get(facility.getLinkId());
+		if ( link==null ) {
+			Gbl.assertNotNull( facility.getCoord() ) ;
+			link = NetworkUtils.getNearestLink( network, facility.getCoord()) ;
+		}
+		Gbl.assertNotNull(link);
+		return link;
+	}
+
+	private List<? extends PlanElement> createTrip(final Link fromLink, final Link toLink, final Path path,
+			final double departureTime) {
+		Leg newLeg = this.populationFactory.createLeg( this.mode );
+		if (path != null) {
 			NetworkRoute route = this.populationFactory.getRouteFactories().createRoute(NetworkRoute.class, fromLink.getId(), toLink.getId());
 			route.setLinkIds(fromLink.getId(), NetworkUtils.getLinkIds(path.links), toLink.getId());
 			route.setTravelTime(path.travelTime);
@@ -126,4 +244,28 @@ public final class NetworkRoutingModule implements RoutingModule {
 		return "[NetworkRoutingModule: mode="+this.mode+"]";
 	}
 
+	private static final class BatchKey {
+		private final Node startNode;
+		private final int timeBin;
+
+		private BatchKey(final Node startNode, final int timeBin) {
+			this.startNode = startNode;
+			this.timeBin = timeBin;
+		}
+
+		@Override
+		public boolean equals(final Object obj) {
+			if (!(obj instanceof BatchKey)) {
+				return false;
+			}
+			BatchKey other = (BatchKey) obj;
+			return this.startNode == other.startNode && this.timeBin == other.timeBin;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * System.identityHashCode(this.startNode) + this.timeBin;
+		}
+	}
+
 }
@@ -10,6 +10,7 @@ import org.matsim.core.network.algorithms.TransportModeNetworkFilter;
 import org.matsim.core.router.costcalculators.TravelDisutilityFactory;
 import org.matsim.core.router.util.LeastCostPathCalculator;
 import org.matsim.core.router.util.LeastCostPathCalculatorFactory;
+import org.matsim.core.router.util.TravelDisutility;
 import org.matsim.core.router.util.TravelTime;
 
 import javax.inject.Inject;
@@ -42,6 +43,9 @@ public class NetworkRoutingProvider implements Provider<RoutingModule> {
 
 	@Inject
     LeastCostPathCalculatorFactory leastCostPathCalculatorFactory;
+
+	@Inject
+	LeastCostPathCache leastCostPathCache;
 	
 	/**
 	 * This is the older (and still more standard) constructor, where the routingMode and the resulting mode were the
@@ -100,16 +104,24 @@ public class NetworkRoutingProvider implements Provider<RoutingModule> {
 		if (travelTime == null) {
 			throw new RuntimeException("No TravelTime bound for mode "+routingMode+".");
 		}
+		TravelDisutility travelDisutility = travelDisutilityFactory.createTravelDisutility(travelTime);
 		LeastCostPathCalculator routeAlgo =
 				leastCostPathCalculatorFactory.createPathCalculator(
 						filteredNetwork,
-						travelDisutilityFactory.createTravelDisutility(travelTime),
+						travelDisutility,
 						travelTime);
+		if ( leastCostPathCache.isEnabled() ) {
+			routeAlgo = leastCostPathCache.createCachingPathCalculator(routeAlgo, filteredNetwork, routingMode, travelDisutility, travelTime);
+		}
 
 		// the following again refers to the (transport)mode, since it will determine the mode of the leg on the network:
 		if ( plansCalcRouteConfigGroup.isInsertingAccessEgressWalk() ) {
 			return DefaultRoutingModules.createAccessEgressNetworkRouter(mode, populationFactory, filteredNetwork, routeAlgo,
 					plansCalcRouteConfigGroup) ;
+		} else if ( plansCalcRouteConfigGroup.getBatchedRoutingTimeBinSize() > 0 ) {
+			OneToManyDijkstra batchRouteAlgo = new OneToManyDijkstra(filteredNetwork, travelDisutility, travelTime);
+			return new NetworkRoutingModule(mode, populationFactory, filteredNetwork, routeAlgo, batchRouteAlgo,
+					travelDisutility, travelTime, plansCalcRouteConfigGroup.getBatchedRoutingTimeBinSize());
 		} else {
 			return DefaultRoutingModules.createPureNetworkRouter(mode, populationFactory, filteredNetwork, routeAlgo);
 		}
@@ -0,0 +1,92 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.router.util.TravelDisutility;
+import org.matsim.core.router.util.TravelTime;
+import org.matsim.core.utils.collections.RouterPriorityQueue;
+import org.matsim.vehicles.Vehicle;
+
+/**
+ * A {@link Dijkstra} which computes the least cost paths from one node to several nodes with a single search. The
+ * search stops as soon as all target nodes are settled, so it settles at most as many nodes as the query for the
+ * farthest of the target nodes would.
+ * <br>
+ * Used by the {@link NetworkRoutingModule} to route trips with the same start node and similar departure times
+ * together.
+ */
+/* deliberately package */ final class OneToManyDijkstra extends Dijkstra {
+
+	OneToManyDijkstra(final Network network, final TravelDisutility costFunction, final TravelTime timeFunction) {
+		super(network, costFunction, timeFunction);
+	}
+
+	/**
+	 * @return the least cost paths from <code>fromNode</code> to each of the <code>toNodes</code>, in the same order,
+	 * or <code>null</code> for the nodes which cannot be reached.
+	 */
+	@SuppressWarnings("unchecked")
+	Path[] calcLeastCostPaths(final Node fromNode, final List<Node> toNodes, final double startTime,
+			final Person person, final Vehicle vehicle) {
+		checkNodeBelongToNetwork(fromNode);
+		Set<Node> remaining = Collections.newSetFromMap(new IdentityHashMap<>());
+		for (Node toNode : toNodes) {
+			checkNodeBelongToNetwork(toNode);
+			remaining.add(toNode);
+		}
+
+		long queryStartTime = System.nanoTime();
+		this.settledNodes = 0;
+		augmentIterationId();
+		this.person = person;
+		this.vehicle = vehicle;
+
+		RouterPriorityQueue<Node> pendingNodes = (RouterPriorityQueue<Node>) createRouterPriorityQueue();
+		initFromNode(fromNode, null, startTime, pendingNodes);
+		while (!remaining.isEmpty()) {
+			Node outNode = pendingNodes.poll();
+			if (outNode == null) {
+				break;
+			}
+			this.settledNodes++;
+			remaining.remove(outNode);
+			relaxNode(outNode, null, pendingNodes);
+		}
+
+		Path[] paths = new Path[toNodes.size()];
+		for (int i = 0; i < paths.length; i++) {
+			Node toNode = toNodes.get(i);
+			if (!remaining.contains(toNode)) {
+				paths[i] = constructPath(fromNode, toNode, startTime, getData(toNode).getTime());
+			}
+		}
+		this.queryTimer.record(System.nanoTime() - queryStartTime, this.settledNodes);
+		return paths;
+	}
+
+}
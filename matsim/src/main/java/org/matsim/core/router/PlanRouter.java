@@ -19,7 +19,11 @@
  * *********************************************************************** */
 package org.matsim.core.router;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.population.Activity;
@@ -28,6 +32,7 @@ import org.matsim.api.core.v01.population.Person;
 import org.matsim.api.core.v01.population.Plan;
 import org.matsim.api.core.v01.population.PlanElement;
 import org.matsim.core.config.Config;
+import org.matsim.core.population.algorithms.BatchPlanAlgorithm;
 import org.matsim.core.population.algorithms.PersonAlgorithm;
 import org.matsim.core.population.algorithms.PlanAlgorithm;
 import org.matsim.core.population.routes.NetworkRoute;
@@ -41,10 +46,16 @@ import org.matsim.vehicles.Vehicle;
  * {@link PlanAlgorithm} responsible for routing all trips of a plan.
  * Activity times are not updated, even if the previous trip arrival time
  * is after the activity end time.
+ * <p></p>
+ * When several plans are given at once, the trips whose departure time does not depend on the routes of the trips
+ * before them, i.e. the first trip of each plan and the trips after activities with an end time, are routed together
+ * by {@link TripRouter#calcRoutes(List)}, if the trip router has a batching routing module.  Their departure time is
+ * computed by {@link #calcEndOfActivity(Activity, Plan, Config)} as for all other trips, so it follows the
+ * activity duration interpretation of the config.
  *
  * @author thibautd
  */
-public class PlanRouter implements PlanAlgorithm, PersonAlgorithm {
+public class PlanRouter implements BatchPlanAlgorithm, PersonAlgorithm {
 	private final TripRouter tripRouter;
 	private final ActivityFacilities facilities;
 
@@ -83,16 +94,61 @@ public class PlanRouter implements PlanAlgorithm, PersonAlgorithm {
 
 	@Override
 	public void run(final Plan plan) {
+		run( plan, Collections.emptyMap() );
+	}
+
+	@Override
+	public void run(final List<Plan> plans) {
+		if ( !tripRouter.hasBatchingRoutingModule() ) {
+			for (Plan plan : plans) {
+				run( plan );
+			}
+			return;
+		}
+
+		List<Activity> origins = new ArrayList<>();
+		List<RoutingRequest> requests = new ArrayList<>();
+		for (Plan plan : plans) {
+			boolean firstTrip = true;
+			for (Trip oldTrip : TripStructureUtils.getTrips( plan , tripRouter.getStageActivityTypes() )) {
+				// the departure time is computed as for a single trip.  It only depends on the trips before it if the
+				// origin activity has no end time, then they are routed one after the other in run(plan, routedTrips).
+				if (firstTrip || !Time.isUndefinedTime( oldTrip.getOriginActivity().getEndTime() )) {
+					origins.add( oldTrip.getOriginActivity() );
+					requests.add( new RoutingRequest(
+							tripRouter.getMainModeIdentifier().identifyMainMode( oldTrip.getTripElements() ),
+							FacilitiesUtils.toFacility( oldTrip.getOriginActivity(), facilities ),
+							FacilitiesUtils.toFacility( oldTrip.getDestinationActivity(), facilities ),
+							calcEndOfActivity( oldTrip.getOriginActivity() , plan, tripRouter.getConfig() ),
+							plan.getPerson() ) );
+				}
+				firstTrip = false;
+			}
+		}
+		List<List<? extends PlanElement>> newTrips = tripRouter.calcRoutes( requests );
+		Map<Activity, List<? extends PlanElement>> routedTrips = new IdentityHashMap<>();
+		for (int i = 0; i < origins.size(); i++) {
+			routedTrips.put( origins.get(i), newTrips.get(i) );
+		}
+
+		for (Plan plan : plans) {
+			run( plan, routedTrips );
+		}
+	}
+
+	private void run(final Plan plan, final Map<Activity, List<? extends PlanElement>> routedTrips) {
 		final List<Trip> trips = TripStructureUtils.getTrips( plan , tripRouter.getStageActivityTypes() );
 
 		for (Trip oldTrip : trips) {
-			final List<? extends PlanElement> newTrip =
-					tripRouter.calcRoute(
+			List<? extends PlanElement> newTrip = routedTrips.get( oldTrip.getOriginActivity() );
+			if (newTrip == null) {
+				newTrip = tripRouter.calcRoute(
 							tripRouter.getMainModeIdentifier().identifyMainMode( oldTrip.getTripElements() ),
 						  FacilitiesUtils.toFacility( oldTrip.getOriginActivity(), facilities ),
 						  FacilitiesUtils.toFacility( oldTrip.getDestinationActivity(), facilities ),
 							calcEndOfActivity( oldTrip.getOriginActivity() , plan, tripRouter.getConfig() ),
 							plan.getPerson() );
+			}
 			putVehicleFromOldTripIntoNewTripIfMeaningful(oldTrip, newTrip);
 			TripRouter.insertTrip(
 					plan, 
@@ -0,0 +1,46 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router;
+
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.facilities.Facility;
+
+/**
+ * The arguments of a call to {@link RoutingModule#calcRoute(Facility, Facility, double, Person)}, to route several
+ * trips at once with {@link TripRouter#calcRoutes(java.util.List)}.
+ */
+/* deliberately package */ final class RoutingRequest {
+
+	final String mainMode;
+	final Facility fromFacility;
+	final Facility toFacility;
+	final double departureTime;
+	final Person person;
+
+	RoutingRequest(final String mainMode, final Facility fromFacility, final Facility toFacility,
+			final double departureTime, final Person person) {
+		this.mainMode = mainMode;
+		this.fromFacility = fromFacility;
+		this.toFacility = toFacility;
+		this.departureTime = departureTime;
+		this.person = person;
+	}
+
+}
@@ -235,6 +235,52 @@ public final class TripRouter implements MatsimExtensionPoint {
 		throw new UnknownModeException( "unregistered main mode |"+mainMode+"|: does not pertain to "+routingModules.keySet() );
 	}
 
+	/**
+	 * Routes several trips, as {@link #calcRoute(String, Facility, Facility, double, Person)} would route each of them.
+	 * The trips of modes routed by a batching {@link NetworkRoutingModule} are routed together.
+	 *
+	 * @return the trips, in the order of the requests
+	 */
+	/* package-private */ synchronized List<List<? extends PlanElement>> calcRoutes(final List<RoutingRequest> requests) {
+		List<List<? extends PlanElement>> trips = new ArrayList<>(requests.size());
+		Map<String, List<Integer>> batchedRequests = new LinkedHashMap<>();
+		for (int i = 0; i < requests.size(); i++) {
+			RoutingRequest request = requests.get(i);
+			RoutingModule module = routingModules.get( request.mainMode );
+			if (module instanceof NetworkRoutingModule && ((NetworkRoutingModule) module).isBatching()) {
+				batchedRequests.computeIfAbsent(request.mainMode, m -> new ArrayList<>()).add(i);
+				trips.add(null);
+			} else {
+				trips.add(calcRoute(request.mainMode, request.fromFacility, request.toFacility, request.departureTime, request.person));
+			}
+		}
+
+		for (Map.Entry<String, List<Integer>> entry : batchedRequests.entrySet()) {
+			NetworkRoutingModule module = (NetworkRoutingModule) routingModules.get( entry.getKey() );
+			List<RoutingRequest> moduleRequests = new ArrayList<>(entry.getValue().size());
+			for (int i : entry.getValue()) {
+				moduleRequests.add(requests.get(i));
+			}
+			List<List<? extends PlanElement>> moduleTrips = module.calcRoutes(moduleRequests);
+			for (int j = 0; j < moduleTrips.size(); j++) {
+				trips.set(entry.getValue().get(j), moduleTrips.get(j));
+			}
+		}
+		return trips;
+	}
+
+	/**
+	 * @return whether {@link #calcRoutes(List)} routes the trips of at least one mode together
+	 */
+	/* package-private */ boolean hasBatchingRoutingModule() {
+		for (RoutingModule module : routingModules.values()) {
+			if (module instanceof NetworkRoutingModule && ((NetworkRoutingModule) module).isBatching()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
 	public static class UnknownModeException extends RuntimeException {
 		private UnknownModeException(
 				final String msg) {
@@ -0,0 +1,330 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router.util;
+
+import java.awt.geom.Rectangle2D;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.IntStream;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.core.utils.geometry.CoordUtils;
+
+/**
+ * Puts the landmarks on the network by farthest-point selection: the first landmark is the node farthest from the
+ * center of the largest strongly connected component of the network, and each further landmark is the node farthest
+ * from all landmarks selected so far. The distance between two nodes is the sum of the least costs to travel from one
+ * to the other and back, using the minimal travel disutilities of the links.
+ * <br>
+ * Unlike {@link PieSlicesLandmarker}, this follows the network rather than its bounding box, so the landmarks also
+ * cover networks of irregular shape. For each landmark, the least costs from and to it are calculated concurrently,
+ * and the farthest node is searched in parallel. All landmarks lie in the largest strongly connected component. If
+ * it is too small for the requested number of landmarks, the landmarks are put by a {@link PieSlicesLandmarker}
+ * instead.
+ */
+public class FarthestPointLandmarker implements Landmarker {
+	private static final Logger log = Logger.getLogger(FarthestPointLandmarker.class);
+
+	private final TravelDisutility costFunction;
+
+	public FarthestPointLandmarker(final TravelDisutility costFunction) {
+		this.costFunction = costFunction;
+	}
+
+	@Override
+	public Node[] identifyLandmarks(final int nLandmarks, final Network network) {
+		Graph graph = new Graph(network, this.costFunction);
+		int nodeCount = graph.nodes.length;
+		if (nodeCount == 0 || nLandmarks <= 0) {
+			return new Node[0];
+		}
+
+		double[] distances = new double[nodeCount];
+		Arrays.fill(distances, Double.POSITIVE_INFINITY);
+		int[] landmarks = new int[nLandmarks];
+		int landmarkCount = 0;
+		// starting in a small component (e.g. an isolated node in the center) would only find landmarks in this component
+		int next = findFarthest(roundTrips(graph, graph.getCentralNode(graph.getLargestStronglyConnectedComponent())));
+		while (next >= 0 && landmarkCount < nLandmarks) {
+			landmarks[landmarkCount++] = next;
+			double[] roundTrips = roundTrips(graph, next);
+			IntStream.range(0, nodeCount).parallel().forEach(i -> distances[i] = Math.min(distances[i], roundTrips[i]));
+			next = findFarthest(distances);
+		}
+		if (landmarkCount < nLandmarks) {
+			log.warn("The largest strongly connected component of the network only allows " + landmarkCount + " of "
+					+ nLandmarks + " landmarks, putting the landmarks by pie slices instead.");
+			return new PieSlicesLandmarker(new Rectangle2D.Double()).identifyLandmarks(nLandmarks, network);
+		}
+
+		Node[] result = new Node[landmarkCount];
+		for (int i = 0; i < landmarkCount; i++) {
+			result[i] = graph.nodes[landmarks[i]];
+		}
+		return result;
+	}
+
+	/* the costs to travel from the node to all other nodes and back */
+	private static double[] roundTrips(final Graph graph, final int node) {
+		CompletableFuture<double[]> from = CompletableFuture.supplyAsync(() -> graph.leastCosts(node, true));
+		double[] costs = graph.leastCosts(node, false);
+		double[] fromCosts = from.join();
+		for (int i = 0; i < costs.length; i++) {
+			costs[i] += fromCosts[i];
+		}
+		return costs;
+	}
+
+	/* the node with the largest finite positive distance, or -1 */
+	private static int findFarthest(final double[] distances) {
+		return IntStream.range(0, distances.length).parallel()
+				.filter(i -> distances[i] > 0 && distances[i] < Double.POSITIVE_INFINITY)
+				.boxed()
+				.reduce((i, j) -> distances[i] > distances[j] || (distances[i] == distances[j] && i < j) ? i : j)
+				.orElse(-1);
+	}
+
+	/**
+	 * The network as arrays, with the nodes sorted by their ids.
+	 */
+	private static final class Graph {
+		final Node[] nodes;
+		final int[] firstOut;
+		final int[] outHead;
+		final double[] outCost;
+		final int[] firstIn;
+		final int[] inTail;
+		final double[] inCost;
+
+		Graph(final Network network, final TravelDisutility costFunction) {
+			this.nodes = LandmarksTable.getSortedNodes(network);
+			Map<Node, Integer> indices = new IdentityHashMap<>(this.nodes.length);
+			for (int i = 0; i < this.nodes.length; i++) {
+				indices.put(this.nodes[i], i);
+			}
+			int linkCount = network.getLinks().size();
+			this.firstOut = new int[this.nodes.length + 1];
+			this.firstIn = new int[this.nodes.length + 1];
+			int[] tails = new int[linkCount];
+			int[] heads = new int[linkCount];
+			double[] costs = new double[linkCount];
+			int l = 0;
+			for (Link link : network.getLinks().values()) {
+				tails[l] = indices.get(link.getFromNode());
+				heads[l] = indices.get(link.getToNode());
+				costs[l] = costFunction.getLinkMinimumTravelDisutility(link);
+				this.firstOut[tails[l] + 1]++;
+				this.firstIn[heads[l] + 1]++;
+				l++;
+			}
+			for (int i = 0; i < this.nodes.length; i++) {
+				this.firstOut[i + 1] += this.firstOut[i];
+				this.firstIn[i + 1] += this.firstIn[i];
+			}
+			this.outHead = new int[linkCount];
+			this.outCost = new double[linkCount];
+			this.inTail = new int[linkCount];
+			this.inCost = new double[linkCount];
+			int[] nextOut = Arrays.copyOf(this.firstOut, this.nodes.length);
+			int[] nextIn = Arrays.copyOf(this.firstIn, this.nodes.length);
+			for (int i = 0; i < linkCount; i++) {
+				int out = nextOut[tails[i]]++;
+				this.outHead[out] = heads[i];
+				this.outCost[out] = costs[i];
+				int in = nextIn[heads[i]]++;
+				this.inTail[in] = tails[i];
+				this.inCost[in] = costs[i];
+			}
+		}
+
+		/* the node of the component closest to the center of the component's bounding box */
+		int getCentralNode(final boolean[] component) {
+			double minX = Double.POSITIVE_INFINITY;
+			double minY = Double.POSITIVE_INFINITY;
+			double maxX = Double.NEGATIVE_INFINITY;
+			double maxY = Double.NEGATIVE_INFINITY;
+			for (int i = 0; i < this.nodes.length; i++) {
+				if (component[i]) {
+					Coord coord = this.nodes[i].getCoord();
+					minX = Math.min(minX, coord.getX());
+					minY = Math.min(minY, coord.getY());
+					maxX = Math.max(maxX, coord.getX());
+					maxY = Math.max(maxY, coord.getY());
+				}
+			}
+			Coord center = new Coord((minX + maxX) / 2, (minY + maxY) / 2);
+			int central = 0;
+			double minDistance = Double.POSITIVE_INFINITY;
+			for (int i = 0; i < this.nodes.length; i++) {
+				double distance = CoordUtils.calcEuclideanDistance(center, this.nodes[i].getCoord());
+				if (component[i] && distance < minDistance) {
+					minDistance = distance;
+					central = i;
+				}
+			}
+			return central;
+		}
+
+		/* the nodes of the largest strongly connected component, by Kosaraju's algorithm with iterative searches */
+		boolean[] getLargestStronglyConnectedComponent() {
+			int nodeCount = this.nodes.length;
+			// order the nodes by the time their depth-first search along the links is finished
+			int[] finished = new int[nodeCount];
+			int finishedCount = 0;
+			boolean[] visited = new boolean[nodeCount];
+			int[] stackNodes = new int[nodeCount];
+			int[] stackLinks = new int[nodeCount];
+			for (int start = 0; start < nodeCount; start++) {
+				if (visited[start]) {
+					continue;
+				}
+				visited[start] = true;
+				int depth = 0;
+				stackNodes[0] = start;
+				stackLinks[0] = this.firstOut[start];
+				while (depth >= 0) {
+					int node = stackNodes[depth];
+					if (stackLinks[depth] < this.firstOut[node + 1]) {
+						int other = this.outHead[stackLinks[depth]++];
+						if (!visited[other]) {
+							visited[other] = true;
+							depth++;
+							stackNodes[depth] = other;
+							stackLinks[depth] = this.firstOut[other];
+						}
+					} else {
+						finished[finishedCount++] = node;
+						depth--;
+					}
+				}
+			}
+
+			// in reverse finishing order, the unassigned nodes reached against the links form a component
+			int[] component = new int[nodeCount];
+			Arrays.fill(component, -1);
+			int componentCount = 0;
+			int largest = -1;
+			int largestSize = 0;
+			for (int i = nodeCount - 1; i >= 0; i--) {
+				int start = finished[i];
+				if (component[start] >= 0) {
+					continue;
+				}
+				component[start] = componentCount;
+				int size = 0;
+				int top = 0;
+				stackNodes[top++] = start;
+				while (top > 0) {
+					int node = stackNodes[--top];
+					size++;
+					for (int l = this.firstIn[node]; l < this.firstIn[node + 1]; l++) {
+						int other = this.inTail[l];
+						if (component[other] < 0) {
+							component[other] = componentCount;
+							stackNodes[top++] = other;
+						}
+					}
+				}
+				if (size > largestSize) {
+					largestSize = size;
+					largest = componentCount;
+				}
+				componentCount++;
+			}
+
+			boolean[] largestComponent = new boolean[nodeCount];
+			for (int i = 0; i < nodeCount; i++) {
+				largestComponent[i] = component[i] == largest;
+			}
+			return largestComponent;
+		}
+
+		/* Dijkstra from (forward) or to (backward) the given node, with a lazy binary heap */
+		double[] leastCosts(final int start, final boolean forward) {
+			int[] first = forward ? this.firstOut : this.firstIn;
+			int[] adjacent = forward ? this.outHead : this.inTail;
+			double[] adjacentCost = forward ? this.outCost : this.inCost;
+			double[] costs = new double[this.nodes.length];
+			Arrays.fill(costs, Double.POSITIVE_INFINITY);
+			costs[start] = 0.0;
+			double[] heapCosts = new double[16];
+			int[] heapNodes = new int[16];
+			int size = 0;
+			heapCosts[0] = 0.0;
+			heapNodes[0] = start;
+			size++;
+			while (size > 0) {
+				double cost = heapCosts[0];
+				int node = heapNodes[0];
+				size--;
+				// sift down the last element
+				double lastCost = heapCosts[size];
+				int lastNode = heapNodes[size];
+				int pos = 0;
+				while (2 * pos + 1 < size) {
+					int child = 2 * pos + 1;
+					if (child + 1 < size && heapCosts[child + 1] < heapCosts[child]) {
+						child++;
+					}
+					if (heapCosts[child] >= lastCost) {
+						break;
+					}
+					heapCosts[pos] = heapCosts[child];
+					heapNodes[pos] = heapNodes[child];
+					pos = child;
+				}
+				heapCosts[pos] = lastCost;
+				heapNodes[pos] = lastNode;
+
+				if (cost > costs[node]) {
+					continue;
+				}
+				for (int i = first[node]; i < first[node + 1]; i++) {
+					int other = adjacent[i];
+					double newCost = cost + adjacentCost[i];
+					if (newCost < costs[other]) {
+						costs[other] = newCost;
+						if (size == heapCosts.length) {
+							heapCosts = Arrays.copyOf(heapCosts, 2 * size);
+							heapNodes = Arrays.copyOf(heapNodes, 2 * size);
+						}
+						// sift up
+						pos = size++;
+						while (pos > 0 && heapCosts[(pos - 1) / 2] > newCost) {
+							heapCosts[pos] = heapCosts[(pos - 1) / 2];
+							heapNodes[pos] = heapNodes[(pos - 1) / 2];
+							pos = (pos - 1) / 2;
+						}
+						heapCosts[pos] = newCost;
+						heapNodes[pos] = other;
+					}
+				}
+			}
+			return costs;
+		}
+	}
+
+}
@@ -0,0 +1,277 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router.util;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+
+/**
+ * The travel costs between all nodes of a network and the landmarks, as computed by {@link PreProcessLandmarks}.
+ * The nodes are numbered in the order of their ids, see {@link #getSortedNodes(Network)}, and each node has one row
+ * with two values per landmark.
+ * <br>
+ * A table is identified by a fingerprint of the network, the minimal travel disutilities of its links, the landmarker
+ * and the number of landmarks. Tables can be written to a file and read back memory-mapped, so they are neither
+ * computed again in the next run nor copied to the heap. Tables are shared by all users in the same JVM as long as
+ * one of them keeps a reference, see {@link #getShared(String)}, and must not be modified once they are shared.
+ */
+public final class LandmarksTable {
+	private static final Logger log = Logger.getLogger(LandmarksTable.class);
+
+	private static final int MAGIC = 0x4c4d4b54; // "LMKT"
+	private static final int VERSION = 1;
+	/* rows are stored in chunks, since a single buffer can hold at most 2^31 - 1 elements or bytes */
+	private static final long MAX_CHUNK_BYTES = Integer.MAX_VALUE;
+
+	private static final Map<String, WeakReference<LandmarksTable>> sharedTables = new HashMap<>();
+
+	private final int nodeCount;
+	private final int landmarkCount;
+	private final int[] landmarkNodeIndices;
+	private final int rowsPerChunk;
+	private final DoubleBuffer[] chunks;
+
+	private LandmarksTable(final int nodeCount, final int landmarkCount, final int[] landmarkNodeIndices, final DoubleBuffer[] chunks) {
+		this.nodeCount = nodeCount;
+		this.landmarkCount = landmarkCount;
+		this.landmarkNodeIndices = landmarkNodeIndices;
+		this.rowsPerChunk = rowsPerChunk(landmarkCount);
+		this.chunks = chunks;
+	}
+
+	/**
+	 * Creates a table on the heap with all travel costs set to infinity.
+	 */
+	LandmarksTable(final int nodeCount, final int landmarkCount, final int[] landmarkNodeIndices) {
+		this(nodeCount, landmarkCount, landmarkNodeIndices, new DoubleBuffer[chunkCount(nodeCount, landmarkCount)]);
+		for (int c = 0; c < this.chunks.length; c++) {
+			int rows = Math.min(this.rowsPerChunk, nodeCount - c * this.rowsPerChunk);
+			double[] values = new double[rows * 2 * landmarkCount];
+			Arrays.fill(values, Double.POSITIVE_INFINITY);
+			this.chunks[c] = DoubleBuffer.wrap(values);
+		}
+	}
+
+	private static int rowsPerChunk(final int landmarkCount) {
+		return (int) Math.max(1, MAX_CHUNK_BYTES / (16L * Math.max(1, landmarkCount)));
+	}
+
+	private static int chunkCount(final int nodeCount, final int landmarkCount) {
+		int rowsPerChunk = rowsPerChunk(landmarkCount);
+		return Math.max(1, (nodeCount + rowsPerChunk - 1) / rowsPerChunk);
+	}
+
+	public int getNodeCount() {
+		return this.nodeCount;
+	}
+
+	public int getLandmarkCount() {
+		return this.landmarkCount;
+	}
+
+	/**
+	 * @return the indices of the landmark nodes, in the order of {@link #getSortedNodes(Network)}. There may be
+	 * less landmarks than columns if the landmarker did not find enough suitable nodes.
+	 */
+	public int[] getLandmarkNodeIndices() {
+		return this.landmarkNodeIndices.clone();
+	}
+
+	double get(final int row, final int column) {
+		return this.chunks[row / this.rowsPerChunk].get((row % this.rowsPerChunk) * 2 * this.landmarkCount + column);
+	}
+
+	void set(final int row, final int column, final double value) {
+		this.chunks[row / this.rowsPerChunk].put((row % this.rowsPerChunk) * 2 * this.landmarkCount + column, value);
+	}
+
+	/**
+	 * @return the nodes of the network sorted by their ids, which defines the rows of the tables.
+	 */
+	public static Node[] getSortedNodes(final Network network) {
+		Node[] nodes = network.getNodes().values().toArray(new Node[0]);
+		Arrays.sort(nodes, Comparator.comparing(Node::getId));
+		return nodes;
+	}
+
+	/**
+	 * @return a hash of everything the landmark travel costs depend on: the nodes, the links with their minimal
+	 * travel disutilities, the type of the landmarker and the number of landmarks.
+	 */
+	public static String fingerprint(final Network network, final TravelDisutility costFunction, final Landmarker landmarker,
+			final int landmarkCount) {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException(e);
+		}
+		ByteBuffer buffer = ByteBuffer.allocate(8);
+		digest.update(landmarker.getClass().getName().getBytes(StandardCharsets.UTF_8));
+		digest.update(buffer.putInt(0, landmarkCount).array(), 0, 4);
+		for (Node node : getSortedNodes(network)) {
+			digest.update(node.getId().toString().getBytes(StandardCharsets.UTF_8));
+			digest.update((byte) 0);
+		}
+		Link[] links = network.getLinks().values().toArray(new Link[0]);
+		Arrays.sort(links, Comparator.comparing(Link::getId));
+		for (Link link : links) {
+			digest.update(link.getId().toString().getBytes(StandardCharsets.UTF_8));
+			digest.update((byte) 0);
+			digest.update(link.getFromNode().getId().toString().getBytes(StandardCharsets.UTF_8));
+			digest.update((byte) 0);
+			digest.update(link.getToNode().getId().toString().getBytes(StandardCharsets.UTF_8));
+			digest.update((byte) 0);
+			digest.update(buffer.putDouble(0, costFunction.getLinkMinimumTravelDisutility(link)).array(), 0, 8);
+		}
+		StringBuilder fingerprint = new StringBuilder();
+		for (byte b : digest.digest()) {
+			fingerprint.append(String.format("%02x", b));
+		}
+		return fingerprint.toString();
+	}
+
+	/**
+	 * @return the table with the given fingerprint if it is still in use, or <code>null</code>.
+	 */
+	public static LandmarksTable getShared(final String fingerprint) {
+		synchronized (sharedTables) {
+			WeakReference<LandmarksTable> reference = sharedTables.get(fingerprint);
+			return reference == null ? null : reference.get();
+		}
+	}
+
+	/**
+	 * Makes the table available to {@link #getShared(String)}.
+	 */
+	public static void share(final String fingerprint, final LandmarksTable table) {
+		synchronized (sharedTables) {
+			sharedTables.values().removeIf(reference -> reference.get() == null);
+			sharedTables.put(fingerprint, new WeakReference<>(table));
+		}
+	}
+
+	/**
+	 * Writes the table to a temporary file first, which is then renamed, so concurrent runs never read a partial file.
+	 */
+	public void write(final Path file) throws IOException {
+		Path tmpFile = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName().toString(), ".tmp");
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmpFile), 1 << 16))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(this.nodeCount);
+			out.writeInt(this.landmarkCount);
+			out.writeInt(this.landmarkNodeIndices.length);
+			for (int index : this.landmarkNodeIndices) {
+				out.writeInt(index);
+			}
+			writePadding(out, headerSize(this.landmarkNodeIndices.length) - 20 - 4L * this.landmarkNodeIndices.length);
+			for (int row = 0; row < this.nodeCount; row++) {
+				for (int column = 0; column < 2 * this.landmarkCount; column++) {
+					out.writeDouble(get(row, column));
+				}
+			}
+		} catch (IOException e) {
+			Files.deleteIfExists(tmpFile);
+			throw e;
+		}
+		Files.move(tmpFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	private static void writePadding(final OutputStream out, final long bytes) throws IOException {
+		for (long i = 0; i < bytes; i++) {
+			out.write(0);
+		}
+	}
+
+	/* the header is padded to a multiple of 8 bytes, so the values are aligned */
+	private static long headerSize(final int landmarks) {
+		long size = 20 + 4L * landmarks;
+		return (size + 7) / 8 * 8;
+	}
+
+	/**
+	 * Maps a table written by {@link #write(Path)} into memory.
+	 *
+	 * @return the table, or <code>null</code> if the file does not contain a table with the expected dimensions.
+	 */
+	public static LandmarksTable read(final Path file, final int expectedNodeCount, final int expectedLandmarkCount) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			ByteBuffer header = ByteBuffer.allocate(20);
+			if (channel.read(header, 0) != 20) {
+				log.warn("landmarks table " + file + " is truncated, ignoring it.");
+				return null;
+			}
+			int magic = header.getInt(0);
+			int version = header.getInt(4);
+			int nodeCount = header.getInt(8);
+			int landmarkCount = header.getInt(12);
+			int landmarks = header.getInt(16);
+			if (magic != MAGIC || version != VERSION || nodeCount != expectedNodeCount || landmarkCount != expectedLandmarkCount
+					|| landmarks < 0 || landmarks > landmarkCount) {
+				log.warn("landmarks table " + file + " does not match the network, ignoring it.");
+				return null;
+			}
+			long headerSize = headerSize(landmarks);
+			if (channel.size() != headerSize + 16L * landmarkCount * nodeCount) {
+				log.warn("landmarks table " + file + " has an unexpected size, ignoring it.");
+				return null;
+			}
+			ByteBuffer indices = ByteBuffer.allocate(4 * landmarks);
+			channel.read(indices, 20);
+			int[] landmarkNodeIndices = new int[landmarks];
+			for (int i = 0; i < landmarks; i++) {
+				landmarkNodeIndices[i] = indices.getInt(4 * i);
+			}
+
+			int rowsPerChunk = rowsPerChunk(landmarkCount);
+			DoubleBuffer[] chunks = new DoubleBuffer[chunkCount(nodeCount, landmarkCount)];
+			for (int c = 0; c < chunks.length; c++) {
+				int rows = Math.min(rowsPerChunk, nodeCount - c * rowsPerChunk);
+				long position = headerSize + 16L * landmarkCount * c * rowsPerChunk;
+				chunks[c] = channel.map(FileChannel.MapMode.READ_ONLY, position, 16L * landmarkCount * rows).asDoubleBuffer();
+			}
+			return new LandmarksTable(nodeCount, landmarkCount, landmarkNodeIndices, chunks);
+		}
+	}
+
+}
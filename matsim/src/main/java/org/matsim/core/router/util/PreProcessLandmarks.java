@@ -27,7 +27,12 @@ import org.matsim.api.core.v01.network.Node;
 import org.matsim.core.api.internal.MatsimComparator;
 
 import java.awt.geom.Rectangle2D;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.Comparator;
+import java.util.IdentityHashMap;
 import java.util.Map;
 import java.util.PriorityQueue;
 import java.util.concurrent.ExecutorService;
@@ -40,6 +45,9 @@ import java.util.concurrent.TimeUnit;
  * between a start and an end node. Specifically, designates some
  * nodes in the network that act as landmarks and computes the last-cost-path
  * from and to each node in the network to each of the landmarks.
+ * <br>
+ * The travel costs are kept in a {@link LandmarksTable}, which is shared by all pre-processings of the same network
+ * with the same travel disutility and landmarks, and which can be stored in a cache directory for later runs.
  *
  * @author lnicolas
  */
@@ -50,17 +58,26 @@ public class PreProcessLandmarks extends PreProcessEuclidean {
 	private final Landmarker landmarker;
 
 	private Node[] landmarks;
+
+	/* keeps the shared table alive as long as this pre-processing is used */
+	private LandmarksTable table;
+	private LandmarksTable unreachable;
 	
 	private int numberOfThreads = 8;
 
+	private String cacheDirectory = null;
+
 	private static final Logger log = Logger.getLogger(PreProcessLandmarks.class);
 
 	public PreProcessLandmarks(final TravelDisutility costFunction) {
-		this(costFunction, new Rectangle2D.Double());
+		this(costFunction, 16);
 	}
 
+	/**
+	 * Uses a {@link FarthestPointLandmarker} to put the landmarks on the network.
+	 */
 	public PreProcessLandmarks(final TravelDisutility costFunction, final int landmarkCount) {
-		this(costFunction, new Rectangle2D.Double(), landmarkCount);
+		this(costFunction, new FarthestPointLandmarker(costFunction), landmarkCount);
 	}
 
 	/**
@@ -82,6 +99,17 @@ public class PreProcessLandmarks extends PreProcessEuclidean {
 	public void setNumberOfThreads(int numberOfThreads) {
 		this.numberOfThreads = numberOfThreads;
 	}
+
+	/**
+	 * Sets the directory in which the landmark travel costs are stored, see {@link LandmarksTable}. If the directory
+	 * contains the travel costs for the same network, travel disutility and landmarks, they are read from there instead
+	 * of being calculated. Default is <code>null</code>, meaning the travel costs are not stored.
+	 *
+	 * @param cacheDirectory
+	 */
+	public void setCacheDirectory(String cacheDirectory) {
+		this.cacheDirectory = cacheDirectory;
+	}
 	
 	/**
 	 * @param costFunction
@@ -108,20 +136,70 @@ public class PreProcessLandmarks extends PreProcessEuclidean {
 	@Override
 	public void run(final Network network) {
 		super.run(network);
-		
+
+		Node[] nodes = LandmarksTable.getSortedNodes(network);
+		String fingerprint = LandmarksTable.fingerprint(network, this.costFunction, this.landmarker, this.landmarkCount);
+		LandmarksTable table = LandmarksTable.getShared(fingerprint);
+		if (table != null) {
+			log.info("Using landmarks " + fingerprint + " which are already in memory");
+		}
+		Path cacheFile = this.cacheDirectory == null ? null : Paths.get(this.cacheDirectory, "landmarks-" + fingerprint + ".bin");
+		if (table == null && cacheFile != null && Files.exists(cacheFile)) {
+			log.info("Reading landmarks from " + cacheFile);
+			try {
+				table = LandmarksTable.read(cacheFile, nodes.length, this.landmarkCount);
+			} catch (IOException e) {
+				log.warn("Could not read landmarks from " + cacheFile + ", calculating them again.", e);
+			}
+		}
+		if (table == null) {
+			table = calculateLandmarks(network, nodes);
+			if (cacheFile != null) {
+				try {
+					Files.createDirectories(cacheFile.toAbsolutePath().getParent());
+					table.write(cacheFile);
+					log.info("Landmarks written to " + cacheFile);
+				} catch (IOException e) {
+					log.warn("Could not write landmarks to " + cacheFile, e);
+				}
+			}
+		}
+		LandmarksTable.share(fingerprint, table);
+		this.table = table;
+
+		int[] landmarkNodeIndices = table.getLandmarkNodeIndices();
+		this.landmarks = new Node[landmarkNodeIndices.length];
+		for (int i = 0; i < landmarkNodeIndices.length; i++) {
+			this.landmarks[i] = nodes[landmarkNodeIndices[i]];
+		}
+		for (int i = 0; i < nodes.length; i++) {
+			this.nodeData.put(nodes[i], new LandmarksData(table, i));
+		}
+	}
+
+	private LandmarksTable calculateLandmarks(final Network network, final Node[] nodes) {
 		log.info("Putting landmarks on network...");
 		long now = System.currentTimeMillis();
-		landmarks = landmarker.identifyLandmarks( landmarkCount , network );
+		Node[] landmarks = landmarker.identifyLandmarks( landmarkCount , network );
 		log.info("done in " + (System.currentTimeMillis() - now) + " ms");
 
 		log.info("Initializing landmarks data");
-		for (Node node : network.getNodes().values()) {
-			this.nodeData.put(node, new LandmarksData(this.landmarkCount));
+		Map<Node, Integer> nodeIndices = new IdentityHashMap<>(nodes.length);
+		for (int i = 0; i < nodes.length; i++) {
+			nodeIndices.put(nodes[i], i);
+		}
+		int[] landmarkNodeIndices = new int[landmarks.length];
+		for (int i = 0; i < landmarks.length; i++) {
+			landmarkNodeIndices[i] = nodeIndices.get(landmarks[i]);
+		}
+		LandmarksTable table = new LandmarksTable(nodes.length, this.landmarkCount, landmarkNodeIndices);
+		for (int i = 0; i < nodes.length; i++) {
+			this.nodeData.put(nodes[i], new LandmarksData(table, i));
 		}
 		
 		int nOfThreads = this.numberOfThreads;
-		if (nOfThreads > this.landmarks.length) {
-			nOfThreads = this.landmarks.length;
+		if (nOfThreads > landmarks.length) {
+			nOfThreads = landmarks.length;
 		}
 		if (nOfThreads < 2) {
 			nOfThreads = 2; // always use at least two threads
@@ -131,8 +209,8 @@ public class PreProcessLandmarks extends PreProcessEuclidean {
 
 		
 		ExecutorService executor = Executors.newFixedThreadPool(nOfThreads);
-		for (int i = 0; i < this.landmarks.length; i++) {
-			executor.execute(new Calculator(i, this.landmarks[i], this.nodeData, this.costFunction));
+		for (int i = 0; i < landmarks.length; i++) {
+			executor.execute(new Calculator(i, landmarks[i], this.nodeData, this.costFunction));
 		}
 		executor.shutdown();
 		while (!executor.isTerminated()) {
@@ -151,7 +229,7 @@ public class PreProcessLandmarks extends PreProcessEuclidean {
 
 		for (Node node : network.getNodes().values()) {
 			LandmarksData r = getNodeData(node);
-			for (int i = 0; i < this.landmarks.length; i++) {
+			for (int i = 0; i < landmarks.length; i++) {
 				if (r.getMinLandmarkTravelTime(i) > r.getMaxLandmarkTravelTime(i)) {
 					log.info("Min > max for node " + node.getId() + " and landmark " + i);
 				}
@@ -159,6 +237,7 @@ public class PreProcessLandmarks extends PreProcessEuclidean {
 		}
 
 		log.info("done in " + (System.currentTimeMillis() - now) + " ms");
+		return table;
 	}
 
 	private static class Calculator implements Runnable {
@@ -240,7 +319,13 @@ public class PreProcessLandmarks extends PreProcessEuclidean {
 	public LandmarksData getNodeData(final Node n) {
 		DeadEndData r = this.nodeData.get(n);
 		if (r == null) {
-			r = new LandmarksData(this.landmarkCount);
+			// nodes without data share a row with infinite travel costs until the landmarks are calculated
+			synchronized (this) {
+				if (this.unreachable == null) {
+					this.unreachable = new LandmarksTable(1, this.landmarkCount, new int[0]);
+				}
+			}
+			r = new LandmarksData(this.unreachable, 0);
 			this.nodeData.put(n, r);
 		}
 		// would be better to work with a Map<Node,LandmarksData>, but for some reason the implementor of this class
@@ -251,59 +336,60 @@ public class PreProcessLandmarks extends PreProcessEuclidean {
 		return (LandmarksData) r;
 	}
 
+	/**
+	 * The travel costs between a node and the landmarks, which are stored in a row of a {@link LandmarksTable}.
+	 */
 	public static class LandmarksData extends DeadEndData {
 
-		private final double[] landmarkTravelTime1;
-		private final double[] landmarkTravelTime2;
+		private final LandmarksTable table;
+		private final int row;
+		private final int landmarkCount;
 
-		LandmarksData(final int landmarkCount) {
-			this.landmarkTravelTime2 = new double[landmarkCount];
-			this.landmarkTravelTime1 = new double[landmarkCount];
-			for (int i = 0; i < this.landmarkTravelTime2.length; i++) {
-				this.landmarkTravelTime2[i] = Double.POSITIVE_INFINITY;
-				this.landmarkTravelTime1[i] = Double.POSITIVE_INFINITY;
-			}
+		LandmarksData(final LandmarksTable table, final int row) {
+			this.table = table;
+			this.row = row;
+			this.landmarkCount = table.getLandmarkCount();
 		}
 
 		void setToLandmarkTravelTime(final int landmarkIndex, final double travelTime) {
-			this.landmarkTravelTime2[landmarkIndex] = travelTime;
+			this.table.set(this.row, this.landmarkCount + landmarkIndex, travelTime);
 		}
 
 		void setFromLandmarkTravelTime(final int landmarkIndex, final double travelTime) {
-			this.landmarkTravelTime1[landmarkIndex] = travelTime;
+			this.table.set(this.row, landmarkIndex, travelTime);
 		}
 
 		double getToLandmarkTravelTime(final int landmarkIndex) {
-			return this.landmarkTravelTime2[landmarkIndex];
+			return this.table.get(this.row, this.landmarkCount + landmarkIndex);
 		}
 
 		double getFromLandmarkTravelTime(final int landmarkIndex) {
-			return this.landmarkTravelTime1[landmarkIndex];
+			return this.table.get(this.row, landmarkIndex);
 		}
 
 		void updateMinMaxTravelTimes() {
-			for (int i = 0; i < this.landmarkTravelTime1.length; i++) {
-				setTravelTimes(i, this.landmarkTravelTime2[i], this.landmarkTravelTime1[i]);
+			for (int i = 0; i < this.landmarkCount; i++) {
+				setTravelTimes(i, getToLandmarkTravelTime(i), getFromLandmarkTravelTime(i));
 			}
 		}
 
 		private void setTravelTimes(final int landmarkIndex, final double travelTime1,
 				final double travelTime2) {
 			if (travelTime1 > travelTime2) {
-				this.landmarkTravelTime2[landmarkIndex] = travelTime1;
-				this.landmarkTravelTime1[landmarkIndex] = travelTime2;
+				this.table.set(this.row, this.landmarkCount + landmarkIndex, travelTime1);
+				this.table.set(this.row, landmarkIndex, travelTime2);
 			} else {
-				this.landmarkTravelTime1[landmarkIndex] = travelTime1;
-				this.landmarkTravelTime2[landmarkIndex] = travelTime2;
+				this.table.set(this.row, landmarkIndex, travelTime1);
+				this.table.set(this.row, this.landmarkCount + landmarkIndex, travelTime2);
 			}
 		}
 
 		public double getMinLandmarkTravelTime(final int landmarkIndex) {
-			return this.landmarkTravelTime1[landmarkIndex];
+			return this.table.get(this.row, landmarkIndex);
 		}
 
 		public double getMaxLandmarkTravelTime(final int landmarkIndex) {
-			return this.landmarkTravelTime2[landmarkIndex];
+			return this.table.get(this.row, this.landmarkCount + landmarkIndex);
 		}
 	}
 
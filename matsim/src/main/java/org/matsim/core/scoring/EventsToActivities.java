@@ -21,6 +21,7 @@
  package org.matsim.core.scoring;
 
 import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.IdMap;
 import org.matsim.api.core.v01.events.ActivityEndEvent;
 import org.matsim.api.core.v01.events.ActivityStartEvent;
 import org.matsim.api.core.v01.events.handler.ActivityEndEventHandler;
@@ -34,7 +35,6 @@ import org.matsim.core.population.PopulationUtils;
 
 import javax.inject.Inject;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -57,7 +57,7 @@ public final class EventsToActivities implements ActivityStartEventHandler, Acti
 	    void handleActivity(PersonExperiencedActivity activity);
 	}
 
-    private Map<Id<Person>, Activity> activities = new HashMap<>();
+    private Map<Id<Person>, Activity> activities = new IdMap<>(Person.class);
     private List<ActivityHandler> activityHandlers = new ArrayList<>();
 
     public EventsToActivities() {
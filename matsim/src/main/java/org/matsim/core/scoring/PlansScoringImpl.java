@@ -22,6 +22,7 @@ package org.matsim.core.scoring;
 
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
+import org.matsim.analysis.IterationMetrics;
 import org.matsim.api.core.v01.population.Person;
 import org.matsim.api.core.v01.population.Plan;
 import org.matsim.api.core.v01.population.Population;
@@ -55,9 +56,11 @@ final class PlansScoringImpl implements PlansScoring, ScoringListener, Iteration
 
 	@Override
 	public void notifyScoring(final ScoringEvent event) {
+		long startTime = System.nanoTime();
 		scoringFunctionsForPopulation.finishScoringFunctions();
 		NewScoreAssignerImpl newScoreAssigner = new NewScoreAssignerImpl(this.planCalcScoreConfigGroup, this.controlerConfigGroup);
 		newScoreAssigner.assignNewScores(event.getIteration(), this.scoringFunctionsForPopulation, this.population);
+		IterationMetrics.getTimer(IterationMetrics.SCORING).record(System.nanoTime() - startTime, this.population.getPersons().size());
 	}
 
 	@Override
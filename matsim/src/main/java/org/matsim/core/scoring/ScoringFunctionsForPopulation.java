@@ -26,6 +26,7 @@ import gnu.trove.iterator.TDoubleIterator;
 import gnu.trove.list.array.TDoubleArrayList;
 import org.apache.log4j.Logger;
 import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.IdMap;
 import org.matsim.api.core.v01.events.Event;
 import org.matsim.api.core.v01.events.LinkEnterEvent;
 import org.matsim.api.core.v01.events.PersonMoneyEvent;
@@ -39,6 +40,7 @@ import org.matsim.api.core.v01.population.Plan;
 import org.matsim.api.core.v01.population.Population;
 import org.matsim.core.api.experimental.events.EventsManager;
 import org.matsim.core.api.internal.HasPersonId;
+import org.matsim.core.config.groups.PlanCalcScoreConfigGroup;
 import org.matsim.core.controler.ControlerListenerManager;
 import org.matsim.core.controler.events.IterationStartsEvent;
 import org.matsim.core.controler.listener.IterationStartsListener;
@@ -53,11 +55,12 @@ import org.matsim.vehicles.Vehicle;
 
 import java.io.BufferedWriter;
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.LinkedHashMap;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 
 import static org.matsim.core.router.TripStructureUtils.Trip;
@@ -66,6 +69,12 @@ import static org.matsim.core.router.TripStructureUtils.Trip;
  * This class helps EventsToScore by keeping ScoringFunctions for the entire Population - one per Person -, and dispatching Activities
  * and Legs to the ScoringFunctions. It also gives out the ScoringFunctions, so they can be given other events by EventsToScore.
  * It is not independently useful. Please do not make public.
+ * <br>
+ * If {@link PlanCalcScoreConfigGroup#getNumberOfScoringThreads()} is larger than zero, the persons are distributed
+ * to that many shards by the index of their id.  The events thread then only hands the events, legs and activities of
+ * each person to the shard of the person, and each shard passes them on to the scoring functions on its own thread,
+ * in the order in which they arrived.  Since the scoring functions of different persons are independent, the scores
+ * are the same as without shards.
  * 
  * @author michaz
  *
@@ -75,7 +84,6 @@ import static org.matsim.core.router.TripStructureUtils.Trip;
 	// can be changed there.  kai, sep'17
 	// I just removed that.  kai, apr'18
 	
-	@SuppressWarnings("unused")
 	private final static Logger log = Logger.getLogger(ScoringFunctionsForPopulation.class);
 	private final Population population;
 	private final ScoringFunctionFactory scoringFunctionFactory;
@@ -91,11 +99,17 @@ import static org.matsim.core.router.TripStructureUtils.Trip;
 	 * should be faster and reduce the memory overhead.
 	 *
 	 * cdobler, nov'15
+	 *
+	 * The scoring functions, partial scores and trip records are looked up for nearly every event, leg or
+	 * activity, so they are stored in IdMaps, which replace the hash lookup by an array access on the person's
+	 * id index.  The partial scores are written in the order of the population, as before.
+	 * The maps are filled in init() before the shards are started and are only read afterwards, except for
+	 * the collections of each person, which are only modified by the shard of the person.
 	 */
-	private final Map<Id<Person>, ScoringFunction> agentScorers = new HashMap<>();
-	private final Map<Id<Person>, TDoubleCollection> partialScores = new LinkedHashMap<>();
+	private final IdMap<Person, ScoringFunction> agentScorers = new IdMap<>(Person.class);
+	private final IdMap<Person, TDoubleCollection> partialScores = new IdMap<>(Person.class);
 	private final AtomicReference<Throwable> exception = new AtomicReference<>();
-	private final Map<Id<Person>, Plan> tripRecords = new LinkedHashMap<>() ;
+	private final IdMap<Person, Plan> tripRecords = new IdMap<>(Person.class);
 	
 //	/**
 //	 * For something like the bicycle scoring, we need to know individual links at the level of the scoring function.  This is a first sketch how this could be implemented.
@@ -107,9 +121,24 @@ import static org.matsim.core.router.TripStructureUtils.Trip;
 	@Inject(optional = true)
 	private TripRouter tripRouter;
 
-	@Inject
+	private final int numberOfShards;
+	private Shard[] shards = null;
+
 	ScoringFunctionsForPopulation( ControlerListenerManager controlerListenerManager, EventsManager eventsManager, EventsToActivities eventsToActivities, EventsToLegs eventsToLegs,
 						 Population population, ScoringFunctionFactory scoringFunctionFactory) {
+		this(controlerListenerManager, eventsManager, eventsToActivities, eventsToLegs, population, scoringFunctionFactory, 0);
+	}
+
+	@Inject
+	ScoringFunctionsForPopulation( ControlerListenerManager controlerListenerManager, EventsManager eventsManager, EventsToActivities eventsToActivities, EventsToLegs eventsToLegs,
+						 Population population, ScoringFunctionFactory scoringFunctionFactory, PlanCalcScoreConfigGroup planCalcScoreConfigGroup) {
+		this(controlerListenerManager, eventsManager, eventsToActivities, eventsToLegs, population, scoringFunctionFactory,
+				planCalcScoreConfigGroup.getNumberOfScoringThreads());
+	}
+
+	ScoringFunctionsForPopulation( ControlerListenerManager controlerListenerManager, EventsManager eventsManager, EventsToActivities eventsToActivities, EventsToLegs eventsToLegs,
+						 Population population, ScoringFunctionFactory scoringFunctionFactory, int numberOfShards) {
+		this.numberOfShards = numberOfShards;
 		controlerListenerManager.addControlerListener(new IterationStartsListener() {
 			@Override
 			public void notifyIterationStarts(IterationStartsEvent event) {
@@ -133,6 +162,15 @@ import static org.matsim.core.router.TripStructureUtils.Trip;
 			this.partialScores.put(person.getId(), new TDoubleArrayList());
 			this.tripRecords.put(person.getId(), PopulationUtils.createPlan());
 		}
+		if (this.numberOfShards > 0) {
+			// initialize it here, so the shards do not race for it
+			getStageActivities();
+			shutdownShards();
+			this.shards = new Shard[this.numberOfShards];
+			for (int i = 0; i < this.numberOfShards; i++) {
+				this.shards[i] = new Shard(i);
+			}
+		}
 	}
 
 	private StageActivityTypes getStageActivities() {
@@ -164,20 +202,7 @@ import static org.matsim.core.router.TripStructureUtils.Trip;
 		// link enter/leave events are NOT passed on, for performance reasons.
 		// kai/dominik, dec'12
 		if (o instanceof HasPersonId) {
-			ScoringFunction scoringFunction = getScoringFunctionForAgent(((HasPersonId) o).getPersonId());
-			if (scoringFunction != null) {
-				if (o instanceof PersonStuckEvent) {
-					scoringFunction.agentStuck(o.getTime());
-				} else if (o instanceof PersonMoneyEvent) {
-					scoringFunction.addMoney(((PersonMoneyEvent) o).getAmount());
-					// yy looking at this, I am a bit skeptic if it truly makes sense to not pass this additionally into the general events handling function below.
-					// A use case might be different utilities of money by money transaction type (e.g. toll, fare, reimbursement, ...).  kai, mar'17
-				} 
-//				else {
-					scoringFunction.handleEvent(o);
-					// passing this on in any case, see comment above.  kai, mar'17
-//				}
-			}
+			dispatch(((HasPersonId) o).getPersonId(), o);
 		}
 //		if ( passLinkEventsToPerson ) {
 			// Establish and end connection between driver and vehicle
@@ -191,11 +216,7 @@ import static org.matsim.core.router.TripStructureUtils.Trip;
 			if ( o instanceof LinkEnterEvent ) {
 				Id<Vehicle> vehicleId = ((LinkEnterEvent)o).getVehicleId() ;
 				Id<Person> driverId = this.vehicles2Drivers.getDriverOfVehicle(vehicleId) ;
-				ScoringFunction scoringFunction = getScoringFunctionForAgent( driverId );
-				// (this will NOT do the scoring function lookup twice since LinkEnterEvent is not an instance of HasPersonId.  kai, mar'17)
-				if (scoringFunction != null) {
-					scoringFunction.handleEvent(o) ;
-				}
+				dispatch( driverId, o );
 			}
 			/*
 			 * (This shouldn't really be more expensive than passing the link events to the router: here, we have a map lookup
@@ -209,6 +230,59 @@ import static org.matsim.core.router.TripStructureUtils.Trip;
 
 	@Override
 	synchronized public void handleLeg(PersonExperiencedLeg o) {
+		dispatch(o.getAgentId(), o);
+	}
+
+	@Override
+	synchronized public void handleActivity(PersonExperiencedActivity o) {
+		dispatch(o.getAgentId(), o);
+	}
+
+	/**
+	 * Passes an event, leg or activity of the given person on to the scoring, either directly or through the shard of the person.
+	 */
+	private void dispatch(final Id<Person> personId, final Object item) {
+		if (this.shards == null) {
+			score(personId, item);
+		} else if (personId != null) {
+			this.shards[personId.index() % this.shards.length].add(personId, item);
+		}
+	}
+
+	private void score(final Id<Person> personId, final Object item) {
+		if (item instanceof PersonExperiencedLeg) {
+			scoreLeg((PersonExperiencedLeg) item);
+		} else if (item instanceof PersonExperiencedActivity) {
+			scoreActivity((PersonExperiencedActivity) item);
+		} else if (item instanceof LinkEnterEvent) {
+			ScoringFunction scoringFunction = getScoringFunctionForAgent( personId );
+			// (this will NOT do the scoring function lookup twice since LinkEnterEvent is not an instance of HasPersonId.  kai, mar'17)
+			if (scoringFunction != null) {
+				scoringFunction.handleEvent((LinkEnterEvent) item) ;
+			}
+		} else {
+			scoreEvent(personId, (Event) item);
+		}
+	}
+
+	private void scoreEvent(final Id<Person> personId, final Event o) {
+		ScoringFunction scoringFunction = getScoringFunctionForAgent(personId);
+		if (scoringFunction != null) {
+			if (o instanceof PersonStuckEvent) {
+				scoringFunction.agentStuck(o.getTime());
+			} else if (o instanceof PersonMoneyEvent) {
+				scoringFunction.addMoney(((PersonMoneyEvent) o).getAmount());
+				// yy looking at this, I am a bit skeptic if it truly makes sense to not pass this additionally into the general events handling function below.
+				// A use case might be different utilities of money by money transaction type (e.g. toll, fare, reimbursement, ...).  kai, mar'17
+			} 
+//			else {
+				scoringFunction.handleEvent(o);
+				// passing this on in any case, see comment above.  kai, mar'17
+//			}
+		}
+	}
+
+	private void scoreLeg(PersonExperiencedLeg o) {
 		Id<Person> agentId = o.getAgentId();
 		Leg leg = o.getLeg();
 		ScoringFunction scoringFunction = ScoringFunctionsForPopulation.this.getScoringFunctionForAgent(agentId);
@@ -223,8 +297,7 @@ import static org.matsim.core.router.TripStructureUtils.Trip;
 		}
 	}
 
-	@Override
-	synchronized public void handleActivity(PersonExperiencedActivity o) {
+	private void scoreActivity(PersonExperiencedActivity o) {
 		Id<Person> agentId = o.getAgentId();
 		Activity activity = o.getActivity();
 		ScoringFunction scoringFunction = ScoringFunctionsForPopulation.this.getScoringFunctionForAgent(agentId);
@@ -281,6 +354,12 @@ import static org.matsim.core.router.TripStructureUtils.Trip;
 	}
 
 	public void finishScoringFunctions() {
+		if (this.shards != null) {
+			for (Shard shard : this.shards) {
+				shard.flush();
+			}
+			shutdownShards();
+		}
 		// Rethrow an exception in a scoring function (user code) if there was one.
 		Throwable throwable = this.exception.get();
 		if (throwable != null) {
@@ -300,9 +379,13 @@ import static org.matsim.core.router.TripStructureUtils.Trip;
 
 	public void writePartialScores(String iterationFilename) {
 		try ( BufferedWriter out = IOUtils.getBufferedWriter(iterationFilename) ) {
-			for (Entry<Id<Person>, TDoubleCollection> entry : this.partialScores.entrySet()) {
-				out.write(entry.getKey().toString());
-				TDoubleIterator iterator = entry.getValue().iterator();
+			for (Id<Person> personId : this.population.getPersons().keySet()) {
+				TDoubleCollection partialScoresForAgent = this.partialScores.get(personId);
+				if (partialScoresForAgent == null) {
+					continue;
+				}
+				out.write(personId.toString());
+				TDoubleIterator iterator = partialScoresForAgent.iterator();
 				while (iterator.hasNext()) {
 					out.write('\t' + String.valueOf(iterator.next()));
 				}
@@ -313,11 +396,83 @@ import static org.matsim.core.router.TripStructureUtils.Trip;
 		}
 	}
 
+	private void shutdownShards() {
+		if (this.shards == null) {
+			return;
+		}
+		for (Shard shard : this.shards) {
+			shard.executor.shutdown();
+		}
+		try {
+			for (Shard shard : this.shards) {
+				while (!shard.executor.awaitTermination(1, TimeUnit.MINUTES)) {
+					log.info("waiting for scoring shard " + shard.index + " to finish...");
+				}
+			}
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		}
+		this.shards = null;
+	}
+
 	@Override
 	public void reset(int iteration) {
 
 	}
 
+	/**
+	 * The events, legs and activities of the persons of one shard.  They are collected on the events thread and
+	 * scored in batches on the thread of the shard, which keeps the order of the items.
+	 */
+	private final class Shard {
+		private static final int BATCH_SIZE = 1024;
+
+		private final int index;
+		private final ExecutorService executor;
+		private List<Id<Person>> personIds = new ArrayList<>(BATCH_SIZE);
+		private List<Object> items = new ArrayList<>(BATCH_SIZE);
+
+		Shard(final int index) {
+			this.index = index;
+			this.executor = Executors.newSingleThreadExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "scoring-" + index);
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+
+		void add(final Id<Person> personId, final Object item) {
+			this.personIds.add(personId);
+			this.items.add(item);
+			if (this.items.size() == BATCH_SIZE) {
+				flush();
+			}
+		}
+
+		void flush() {
+			if (this.items.isEmpty()) {
+				return;
+			}
+			final List<Id<Person>> batchPersonIds = this.personIds;
+			final List<Object> batchItems = this.items;
+			this.personIds = new ArrayList<>(BATCH_SIZE);
+			this.items = new ArrayList<>(BATCH_SIZE);
+			this.executor.execute(() -> {
+				if (ScoringFunctionsForPopulation.this.exception.get() != null) {
+					return;
+				}
+				try {
+					for (int i = 0; i < batchItems.size(); i++) {
+						score(batchPersonIds.get(i), batchItems.get(i));
+					}
+				} catch (Throwable e) {
+					log.error("scoring shard " + this.index + " failed", e);
+					ScoringFunctionsForPopulation.this.exception.compareAndSet(null, e);
+				}
+			});
+		}
+	}
+
 //	public boolean isPassLinkEventsToPerson() {
 //		return passLinkEventsToPerson;
 //	}
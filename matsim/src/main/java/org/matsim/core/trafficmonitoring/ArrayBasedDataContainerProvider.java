@@ -25,7 +25,7 @@ import org.matsim.api.core.v01.network.Link;
 import org.matsim.api.core.v01.network.Network;
 import org.matsim.core.router.priorityqueue.HasIndex;
 
-import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  *  Uses an array to store DataContainer object for the TravelTimeCalculator.
@@ -43,7 +43,7 @@ class ArrayBasedDataContainerProvider implements DataContainerProvider {
 	private final TravelTimeData[] arrayLinkData;
 	private final DataContainerProvider delegate;
 	
-	public ArrayBasedDataContainerProvider(Map<Id<Link>, TravelTimeData> linkData, TravelTimeDataFactory ttDataFactory,
+	public ArrayBasedDataContainerProvider(ConcurrentMap<Id<Link>, TravelTimeData> linkData, TravelTimeDataFactory ttDataFactory,
 			Network network) {
 		this.arrayLinkData = new TravelTimeData[network.getLinks().size()];
 		this.delegate = new MapBasedDataContainerProvider(linkData, ttDataFactory);
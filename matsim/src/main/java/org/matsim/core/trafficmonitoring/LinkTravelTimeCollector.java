@@ -0,0 +1,130 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.trafficmonitoring;
+
+import java.util.Collection;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.core.mobsim.framework.events.MobsimBeforeCleanupEvent;
+import org.matsim.core.mobsim.framework.events.MobsimInitializedEvent;
+import org.matsim.core.mobsim.framework.listeners.MobsimBeforeCleanupListener;
+import org.matsim.core.mobsim.framework.listeners.MobsimInitializedListener;
+
+/**
+ * Collects the link travel times for one or more {@link TravelTimeCalculator}s directly in the qsim, which calls
+ * {@link #addLinkTravelTime(Id, double, double, String)} whenever a vehicle leaves a link it has entered from upstream.
+ * This replaces the link enter and leave event handling of the calculators, which needs a map lookup for every event.
+ * <br>
+ * The travel times are summed up in plain arrays per link and time slot during the mobsim, and are passed to the
+ * calculators before the mobsim is cleaned up. As a link is only left over its to-node, the sums of a link are only
+ * written by the thread that moves this node, so no synchronization is needed. Since the travel times of every link and
+ * time slot are added in the same order as from the events, the resulting travel times are the same as with the events.
+ * <br>
+ * The collected travel times are only visible after the mobsim, so this cannot be used by within-day replanning that
+ * routes on the travel times of the current iteration.
+ */
+public final class LinkTravelTimeCollector implements MobsimInitializedListener, MobsimBeforeCleanupListener {
+
+	private final Accumulator[] accumulators;
+
+	public LinkTravelTimeCollector(final Collection<TravelTimeCalculator> calculators) {
+		this.accumulators = new Accumulator[calculators.size()];
+		int i = 0;
+		for (TravelTimeCalculator calculator : calculators) {
+			calculator.setLinkTravelTimesFromMobsim(true);
+			this.accumulators[i++] = new Accumulator(calculator);
+		}
+	}
+
+	/**
+	 * Adds the travel time of a vehicle that entered the link at <code>enterTime</code> and left it at
+	 * <code>leaveTime</code>. Must only be called by the thread that moves the to-node of the link.
+	 */
+	public void addLinkTravelTime(final Id<Link> linkId, final double enterTime, final double leaveTime, final String mode) {
+		int index = linkId.index();
+		for (Accumulator accumulator : this.accumulators) {
+			if (accumulator.calculator.isAnalyzedMode(mode)) {
+				accumulator.add(index, enterTime, leaveTime - enterTime);
+			}
+		}
+	}
+
+	@Override
+	public void notifyMobsimInitialized(final MobsimInitializedEvent e) {
+		int numberOfLinks = Id.getNumberOfIds(Link.class);
+		for (Accumulator accumulator : this.accumulators) {
+			accumulator.sums = new double[numberOfLinks][];
+			accumulator.counts = new int[numberOfLinks][];
+		}
+	}
+
+	@Override
+	public void notifyMobsimBeforeCleanup(final MobsimBeforeCleanupEvent e) {
+		for (Accumulator accumulator : this.accumulators) {
+			accumulator.passToCalculator();
+		}
+	}
+
+	private static final class Accumulator {
+		private final TravelTimeCalculator calculator;
+		private final int numberOfTimeSlots;
+		private double[][] sums = new double[0][];
+		private int[][] counts = new int[0][];
+
+		Accumulator(final TravelTimeCalculator calculator) {
+			this.calculator = calculator;
+			this.numberOfTimeSlots = calculator.getNumberOfTimeSlots();
+		}
+
+		void add(final int linkIndex, final double enterTime, final double travelTime) {
+			double[] linkSums = this.sums[linkIndex];
+			int[] linkCounts = this.counts[linkIndex];
+			if (linkSums == null) {
+				linkSums = new double[this.numberOfTimeSlots];
+				linkCounts = new int[this.numberOfTimeSlots];
+				this.sums[linkIndex] = linkSums;
+				this.counts[linkIndex] = linkCounts;
+			}
+			int timeSlot = this.calculator.getTimeSlotIndex(enterTime);
+			linkSums[timeSlot] += travelTime;
+			linkCounts[timeSlot]++;
+		}
+
+		void passToCalculator() {
+			for (int linkIndex = 0; linkIndex < this.sums.length; linkIndex++) {
+				double[] linkSums = this.sums[linkIndex];
+				if (linkSums == null) {
+					continue;
+				}
+				int[] linkCounts = this.counts[linkIndex];
+				Id<Link> linkId = Id.get(linkIndex, Link.class);
+				for (int timeSlot = 0; timeSlot < this.numberOfTimeSlots; timeSlot++) {
+					if (linkCounts[timeSlot] > 0) {
+						this.calculator.addLinkTravelTimes(linkId, timeSlot, linkSums[timeSlot], linkCounts[timeSlot]);
+					}
+				}
+			}
+			this.sums = new double[0][];
+			this.counts = new int[0][];
+		}
+	}
+
+}
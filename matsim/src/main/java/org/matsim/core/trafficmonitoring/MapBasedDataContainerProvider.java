@@ -23,14 +23,14 @@ package org.matsim.core.trafficmonitoring;
 import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.network.Link;
 
-import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
 
 class MapBasedDataContainerProvider implements DataContainerProvider {
 
-	private final Map<Id<Link>, TravelTimeData> linkData;
+	private final ConcurrentMap<Id<Link>, TravelTimeData> linkData;
 	private final TravelTimeDataFactory ttDataFactory;
 	
-	public MapBasedDataContainerProvider(Map<Id<Link>, TravelTimeData> linkData, TravelTimeDataFactory ttDataFactory) {
+	public MapBasedDataContainerProvider(ConcurrentMap<Id<Link>, TravelTimeData> linkData, TravelTimeDataFactory ttDataFactory) {
 		this.linkData = linkData;
 		this.ttDataFactory = ttDataFactory;
 	}
@@ -39,8 +39,8 @@ class MapBasedDataContainerProvider implements DataContainerProvider {
 	public TravelTimeData getTravelTimeData(final Id<Link> linkId, final boolean createIfMissing) {
 		TravelTimeData data = this.linkData.get(linkId);
 		if ((null == data) && createIfMissing) {
-			data = this.ttDataFactory.createTravelTimeData(linkId) ;
-			this.linkData.put(linkId, data);
+			// the map is also written from the routing threads, so only one of them may create the entry
+			data = this.linkData.computeIfAbsent(linkId, this.ttDataFactory::createTravelTimeData);
 		}
 		return data;
 	}
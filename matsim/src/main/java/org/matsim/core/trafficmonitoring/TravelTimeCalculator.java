@@ -21,6 +21,7 @@ package org.matsim.core.trafficmonitoring;
 
 import com.google.inject.Inject;
 import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.ConcurrentIdMap;
 import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.events.*;
 import org.matsim.api.core.v01.events.handler.*;
@@ -32,6 +33,7 @@ import org.matsim.core.api.experimental.events.VehicleArrivesAtFacilityEvent;
 import org.matsim.core.api.experimental.events.handler.VehicleArrivesAtFacilityEventHandler;
 import org.matsim.core.config.groups.QSimConfigGroup;
 import org.matsim.core.config.groups.TravelTimeCalculatorConfigGroup;
+import org.matsim.core.config.groups.TravelTimeCalculatorConfigGroup.TravelTimeSnapshotType;
 import org.matsim.core.gbl.Gbl;
 import org.matsim.core.router.util.LinkToLinkTravelTime;
 import org.matsim.core.router.util.TravelTime;
@@ -40,10 +42,14 @@ import org.matsim.core.utils.collections.Tuple;
 import org.matsim.vehicles.Vehicle;
 import org.matsim.vehicles.VehicleType;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Calculates actual travel times on link from events and optionally also the link-to-link 
@@ -56,6 +62,13 @@ import java.util.concurrent.ConcurrentHashMap;
  * use {@link TravelTimeDataHashMap},}
  * as that one does not use any memory to time bins where no traffic occurred. By default,
  * {@link TravelTimeDataArray} is used.
+ * <br>
+ * After the mobsim, the link travel times can be frozen into a read-only {@link TravelTimeSnapshot} with
+ * {@link #freezeLinkTravelTimes(TravelTimeSnapshotType)}, which is then used by {@link #getLinkTravelTimes()} until the
+ * next {@link #reset(int)}.
+ * <br>
+ * If the link travel times are collected by the mobsim, see {@link LinkTravelTimeCollector}, link enter and leave events are
+ * only used for the link-to-link travel times.
  *
  * @author dgrether
  * @author mrieser
@@ -73,7 +86,7 @@ public final class TravelTimeCalculator implements LinkEnterEventHandler, LinkLe
 	TimeSlotComputation aggregator;
 
 
-	private Map<Id<Link>, TravelTimeData> linkData;
+	private ConcurrentMap<Id<Link>, TravelTimeData> linkData;
 
 	private Map<Tuple<Id<Link>, Id<Link>>, TravelTimeData> linkToLinkData;
 
@@ -95,6 +108,10 @@ public final class TravelTimeCalculator implements LinkEnterEventHandler, LinkLe
 	@Inject private QSimConfigGroup qsimConfig ;
 	TravelTimeGetter travelTimeGetter ;
 
+	private volatile TravelTimeSnapshot snapshot = null;
+
+	private boolean linkTravelTimesFromMobsim = false;
+
 	@Deprecated // user builder instead.  kai, feb'19
 	public static TravelTimeCalculator create(Network network, TravelTimeCalculatorConfigGroup group) {
 		TravelTimeCalculator calculator = new TravelTimeCalculator(network, group);
@@ -232,7 +249,9 @@ public final class TravelTimeCalculator implements LinkEnterEventHandler, LinkLe
 		this.travelTimeGetter = new AveragingTravelTimeGetter( this.aggregator ) ;
 		this.ttDataFactory = new TravelTimeDataArrayFactory(network, this.numSlots);
 		if (this.calculateLinkTravelTimes){
-			this.linkData = new ConcurrentHashMap<>((int) (network.getLinks().size() * 1.4));
+			// entries are created from the event handling and the routing threads, so the map must be thread-safe;
+			// it is looked up for every link event, so it is indexed by the link id index instead of hashed
+			this.linkData = new ConcurrentIdMap<>(Link.class);
 
 			/*
 			 * So far, link data objects were stored in a HashMap. This lookup strategy is used
@@ -251,7 +270,8 @@ public final class TravelTimeCalculator implements LinkEnterEventHandler, LinkLe
 			// assume that every link has 2 outgoing links as default
 			this.linkToLinkData = new ConcurrentHashMap<>((int) (network.getLinks().size() * 1.4 * 2));
 		}
-		this.linkEnterEvents = new ConcurrentHashMap<>();
+		// updated for every link event, so indexed by the vehicle id index as well
+		this.linkEnterEvents = new ConcurrentIdMap<>(Vehicle.class);
 
 		// if we just look at one mode, we need to ignore all vehicles with a different mode. However, the info re the mode is only in
 		// the vehicleEntersTraffic event.  So we need to memorize the ignored vehicles from there ...
@@ -264,6 +284,8 @@ public final class TravelTimeCalculator implements LinkEnterEventHandler, LinkLe
 
 	@Override
 	public void handleEvent(final LinkEnterEvent e) {
+		if (this.linkTravelTimesFromMobsim && !this.calculateLinkToLinkTravelTimes) return;
+
 		/* if only some modes are analyzed, we check whether the vehicles
 		 * performs a trip with one of those modes. if not, we skip the event. */
 		if (filterAnalyzedModes && vehiclesToIgnore.contains(e.getVehicleId())) return;
@@ -283,7 +305,7 @@ public final class TravelTimeCalculator implements LinkEnterEventHandler, LinkLe
 
 	@Override
 	public void handleEvent(final LinkLeaveEvent e) {
-		if (this.calculateLinkTravelTimes) {
+		if (this.calculateLinkTravelTimes && !this.linkTravelTimesFromMobsim) {
 			LinkEnterEvent oldEvent = this.linkEnterEvents.get(e.getVehicleId());
 			if (oldEvent != null) {
 				TravelTimeData data = this.dataContainerProvider.getTravelTimeData(e.getLinkId(), true);
@@ -357,6 +379,39 @@ public final class TravelTimeCalculator implements LinkEnterEventHandler, LinkLe
 		return data;
 	}
 
+	/**
+	 * Makes this calculator ignore link leave events, since the link travel times are passed to it by a
+	 * {@link LinkTravelTimeCollector} instead.
+	 */
+	void setLinkTravelTimesFromMobsim(final boolean linkTravelTimesFromMobsim) {
+		if (linkTravelTimesFromMobsim && !this.calculateLinkTravelTimes) {
+			throw new IllegalStateException("No link travel time is available " +
+									    "if calculation is switched off by config option!");
+		}
+		this.linkTravelTimesFromMobsim = linkTravelTimesFromMobsim;
+	}
+
+	boolean isAnalyzedMode(final String mode) {
+		return !this.filterAnalyzedModes || this.analyzedModes.contains(mode);
+	}
+
+	int getNumberOfTimeSlots() {
+		return this.numSlots;
+	}
+
+	int getTimeSlotIndex(final double time) {
+		return this.aggregator.getTimeSlotIndex(time);
+	}
+
+	/**
+	 * Adds <code>count</code> link travel times with the given sum to the time slot in which the vehicles entered the link.
+	 */
+	void addLinkTravelTimes(final Id<Link> linkId, final int timeSlot, final double traveltimeSum, final int count) {
+		TravelTimeData data = this.dataContainerProvider.getTravelTimeData(linkId, true);
+		data.addTravelTimes(timeSlot, traveltimeSum, count);
+		data.setNeedsConsolidation( true );
+	}
+
 	/*
 	 * Use the link as argument here! In case the DataContainer is array-based and the link is from a routing network,
 	 * the DataContainer uses the link's index to access its data structures instead of performing a map lookup, which
@@ -434,6 +489,133 @@ public final class TravelTimeCalculator implements LinkEnterEventHandler, LinkLe
 		}
 		this.linkEnterEvents.clear();
 		this.vehiclesToIgnore.clear();
+		this.snapshot = null;
+	}
+
+	/**
+	 * Consolidates the link travel times collected so far and copies them into a read-only float matrix, which answers all
+	 * requests to {@link #getLinkTravelTimes()} until the next {@link #reset(int)}. Requests then need no map lookup and no
+	 * synchronization, which pays off when many replanning threads route on the same travel times.  The snapshot replaces
+	 * the travel times cached per time bin in the live data, which are released while it is taken; only the sums and counts
+	 * needed to go on collecting are kept.
+	 * <br>
+	 * Events handled after freezing are collected, but not visible through {@link #getLinkTravelTimes()} before the next
+	 * reset.
+	 */
+	public void freezeLinkTravelTimes(final TravelTimeSnapshotType type) {
+		if (!this.calculateLinkTravelTimes) {
+			throw new IllegalStateException("No link travel time is available " +
+									    "if calculation is switched off by config option!");
+		}
+		if (type == TravelTimeSnapshotType.none) {
+			this.snapshot = null;
+			return;
+		}
+		for (TravelTimeData data : this.linkData.values()) {
+			if (data.isNeedingConsolidation()) {
+				consolidateData(data);
+			}
+		}
+		boolean interpolate = this.travelTimeGetter instanceof LinearInterpolatingTravelTimeGetter;
+		this.snapshot = new TravelTimeSnapshot(this.linkData, this.numSlots, this.timeSlice, interpolate,
+				type == TravelTimeSnapshotType.memoryMapped);
+	}
+
+	/**
+	 * Writes the link travel times collected so far, so they can be restored with {@link #readState(DataInput)}, e.g. when a
+	 * run is resumed from a checkpoint. The raw sums and counts per time bin are written, so the restored travel times are
+	 * exactly the same.
+	 */
+	void writeState(final DataOutput out) throws IOException {
+		out.writeInt(this.numSlots);
+		out.writeInt(this.timeSlice);
+		out.writeBoolean(this.calculateLinkTravelTimes);
+		if (this.calculateLinkTravelTimes) {
+			out.writeInt(this.linkData.size());
+			for (Map.Entry<Id<Link>, TravelTimeData> e : this.linkData.entrySet()) {
+				out.writeUTF(e.getKey().toString());
+				writeData(e.getValue(), out);
+			}
+		}
+		out.writeBoolean(this.calculateLinkToLinkTravelTimes);
+		if (this.calculateLinkToLinkTravelTimes) {
+			out.writeInt(this.linkToLinkData.size());
+			for (Map.Entry<Tuple<Id<Link>, Id<Link>>, TravelTimeData> e : this.linkToLinkData.entrySet()) {
+				out.writeUTF(e.getKey().getFirst().toString());
+				out.writeUTF(e.getKey().getSecond().toString());
+				writeData(e.getValue(), out);
+			}
+		}
+	}
+
+	private void writeData(final TravelTimeData data, final DataOutput out) throws IOException {
+		int nonEmptySlots = 0;
+		for (int i = 0; i < this.numSlots; i++) {
+			if (data.getTravelTimeCount(i) > 0) {
+				nonEmptySlots++;
+			}
+		}
+		out.writeInt(nonEmptySlots);
+		for (int i = 0; i < this.numSlots; i++) {
+			int count = data.getTravelTimeCount(i);
+			if (count > 0) {
+				out.writeInt(i);
+				out.writeDouble(data.getTravelTimeSum(i));
+				out.writeInt(count);
+			}
+		}
+	}
+
+	/**
+	 * Replaces the travel times collected so far by the ones written with {@link #writeState(DataOutput)}. The calculator
+	 * must have the same time bins and calculate the same kinds of travel times as the one that wrote them. A snapshot of
+	 * the travel times is discarded, see {@link #freezeLinkTravelTimes(TravelTimeSnapshotType)}.
+	 */
+	void readState(final DataInput in) throws IOException {
+		int numSlots = in.readInt();
+		int timeSlice = in.readInt();
+		if (numSlots != this.numSlots || timeSlice != this.timeSlice) {
+			throw new IllegalStateException("cannot restore travel times with " + numSlots + " time bins of " + timeSlice
+					+ " seconds into a calculator with " + this.numSlots + " time bins of " + this.timeSlice + " seconds.");
+		}
+		reset(0);
+		boolean hasLinkTravelTimes = in.readBoolean();
+		if (hasLinkTravelTimes != this.calculateLinkTravelTimes) {
+			throw new IllegalStateException("cannot restore travel times if the calculation of link travel times is switched "
+					+ (this.calculateLinkTravelTimes ? "off" : "on") + " in the state, but not in this calculator.");
+		}
+		if (hasLinkTravelTimes) {
+			int size = in.readInt();
+			for (int i = 0; i < size; i++) {
+				Id<Link> linkId = Id.createLinkId(in.readUTF());
+				readData(this.dataContainerProvider.getTravelTimeData(linkId, true), in);
+			}
+		}
+		boolean hasLinkToLinkTravelTimes = in.readBoolean();
+		if (hasLinkToLinkTravelTimes != this.calculateLinkToLinkTravelTimes) {
+			throw new IllegalStateException("cannot restore travel times if the calculation of link to link travel times is "
+					+ "switched " + (this.calculateLinkToLinkTravelTimes ? "off" : "on") + " in the state, but not in this calculator.");
+		}
+		if (hasLinkToLinkTravelTimes) {
+			int size = in.readInt();
+			for (int i = 0; i < size; i++) {
+				Id<Link> fromLinkId = Id.createLinkId(in.readUTF());
+				Id<Link> toLinkId = Id.createLinkId(in.readUTF());
+				readData(getLinkToLinkTravelTimeData(new Tuple<>(fromLinkId, toLinkId)), in);
+			}
+		}
+	}
+
+	private static void readData(final TravelTimeData data, final DataInput in) throws IOException {
+		data.resetTravelTimes();
+		int nonEmptySlots = in.readInt();
+		for (int i = 0; i < nonEmptySlots; i++) {
+			int timeSlot = in.readInt();
+			double sum = in.readDouble();
+			int count = in.readInt();
+			data.addTravelTimes(timeSlot, sum, count);
+		}
+		data.setNeedsConsolidation(true);
 	}
 
 	/**
@@ -532,7 +714,9 @@ public final class TravelTimeCalculator implements LinkEnterEventHandler, LinkLe
 						linkTtimeFromVehicle = link.getLength() / vehicleType.getMaximumVelocity();
 					}
 				}
-				double linkTTimeFromObservation = TravelTimeCalculator.this.getLinkTravelTime(link, time);
+				TravelTimeSnapshot frozen = TravelTimeCalculator.this.snapshot;
+				double linkTTimeFromObservation = frozen != null ? frozen.getLinkTravelTime(link, time) :
+						TravelTimeCalculator.this.getLinkTravelTime(link, time);
 				return Math.max( linkTtimeFromVehicle, linkTTimeFromObservation) ;
 			}
 
@@ -27,10 +27,16 @@ import com.google.inject.Key;
 import com.google.inject.Singleton;
 import com.google.inject.name.Names;
 
+import org.apache.log4j.Logger;
 import org.matsim.api.core.v01.network.Network;
 import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.config.groups.ControlerConfigGroup;
 import org.matsim.core.config.groups.TravelTimeCalculatorConfigGroup;
+import org.matsim.core.config.groups.TravelTimeCalculatorConfigGroup.TravelTimeSnapshotType;
 import org.matsim.core.controler.AbstractModule;
+import org.matsim.core.controler.Checkpointable;
+import org.matsim.core.controler.events.AfterMobsimEvent;
+import org.matsim.core.controler.listener.AfterMobsimListener;
 import org.matsim.core.router.util.LinkToLinkTravelTime;
 import org.matsim.core.router.util.TravelTime;
 import org.matsim.core.utils.collections.CollectionUtils;
@@ -38,6 +44,13 @@ import org.matsim.core.utils.collections.CollectionUtils;
 import javax.inject.Inject;
 import javax.inject.Provider;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
 
 /**
  * The first module.
@@ -47,6 +60,7 @@ import javax.inject.Provider;
  * @author michaz
  */
 public class TravelTimeCalculatorModule extends AbstractModule {
+	private static final Logger log = Logger.getLogger(TravelTimeCalculatorModule.class);
 
 	@Override
 	public void install() {
@@ -89,6 +103,134 @@ public class TravelTimeCalculatorModule extends AbstractModule {
 			}
 		}
 
+		// collect the link travel times in the qsim instead of from the events:
+		if (getConfig().travelTimeCalculator().isCollectLinkTravelTimesInMobsim() && getConfig().travelTimeCalculator().isCalculateLinkTravelTimes()) {
+			if (getConfig().controler().getMobsim().equals(ControlerConfigGroup.MobsimType.qsim.toString())) {
+				Collection<String> modes = getConfig().travelTimeCalculator().getSeparateModes() ? getConfig().plansCalcRoute().getNetworkModes() : null;
+				bind(LinkTravelTimeCollector.class).toProvider(new LinkTravelTimeCollectorProvider(modes)).in(Singleton.class);
+				addMobsimListenerBinding().to(LinkTravelTimeCollector.class);
+			} else {
+				log.warn("link travel times can only be collected by the qsim; they are computed from the events for mobsim "
+						+ getConfig().controler().getMobsim());
+			}
+		}
+
+		// freeze the observed travel times for replanning:
+		TravelTimeSnapshotType snapshotType = getConfig().travelTimeCalculator().getTravelTimeSnapshotType();
+		if (snapshotType != TravelTimeSnapshotType.none && getConfig().travelTimeCalculator().isCalculateLinkTravelTimes()) {
+			Collection<String> modes = getConfig().travelTimeCalculator().getSeparateModes() ? getConfig().plansCalcRoute().getNetworkModes() : null;
+			addControlerListenerBinding().toInstance(new FreezeLinkTravelTimes(snapshotType, modes));
+		}
+
+		// keep the observed travel times in checkpoints, since the replanning after a resume needs them:
+		if (getConfig().travelTimeCalculator().isCalculateLinkTravelTimes() || getConfig().travelTimeCalculator().isCalculateLinkToLinkTravelTimes()) {
+			Collection<String> modes = getConfig().travelTimeCalculator().getSeparateModes() ? getConfig().plansCalcRoute().getNetworkModes() : null;
+			TravelTimeSnapshotType frozenType = getConfig().travelTimeCalculator().isCalculateLinkTravelTimes() ? snapshotType : TravelTimeSnapshotType.none;
+			addCheckpointableBinding().toInstance(new TravelTimesCheckpoint(frozenType, modes));
+		}
+
+	}
+
+	private static class TravelTimesCheckpoint implements Checkpointable {
+
+		@Inject Injector injector;
+
+		private final TravelTimeSnapshotType type;
+		private final Collection<String> modes;
+
+		TravelTimesCheckpoint(TravelTimeSnapshotType type, Collection<String> modes) {
+			this.type = type;
+			this.modes = modes;
+		}
+
+		@Override
+		public String getCheckpointName() {
+			return "travelTimes";
+		}
+
+		@Override
+		public void writeCheckpoint(DataOutput out) throws IOException {
+			if (modes == null) {
+				out.writeInt(1);
+				out.writeUTF("");
+				injector.getInstance(TravelTimeCalculator.class).writeState(out);
+			} else {
+				out.writeInt(modes.size());
+				for (String mode : modes) {
+					out.writeUTF(mode);
+					injector.getInstance(Key.get(TravelTimeCalculator.class, Names.named(mode))).writeState(out);
+				}
+			}
+		}
+
+		@Override
+		public void readCheckpoint(DataInput in) throws IOException {
+			int nOfCalculators = in.readInt();
+			for (int i = 0; i < nOfCalculators; i++) {
+				String mode = in.readUTF();
+				TravelTimeCalculator calculator;
+				if (modes == null && mode.isEmpty()) {
+					calculator = injector.getInstance(TravelTimeCalculator.class);
+				} else if (modes != null && modes.contains(mode)) {
+					calculator = injector.getInstance(Key.get(TravelTimeCalculator.class, Names.named(mode)));
+				} else {
+					throw new IllegalStateException("the checkpoint contains travel times " + (mode.isEmpty() ? "of all modes" : "of mode " + mode)
+							+ ", but they are not measured like this in this run. Check travelTimeCalculator.separateModes.");
+				}
+				calculator.readState(in);
+				if (type != TravelTimeSnapshotType.none) {
+					calculator.freezeLinkTravelTimes(type);
+				}
+			}
+		}
+	}
+
+	private static class FreezeLinkTravelTimes implements AfterMobsimListener {
+
+		@Inject Injector injector;
+
+		private final TravelTimeSnapshotType type;
+		private final Collection<String> modes;
+
+		FreezeLinkTravelTimes(TravelTimeSnapshotType type, Collection<String> modes) {
+			this.type = type;
+			this.modes = modes;
+		}
+
+		@Override
+		public void notifyAfterMobsim(AfterMobsimEvent event) {
+			if (modes == null) {
+				injector.getInstance(TravelTimeCalculator.class).freezeLinkTravelTimes(type);
+			} else {
+				for (String mode : modes) {
+					injector.getInstance(Key.get(TravelTimeCalculator.class, Names.named(mode))).freezeLinkTravelTimes(type);
+				}
+			}
+		}
+	}
+
+	private static class LinkTravelTimeCollectorProvider implements Provider<LinkTravelTimeCollector> {
+
+		@Inject Injector injector;
+
+		private final Collection<String> modes;
+
+		LinkTravelTimeCollectorProvider(Collection<String> modes) {
+			this.modes = modes;
+		}
+
+		@Override
+		public LinkTravelTimeCollector get() {
+			List<TravelTimeCalculator> calculators = new ArrayList<>();
+			if (modes == null) {
+				calculators.add(injector.getInstance(TravelTimeCalculator.class));
+			} else {
+				for (String mode : modes) {
+					calculators.add(injector.getInstance(Key.get(TravelTimeCalculator.class, Names.named(mode))));
+				}
+			}
+			return new LinkTravelTimeCollector(calculators);
+		}
 	}
 
 	private static class SingleModeTravelTimeCalculatorProvider implements Provider<TravelTimeCalculator> {
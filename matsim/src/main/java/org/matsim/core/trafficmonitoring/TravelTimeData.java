@@ -34,6 +34,11 @@ abstract class TravelTimeData {
 //	public abstract void resetTravelTime( final int timeSlot ) ;
 
 	abstract void addTravelTime(final int timeSlot, final double traveltime);
+
+	/**
+	 * Adds <code>count</code> travel times at once, the sum of which is <code>traveltimeSum</code>.
+	 */
+	abstract void addTravelTimes(final int timeSlot, final double traveltimeSum, final int count);
 	
 	/**
 	 * A method to set the travel time directly, to handle some special cases.
@@ -59,6 +64,32 @@ abstract class TravelTimeData {
 	 */
 	abstract double getTravelTime(final int timeSlot, final double now);
 
+	/**
+	 * Returns the travel time of the time slot as it is frozen into a {@link TravelTimeSnapshot}, or NaN if it depends on the
+	 * time-of-day within the time slot and thus has to be computed when it is requested.
+	 */
+	double getTravelTimeForSnapshot(final int timeSlot, final double timeSlotStart) {
+		return getTravelTime(timeSlot, timeSlotStart);
+	}
+
+	/**
+	 * Drops the travel times cached for {@link #getTravelTime(int, double)}, once they are frozen into a
+	 * {@link TravelTimeSnapshot}, which answers the lookups instead.  The sums and counts are kept, and the cache is
+	 * rebuilt if the live travel times are requested again.
+	 */
+	void releaseTravelTimeCache() {
+	}
+
+	/**
+	 * @return the sum of the travel times added to the time slot, see {@link #getTravelTimeCount(int)}
+	 */
+	abstract double getTravelTimeSum(final int timeSlot);
+
+	/**
+	 * @return the number of travel times added to the time slot, 0 if the time slot is empty
+	 */
+	abstract int getTravelTimeCount(final int timeSlot);
+
 	void setNeedsConsolidation( boolean flag ) {
 		this.needsConsolidation = flag ;
 	}
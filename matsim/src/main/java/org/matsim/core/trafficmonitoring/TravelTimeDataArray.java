@@ -20,6 +20,8 @@
 
 package org.matsim.core.trafficmonitoring;
 
+import java.util.Arrays;
+
 import org.apache.log4j.Logger;
 import org.matsim.api.core.v01.network.Link;
 
@@ -35,7 +37,7 @@ class TravelTimeDataArray extends TravelTimeData {
 
 	private final double[] timeSum;
 	private final int[] timeCnt;
-	private final double[] travelTimes;
+	private double[] travelTimes;
 	private final Link link;
 
 	public TravelTimeDataArray(final Link link, final int numSlots) {
@@ -51,7 +53,31 @@ class TravelTimeDataArray extends TravelTimeData {
 		for (int i = 0; i < this.timeSum.length; i++) {
 			this.timeSum[i] = 0.0;
 			this.timeCnt[i] = 0;
-			this.travelTimes[i] = -1.0;
+		}
+		if (this.travelTimes != null) {
+			Arrays.fill(this.travelTimes, -1.0);
+		}
+	}
+
+	@Override
+	void releaseTravelTimeCache() {
+		this.travelTimes = null;
+	}
+
+	private double[] getTravelTimeCache() {
+		double[] travelTimes = this.travelTimes;
+		if (travelTimes == null) {
+			travelTimes = new double[this.timeSum.length];
+			Arrays.fill(travelTimes, -1.0);
+			this.travelTimes = travelTimes;
+		}
+		return travelTimes;
+	}
+
+	private void invalidateTravelTime(final int timeSlot) {
+		double[] travelTimes = this.travelTimes;
+		if (travelTimes != null) {
+			travelTimes[timeSlot] = -1.0; // initialize with negative value
 		}
 	}
 	
@@ -66,7 +92,7 @@ class TravelTimeDataArray extends TravelTimeData {
 	public void setTravelTime( final int timeSlot, final double traveltime ) {
 		this.timeSum[timeSlot] = traveltime ;
 		this.timeCnt[timeSlot] = 1 ;
-		this.travelTimes[timeSlot] = traveltime ; // since this is the only travel time, we do not need to trigger the cache consolidation.
+		getTravelTimeCache()[timeSlot] = traveltime ; // since this is the only travel time, we do not need to trigger the cache consolidation.
 		// if ever some other value is added, the cache is invalidated in addTravelTime. kai/theresa, may'15
 	}
 
@@ -78,23 +104,41 @@ class TravelTimeDataArray extends TravelTimeData {
 		cnt++;
 		this.timeSum[timeSlot] = sum;
 		this.timeCnt[timeSlot] = cnt;
-		this.travelTimes[timeSlot] = -1.0; // initialize with negative value
+		invalidateTravelTime(timeSlot);
+	}
+
+	@Override
+	void addTravelTimes(final int timeSlot, final double traveltimeSum, final int count) {
+		this.timeSum[timeSlot] += traveltimeSum;
+		this.timeCnt[timeSlot] += count;
+		invalidateTravelTime(timeSlot);
 	}
 
 	@Override
 	public double getTravelTime(final int timeSlot, final double now) {
-		double ttime = this.travelTimes[timeSlot];
+		double[] travelTimes = getTravelTimeCache();
+		double ttime = travelTimes[timeSlot];
 		if (ttime >= 0.0) return ttime; // negative values are invalid.
 
 		int cnt = this.timeCnt[timeSlot];
 		if (cnt == 0) {
-			this.travelTimes[timeSlot] = this.link.getLength() / this.link.getFreespeed(now);
-			return this.travelTimes[timeSlot];
+			travelTimes[timeSlot] = this.link.getLength() / this.link.getFreespeed(now);
+			return travelTimes[timeSlot];
 		}
 
 		double sum = this.timeSum[timeSlot];
-		this.travelTimes[timeSlot] = sum / cnt;
-		return this.travelTimes[timeSlot];
+		travelTimes[timeSlot] = sum / cnt;
+		return travelTimes[timeSlot];
+	}
+
+	@Override
+	double getTravelTimeSum(final int timeSlot) {
+		return this.timeSum[timeSlot];
+	}
+
+	@Override
+	int getTravelTimeCount(final int timeSlot) {
+		return this.timeCnt[timeSlot];
 	}
 	
 
@@ -74,6 +74,17 @@ class TravelTimeDataHashMap extends TravelTimeData {
 		}
 	}
 
+	@Override
+	void addTravelTimes(final int timeSlice, final double traveltimeSum, final int count) {
+		TimeStruct curr = this.travelTimes.get(IntegerCache.getInteger(timeSlice));
+		if (curr != null) {
+			curr.cnt += count;
+			curr.timeSum += traveltimeSum;
+		} else {
+			this.travelTimes.put(IntegerCache.getInteger(timeSlice), new TimeStruct(traveltimeSum, count));
+		}
+	}
+
 	@Override
 	public double getTravelTime(final int timeSlice, final double now) {
 
@@ -85,6 +96,25 @@ class TravelTimeDataHashMap extends TravelTimeData {
 		return ts.timeSum / ts.cnt;
 	}
 
+	@Override
+	double getTravelTimeForSnapshot(final int timeSlice, final double timeSliceStart) {
+		// empty time slices return the free speed travel time at the requested time, which may vary within the slice
+		TimeStruct ts = this.travelTimes.get(IntegerCache.getInteger(timeSlice));
+		return ts == null ? Double.NaN : ts.timeSum / ts.cnt;
+	}
+
+	@Override
+	double getTravelTimeSum(final int timeSlice) {
+		TimeStruct ts = this.travelTimes.get(IntegerCache.getInteger(timeSlice));
+		return ts == null ? 0.0 : ts.timeSum;
+	}
+
+	@Override
+	int getTravelTimeCount(final int timeSlice) {
+		TimeStruct ts = this.travelTimes.get(IntegerCache.getInteger(timeSlice));
+		return ts == null ? 0 : ts.cnt;
+	}
+
 	private static class TimeStruct {
 		public double timeSum;
 		public int cnt;
@@ -0,0 +1,170 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.trafficmonitoring;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+
+/**
+ * A read-only copy of the link travel times collected by a {@link TravelTimeCalculator}, frozen into one contiguous
+ * float matrix with one row per link and one column per time bin. Rows are found by the index of the link id, so
+ * a lookup needs neither a map nor any synchronization, and all routing threads can share one snapshot.
+ * <br>
+ * The matrix either lives on the heap or in a memory-mapped temporary file, which keeps it out of the heap for
+ * very large networks or small time bins.
+ * <br>
+ * Time bins whose travel time depends on the time of day within the bin (empty bins of
+ * {@link TravelTimeDataHashMap}, which use the free speed at the requested time) are stored as NaN and evaluated
+ * at lookup time, as are links without any data.
+ */
+/* deliberately package */ final class TravelTimeSnapshot {
+	private static final Logger log = Logger.getLogger(TravelTimeSnapshot.class);
+
+	private final int[] rowOfIdIndex;
+	private final FloatBuffer[] blocks;
+	private final int rowsPerBlock;
+	private final int numSlots;
+	private final int timeSlice;
+	private final double halfBinSize;
+	private final boolean interpolate;
+
+	/**
+	 * Copies the travel times of all links. The data must be consolidated. The travel times cached by the data are
+	 * released link by link as they are copied, so taking the snapshot needs hardly more memory than the live data
+	 * alone, and the snapshot takes the place of the caches afterwards.
+	 */
+	TravelTimeSnapshot(final Map<Id<Link>, TravelTimeData> linkData, final int numSlots, final int timeSlice,
+			final boolean interpolate, final boolean memoryMapped) {
+		this.numSlots = numSlots;
+		this.timeSlice = timeSlice;
+		this.halfBinSize = ((double) timeSlice) / 2;
+		this.interpolate = interpolate;
+
+		// copy the entries once, the map may still grow while the snapshot is taken
+		List<Map.Entry<Id<Link>, TravelTimeData>> entries = new ArrayList<>(linkData.entrySet());
+		int maxIndex = -1;
+		for (Map.Entry<Id<Link>, TravelTimeData> e : entries) {
+			maxIndex = Math.max(maxIndex, e.getKey().index());
+		}
+		this.rowOfIdIndex = new int[maxIndex + 1];
+		Arrays.fill(this.rowOfIdIndex, -1);
+		int rows = 0;
+		for (Map.Entry<Id<Link>, TravelTimeData> e : entries) {
+			this.rowOfIdIndex[e.getKey().index()] = rows++;
+		}
+
+		this.rowsPerBlock = Math.max(1, Integer.MAX_VALUE / 4 / numSlots);
+		if (memoryMapped) {
+			this.blocks = map(rows, this.rowsPerBlock, numSlots);
+		} else {
+			if ((long) rows * numSlots > Integer.MAX_VALUE - 8) {
+				throw new IllegalArgumentException("too many travel times for a snapshot on the heap: " + rows + " links with " + numSlots
+						+ " time bins. Use a memory-mapped snapshot instead.");
+			}
+			this.blocks = new FloatBuffer[] { FloatBuffer.wrap(new float[rows * numSlots]) };
+		}
+
+		for (Map.Entry<Id<Link>, TravelTimeData> e : entries) {
+			int row = this.rowOfIdIndex[e.getKey().index()];
+			FloatBuffer block = this.blocks[row / this.rowsPerBlock];
+			int offset = (row % this.rowsPerBlock) * numSlots;
+			TravelTimeData data = e.getValue();
+			for (int i = 0; i < numSlots; i++) {
+				block.put(offset + i, (float) data.getTravelTimeForSnapshot(i, (double) i * timeSlice));
+			}
+			data.releaseTravelTimeCache();
+		}
+	}
+
+	private static FloatBuffer[] map(final int rows, final int rowsPerBlock, final int numSlots) {
+		int blockCount = Math.max(1, (rows + rowsPerBlock - 1) / rowsPerBlock);
+		FloatBuffer[] blocks = new FloatBuffer[blockCount];
+		try {
+			Path file = Files.createTempFile("travelTimes", ".bin");
+			try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+				for (int b = 0; b < blockCount; b++) {
+					long rowsInBlock = Math.min(rowsPerBlock, rows - (long) b * rowsPerBlock);
+					long position = (long) b * rowsPerBlock * numSlots * 4;
+					blocks[b] = channel.map(FileChannel.MapMode.READ_WRITE, position, rowsInBlock * numSlots * 4)
+							.order(ByteOrder.nativeOrder()).asFloatBuffer();
+				}
+			}
+			// the mappings stay valid after the file is closed; deleting it only fails on some platforms
+			try {
+				Files.delete(file);
+			} catch (IOException e) {
+				log.warn("could not delete " + file + " yet, it will be deleted on exit.");
+				file.toFile().deleteOnExit();
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException("could not create memory-mapped travel time snapshot", e);
+		}
+		return blocks;
+	}
+
+	/**
+	 * @return the observed travel time on the link, as {@link AveragingTravelTimeGetter} or
+	 * {@link LinearInterpolatingTravelTimeGetter} would return it from the live data.
+	 */
+	double getLinkTravelTime(final Link link, final double time) {
+		int index = link.getId().index();
+		int row = index < this.rowOfIdIndex.length ? this.rowOfIdIndex[index] : -1;
+		if (row < 0) {
+			return link.getLength() / link.getFreespeed(time);
+		}
+		FloatBuffer block = this.blocks[row / this.rowsPerBlock];
+		int offset = (row % this.rowsPerBlock) * this.numSlots;
+		int timeSlot = TimeBinUtils.getTimeBinIndex(time, this.timeSlice, this.numSlots);
+
+		if (!this.interpolate || time <= this.halfBinSize || time >= this.numSlots * this.timeSlice - this.halfBinSize) {
+			return getTravelTime(block, offset, timeSlot, link, time);
+		}
+
+		// interpolate between the midpoints of the two time bins around the time, see LinearInterpolatingTravelTimeGetter
+		int firstSlot = timeSlot * this.timeSlice + this.halfBinSize > time ? timeSlot - 1 : timeSlot;
+		double firstTravelTime = getTravelTime(block, offset, firstSlot, link, time);
+		double secondTravelTime = getTravelTime(block, offset, firstSlot + 1, link, time);
+		double dx = time - (firstSlot * this.timeSlice + this.halfBinSize);
+		return firstTravelTime + (secondTravelTime - firstTravelTime) * dx / this.timeSlice;
+	}
+
+	private static double getTravelTime(final FloatBuffer block, final int offset, final int timeSlot, final Link link, final double time) {
+		float travelTime = block.get(offset + timeSlot);
+		if (Float.isNaN(travelTime)) {
+			return link.getLength() / link.getFreespeed(time);
+		}
+		return travelTime;
+	}
+
+}
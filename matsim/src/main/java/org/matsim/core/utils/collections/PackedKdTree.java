@@ -0,0 +1,597 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.utils.collections;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * An immutable spatial index over points, as an alternative to {@link QuadTree} for lookups on data that does not
+ * change once loaded, e.g. facilities or link coordinates.
+ * <br>
+ * The tree is a balanced kd-tree without node objects: the points are stored in tree order in one array of
+ * coordinates, the median of each range of points is the splitting point of that range, and small ranges are
+ * scanned linearly. It is built in one go by a {@link Builder}, optionally in parallel. The queries do not allocate
+ * anything and report their results to callbacks, so they can be run from several threads concurrently.
+ * <br>
+ * At one location, several objects can be put, and an object can be put at several locations.
+ *
+ * @param <T> The type of data to be stored in the tree.
+ */
+public final class PackedKdTree<T> {
+
+	/** ranges with at most this many points are scanned linearly */
+	private static final int LEAF_SIZE = 8;
+
+	/** ranges with more points are built in a separate fork-join task */
+	private static final int PARALLEL_THRESHOLD = 1 << 14;
+
+	/** x and y of the point at index i are at 2*i and 2*i+1 */
+	private final double[] coords;
+	private final Object[] values;
+	/** the splitting dimension of the range whose median is at index i, 0 for x and 1 for y */
+	private final byte[] splitDimensions;
+	private final int size;
+
+	private PackedKdTree(final double[] coords, final Object[] values, final byte[] splitDimensions, final int size) {
+		this.coords = coords;
+		this.values = values;
+		this.splitDimensions = splitDimensions;
+		this.size = size;
+	}
+
+	/** @return the number of entries in the tree */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Gets the object closest to x/y
+	 *
+	 * @param x easting, left-right location, longitude
+	 * @param y northing, up-down location, latitude
+	 * @return the object found closest to x/y, or <code>null</code> if the tree is empty
+	 */
+	@SuppressWarnings("unchecked")
+	public T getClosest(final double x, final double y) {
+		if (this.size == 0) {
+			return null;
+		}
+		return (T) this.values[closest(0, this.size, x, y, -1)];
+	}
+
+	private int closest(final int lo, final int hi, final double x, final double y, int best) {
+		if (hi - lo <= LEAF_SIZE) {
+			double bestDistance = best < 0 ? Double.POSITIVE_INFINITY : distanceSquared(best, x, y);
+			for (int i = lo; i < hi; i++) {
+				double distance = distanceSquared(i, x, y);
+				if (distance < bestDistance) {
+					best = i;
+					bestDistance = distance;
+				}
+			}
+			return best;
+		}
+		int mid = (lo + hi) >>> 1;
+		if (best < 0 || distanceSquared(mid, x, y) < distanceSquared(best, x, y)) {
+			best = mid;
+		}
+		double diff = this.splitDimensions[mid] == 0 ? x - this.coords[2 * mid] : y - this.coords[2 * mid + 1];
+		if (diff < 0) {
+			best = closest(lo, mid, x, y, best);
+			if (diff * diff < distanceSquared(best, x, y)) {
+				best = closest(mid + 1, hi, x, y, best);
+			}
+		} else {
+			best = closest(mid + 1, hi, x, y, best);
+			if (diff * diff < distanceSquared(best, x, y)) {
+				best = closest(lo, mid, x, y, best);
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Finds the <code>k</code> objects closest to x/y. The result is stored in <code>neighbors</code>, which can be
+	 * reused for further queries to avoid allocations.
+	 *
+	 * @param x easting, left-right location, longitude
+	 * @param y northing, up-down location, latitude
+	 * @param k the maximal number of objects to find
+	 * @param neighbors stores the objects found, ordered by increasing distance
+	 * @return the number of objects found, which is less than <code>k</code> only if the tree is smaller
+	 */
+	public int getNearest(final double x, final double y, final int k, final Neighbors<T> neighbors) {
+		neighbors.reset(this, k);
+		if (k > 0 && this.size > 0) {
+			nearest(0, this.size, x, y, neighbors);
+		}
+		neighbors.sort();
+		return neighbors.size;
+	}
+
+	/**
+	 * Finds the <code>k</code> objects closest to each of the given locations, with several threads. The executor is
+	 * called from these threads concurrently, so it must be thread-safe. The objects found for one location are
+	 * reported by the same thread, ordered by increasing distance.
+	 *
+	 * @param xs eastings of the locations
+	 * @param ys northings of the locations
+	 * @param k the maximal number of objects to find per location
+	 * @param numberOfThreads the number of threads to use
+	 * @param executor is executed on the objects found
+	 */
+	public void getNearest(final double[] xs, final double[] ys, final int k, final int numberOfThreads, final NeighborExecutor<T> executor) {
+		if (xs.length != ys.length) {
+			throw new IllegalArgumentException("got " + xs.length + " x coordinates, but " + ys.length + " y coordinates.");
+		}
+		Thread[] threads = new Thread[Math.max(1, Math.min(numberOfThreads, xs.length))];
+		for (int t = 0; t < threads.length; t++) {
+			final int first = (int) ((long) xs.length * t / threads.length);
+			final int last = (int) ((long) xs.length * (t + 1) / threads.length);
+			threads[t] = new Thread(() -> {
+				Neighbors<T> neighbors = new Neighbors<>();
+				for (int q = first; q < last; q++) {
+					int n = getNearest(xs[q], ys[q], k, neighbors);
+					for (int rank = 0; rank < n; rank++) {
+						executor.execute(q, rank, neighbors.getValue(rank), neighbors.getDistance(rank));
+					}
+				}
+			}, "PackedKdTree-" + t);
+			threads[t].start();
+		}
+		for (Thread thread : threads) {
+			try {
+				thread.join();
+			} catch (InterruptedException e) {
+				throw new RuntimeException(e);
+			}
+		}
+	}
+
+	private void nearest(final int lo, final int hi, final double x, final double y, final Neighbors<T> neighbors) {
+		if (hi - lo <= LEAF_SIZE) {
+			for (int i = lo; i < hi; i++) {
+				neighbors.offer(i, distanceSquared(i, x, y));
+			}
+			return;
+		}
+		int mid = (lo + hi) >>> 1;
+		neighbors.offer(mid, distanceSquared(mid, x, y));
+		double diff = this.splitDimensions[mid] == 0 ? x - this.coords[2 * mid] : y - this.coords[2 * mid + 1];
+		if (diff < 0) {
+			nearest(lo, mid, x, y, neighbors);
+			if (diff * diff < neighbors.bound()) {
+				nearest(mid + 1, hi, x, y, neighbors);
+			}
+		} else {
+			nearest(mid + 1, hi, x, y, neighbors);
+			if (diff * diff < neighbors.bound()) {
+				nearest(lo, mid, x, y, neighbors);
+			}
+		}
+	}
+
+	/**
+	 * Executes executor on all objects within a certain distance around x/y, in no particular order.
+	 *
+	 * @param x left-right location, longitude
+	 * @param y up-down location, latitude
+	 * @param distance the maximal distance of the objects from x/y
+	 * @param executor is executed on the objects found
+	 * @return the count of objects found within distance to x/y
+	 */
+	public int getDisk(final double x, final double y, final double distance, final QuadTree.Executor<T> executor) {
+		if (this.size == 0 || distance < 0) {
+			return 0;
+		}
+		return disk(0, this.size, x, y, distance * distance, executor);
+	}
+
+	private int disk(final int lo, final int hi, final double x, final double y, final double maxDistanceSquared, final QuadTree.Executor<T> executor) {
+		if (hi - lo <= LEAF_SIZE) {
+			int count = 0;
+			for (int i = lo; i < hi; i++) {
+				if (distanceSquared(i, x, y) <= maxDistanceSquared) {
+					visit(i, executor);
+					count++;
+				}
+			}
+			return count;
+		}
+		int mid = (lo + hi) >>> 1;
+		int count = 0;
+		if (distanceSquared(mid, x, y) <= maxDistanceSquared) {
+			visit(mid, executor);
+			count++;
+		}
+		double diff = this.splitDimensions[mid] == 0 ? x - this.coords[2 * mid] : y - this.coords[2 * mid + 1];
+		if (diff <= 0 || diff * diff <= maxDistanceSquared) {
+			count += disk(lo, mid, x, y, maxDistanceSquared, executor);
+		}
+		if (diff >= 0 || diff * diff <= maxDistanceSquared) {
+			count += disk(mid + 1, hi, x, y, maxDistanceSquared, executor);
+		}
+		return count;
+	}
+
+	/**
+	 * Executes executor on all objects inside the rectangle (minX,minY):(maxX,maxY), including its border, in no
+	 * particular order.
+	 *
+	 * @param minX The minimum left-right location, longitude
+	 * @param minY The minimum up-down location, latitude
+	 * @param maxX The maximum left-right location, longitude
+	 * @param maxY The maximum up-down location, latitude
+	 * @param executor is executed on the objects found
+	 * @return the count of objects found within the rectangle.
+	 */
+	public int execute(final double minX, final double minY, final double maxX, final double maxY, final QuadTree.Executor<T> executor) {
+		if (this.size == 0) {
+			return 0;
+		}
+		return rectangle(0, this.size, minX, minY, maxX, maxY, executor);
+	}
+
+	private int rectangle(final int lo, final int hi, final double minX, final double minY, final double maxX, final double maxY,
+			final QuadTree.Executor<T> executor) {
+		if (hi - lo <= LEAF_SIZE) {
+			int count = 0;
+			for (int i = lo; i < hi; i++) {
+				if (isInRectangle(i, minX, minY, maxX, maxY)) {
+					visit(i, executor);
+					count++;
+				}
+			}
+			return count;
+		}
+		int mid = (lo + hi) >>> 1;
+		int count = 0;
+		if (isInRectangle(mid, minX, minY, maxX, maxY)) {
+			visit(mid, executor);
+			count++;
+		}
+		boolean splitX = this.splitDimensions[mid] == 0;
+		double split = splitX ? this.coords[2 * mid] : this.coords[2 * mid + 1];
+		if ((splitX ? minX : minY) <= split) {
+			count += rectangle(lo, mid, minX, minY, maxX, maxY, executor);
+		}
+		if ((splitX ? maxX : maxY) >= split) {
+			count += rectangle(mid + 1, hi, minX, minY, maxX, maxY, executor);
+		}
+		return count;
+	}
+
+	private boolean isInRectangle(final int i, final double minX, final double minY, final double maxX, final double maxY) {
+		double x = this.coords[2 * i];
+		double y = this.coords[2 * i + 1];
+		return x >= minX && x <= maxX && y >= minY && y <= maxY;
+	}
+
+	@SuppressWarnings("unchecked")
+	private void visit(final int i, final QuadTree.Executor<T> executor) {
+		executor.execute(this.coords[2 * i], this.coords[2 * i + 1], (T) this.values[i]);
+	}
+
+	private double distanceSquared(final int i, final double x, final double y) {
+		double dx = this.coords[2 * i] - x;
+		double dy = this.coords[2 * i + 1] - y;
+		return dx * dx + dy * dy;
+	}
+
+	/**
+	 * Called for the objects found by {@link PackedKdTree#getNearest(double[], double[], int, int, NeighborExecutor)}.
+	 */
+	public interface NeighborExecutor<T> {
+		/**
+		 * @param query the index of the location in the arrays given to the query
+		 * @param rank 0 for the closest object, 1 for the second closest, and so on
+		 */
+		void execute(int query, int rank, T object, double distance);
+	}
+
+	/**
+	 * The result of a k-nearest query. While the query runs, the objects found so far are kept in a max-heap on
+	 * their distance, which is sorted at the end. An instance may be reused for any number of queries, but must not be
+	 * shared between threads.
+	 */
+	public static final class Neighbors<T> {
+		private PackedKdTree<T> tree = null;
+		private int[] indices = new int[0];
+		private double[] distancesSquared = new double[0];
+		private int size = 0;
+		private int k = 0;
+
+		void reset(final PackedKdTree<T> tree, final int k) {
+			this.tree = tree;
+			this.k = k;
+			this.size = 0;
+			if (this.indices.length < k) {
+				this.indices = new int[k];
+				this.distancesSquared = new double[k];
+			}
+		}
+
+		/** @return the number of objects found */
+		public int size() {
+			return this.size;
+		}
+
+		/** @return the object at the given rank, 0 being the closest object */
+		@SuppressWarnings("unchecked")
+		public T getValue(final int rank) {
+			checkRank(rank);
+			return (T) this.tree.values[this.indices[rank]];
+		}
+
+		/** @return the x coordinate of the object at the given rank */
+		public double getX(final int rank) {
+			checkRank(rank);
+			return this.tree.coords[2 * this.indices[rank]];
+		}
+
+		/** @return the y coordinate of the object at the given rank */
+		public double getY(final int rank) {
+			checkRank(rank);
+			return this.tree.coords[2 * this.indices[rank] + 1];
+		}
+
+		/** @return the distance of the object at the given rank to the location of the query */
+		public double getDistance(final int rank) {
+			checkRank(rank);
+			return Math.sqrt(this.distancesSquared[rank]);
+		}
+
+		private void checkRank(final int rank) {
+			if (rank < 0 || rank >= this.size) {
+				throw new IndexOutOfBoundsException("rank " + rank + ", size " + this.size);
+			}
+		}
+
+		/** @return the squared distance an object must fall below to be among the neighbors */
+		double bound() {
+			return this.size < this.k ? Double.POSITIVE_INFINITY : this.distancesSquared[0];
+		}
+
+		void offer(final int index, final double distanceSquared) {
+			if (this.size < this.k) {
+				// sift up
+				int i = this.size++;
+				while (i > 0) {
+					int parent = (i - 1) >>> 1;
+					if (this.distancesSquared[parent] >= distanceSquared) {
+						break;
+					}
+					this.indices[i] = this.indices[parent];
+					this.distancesSquared[i] = this.distancesSquared[parent];
+					i = parent;
+				}
+				this.indices[i] = index;
+				this.distancesSquared[i] = distanceSquared;
+			} else if (distanceSquared < this.distancesSquared[0]) {
+				siftDown(index, distanceSquared, this.size);
+			}
+		}
+
+		private void siftDown(final int index, final double distanceSquared, final int heapSize) {
+			int i = 0;
+			while (true) {
+				int child = 2 * i + 1;
+				if (child >= heapSize) {
+					break;
+				}
+				if (child + 1 < heapSize && this.distancesSquared[child + 1] > this.distancesSquared[child]) {
+					child++;
+				}
+				if (this.distancesSquared[child] <= distanceSquared) {
+					break;
+				}
+				this.indices[i] = this.indices[child];
+				this.distancesSquared[i] = this.distancesSquared[child];
+				i = child;
+			}
+			this.indices[i] = index;
+			this.distancesSquared[i] = distanceSquared;
+		}
+
+		/** heap sort, leaving the entries in increasing order of distance */
+		void sort() {
+			for (int end = this.size - 1; end > 0; end--) {
+				int maxIndex = this.indices[0];
+				double maxDistance = this.distancesSquared[0];
+				siftDown(this.indices[end], this.distancesSquared[end], end);
+				this.indices[end] = maxIndex;
+				this.distancesSquared[end] = maxDistance;
+			}
+		}
+	}
+
+	/**
+	 * Collects the entries of a {@link PackedKdTree} and builds the tree. The builder can be reused after
+	 * {@link #build()}, it then still contains the entries added so far.
+	 */
+	public static final class Builder<T> {
+		private double[] coords = new double[32];
+		private Object[] values = new Object[16];
+		private int size = 0;
+
+		/**
+		 * Adds the specified value at the specified coordinates.
+		 *
+		 * @param x x-coordinate where the specified value is to be associated.
+		 * @param y y-coordinate where the specified value is to be associated.
+		 * @param value value to be associated with the specified coordinates.
+		 * @return this builder
+		 */
+		public Builder<T> put(final double x, final double y, final T value) {
+			if (Double.isNaN(x) || Double.isNaN(y)) {
+				throw new IllegalArgumentException("cannot add a point at x=" + x + ", y=" + y);
+			}
+			if (this.size == this.values.length) {
+				this.values = Arrays.copyOf(this.values, 2 * this.size);
+				this.coords = Arrays.copyOf(this.coords, 4 * this.size);
+			}
+			this.coords[2 * this.size] = x;
+			this.coords[2 * this.size + 1] = y;
+			this.values[this.size] = value;
+			this.size++;
+			return this;
+		}
+
+		/** @return the number of entries added so far */
+		public int size() {
+			return this.size;
+		}
+
+		/** Builds the tree in the calling thread. */
+		public PackedKdTree<T> build() {
+			return build(1);
+		}
+
+		/**
+		 * Builds the tree. The ranges of points are partitioned recursively, and large ranges are partitioned in
+		 * parallel by the given number of threads.
+		 */
+		public PackedKdTree<T> build(final int numberOfThreads) {
+			int[] order = new int[this.size];
+			for (int i = 0; i < this.size; i++) {
+				order[i] = i;
+			}
+			byte[] splitDimensions = new byte[this.size];
+			boolean parallel = numberOfThreads > 1 && this.size > PARALLEL_THRESHOLD;
+			BuildTask task = new BuildTask(this.coords, order, splitDimensions, 0, this.size, parallel);
+			if (parallel) {
+				ForkJoinPool pool = new ForkJoinPool(numberOfThreads);
+				try {
+					pool.invoke(task);
+				} finally {
+					pool.shutdown();
+				}
+			} else {
+				task.compute();
+			}
+
+			double[] treeCoords = new double[2 * this.size];
+			Object[] treeValues = new Object[this.size];
+			for (int i = 0; i < this.size; i++) {
+				treeCoords[2 * i] = this.coords[2 * order[i]];
+				treeCoords[2 * i + 1] = this.coords[2 * order[i] + 1];
+				treeValues[i] = this.values[order[i]];
+			}
+			return new PackedKdTree<>(treeCoords, treeValues, splitDimensions, this.size);
+		}
+	}
+
+	/**
+	 * Moves the median of a range of points along the dimension of its larger extent to the middle of the range,
+	 * with the smaller points before and the larger ones after it, and continues with both halves.
+	 */
+	private static final class BuildTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final double[] coords;
+		private final int[] order;
+		private final byte[] splitDimensions;
+		private final int lo;
+		private final int hi;
+		private final boolean parallel;
+
+		BuildTask(final double[] coords, final int[] order, final byte[] splitDimensions, final int lo, final int hi, final boolean parallel) {
+			this.coords = coords;
+			this.order = order;
+			this.splitDimensions = splitDimensions;
+			this.lo = lo;
+			this.hi = hi;
+			this.parallel = parallel;
+		}
+
+		@Override
+		protected void compute() {
+			int lo = this.lo;
+			int hi = this.hi;
+			// loop on the right half, recurse (or fork) on the left half
+			while (hi - lo > LEAF_SIZE) {
+				double minX = Double.POSITIVE_INFINITY;
+				double minY = Double.POSITIVE_INFINITY;
+				double maxX = Double.NEGATIVE_INFINITY;
+				double maxY = Double.NEGATIVE_INFINITY;
+				for (int i = lo; i < hi; i++) {
+					double x = this.coords[2 * this.order[i]];
+					double y = this.coords[2 * this.order[i] + 1];
+					minX = Math.min(minX, x);
+					maxX = Math.max(maxX, x);
+					minY = Math.min(minY, y);
+					maxY = Math.max(maxY, y);
+				}
+				int dimension = maxX - minX >= maxY - minY ? 0 : 1;
+				int mid = (lo + hi) >>> 1;
+				select(lo, hi - 1, mid, dimension);
+				this.splitDimensions[mid] = (byte) dimension;
+
+				BuildTask left = new BuildTask(this.coords, this.order, this.splitDimensions, lo, mid, this.parallel);
+				if (this.parallel && mid - lo > PARALLEL_THRESHOLD) {
+					left.fork();
+					new BuildTask(this.coords, this.order, this.splitDimensions, mid + 1, hi, this.parallel).compute();
+					left.join();
+					return;
+				}
+				left.compute();
+				lo = mid + 1;
+			}
+		}
+
+		/** Hoare's selection: afterwards, the k-th point is in place, no point before it is larger and no point after it smaller */
+		private void select(int left, int right, final int k, final int dimension) {
+			while (right > left) {
+				double pivot = key((left + right) >>> 1, dimension);
+				int i = left;
+				int j = right;
+				while (i <= j) {
+					while (key(i, dimension) < pivot) {
+						i++;
+					}
+					while (key(j, dimension) > pivot) {
+						j--;
+					}
+					if (i <= j) {
+						int tmp = this.order[i];
+						this.order[i] = this.order[j];
+						this.order[j] = tmp;
+						i++;
+						j--;
+					}
+				}
+				if (k <= j) {
+					right = j;
+				} else if (k >= i) {
+					left = i;
+				} else {
+					return;
+				}
+			}
+		}
+
+		private double key(final int i, final int dimension) {
+			return this.coords[2 * this.order[i] + dimension];
+		}
+	}
+
+}
@@ -20,6 +20,8 @@
 
 package org.matsim.core.utils.io;
 
+import com.github.luben.zstd.ZstdInputStream;
+import com.github.luben.zstd.ZstdOutputStream;
 import net.jpountz.lz4.LZ4BlockInputStream;
 import net.jpountz.lz4.LZ4BlockOutputStream;
 import org.apache.log4j.Logger;
@@ -56,6 +58,7 @@ public class IOUtils {
 
 	private static final String GZ = ".gz";
 	private static final String LZ4 = ".lz4";
+	private static final String ZST = ".zst";
 
 	public static final Charset CHARSET_UTF8 = StandardCharsets.UTF_8;
 	public static final Charset CHARSET_WINDOWS_ISO88591 = StandardCharsets.ISO_8859_1;
@@ -249,11 +252,28 @@ public class IOUtils {
 	 * @throws UncheckedIOException
 	 */
 	public static BufferedWriter getBufferedWriter(final String filename, final Charset charset, final boolean append) throws UncheckedIOException {
+		return getBufferedWriter(filename, charset, append, 1);
+	}
+
+
+	/**
+	 * Tries to open the specified file for writing and returns a BufferedWriter for it.
+	 * If the filename ends with ".gz" or ".zst", data will be automatically compressed
+	 * with the given number of threads, see {@link #getOutputStream(String, boolean, int)}.
+	 *
+	 * @param filename The filename where to write the data.
+	 * @param charset the encoding to use to write the file.
+	 * @param append <code>true</code> if the file should be opened for appending, instead of overwriting
+	 * @param compressionThreads the number of threads compressing the data
+	 * @return BufferedWriter for the specified file.
+	 * @throws UncheckedIOException
+	 */
+	public static BufferedWriter getBufferedWriter(final String filename, final Charset charset, final boolean append, final int compressionThreads) throws UncheckedIOException {
 		if (filename == null) {
 			throw new UncheckedIOException(new FileNotFoundException("No filename given (filename == null)"));
 		}
 		try {
-			return new BufferedWriter(new OutputStreamWriter(getOutputStream(filename, append), charset));
+			return new BufferedWriter(new OutputStreamWriter(getOutputStream(filename, append, compressionThreads), charset));
 		} catch (UncheckedIOException e) {
 			throw new UncheckedIOException(e);
 		}
@@ -327,6 +347,8 @@ public class IOUtils {
 					inputStream = new GZIPInputStream(new FileInputStream(filename));
 				}else if (filename.endsWith(LZ4)) {
 					inputStream = new UnicodeInputStream(new LZ4BlockInputStream(new FileInputStream(filename)));
+				} else if (filename.endsWith(ZST)) {
+					inputStream = new ZstdInputStream(new FileInputStream(filename));
 				} else {
 					inputStream = new FileInputStream(filename);
 				}
@@ -363,8 +385,10 @@ public class IOUtils {
 
 	public static InputStream getInputStream(URL url) throws UncheckedIOException {
 		try {
-			if (url.getFile().endsWith(".gz")) {
+			if (url.getFile().endsWith(GZ)) {
 				return new GZIPInputStream(url.openStream());
+			} else if (url.getFile().endsWith(ZST)) {
+				return new ZstdInputStream(url.openStream());
 			} else {
 				return url.openStream();
 			}
@@ -378,32 +402,43 @@ public class IOUtils {
 	}
 
 	/**
-	 * Returns a buffered and optionally gzip-compressed output stream to the specified file.
+	 * Returns a buffered and optionally compressed output stream to the specified file.
 	 * If the given filename ends with ".gz", the written file content will be automatically 
-	 * compressed with the gzip-algorithm.
+	 * compressed with the gzip-algorithm, with ".lz4" with lz4 and with ".zst" with zstd.
 	 * 
 	 * @throws UncheckedIOException if the file cannot be created.
 	 * 
 	 * <br> author mrieser
 	 */
 	public static OutputStream getOutputStream(final String filename, boolean append) throws UncheckedIOException {
+		return getOutputStream(filename, append, 1);
+	}
+
+	/**
+	 * Returns a buffered and optionally compressed output stream to the specified file, like
+	 * {@link #getOutputStream(String, boolean)}. With 1 compression thread, files are compressed
+	 * by the writing thread itself. With more threads, gzip and zstd files are compressed in
+	 * parallel, and gzip files are written as multi-member gzip files, which can be read by all
+	 * gzip tools, see {@link ParallelGZIPOutputStream}.
+	 *
+	 * @throws UncheckedIOException if the file cannot be created.
+	 */
+	public static OutputStream getOutputStream(final String filename, boolean append, final int compressionThreads) throws UncheckedIOException {
+		if (compressionThreads < 1) {
+			throw new IllegalArgumentException("the number of compression threads must be at least 1, but is " + compressionThreads);
+		}
 		if (filename == null) {
 			throw new UncheckedIOException(new FileNotFoundException("No filename given (filename == null)"));
 		}
 		try {
-			if (filename.toLowerCase(Locale.ROOT).endsWith(GZ)) {
-				File f = new File(filename);
-				if (append && f.exists() && (f.length() > 0)) {
-					throw new IllegalArgumentException("Appending to an existing gzip-compressed file is not supported.");
-				}
-				return new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(filename, append)));
-			} else if (filename.toLowerCase(Locale.ROOT).endsWith(LZ4)) {
+			String lcFilename = filename.toLowerCase(Locale.ROOT);
+			if (lcFilename.endsWith(GZ) || lcFilename.endsWith(LZ4) || lcFilename.endsWith(ZST)) {
 				File f = new File(filename);
 				if (append && f.exists() && (f.length() > 0)) {
-					throw new IllegalArgumentException("Appending to an existing lz4-compressed file is not supported.");
+					throw new IllegalArgumentException("Appending to an existing compressed file is not supported: " + filename);
 				}
-				return new BufferedOutputStream(new LZ4BlockOutputStream(new FileOutputStream(filename)));
-			}else {
+				return new BufferedOutputStream(getCompressedOutputStream(lcFilename, new FileOutputStream(filename, append), compressionThreads));
+			} else {
 				return new BufferedOutputStream(new FileOutputStream (filename, append));
 			}
 		} catch (IOException e) {
@@ -411,6 +446,20 @@ public class IOUtils {
 		}
 	}
 
+	private static OutputStream getCompressedOutputStream(final String lcFilename, final OutputStream out, final int threads) throws IOException {
+		if (lcFilename.endsWith(GZ)) {
+			return threads > 1 ? new ParallelGZIPOutputStream(out, threads) : new GZIPOutputStream(out);
+		} else if (lcFilename.endsWith(LZ4)) {
+			return new LZ4BlockOutputStream(out);
+		} else {
+			ZstdOutputStream zstd = new ZstdOutputStream(out);
+			if (threads > 1) {
+				zstd.setWorkers(threads);
+			}
+			return zstd;
+		}
+	}
+
 	/**
 	 * Copy of getOutputStream and then changed to correspond to the PrintStream signature.  Device to hopefully reduce FindBugs warnings.  kai, may'17
 	 * 
@@ -422,8 +471,9 @@ public class IOUtils {
 			throw new UncheckedIOException(new FileNotFoundException("No filename given (filename == null)"));
 		}
 		try {
-			if (filename.toLowerCase(Locale.ROOT).endsWith(GZ)) {
-				return new PrintStream(new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(filename))));
+			String lcFilename = filename.toLowerCase(Locale.ROOT);
+			if (lcFilename.endsWith(GZ) || lcFilename.endsWith(ZST)) {
+				return new PrintStream(new BufferedOutputStream(getCompressedOutputStream(lcFilename, new FileOutputStream(filename), 1)));
 			} else {
 				return new PrintStream(new BufferedOutputStream(new FileOutputStream (filename))) ;
 			}
@@ -61,7 +61,7 @@ public class MatsimFileTypeGuesser extends DefaultHandler {
 
 	public MatsimFileTypeGuesser(final String fileName) throws UncheckedIOException {
 		String name = fileName.toLowerCase(Locale.ROOT);
-		if (name.endsWith(".xml.gz") || name.endsWith(".xml")) {
+		if (name.endsWith(".xml.gz") || name.endsWith(".xml.zst") || name.endsWith(".xml")) {
 			guessFileTypeXml(fileName);
 			// I think the following would also be useful for the API, but with which name?
 			String shortSystemId = null;
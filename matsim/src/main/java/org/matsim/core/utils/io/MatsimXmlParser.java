@@ -165,6 +165,8 @@ public abstract class MatsimXmlParser extends DefaultHandler implements MatsimRe
 			} catch (IOException e) {
 				throw new RuntimeException(e);
 			}
+		} else if (url.getFile().endsWith(".zst")) {
+			parse(new InputSource(IOUtils.getInputStream(url)));
 		} else {
 			parse(new InputSource(url.toExternalForm()));
 		}
@@ -197,9 +199,18 @@ public abstract class MatsimXmlParser extends DefaultHandler implements MatsimRe
 			}
 		} catch (SAXException | ParserConfigurationException | IOException e) {
 			throw new UncheckedIOException(e);
+		} finally {
+			parsingFinished();
 		}
 	}
 
+	/**
+	 * Called when parsing has ended, also if it failed. Override it to release resources acquired while parsing,
+	 * e.g. threads.
+	 */
+	protected void parsingFinished() {
+	}
+
 	// the following may be useful.  But it is nowhere used, so I am not sure if we fully understand its longterm maintenance implications, 
 	// so I rather comment it out. If it is needed somewhere, just comment it back in (and probably (**) above) 
 	// and leave a comment.  kai, jul'16
@@ -33,6 +33,11 @@ import org.matsim.core.utils.geometry.CoordinateTransformation;
 import org.matsim.core.utils.misc.Counter;
 import org.xml.sax.Attributes;
 
+import gnu.trove.list.array.TLongArrayList;
+
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
@@ -106,6 +111,8 @@ public class OsmNetworkReader implements MatsimSomeReader {
 	private boolean scaleMaxSpeed = false;
 
 	private boolean slowButLowMemory = false;
+
+	private int pbfDecodingThreads = Runtime.getRuntime().availableProcessors();
 	
 	private boolean useVspAdjustments = false; // Adjustments discussed on 2018-04-30, kn,ik,dz. apr'18 (Might become default after testing)
 	
@@ -205,7 +212,128 @@ public class OsmNetworkReader implements MatsimSomeReader {
 	 * @throws UncheckedIOException
 	 */
 	public final void parse(final String osmFilename) {
-		parse(osmFilename, null);
+		if (osmFilename.endsWith(".pbf")) {
+			parsePbf(() -> {
+				try {
+					return new BufferedInputStream(new FileInputStream(osmFilename));
+				} catch (FileNotFoundException e) {
+					throw new UncheckedIOException(e);
+				}
+			});
+		} else {
+			parse(osmFilename, null);
+		}
+	}
+
+	/**
+	 * Parses the given input stream in the OSM PBF format and creates a MATSim network from the data. The stream is
+	 * read twice, so that only the highways and their nodes are kept in memory: The first pass loads the highways
+	 * and collects the ids of their nodes, the second pass only loads the coordinates of these nodes. The data blocks
+	 * are decoded in parallel, see {@link #setPbfDecodingThreads(int)}.
+	 * <br>
+	 * Files with names ending in <code>.pbf</code> are read this way by {@link #parse(String)}.
+	 *
+	 * @param streamSupplier
+	 * @throws UncheckedIOException
+	 */
+	public final void parsePbf(final Supplier<InputStream> streamSupplier) throws UncheckedIOException {
+		if(this.hierarchyLayers.isEmpty()){
+			log.warn("No hierarchy layer specified. Will convert every highway specified by setHighwayDefaults.");
+		}
+
+		log.info("parsing osm pbf file first time: loading highways and collecting their nodes");
+		final TLongArrayList nodeIdList = new TLongArrayList();
+		OsmPbfParser wayParser = new OsmPbfParser(this.pbfDecodingThreads, false, true, new HashSet<>(allTags));
+		try (InputStream is = streamSupplier.get()) {
+			wayParser.parse(is, new OsmPbfParser.Handler() {
+				@Override
+				public void handleNode(final long id, final double lon, final double lat) {
+				}
+
+				@Override
+				public void handleWay(final long id, final long[] nodeIds, final String[] tags) {
+					if (nodeIds.length == 0) {
+						return;
+					}
+					OsmWay way = new OsmWay(id);
+					for (int i = 0; i < tags.length; i += 2) {
+						way.tags.put(StringCache.get(tags[i]), StringCache.get(tags[i + 1]));
+					}
+					OsmHighwayDefaults osmHighwayDefaults = OsmNetworkReader.this.highwayDefaults.get(way.tags.get(TAG_HIGHWAY));
+					if (osmHighwayDefaults != null) {
+						way.hierarchy = osmHighwayDefaults.hierarchy;
+						for (long nodeId : nodeIds) {
+							way.nodes.add(nodeId);
+						}
+						nodeIdList.add(nodeIds);
+						OsmNetworkReader.this.ways.put(id, way);
+					}
+				}
+			});
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		if (this.nodeIDsToKeep != null) {
+			for (Long nodeId : this.nodeIDsToKeep) {
+				nodeIdList.add(nodeId);
+			}
+		}
+
+		// the ids of the required nodes, sorted and without duplicates, and the coordinates of these nodes
+		nodeIdList.sort();
+		int n = 0;
+		for (int i = 0; i < nodeIdList.size(); i++) {
+			if (n == 0 || nodeIdList.getQuick(i) != nodeIdList.getQuick(n - 1)) {
+				nodeIdList.setQuick(n++, nodeIdList.getQuick(i));
+			}
+		}
+		final long[] nodeIds = nodeIdList.toArray(0, n);
+		final double[] xs = new double[nodeIds.length];
+		final double[] ys = new double[nodeIds.length];
+		Arrays.fill(xs, Double.NaN);
+		log.info("parsing osm pbf file second time: loading " + nodeIds.length + " required nodes");
+		OsmPbfParser nodeParser = new OsmPbfParser(this.pbfDecodingThreads, true, false, null);
+		try (InputStream is = streamSupplier.get()) {
+			nodeParser.parse(is, new OsmPbfParser.Handler() {
+				@Override
+				public void handleNode(final long id, final double lon, final double lat) {
+					int index = Arrays.binarySearch(nodeIds, id);
+					if (index >= 0) {
+						Coord coord = OsmNetworkReader.this.transform.transform(new Coord(lon, lat));
+						xs[index] = coord.getX();
+						ys[index] = coord.getY();
+					}
+				}
+
+				@Override
+				public void handleWay(final long id, final long[] wayNodeIds, final String[] tags) {
+				}
+			});
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		for (int i = 0; i < nodeIds.length; i++) {
+			if (!Double.isNaN(xs[i])) {
+				this.nodes.put(nodeIds[i], new OsmNode(nodeIds[i], new Coord(xs[i], ys[i])));
+			}
+		}
+
+		// as in the xml parser, only keep the ways that touch one of the hierarchy layers
+		if (!this.hierarchyLayers.isEmpty()) {
+			this.ways.values().removeIf(way -> !isInHierarchyLayers(way, this.nodes));
+		}
+		log.info("done loading data");
+
+		convert();
+		logStatistics(nodeParser.getNodeCounter(), wayParser.getWayCounter());
+	}
+
+	/**
+	 * Sets the number of threads used to decode OSM PBF files, see {@link #parsePbf(Supplier)}. Defaults to the number of
+	 * available processors.
+	 */
+	public final void setPbfDecodingThreads(final int numberOfThreads) {
+		this.pbfDecodingThreads = numberOfThreads;
 	}
 
 	/**
@@ -271,9 +399,13 @@ public class OsmNetworkReader implements MatsimSomeReader {
 			log.info("done loading data");
 		}
 		convert();
+		logStatistics(parser.nodeCounter.getCounter(), parser.wayCounter.getCounter());
+	}
+
+	private void logStatistics(final long nodesRead, final long waysRead) {
 		log.info("= conversion statistics: ==========================");
-		log.info("osm: # nodes read:       " + parser.nodeCounter.getCounter());
-		log.info("osm: # ways read:        " + parser.wayCounter.getCounter());
+		log.info("osm: # nodes read:       " + nodesRead);
+		log.info("osm: # ways read:        " + waysRead);
 		log.info("MATSim: # nodes created: " + this.network.getNodes().size());
 		log.info("MATSim: # links created: " + this.network.getLinks().size());
 
@@ -556,6 +688,21 @@ public class OsmNetworkReader implements MatsimSomeReader {
 		this.ways.clear();
 	}
 
+	/**
+	 * @return whether one of the nodes of the way, which are known so far, is in one of the hierarchy layers
+	 */
+	private boolean isInHierarchyLayers(final OsmWay way, final Map<Long, OsmNode> nodes) {
+		for (OsmFilter osmFilter : this.hierarchyLayers) {
+			for (Long nodeId : way.nodes) {
+				OsmNode node = nodes.get(nodeId);
+				if(node != null && osmFilter.coordInFilter(node.coord, way.hierarchy)){
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
 	private void createLink(final Network network, final OsmWay way, final OsmNode fromNode, final OsmNode toNode, 
 			final double length) {
 		String highway = way.tags.get(TAG_HIGHWAY);
@@ -964,19 +1111,8 @@ public class OsmNetworkReader implements MatsimSomeReader {
 						}
 						if (this.collectNodes) {
 							used = true;
-						} else {
-							for (OsmFilter osmFilter : OsmNetworkReader.this.hierarchyLayers) {
-								for (Long nodeId : this.currentWay.nodes) {
-									OsmNode node = this.nodes.get(nodeId);
-									if(node != null && osmFilter.coordInFilter(node.coord, this.currentWay.hierarchy)){
-										used = true;
-										break;
-									}
-								}
-								if (used) {
-									break;
-								}
-							}
+						} else if (isInHierarchyLayers(this.currentWay, this.nodes)) {
+							used = true;
 						}
 					}
 					if (used) {
@@ -0,0 +1,539 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.utils.io;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reads nodes and ways from an OSM file in the
+ * <a href="https://wiki.openstreetmap.org/wiki/PBF_Format" target="_blank">PBF format</a>. The file is read
+ * sequentially, while the data blocks are decompressed and decoded in parallel. The handler is called on the calling
+ * thread in the order of the file.
+ * <br>
+ * Only the parts of the format needed for networks are supported: zlib-compressed or raw blobs, plain and dense nodes
+ * and ways. Relations, metadata and node tags are skipped.
+ */
+/* deliberately package */ final class OsmPbfParser {
+
+	private static final int MAX_BLOB_HEADER_SIZE = 64 * 1024;
+	private static final int MAX_BLOB_SIZE = 32 * 1024 * 1024;
+	private static final Set<String> SUPPORTED_FEATURES = new java.util.HashSet<>(Arrays.asList("OsmSchema-V0.6", "DenseNodes"));
+
+	interface Handler {
+		void handleNode(long id, double lon, double lat);
+
+		/**
+		 * @param tags the keys and values of the tags, alternating
+		 */
+		void handleWay(long id, long[] nodeIds, String[] tags);
+	}
+
+	private final int numberOfThreads;
+	private final boolean readNodes;
+	private final boolean readWays;
+	private final Set<String> wayTagKeys;
+
+	private long nodeCounter = 0;
+	private long wayCounter = 0;
+
+	/**
+	 * @param wayTagKeys the keys of the way tags passed to the handler, all if <code>null</code>
+	 */
+	OsmPbfParser(final int numberOfThreads, final boolean readNodes, final boolean readWays, final Set<String> wayTagKeys) {
+		this.numberOfThreads = numberOfThreads;
+		this.readNodes = readNodes;
+		this.readWays = readWays;
+		this.wayTagKeys = wayTagKeys;
+	}
+
+	long getNodeCounter() {
+		return this.nodeCounter;
+	}
+
+	long getWayCounter() {
+		return this.wayCounter;
+	}
+
+	void parse(final InputStream stream, final Handler handler) throws UncheckedIOException {
+		ExecutorService executor = null;
+		if (this.numberOfThreads > 1) {
+			AtomicInteger threadCounter = new AtomicInteger(0);
+			executor = Executors.newFixedThreadPool(this.numberOfThreads, r -> {
+				Thread thread = new Thread(r, "osm-pbf-" + threadCounter.getAndIncrement());
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+		try {
+			DataInputStream in = new DataInputStream(stream);
+			Deque<Future<Block>> pending = new ArrayDeque<>();
+			byte[] blob;
+			while ((blob = readBlob(in)) != null) {
+				if (blob.length == 0) {
+					continue; // header block
+				}
+				final byte[] data = blob;
+				if (executor == null) {
+					deliver(decodeBlock(data), handler);
+				} else {
+					pending.add(executor.submit(() -> decodeBlock(data)));
+					if (pending.size() >= 4 * this.numberOfThreads) {
+						deliver(get(pending.poll()), handler);
+					}
+				}
+			}
+			while (!pending.isEmpty()) {
+				deliver(get(pending.poll()), handler);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		} finally {
+			if (executor != null) {
+				executor.shutdownNow();
+			}
+		}
+	}
+
+	private static Block get(final Future<Block> future) throws IOException {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new RuntimeException(e.getCause());
+		}
+	}
+
+	private void deliver(final Block block, final Handler handler) {
+		for (int i = 0; i < block.nodeCount; i++) {
+			handler.handleNode(block.nodeIds[i], block.nodeLons[i], block.nodeLats[i]);
+		}
+		this.nodeCounter += block.nodeCount;
+		for (Way way : block.ways) {
+			handler.handleWay(way.id, way.nodeIds, way.tags);
+		}
+		this.wayCounter += block.ways.size();
+	}
+
+	/**
+	 * @return the uncompressed data of the next data block, an empty array for a header block, or <code>null</code> at
+	 * the end of the file.
+	 */
+	private static byte[] readBlob(final DataInputStream in) throws IOException {
+		int headerSize;
+		try {
+			headerSize = in.readInt();
+		} catch (EOFException e) {
+			return null;
+		}
+		if (headerSize < 0 || headerSize > MAX_BLOB_HEADER_SIZE) {
+			throw new IOException("Invalid blob header size " + headerSize + ". This is probably not an OSM PBF file.");
+		}
+		byte[] header = new byte[headerSize];
+		in.readFully(header);
+		String type = null;
+		int dataSize = -1;
+		ProtobufReader reader = new ProtobufReader(header, 0, header.length);
+		while (reader.hasMore()) {
+			int tag = reader.readTag();
+			switch (tag >>> 3) {
+				case 1: type = reader.readString(); break;
+				case 3: dataSize = (int) reader.readVarint(); break;
+				default: reader.skip(tag);
+			}
+		}
+		if (dataSize < 0 || dataSize > MAX_BLOB_SIZE) {
+			throw new IOException("Invalid blob size " + dataSize + ".");
+		}
+		byte[] blob = new byte[dataSize];
+		in.readFully(blob);
+		if ("OSMHeader".equals(type)) {
+			checkHeader(uncompress(blob));
+			return new byte[0];
+		}
+		if (!"OSMData".equals(type)) {
+			throw new IOException("Unknown blob type " + type + ".");
+		}
+		return blob;
+	}
+
+	private static byte[] uncompress(final byte[] blob) throws IOException {
+		ProtobufReader reader = new ProtobufReader(blob, 0, blob.length);
+		int rawSize = -1;
+		while (reader.hasMore()) {
+			int tag = reader.readTag();
+			switch (tag >>> 3) {
+				case 1:
+					return reader.readBytes();
+				case 2:
+					rawSize = (int) reader.readVarint();
+					break;
+				case 3: {
+					if (rawSize < 0 || rawSize > MAX_BLOB_SIZE) {
+						throw new IOException("Invalid raw size " + rawSize + " of compressed blob.");
+					}
+					int length = reader.readLength();
+					Inflater inflater = new Inflater();
+					try {
+						inflater.setInput(blob, reader.position, length);
+						byte[] data = new byte[rawSize];
+						int n = 0;
+						while (n < rawSize && !inflater.finished()) {
+							int read = inflater.inflate(data, n, rawSize - n);
+							if (read == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+								break;
+							}
+							n += read;
+						}
+						if (n != rawSize) {
+							throw new IOException("Compressed blob has " + n + " instead of " + rawSize + " bytes.");
+						}
+						return data;
+					} catch (DataFormatException e) {
+						throw new IOException(e);
+					} finally {
+						inflater.end();
+					}
+				}
+				case 4:
+				case 5:
+				case 6:
+				case 7:
+					throw new IOException("Unsupported compression of blob (field " + (tag >>> 3) + "), only zlib is supported.");
+				default:
+					reader.skip(tag);
+			}
+		}
+		throw new IOException("Blob without data.");
+	}
+
+	private static void checkHeader(final byte[] data) throws IOException {
+		ProtobufReader reader = new ProtobufReader(data, 0, data.length);
+		while (reader.hasMore()) {
+			int tag = reader.readTag();
+			if ((tag >>> 3) == 4) {
+				String feature = reader.readString();
+				if (!SUPPORTED_FEATURES.contains(feature)) {
+					throw new IOException("Unsupported required feature " + feature + " in OSM PBF file.");
+				}
+			} else {
+				reader.skip(tag);
+			}
+		}
+	}
+
+	private Block decodeBlock(final byte[] blob) throws IOException {
+		byte[] data = uncompress(blob);
+		ProtobufReader reader = new ProtobufReader(data, 0, data.length);
+		String[] strings = new String[0];
+		List<ProtobufReader> groups = new ArrayList<>();
+		long granularity = 100;
+		long latOffset = 0;
+		long lonOffset = 0;
+		while (reader.hasMore()) {
+			int tag = reader.readTag();
+			switch (tag >>> 3) {
+				case 1: strings = readStringTable(reader.readMessage()); break;
+				case 2: groups.add(reader.readMessage()); break;
+				case 17: granularity = reader.readVarint(); break;
+				case 19: latOffset = reader.readVarint(); break;
+				case 20: lonOffset = reader.readVarint(); break;
+				default: reader.skip(tag);
+			}
+		}
+		Block block = new Block();
+		for (ProtobufReader group : groups) {
+			while (group.hasMore()) {
+				int tag = group.readTag();
+				int field = tag >>> 3;
+				if (field == 1 && this.readNodes) {
+					readNode(group.readMessage(), granularity, latOffset, lonOffset, block);
+				} else if (field == 2 && this.readNodes) {
+					readDenseNodes(group.readMessage(), granularity, latOffset, lonOffset, block);
+				} else if (field == 3 && this.readWays) {
+					readWay(group.readMessage(), strings, block);
+				} else {
+					group.skip(tag);
+				}
+			}
+		}
+		return block;
+	}
+
+	private static String[] readStringTable(final ProtobufReader reader) {
+		List<String> strings = new ArrayList<>();
+		while (reader.hasMore()) {
+			int tag = reader.readTag();
+			if ((tag >>> 3) == 1) {
+				strings.add(reader.readString());
+			} else {
+				reader.skip(tag);
+			}
+		}
+		return strings.toArray(new String[strings.size()]);
+	}
+
+	/* the division is exact for coordinates with up to 9 decimals, which gives the same values as parsing the xml */
+	private static double toDegrees(final long offset, final long granularity, final long value) {
+		return (offset + granularity * value) / 1e9;
+	}
+
+	private static void readNode(final ProtobufReader reader, final long granularity, final long latOffset, final long lonOffset, final Block block) {
+		long id = 0;
+		long lat = 0;
+		long lon = 0;
+		while (reader.hasMore()) {
+			int tag = reader.readTag();
+			switch (tag >>> 3) {
+				case 1: id = reader.readSignedVarint(); break;
+				case 8: lat = reader.readSignedVarint(); break;
+				case 9: lon = reader.readSignedVarint(); break;
+				default: reader.skip(tag);
+			}
+		}
+		block.addNode(id, toDegrees(lonOffset, granularity, lon), toDegrees(latOffset, granularity, lat));
+	}
+
+	private static void readDenseNodes(final ProtobufReader reader, final long granularity, final long latOffset, final long lonOffset, final Block block) {
+		long[] ids = null;
+		long[] lats = null;
+		long[] lons = null;
+		while (reader.hasMore()) {
+			int tag = reader.readTag();
+			switch (tag >>> 3) {
+				case 1: ids = reader.readPackedSignedVarints(tag, ids); break;
+				case 8: lats = reader.readPackedSignedVarints(tag, lats); break;
+				case 9: lons = reader.readPackedSignedVarints(tag, lons); break;
+				default: reader.skip(tag);
+			}
+		}
+		if (ids == null) {
+			return;
+		}
+		long id = 0;
+		long lat = 0;
+		long lon = 0;
+		for (int i = 0; i < ids.length; i++) {
+			// all three are delta coded
+			id += ids[i];
+			lat += lats[i];
+			lon += lons[i];
+			block.addNode(id, toDegrees(lonOffset, granularity, lon), toDegrees(latOffset, granularity, lat));
+		}
+	}
+
+	private void readWay(final ProtobufReader reader, final String[] strings, final Block block) {
+		long id = 0;
+		long[] keys = new long[0];
+		long[] values = new long[0];
+		long[] refs = new long[0];
+		while (reader.hasMore()) {
+			int tag = reader.readTag();
+			switch (tag >>> 3) {
+				case 1: id = reader.readVarint(); break;
+				case 2: keys = reader.readPackedVarints(tag, keys); break;
+				case 3: values = reader.readPackedVarints(tag, values); break;
+				case 8: refs = reader.readPackedSignedVarints(tag, refs); break;
+				default: reader.skip(tag);
+			}
+		}
+		long ref = 0;
+		for (int i = 0; i < refs.length; i++) {
+			ref += refs[i]; // delta coded
+			refs[i] = ref;
+		}
+		String[] tags = new String[2 * keys.length];
+		int n = 0;
+		for (int i = 0; i < keys.length; i++) {
+			String key = strings[(int) keys[i]];
+			if (this.wayTagKeys == null || this.wayTagKeys.contains(key)) {
+				tags[n++] = key;
+				tags[n++] = strings[(int) values[i]];
+			}
+		}
+		block.ways.add(new Way(id, refs, n == tags.length ? tags : Arrays.copyOf(tags, n)));
+	}
+
+	private static final class Block {
+		private long[] nodeIds = new long[0];
+		private double[] nodeLons = new double[0];
+		private double[] nodeLats = new double[0];
+		private int nodeCount = 0;
+		private final List<Way> ways = new ArrayList<>();
+
+		void addNode(final long id, final double lon, final double lat) {
+			if (this.nodeCount == this.nodeIds.length) {
+				int capacity = Math.max(8000, 2 * this.nodeCount);
+				this.nodeIds = Arrays.copyOf(this.nodeIds, capacity);
+				this.nodeLons = Arrays.copyOf(this.nodeLons, capacity);
+				this.nodeLats = Arrays.copyOf(this.nodeLats, capacity);
+			}
+			this.nodeIds[this.nodeCount] = id;
+			this.nodeLons[this.nodeCount] = lon;
+			this.nodeLats[this.nodeCount] = lat;
+			this.nodeCount++;
+		}
+	}
+
+	private static final class Way {
+		private final long id;
+		private final long[] nodeIds;
+		private final String[] tags;
+
+		Way(final long id, final long[] nodeIds, final String[] tags) {
+			this.id = id;
+			this.nodeIds = nodeIds;
+			this.tags = tags;
+		}
+	}
+
+	/**
+	 * Reads the protobuf wire format from a part of a byte array.
+	 */
+	private static final class ProtobufReader {
+		private final byte[] data;
+		private int position;
+		private final int limit;
+
+		ProtobufReader(final byte[] data, final int offset, final int length) {
+			this.data = data;
+			this.position = offset;
+			this.limit = offset + length;
+		}
+
+		boolean hasMore() {
+			return this.position < this.limit;
+		}
+
+		int readTag() {
+			return (int) readVarint();
+		}
+
+		long readVarint() {
+			long value = 0;
+			for (int shift = 0; shift < 64; shift += 7) {
+				byte b = this.data[this.position++];
+				value |= (long) (b & 0x7f) << shift;
+				if (b >= 0) {
+					return value;
+				}
+			}
+			throw new IllegalStateException("malformed varint");
+		}
+
+		long readSignedVarint() {
+			long value = readVarint();
+			return (value >>> 1) ^ -(value & 1);
+		}
+
+		int readLength() {
+			int length = (int) readVarint();
+			if (length < 0 || this.position + length > this.limit) {
+				throw new IllegalStateException("invalid length " + length);
+			}
+			return length;
+		}
+
+		ProtobufReader readMessage() {
+			int length = readLength();
+			ProtobufReader message = new ProtobufReader(this.data, this.position, length);
+			this.position += length;
+			return message;
+		}
+
+		byte[] readBytes() {
+			int length = readLength();
+			byte[] bytes = Arrays.copyOfRange(this.data, this.position, this.position + length);
+			this.position += length;
+			return bytes;
+		}
+
+		String readString() {
+			int length = readLength();
+			String string = new String(this.data, this.position, length, StandardCharsets.UTF_8);
+			this.position += length;
+			return string;
+		}
+
+		/* repeated fields may be packed or not, and the parts of a field may be spread over the message */
+		long[] readPackedVarints(final int tag, final long[] previous) {
+			return readRepeated(tag, previous, false);
+		}
+
+		long[] readPackedSignedVarints(final int tag, final long[] previous) {
+			return readRepeated(tag, previous, true);
+		}
+
+		private long[] readRepeated(final int tag, final long[] previous, final boolean signed) {
+			int wireType = tag & 0x07;
+			long[] values = previous == null ? new long[0] : previous;
+			if (wireType == 0) {
+				values = Arrays.copyOf(values, values.length + 1);
+				values[values.length - 1] = signed ? readSignedVarint() : readVarint();
+				return values;
+			}
+			int length = readLength();
+			int end = this.position + length;
+			int n = values.length;
+			// every varint has at least one byte
+			values = Arrays.copyOf(values, n + length);
+			while (this.position < end) {
+				values[n++] = signed ? readSignedVarint() : readVarint();
+			}
+			return n == values.length ? values : Arrays.copyOf(values, n);
+		}
+
+		void skip(final int tag) {
+			switch (tag & 0x07) {
+				case 0: readVarint(); break;
+				case 1: this.position += 8; break;
+				case 2: {
+					int length = readLength();
+					this.position += length;
+					break;
+				}
+				case 5: this.position += 4; break;
+				default: throw new IllegalStateException("unsupported wire type " + (tag & 0x07));
+			}
+		}
+	}
+
+}
@@ -0,0 +1,176 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.utils.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Output stream that compresses the written data with several threads. The data is cut into blocks, and each
+ * block is compressed into a gzip member of its own. The members are written in order, so the result is a
+ * standard multi-member gzip file as described in RFC 1952, which can be read by {@link java.util.zip.GZIPInputStream},
+ * <code>gunzip</code> and all other gzip tools.
+ * <br>
+ * Since the blocks are compressed independently, the files are very slightly larger than the ones written by
+ * {@link GZIPOutputStream}. Blocks are only ended when they are full or the stream is closed, so {@link #flush()}
+ * can be called often (e.g. by writers flushing after each record) without affecting the compression.
+ */
+public final class ParallelGZIPOutputStream extends FilterOutputStream {
+
+	/*package*/ static final int BLOCK_SIZE = 1024 * 1024;
+
+	private static final AtomicInteger threadCounter = new AtomicInteger();
+
+	private final ExecutorService executor;
+	private final int maxPendingBlocks;
+	private final Queue<Future<byte[]>> pendingBlocks = new ArrayDeque<>();
+	private byte[] block = new byte[BLOCK_SIZE];
+	private int blockLength = 0;
+	private boolean memberWritten = false;
+	private boolean closed = false;
+
+	/**
+	 * @param out the stream to write the compressed data to.
+	 * @param numberOfThreads the number of threads compressing blocks.
+	 */
+	public ParallelGZIPOutputStream(final OutputStream out, final int numberOfThreads) {
+		super(out);
+		if (numberOfThreads < 1) {
+			throw new IllegalArgumentException("numberOfThreads must be at least 1, but is " + numberOfThreads);
+		}
+		this.executor = Executors.newFixedThreadPool(numberOfThreads, r -> {
+			Thread thread = new Thread(r, "ParallelGZIP-" + threadCounter.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+		// limits the memory used if the data is written faster than it can be compressed
+		this.maxPendingBlocks = 2 * numberOfThreads;
+	}
+
+	@Override
+	public void write(final int b) throws IOException {
+		ensureOpen();
+		this.block[this.blockLength++] = (byte) b;
+		if (this.blockLength == BLOCK_SIZE) {
+			submitBlock();
+		}
+	}
+
+	@Override
+	public void write(final byte[] b, int off, int len) throws IOException {
+		ensureOpen();
+		while (len > 0) {
+			int n = Math.min(len, BLOCK_SIZE - this.blockLength);
+			System.arraycopy(b, off, this.block, this.blockLength, n);
+			this.blockLength += n;
+			off += n;
+			len -= n;
+			if (this.blockLength == BLOCK_SIZE) {
+				submitBlock();
+			}
+		}
+	}
+
+	/**
+	 * Writes the blocks that are already compressed and flushes the underlying stream. This neither ends the current
+	 * block nor waits for blocks being compressed, so data written since the last full block is only written on
+	 * {@link #close()}.
+	 */
+	@Override
+	public void flush() throws IOException {
+		ensureOpen();
+		while (!this.pendingBlocks.isEmpty() && this.pendingBlocks.peek().isDone()) {
+			writeNextMember();
+		}
+		this.out.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (this.closed) {
+			return;
+		}
+		try {
+			if (this.blockLength > 0 || (!this.memberWritten && this.pendingBlocks.isEmpty())) {
+				// an empty gzip file still needs one (empty) member
+				submitBlock();
+			}
+			while (!this.pendingBlocks.isEmpty()) {
+				writeNextMember();
+			}
+			this.out.flush();
+		} finally {
+			this.closed = true;
+			this.executor.shutdownNow();
+			this.block = null;
+			this.out.close();
+		}
+	}
+
+	private void submitBlock() throws IOException {
+		final byte[] data = this.block;
+		final int length = this.blockLength;
+		this.pendingBlocks.add(this.executor.submit(() -> compress(data, length)));
+		this.block = new byte[BLOCK_SIZE];
+		this.blockLength = 0;
+		while (this.pendingBlocks.size() >= this.maxPendingBlocks) {
+			writeNextMember();
+		}
+	}
+
+	private void writeNextMember() throws IOException {
+		Future<byte[]> member = this.pendingBlocks.remove();
+		try {
+			this.out.write(member.get());
+			this.memberWritten = true;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("interrupted while waiting for a compressed block");
+		} catch (ExecutionException e) {
+			throw new IOException("could not compress block", e.getCause());
+		}
+	}
+
+	private static byte[] compress(final byte[] data, final int length) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(length / 4 + 64);
+		try (GZIPOutputStream gzip = new GZIPOutputStream(bytes, 64 * 1024)) {
+			gzip.write(data, 0, length);
+		}
+		return bytes.toByteArray();
+	}
+
+	private void ensureOpen() throws IOException {
+		if (this.closed) {
+			throw new IOException("Stream closed");
+		}
+	}
+
+}
@@ -21,6 +21,7 @@
 package org.matsim.counts;
 
 import org.matsim.analysis.IterationStopWatch;
+import org.matsim.analysis.LinkTimeBinValues;
 import org.matsim.analysis.VolumesAnalyzer;
 import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.network.Link;
@@ -38,16 +39,18 @@ import org.matsim.core.utils.geometry.transformations.TransformationFactory;
 import org.matsim.counts.algorithms.CountSimComparisonKMLWriter;
 import org.matsim.counts.algorithms.CountSimComparisonTableWriter;
 import org.matsim.counts.algorithms.CountsComparisonAlgorithm;
+import org.matsim.counts.algorithms.CountsComparisonAlgorithm.VolumesForId;
 import org.matsim.counts.algorithms.CountsHtmlAndGraphsWriter;
 import org.matsim.counts.algorithms.graphs.CountsErrorGraphCreator;
 import org.matsim.counts.algorithms.graphs.CountsLoadCurveGraphCreator;
 import org.matsim.counts.algorithms.graphs.CountsSimReal24GraphCreator;
 import org.matsim.counts.algorithms.graphs.CountsSimRealPerHourGraphCreator;
+import org.matsim.pt.transitSchedule.api.TransitStopFacility;
 
 import javax.inject.Inject;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Locale;
-import java.util.Map;
 import java.util.Set;
 
 /**
@@ -72,7 +75,9 @@ class CountsControlerListener implements StartupListener, IterationEndsListener
     @com.google.inject.Inject(optional=true)
     private Counts<Link> counts = null;
 
-    private final Map<Id<Link>, double[]> linkStats = new HashMap<>();
+    /** the hourly volumes at the count locations, added up over the iterations used, by link index */
+    private final LinkTimeBinValues linkStats = new LinkTimeBinValues(24);
+    private final List<Id<Link>> countedLinks = new ArrayList<>();
     private int iterationsUsed = 0;
 
     @Inject
@@ -90,9 +95,7 @@ class CountsControlerListener implements StartupListener, IterationEndsListener
 	@Override
 	public void notifyStartup(final StartupEvent controlerStartupEvent) {
         if (counts != null) {
-            for (Id<Link> linkId : counts.getCounts().keySet()) {
-                this.linkStats.put(linkId, new double[24]);
-            }
+            this.countedLinks.addAll(counts.getCounts().keySet());
         }
 	}
 
@@ -105,21 +108,20 @@ class CountsControlerListener implements StartupListener, IterationEndsListener
 
             if (createCountsInIteration(event.getIteration())) {
                 iterationStopwatch.beginOperation(OPERATION_COMPARECOUNTS);
-                Map<Id<Link>, double[]> averages;
-                if (this.iterationsUsed > 1) {
-                    averages = new HashMap<>();
-                    for (Map.Entry<Id<Link>, double[]> e : this.linkStats.entrySet()) {
-                        Id<Link> linkId = e.getKey();
-                        double[] totalVolumesPerHour = e.getValue();
-                        double[] averageVolumesPerHour = new double[totalVolumesPerHour.length];
-                        for (int i = 0; i < totalVolumesPerHour.length; i++) {
-                            averageVolumesPerHour[i] = totalVolumesPerHour[i] / this.iterationsUsed;
+                final int iterationsUsed = Math.max(1, this.iterationsUsed);
+                VolumesForId averages = new VolumesForId() {
+                    @Override
+                    public double[] getVolumesForStop(Id<TransitStopFacility> locationId) {
+                        double[] totalVolumesPerHour = linkStats.getValues(Id.create(locationId, Link.class).index());
+                        double[] averageVolumesPerHour = new double[24];
+                        if (totalVolumesPerHour != null) {
+                            for (int i = 0; i < totalVolumesPerHour.length; i++) {
+                                averageVolumesPerHour[i] = totalVolumesPerHour[i] / iterationsUsed;
+                            }
                         }
-                        averages.put(linkId, averageVolumesPerHour);
+                        return averageVolumesPerHour;
                     }
-                } else {
-                    averages = this.linkStats;
-                }
+                };
                 CountsComparisonAlgorithm cca = new CountsComparisonAlgorithm(averages, counts, network, config.getCountsScaleFactor());
                 if ((this.config.getDistanceFilter() != null) && (this.config.getDistanceFilterCenterNode() != null)) {
                     cca.setDistanceFilter(this.config.getDistanceFilter(), this.config.getDistanceFilterCenterNode());
@@ -189,39 +191,22 @@ class CountsControlerListener implements StartupListener, IterationEndsListener
 
 	private void addVolumes(final VolumesAnalyzer volumes) {
 		this.iterationsUsed++;
-		for (Map.Entry<Id<Link>, double[]> e : this.linkStats.entrySet()) {
-			Id<Link> linkId = e.getKey();
-			double[] volumesPerHour = e.getValue(); 
-			double[] newVolume = getVolumesPerHourForLink(volumes, linkId); 
-			for (int i = 0; i < 24; i++) {
-				volumesPerHour[i] += newVolume[i];
-			}
-		}
-	}
-	
-	private double[] getVolumesPerHourForLink(final VolumesAnalyzer volumes, final Id<Link> linkId) {
-		if (this.config.isFilterModes()) {
-			double[] newVolume = new double[24];
-			for (String mode : this.analyzedModes) {
-				double[] volumesForMode = volumes.getVolumesPerHourForLink(linkId, mode);
-				if (volumesForMode == null) continue;
-				for (int i = 0; i < 24; i++) {
-					newVolume[i] += volumesForMode[i];
+		for (Id<Link> linkId : this.countedLinks) {
+			// the volumes of the iteration are added directly to the totals of the link
+			double[] volumesPerHour = this.linkStats.getOrCreateValues(linkId.index());
+			if (this.config.isFilterModes()) {
+				for (String mode : this.analyzedModes) {
+					volumes.addVolumesPerHourForLink(linkId, mode, volumesPerHour);
 				}
+			} else {
+				volumes.addVolumesPerHourForLink(linkId, volumesPerHour);
 			}
-			return newVolume;
-		} else {
-			return volumes.getVolumesPerHourForLink(linkId);
 		}
 	}
 	
 	private void reset() {
 		this.iterationsUsed = 0;
-		for (double[] hours : this.linkStats.values()) {
-			for (int i = 0; i < hours.length; i++) {
-				hours[i] = 0.0;
-			}
-		}
+		this.linkStats.clear();
 	}
 
 }
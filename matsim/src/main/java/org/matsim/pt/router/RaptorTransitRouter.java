@@ -0,0 +1,530 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.pt.router;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.utils.geometry.CoordUtils;
+import org.matsim.facilities.Facility;
+
+/**
+ * Transit router using the round-based RAPTOR algorithm on the arrays of a {@link RaptorTransitRouterData}, instead
+ * of searching a least cost path in a {@link TransitRouterNetwork}. Round <i>k</i> of a query computes the earliest
+ * arrival at each stop using at most <i>k</i> transit vehicles, by scanning each transit route served by a stop
+ * improved in the previous round once, and by then walking from the improved stops to the stops connected by a
+ * transfer.
+ * <br>
+ * The rounds yield the journeys that are Pareto-optimal with respect to the arrival time and the number of transfers.
+ * Among them, {@link #calcRoute} returns the one with the lowest generalized cost, computed like the disutilities of
+ * {@link TransitRouterNetworkTravelTimeAndDisutility}, or a direct walk under the same conditions as
+ * {@link TransitRouterImpl}. Unlike the least cost path search, journeys that arrive later than a Pareto-optimal one
+ * with the same number of transfers are not considered, even if they would be cheaper.
+ * <br>
+ * {@link #calcRangeRoutes} answers range queries: it runs one query for each departure time within a time window,
+ * from the latest to the earliest, reusing the labels of the later departures (rRAPTOR), and returns the journeys
+ * that are Pareto-optimal with respect to the departure time, the arrival time and the number of transfers.
+ * <br>
+ * Instances should be created by {@link RaptorTransitRouterFactory}. An instance must not be used by several
+ * threads concurrently.
+ */
+public class RaptorTransitRouter extends AbstractTransitRouter implements TransitRouter {
+
+	/** the maximal number of transit vehicles used by a journey */
+	public static final int MAX_ROUNDS = 10;
+
+	private static final int ACCESS = -1;
+	private static final int CARRIED = -2;
+
+	private final RaptorTransitRouterData data;
+
+	/* labels by round and stop: the earliest time to board a vehicle at a stop, and how it was reached */
+	private final double[][] ready;
+	private final int[][] readyFrom;
+	/* labels by round and stop: the earliest arrival at a stop by a transit vehicle, and the ride it was reached with */
+	private final double[][] arrival;
+	private final int[][] arrivalBoardRouteStop;
+	private final int[][] arrivalAlightRouteStop;
+	private final double[][] arrivalTripStart;
+	private final double[] bestTarget = new double[MAX_ROUNDS + 1];
+	private final int[] bestTargetStop = new int[MAX_ROUNDS + 1];
+	private final boolean[] targetImproved = new boolean[MAX_ROUNDS + 1];
+	private final double[] egressTime;
+
+	private final boolean[] touched;
+	private final int[] touchedStops;
+	private int touchedCount = 0;
+	private final boolean[] marked;
+	private final int[] markedStops;
+	private int markedCount = 0;
+	private final int[] improvedStops;
+	private int improvedCount = 0;
+	private final boolean[] improved;
+	private final int[] routeScanFrom;
+	private final int[] markedRoutes;
+
+	/* deliberately package */ RaptorTransitRouter(final TransitRouterConfig config, final RaptorTransitRouterData data, final TransitTravelDisutility travelDisutility) {
+		super(config, travelDisutility);
+		this.data = data;
+		int stopCount = data.stops.length;
+		this.ready = new double[MAX_ROUNDS + 1][stopCount];
+		this.readyFrom = new int[MAX_ROUNDS + 1][stopCount];
+		this.arrival = new double[MAX_ROUNDS + 1][stopCount];
+		this.arrivalBoardRouteStop = new int[MAX_ROUNDS + 1][stopCount];
+		this.arrivalAlightRouteStop = new int[MAX_ROUNDS + 1][stopCount];
+		this.arrivalTripStart = new double[MAX_ROUNDS + 1][stopCount];
+		for (int k = 0; k <= MAX_ROUNDS; k++) {
+			Arrays.fill(this.ready[k], Double.POSITIVE_INFINITY);
+			Arrays.fill(this.arrival[k], Double.POSITIVE_INFINITY);
+		}
+		this.egressTime = new double[stopCount];
+		Arrays.fill(this.egressTime, Double.POSITIVE_INFINITY);
+		this.touched = new boolean[stopCount];
+		this.touchedStops = new int[stopCount];
+		this.marked = new boolean[stopCount];
+		this.markedStops = new int[stopCount];
+		this.improved = new boolean[stopCount];
+		this.improvedStops = new int[stopCount];
+		this.routeScanFrom = new int[data.routes.length];
+		Arrays.fill(this.routeScanFrom, -1);
+		this.markedRoutes = new int[data.routes.length];
+		Arrays.fill(this.bestTarget, Double.POSITIVE_INFINITY);
+	}
+
+	@Override
+	public List<Leg> calcRoute(final Facility fromFacility, final Facility toFacility, final double departureTime, final Person person) {
+		Coord fromCoord = fromFacility.getCoord();
+		Coord toCoord = toFacility.getCoord();
+		Collection<Integer> accessStops = this.data.getNearestStops(fromCoord, getConfig());
+		Collection<Integer> egressStops = this.data.getNearestStops(toCoord, getConfig());
+
+		List<Journey> journeys = new ArrayList<>();
+		try {
+			initEgress(toCoord, egressStops, person);
+			search(fromCoord, accessStops, departureTime, person);
+			collectJourneys(departureTime, fromCoord, toCoord, person, journeys);
+		} finally {
+			reset(egressStops);
+		}
+
+		Journey best = null;
+		for (Journey journey : journeys) {
+			if (best == null || journey.cost < best.cost) {
+				best = journey;
+			}
+		}
+		if (best == null) {
+			return this.createDirectWalkLegList(null, fromCoord, toCoord);
+		}
+		double directWalkCost = getWalkDisutility(person, fromCoord, toCoord);
+		if (directWalkCost * getConfig().getDirectWalkFactor() < best.cost) {
+			return this.createDirectWalkLegList(null, fromCoord, toCoord);
+		}
+		return best.legs;
+	}
+
+	/**
+	 * Searches the journeys by transit departing between <code>earliestDepartureTime</code> and
+	 * <code>latestDepartureTime</code>, both inclusive. Direct walks are not considered.
+	 *
+	 * @return the journeys that are Pareto-optimal with respect to the departure time (later is better), the arrival
+	 * time and the number of transfers, sorted by departure time and number of transfers.
+	 */
+	public List<Journey> calcRangeRoutes(final Facility fromFacility, final Facility toFacility,
+			final double earliestDepartureTime, final double latestDepartureTime, final Person person) {
+		Coord fromCoord = fromFacility.getCoord();
+		Coord toCoord = toFacility.getCoord();
+		Collection<Integer> accessStops = this.data.getNearestStops(fromCoord, getConfig());
+		Collection<Integer> egressStops = this.data.getNearestStops(toCoord, getConfig());
+		double[] departureTimes = getDepartureTimes(fromCoord, accessStops, earliestDepartureTime, latestDepartureTime, person);
+
+		List<Journey> journeys = new ArrayList<>();
+		try {
+			initEgress(toCoord, egressStops, person);
+			for (int i = departureTimes.length - 1; i >= 0; i--) {
+				search(fromCoord, accessStops, departureTimes[i], person);
+				collectJourneys(departureTimes[i], fromCoord, toCoord, person, journeys);
+			}
+		} finally {
+			reset(egressStops);
+		}
+
+		List<Journey> result = new ArrayList<>();
+		for (Journey journey : journeys) {
+			boolean dominated = false;
+			for (Journey other : journeys) {
+				if (other != journey && other.dominates(journey)) {
+					dominated = true;
+					break;
+				}
+			}
+			if (!dominated) {
+				result.add(journey);
+			}
+		}
+		result.sort(Comparator.comparingDouble(Journey::getDepartureTime).thenComparingInt(Journey::getNumberOfTransfers));
+		return result;
+	}
+
+	/* the times at which one has to leave the origin to catch a departure at one of the access stops */
+	private double[] getDepartureTimes(final Coord fromCoord, final Collection<Integer> accessStops,
+			final double earliestDepartureTime, final double latestDepartureTime, final Person person) {
+		RaptorTransitRouterData d = this.data;
+		double[] times = new double[16];
+		int count = 0;
+		for (int stop : accessStops) {
+			double walkTime = getWalkTime(person, fromCoord, d.stops[stop].getCoord());
+			for (int i = d.stopFirstRouteStop[stop]; i < d.stopFirstRouteStop[stop + 1]; i++) {
+				int routeStop = d.stopRouteStops[i];
+				int route = d.routeStopRoute[routeStop];
+				if (routeStop == d.routeFirstStop[route + 1] - 1) {
+					continue;
+				}
+				double offset = d.routeStopDepartureOffset[routeStop] - walkTime;
+				for (double tripStart : d.routeDepartures[route]) {
+					double time = tripStart + offset;
+					time -= Math.floor((time - earliestDepartureTime) / TransitRouterNetworkTravelTimeAndDisutility.MIDNIGHT)
+							* TransitRouterNetworkTravelTimeAndDisutility.MIDNIGHT;
+					for (; time <= latestDepartureTime; time += TransitRouterNetworkTravelTimeAndDisutility.MIDNIGHT) {
+						if (count == times.length) {
+							times = Arrays.copyOf(times, 2 * count);
+						}
+						times[count++] = time;
+					}
+				}
+			}
+		}
+		times = Arrays.copyOf(times, count);
+		Arrays.sort(times);
+		int distinct = 0;
+		for (int i = 0; i < count; i++) {
+			if (distinct == 0 || times[i] != times[distinct - 1]) {
+				times[distinct++] = times[i];
+			}
+		}
+		return Arrays.copyOf(times, distinct);
+	}
+
+	private void initEgress(final Coord toCoord, final Collection<Integer> egressStops, final Person person) {
+		for (int stop : egressStops) {
+			this.egressTime[stop] = getWalkTime(person, this.data.stops[stop].getCoord(), toCoord);
+		}
+	}
+
+	/* runs the rounds for one departure time, keeping the labels of the previous search since the last reset */
+	private void search(final Coord fromCoord, final Collection<Integer> accessStops, final double departureTime, final Person person) {
+		Arrays.fill(this.targetImproved, false);
+		for (int stop : accessStops) {
+			double time = departureTime + getWalkTime(person, fromCoord, this.data.stops[stop].getCoord());
+			if (time < this.ready[0][stop]) {
+				this.ready[0][stop] = time;
+				this.readyFrom[0][stop] = ACCESS;
+				touch(stop);
+				mark(stop);
+			}
+		}
+		for (int k = 1; k <= MAX_ROUNDS && this.markedCount > 0; k++) {
+			carry(k);
+			scanRoutes(k);
+			relaxTransfers(k);
+		}
+		for (int i = 0; i < this.markedCount; i++) {
+			this.marked[this.markedStops[i]] = false;
+		}
+		this.markedCount = 0;
+	}
+
+	/* a journey with at most k vehicles is also one with at most k + 1 vehicles */
+	private void carry(final int k) {
+		for (int i = 0; i < this.touchedCount; i++) {
+			int stop = this.touchedStops[i];
+			if (this.ready[k - 1][stop] < this.ready[k][stop]) {
+				this.ready[k][stop] = this.ready[k - 1][stop];
+				this.readyFrom[k][stop] = CARRIED;
+			}
+			if (this.arrival[k - 1][stop] < this.arrival[k][stop]) {
+				this.arrival[k][stop] = this.arrival[k - 1][stop];
+				this.arrivalBoardRouteStop[k][stop] = CARRIED;
+			}
+		}
+		if (this.bestTarget[k - 1] < this.bestTarget[k]) {
+			this.bestTarget[k] = this.bestTarget[k - 1];
+		}
+	}
+
+	private void scanRoutes(final int k) {
+		RaptorTransitRouterData d = this.data;
+		int routeCount = 0;
+		for (int i = 0; i < this.markedCount; i++) {
+			int stop = this.markedStops[i];
+			this.marked[stop] = false;
+			for (int j = d.stopFirstRouteStop[stop]; j < d.stopFirstRouteStop[stop + 1]; j++) {
+				int routeStop = d.stopRouteStops[j];
+				int route = d.routeStopRoute[routeStop];
+				if (this.routeScanFrom[route] < 0) {
+					this.markedRoutes[routeCount++] = route;
+					this.routeScanFrom[route] = routeStop;
+				} else if (routeStop < this.routeScanFrom[route]) {
+					this.routeScanFrom[route] = routeStop;
+				}
+			}
+		}
+		this.markedCount = 0;
+
+		double[] previousReady = this.ready[k - 1];
+		double[] arrivals = this.arrival[k];
+		for (int i = 0; i < routeCount; i++) {
+			int route = this.markedRoutes[i];
+			int lastRouteStop = d.routeFirstStop[route + 1] - 1;
+			int boardRouteStop = -1;
+			double tripStart = Double.NaN;
+			for (int routeStop = this.routeScanFrom[route]; routeStop <= lastRouteStop; routeStop++) {
+				int stop = d.routeStopStop[routeStop];
+				if (boardRouteStop >= 0) {
+					double time = tripStart + d.routeStopArrivalOffset[routeStop];
+					if (time < arrivals[stop] && time < this.bestTarget[k]) {
+						arrivals[stop] = time;
+						this.arrivalBoardRouteStop[k][stop] = boardRouteStop;
+						this.arrivalAlightRouteStop[k][stop] = routeStop;
+						this.arrivalTripStart[k][stop] = tripStart;
+						touch(stop);
+						if (!this.improved[stop]) {
+							this.improved[stop] = true;
+							this.improvedStops[this.improvedCount++] = stop;
+						}
+						double targetTime = time + this.egressTime[stop];
+						if (targetTime < this.bestTarget[k]) {
+							this.bestTarget[k] = targetTime;
+							this.bestTargetStop[k] = stop;
+							this.targetImproved[k] = true;
+						}
+					}
+				}
+				double readyTime = previousReady[stop];
+				if (routeStop < lastRouteStop && readyTime < Double.POSITIVE_INFINITY
+						&& (boardRouteStop < 0 || readyTime <= tripStart + d.routeStopDepartureOffset[routeStop])) {
+					double start = nextTripStart(route, d.routeStopDepartureOffset[routeStop], readyTime);
+					if (boardRouteStop < 0 || start < tripStart) {
+						tripStart = start;
+						boardRouteStop = routeStop;
+					}
+				}
+			}
+			this.routeScanFrom[route] = -1;
+		}
+	}
+
+	private void relaxTransfers(final int k) {
+		RaptorTransitRouterData d = this.data;
+		for (int i = 0; i < this.improvedCount; i++) {
+			int stop = this.improvedStops[i];
+			this.improved[stop] = false;
+			double time = this.arrival[k][stop];
+			relax(k, stop, stop, time + d.sameStopTransferTime[stop]);
+			for (int t = d.stopFirstTransfer[stop]; t < d.stopFirstTransfer[stop + 1]; t++) {
+				relax(k, stop, d.transferToStop[t], time + d.transferTime[t]);
+			}
+		}
+		this.improvedCount = 0;
+	}
+
+	private void relax(final int k, final int fromStop, final int toStop, final double time) {
+		if (time < this.ready[k][toStop]) {
+			this.ready[k][toStop] = time;
+			this.readyFrom[k][toStop] = fromStop;
+			touch(toStop);
+			mark(toStop);
+		}
+	}
+
+	/**
+	 * @return the start of the earliest trip of the route departing at the stop with the given offset not before
+	 * the given time, wrapping around at midnight like {@link PreparedTransitSchedule}.
+	 */
+	private double nextTripStart(final int route, final double offset, final double time) {
+		double[] departures = this.data.routeDepartures[route];
+		double timeAtTerminus = time - offset;
+		if (timeAtTerminus >= TransitRouterNetworkTravelTimeAndDisutility.MIDNIGHT) {
+			timeAtTerminus = timeAtTerminus % TransitRouterNetworkTravelTimeAndDisutility.MIDNIGHT;
+		}
+		if (timeAtTerminus < 0) {
+			timeAtTerminus += TransitRouterNetworkTravelTimeAndDisutility.MIDNIGHT;
+		}
+		int pos = Arrays.binarySearch(departures, timeAtTerminus);
+		if (pos < 0) {
+			pos = -(pos + 1);
+		}
+		if (pos >= departures.length) {
+			pos = 0;
+		}
+		double start = departures[pos];
+		while (start + offset < time) {
+			start += TransitRouterNetworkTravelTimeAndDisutility.MIDNIGHT;
+		}
+		return start;
+	}
+
+	private void touch(final int stop) {
+		if (!this.touched[stop]) {
+			this.touched[stop] = true;
+			this.touchedStops[this.touchedCount++] = stop;
+		}
+	}
+
+	private void mark(final int stop) {
+		if (!this.marked[stop]) {
+			this.marked[stop] = true;
+			this.markedStops[this.markedCount++] = stop;
+		}
+	}
+
+	private void reset(final Collection<Integer> egressStops) {
+		for (int i = 0; i < this.touchedCount; i++) {
+			int stop = this.touchedStops[i];
+			this.touched[stop] = false;
+			for (int k = 0; k <= MAX_ROUNDS; k++) {
+				this.ready[k][stop] = Double.POSITIVE_INFINITY;
+				this.arrival[k][stop] = Double.POSITIVE_INFINITY;
+			}
+		}
+		this.touchedCount = 0;
+		for (int stop : egressStops) {
+			this.egressTime[stop] = Double.POSITIVE_INFINITY;
+		}
+		Arrays.fill(this.bestTarget, Double.POSITIVE_INFINITY);
+	}
+
+	/* adds the journeys with the arrival times improved by the last search */
+	private void collectJourneys(final double departureTime, final Coord fromCoord, final Coord toCoord, final Person person,
+			final List<Journey> journeys) {
+		for (int k = 1; k <= MAX_ROUNDS; k++) {
+			if (this.targetImproved[k]) {
+				journeys.add(createJourney(k, departureTime, fromCoord, toCoord, person));
+			}
+		}
+	}
+
+	private Journey createJourney(final int rounds, final double departureTime, final Coord fromCoord, final Coord toCoord, final Person person) {
+		RaptorTransitRouterData d = this.data;
+		TransitRouterConfig config = getConfig();
+		List<RouteSegment> segments = new ArrayList<>();
+		int stop = this.bestTargetStop[rounds];
+		double cost = getWalkDisutility(person, d.stops[stop].getCoord(), toCoord);
+		int k = rounds;
+		while (true) {
+			while (this.arrivalBoardRouteStop[k][stop] == CARRIED) {
+				k--;
+			}
+			int boardRouteStop = this.arrivalBoardRouteStop[k][stop];
+			int alightRouteStop = this.arrivalAlightRouteStop[k][stop];
+			double tripStart = this.arrivalTripStart[k][stop];
+			int route = d.routeStopRoute[boardRouteStop];
+			int boardStop = d.routeStopStop[boardRouteStop];
+			int j = k - 1;
+			while (this.readyFrom[j][boardStop] == CARRIED) {
+				j--;
+			}
+			double readyTime = this.ready[j][boardStop];
+			double travelTime = tripStart + d.routeStopArrivalOffset[alightRouteStop] - readyTime;
+			double waitTime = Math.max(0.0, tripStart + d.routeStopArrivalOffset[boardRouteStop] - readyTime);
+			double distance = d.routeStopDistance[alightRouteStop] - d.routeStopDistance[boardRouteStop];
+			cost += - (travelTime - waitTime) * config.getMarginalUtilityOfTravelTimePt_utl_s()
+					- waitTime * config.getMarginalUtilityOfWaitingPt_utl_s()
+					- distance * config.getMarginalUtilityOfTravelDistancePt_utl_m();
+			segments.add(new RouteSegment(d.stops[boardStop], d.stops[stop], travelTime,
+					d.routeLines[route].getId(), d.routes[route].getId()));
+
+			int fromStop = this.readyFrom[j][boardStop];
+			if (fromStop == ACCESS) {
+				cost += getWalkDisutility(person, fromCoord, d.stops[boardStop].getCoord());
+				break;
+			}
+			double transferTime = readyTime - this.arrival[j][fromStop];
+			double walkDistance = CoordUtils.calcEuclideanDistance(d.stops[fromStop].getCoord(), d.stops[boardStop].getCoord());
+			double walkTime = Math.min(transferTime, walkDistance / config.getBeelineWalkSpeed());
+			cost += - walkTime * config.getMarginalUtilityOfTravelTimeWalk_utl_s()
+					- walkDistance * config.getMarginalUtilityOfTravelDistanceWalk_utl_m()
+					- (transferTime - walkTime) * config.getMarginalUtilityOfWaitingPt_utl_s()
+					- config.getUtilityOfLineSwitch_utl();
+			segments.add(new RouteSegment(d.stops[fromStop], d.stops[boardStop], transferTime, null, null));
+			stop = fromStop;
+			k = j;
+		}
+		Collections.reverse(segments);
+		TransitPassengerRoute passengerRoute = new TransitPassengerRoute(cost, segments);
+		List<Leg> legs = convertPassengerRouteToLegList(departureTime, passengerRoute, fromCoord, toCoord, person);
+		return new Journey(departureTime, this.bestTarget[rounds], rounds - 1, cost, legs);
+	}
+
+	/**
+	 * A journey found by a range query.
+	 */
+	public static final class Journey {
+		private final double departureTime;
+		private final double arrivalTime;
+		private final int transfers;
+		private final double cost;
+		private final List<Leg> legs;
+
+		Journey(final double departureTime, final double arrivalTime, final int transfers, final double cost, final List<Leg> legs) {
+			this.departureTime = departureTime;
+			this.arrivalTime = arrivalTime;
+			this.transfers = transfers;
+			this.cost = cost;
+			this.legs = legs;
+		}
+
+		boolean dominates(final Journey other) {
+			return this.departureTime >= other.departureTime && this.arrivalTime <= other.arrivalTime && this.transfers <= other.transfers
+					&& (this.departureTime > other.departureTime || this.arrivalTime < other.arrivalTime || this.transfers < other.transfers);
+		}
+
+		/** @return the time at which the journey leaves the origin */
+		public double getDepartureTime() {
+			return this.departureTime;
+		}
+
+		/** @return the time at which the journey reaches the destination */
+		public double getArrivalTime() {
+			return this.arrivalTime;
+		}
+
+		public int getNumberOfTransfers() {
+			return this.transfers;
+		}
+
+		/** @return the generalized cost of the journey, as a positive disutility */
+		public double getTravelCost() {
+			return this.cost;
+		}
+
+		public List<Leg> getLegs() {
+			return this.legs;
+		}
+	}
+
+}
@@ -0,0 +1,263 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.pt.router;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.core.utils.collections.QuadTree;
+import org.matsim.core.utils.geometry.CoordUtils;
+import org.matsim.core.utils.misc.Time;
+import org.matsim.pt.transitSchedule.api.Departure;
+import org.matsim.pt.transitSchedule.api.MinimalTransferTimes;
+import org.matsim.pt.transitSchedule.api.TransitLine;
+import org.matsim.pt.transitSchedule.api.TransitRoute;
+import org.matsim.pt.transitSchedule.api.TransitRouteStop;
+import org.matsim.pt.transitSchedule.api.TransitSchedule;
+import org.matsim.pt.transitSchedule.api.TransitStopFacility;
+
+/**
+ * The transit schedule as flat arrays for the {@link RaptorTransitRouter}. Built once per schedule and only read
+ * afterwards, so it can be shared by the routers of all threads.
+ * <br>
+ * Stops, transit routes and route stops are numbered consecutively. The route stops of a transit route occupy
+ * a contiguous range of indices, in the order of the route. Since all departures of a transit route use the
+ * same offsets, the trips of a route are represented by their sorted departure times at the first stop.
+ * <br>
+ * Transfers connect each stop with the stops within the beeline walk connection distance, and with the stops for
+ * which the schedule defines {@link MinimalTransferTimes}. The transfer time is the minimal transfer time if one is
+ * defined, otherwise the beeline walk time plus the additional transfer time of the {@link TransitRouterConfig}.
+ */
+/* deliberately package */ final class RaptorTransitRouterData {
+	private static final Logger log = Logger.getLogger(RaptorTransitRouterData.class);
+
+	final TransitStopFacility[] stops;
+	final Map<TransitStopFacility, Integer> stopIndices;
+	final QuadTree<Integer> stopsQuadTree;
+
+	final TransitLine[] routeLines;
+	final TransitRoute[] routes;
+	/** the first route stop of each route, with an additional entry for the end of the last route */
+	final int[] routeFirstStop;
+	/** the sorted departure times of the trips of each route, at its first stop */
+	final double[][] routeDepartures;
+
+	final int[] routeStopStop;
+	final int[] routeStopRoute;
+	final double[] routeStopArrivalOffset;
+	final double[] routeStopDepartureOffset;
+	/** the beeline distance from the first stop of the route, along its stops */
+	final double[] routeStopDistance;
+
+	/** the route stops of each stop, from <code>stopFirstRouteStop[s]</code> to <code>stopFirstRouteStop[s + 1]</code> */
+	final int[] stopFirstRouteStop;
+	final int[] stopRouteStops;
+
+	/** the transfers from each stop, from <code>stopFirstTransfer[s]</code> to <code>stopFirstTransfer[s + 1]</code> */
+	final int[] stopFirstTransfer;
+	final int[] transferToStop;
+	final double[] transferTime;
+	final double[] transferDistance;
+	/** the time needed to change the vehicle without leaving the stop */
+	final double[] sameStopTransferTime;
+
+	RaptorTransitRouterData(final TransitSchedule schedule, final TransitRouterConfig config) {
+		log.info("start creating raptor transit router data");
+		Map<TransitStopFacility, Integer> stopIndices = new LinkedHashMap<>();
+		List<TransitLine> lines = new ArrayList<>();
+		List<TransitRoute> routes = new ArrayList<>();
+		int routeStopCount = 0;
+		for (TransitLine line : schedule.getTransitLines().values()) {
+			for (TransitRoute route : line.getRoutes().values()) {
+				if (route.getStops().size() < 2 || route.getDepartures().isEmpty()) {
+					continue;
+				}
+				lines.add(line);
+				routes.add(route);
+				for (TransitRouteStop routeStop : route.getStops()) {
+					stopIndices.putIfAbsent(routeStop.getStopFacility(), stopIndices.size());
+				}
+				routeStopCount += route.getStops().size();
+			}
+		}
+
+		this.stops = stopIndices.keySet().toArray(new TransitStopFacility[stopIndices.size()]);
+		this.stopIndices = stopIndices;
+		this.stopsQuadTree = createQuadTree(this.stops);
+
+		int routeCount = routes.size();
+		this.routeLines = lines.toArray(new TransitLine[routeCount]);
+		this.routes = routes.toArray(new TransitRoute[routeCount]);
+		this.routeFirstStop = new int[routeCount + 1];
+		this.routeDepartures = new double[routeCount][];
+		this.routeStopStop = new int[routeStopCount];
+		this.routeStopRoute = new int[routeStopCount];
+		this.routeStopArrivalOffset = new double[routeStopCount];
+		this.routeStopDepartureOffset = new double[routeStopCount];
+		this.routeStopDistance = new double[routeStopCount];
+		int[] routeStopsPerStop = new int[this.stops.length];
+		int routeStopIndex = 0;
+		for (int r = 0; r < routeCount; r++) {
+			this.routeFirstStop[r] = routeStopIndex;
+			TransitRoute route = this.routes[r];
+			double distance = 0.0;
+			Coord previousCoord = null;
+			for (TransitRouteStop routeStop : route.getStops()) {
+				int stop = stopIndices.get(routeStop.getStopFacility());
+				double arrivalOffset = routeStop.getArrivalOffset();
+				double departureOffset = routeStop.getDepartureOffset();
+				if (Time.isUndefinedTime(arrivalOffset)) {
+					arrivalOffset = departureOffset;
+				}
+				if (Time.isUndefinedTime(departureOffset)) {
+					departureOffset = arrivalOffset;
+				}
+				Coord coord = routeStop.getStopFacility().getCoord();
+				if (previousCoord != null) {
+					distance += CoordUtils.calcEuclideanDistance(previousCoord, coord);
+				}
+				previousCoord = coord;
+				this.routeStopStop[routeStopIndex] = stop;
+				this.routeStopRoute[routeStopIndex] = r;
+				this.routeStopArrivalOffset[routeStopIndex] = arrivalOffset;
+				this.routeStopDepartureOffset[routeStopIndex] = departureOffset;
+				this.routeStopDistance[routeStopIndex] = distance;
+				routeStopsPerStop[stop]++;
+				routeStopIndex++;
+			}
+			double[] departures = new double[route.getDepartures().size()];
+			int i = 0;
+			for (Departure departure : route.getDepartures().values()) {
+				departures[i++] = departure.getDepartureTime();
+			}
+			Arrays.sort(departures);
+			this.routeDepartures[r] = departures;
+		}
+		this.routeFirstStop[routeCount] = routeStopIndex;
+
+		this.stopFirstRouteStop = new int[this.stops.length + 1];
+		for (int s = 0; s < this.stops.length; s++) {
+			this.stopFirstRouteStop[s + 1] = this.stopFirstRouteStop[s] + routeStopsPerStop[s];
+		}
+		this.stopRouteStops = new int[routeStopCount];
+		int[] next = Arrays.copyOf(this.stopFirstRouteStop, this.stops.length);
+		for (int rs = 0; rs < routeStopCount; rs++) {
+			this.stopRouteStops[next[this.routeStopStop[rs]]++] = rs;
+		}
+
+		// transfers
+		MinimalTransferTimes minimalTransferTimes = schedule.getMinimalTransferTimes();
+		List<Map<Integer, Double>> transfers = new ArrayList<>(this.stops.length);
+		this.sameStopTransferTime = new double[this.stops.length];
+		for (int s = 0; s < this.stops.length; s++) {
+			TransitStopFacility stop = this.stops[s];
+			this.sameStopTransferTime[s] = minimalTransferTimes.get(stop.getId(), stop.getId(), config.getAdditionalTransferTime());
+			Map<Integer, Double> stopTransfers = new HashMap<>();
+			Coord coord = stop.getCoord();
+			for (int toStop : this.stopsQuadTree.getDisk(coord.getX(), coord.getY(), config.getBeelineWalkConnectionDistance())) {
+				if (toStop != s) {
+					double walkTime = CoordUtils.calcEuclideanDistance(coord, this.stops[toStop].getCoord()) / config.getBeelineWalkSpeed();
+					stopTransfers.put(toStop, walkTime + config.getAdditionalTransferTime());
+				}
+			}
+			transfers.add(stopTransfers);
+		}
+		MinimalTransferTimes.MinimalTransferTimesIterator iterator = minimalTransferTimes.iterator();
+		while (iterator.hasNext()) {
+			iterator.next();
+			Integer fromStop = stopIndices.get(schedule.getFacilities().get(iterator.getFromStopId()));
+			Integer toStop = stopIndices.get(schedule.getFacilities().get(iterator.getToStopId()));
+			if (fromStop != null && toStop != null && !fromStop.equals(toStop)) {
+				transfers.get(fromStop).put(toStop, iterator.getSeconds());
+			}
+		}
+		int transferCount = 0;
+		for (Map<Integer, Double> stopTransfers : transfers) {
+			transferCount += stopTransfers.size();
+		}
+		this.stopFirstTransfer = new int[this.stops.length + 1];
+		this.transferToStop = new int[transferCount];
+		this.transferTime = new double[transferCount];
+		this.transferDistance = new double[transferCount];
+		int t = 0;
+		for (int s = 0; s < this.stops.length; s++) {
+			this.stopFirstTransfer[s] = t;
+			for (Map.Entry<Integer, Double> transfer : transfers.get(s).entrySet()) {
+				this.transferToStop[t] = transfer.getKey();
+				this.transferTime[t] = transfer.getValue();
+				this.transferDistance[t] = CoordUtils.calcEuclideanDistance(this.stops[s].getCoord(), this.stops[transfer.getKey()].getCoord());
+				t++;
+			}
+		}
+		this.stopFirstTransfer[this.stops.length] = t;
+
+		log.info("raptor transit router data statistics:");
+		log.info(" # stops:       " + this.stops.length);
+		log.info(" # routes:      " + routeCount);
+		log.info(" # route stops: " + routeStopCount);
+		log.info(" # transfers:   " + transferCount);
+	}
+
+	private static QuadTree<Integer> createQuadTree(final TransitStopFacility[] stops) {
+		double minX = Double.POSITIVE_INFINITY;
+		double minY = Double.POSITIVE_INFINITY;
+		double maxX = Double.NEGATIVE_INFINITY;
+		double maxY = Double.NEGATIVE_INFINITY;
+		for (TransitStopFacility stop : stops) {
+			Coord c = stop.getCoord();
+			minX = Math.min(minX, c.getX());
+			minY = Math.min(minY, c.getY());
+			maxX = Math.max(maxX, c.getX());
+			maxY = Math.max(maxY, c.getY());
+		}
+		if (stops.length == 0) {
+			minX = minY = maxX = maxY = 0.0;
+		}
+		QuadTree<Integer> quadTree = new QuadTree<>(minX, minY, maxX, maxY);
+		for (int s = 0; s < stops.length; s++) {
+			quadTree.put(stops[s].getCoord().getX(), stops[s].getCoord().getY(), s);
+		}
+		return quadTree;
+	}
+
+	/**
+	 * @return the stops within the search radius of the coordinate, or if there are less than two, the stops within
+	 * the extension radius of the distance to the nearest stop, like {@link TransitRouterImpl}.
+	 */
+	Collection<Integer> getNearestStops(final Coord coord, final TransitRouterConfig config) {
+		Collection<Integer> nearestStops = this.stopsQuadTree.getDisk(coord.getX(), coord.getY(), config.getSearchRadius());
+		if (nearestStops.size() < 2) {
+			Integer nearestStop = this.stopsQuadTree.getClosest(coord.getX(), coord.getY());
+			if (nearestStop != null) {
+				double distance = CoordUtils.calcEuclideanDistance(coord, this.stops[nearestStop].getCoord());
+				nearestStops = this.stopsQuadTree.getDisk(coord.getX(), coord.getY(), distance + config.getExtensionRadius());
+			}
+		}
+		return nearestStops;
+	}
+
+}
@@ -25,6 +25,7 @@ import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.network.Link;
 import org.matsim.api.core.v01.population.Person;
 import org.matsim.core.gbl.Gbl;
+import org.matsim.vis.snapshotwriters.AgentSnapshotInfo.AgentState;
 
 /**
  * translation of physical position (e.g. odometer distance on link, lane) into visualization position
@@ -87,6 +88,27 @@ public class AgentSnapshotInfoFactory {
 		calculateAndSetPosition(info, startCoord, endCoord, distanceOnLink, curveLength, lanePosition) ;
 		return info;
 	}
+
+	/**
+	 * Same as {@link #createAgentSnapshotInfo(Id, Coord, Coord, double, Integer, double)}, but writes the position
+	 * straight into the frame instead of creating an {@link AgentSnapshotInfo}. Nothing is allocated here.
+	 *
+	 * @param state may be <code>null</code>
+	 */
+	public void addAgentPosition(SnapshotFrame frame, int agentIndex, int linkIndex, Coord startCoord, Coord endCoord,
+			double distanceOnLink, int lane, double curveLength, AgentState state, double colorValueBetweenZeroAndOne) {
+		double lanePosition = this.linkWidthCalculator.calculateLanePosition(lane);
+		Gbl.assertNotNull( startCoord );
+		Gbl.assertNotNull( endCoord );
+		double dx = -startCoord.getX() + endCoord.getX();
+		double dy = -startCoord.getY() + endCoord.getY();
+		double theta = calculateTheta(dx, dy);
+		double correction = calculateCorrection(dx, dy, curveLength);
+		frame.add(agentIndex, linkIndex,
+				startCoord.getX() + (Math.cos(theta) * distanceOnLink * correction) + (Math.sin(theta) * lanePosition),
+				startCoord.getY() + Math.sin(theta) * distanceOnLink * correction - Math.cos(theta) * lanePosition,
+				state, colorValueBetweenZeroAndOne);
+	}
 	
 	
 	/**
@@ -98,6 +120,21 @@ public class AgentSnapshotInfoFactory {
 
 		double dx = -startCoord.getX() + endCoord.getX();
 		double dy = -startCoord.getY() + endCoord.getY();
+		double theta = calculateTheta(dx, dy);
+		double correction = calculateCorrection(dx, dy, lengthOfCurve);
+		
+		info.setEasting( startCoord.getX() 
+				+ (Math.cos(theta) * odometerOnLink * correction)
+				+ (Math.sin(theta) * lanePosition ) ) ;
+		
+		info.setNorthing( startCoord.getY() 
+				+ Math.sin(theta) * odometerOnLink  * correction 
+				- Math.cos(theta) * lanePosition  );
+		
+		info.setAzimuth( theta / TWO_PI * 360. ) ;
+	}
+
+	private static double calculateTheta(double dx, double dy) {
 		double theta = 0.0;
 		if (dx > 0) {
 			theta = Math.atan(dy/dx);
@@ -113,7 +150,10 @@ public class AgentSnapshotInfoFactory {
 			}
 		}
 		if (theta < 0.0) theta += TWO_PI;
+		return theta;
+	}
 
+	private static double calculateCorrection(double dx, double dy, double lengthOfCurve) {
 		double euclideanLength = Math.sqrt( dx*dx + dy*dy ) ;
 		// since we already have two atan, two cos and two sin in the method, it seems to make little sense to save on the sqrt. (?) kai, apr'16
 
@@ -128,16 +168,7 @@ public class AgentSnapshotInfoFactory {
 		if ( lengthOfCurve != 0 ){
 			correction = euclideanLength / lengthOfCurve;
 		}
-		
-		info.setEasting( startCoord.getX() 
-				+ (Math.cos(theta) * odometerOnLink * correction)
-				+ (Math.sin(theta) * lanePosition ) ) ;
-		
-		info.setNorthing( startCoord.getY() 
-				+ Math.sin(theta) * odometerOnLink  * correction 
-				- Math.cos(theta) * lanePosition  );
-		
-		info.setAzimuth( theta / TWO_PI * 360. ) ;
+		return correction;
 	}
 
 	/**
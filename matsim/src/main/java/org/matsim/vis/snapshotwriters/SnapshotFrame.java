@@ -0,0 +1,179 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.vis.snapshotwriters;
+
+import java.util.Arrays;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.vis.snapshotwriters.AgentSnapshotInfo.AgentState;
+
+/**
+ * The positions of all agents on the network at one time step, stored in primitive arrays. The agents and links are
+ * referenced by the index of their ids, see {@link Id#index()}.
+ * <br>
+ * Frames are filled by a {@link SnapshotFrameProducer} and read through a {@link SnapshotFrameBuffer.Reader}, which
+ * copies them into a frame owned by the consumer. The arrays of a frame grow when needed and are then reused for all
+ * following frames.
+ */
+public final class SnapshotFrame {
+
+	private static final AgentState[] STATES = AgentState.values();
+
+	private double time = Double.NaN;
+	private int size = 0;
+	private int[] agentIndices;
+	private int[] linkIndices;
+	private double[] eastings;
+	private double[] northings;
+	private byte[] states;
+	private float[] colorValues;
+
+	public SnapshotFrame() {
+		this(1024);
+	}
+
+	public SnapshotFrame(final int initialCapacity) {
+		this.agentIndices = new int[initialCapacity];
+		this.linkIndices = new int[initialCapacity];
+		this.eastings = new double[initialCapacity];
+		this.northings = new double[initialCapacity];
+		this.states = new byte[initialCapacity];
+		this.colorValues = new float[initialCapacity];
+	}
+
+	public double getTime() {
+		return this.time;
+	}
+
+	/**
+	 * @return the number of agents in this frame
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	public int getAgentIndex(final int i) {
+		return this.agentIndices[i];
+	}
+
+	public Id<Person> getAgentId(final int i) {
+		return Id.get(this.agentIndices[i], Person.class);
+	}
+
+	public int getLinkIndex(final int i) {
+		return this.linkIndices[i];
+	}
+
+	public Id<Link> getLinkId(final int i) {
+		return Id.get(this.linkIndices[i], Link.class);
+	}
+
+	public double getEasting(final int i) {
+		return this.eastings[i];
+	}
+
+	public double getNorthing(final int i) {
+		return this.northings[i];
+	}
+
+	/**
+	 * @return the state of the agent, or <code>null</code> if it was not set
+	 */
+	public AgentState getAgentState(final int i) {
+		int state = this.states[i];
+		return state < 0 ? null : STATES[state];
+	}
+
+	public double getColorValueBetweenZeroAndOne(final int i) {
+		return this.colorValues[i];
+	}
+
+	/*package*/ void clear(final double time) {
+		this.time = time;
+		this.size = 0;
+	}
+
+	/*package*/ void add(final AgentSnapshotInfo info, final int linkIndex) {
+		add(info.getId().index(), linkIndex, info.getEasting(), info.getNorthing(), info.getAgentState(),
+				info.getColorValueBetweenZeroAndOne());
+	}
+
+	/**
+	 * Appends the position of one agent. This is the write path of the links, which compute the positions without
+	 * creating {@link AgentSnapshotInfo}s, see {@link VisData#addAgentPositions(SnapshotFrame, int)}.
+	 *
+	 * @param state may be <code>null</code>
+	 */
+	public void add(final int agentIndex, final int linkIndex, final double easting, final double northing,
+			final AgentState state, final double colorValueBetweenZeroAndOne) {
+		if (this.size == this.agentIndices.length) {
+			ensureCapacity(2 * this.size + 1);
+		}
+		int i = this.size++;
+		this.agentIndices[i] = agentIndex;
+		this.linkIndices[i] = linkIndex;
+		this.eastings[i] = easting;
+		this.northings[i] = northing;
+		this.states[i] = state == null ? -1 : (byte) state.ordinal();
+		this.colorValues[i] = (float) colorValueBetweenZeroAndOne;
+	}
+
+	/**
+	 * Copies the given frame into this one. Returns <code>false</code> instead of failing if the source is inconsistent,
+	 * which can happen while it is being overwritten.
+	 */
+	/*package*/ boolean copyFrom(final SnapshotFrame source) {
+		int n = source.size;
+		int[] sourceAgents = source.agentIndices;
+		int[] sourceLinks = source.linkIndices;
+		double[] sourceEastings = source.eastings;
+		double[] sourceNorthings = source.northings;
+		byte[] sourceStates = source.states;
+		float[] sourceColors = source.colorValues;
+		if (n < 0 || n > sourceAgents.length || n > sourceLinks.length || n > sourceEastings.length
+				|| n > sourceNorthings.length || n > sourceStates.length || n > sourceColors.length) {
+			return false;
+		}
+		ensureCapacity(n);
+		System.arraycopy(sourceAgents, 0, this.agentIndices, 0, n);
+		System.arraycopy(sourceLinks, 0, this.linkIndices, 0, n);
+		System.arraycopy(sourceEastings, 0, this.eastings, 0, n);
+		System.arraycopy(sourceNorthings, 0, this.northings, 0, n);
+		System.arraycopy(sourceStates, 0, this.states, 0, n);
+		System.arraycopy(sourceColors, 0, this.colorValues, 0, n);
+		this.time = source.time;
+		this.size = n;
+		return true;
+	}
+
+	private void ensureCapacity(final int capacity) {
+		if (capacity > this.agentIndices.length) {
+			this.agentIndices = Arrays.copyOf(this.agentIndices, capacity);
+			this.linkIndices = Arrays.copyOf(this.linkIndices, capacity);
+			this.eastings = Arrays.copyOf(this.eastings, capacity);
+			this.northings = Arrays.copyOf(this.northings, capacity);
+			this.states = Arrays.copyOf(this.states, capacity);
+			this.colorValues = Arrays.copyOf(this.colorValues, capacity);
+		}
+	}
+
+}
@@ -0,0 +1,166 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.vis.snapshotwriters;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * A bounded ring buffer of {@link SnapshotFrame}s, written by the mobsim and read asynchronously by any number of
+ * consumers, e.g. a live visualizer or a file writer running on its own thread. All frames are allocated up front.
+ * <br>
+ * The mobsim never waits for the consumers: a consumer that falls behind by more than the capacity of the buffer misses
+ * the overwritten frames, see {@link Reader#getDroppedFrames()}. While no {@link Reader} is attached, the
+ * {@link SnapshotFrameProducer} does not compute any snapshots at all.
+ */
+public final class SnapshotFrameBuffer {
+
+	public static final int DEFAULT_CAPACITY = 16;
+
+	private final SnapshotFrame[] frames;
+	private final long[] sequences;
+	private final StampedLock[] locks;
+	private final AtomicInteger numberOfReaders = new AtomicInteger(0);
+
+	/** sequence number of the latest complete frame, -1 if there is none yet */
+	private volatile long published = -1;
+
+	public SnapshotFrameBuffer() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	public SnapshotFrameBuffer(final int capacity) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("capacity must be positive, but is " + capacity);
+		}
+		this.frames = new SnapshotFrame[capacity];
+		this.sequences = new long[capacity];
+		this.locks = new StampedLock[capacity];
+		for (int i = 0; i < capacity; i++) {
+			this.frames[i] = new SnapshotFrame();
+			this.sequences[i] = -1;
+			this.locks[i] = new StampedLock();
+		}
+	}
+
+	public int getCapacity() {
+		return this.frames.length;
+	}
+
+	/**
+	 * Attaches a new consumer, which starts with the next frame written to the buffer.
+	 */
+	public Reader attachReader() {
+		this.numberOfReaders.incrementAndGet();
+		return new Reader(this.published + 1);
+	}
+
+	public boolean hasReaders() {
+		return this.numberOfReaders.get() > 0;
+	}
+
+	/**
+	 * Writes a frame. Must only be called by a single producer thread.
+	 *
+	 * @param writer fills the frame, which is cleared before
+	 */
+	/*package*/ void write(final double time, final FrameWriter writer) {
+		long sequence = this.published + 1;
+		int slot = (int) (sequence % this.frames.length);
+		StampedLock lock = this.locks[slot];
+		long stamp = lock.writeLock();
+		try {
+			this.sequences[slot] = sequence;
+			this.frames[slot].clear(time);
+			writer.write(this.frames[slot]);
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+		this.published = sequence;
+	}
+
+	/*package*/ interface FrameWriter {
+		void write(SnapshotFrame frame);
+	}
+
+	/**
+	 * The position of one consumer in the buffer. A reader must only be used by one thread, and should be closed when it
+	 * is no longer used, so that the producer can stop computing snapshots.
+	 */
+	public final class Reader implements AutoCloseable {
+
+		private long next;
+		private long droppedFrames = 0;
+		private boolean closed = false;
+
+		private Reader(final long next) {
+			this.next = next;
+		}
+
+		/**
+		 * Copies the oldest frame that this reader has not seen yet into <code>target</code>. Frames that have been
+		 * overwritten in the meantime are skipped.
+		 *
+		 * @return <code>false</code> if there is no new frame
+		 */
+		public boolean read(final SnapshotFrame target) {
+			if (this.closed) {
+				throw new IllegalStateException("reader is closed");
+			}
+			while (true) {
+				long latest = SnapshotFrameBuffer.this.published;
+				if (this.next > latest) {
+					return false;
+				}
+				long oldest = latest - SnapshotFrameBuffer.this.frames.length + 1;
+				if (this.next < oldest) {
+					this.droppedFrames += oldest - this.next;
+					this.next = oldest;
+				}
+				int slot = (int) (this.next % SnapshotFrameBuffer.this.frames.length);
+				StampedLock lock = SnapshotFrameBuffer.this.locks[slot];
+				long stamp = lock.tryOptimisticRead();
+				if (stamp != 0 && SnapshotFrameBuffer.this.sequences[slot] == this.next
+						&& target.copyFrom(SnapshotFrameBuffer.this.frames[slot]) && lock.validate(stamp)) {
+					this.next++;
+					return true;
+				}
+				// the frame is being overwritten; it is skipped once the producer is done with it
+				Thread.yield();
+			}
+		}
+
+		/**
+		 * @return the number of frames this reader has missed because it was too slow
+		 */
+		public long getDroppedFrames() {
+			return this.droppedFrames;
+		}
+
+		@Override
+		public void close() {
+			if (!this.closed) {
+				this.closed = true;
+				SnapshotFrameBuffer.this.numberOfReaders.decrementAndGet();
+			}
+		}
+	}
+
+}
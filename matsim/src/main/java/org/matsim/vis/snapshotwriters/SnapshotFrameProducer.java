@@ -0,0 +1,85 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.vis.snapshotwriters;
+
+import javax.inject.Inject;
+
+import org.matsim.core.config.groups.QSimConfigGroup;
+import org.matsim.core.mobsim.framework.events.MobsimAfterSimStepEvent;
+import org.matsim.core.mobsim.framework.events.MobsimInitializedEvent;
+import org.matsim.core.mobsim.framework.listeners.MobsimAfterSimStepListener;
+import org.matsim.core.mobsim.framework.listeners.MobsimInitializedListener;
+import org.matsim.core.mobsim.qsim.interfaces.Netsim;
+
+/**
+ * Writes the positions of the agents on the network into the {@link SnapshotFrameBuffer} every snapshot period of the
+ * qsim, or every time step if no snapshot period is set. Nothing is computed while no reader is attached to the buffer.
+ * <br>
+ * Unlike the {@link SnapshotWriterManager}, this does not create {@link AgentSnapshotInfo}s: the links write the
+ * positions straight into the primitive arrays of the frame, see {@link VisData#addAgentPositions(SnapshotFrame, int)}.
+ */
+public final class SnapshotFrameProducer implements MobsimInitializedListener, MobsimAfterSimStepListener {
+
+	private final SnapshotFrameBuffer buffer;
+	private final double snapshotPeriod;
+	private final SnapshotFrameBuffer.FrameWriter frameWriter = this::writeFrame;
+
+	private VisMobsim mobsim = null;
+	private double snapshotTime = 0.0;
+
+	@Inject
+	SnapshotFrameProducer(final SnapshotFrameBuffer buffer, final QSimConfigGroup qsimConfig) {
+		this(buffer, qsimConfig.getSnapshotPeriod());
+	}
+
+	public SnapshotFrameProducer(final SnapshotFrameBuffer buffer, final double snapshotPeriod) {
+		this.buffer = buffer;
+		this.snapshotPeriod = snapshotPeriod;
+	}
+
+	@Override
+	public void notifyMobsimInitialized(final MobsimInitializedEvent e) {
+		if (e.getQueueSimulation() instanceof VisMobsim && e.getQueueSimulation() instanceof Netsim) {
+			this.mobsim = (VisMobsim) e.getQueueSimulation();
+			this.snapshotTime = ((Netsim) e.getQueueSimulation()).getSimTimer().getSimStartTime();
+		}
+	}
+
+	@Override
+	public void notifyMobsimAfterSimStep(final MobsimAfterSimStepEvent e) {
+		double time = e.getSimulationTime();
+		if (this.mobsim == null || time < this.snapshotTime) {
+			return;
+		}
+		if (this.snapshotPeriod > 0) {
+			this.snapshotTime = (Math.floor(time / this.snapshotPeriod) + 1) * this.snapshotPeriod;
+		}
+		if (this.buffer.hasReaders()) {
+			this.buffer.write(time, this.frameWriter);
+		}
+	}
+
+	private void writeFrame(final SnapshotFrame frame) {
+		for (VisLink link : this.mobsim.getVisNetwork().getVisLinks().values()) {
+			link.getVisData().addAgentPositions(frame, link.getLink().getId().index());
+		}
+	}
+
+}
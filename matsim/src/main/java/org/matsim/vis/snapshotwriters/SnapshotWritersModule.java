@@ -30,6 +30,7 @@ import org.matsim.core.replanning.ReplanningContext;
 
 import javax.inject.Inject;
 import javax.inject.Provider;
+import javax.inject.Singleton;
 import java.util.Collection;
 
 public class SnapshotWritersModule extends AbstractModule {
@@ -41,6 +42,10 @@ public class SnapshotWritersModule extends AbstractModule {
 		if (getConfig().controler().getSnapshotFormat().contains("transims")) {
 			addSnapshotWriterBinding().toProvider(TransimsSnapshotWriterFactory.class);
 		}
+		// the frame buffer for live consumers; the producer only computes snapshots while a reader is attached:
+		bind(SnapshotFrameBuffer.class).in(Singleton.class);
+		addMobsimListenerBinding().to(SnapshotFrameProducer.class);
+
 		if (getConfig().controler().getWriteSnapshotsInterval() != 0) {
 
 			addMobsimListenerBinding().toProvider(SnapshotWriterManagerProvider.class);
@@ -19,6 +19,7 @@
 
 package org.matsim.vis.snapshotwriters;
 
+import java.util.ArrayList;
 import java.util.Collection;
 
 /**
@@ -29,4 +30,15 @@ public interface VisData {
 
 	public Collection<AgentSnapshotInfo> addAgentSnapshotInfo(final Collection<AgentSnapshotInfo> positions);
 
+	/**
+	 * Writes the positions straight into the primitive arrays of the frame. The default copies the
+	 * {@link AgentSnapshotInfo}s of {@link #addAgentSnapshotInfo(Collection)}; implementations on the hot path of the
+	 * mobsim should override this so that no object is created per agent.
+	 */
+	public default void addAgentPositions(final SnapshotFrame frame, final int linkIndex) {
+		for (AgentSnapshotInfo info : addAgentSnapshotInfo(new ArrayList<>())) {
+			frame.add(info, linkIndex);
+		}
+	}
+
 }
\ No newline at end of file
@@ -0,0 +1,138 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.analysis;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.LinkEnterEvent;
+import org.matsim.api.core.v01.events.handler.LinkEnterEventHandler;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.events.EventsUtils;
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.testcases.MatsimTestUtils;
+import org.matsim.vehicles.Vehicle;
+
+public class IterationMetricsTest {
+
+	@Rule public MatsimTestUtils utils = new MatsimTestUtils();
+
+	@Test
+	public void testPercentiles() {
+		IterationMetrics.Timer timer = IterationMetrics.getTimer("test.percentiles");
+		IterationMetrics.reset();
+		for (int i = 1; i <= 1000; i++) {
+			timer.record(i * 1000L, 2);
+		}
+		Assert.assertEquals(1000, timer.getCount());
+		Assert.assertEquals(2000, timer.getItems());
+		Assert.assertEquals(500500L * 1000L, timer.getTotalNanos());
+		Assert.assertEquals(1000000L, timer.getMaxNanos());
+		// the histogram has a relative resolution of 1/8
+		Assert.assertEquals(500000, timer.getPercentileNanos(0.5), 500000 / 8.0);
+		Assert.assertEquals(900000, timer.getPercentileNanos(0.9), 900000 / 8.0);
+		Assert.assertEquals(990000, timer.getPercentileNanos(0.99), 990000 / 8.0);
+		Assert.assertTrue(timer.getPercentileNanos(1.0) <= timer.getMaxNanos());
+	}
+
+	@Test
+	public void testBuckets() {
+		for (long nanos = 0; nanos < 100000; nanos++) {
+			int bucket = IterationMetrics.Timer.bucket(nanos);
+			Assert.assertTrue(IterationMetrics.Timer.lowerBound(bucket) <= nanos);
+			Assert.assertTrue(IterationMetrics.Timer.lowerBound(bucket + 1) > nanos);
+		}
+		IterationMetrics.Timer.bucket(Long.MAX_VALUE);
+	}
+
+	@Test
+	public void testResetKeepsTimers() {
+		IterationMetrics.Timer timer = IterationMetrics.getTimer("test.reset");
+		timer.add(10, 1000);
+		IterationMetrics.reset();
+		Assert.assertSame(timer, IterationMetrics.getTimer("test.reset"));
+		Assert.assertEquals(0, timer.getCount());
+		Assert.assertEquals(0, timer.getTotalNanos());
+		Assert.assertEquals(0, timer.getRecordedOperations());
+	}
+
+	@Test
+	public void testEventHandlersAreCounted() {
+		IterationMetrics.reset();
+		EventsManager events = EventsUtils.createEventsManager();
+		events.addHandler(new CountingHandler());
+		events.initProcessing();
+		for (int i = 0; i < 5; i++) {
+			events.processEvent(new LinkEnterEvent(i, Id.create("v", Vehicle.class), Id.create("l", Link.class)));
+		}
+		events.finishProcessing();
+		IterationMetrics.Timer timer = IterationMetrics.getTimers().get(IterationMetrics.EVENTS_HANDLER_PREFIX + CountingHandler.class.getName());
+		Assert.assertNotNull(timer);
+		Assert.assertEquals(5, timer.getCount());
+		Assert.assertEquals(0, timer.getRecordedOperations());
+	}
+
+	@Test
+	public void testWriteIteration() throws IOException {
+		String filename = this.utils.getOutputDirectory() + IterationMetrics.FILENAME;
+		IterationMetrics.Timer timer = IterationMetrics.getTimer("test.write");
+		IterationMetrics.reset();
+		timer.record(2000000, 10);
+		IterationMetrics.writeIteration(0, filename);
+		IterationMetrics.reset();
+		timer.add(3, 3000000);
+		IterationMetrics.writeIteration(1, filename);
+
+		try (BufferedReader reader = IOUtils.getBufferedReader(filename)) {
+			String[] header = reader.readLine().split("\t");
+			Assert.assertEquals("iteration", header[0]);
+			Assert.assertEquals(13, header.length);
+			String[] first = reader.readLine().split("\t", -1);
+			Assert.assertEquals("0", first[0]);
+			Assert.assertEquals("test.write", first[1]);
+			Assert.assertEquals("1", first[2]);
+			Assert.assertEquals("10", first[3]);
+			Assert.assertEquals(10.0, Double.parseDouble(first[7]), 1e-9);
+			Assert.assertEquals(2.0, Double.parseDouble(first[12]), 1e-9);
+			String[] second = reader.readLine().split("\t", -1);
+			Assert.assertEquals("1", second[0]);
+			Assert.assertEquals("3", second[2]);
+			Assert.assertEquals(1000.0, Double.parseDouble(second[5]), 1e-6);
+			Assert.assertEquals("", second[9]);
+			Assert.assertNull(reader.readLine());
+		}
+	}
+
+	private static class CountingHandler implements LinkEnterEventHandler {
+		@Override
+		public void handleEvent(final LinkEnterEvent event) {
+		}
+
+		@Override
+		public void reset(final int iteration) {
+		}
+	}
+
+}
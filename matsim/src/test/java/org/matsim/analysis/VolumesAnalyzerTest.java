@@ -0,0 +1,239 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.analysis;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.LinkLeaveEvent;
+import org.matsim.api.core.v01.events.VehicleEntersTrafficEvent;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.vehicles.Vehicle;
+
+public class VolumesAnalyzerTest {
+
+	@Test
+	public void testVolumesPerMode() {
+		Network network = createNetwork();
+		Id<Link> linkId1 = Id.create("1", Link.class);
+		Id<Link> linkId2 = Id.create("2", Link.class);
+		Id<Vehicle> car = Id.create("car", Vehicle.class);
+		Id<Vehicle> bike = Id.create("bike", Vehicle.class);
+		Id<Vehicle> unknown = Id.create("unknown", Vehicle.class);
+
+		VolumesAnalyzer analyzer = new VolumesAnalyzer(900, 30 * 3600, network);
+		analyzer.handleEvent(new VehicleEntersTrafficEvent(0, null, linkId1, car, "car", 1.0));
+		analyzer.handleEvent(new VehicleEntersTrafficEvent(0, null, linkId1, bike, "bike", 1.0));
+		analyzer.handleEvent(new LinkLeaveEvent(100, car, linkId1));
+		analyzer.handleEvent(new LinkLeaveEvent(1000, bike, linkId1));
+		analyzer.handleEvent(new LinkLeaveEvent(3700, car, linkId1));
+		analyzer.handleEvent(new LinkLeaveEvent(3800, unknown, linkId1));
+
+		Assert.assertEquals(30 * 4 + 2, analyzer.getVolumesArraySize());
+		int[] volumes = analyzer.getVolumesForLink(linkId1);
+		Assert.assertEquals(1, volumes[0]);
+		Assert.assertEquals(1, volumes[1]);
+		Assert.assertEquals(2, volumes[4]);
+		Assert.assertEquals(1, analyzer.getVolumesForLink(linkId1, "bike")[1]);
+		Assert.assertEquals(0, analyzer.getVolumesForLink(linkId1, "bike")[0]);
+		Assert.assertEquals(1, analyzer.getVolumesForLink(linkId1, null)[4]);
+		Assert.assertNull(analyzer.getVolumesForLink(linkId2));
+		Assert.assertNull(analyzer.getVolumesForLink(linkId1, "walk"));
+
+		double[] perHour = analyzer.getVolumesPerHourForLink(linkId1);
+		Assert.assertEquals(2.0, perHour[0], 0.0);
+		Assert.assertEquals(2.0, perHour[1], 0.0);
+		Assert.assertEquals(1.0, analyzer.getVolumesPerHourForLink(linkId1, "car")[1], 0.0);
+		Assert.assertEquals(0.0, analyzer.getVolumesPerHourForLink(linkId2, "car")[1], 0.0);
+
+		double[] sum = new double[24];
+		analyzer.addVolumesPerHourForLink(linkId1, "car", sum);
+		analyzer.addVolumesPerHourForLink(linkId1, "bike", sum);
+		Assert.assertEquals(2.0, sum[0], 0.0);
+		Assert.assertEquals(1.0, sum[1], 0.0);
+
+		Assert.assertEquals(new HashSet<>(Arrays.asList("bike", "car")), analyzer.getModes());
+		Assert.assertEquals(new HashSet<>(Arrays.asList(linkId1)), analyzer.getLinkIds());
+
+		// counting again after querying adds to the previous counts
+		analyzer.handleEvent(new LinkLeaveEvent(200, bike, linkId2));
+		Assert.assertEquals(1, analyzer.getVolumesForLink(linkId2, "bike")[0]);
+		Assert.assertEquals(2, analyzer.getVolumesForLink(linkId1)[4]);
+
+		analyzer.reset(1);
+		Assert.assertNull(analyzer.getVolumesForLink(linkId1));
+		Assert.assertTrue(analyzer.getModes().isEmpty());
+		Assert.assertTrue(analyzer.getLinkIds().isEmpty());
+	}
+
+	@Test
+	public void testWithoutModes() {
+		Network network = createNetwork();
+		Id<Link> linkId1 = Id.create("1", Link.class);
+		Id<Vehicle> car = Id.create("car", Vehicle.class);
+
+		VolumesAnalyzer analyzer = new VolumesAnalyzer(3600, 24 * 3600 - 1, network, false);
+		analyzer.handleEvent(new VehicleEntersTrafficEvent(0, null, linkId1, car, "car", 1.0));
+		analyzer.handleEvent(new LinkLeaveEvent(100, car, linkId1));
+		analyzer.handleEvent(new LinkLeaveEvent(90000, car, linkId1));
+
+		Assert.assertEquals(1, analyzer.getVolumesForLink(linkId1)[0]);
+		Assert.assertEquals(1, analyzer.getVolumesForLink(linkId1)[24]);
+		Assert.assertNull(analyzer.getVolumesForLink(linkId1, "car"));
+		Assert.assertNull(analyzer.getVolumesPerHourForLink(linkId1, "car"));
+		Assert.assertTrue(analyzer.getModes().isEmpty());
+	}
+
+	/**
+	 * Events of different vehicles may be handled by different threads, the counts of all threads are added up.
+	 */
+	@Test
+	public void testCountsOfSeveralThreads() throws InterruptedException {
+		Network network = createNetwork();
+		Id<Link> linkId1 = Id.create("1", Link.class);
+		Id<Link> linkId2 = Id.create("2", Link.class);
+		VolumesAnalyzer analyzer = new VolumesAnalyzer(3600, 24 * 3600 - 1, network);
+
+		Thread[] threads = new Thread[4];
+		for (int t = 0; t < threads.length; t++) {
+			final String mode = t % 2 == 0 ? "car" : "bike";
+			final Id<Vehicle> vehicleId = Id.create("v" + t, Vehicle.class);
+			threads[t] = new Thread(() -> {
+				analyzer.handleEvent(new VehicleEntersTrafficEvent(0, null, linkId1, vehicleId, mode, 1.0));
+				for (int i = 0; i < 1000; i++) {
+					analyzer.handleEvent(new LinkLeaveEvent(i * 10, vehicleId, i % 2 == 0 ? linkId1 : linkId2));
+				}
+			});
+			threads[t].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		int[] volumes = analyzer.getVolumesForLink(linkId1);
+		Assert.assertEquals(4 * 180, volumes[0]);
+		Assert.assertEquals(4 * 180, volumes[1]);
+		Assert.assertEquals(4 * 140, volumes[2]);
+		Assert.assertEquals(2 * 180, analyzer.getVolumesForLink(linkId2, "car")[0]);
+		Assert.assertEquals(2 * 140, analyzer.getVolumesForLink(linkId2, "bike")[2]);
+		double sum = 0.0;
+		for (double hourVolume : analyzer.getVolumesPerHourForLink(linkId2)) {
+			sum += hourVolume;
+		}
+		Assert.assertEquals(4 * 500, sum, 0.0);
+		Assert.assertEquals(new HashSet<>(Arrays.asList("bike", "car")), analyzer.getModes());
+	}
+
+	@Test
+	public void testModesOfVehiclesHandledByDifferentThreads() throws InterruptedException {
+		Network network = createNetwork();
+		Id<Link> linkId1 = Id.create("1", Link.class);
+		Id<Link> linkId2 = Id.create("2", Link.class);
+		VolumesAnalyzer analyzer = new VolumesAnalyzer(3600, 24 * 3600 - 1, network);
+
+		// like a synchronized events manager called from the mobsim threads: the vehicles depart in one thread, but
+		// leave the links in others
+		Thread departures = new Thread(() -> {
+			for (int v = 0; v < 100; v++) {
+				String mode = v % 2 == 0 ? "car" : "bike";
+				analyzer.handleEvent(new VehicleEntersTrafficEvent(0, null, linkId1, Id.create("v" + v, Vehicle.class), mode, 1.0));
+			}
+		});
+		departures.start();
+		departures.join();
+
+		Thread[] threads = new Thread[4];
+		for (int t = 0; t < threads.length; t++) {
+			final int thread = t;
+			threads[t] = new Thread(() -> {
+				for (int v = thread; v < 100; v += threads.length) {
+					analyzer.handleEvent(new LinkLeaveEvent(10, Id.create("v" + v, Vehicle.class), linkId1));
+				}
+			});
+			threads[t].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		Thread arrivals = new Thread(() -> {
+			for (int v = 0; v < 100; v++) {
+				analyzer.handleEvent(new LinkLeaveEvent(3610, Id.create("v" + v, Vehicle.class), linkId2));
+			}
+		});
+		arrivals.start();
+		arrivals.join();
+
+		Assert.assertEquals(100, analyzer.getVolumesForLink(linkId1)[0]);
+		Assert.assertEquals(50, analyzer.getVolumesForLink(linkId1, "car")[0]);
+		Assert.assertEquals(50, analyzer.getVolumesForLink(linkId1, "bike")[0]);
+		Assert.assertEquals(50, analyzer.getVolumesForLink(linkId2, "car")[1]);
+		Assert.assertEquals(50, analyzer.getVolumesForLink(linkId2, "bike")[1]);
+		Assert.assertEquals(new HashSet<>(Arrays.asList("bike", "car")), analyzer.getModes());
+	}
+
+	/**
+	 * Querying the volumes while a thread is still counting must not lose any of its counts.
+	 */
+	@Test
+	public void testQueriesWhileCounting() throws InterruptedException {
+		Network network = createNetwork();
+		Id<Link> linkId1 = Id.create("1", Link.class);
+		Id<Vehicle> vehicleId = Id.create("v", Vehicle.class);
+		VolumesAnalyzer analyzer = new VolumesAnalyzer(3600, 24 * 3600 - 1, network);
+
+		CountDownLatch started = new CountDownLatch(1);
+		Thread thread = new Thread(() -> {
+			analyzer.handleEvent(new VehicleEntersTrafficEvent(0, null, linkId1, vehicleId, "car", 1.0));
+			analyzer.handleEvent(new LinkLeaveEvent(0, vehicleId, linkId1));
+			started.countDown();
+			for (int i = 1; i < 100000; i++) {
+				analyzer.handleEvent(new LinkLeaveEvent(0, vehicleId, linkId1));
+			}
+		});
+		thread.start();
+		started.await();
+		while (thread.isAlive()) {
+			Assert.assertNotNull(analyzer.getVolumesForLink(linkId1));
+		}
+		thread.join();
+
+		Assert.assertEquals(100000, analyzer.getVolumesForLink(linkId1)[0]);
+		Assert.assertEquals(100000, analyzer.getVolumesForLink(linkId1, "car")[0]);
+	}
+
+	private static Network createNetwork() {
+		Network network = NetworkUtils.createNetwork();
+		Node node1 = NetworkUtils.createAndAddNode(network, Id.create("1", Node.class), new Coord(0, 0));
+		Node node2 = NetworkUtils.createAndAddNode(network, Id.create("2", Node.class), new Coord(1000, 0));
+		Node node3 = NetworkUtils.createAndAddNode(network, Id.create("3", Node.class), new Coord(2000, 0));
+		NetworkUtils.createAndAddLink(network, Id.create("1", Link.class), node1, node2, 1000, 10, 3600, 1);
+		NetworkUtils.createAndAddLink(network, Id.create("2", Link.class), node2, node3, 1000, 10, 3600, 1);
+		return network;
+	}
+
+}
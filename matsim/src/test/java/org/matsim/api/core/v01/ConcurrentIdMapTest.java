@@ -0,0 +1,136 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.api.core.v01;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ConcurrentIdMapTest {
+
+	@Test
+	public void testPutGetRemove() {
+		ConcurrentIdMap<TMap, String> map = new ConcurrentIdMap<>(TMap.class, 2);
+		Id<TMap> id1 = Id.create("1", TMap.class);
+		Id<TMap> id2 = Id.create("2", TMap.class);
+		Id<TMap> id3 = Id.create("3", TMap.class);
+
+		Assert.assertTrue(map.isEmpty());
+		Assert.assertNull(map.put(id1, "one"));
+		Assert.assertNull(map.putIfAbsent(id2, "two"));
+		Assert.assertEquals("two", map.putIfAbsent(id2, "zwei"));
+		Assert.assertEquals("one", map.put(id1, "uno"));
+		Assert.assertEquals(2, map.size());
+
+		Assert.assertEquals("uno", map.get(id1));
+		Assert.assertEquals("two", map.get(id2));
+		Assert.assertNull(map.get(id3));
+		Assert.assertTrue(map.containsKey(id2));
+		Assert.assertFalse(map.containsKey(id3));
+		Assert.assertTrue(map.containsValue("two"));
+		Assert.assertFalse(map.containsValue("one"));
+
+		Assert.assertFalse(map.replace(id2, "one", "dos"));
+		Assert.assertTrue(map.replace(id2, "two", "dos"));
+		Assert.assertNull(map.replace(id3, "three"));
+		Assert.assertFalse(map.remove(id2, "two"));
+		Assert.assertTrue(map.remove(id2, "dos"));
+		Assert.assertNull(map.remove(id2));
+		Assert.assertEquals(1, map.size());
+
+		map.clear();
+		Assert.assertTrue(map.isEmpty());
+		Assert.assertNull(map.get(id1));
+	}
+
+	@Test
+	public void testIteration() {
+		ConcurrentIdMap<TMap, String> map = new ConcurrentIdMap<>(TMap.class);
+		Id<TMap> idA = Id.create("A", TMap.class);
+		Id<TMap> idB = Id.create("B", TMap.class);
+		Id<TMap> idC = Id.create("C", TMap.class);
+		map.put(idC, "c");
+		map.put(idA, "a");
+		map.put(idB, "b");
+		map.remove(idB);
+
+		// iterates in the order of the id index, i.e. the creation order of the ids
+		Iterator<String> valueIter = map.values().iterator();
+		Assert.assertEquals("a", valueIter.next());
+		Assert.assertEquals("c", valueIter.next());
+		Assert.assertFalse(valueIter.hasNext());
+
+		Iterator<Map.Entry<Id<TMap>, String>> entryIter = map.entrySet().iterator();
+		Map.Entry<Id<TMap>, String> entry = entryIter.next();
+		Assert.assertSame(idA, entry.getKey());
+		entry.setValue("aa");
+		Assert.assertEquals("aa", map.get(idA));
+		// adding while iterating does not fail
+		map.put(Id.create("D", TMap.class), "d");
+		entryIter.next();
+		entryIter.remove();
+		Assert.assertFalse(map.containsKey(idC));
+		Assert.assertEquals(2, map.size());
+
+		Map<Id<TMap>, String> hashMap = new java.util.HashMap<>(map);
+		Assert.assertEquals(hashMap, map);
+		Assert.assertEquals(map, hashMap);
+		Assert.assertEquals(hashMap.hashCode(), map.hashCode());
+	}
+
+	@Test
+	public void testComputeIfAbsentFromSeveralThreads() throws InterruptedException {
+		ConcurrentIdMap<TMap, String> map = new ConcurrentIdMap<>(TMap.class, 0);
+		AtomicInteger created = new AtomicInteger();
+		AtomicInteger wrongValues = new AtomicInteger();
+		List<Thread> threads = new ArrayList<>();
+		for (int t = 0; t < 4; t++) {
+			Thread thread = new Thread(() -> {
+				for (int i = 0; i < 1000; i++) {
+					Id<TMap> id = Id.create("concurrent" + i, TMap.class);
+					String value = map.computeIfAbsent(id, key -> {
+						created.incrementAndGet();
+						return key.toString();
+					});
+					if (!id.toString().equals(value)) {
+						wrongValues.incrementAndGet();
+					}
+				}
+			});
+			threads.add(thread);
+			thread.start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		// the map grew from the minimal capacity while being read, but every value was created exactly once
+		Assert.assertEquals(1000, map.size());
+		Assert.assertEquals(1000, created.get());
+		Assert.assertEquals(0, wrongValues.get());
+	}
+
+	private static class TMap {}
+
+}
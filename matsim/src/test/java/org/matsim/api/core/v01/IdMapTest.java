@@ -0,0 +1,136 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.api.core.v01;
+
+import java.util.Iterator;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class IdMapTest {
+
+	@Test
+	public void testPutGetRemove() {
+		IdMap<TMap, String> map = new IdMap<>(TMap.class, 2);
+		Id<TMap> id1 = Id.create("1", TMap.class);
+		Id<TMap> id2 = Id.create("2", TMap.class);
+		Id<TMap> id3 = Id.create("3", TMap.class);
+
+		Assert.assertTrue(map.isEmpty());
+		Assert.assertNull(map.put(id1, "one"));
+		Assert.assertNull(map.put(id2, "two"));
+		Assert.assertEquals("one", map.put(id1, "uno"));
+		Assert.assertEquals(2, map.size());
+
+		Assert.assertEquals("uno", map.get(id1));
+		Assert.assertEquals("two", map.get(id2));
+		Assert.assertNull(map.get(id3));
+		Assert.assertTrue(map.containsKey(id2));
+		Assert.assertFalse(map.containsKey(id3));
+		Assert.assertTrue(map.containsValue("two"));
+		Assert.assertFalse(map.containsValue("one"));
+		Assert.assertNull(map.get("1"));
+
+		Assert.assertEquals("two", map.remove(id2));
+		Assert.assertNull(map.remove(id2));
+		Assert.assertEquals(1, map.size());
+
+		map.clear();
+		Assert.assertTrue(map.isEmpty());
+		Assert.assertNull(map.get(id1));
+	}
+
+	@Test
+	public void testGrowing() {
+		IdMap<TMap, Integer> map = new IdMap<>(TMap.class, 0);
+		for (int i = 0; i < 1000; i++) {
+			map.put(Id.create("grow" + i, TMap.class), i);
+		}
+		Assert.assertEquals(1000, map.size());
+		for (int i = 0; i < 1000; i++) {
+			Assert.assertEquals(i, map.get(Id.create("grow" + i, TMap.class)).intValue());
+		}
+	}
+
+	@Test
+	public void testIteration() {
+		IdMap<TMap, String> map = new IdMap<>(TMap.class);
+		Id<TMap> idA = Id.create("A", TMap.class);
+		Id<TMap> idB = Id.create("B", TMap.class);
+		Id<TMap> idC = Id.create("C", TMap.class);
+		map.put(idC, "c");
+		map.put(idA, "a");
+		map.put(idB, "b");
+		map.remove(idB);
+
+		// iterates in the order of the id index, i.e. the creation order of the ids
+		Iterator<String> valueIter = map.values().iterator();
+		Assert.assertEquals("a", valueIter.next());
+		Assert.assertEquals("c", valueIter.next());
+		Assert.assertFalse(valueIter.hasNext());
+
+		Iterator<Id<TMap>> keyIter = map.keySet().iterator();
+		Assert.assertSame(idA, keyIter.next());
+		Assert.assertSame(idC, keyIter.next());
+		Assert.assertFalse(keyIter.hasNext());
+
+		Iterator<Map.Entry<Id<TMap>, String>> entryIter = map.entrySet().iterator();
+		Map.Entry<Id<TMap>, String> entry = entryIter.next();
+		Assert.assertSame(idA, entry.getKey());
+		Assert.assertEquals("a", entry.getValue());
+		entry.setValue("aa");
+		Assert.assertEquals("aa", map.get(idA));
+		entryIter.next();
+		entryIter.remove();
+		Assert.assertFalse(entryIter.hasNext());
+		Assert.assertEquals(1, map.size());
+		Assert.assertFalse(map.containsKey(idC));
+	}
+
+	@Test
+	public void testEqualsHashMap() {
+		IdMap<TMap, String> map = new IdMap<>(TMap.class);
+		Map<Id<TMap>, String> hashMap = new java.util.HashMap<>();
+		Id<TMap> idX = Id.create("X", TMap.class);
+		map.put(idX, "x");
+		hashMap.put(idX, "x");
+		Assert.assertEquals(hashMap, map);
+		Assert.assertEquals(map, hashMap);
+		Assert.assertEquals(hashMap.hashCode(), map.hashCode());
+	}
+
+	@Test
+	public void testEntryOfRemovedMapping() {
+		IdMap<TMap, String> map = new IdMap<>(TMap.class);
+		Id<TMap> idY = Id.create("Y", TMap.class);
+		map.put(idY, "y");
+		Map.Entry<Id<TMap>, String> entry = map.entrySet().iterator().next();
+		map.remove(idY);
+
+		Assert.assertNull(entry.getValue());
+		Assert.assertEquals(new java.util.AbstractMap.SimpleEntry<>(idY, null), entry);
+		Assert.assertNotEquals(new java.util.AbstractMap.SimpleEntry<>(idY, "y"), entry);
+		Assert.assertEquals(idY.hashCode(), entry.hashCode());
+	}
+
+	private static class TMap {}
+
+}
@@ -0,0 +1,79 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.api.core.v01;
+
+import java.util.Iterator;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class IdSetTest {
+
+	@Test
+	public void testAddContainsRemove() {
+		IdSet<TSet> set = new IdSet<>(TSet.class);
+		Id<TSet> id1 = Id.create("1", TSet.class);
+		Id<TSet> id2 = Id.create("2", TSet.class);
+		Id<TSet> id3 = Id.create("3", TSet.class);
+
+		Assert.assertTrue(set.isEmpty());
+		Assert.assertTrue(set.add(id1));
+		Assert.assertTrue(set.add(id2));
+		Assert.assertFalse(set.add(id1));
+		Assert.assertEquals(2, set.size());
+
+		Assert.assertTrue(set.contains(id1));
+		Assert.assertTrue(set.contains(id2));
+		Assert.assertFalse(set.contains(id3));
+		Assert.assertFalse(set.contains("1"));
+
+		Assert.assertTrue(set.remove(id1));
+		Assert.assertFalse(set.remove(id1));
+		Assert.assertEquals(1, set.size());
+
+		set.clear();
+		Assert.assertTrue(set.isEmpty());
+		Assert.assertFalse(set.contains(id2));
+	}
+
+	@Test
+	public void testIteration() {
+		IdSet<TSet> set = new IdSet<>(TSet.class);
+		Id<TSet> idA = Id.create("A", TSet.class);
+		Id<TSet> idB = Id.create("B", TSet.class);
+		Id<TSet> idC = Id.create("C", TSet.class);
+		set.add(idC);
+		set.add(idB);
+		set.add(idA);
+
+		Iterator<Id<TSet>> iter = set.iterator();
+		Assert.assertSame(idA, iter.next());
+		Assert.assertSame(idB, iter.next());
+		iter.remove();
+		Assert.assertSame(idC, iter.next());
+		Assert.assertFalse(iter.hasNext());
+
+		Assert.assertEquals(2, set.size());
+		Assert.assertFalse(set.contains(idB));
+	}
+
+	private static class TSet {}
+
+}
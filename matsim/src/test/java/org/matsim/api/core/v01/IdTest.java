@@ -67,7 +67,32 @@ public class IdTest {
 //		} // FIXME temporarily deactivated
 	}
 	
+	@Test
+	public void testIndex() {
+		Id<TIndex> id1 = Id.create("a", TIndex.class);
+		Id<TIndex> id2 = Id.create("b", TIndex.class);
+		Id<TIndex> id1again = Id.create("a", TIndex.class);
+		Id<TNode> nodeId = Id.create("a", TNode.class);
+
+		Assert.assertEquals(0, id1.index());
+		Assert.assertEquals(1, id2.index());
+		Assert.assertEquals(id1.index(), id1again.index());
+		Assert.assertEquals(2, Id.getNumberOfIds(TIndex.class));
+
+		Assert.assertSame(id1, Id.get(0, TIndex.class));
+		Assert.assertSame(id2, Id.get(1, TIndex.class));
+		Assert.assertSame(nodeId, Id.get(nodeId.index(), TNode.class));
+
+		try {
+			Id.get(2, TIndex.class);
+			Assert.fail("expected exception, got none");
+		} catch (IndexOutOfBoundsException e) {
+			// expected exception
+		}
+	}
+
 	private static class TLink {}
+	private static class TIndex {}
 	private static class TNode {}
 	
 }
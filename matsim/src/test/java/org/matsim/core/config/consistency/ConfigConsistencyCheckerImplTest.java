@@ -227,4 +227,36 @@ public class ConfigConsistencyCheckerImplTest {
 		}
 
 	}
+
+	@Test
+	public void testCheckRouteCacheWithRoutingRandomness() {
+		Config config = ConfigUtils.createConfig();
+		config.plansCalcRoute().setRouteCacheSize(1000);
+		config.plansCalcRoute().setRoutingRandomness(3.);
+		try {
+			new ConfigConsistencyCheckerImpl().checkConsistency(config);
+			Assert.fail("expected IllegalStateException");
+		} catch (IllegalStateException e) {
+			// expected
+		}
+
+		config.plansCalcRoute().setRoutingRandomness(0.);
+		new ConfigConsistencyCheckerImpl().checkConsistency(config);
+	}
+
+	@Test
+	public void testCheckBatchedRoutingWithRoutingRandomness() {
+		Config config = ConfigUtils.createConfig();
+		config.plansCalcRoute().setBatchedRoutingTimeBinSize(300.);
+		config.plansCalcRoute().setRoutingRandomness(3.);
+		try {
+			new ConfigConsistencyCheckerImpl().checkConsistency(config);
+			Assert.fail("expected IllegalStateException");
+		} catch (IllegalStateException e) {
+			// expected
+		}
+
+		config.plansCalcRoute().setRoutingRandomness(0.);
+		new ConfigConsistencyCheckerImpl().checkConsistency(config);
+	}
 }
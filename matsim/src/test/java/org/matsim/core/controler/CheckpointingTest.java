@@ -0,0 +1,68 @@
+package org.matsim.core.controler;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.core.config.Config;
+import org.matsim.core.router.util.TravelTime;
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.examples.ExamplesUtils;
+import org.matsim.testcases.MatsimTestUtils;
+
+public class CheckpointingTest {
+
+	@Rule
+	public MatsimTestUtils utils = new MatsimTestUtils();
+
+	/**
+	 * Runs the iterations 0..5 with a checkpoint after iteration 3, then resumes a second run from that checkpoint.
+	 * Both runs must end with the same plans and travel times.
+	 */
+	@Test
+	public void testResumedRunEqualsUninterruptedRun() {
+		Config config = createConfig("full/");
+		config.controler().setCheckpointInterval(3);
+		Controler full = new Controler(config);
+		full.run();
+
+		Config resumedConfig = createConfig("resumed/");
+		resumedConfig.controler().setResumeFromCheckpoint(utils.getOutputDirectory() + "full/" + Controler.FILENAME_CHECKPOINT);
+		Controler resumed = new Controler(resumedConfig);
+		resumed.run();
+
+		Assert.assertEquals(full.getScenario().getPopulation().getPersons().size(), resumed.getScenario().getPopulation().getPersons().size());
+		for (Person person : full.getScenario().getPopulation().getPersons().values()) {
+			Person resumedPerson = resumed.getScenario().getPopulation().getPersons().get(person.getId());
+			Assert.assertNotNull(resumedPerson);
+			Assert.assertEquals(person.getPlans().size(), resumedPerson.getPlans().size());
+			for (int i = 0; i < person.getPlans().size(); i++) {
+				Plan plan = person.getPlans().get(i);
+				Plan resumedPlan = resumedPerson.getPlans().get(i);
+				Assert.assertEquals(plan.getScore(), resumedPlan.getScore());
+				Assert.assertEquals(plan == person.getSelectedPlan(), resumedPlan == resumedPerson.getSelectedPlan());
+			}
+		}
+
+		TravelTime travelTimes = full.getLinkTravelTimes();
+		TravelTime resumedTravelTimes = resumed.getLinkTravelTimes();
+		for (Link link : full.getScenario().getNetwork().getLinks().values()) {
+			Link resumedLink = resumed.getScenario().getNetwork().getLinks().get(link.getId());
+			for (double time = 0; time < 30 * 3600; time += 900) {
+				Assert.assertEquals(travelTimes.getLinkTravelTime(link, time, null, null),
+						resumedTravelTimes.getLinkTravelTime(resumedLink, time, null, null), 0.0);
+			}
+		}
+	}
+
+	private Config createConfig(String outputDirectory) {
+		Config config = utils.loadConfig(IOUtils.newUrl(ExamplesUtils.getTestScenarioURL("equil"), "config.xml"));
+		config.controler().setLastIteration(5);
+		config.controler().setOutputDirectory(utils.getOutputDirectory() + outputDirectory);
+		config.controler().setCreateGraphs(false);
+		return config;
+	}
+
+}
@@ -0,0 +1,224 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.events;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.events.LinkEnterEvent;
+import org.matsim.api.core.v01.events.LinkLeaveEvent;
+import org.matsim.api.core.v01.events.PersonDepartureEvent;
+import org.matsim.api.core.v01.events.PersonStuckEvent;
+import org.matsim.api.core.v01.events.handler.LinkEnterEventHandler;
+import org.matsim.api.core.v01.events.handler.PersonDepartureEventHandler;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.events.handler.PartitionedEventHandler;
+import org.matsim.testcases.utils.EventsCollector;
+
+public class ShardedEventsManagerImplTest {
+
+	@Test
+	public void testEventHandlerCanProduceAdditionalEventLateInSimStep() {
+		final ShardedEventsManagerImpl events = new ShardedEventsManagerImpl(4, 16);
+		// the handler runs on a worker thread, so failures are collected and checked on the test thread
+		final AtomicReference<Throwable> handlerFailure = new AtomicReference<>();
+		// counted down when the test thread is about to end the time step of the index
+		final CountDownLatch[] stepEnding = { new CountDownLatch(1), new CountDownLatch(1) };
+		events.addHandler(new LinkEnterEventHandler() {
+			@Override
+			public void handleEvent(LinkEnterEvent event) {
+				try {
+					stepEnding[(int) event.getTime()].await();
+				} catch (InterruptedException e) {
+					handlerFailure.compareAndSet(null, e);
+				}
+				events.processEvent(new PersonStuckEvent(event.getTime(), Id.createPersonId(0), Id.createLinkId(0), "car"));
+			}
+
+			@Override
+			public void reset(int iteration) {}
+		});
+		EventsCollector collector = new EventsCollector();
+		events.addHandler(collector);
+		events.initProcessing();
+		events.processEvent(new LinkEnterEvent(0.0, Id.createVehicleId(0), Id.createLinkId(0)));
+		events.processEvent(new LinkLeaveEvent(0.0, Id.createVehicleId(0), Id.createLinkId(0)));
+		stepEnding[0].countDown();
+		events.afterSimStep(0.0);
+		Assert.assertNull(handlerFailure.get());
+		Assert.assertEquals(3, collector.getEvents().size());
+		events.processEvent(new LinkEnterEvent(1.0, Id.createVehicleId(0), Id.createLinkId(0)));
+		events.processEvent(new LinkLeaveEvent(1.0, Id.createVehicleId(0), Id.createLinkId(0)));
+		stepEnding[1].countDown();
+		events.afterSimStep(1.0);
+		events.finishProcessing();
+		Assert.assertNull(handlerFailure.get());
+
+		Assert.assertEquals(Arrays.asList(
+				new LinkEnterEvent(0.0, Id.createVehicleId(0), Id.createLinkId(0)),
+				new LinkLeaveEvent(0.0, Id.createVehicleId(0), Id.createLinkId(0)),
+				new PersonStuckEvent(0.0, Id.createPersonId(0), Id.createLinkId(0), "car"),
+				new LinkEnterEvent(1.0, Id.createVehicleId(0), Id.createLinkId(0)),
+				new LinkLeaveEvent(1.0, Id.createVehicleId(0), Id.createLinkId(0)),
+				new PersonStuckEvent(1.0, Id.createPersonId(0), Id.createLinkId(0), "car")),
+				collector.getEvents());
+	}
+
+	@Test
+	public void testPartitionedHandler() {
+		// a small buffer makes sure the producer has to wait for the consumers
+		final ShardedEventsManagerImpl events = new ShardedEventsManagerImpl(3, 64);
+		PersonDepartureCollector partitioned = new PersonDepartureCollector();
+		EventsCollector ordered = new EventsCollector();
+		events.addHandler(partitioned);
+		events.addHandler(ordered);
+
+		int nOfPersons = 20;
+		int nOfSteps = 100;
+		List<Event> expected = new ArrayList<>();
+		events.initProcessing();
+		for (int time = 0; time < nOfSteps; time++) {
+			for (int p = 0; p < nOfPersons; p++) {
+				Event event = new PersonDepartureEvent(time, Id.createPersonId(p), Id.createLinkId(p), "car");
+				expected.add(event);
+				events.processEvent(event);
+			}
+			events.afterSimStep(time);
+		}
+		events.finishProcessing();
+
+		Assert.assertEquals(expected, ordered.getEvents());
+		Assert.assertEquals(nOfPersons, partitioned.departures.size());
+		for (int p = 0; p < nOfPersons; p++) {
+			List<Double> times = partitioned.departures.get(Id.createPersonId(p));
+			Assert.assertEquals(nOfSteps, times.size());
+			for (int time = 0; time < nOfSteps; time++) {
+				Assert.assertEquals(time, times.get(time), 0.0);
+			}
+			Assert.assertEquals("events of one person must be handled by a single thread", 1,
+					partitioned.threads.get(Id.createPersonId(p)).size());
+		}
+	}
+
+	@Test
+	public void testEventsOfSeveralThreads() throws InterruptedException {
+		// the batches of the threads are published more than once per time step
+		final ShardedEventsManagerImpl events = new ShardedEventsManagerImpl(2, 64);
+		EventsCollector ordered = new EventsCollector();
+		events.addHandler(ordered);
+
+		int nOfThreads = 4;
+		int nOfEvents = 100;
+		int nOfSteps = 10;
+		events.initProcessing();
+		for (int time = 0; time < nOfSteps; time++) {
+			final double now = time;
+			// the events of the test thread before and after the other threads must keep their place
+			events.processEvent(new PersonDepartureEvent(now, Id.createPersonId(-1), Id.createLinkId(0), "car"));
+			List<Thread> threads = new ArrayList<>();
+			for (int t = 0; t < nOfThreads; t++) {
+				final int thread = t;
+				threads.add(new Thread(() -> {
+					for (int i = 0; i < nOfEvents; i++) {
+						events.processEvent(new LinkEnterEvent(now, Id.createVehicleId(thread), Id.createLinkId(i)));
+					}
+				}));
+			}
+			for (Thread thread : threads) {
+				thread.start();
+			}
+			for (Thread thread : threads) {
+				thread.join();
+			}
+			events.processEvent(new PersonDepartureEvent(now, Id.createPersonId(-2), Id.createLinkId(0), "car"));
+			events.afterSimStep(now);
+		}
+		events.finishProcessing();
+
+		List<Event> handled = ordered.getEvents();
+		int eventsPerStep = nOfThreads * nOfEvents + 2;
+		Assert.assertEquals(nOfSteps * eventsPerStep, handled.size());
+		for (int time = 0; time < nOfSteps; time++) {
+			List<Event> step = handled.subList(time * eventsPerStep, (time + 1) * eventsPerStep);
+			Assert.assertEquals(new PersonDepartureEvent(time, Id.createPersonId(-1), Id.createLinkId(0), "car"), step.get(0));
+			Assert.assertEquals(new PersonDepartureEvent(time, Id.createPersonId(-2), Id.createLinkId(0), "car"), step.get(eventsPerStep - 1));
+			int[] nextLinks = new int[nOfThreads];
+			for (Event event : step.subList(1, eventsPerStep - 1)) {
+				LinkEnterEvent linkEnter = (LinkEnterEvent) event;
+				Assert.assertEquals(time, linkEnter.getTime(), 0.0);
+				int thread = Integer.parseInt(linkEnter.getVehicleId().toString());
+				Assert.assertEquals("the events of a thread must keep their order", Id.createLinkId(nextLinks[thread]), linkEnter.getLinkId());
+				nextLinks[thread]++;
+			}
+		}
+	}
+
+	@Test
+	public void testExceptionInHandler() {
+		final ShardedEventsManagerImpl events = new ShardedEventsManagerImpl(2);
+		events.addHandler(new LinkEnterEventHandler() {
+			@Override
+			public void handleEvent(LinkEnterEvent event) {
+				throw new IllegalStateException("handler failure");
+			}
+		});
+		events.initProcessing();
+		events.processEvent(new LinkEnterEvent(0.0, Id.createVehicleId(0), Id.createLinkId(0)));
+		events.afterSimStep(0.0);
+		events.processEvent(new LinkEnterEvent(1.0, Id.createVehicleId(0), Id.createLinkId(0)));
+		events.afterSimStep(1.0);
+		try {
+			events.finishProcessing();
+			Assert.fail("expected exception, got none");
+		} catch (RuntimeException e) {
+			Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+		}
+	}
+
+	private static class PersonDepartureCollector implements PersonDepartureEventHandler, PartitionedEventHandler {
+
+		private final Map<Id<Person>, List<Double>> departures = new ConcurrentHashMap<>();
+		private final Map<Id<Person>, List<Thread>> threads = new ConcurrentHashMap<>();
+
+		@Override
+		public PartitionKey getPartitionKey() {
+			return PartitionKey.person;
+		}
+
+		@Override
+		public void handleEvent(PersonDepartureEvent event) {
+			this.departures.computeIfAbsent(event.getPersonId(), k -> new ArrayList<>()).add(event.getTime());
+			List<Thread> personThreads = this.threads.computeIfAbsent(event.getPersonId(), k -> new ArrayList<>());
+			if (!personThreads.contains(Thread.currentThread())) {
+				personThreads.add(Thread.currentThread());
+			}
+		}
+	}
+
+}
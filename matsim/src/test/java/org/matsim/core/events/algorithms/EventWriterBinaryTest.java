@@ -0,0 +1,177 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.events.algorithms;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.events.GenericEvent;
+import org.matsim.api.core.v01.events.LinkEnterEvent;
+import org.matsim.api.core.v01.events.LinkLeaveEvent;
+import org.matsim.api.core.v01.events.PersonDepartureEvent;
+import org.matsim.api.core.v01.events.PersonMoneyEvent;
+import org.matsim.api.core.v01.events.VehicleEntersTrafficEvent;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.events.EventsUtils;
+import org.matsim.core.events.MatsimEventsReader;
+import org.matsim.testcases.MatsimTestUtils;
+import org.matsim.testcases.utils.EventsCollector;
+
+public class EventWriterBinaryTest {
+
+	@Rule public MatsimTestUtils utils = new MatsimTestUtils();
+
+	@Test
+	public void testWriteRead() {
+		List<Event> written = createEvents();
+		String binaryFile = this.utils.getOutputDirectory() + "events.bin";
+		String xmlFile = this.utils.getOutputDirectory() + "events.xml";
+		// small blocks so the events are spread over several blocks
+		EventWriterBinary binaryWriter = new EventWriterBinary(binaryFile, 300.0, 50);
+		EventWriterXML xmlWriter = new EventWriterXML(xmlFile);
+		for (Event event : written) {
+			binaryWriter.handleEvent(event);
+			xmlWriter.handleEvent(event);
+		}
+		binaryWriter.closeFile();
+		xmlWriter.closeFile();
+
+		List<Event> fromBinary = readEvents(binaryFile, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, null);
+		List<Event> fromXml = readEvents(xmlFile, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, null);
+		Assert.assertEquals(written.size(), fromBinary.size());
+		Assert.assertEquals(fromXml.size(), fromBinary.size());
+		for (int i = 0; i < written.size(); i++) {
+			Assert.assertEquals(written.get(i).getClass(), fromBinary.get(i).getClass());
+			Assert.assertEquals(written.get(i).getAttributes(), fromBinary.get(i).getAttributes());
+			Assert.assertEquals(fromXml.get(i).getAttributes(), fromBinary.get(i).getAttributes());
+		}
+	}
+
+	@Test
+	public void testTimeWindowAndEventTypes() {
+		List<Event> written = createEvents();
+		String filename = this.utils.getOutputDirectory() + "events.bin";
+		EventWriterBinary writer = new EventWriterBinary(filename, 300.0, 50);
+		for (Event event : written) {
+			writer.handleEvent(event);
+		}
+		writer.closeFile();
+
+		List<Event> expected = new ArrayList<>();
+		for (Event event : written) {
+			if (event.getTime() >= 1000.0 && event.getTime() < 2000.0) {
+				expected.add(event);
+			}
+		}
+		assertSameEvents(expected, readEvents(filename, 1000.0, 2000.0, null));
+
+		expected.clear();
+		for (Event event : written) {
+			if (event.getEventType().equals(PersonMoneyEvent.EVENT_TYPE) || event.getEventType().equals(LinkLeaveEvent.EVENT_TYPE)) {
+				expected.add(event);
+			}
+		}
+		assertSameEvents(expected, readEvents(filename, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY,
+				Arrays.asList(PersonMoneyEvent.EVENT_TYPE, LinkLeaveEvent.EVENT_TYPE)));
+
+		expected.clear();
+		for (Event event : written) {
+			if (event.getEventType().equals(PersonMoneyEvent.EVENT_TYPE) && event.getTime() >= 2500.0 && event.getTime() < 2600.0) {
+				expected.add(event);
+			}
+		}
+		assertSameEvents(expected, readEvents(filename, 2500.0, 2600.0, Collections.singleton(PersonMoneyEvent.EVENT_TYPE)));
+
+		Assert.assertEquals(0, readEvents(filename, 1000.0, 2000.0, Collections.singleton("unknownType")).size());
+	}
+
+	@Test
+	public void testSpecialValues() {
+		String filename = this.utils.getOutputDirectory() + "events.bin";
+		EventWriterBinary writer = new EventWriterBinary(filename);
+		writer.handleEvent(new LinkLeaveEvent(3600.0, Id.createVehicleId("vehicle>3"), Id.createLinkId("link<2")));
+		GenericEvent event = new GenericEvent("TEST", 3601.0);
+		event.getAttributes().put("dummy", null);
+		event.getAttributes().put("empty", "");
+		event.getAttributes().put("number", "-1.5E-3");
+		writer.handleEvent(event);
+		writer.closeFile();
+
+		List<Event> events = readEvents(filename, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, null);
+		Assert.assertEquals(2, events.size());
+		LinkLeaveEvent event1 = (LinkLeaveEvent) events.get(0);
+		Assert.assertEquals("link<2", event1.getLinkId().toString());
+		Assert.assertEquals("vehicle>3", event1.getVehicleId().toString());
+		GenericEvent event2 = (GenericEvent) events.get(1);
+		Assert.assertTrue(event2.getAttributes().containsKey("dummy"));
+		Assert.assertNull(event2.getAttributes().get("dummy"));
+		Assert.assertEquals("", event2.getAttributes().get("empty"));
+		Assert.assertEquals("-1.5E-3", event2.getAttributes().get("number"));
+	}
+
+	@Test
+	public void testEmptyFile() {
+		String filename = this.utils.getOutputDirectory() + "events.bin";
+		new EventWriterBinary(filename).closeFile();
+		Assert.assertEquals(0, readEvents(filename, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, null).size());
+	}
+
+	private static List<Event> readEvents(String filename, double fromTime, double toTime, Collection<String> eventTypes) {
+		EventsManager events = EventsUtils.createEventsManager();
+		EventsCollector collector = new EventsCollector();
+		events.addHandler(collector);
+		MatsimEventsReader reader = new MatsimEventsReader(events);
+		reader.setTimeWindow(fromTime, toTime);
+		reader.setEventTypes(eventTypes);
+		reader.readFile(filename);
+		return new ArrayList<>(collector.getEvents());
+	}
+
+	private static void assertSameEvents(List<Event> expected, List<Event> actual) {
+		Assert.assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			Assert.assertEquals(expected.get(i).getAttributes(), actual.get(i).getAttributes());
+		}
+	}
+
+	private static List<Event> createEvents() {
+		List<Event> events = new ArrayList<>();
+		for (int time = 0; time < 3600; time += 7) {
+			int i = time % 23;
+			events.add(new PersonDepartureEvent(time, Id.createPersonId(i), Id.createLinkId(i), "car"));
+			events.add(new VehicleEntersTrafficEvent(time, Id.createPersonId(i), Id.createLinkId(i), Id.createVehicleId(i), "car", 1.0));
+			events.add(new LinkLeaveEvent(time, Id.createVehicleId(i), Id.createLinkId(i)));
+			events.add(new LinkEnterEvent(time, Id.createVehicleId(i), Id.createLinkId(i + 1)));
+			if (time % 5 == 0) {
+				events.add(new PersonMoneyEvent(time, Id.createPersonId(i), -0.1 * time));
+			}
+		}
+		return events;
+	}
+
+}
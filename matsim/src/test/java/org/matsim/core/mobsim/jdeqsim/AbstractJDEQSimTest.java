@@ -6,6 +6,7 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.function.Consumer;
 
 import org.junit.After;
 import org.junit.Before;
@@ -73,10 +74,14 @@ public abstract class AbstractJDEQSimTest {
 	}
 
 	public void runJDEQSim(Scenario scenario) {
+		runJDEQSim(scenario, jdeqSim -> jdeqSim.run());
+	}
+
+	protected void runJDEQSim(Scenario scenario, Consumer<JDEQSimulation> run) {
 		EventsManagerImpl events = new EventsManagerImpl();
 		events.addHandler(new PersonEventCollector());
 		events.initProcessing();
-		new JDEQSimulation(ConfigUtils.addOrGetModule(scenario.getConfig(), JDEQSimConfigGroup.NAME, JDEQSimConfigGroup.class), scenario, events).run();
+		run.accept(new JDEQSimulation(ConfigUtils.addOrGetModule(scenario.getConfig(), JDEQSimConfigGroup.NAME, JDEQSimConfigGroup.class), scenario, events));
 		events.finishProcessing();
 	}
 
@@ -0,0 +1,194 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.jdeqsim;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.api.core.v01.population.Population;
+import org.matsim.api.core.v01.population.PopulationFactory;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.gbl.MatsimRandom;
+import org.matsim.core.mobsim.jdeqsim.util.EventLibrary;
+import org.matsim.core.population.routes.RouteUtils;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.core.utils.io.IOUtils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ParallelJDEQSimTest extends AbstractJDEQSimTest {
+
+	private static final double TRAVEL_TIME_TOLERANCE = 0.01;
+
+	@Test
+	public void test_equilPlans100_parallel() {
+		Config config = ConfigUtils.loadConfig("test/scenarios/equil/config.xml");
+		MatsimRandom.reset(config.global().getRandomSeed());
+		Scenario scenario = ScenarioUtils.createScenario(config);
+		ScenarioUtils.loadScenario(scenario);
+
+		super.runJDEQSim(scenario);
+		Map<Id<Person>, List<Event>> sequentialEventsByPerson = new HashMap<>(super.eventsByPerson);
+		double sequentialTravelTime = EventLibrary.getSumTravelTime(super.allEvents);
+		super.allEvents.clear();
+		super.eventsByPerson.clear();
+
+		ParallelScheduler scheduler = this.runParallelJDEQSim(scenario, 2);
+		assertTrue("the partitions were simulated one after the other", scheduler.getNumberOfTimeWindows() > 0);
+
+		assertEquals(scenario.getPopulation().getPersons().size(), super.eventsByPerson.size());
+		super.checkAscendingTimeStamps();
+		super.checkEventsCorrespondToPlans(scenario.getPopulation());
+
+		// the parallel simulation must produce the events of the sequential one
+		assertSameEventsByPerson(sequentialEventsByPerson);
+		assertEquals(sequentialTravelTime, EventLibrary.getSumTravelTime(super.allEvents), sequentialTravelTime * TRAVEL_TIME_TOLERANCE);
+
+		// the order of the events must not depend on the scheduling of the threads
+		List<Event> events = new ArrayList<>(super.allEvents);
+		super.allEvents.clear();
+		super.eventsByPerson.clear();
+		this.runParallelJDEQSim(scenario, 2);
+
+		assertEquals(events.size(), super.allEvents.size());
+		for (int i = 0; i < events.size(); i++) {
+			assertEquals(events.get(i).toString(), super.allEvents.get(i).toString());
+		}
+	}
+
+	/**
+	 * The agents walk from the east to the west of the network, with a travel
+	 * time of zero, none or some minutes, and go back by car on an empty
+	 * route. Both partitions must nevertheless be simulated in time windows.
+	 */
+	@Test
+	public void test_legsWithoutTravelTimeToOtherPartition_parallel() {
+		Config config = utils.loadConfig(IOUtils.newUrl(utils.packageInputResourcePath(), "config1.xml"));
+		MatsimRandom.reset(config.global().getRandomSeed());
+		Scenario scenario = ScenarioUtils.createScenario(config);
+		ScenarioUtils.loadScenario(scenario);
+		Population population = scenario.getPopulation();
+		for (Id<Person> personId : new ArrayList<>(population.getPersons().keySet())) {
+			population.removePerson(personId);
+		}
+		PopulationFactory factory = population.getFactory();
+		// link 1 starts at the west end of the network, link 20 in the east
+		Id<Link> west = Id.createLinkId("1");
+		Id<Link> east = Id.createLinkId("20");
+		for (int i = 0; i < 30; i++) {
+			Person person = factory.createPerson(Id.createPersonId(i));
+			Plan plan = factory.createPlan();
+			plan.addActivity(createActivity(factory, "h", west, 6 * 3600 + 10 * i));
+			plan.addLeg(createCarLeg(factory, west, east, "6", "15"));
+			plan.addActivity(createActivity(factory, "w", east, 8 * 3600 + 10 * i));
+			Leg walk = factory.createLeg(TransportMode.walk);
+			if (i % 3 == 0) {
+				walk.setTravelTime(0);
+			} else if (i % 3 == 2) {
+				walk.setTravelTime(300);
+			}
+			plan.addLeg(walk);
+			plan.addActivity(createActivity(factory, "s", west, 9 * 3600 + 10 * i));
+			plan.addLeg(createCarLeg(factory, west, east, "6", "15"));
+			plan.addActivity(createActivity(factory, "w", east, 11 * 3600 + 10 * i));
+			plan.addLeg(createCarLeg(factory, east, west));
+			plan.addActivity(createActivity(factory, "h", west, 12 * 3600 + 10 * i));
+			plan.addLeg(createCarLeg(factory, west, east, "6", "15"));
+			plan.addActivity(factory.createActivityFromLinkId("w", east));
+			person.addPlan(plan);
+			population.addPerson(person);
+		}
+
+		super.runJDEQSim(scenario);
+		Map<Id<Person>, List<Event>> sequentialEventsByPerson = new HashMap<>(super.eventsByPerson);
+		double sequentialTravelTime = EventLibrary.getSumTravelTime(super.allEvents);
+		super.allEvents.clear();
+		super.eventsByPerson.clear();
+
+		ParallelScheduler scheduler = this.runParallelJDEQSim(scenario, 2);
+		assertTrue("the partitions were simulated one after the other", scheduler.getNumberOfTimeWindows() > 0);
+
+		assertEquals(population.getPersons().size(), super.eventsByPerson.size());
+		super.checkEventsCorrespondToPlans(population);
+		assertSameEventsByPerson(sequentialEventsByPerson);
+		assertEquals(sequentialTravelTime, EventLibrary.getSumTravelTime(super.allEvents), sequentialTravelTime * TRAVEL_TIME_TOLERANCE);
+	}
+
+	private ParallelScheduler runParallelJDEQSim(final Scenario scenario, final int numberOfPartitions) {
+		JDEQSimConfigGroup jdeqSimConfig = ConfigUtils.addOrGetModule(scenario.getConfig(), JDEQSimConfigGroup.NAME, JDEQSimConfigGroup.class);
+		ParallelScheduler scheduler = new ParallelScheduler(jdeqSimConfig, numberOfPartitions, scenario.getNetwork(), scenario.getPopulation());
+		this.runJDEQSim(scenario, jdeqSim -> jdeqSim.run(scheduler));
+		return scheduler;
+	}
+
+	/**
+	 * Compares the events of each person, except for their time. Vehicles arriving at a junction at the same time
+	 * may be served in a different order by the sequential and the parallel simulation, so only the sum of the
+	 * travel times is compared, with {@link #TRAVEL_TIME_TOLERANCE}.
+	 */
+	private void assertSameEventsByPerson(final Map<Id<Person>, List<Event>> expectedEventsByPerson) {
+		assertEquals(expectedEventsByPerson.keySet(), super.eventsByPerson.keySet());
+		for (Map.Entry<Id<Person>, List<Event>> entry : expectedEventsByPerson.entrySet()) {
+			List<Event> events = super.eventsByPerson.get(entry.getKey());
+			assertEquals(entry.getValue().size(), events.size());
+			for (int i = 0; i < events.size(); i++) {
+				assertEquals(getAttributesWithoutTime(entry.getValue().get(i)), getAttributesWithoutTime(events.get(i)));
+			}
+		}
+	}
+
+	private static Map<String, String> getAttributesWithoutTime(final Event event) {
+		Map<String, String> attributes = event.getAttributes();
+		attributes.remove(Event.ATTRIBUTE_TIME);
+		return attributes;
+	}
+
+	private static Activity createActivity(final PopulationFactory factory, final String type, final Id<Link> linkId, final double endTime) {
+		Activity activity = factory.createActivityFromLinkId(type, linkId);
+		activity.setEndTime(endTime);
+		return activity;
+	}
+
+	private static Leg createCarLeg(final PopulationFactory factory, final Id<Link> startLinkId, final Id<Link> endLinkId,
+			final String... linkIds) {
+		Leg leg = factory.createLeg(TransportMode.car);
+		List<Id<Link>> route = new ArrayList<>();
+		for (String linkId : linkIds) {
+			route.add(Id.createLinkId(linkId));
+		}
+		leg.setRoute(RouteUtils.createLinkNetworkRouteImpl(startLinkId, route, endLinkId));
+		return leg;
+	}
+
+}
@@ -0,0 +1,147 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.qsim;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ActivityEndCalendarTest {
+
+	private static ActivityEndCalendar<String> createCalendar() {
+		return new ActivityEndCalendar<>(Comparator.<String>reverseOrder());
+	}
+
+	@Test
+	public void testPollDueInOrder() {
+		ActivityEndCalendar<String> calendar = createCalendar();
+		calendar.add("a", 10.0);
+		calendar.add("b", 5.5);
+		calendar.add("c", 10.0);
+		calendar.add("d", 20.0);
+		calendar.add("e", 5.0);
+
+		Assert.assertEquals(Arrays.asList("e", "b", "c", "a"), calendar.pollDue(10.0));
+		Assert.assertEquals(Collections.emptyList(), calendar.pollDue(11.0));
+		Assert.assertEquals(1, calendar.size());
+		Assert.assertEquals(Arrays.asList("d"), calendar.pollDue(25.0));
+		Assert.assertEquals(0, calendar.size());
+	}
+
+	@Test
+	public void testItemsAddedWhilePollingAreMergedIntoOrder() {
+		ActivityEndCalendar<String> calendar = createCalendar();
+		calendar.add("a", 10.0);
+		calendar.add("c", 10.0);
+		calendar.add("e", 10.0);
+		Assert.assertEquals("e", calendar.poll(10.0));
+
+		// due items added while the items of the time step are polled come in order among the remaining ones
+		calendar.add("d", 10.0);
+		calendar.add("f", 9.0);
+		Assert.assertEquals("f", calendar.poll(10.0));
+		Assert.assertEquals("d", calendar.poll(10.0));
+		calendar.add("b", 10.0);
+		calendar.add("x", 10.5);
+		Assert.assertEquals("c", calendar.poll(10.0));
+		Assert.assertTrue(calendar.remove("b"));
+		Assert.assertEquals("a", calendar.poll(10.0));
+		Assert.assertNull(calendar.poll(10.0));
+		Assert.assertEquals("x", calendar.poll(11.0));
+		Assert.assertEquals(0, calendar.size());
+	}
+
+	@Test
+	public void testFractionalTimesWithinSecond() {
+		ActivityEndCalendar<String> calendar = createCalendar();
+		calendar.add("a", 7.75);
+		calendar.add("b", 7.25);
+		Assert.assertEquals(Arrays.asList("b"), calendar.pollDue(7.5));
+		Assert.assertEquals(Arrays.asList("a"), calendar.pollDue(8.0));
+	}
+
+	@Test
+	public void testRescheduleAndRemove() {
+		ActivityEndCalendar<String> calendar = createCalendar();
+		calendar.add("a", 10.0);
+		calendar.add("b", 10.0);
+		calendar.add("c", 30.0);
+		calendar.pollDue(0.0);
+
+		calendar.add("a", 20.0);
+		Assert.assertTrue(calendar.remove("b"));
+		Assert.assertFalse(calendar.remove("b"));
+		calendar.add("c", 15.0);
+
+		Assert.assertEquals(Collections.emptyList(), calendar.pollDue(10.0));
+		Assert.assertEquals(Arrays.asList("c", "a"), calendar.pollDue(30.0));
+		Assert.assertEquals(0, calendar.size());
+	}
+
+	@Test
+	public void testPastTimesAreDueAtNextPoll() {
+		ActivityEndCalendar<String> calendar = createCalendar();
+		calendar.pollDue(100.0);
+		calendar.add("a", 50.0);
+		calendar.add("b", Double.NEGATIVE_INFINITY);
+		Assert.assertEquals(Arrays.asList("b", "a"), calendar.pollDue(101.0));
+	}
+
+	@Test
+	public void testItemsAddedBeforeFirstPoll() {
+		ActivityEndCalendar<String> calendar = createCalendar();
+		calendar.add("a", 0.0);
+		calendar.add("b", 6 * 3600.0);
+		calendar.add("c", -10.0);
+		Assert.assertEquals(Arrays.asList("c", "a"), calendar.pollDue(4 * 3600.0));
+		Assert.assertEquals(Arrays.asList("b"), calendar.pollDue(6 * 3600.0));
+	}
+
+	@Test
+	public void testTimesBeyondTheRing() {
+		ActivityEndCalendar<String> calendar = createCalendar();
+		calendar.pollDue(0.0);
+		calendar.add("a", 10.0);
+		calendar.add("b", 10.0 + ActivityEndCalendar.BUCKETS);
+		Assert.assertEquals(Arrays.asList("a"), calendar.pollDue(10.0));
+		for (double time = 11.0; time < ActivityEndCalendar.BUCKETS + 10.0; time += 1000.0) {
+			Assert.assertEquals(Collections.emptyList(), calendar.pollDue(time));
+		}
+		Assert.assertEquals(Arrays.asList("b"), calendar.pollDue(10.0 + ActivityEndCalendar.BUCKETS));
+	}
+
+	@Test
+	public void testEntriesAndClear() {
+		ActivityEndCalendar<String> calendar = createCalendar();
+		calendar.add("a", 10.0);
+		calendar.add("b", 5.0);
+		calendar.add("a", 3.0);
+		Assert.assertEquals(2, calendar.getEntries().size());
+		Assert.assertEquals("a", calendar.getEntries().get(0).item);
+		Assert.assertEquals(3.0, calendar.getEntries().get(0).time, 0.0);
+		calendar.clear();
+		Assert.assertEquals(0, calendar.size());
+		Assert.assertEquals(Collections.emptyList(), calendar.pollDue(100.0));
+	}
+
+}
@@ -14,7 +14,6 @@ import org.matsim.core.config.Config;
 import org.matsim.core.config.ConfigUtils;
 import org.matsim.core.events.EventsUtils;
 import org.matsim.core.mobsim.framework.MobsimAgent;
-import org.matsim.core.mobsim.jdeqsim.MessageQueue;
 import org.matsim.core.mobsim.qsim.InternalInterface;
 import org.matsim.core.mobsim.qsim.QSim;
 import org.matsim.core.mobsim.qsim.QSimBuilder;
@@ -44,7 +43,7 @@ public class NetworkChangeEventsEngineTest {
 		EventsManager eventsManager = EventsUtils.createEventsManager();
 		QSim qsim = new QSimBuilder(config).useDefaults().build(scenario, eventsManager);
 
-		NetworkChangeEventsEngine engine = new NetworkChangeEventsEngine(scenario.getNetwork(), new MessageQueue());
+		NetworkChangeEventsEngine engine = new NetworkChangeEventsEngine(scenario.getNetwork());
 		qsim.addMobsimEngine(engine);
 
 		engine.onPrepareSim();
@@ -80,7 +79,7 @@ public class NetworkChangeEventsEngineTest {
 		EventsManager eventsManager = EventsUtils.createEventsManager();
 		QSim qsim = new QSimBuilder(config).useDefaults().build(scenario, eventsManager);
 
-		NetworkChangeEventsEngine engine = new NetworkChangeEventsEngine(scenario.getNetwork(), new MessageQueue());
+		NetworkChangeEventsEngine engine = new NetworkChangeEventsEngine(scenario.getNetwork());
 		engine.setInternalInterface(new DummyInternalInterfaceImpl(qsim));
 
 		engine.onPrepareSim();
@@ -116,7 +115,7 @@ public class NetworkChangeEventsEngineTest {
 		EventsManager eventsManager = EventsUtils.createEventsManager();
 		QSim qsim = new QSimBuilder(config).useDefaults().build(scenario, eventsManager);
 
-		NetworkChangeEventsEngine engine = new NetworkChangeEventsEngine(scenario.getNetwork(), new MessageQueue());
+		NetworkChangeEventsEngine engine = new NetworkChangeEventsEngine(scenario.getNetwork());
 		engine.setInternalInterface(new DummyInternalInterfaceImpl(qsim));
 
 		engine.onPrepareSim();
@@ -0,0 +1,197 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.qsim.qnetsimengine;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.events.LinkEnterEvent;
+import org.matsim.api.core.v01.events.PersonArrivalEvent;
+import org.matsim.api.core.v01.events.handler.LinkEnterEventHandler;
+import org.matsim.api.core.v01.events.handler.PersonArrivalEventHandler;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.api.core.v01.population.PopulationFactory;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.controler.PrepareForSimUtils;
+import org.matsim.core.events.EventsUtils;
+import org.matsim.core.mobsim.framework.listeners.MobsimBeforeSimStepListener;
+import org.matsim.core.mobsim.qsim.QSim;
+import org.matsim.core.mobsim.qsim.QSimBuilder;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.population.routes.NetworkRoute;
+import org.matsim.core.population.routes.RouteUtils;
+import org.matsim.core.scenario.ScenarioUtils;
+
+/**
+ * Moving nodes and links between the QNetsimEngineRunners must not change the traffic flow.  Without
+ * congestion, all vehicles must thus enter the same links and arrive at the same time as without load balancing.
+ */
+public class QNetsimEngineLoadBalancingTest {
+
+	private static final int NUMBER_OF_NODES = 30;
+	private static final int NUMBER_OF_PERSONS = 300;
+	private static final int NUMBER_OF_THREADS = 4;
+
+	@Test
+	public void testLoadBalancingWithThreadpool() {
+		Recorder reference = runScenario(true, false);
+		Recorder balanced = runScenario(true, true);
+		assertSameTraffic(reference, balanced);
+		assertLoadBalanced(reference, balanced);
+	}
+
+	@Test
+	public void testLoadBalancingWithBarriers() {
+		Recorder reference = runScenario(false, false);
+		Recorder balanced = runScenario(false, true);
+		assertSameTraffic(reference, balanced);
+		assertLoadBalanced(reference, balanced);
+	}
+
+	private static void assertSameTraffic(Recorder reference, Recorder balanced) {
+		Assert.assertEquals(NUMBER_OF_PERSONS, reference.arrivalTimes.size());
+		Assert.assertEquals(reference.arrivalTimes, balanced.arrivalTimes);
+		Assert.assertEquals(reference.linkEnters, balanced.linkEnters);
+	}
+
+	private static void assertLoadBalanced(Recorder reference, Recorder balanced) {
+		Assert.assertNull(reference.stepImbalances);
+		Assert.assertEquals(0, reference.migratedNodes);
+
+		Assert.assertTrue("no node was moved to another runner", balanced.migratedNodes > 0);
+		int recordedSteps = 0;
+		for (double imbalance : balanced.stepImbalances) {
+			if (imbalance == 0.0) {
+				// no time step at this second, or no time measured
+				continue;
+			}
+			recordedSteps++;
+			// the slowest runner needs at least the mean time, and at most the time of all runners
+			Assert.assertTrue("imbalance " + imbalance, imbalance >= 1.0 && imbalance <= NUMBER_OF_THREADS);
+		}
+		Assert.assertTrue("no imbalance was recorded", recordedSteps > 0);
+	}
+
+	private static Recorder runScenario(boolean usingThreadpool, boolean usingLoadBalancing) {
+		Config config = ConfigUtils.createConfig();
+		config.qsim().setNumberOfThreads(NUMBER_OF_THREADS);
+		config.qsim().setUsingThreadpool(usingThreadpool);
+		config.qsim().setUsingAdaptiveLoadBalancing(usingLoadBalancing);
+		config.qsim().setLoadBalancingInterval(1.0);
+		Scenario scenario = ScenarioUtils.createScenario(config);
+
+		Network network = scenario.getNetwork();
+		Node[] nodes = new Node[NUMBER_OF_NODES];
+		for (int i = 0; i < NUMBER_OF_NODES; i++) {
+			nodes[i] = NetworkUtils.createAndAddNode(network, Id.createNodeId(i), new Coord(i * 1000.0, 0.0));
+		}
+		List<Id<Link>> linkIds = new ArrayList<>();
+		for (int i = 1; i < NUMBER_OF_NODES; i++) {
+			Link link = NetworkUtils.createAndAddLink(network, Id.createLinkId(i), nodes[i - 1], nodes[i], 1000.0, 25.0, 7200.0, 1.0, null, null);
+			linkIds.add(link.getId());
+		}
+
+		PopulationFactory pf = scenario.getPopulation().getFactory();
+		Id<Link> startLinkId = linkIds.get(0);
+		Id<Link> endLinkId = linkIds.get(linkIds.size() - 1);
+		for (int p = 0; p < NUMBER_OF_PERSONS; p++) {
+			Person person = pf.createPerson(Id.createPersonId(p));
+			Plan plan = pf.createPlan();
+			Activity home = pf.createActivityFromLinkId("h", startLinkId);
+			home.setEndTime(6 * 3600 + 2 * p);
+			plan.addActivity(home);
+			Leg leg = pf.createLeg(TransportMode.car);
+			NetworkRoute route = RouteUtils.createLinkNetworkRouteImpl(startLinkId, endLinkId);
+			route.setLinkIds(startLinkId, linkIds.subList(1, linkIds.size() - 1), endLinkId);
+			leg.setRoute(route);
+			plan.addLeg(leg);
+			plan.addActivity(pf.createActivityFromLinkId("w", endLinkId));
+			person.addPlan(plan);
+			scenario.getPopulation().addPerson(person);
+		}
+
+		EventsManager events = EventsUtils.createEventsManager();
+		Recorder recorder = new Recorder();
+		events.addHandler(recorder);
+
+		PrepareForSimUtils.createDefaultPrepareForSim(scenario).run();
+		QSim qsim = new QSimBuilder(config) //
+			.useDefaults() //
+			.build(scenario, events);
+
+		// the runners of the nodes before the first load balancing step
+		Map<Node, NetElementActivationRegistry> initialRunners = new HashMap<>();
+		qsim.addQueueSimulationListeners((MobsimBeforeSimStepListener) e -> {
+			if (initialRunners.isEmpty()) {
+				for (Node node : nodes) {
+					initialRunners.put(node, getRunner(qsim, node));
+				}
+			}
+		});
+		qsim.run();
+
+		for (Node node : nodes) {
+			if (getRunner(qsim, node) != initialRunners.get(node)) {
+				recorder.migratedNodes++;
+			}
+		}
+		recorder.stepImbalances = qsim.getChildInjector().getInstance(QNetsimEngine.class).getStepImbalances();
+		return recorder;
+	}
+
+	private static NetElementActivationRegistry getRunner(QSim qsim, Node node) {
+		return ((QNodeImpl) qsim.getNetsimNetwork().getNetsimNode(node.getId())).getNetElementActivationRegistry();
+	}
+
+	private static class Recorder implements PersonArrivalEventHandler, LinkEnterEventHandler {
+
+		private final Map<Id<Person>, Double> arrivalTimes = new HashMap<>();
+		private final Map<Id<Link>, Integer> linkEnters = new HashMap<>();
+		private int migratedNodes = 0;
+		private double[] stepImbalances = null;
+
+		@Override
+		public void handleEvent(PersonArrivalEvent event) {
+			this.arrivalTimes.put(event.getPersonId(), event.getTime());
+		}
+
+		@Override
+		public void handleEvent(LinkEnterEvent event) {
+			this.linkEnters.merge(event.getLinkId(), 1, Integer::sum);
+		}
+	}
+
+}
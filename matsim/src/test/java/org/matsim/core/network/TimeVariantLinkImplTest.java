@@ -352,6 +352,46 @@ public class TimeVariantLinkImplTest extends MatsimTestCase {
 	}
 
 
+	/**
+	 * Tests that change events with the same start time are all applied, in the order they were added.
+	 */
+	public void testChangesWithSameStartTime() {
+		for (LinkFactory lf : linkFactories(15 * 60, 30 * 3600)) {
+			final Network network = NetworkUtils.createNetwork();
+			NetworkFactory nf = network.getFactory();
+			nf.setLinkFactory(lf);
+			((NetworkImpl)network).setFactory(nf);
+			network.setCapacityPeriod(3600.0);
+
+			Node node1 = NetworkUtils.createAndAddNode(network, Id.create("1", Node.class), new Coord((double) 0, (double) 0));
+			Node node2 = NetworkUtils.createAndAddNode(network, Id.create("2", Node.class), new Coord((double) 100, (double) 0));
+			TimeVariantLinkImpl link = (TimeVariantLinkImpl)NetworkUtils.createAndAddLink(network,Id.create("1", Link.class), node1, node2, (double) 100, (double) 10, (double) 3600, (double) 1 );
+
+			NetworkChangeEvent change = new NetworkChangeEvent(7*3600.0);
+			change.addLink(link);
+			change.setFreespeedChange(new ChangeValue(ChangeType.ABSOLUTE_IN_SI_UNITS, 20));
+			link.applyEvent(change);
+			NetworkChangeEvent change2 = new NetworkChangeEvent(7*3600.0);
+			change2.addLink(link);
+			change2.setFlowCapacityChange(new ChangeValue(ChangeType.ABSOLUTE_IN_SI_UNITS, 2));
+			link.applyEvent(change2);
+			NetworkChangeEvent change3 = new NetworkChangeEvent(7*3600.0);
+			change3.addLink(link);
+			change3.setFreespeedChange(new ChangeValue(ChangeType.FACTOR, 2.0));
+			link.applyEvent(change3);
+			NetworkChangeEvent change4 = new NetworkChangeEvent(6*3600.0);
+			change4.addLink(link);
+			change4.setFreespeedChange(new ChangeValue(ChangeType.OFFSET_IN_SI_UNITS, 5.0));
+			link.applyEvent(change4);
+
+			assertEquals(10.0, link.getFreespeed(6*3600.0 - 1), EPSILON);
+			assertEquals(15.0, link.getFreespeed(6*3600.0), EPSILON);
+			assertEquals(40.0, link.getFreespeed(7*3600.0), EPSILON);
+			assertEquals(1.0, link.getFlowCapacityPerSec(7*3600.0 - 1), EPSILON);
+			assertEquals(2.0, link.getFlowCapacityPerSec(7*3600.0), EPSILON);
+		}
+	}
+
     static LinkFactory[] linkFactories(int interval, int maxTime)
     {
         return new LinkFactory[] {
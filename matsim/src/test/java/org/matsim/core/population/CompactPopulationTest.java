@@ -0,0 +1,336 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.population;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.api.core.v01.population.PlanElement;
+import org.matsim.api.core.v01.population.Population;
+import org.matsim.api.core.v01.population.PopulationFactory;
+import org.matsim.api.core.v01.population.Route;
+import org.matsim.core.config.groups.PlansConfigGroup;
+import org.matsim.core.population.routes.NetworkRoute;
+import org.matsim.core.population.routes.RouteUtils;
+import org.matsim.facilities.ActivityFacility;
+import org.matsim.vehicles.Vehicle;
+
+public class CompactPopulationTest {
+
+	@Test
+	public void testPackedPlansKeepContent() {
+		Population reference = PopulationUtils.createPopulation(new PlansConfigGroup(), null);
+		Population compact = createCompactPopulation();
+		for (int i = 0; i < 20; i++) {
+			reference.addPerson(createPerson(reference.getFactory(), i));
+			compact.addPerson(createPerson(compact.getFactory(), i));
+		}
+		assertSamePopulation(reference, compact);
+
+		Plan plan = compact.getPersons().get(Id.createPersonId(3)).getSelectedPlan();
+		Assert.assertTrue(plan instanceof CompactPlan);
+		Assert.assertTrue(((CompactPlan) plan).isPacked());
+		Assert.assertTrue(plan.getPlanElements().get(0) instanceof CompactActivity);
+		Assert.assertTrue(((Leg) plan.getPlanElements().get(1)).getRoute() instanceof CompactNetworkRoute);
+		Assert.assertTrue(((Leg) plan.getPlanElements().get(3)).getRoute() instanceof CompactGenericRoute);
+		Assert.assertSame(plan.getPlanElements().get(1), plan.getPlanElements().get(1));
+	}
+
+	@Test
+	public void testModifyPackedPlan() {
+		Population compact = createCompactPopulation();
+		compact.addPerson(createPerson(compact.getFactory(), 1));
+		Plan plan = compact.getPersons().get(Id.createPersonId(1)).getSelectedPlan();
+
+		Activity home = (Activity) plan.getPlanElements().get(0);
+		Leg leg = (Leg) plan.getPlanElements().get(1);
+		home.setEndTime(1234.0);
+		home.setType("home2");
+		home.setCoord(null);
+		home.getAttributes().putAttribute("x", "y");
+		NetworkRoute route = (NetworkRoute) leg.getRoute();
+		route.setVehicleId(Id.createVehicleId("v1"));
+		route.setLinkIds(Id.createLinkId("a"), Arrays.asList(Id.createLinkId("b"), Id.createLinkId("c"), Id.createLinkId("d")), Id.createLinkId("e"));
+		Assert.assertTrue(((CompactPlan) plan).isPacked());
+
+		Activity anotherHome = (Activity) plan.getPlanElements().get(0);
+		Assert.assertEquals(1234.0, anotherHome.getEndTime(), 0.0);
+		Assert.assertEquals("home2", anotherHome.getType());
+		Assert.assertNull(anotherHome.getCoord());
+		Assert.assertEquals("y", anotherHome.getAttributes().getAttribute("x"));
+		NetworkRoute anotherRoute = (NetworkRoute) ((Leg) plan.getPlanElements().get(1)).getRoute();
+		Assert.assertEquals(Id.createVehicleId("v1"), anotherRoute.getVehicleId());
+		Assert.assertEquals(Arrays.asList(Id.createLinkId("b"), Id.createLinkId("c"), Id.createLinkId("d")), anotherRoute.getLinkIds());
+		Assert.assertEquals("a b c d e", anotherRoute.getRouteDescription());
+
+		// structural modification unpacks the plan, but keeps the elements handed out before
+		Activity shop = PopulationUtils.createActivityFromLinkId("shop", Id.createLinkId("s"));
+		plan.getPlanElements().add(2, shop);
+		plan.getPlanElements().add(3, PopulationUtils.createLeg(TransportMode.walk));
+		Assert.assertFalse(((CompactPlan) plan).isPacked());
+		Assert.assertSame(home, plan.getPlanElements().get(0));
+		Assert.assertSame(leg, plan.getPlanElements().get(1));
+		Assert.assertSame(shop, plan.getPlanElements().get(2));
+		home.setEndTime(2345.0);
+		shop.setEndTime(3456.0);
+		leg.setRoute(RouteUtils.createGenericRouteImpl(Id.createLinkId("h"), Id.createLinkId("s")));
+
+		PopulationUtils.compact(compact);
+		Assert.assertTrue(((CompactPlan) plan).isPacked());
+		Assert.assertEquals(7, plan.getPlanElements().size());
+		Assert.assertEquals(2345.0, ((Activity) plan.getPlanElements().get(0)).getEndTime(), 0.0);
+		Assert.assertEquals("shop", ((Activity) plan.getPlanElements().get(2)).getType());
+		Assert.assertEquals(3456.0, ((Activity) plan.getPlanElements().get(2)).getEndTime(), 0.0);
+		Assert.assertEquals(TransportMode.walk, ((Leg) plan.getPlanElements().get(3)).getMode());
+		Route genericRoute = ((Leg) plan.getPlanElements().get(1)).getRoute();
+		Assert.assertTrue(genericRoute instanceof CompactGenericRoute);
+		Assert.assertEquals(Id.createLinkId("s"), genericRoute.getEndLinkId());
+	}
+
+	@Test
+	public void testCompactAfterReplanning() {
+		Population reference = PopulationUtils.createPopulation(new PlansConfigGroup(), null);
+		Population compact = createCompactPopulation();
+		for (int i = 0; i < 50; i++) {
+			reference.addPerson(createPerson(reference.getFactory(), i));
+			compact.addPerson(createPerson(compact.getFactory(), i));
+		}
+		for (int iteration = 0; iteration < 10; iteration++) {
+			for (Population population : new Population[] { reference, compact }) {
+				for (Person person : population.getPersons().values()) {
+					// what a simple replanning strategy would do
+					Plan oldPlan = person.getSelectedPlan();
+					Plan newPlan = person.createCopyOfSelectedPlanAndMakeSelected();
+					Activity act = (Activity) newPlan.getPlanElements().get(2);
+					act.setEndTime(act.getEndTime() + 60.0 * iteration);
+					((Leg) newPlan.getPlanElements().get(1)).setTravelTime(100.0 + iteration);
+					newPlan.setScore(null);
+					oldPlan.setScore(10.0 * iteration);
+					if (person.getPlans().size() > 3) {
+						person.removePlan(person.getPlans().get(0));
+					}
+				}
+				PopulationUtils.compact(population);
+			}
+			assertSamePopulation(reference, compact);
+		}
+		for (Person person : compact.getPersons().values()) {
+			for (Plan plan : person.getPlans()) {
+				Assert.assertTrue(plan instanceof CompactPlan);
+				Assert.assertTrue(((CompactPlan) plan).isPacked());
+			}
+			Assert.assertTrue(person.getPlans().contains(person.getSelectedPlan()));
+		}
+	}
+
+	@Test
+	public void testViewsObtainedBeforeCompactStayValid() {
+		Population compact = createCompactPopulation();
+		for (int i = 0; i < 20; i++) {
+			compact.addPerson(createPerson(compact.getFactory(), i));
+		}
+		Person person = compact.getPersons().get(Id.createPersonId(1));
+		Plan plan = person.getSelectedPlan();
+		Activity home = (Activity) plan.getPlanElements().get(0);
+		Leg car = (Leg) plan.getPlanElements().get(1);
+		NetworkRoute route = (NetworkRoute) car.getRoute();
+		List<Id<Link>> linkIds = route.getLinkIds();
+		Activity work = (Activity) plan.getPlanElements().get(2);
+		Activity removedHome = (Activity) compact.getPersons().get(Id.createPersonId(2)).getSelectedPlan().getPlanElements().get(0);
+		CompactPlanStore initialStore = ((CompactActivity) home).store();
+
+		// replace the plans of all other persons, so the store is rebuilt (twice)
+		for (int iteration = 0; iteration < 6; iteration++) {
+			for (Person other : compact.getPersons().values()) {
+				if (other != person) {
+					Plan oldPlan = other.getSelectedPlan();
+					other.createCopyOfSelectedPlanAndMakeSelected();
+					other.removePlan(oldPlan);
+				}
+			}
+			PopulationUtils.compact(compact);
+		}
+		Assert.assertNotNull(initialStore.successor());
+		Assert.assertNotNull(initialStore.successor().successor());
+
+		Assert.assertSame(plan, person.getSelectedPlan());
+		Assert.assertEquals(6 * 3600 + 1, home.getEndTime(), 0.0);
+		home.setEndTime(1234.0);
+		work.setType("work2");
+		car.setTravelTime(77.0);
+		route.setVehicleId(Id.createVehicleId("v1"));
+		route.setLinkIds(route.getStartLinkId(), Arrays.asList(Id.createLinkId("x"), Id.createLinkId("y")), route.getEndLinkId());
+		plan.setScore(42.0);
+
+		PopulationUtils.compact(compact);
+		Plan samePlan = compact.getPersons().get(Id.createPersonId(1)).getSelectedPlan();
+		Assert.assertSame(plan, samePlan);
+		Assert.assertEquals(42.0, samePlan.getScore(), 0.0);
+		Assert.assertEquals(1234.0, ((Activity) samePlan.getPlanElements().get(0)).getEndTime(), 0.0);
+		Assert.assertEquals("work2", ((Activity) samePlan.getPlanElements().get(2)).getType());
+		Leg sameCar = (Leg) samePlan.getPlanElements().get(1);
+		Assert.assertEquals(77.0, sameCar.getTravelTime(), 0.0);
+		Assert.assertEquals(Id.createVehicleId("v1"), ((NetworkRoute) sameCar.getRoute()).getVehicleId());
+		Assert.assertEquals(Arrays.asList(Id.createLinkId("x"), Id.createLinkId("y")), ((NetworkRoute) sameCar.getRoute()).getLinkIds());
+		Assert.assertEquals(Arrays.asList(Id.createLinkId("x"), Id.createLinkId("y")), linkIds);
+
+		try {
+			removedHome.getEndTime();
+			Assert.fail("expected an IllegalStateException for an element of a plan removed before compacting");
+		} catch (IllegalStateException expected) {
+			// ok
+		}
+	}
+
+	@Test
+	public void testLegsDoNotShareRoutes() {
+		Population compact = createCompactPopulation();
+		compact.addPerson(createPerson(compact.getFactory(), 1));
+		compact.addPerson(createPerson(compact.getFactory(), 2));
+		Leg car1 = (Leg) compact.getPersons().get(Id.createPersonId(1)).getSelectedPlan().getPlanElements().get(1);
+		Leg car2 = (Leg) compact.getPersons().get(Id.createPersonId(2)).getSelectedPlan().getPlanElements().get(1);
+
+		car2.setRoute(car1.getRoute());
+		((NetworkRoute) car2.getRoute()).setVehicleId(Id.createVehicleId("v2"));
+		Assert.assertNull(((NetworkRoute) car1.getRoute()).getVehicleId());
+		Assert.assertEquals(car1.getRoute().getStartLinkId(), car2.getRoute().getStartLinkId());
+
+		PopulationUtils.compact(compact);
+		((NetworkRoute) car2.getRoute()).setTravelCost(99.0);
+		Assert.assertEquals(5.0, ((NetworkRoute) car1.getRoute()).getTravelCost(), 0.0);
+		Assert.assertEquals(99.0, ((NetworkRoute) car2.getRoute()).getTravelCost(), 0.0);
+		Assert.assertNull(((NetworkRoute) car1.getRoute()).getVehicleId());
+		Assert.assertEquals(Id.createVehicleId("v2"), ((NetworkRoute) car2.getRoute()).getVehicleId());
+	}
+
+	private static Population createCompactPopulation() {
+		PlansConfigGroup plansConfigGroup = new PlansConfigGroup();
+		plansConfigGroup.setUsingCompactPopulation(true);
+		return PopulationUtils.createPopulation(plansConfigGroup, null);
+	}
+
+	private static Person createPerson(PopulationFactory pf, int i) {
+		Person person = pf.createPerson(Id.createPersonId(i));
+		Plan plan = pf.createPlan();
+		plan.setScore(i % 2 == 0 ? null : (double) i);
+		plan.setType("type" + (i % 3));
+		Activity home = pf.createActivityFromCoord("home", new Coord(i, 2 * i));
+		home.setLinkId(Id.createLinkId("h" + i));
+		home.setEndTime(6 * 3600 + i);
+		plan.addActivity(home);
+		Leg car = pf.createLeg(TransportMode.car);
+		car.setDepartureTime(6 * 3600 + i);
+		List<Id<Link>> links = new ArrayList<>();
+		for (int l = 0; l < i % 5; l++) {
+			links.add(Id.createLinkId(l));
+		}
+		NetworkRoute route = RouteUtils.createLinkNetworkRouteImpl(Id.createLinkId("h" + i), links, Id.createLinkId("w" + i));
+		route.setDistance(1000.0 + i);
+		route.setTravelCost(5.0);
+		car.setRoute(route);
+		plan.addLeg(car);
+		Activity work = pf.createActivityFromActivityFacilityId("work", Id.create("f" + i, ActivityFacility.class));
+		work.setCoord(new Coord(10.0, 20.0, 30.0));
+		work.setStartTime(7 * 3600);
+		work.setMaximumDuration(8 * 3600);
+		work.getAttributes().putAttribute("note", "attribute " + i);
+		plan.addActivity(work);
+		Leg walk = pf.createLeg(TransportMode.walk);
+		Route walkRoute = RouteUtils.createGenericRouteImpl(Id.createLinkId("w" + i), Id.createLinkId("h" + i));
+		walkRoute.setTravelTime(600.0);
+		walkRoute.setRouteDescription(i % 2 == 0 ? null : "description " + i);
+		walk.setRoute(walkRoute);
+		walk.getAttributes().putAttribute("count", i);
+		plan.addLeg(walk);
+		plan.addActivity(pf.createActivityFromLinkId("home", Id.createLinkId("h" + i)));
+		person.addPlan(plan);
+		return person;
+	}
+
+	private static void assertSamePopulation(Population expected, Population actual) {
+		Assert.assertEquals(expected.getPersons().keySet(), actual.getPersons().keySet());
+		for (Person expectedPerson : expected.getPersons().values()) {
+			Person actualPerson = actual.getPersons().get(expectedPerson.getId());
+			Assert.assertEquals(expectedPerson.getPlans().size(), actualPerson.getPlans().size());
+			for (int p = 0; p < expectedPerson.getPlans().size(); p++) {
+				Plan expectedPlan = expectedPerson.getPlans().get(p);
+				Plan actualPlan = actualPerson.getPlans().get(p);
+				Assert.assertEquals(expectedPerson.getPlans().indexOf(expectedPerson.getSelectedPlan()),
+						actualPerson.getPlans().indexOf(actualPerson.getSelectedPlan()));
+				Assert.assertEquals(expectedPlan.getScore(), actualPlan.getScore());
+				Assert.assertEquals(expectedPlan.getType(), actualPlan.getType());
+				Assert.assertSame(actualPerson, actualPlan.getPerson());
+				Assert.assertEquals(expectedPlan.getPlanElements().size(), actualPlan.getPlanElements().size());
+				for (int e = 0; e < expectedPlan.getPlanElements().size(); e++) {
+					PlanElement expectedElement = expectedPlan.getPlanElements().get(e);
+					PlanElement actualElement = actualPlan.getPlanElements().get(e);
+					if (expectedElement instanceof Activity) {
+						assertSameActivity((Activity) expectedElement, (Activity) actualElement);
+					} else {
+						assertSameLeg((Leg) expectedElement, (Leg) actualElement);
+					}
+					Assert.assertEquals(expectedElement.getAttributes().toString(), actualElement.getAttributes().toString());
+				}
+			}
+		}
+	}
+
+	private static void assertSameActivity(Activity expected, Activity actual) {
+		Assert.assertEquals(expected.getType(), actual.getType());
+		Assert.assertEquals(expected.getCoord(), actual.getCoord());
+		Assert.assertEquals(expected.getLinkId(), actual.getLinkId());
+		Assert.assertEquals(expected.getFacilityId(), actual.getFacilityId());
+		Assert.assertEquals(expected.getStartTime(), actual.getStartTime(), 0.0);
+		Assert.assertEquals(expected.getEndTime(), actual.getEndTime(), 0.0);
+		Assert.assertEquals(expected.getMaximumDuration(), actual.getMaximumDuration(), 0.0);
+	}
+
+	private static void assertSameLeg(Leg expected, Leg actual) {
+		Assert.assertEquals(expected.getMode(), actual.getMode());
+		Assert.assertEquals(expected.getDepartureTime(), actual.getDepartureTime(), 0.0);
+		Assert.assertEquals(expected.getTravelTime(), actual.getTravelTime(), 0.0);
+		Route expectedRoute = expected.getRoute();
+		Route actualRoute = actual.getRoute();
+		Assert.assertEquals(expectedRoute.getRouteType(), actualRoute.getRouteType());
+		Assert.assertEquals(expectedRoute.getRouteDescription(), actualRoute.getRouteDescription());
+		Assert.assertEquals(expectedRoute.getStartLinkId(), actualRoute.getStartLinkId());
+		Assert.assertEquals(expectedRoute.getEndLinkId(), actualRoute.getEndLinkId());
+		Assert.assertEquals(expectedRoute.getDistance(), actualRoute.getDistance(), 0.0);
+		Assert.assertEquals(expectedRoute.getTravelTime(), actualRoute.getTravelTime(), 0.0);
+		if (expectedRoute instanceof NetworkRoute) {
+			Assert.assertEquals(((NetworkRoute) expectedRoute).getLinkIds(), ((NetworkRoute) actualRoute).getLinkIds());
+			Assert.assertEquals(((NetworkRoute) expectedRoute).getTravelCost(), ((NetworkRoute) actualRoute).getTravelCost(), 0.0);
+			Id<Vehicle> vehicleId = ((NetworkRoute) expectedRoute).getVehicleId();
+			Assert.assertEquals(vehicleId, ((NetworkRoute) actualRoute).getVehicleId());
+		}
+	}
+
+}
@@ -0,0 +1,217 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.population.io;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.api.core.v01.population.Population;
+import org.matsim.api.core.v01.population.PopulationFactory;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.population.PopulationUtils;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.core.utils.io.UncheckedIOException;
+import org.matsim.testcases.MatsimTestUtils;
+
+public class ParallelPopulationReaderMatsimV6Test {
+
+	@Rule
+	public final MatsimTestUtils utils = new MatsimTestUtils();
+
+	private static final int NUMBER_OF_PERSONS = 5 * ParallelPopulationReaderMatsimV6.CHUNK_SIZE + 17;
+
+	@Test
+	public void testPersonsAreReadInOrder() {
+		final Population population = createPopulation();
+		final String file = utils.getOutputDirectory() + "/population.xml.gz";
+		new PopulationWriter( population ).writeV6( file );
+
+		final Scenario readScenario = ScenarioUtils.createScenario( createConfig() );
+		new PopulationReader( readScenario ).readFile( file );
+
+		Assert.assertEquals( "unexpected population description", population.getName(), readScenario.getPopulation().getName() );
+		Assert.assertEquals( new ArrayList<>( population.getPersons().keySet() ), new ArrayList<>( readScenario.getPopulation().getPersons().keySet() ) );
+		for ( Person person : population.getPersons().values() ) {
+			final Person readPerson = readScenario.getPopulation().getPersons().get( person.getId() );
+			Assert.assertEquals( "unexpected attribute of " + person.getId(),
+					person.getAttributes().getAttribute( "rank" ),
+					readPerson.getAttributes().getAttribute( "rank" ) );
+			Assert.assertEquals( "unexpected number of plans of " + person.getId(), person.getPlans().size(), readPerson.getPlans().size() );
+
+			final List<?> elements = readPerson.getSelectedPlan().getPlanElements();
+			final Activity home = (Activity) elements.get( 0 );
+			final Leg leg = (Leg) elements.get( 1 );
+			final Activity work = (Activity) elements.get( 2 );
+			Assert.assertEquals( ((Activity) person.getSelectedPlan().getPlanElements().get( 0 )).getCoord(), home.getCoord() );
+			Assert.assertEquals( ((Activity) person.getSelectedPlan().getPlanElements().get( 0 )).getEndTime(), home.getEndTime(), MatsimTestUtils.EPSILON );
+			Assert.assertEquals( TransportMode.walk, leg.getMode() );
+			Assert.assertEquals( "work", work.getType() );
+		}
+	}
+
+	@Test
+	public void testStreamingPreservesOrder() {
+		final Population population = createPopulation();
+		final String file = utils.getOutputDirectory() + "/population.xml";
+		new PopulationWriter( population ).writeV6( file );
+
+		final List<Id<Person>> streamedIds = new ArrayList<>();
+		final StreamingPopulationReader reader = new StreamingPopulationReader( ScenarioUtils.createScenario( createConfig() ) );
+		reader.addAlgorithm( person -> streamedIds.add( person.getId() ) );
+		reader.readFile( file );
+
+		Assert.assertEquals( new ArrayList<>( population.getPersons().keySet() ), streamedIds );
+	}
+
+	@Test
+	public void testStreamingAlgorithmsRunOnCallingThread() {
+		final Population population = createPopulation();
+		final String file = utils.getOutputDirectory() + "/population.xml";
+		new PopulationWriter( population ).writeV6( file );
+
+		final Set<Thread> threads = new HashSet<>();
+		final StreamingPopulationReader reader = new StreamingPopulationReader( ScenarioUtils.createScenario( createConfig() ) );
+		reader.addAlgorithm( person -> threads.add( Thread.currentThread() ) );
+		reader.readFile( file );
+
+		Assert.assertEquals( Collections.singleton( Thread.currentThread() ), threads );
+	}
+
+	@Test
+	public void testIdsAreCreatedInOrder() throws IOException {
+		final Population population = createPopulation();
+		final String file = utils.getOutputDirectory() + "/population.xml";
+		new PopulationWriter( population ).writeV6( file );
+		// persons with ids not created before
+		final String renamedFile = utils.getOutputDirectory() + "/renamedPopulation.xml";
+		final String content = new String( Files.readAllBytes( Paths.get( file ) ), StandardCharsets.UTF_8 );
+		Files.write( Paths.get( renamedFile ), content.replace( "person id=\"p", "person id=\"idOrder_p" ).getBytes( StandardCharsets.UTF_8 ) );
+
+		final Scenario readScenario = ScenarioUtils.createScenario( createConfig() );
+		new PopulationReader( readScenario ).readFile( renamedFile );
+
+		// the ids are indexed in the order of the file
+		Integer lastIndex = null;
+		for ( Id<Person> personId : population.getPersons().keySet() ) {
+			final int index = Id.createPersonId( "idOrder_" + personId ).index();
+			if ( lastIndex != null ) {
+				Assert.assertEquals( "unexpected index of " + personId, lastIndex + 1, index );
+			}
+			lastIndex = index;
+		}
+	}
+
+	@Test
+	public void testFailingAlgorithmStopsReading() {
+		final Population population = createPopulation();
+		final String file = utils.getOutputDirectory() + "/population.xml";
+		new PopulationWriter( population ).writeV6( file );
+
+		final List<Id<Person>> streamedIds = new ArrayList<>();
+		final StreamingPopulationReader reader = new StreamingPopulationReader( ScenarioUtils.createScenario( createConfig() ) );
+		reader.addAlgorithm( person -> {
+			if ( streamedIds.size() == 150 ) {
+				throw new IllegalStateException( "failure in algorithm" );
+			}
+			streamedIds.add( person.getId() );
+		} );
+		try {
+			reader.readFile( file );
+			Assert.fail( "expected the failure of the algorithm to be propagated" );
+		} catch ( IllegalStateException e ) {
+			Assert.assertEquals( "failure in algorithm", e.getMessage() );
+		}
+		Assert.assertEquals( 150, streamedIds.size() );
+		assertWorkersStopped();
+	}
+
+	@Test
+	public void testWorkersAreStoppedIfParsingFails() throws IOException {
+		final Population population = createPopulation();
+		final String file = utils.getOutputDirectory() + "/population.xml";
+		new PopulationWriter( population ).writeV6( file );
+		final String truncatedFile = utils.getOutputDirectory() + "/truncatedPopulation.xml";
+		final String content = new String( Files.readAllBytes( Paths.get( file ) ), StandardCharsets.UTF_8 );
+		Files.write( Paths.get( truncatedFile ), content.substring( 0, content.length() / 2 ).getBytes( StandardCharsets.UTF_8 ) );
+
+		try {
+			new PopulationReader( ScenarioUtils.createScenario( createConfig() ) ).readFile( truncatedFile );
+			Assert.fail( "expected the truncated file to fail" );
+		} catch ( UncheckedIOException e ) {
+			// expected
+		}
+		assertWorkersStopped();
+	}
+
+	private static void assertWorkersStopped() {
+		for ( Thread thread : Thread.getAllStackTraces().keySet() ) {
+			Assert.assertFalse( "worker still running: " + thread.getName(),
+					thread.getName().startsWith( ParallelPopulationReaderMatsimV6.class.getSimpleName() ) );
+		}
+	}
+
+	private static Config createConfig() {
+		final Config config = ConfigUtils.createConfig();
+		config.global().setNumberOfThreads( 4 );
+		config.plans().setReadingInParallel( true );
+		return config;
+	}
+
+	private static Population createPopulation() {
+		final Population population = PopulationUtils.createPopulation( ConfigUtils.createConfig() );
+		population.setName( "parallel reading test" );
+		final PopulationFactory factory = population.getFactory();
+		for ( int i = 0; i < NUMBER_OF_PERSONS; i++ ) {
+			final Person person = factory.createPerson( Id.createPersonId( "p" + (NUMBER_OF_PERSONS - i) ) );
+			person.getAttributes().putAttribute( "rank" , i );
+			for ( int j = 0; j < 1 + i % 3; j++ ) {
+				final Plan plan = factory.createPlan();
+				final Activity home = factory.createActivityFromCoord( "home" , new Coord( i , j ) );
+				home.setEndTime( 6 * 3600 + i );
+				plan.addActivity( home );
+				plan.addLeg( factory.createLeg( TransportMode.walk ) );
+				plan.addActivity( factory.createActivityFromCoord( "work" , new Coord( i + 1000 , j ) ) );
+				person.addPlan( plan );
+			}
+			person.setSelectedPlan( person.getPlans().get( 0 ) );
+			population.addPerson( person );
+		}
+		return population;
+	}
+}
@@ -0,0 +1,185 @@
+package org.matsim.core.population.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.api.core.v01.population.Population;
+import org.matsim.api.core.v01.population.PopulationFactory;
+import org.matsim.api.core.v01.population.Route;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.population.PopulationUtils;
+import org.matsim.core.population.routes.GenericRouteImpl;
+import org.matsim.core.population.routes.NetworkRoute;
+import org.matsim.utils.objectattributes.ObjectAttributesConverter;
+import org.matsim.vehicles.Vehicle;
+
+public class PopulationCheckpointTest {
+
+	@Test
+	public void testRestoreIntoOtherPopulation() throws IOException {
+		Population population = createPopulation();
+		byte[] checkpoint = write(population);
+
+		Population restored = PopulationUtils.createPopulation(ConfigUtils.createConfig());
+		read(restored, checkpoint);
+
+		assertSamePopulation(population, restored);
+	}
+
+	@Test
+	public void testRestoreIntoChangedPopulation() throws IOException {
+		Population population = createPopulation();
+		byte[] checkpoint = write(population);
+
+		Population changed = createPopulation();
+		Person alice = changed.getPersons().get(Id.createPersonId("alice"));
+		alice.getSelectedPlan().setScore(-1.0);
+		alice.setSelectedPlan(alice.getPlans().get(1));
+		alice.getAttributes().putAttribute("age", 99);
+		alice.addPlan(changed.getFactory().createPlan());
+		changed.removePerson(Id.createPersonId("bob"));
+		changed.addPerson(changed.getFactory().createPerson(Id.createPersonId("carol")));
+		read(changed, checkpoint);
+
+		assertSamePopulation(population, changed);
+	}
+
+	private static Population createPopulation() {
+		Population population = PopulationUtils.createPopulation(ConfigUtils.createConfig());
+		PopulationFactory f = population.getFactory();
+		population.getAttributes().putAttribute("description", "checkpoint test");
+
+		Person alice = f.createPerson(Id.createPersonId("alice"));
+		alice.getAttributes().putAttribute("age", 42);
+		alice.getAttributes().putAttribute("income", 1234.5);
+		alice.getAttributes().putAttribute("employed", true);
+		population.addPerson(alice);
+
+		Plan plan = f.createPlan();
+		plan.setScore(123.456789);
+		plan.setType("car");
+		Activity home = f.createActivityFromLinkId("home", Id.createLinkId("1"));
+		home.setCoord(new Coord(10.0, 20.0));
+		home.setEndTime(7.5 * 3600 + 0.1);
+		home.getAttributes().putAttribute("distance", 12345678901L);
+		plan.addActivity(home);
+		Leg leg = f.createLeg("car");
+		leg.setDepartureTime(7.5 * 3600 + 0.1);
+		leg.setTravelTime(1234.0);
+		NetworkRoute route = f.getRouteFactories().createRoute(NetworkRoute.class, Id.createLinkId("1"), Id.createLinkId("4"));
+		route.setLinkIds(Id.createLinkId("1"), Arrays.asList(Id.createLinkId("2"), Id.createLinkId("3")), Id.createLinkId("4"));
+		route.setVehicleId(Id.create("alice", Vehicle.class));
+		route.setTravelCost(42.0);
+		route.setDistance(3000.0);
+		route.setTravelTime(1234.0);
+		leg.setRoute(route);
+		plan.addLeg(leg);
+		Activity work = f.createActivityFromCoord("work", new Coord(100.0, 200.0, 3.0));
+		work.setStartTime(8 * 3600);
+		work.setMaximumDuration(8 * 3600);
+		plan.addActivity(work);
+		alice.addPlan(plan);
+		alice.setSelectedPlan(plan);
+
+		Plan other = f.createPlan();
+		other.setScore(Double.NEGATIVE_INFINITY);
+		other.addActivity(f.createActivityFromLinkId("home", Id.createLinkId("1")));
+		Leg walk = f.createLeg("walk");
+		Route walkRoute = f.getRouteFactories().createRoute(GenericRouteImpl.class, Id.createLinkId("1"), Id.createLinkId("4"));
+		walkRoute.setDistance(2500.0);
+		walk.setRoute(walkRoute);
+		other.addLeg(walk);
+		other.addActivity(f.createActivityFromLinkId("work", Id.createLinkId("4")));
+		alice.addPlan(other);
+
+		Person bob = f.createPerson(Id.createPersonId("bob"));
+		Plan unscored = f.createPlan();
+		unscored.addActivity(f.createActivityFromLinkId("home", Id.createLinkId("2")));
+		bob.addPlan(unscored);
+		population.addPerson(bob);
+		return population;
+	}
+
+	private static byte[] write(Population population) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			new PopulationCheckpoint(population, new ObjectAttributesConverter()).writeCheckpoint(out);
+		}
+		return bytes.toByteArray();
+	}
+
+	private static void read(Population population, byte[] checkpoint) throws IOException {
+		try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(checkpoint))) {
+			new PopulationCheckpoint(population, new ObjectAttributesConverter()).readCheckpoint(in);
+			Assert.assertEquals("checkpoint not read completely", -1, in.read());
+		}
+	}
+
+	private static void assertSamePopulation(Population expected, Population actual) {
+		Assert.assertEquals(expected.getAttributes().getAsMap(), actual.getAttributes().getAsMap());
+		Assert.assertEquals(expected.getPersons().keySet(), actual.getPersons().keySet());
+		for (Person expectedPerson : expected.getPersons().values()) {
+			Person actualPerson = actual.getPersons().get(expectedPerson.getId());
+			Assert.assertEquals(expectedPerson.getAttributes().getAsMap(), actualPerson.getAttributes().getAsMap());
+			Assert.assertEquals(expectedPerson.getPlans().size(), actualPerson.getPlans().size());
+			for (int i = 0; i < expectedPerson.getPlans().size(); i++) {
+				Plan expectedPlan = expectedPerson.getPlans().get(i);
+				Plan actualPlan = actualPerson.getPlans().get(i);
+				Assert.assertEquals(expectedPerson.getSelectedPlan() == expectedPlan, actualPerson.getSelectedPlan() == actualPlan);
+				Assert.assertEquals(expectedPlan.getScore(), actualPlan.getScore());
+				Assert.assertEquals(expectedPlan.getType(), actualPlan.getType());
+				Assert.assertEquals(expectedPlan.getPlanElements().size(), actualPlan.getPlanElements().size());
+				for (int j = 0; j < expectedPlan.getPlanElements().size(); j++) {
+					if (expectedPlan.getPlanElements().get(j) instanceof Activity) {
+						assertSameActivity((Activity) expectedPlan.getPlanElements().get(j), (Activity) actualPlan.getPlanElements().get(j));
+					} else {
+						assertSameLeg((Leg) expectedPlan.getPlanElements().get(j), (Leg) actualPlan.getPlanElements().get(j));
+					}
+				}
+			}
+		}
+	}
+
+	private static void assertSameActivity(Activity expected, Activity actual) {
+		Assert.assertEquals(expected.getType(), actual.getType());
+		Assert.assertEquals(expected.getCoord(), actual.getCoord());
+		Assert.assertEquals(expected.getLinkId(), actual.getLinkId());
+		Assert.assertEquals(expected.getFacilityId(), actual.getFacilityId());
+		Assert.assertEquals(expected.getStartTime(), actual.getStartTime(), 0.0);
+		Assert.assertEquals(expected.getEndTime(), actual.getEndTime(), 0.0);
+		Assert.assertEquals(expected.getMaximumDuration(), actual.getMaximumDuration(), 0.0);
+		Assert.assertEquals(expected.getAttributes().getAsMap(), actual.getAttributes().getAsMap());
+	}
+
+	private static void assertSameLeg(Leg expected, Leg actual) {
+		Assert.assertEquals(expected.getMode(), actual.getMode());
+		Assert.assertEquals(expected.getDepartureTime(), actual.getDepartureTime(), 0.0);
+		Assert.assertEquals(expected.getTravelTime(), actual.getTravelTime(), 0.0);
+		Route expectedRoute = expected.getRoute();
+		Route actualRoute = actual.getRoute();
+		Assert.assertEquals(expectedRoute instanceof NetworkRoute, actualRoute instanceof NetworkRoute);
+		Assert.assertEquals(expectedRoute.getStartLinkId(), actualRoute.getStartLinkId());
+		Assert.assertEquals(expectedRoute.getEndLinkId(), actualRoute.getEndLinkId());
+		Assert.assertEquals(expectedRoute.getDistance(), actualRoute.getDistance(), 0.0);
+		Assert.assertEquals(expectedRoute.getTravelTime(), actualRoute.getTravelTime(), 0.0);
+		Assert.assertEquals(expectedRoute.getRouteDescription(), actualRoute.getRouteDescription());
+		if (expectedRoute instanceof NetworkRoute) {
+			Assert.assertEquals(((NetworkRoute) expectedRoute).getLinkIds(), ((NetworkRoute) actualRoute).getLinkIds());
+			Assert.assertEquals(((NetworkRoute) expectedRoute).getVehicleId(), ((NetworkRoute) actualRoute).getVehicleId());
+			Assert.assertEquals(((NetworkRoute) expectedRoute).getTravelCost(), ((NetworkRoute) actualRoute).getTravelCost(), 0.0);
+		}
+	}
+
+}
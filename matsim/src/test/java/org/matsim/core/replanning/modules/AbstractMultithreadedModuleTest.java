@@ -20,12 +20,18 @@
 
 package org.matsim.core.replanning.modules;
 
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
 import org.apache.log4j.Logger;
 import org.junit.Assert;
 import org.junit.Test;
 import org.matsim.api.core.v01.population.Plan;
 import org.matsim.core.config.Config;
 import org.matsim.core.config.groups.GlobalConfigGroup;
+import org.matsim.core.population.PopulationUtils;
 import org.matsim.core.population.algorithms.PlanAlgorithm;
 
 /**
@@ -60,6 +66,71 @@ public class AbstractMultithreadedModuleTest {
 
 	}
 
+	@Test
+	public void testDynamicScheduling() {
+		CountingModule testee = new CountingModule(3, true);
+		List<Plan> plans = new ArrayList<>();
+		for (int i = 0; i < 200; i++) {
+			plans.add(PopulationUtils.createPlan());
+		}
+		testee.prepareReplanning(null);
+		for (Plan plan : plans) {
+			testee.handlePlan(plan);
+		}
+		testee.finishReplanning();
+
+		Assert.assertEquals(plans.size(), testee.handled.size());
+		for (Plan plan : plans) {
+			Assert.assertEquals(1, testee.handled.get(plan).intValue());
+		}
+		AbstractMultithreadedModule.Statistics statistics = testee.getStatistics();
+		Assert.assertEquals(200, statistics.getNumberOfPlans());
+		Assert.assertTrue(statistics.getNumberOfChunks() > 3);
+		int handledPlans = 0;
+		for (int n : statistics.getHandledPlans()) {
+			handledPlans += n;
+		}
+		Assert.assertEquals(200, handledPlans);
+
+		// the module can be used again, e.g. in the next iteration
+		testee.handled.clear();
+		testee.prepareReplanning(null);
+		testee.handlePlan(plans.get(0));
+		testee.finishReplanning();
+		Assert.assertEquals(1, testee.handled.size());
+		Assert.assertEquals(1, testee.getStatistics().getNumberOfPlans());
+	}
+
+	@Test
+	public void testRoundRobinScheduling() {
+		CountingModule testee = new CountingModule(3, false);
+		testee.prepareReplanning(null);
+		for (int i = 0; i < 10; i++) {
+			testee.handlePlan(PopulationUtils.createPlan());
+		}
+		testee.finishReplanning();
+
+		Assert.assertEquals(10, testee.handled.size());
+		AbstractMultithreadedModule.Statistics statistics = testee.getStatistics();
+		Assert.assertEquals(3, statistics.getNumberOfChunks());
+		Assert.assertArrayEquals(new int[] {4, 3, 3}, statistics.getHandledPlans());
+	}
+
+	private static class CountingModule extends AbstractMultithreadedModule {
+		private final Map<Plan, Integer> handled = new IdentityHashMap<>();
+		public CountingModule(final int nOfThreads, final boolean dynamicScheduling) {
+			super(nOfThreads, dynamicScheduling);
+		}
+		@Override
+		public PlanAlgorithm getPlanAlgoInstance() {
+			return plan -> {
+				synchronized (this.handled) {
+					this.handled.merge(plan, 1, Integer::sum);
+				}
+			};
+		}
+	}
+
 	private static class DummyAbstractMultithreadedModule extends AbstractMultithreadedModule {
 		public DummyAbstractMultithreadedModule(GlobalConfigGroup globalConfigGroup) {
 			super(globalConfigGroup);
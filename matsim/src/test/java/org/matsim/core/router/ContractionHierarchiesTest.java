@@ -0,0 +1,221 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router;
+
+import java.util.List;
+import java.util.Random;
+
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.router.costcalculators.FreespeedTravelTimeAndDisutility;
+import org.matsim.core.router.util.LeastCostPathCalculator;
+import org.matsim.core.router.util.LeastCostPathCalculator.Path;
+import org.matsim.core.router.util.TravelDisutility;
+import org.matsim.core.router.util.TravelTime;
+import org.matsim.vehicles.Vehicle;
+
+public class ContractionHierarchiesTest extends AbstractLeastCostPathCalculatorTest {
+
+	@Override
+	protected LeastCostPathCalculator getLeastCostPathCalculator(final Network network) {
+		FreespeedTravelTimeAndDisutility travelTimeCostCalculator = new FreespeedTravelTimeAndDisutility(-6.0 / 3600, 6.0 / 3600, 0.0);
+		return new ContractionHierarchiesFactory(900, 30 * 3600).createPathCalculator(network, travelTimeCostCalculator, travelTimeCostCalculator);
+	}
+
+	public void testSameCostsAsDijkstra() {
+		Random random = new Random(4711);
+		Network network = createGrid(25, random);
+		FreespeedTravelTimeAndDisutility travelTimeCostCalculator = new FreespeedTravelTimeAndDisutility(-6.0 / 3600, 6.0 / 3600, -0.0001);
+		LeastCostPathCalculator dijkstra = new Dijkstra(network, travelTimeCostCalculator, travelTimeCostCalculator);
+		LeastCostPathCalculator ch = new ContractionHierarchiesFactory(900, 30 * 3600).createPathCalculator(network, travelTimeCostCalculator, travelTimeCostCalculator);
+
+		Node[] nodes = network.getNodes().values().toArray(new Node[0]);
+		for (int i = 0; i < 500; i++) {
+			Node from = nodes[random.nextInt(nodes.length)];
+			Node to = nodes[random.nextInt(nodes.length)];
+			Path expected = dijkstra.calcLeastCostPath(from, to, 7.0 * 3600, null, null);
+			Path path = ch.calcLeastCostPath(from, to, 7.0 * 3600, null, null);
+			assertEquals("wrong cost from " + from.getId() + " to " + to.getId(), expected.travelCost, path.travelCost, 1e-5 * expected.travelCost);
+			assertEquals(expected.travelTime, path.travelTime, 1e-4 * expected.travelTime);
+			assertConnected(from, to, path);
+		}
+	}
+
+	public void testTimeDependentQueries() {
+		Random random = new Random(42);
+		Network network = createGrid(10, random);
+		Node from = network.getNodes().get(Id.createNodeId("0_0"));
+		Node to = network.getNodes().get(Id.createNodeId("9_9"));
+		FreespeedTravelTimeAndDisutility freespeed = new FreespeedTravelTimeAndDisutility(-6.0 / 3600, 6.0 / 3600, 0.0);
+		Path freeflowPath = new Dijkstra(network, freespeed, freespeed).calcLeastCostPath(from, to, 0.0, null, null);
+
+		// the links of the free-flow path are congested between 7:00 and 9:00
+		CongestedTravelTime travelTime = new CongestedTravelTime(freespeed, freeflowPath.links, 7 * 3600, 9 * 3600);
+		ContractionHierarchiesFactory factory = new ContractionHierarchiesFactory(900, 30 * 3600);
+		LeastCostPathCalculator ch = factory.createPathCalculator(network, travelTime, travelTime);
+
+		Path night = ch.calcLeastCostPath(from, to, 3.0 * 3600, null, null);
+		assertEquals(freeflowPath.links, night.links);
+		Path morning = ch.calcLeastCostPath(from, to, 7.5 * 3600, null, null);
+		assertFalse(freeflowPath.links.equals(morning.links));
+		assertConnected(from, to, morning);
+		Path expected = new Dijkstra(network, travelTime, travelTime).calcLeastCostPath(from, to, 7.5 * 3600, null, null);
+		assertEquals(expected.travelCost, morning.travelCost, 1e-5 * expected.travelCost);
+
+		// a travel disutility with other costs in any time bin gets its own customizations
+		travelTime.congestionFactor = 1.0;
+		assertEquals(freeflowPath.links, factory.createPathCalculator(network, travelTime, travelTime).calcLeastCostPath(from, to, 7.5 * 3600, null, null).links);
+		factory.notifyIterationStarts(null);
+		assertEquals(freeflowPath.links, factory.createPathCalculator(network, travelTime, travelTime).calcLeastCostPath(from, to, 7.5 * 3600, null, null).links);
+	}
+
+	public void testMetricsOfDisutilitiesWithSameInitialCosts() {
+		Random random = new Random(42);
+		Network network = createGrid(10, random);
+		Node from = network.getNodes().get(Id.createNodeId("0_0"));
+		Node to = network.getNodes().get(Id.createNodeId("9_9"));
+		FreespeedTravelTimeAndDisutility freespeed = new FreespeedTravelTimeAndDisutility(-6.0 / 3600, 6.0 / 3600, 0.0);
+		Path freeflowPath = new Dijkstra(network, freespeed, freespeed).calcLeastCostPath(from, to, 0.0, null, null);
+
+		// the same type and the same costs at time 0, but congestion at different times of the day
+		CongestedTravelTime morningCongestion = new CongestedTravelTime(freespeed, freeflowPath.links, 7 * 3600, 9 * 3600);
+		CongestedTravelTime eveningCongestion = new CongestedTravelTime(freespeed, freeflowPath.links, 16 * 3600, 18 * 3600);
+		ContractionHierarchiesFactory factory = new ContractionHierarchiesFactory(900, 30 * 3600);
+		LeastCostPathCalculator morningCh = factory.createPathCalculator(network, morningCongestion, freespeed);
+		LeastCostPathCalculator eveningCh = factory.createPathCalculator(network, eveningCongestion, freespeed);
+
+		assertFalse(freeflowPath.links.equals(morningCh.calcLeastCostPath(from, to, 7.5 * 3600, null, null).links));
+		assertEquals(freeflowPath.links, eveningCh.calcLeastCostPath(from, to, 7.5 * 3600, null, null).links);
+		assertFalse(freeflowPath.links.equals(eveningCh.calcLeastCostPath(from, to, 17.0 * 3600, null, null).links));
+		assertEquals(freeflowPath.links, morningCh.calcLeastCostPath(from, to, 17.0 * 3600, null, null).links);
+	}
+
+	public void testCustomizationsAreSharedPerTimeBin() {
+		Network network = createGrid(10, new Random(42));
+		Node from = network.getNodes().get(Id.createNodeId("0_0"));
+		Node to = network.getNodes().get(Id.createNodeId("9_9"));
+		FreespeedTravelTimeAndDisutility freespeed = new FreespeedTravelTimeAndDisutility(-6.0 / 3600, 6.0 / 3600, 0.0);
+		FreespeedTravelTimeAndDisutility otherFreespeed = new FreespeedTravelTimeAndDisutility(-6.0 / 3600, 6.0 / 3600, 0.0);
+		Path freeflowPath = new Dijkstra(network, freespeed, freespeed).calcLeastCostPath(from, to, 0.0, null, null);
+		CongestedTravelTime morningCongestion = new CongestedTravelTime(freespeed, freeflowPath.links, 7 * 3600, 9 * 3600);
+		CongestedTravelTime eveningCongestion = new CongestedTravelTime(freespeed, freeflowPath.links, 16 * 3600, 18 * 3600);
+
+		// customizations are shared per time bin by disutilities with the same link costs in this bin
+		ContractionHierarchiesMetric metric = new ContractionHierarchiesMetric(new ContractionHierarchiesGraph(network), 900, 121);
+		int night = metric.getTimeBin(3 * 3600);
+		int morning = metric.getTimeBin(8 * 3600);
+		assertSame(metric.getCustomization(night, freespeed), metric.getCustomization(night, otherFreespeed));
+		assertSame(metric.getCustomization(morning, freespeed), metric.getCustomization(morning, otherFreespeed));
+		assertSame(metric.getCustomization(night, morningCongestion), metric.getCustomization(night, eveningCongestion));
+		assertNotSame(metric.getCustomization(morning, morningCongestion), metric.getCustomization(morning, eveningCongestion));
+		assertSame(metric.getCustomization(morning, morningCongestion), metric.getCustomization(morning, morningCongestion));
+		assertNotSame(metric.getCustomization(night, freespeed), metric.getCustomization(night, morningCongestion));
+	}
+
+	public void testNoPath() {
+		Network network = NetworkUtils.createNetwork();
+		Node a = NetworkUtils.createAndAddNode(network, Id.createNodeId("a"), new Coord(0, 0));
+		Node b = NetworkUtils.createAndAddNode(network, Id.createNodeId("b"), new Coord(100, 0));
+		NetworkUtils.createAndAddLink(network, Id.createLinkId("ab"), a, b, 100, 10, 1000, 1);
+		LeastCostPathCalculator ch = getLeastCostPathCalculator(network);
+		assertEquals(1, ch.calcLeastCostPath(a, b, 0.0, null, null).links.size());
+		assertNull(ch.calcLeastCostPath(b, a, 0.0, null, null));
+	}
+
+	private static void assertConnected(final Node from, final Node to, final Path path) {
+		Node node = from;
+		for (int i = 0; i < path.links.size(); i++) {
+			assertSame(node, path.links.get(i).getFromNode());
+			assertSame(node, path.nodes.get(i));
+			node = path.links.get(i).getToNode();
+		}
+		assertSame(to, node);
+		assertSame(to, path.getToNode());
+	}
+
+	/* a grid of size x size nodes with links in both directions with random speeds, and some missing links */
+	private static Network createGrid(final int size, final Random random) {
+		Network network = NetworkUtils.createNetwork();
+		Node[][] nodes = new Node[size][size];
+		for (int x = 0; x < size; x++) {
+			for (int y = 0; y < size; y++) {
+				nodes[x][y] = NetworkUtils.createAndAddNode(network, Id.createNodeId(x + "_" + y), new Coord(x * 100 + random.nextDouble() * 20, y * 100 + random.nextDouble() * 20));
+			}
+		}
+		for (int x = 0; x < size; x++) {
+			for (int y = 0; y < size; y++) {
+				if (x + 1 < size && random.nextDouble() < 0.9) {
+					createLinks(network, nodes[x][y], nodes[x + 1][y], random);
+				}
+				if (y + 1 < size && random.nextDouble() < 0.9) {
+					createLinks(network, nodes[x][y], nodes[x][y + 1], random);
+				}
+			}
+		}
+		return network;
+	}
+
+	private static void createLinks(final Network network, final Node a, final Node b, final Random random) {
+		double length = NetworkUtils.getEuclideanDistance(a.getCoord(), b.getCoord());
+		NetworkUtils.createAndAddLink(network, Id.createLinkId(a.getId() + "-" + b.getId()), a, b, length, 5 + random.nextInt(25), 1000, 1);
+		NetworkUtils.createAndAddLink(network, Id.createLinkId(b.getId() + "-" + a.getId()), b, a, length, 5 + random.nextInt(25), 1000, 1);
+	}
+
+	private static final class CongestedTravelTime implements TravelTime, TravelDisutility {
+
+		private final TravelTime freespeed;
+		private final List<Link> congestedLinks;
+		private final double from;
+		private final double to;
+		double congestionFactor = 10.0;
+
+		CongestedTravelTime(final TravelTime freespeed, final List<Link> congestedLinks, final double from, final double to) {
+			this.freespeed = freespeed;
+			this.congestedLinks = congestedLinks;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		public double getLinkTravelTime(final Link link, final double time, final Person person, final Vehicle vehicle) {
+			double travelTime = this.freespeed.getLinkTravelTime(link, time, person, vehicle);
+			if (time >= this.from && time < this.to && this.congestedLinks.contains(link)) {
+				travelTime *= this.congestionFactor;
+			}
+			return travelTime;
+		}
+
+		@Override
+		public double getLinkTravelDisutility(final Link link, final double time, final Person person, final Vehicle vehicle) {
+			return getLinkTravelTime(link, time, person, vehicle);
+		}
+
+		@Override
+		public double getLinkMinimumTravelDisutility(final Link link) {
+			return this.freespeed.getLinkTravelTime(link, 0.0, null, null);
+		}
+	}
+
+}
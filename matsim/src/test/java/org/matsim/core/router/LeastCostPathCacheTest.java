@@ -0,0 +1,140 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.controler.events.IterationStartsEvent;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.router.util.LeastCostPathCalculator;
+import org.matsim.core.router.util.LeastCostPathCalculator.Path;
+import org.matsim.core.router.util.TravelDisutility;
+import org.matsim.core.router.util.TravelTime;
+import org.matsim.vehicles.Vehicle;
+
+public class LeastCostPathCacheTest {
+
+	@Test
+	public void testCachedPaths() {
+		Network network = createNetwork();
+		Node n1 = network.getNodes().get(Id.createNodeId("1"));
+		Node n3 = network.getNodes().get(Id.createNodeId("3"));
+		Node n4 = network.getNodes().get(Id.createNodeId("4"));
+		ScaledFreespeedTravelTime travelTime = new ScaledFreespeedTravelTime();
+		LeastCostPathCalculator dijkstra = new Dijkstra(network, travelTime, travelTime);
+
+		LeastCostPathCache cache = new LeastCostPathCache(32, 900.0);
+		Assert.assertTrue(cache.isEnabled());
+		LeastCostPathCalculator router = cache.createCachingPathCalculator(dijkstra, network, "car", travelTime, travelTime);
+
+		Path first = router.calcLeastCostPath(n1, n4, 100.0, null, null);
+		Assert.assertEquals(0, cache.getHits());
+		Assert.assertEquals(1, cache.getMisses());
+
+		travelTime.factor = 2.0;
+		Path second = router.calcLeastCostPath(n1, n4, 200.0, null, null);
+		Assert.assertEquals(1, cache.getHits());
+		Assert.assertEquals(first.links, second.links);
+		Assert.assertEquals(first.nodes, second.nodes);
+		// the travel time and cost of a cached path are computed for the query
+		Assert.assertEquals(2 * first.travelTime, second.travelTime, 1e-8);
+		Assert.assertEquals(2 * first.travelCost, second.travelCost, 1e-8);
+
+		// other time bin and other end node are not cached
+		router.calcLeastCostPath(n1, n4, 1000.0, null, null);
+		router.calcLeastCostPath(n1, n3, 200.0, null, null);
+		Assert.assertEquals(1, cache.getHits());
+		Assert.assertEquals(3, cache.getMisses());
+
+		// a calculator for another routing mode does not share the paths
+		LeastCostPathCalculator bikeRouter = cache.createCachingPathCalculator(dijkstra, network, "bike", travelTime, travelTime);
+		bikeRouter.calcLeastCostPath(n1, n4, 200.0, null, null);
+		Assert.assertEquals(4, cache.getMisses());
+
+		cache.notifyIterationStarts(new IterationStartsEvent(null, 1));
+		Assert.assertEquals(0, cache.getMisses());
+		router.calcLeastCostPath(n1, n4, 200.0, null, null);
+		Assert.assertEquals(0, cache.getHits());
+		Assert.assertEquals(1, cache.getMisses());
+	}
+
+	@Test
+	public void testEviction() {
+		Network network = createNetwork();
+		ScaledFreespeedTravelTime travelTime = new ScaledFreespeedTravelTime();
+		LeastCostPathCache cache = new LeastCostPathCache(1, 900.0);
+		LeastCostPathCalculator router = cache.createCachingPathCalculator(new Dijkstra(network, travelTime, travelTime),
+				network, "car", travelTime, travelTime);
+		Node n1 = network.getNodes().get(Id.createNodeId("1"));
+		Node n4 = network.getNodes().get(Id.createNodeId("4"));
+
+		// many queries with different time bins, so the paths of the first ones must have been evicted
+		for (int bin = 0; bin < 100; bin++) {
+			router.calcLeastCostPath(n1, n4, bin * 900.0, null, null);
+		}
+		router.calcLeastCostPath(n1, n4, 0.0, null, null);
+		Assert.assertEquals(0, cache.getHits());
+		Assert.assertEquals(101, cache.getMisses());
+
+		Assert.assertFalse(new LeastCostPathCache(0, 900.0).isEnabled());
+	}
+
+	/* 1 -> 2 -> 4 and a slower alternative 1 -> 3 -> 4 */
+	private static Network createNetwork() {
+		Network network = NetworkUtils.createNetwork();
+		Node n1 = NetworkUtils.createAndAddNode(network, Id.createNodeId("1"), new Coord(0, 0));
+		Node n2 = NetworkUtils.createAndAddNode(network, Id.createNodeId("2"), new Coord(1000, 0));
+		Node n3 = NetworkUtils.createAndAddNode(network, Id.createNodeId("3"), new Coord(0, 1000));
+		Node n4 = NetworkUtils.createAndAddNode(network, Id.createNodeId("4"), new Coord(1000, 1000));
+		NetworkUtils.createAndAddLink(network, Id.createLinkId("12"), n1, n2, 1000, 10, 1000, 1);
+		NetworkUtils.createAndAddLink(network, Id.createLinkId("24"), n2, n4, 1000, 10, 1000, 1);
+		NetworkUtils.createAndAddLink(network, Id.createLinkId("13"), n1, n3, 1000, 5, 1000, 1);
+		NetworkUtils.createAndAddLink(network, Id.createLinkId("34"), n3, n4, 1000, 5, 1000, 1);
+		return network;
+	}
+
+	private static final class ScaledFreespeedTravelTime implements TravelTime, TravelDisutility {
+		double factor = 1.0;
+
+		@Override
+		public double getLinkTravelTime(final Link link, final double time, final Person person,
+				final Vehicle vehicle) {
+			return this.factor * link.getLength() / link.getFreespeed();
+		}
+
+		@Override
+		public double getLinkTravelDisutility(final Link link, final double time, final Person person,
+				final Vehicle vehicle) {
+			return getLinkTravelTime(link, time, person, vehicle);
+		}
+
+		@Override
+		public double getLinkMinimumTravelDisutility(final Link link) {
+			return link.getLength() / link.getFreespeed();
+		}
+	}
+
+}
@@ -19,6 +19,7 @@
 
 package org.matsim.core.router;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import org.junit.Assert;
@@ -34,8 +35,11 @@ import org.matsim.api.core.v01.network.Node;
 import org.matsim.api.core.v01.population.Activity;
 import org.matsim.api.core.v01.population.Leg;
 import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
 import org.matsim.api.core.v01.population.PlanElement;
+import org.matsim.api.core.v01.population.PopulationFactory;
 import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.config.groups.PlansConfigGroup;
 import org.matsim.core.population.PopulationUtils;
 import org.matsim.core.population.routes.NetworkRoute;
 import org.matsim.core.router.costcalculators.FreespeedTravelTimeAndDisutility;
@@ -142,6 +146,146 @@ public class NetworkRoutingModuleTest {
 		}
 	}
 
+	@Test
+	public void testCalcRoutesBatched() {
+		Fixture f = new Fixture();
+		FreespeedTravelTimeAndDisutility freespeed = new FreespeedTravelTimeAndDisutility(-6.0/3600, +6.0/3600, 0.0);
+		Network network = f.s.getNetwork();
+		NetworkRoutingModule batchingModule = new NetworkRoutingModule(TransportMode.car, f.s.getPopulation().getFactory(),
+				network, new Dijkstra(network, freespeed, freespeed),
+				new OneToManyDijkstra(network, freespeed, freespeed), freespeed, freespeed, 900.0);
+		NetworkRoutingModule module = new NetworkRoutingModule(TransportMode.car, f.s.getPopulation().getFactory(),
+				network, new Dijkstra(network, freespeed, freespeed));
+		Assert.assertTrue(batchingModule.isBatching());
+		Assert.assertFalse(module.isBatching());
+
+		Person person = PopulationUtils.getFactory().createPerson(Id.create(1, Person.class));
+		String[][] odPairs = {{"1", "3"}, {"1", "2"}, {"2", "3"}, {"1", "1"}, {"1", "3"}};
+		double[] departureTimes = {7.0*3600, 7.0*3600 + 100, 7.0*3600 + 200, 7.0*3600, 9.0*3600};
+		List<RoutingRequest> requests = new ArrayList<>();
+		for (int i = 0; i < odPairs.length; i++) {
+			Facility fromFacility = new LinkWrapperFacility(network.getLinks().get(Id.create(odPairs[i][0], Link.class)));
+			Facility toFacility = new LinkWrapperFacility(network.getLinks().get(Id.create(odPairs[i][1], Link.class)));
+			requests.add(new RoutingRequest(TransportMode.car, fromFacility, toFacility, departureTimes[i], person));
+		}
+
+		List<List<? extends PlanElement>> trips = batchingModule.calcRoutes(requests);
+		Assert.assertEquals(requests.size(), trips.size());
+		for (int i = 0; i < requests.size(); i++) {
+			RoutingRequest request = requests.get(i);
+			Leg expected = (Leg) module.calcRoute(request.fromFacility, request.toFacility, request.departureTime, person).get(0);
+			Assert.assertEquals(1, trips.get(i).size());
+			Leg leg = (Leg) trips.get(i).get(0);
+			Assert.assertEquals(expected.getDepartureTime(), leg.getDepartureTime(), 1e-8);
+			Assert.assertEquals(expected.getTravelTime(), leg.getTravelTime(), 1e-8);
+			NetworkRoute expectedRoute = (NetworkRoute) expected.getRoute();
+			NetworkRoute route = (NetworkRoute) leg.getRoute();
+			Assert.assertEquals(expectedRoute.getLinkIds(), route.getLinkIds());
+			Assert.assertEquals(expectedRoute.getEndLinkId(), route.getEndLinkId());
+			Assert.assertEquals(expectedRoute.getTravelCost(), route.getTravelCost(), 1e-8);
+		}
+	}
+
+	@Test
+	public void testCalcRoutesBatchedSingleTripUsesRouteAlgo() {
+		Fixture f = new Fixture();
+		FreespeedTravelTimeAndDisutility freespeed = new FreespeedTravelTimeAndDisutility(-6.0/3600, +6.0/3600, 0.0);
+		Network network = f.s.getNetwork();
+		Dijkstra dijkstra = new Dijkstra(network, freespeed, freespeed);
+		List<Double> routeAlgoDepartureTimes = new ArrayList<>();
+		LeastCostPathCalculator routeAlgo = (fromNode, toNode, starttime, person, vehicle) -> {
+			routeAlgoDepartureTimes.add(starttime);
+			return dijkstra.calcLeastCostPath(fromNode, toNode, starttime, person, vehicle);
+		};
+		NetworkRoutingModule batchingModule = new NetworkRoutingModule(TransportMode.car, f.s.getPopulation().getFactory(),
+				network, routeAlgo, new OneToManyDijkstra(network, freespeed, freespeed), freespeed, freespeed, 900.0);
+
+		Person person = PopulationUtils.getFactory().createPerson(Id.create(1, Person.class));
+		Facility link1 = new LinkWrapperFacility(network.getLinks().get(Id.create("1", Link.class)));
+		Facility link2 = new LinkWrapperFacility(network.getLinks().get(Id.create("2", Link.class)));
+		Facility link3 = new LinkWrapperFacility(network.getLinks().get(Id.create("3", Link.class)));
+		List<RoutingRequest> requests = new ArrayList<>();
+		// two trips from the same node in the same time bin are batched, the others are routed on their own
+		requests.add(new RoutingRequest(TransportMode.car, link1, link3, 7.0*3600, person));
+		requests.add(new RoutingRequest(TransportMode.car, link1, link2, 7.0*3600 + 100, person));
+		requests.add(new RoutingRequest(TransportMode.car, link2, link3, 7.0*3600 + 200, person));
+		requests.add(new RoutingRequest(TransportMode.car, link1, link3, 9.0*3600 + 300, person));
+
+		List<List<? extends PlanElement>> trips = batchingModule.calcRoutes(requests);
+		Assert.assertEquals(requests.size(), trips.size());
+		Assert.assertEquals(2, routeAlgoDepartureTimes.size());
+		Assert.assertEquals(7.0*3600 + 200, routeAlgoDepartureTimes.get(0), 0.0);
+		Assert.assertEquals(9.0*3600 + 300, routeAlgoDepartureTimes.get(1), 0.0);
+	}
+
+	/**
+	 * The batch of {@link PlanRouter#run(List)} must depart at the same times as routing every plan on its own, also
+	 * after activities which end by their duration.
+	 */
+	@Test
+	public void testPlanRouterBatchDepartsAtEndOfActivity() {
+		Fixture f = new Fixture();
+		f.s.getConfig().plans().setActivityDurationInterpretation(PlansConfigGroup.ActivityDurationInterpretation.tryEndTimeThenDuration);
+		FreespeedTravelTimeAndDisutility freespeed = new FreespeedTravelTimeAndDisutility(-6.0/3600, +6.0/3600, 0.0);
+		Network network = f.s.getNetwork();
+		Dijkstra dijkstra = new Dijkstra(network, freespeed, freespeed);
+		List<Double> routeAlgoDepartureTimes = new ArrayList<>();
+		LeastCostPathCalculator routeAlgo = (fromNode, toNode, starttime, person, vehicle) -> {
+			routeAlgoDepartureTimes.add(starttime);
+			return dijkstra.calcLeastCostPath(fromNode, toNode, starttime, person, vehicle);
+		};
+		NetworkRoutingModule batchingModule = new NetworkRoutingModule(TransportMode.car, f.s.getPopulation().getFactory(),
+				network, routeAlgo, new OneToManyDijkstra(network, freespeed, freespeed), freespeed, freespeed, 900.0);
+		NetworkRoutingModule module = new NetworkRoutingModule(TransportMode.car, f.s.getPopulation().getFactory(),
+				network, new Dijkstra(network, freespeed, freespeed));
+		PlanRouter batchingRouter = new PlanRouter(new TripRouter.Builder(f.s.getConfig()).setRoutingModule(TransportMode.car, batchingModule).build());
+		PlanRouter router = new PlanRouter(new TripRouter.Builder(f.s.getConfig()).setRoutingModule(TransportMode.car, module).build());
+
+		List<Plan> plans = new ArrayList<>();
+		List<Plan> expectedPlans = new ArrayList<>();
+		for (int i = 0; i < 2; i++) {
+			Person person = PopulationUtils.getFactory().createPerson(Id.create(i, Person.class));
+			plans.add(createPlanWithDurations(person));
+			Plan expectedPlan = createPlanWithDurations(person);
+			router.run(expectedPlan);
+			expectedPlans.add(expectedPlan);
+		}
+		batchingRouter.run(plans);
+
+		// the first trips end their activity after its duration and are routed together, the second ones after the first
+		Assert.assertEquals(2, routeAlgoDepartureTimes.size());
+		for (double departureTime : routeAlgoDepartureTimes) {
+			Assert.assertTrue(departureTime > 7.0*3600);
+		}
+		for (int i = 0; i < plans.size(); i++) {
+			List<Leg> legs = TripStructureUtils.getLegs(plans.get(i));
+			List<Leg> expectedLegs = TripStructureUtils.getLegs(expectedPlans.get(i));
+			Assert.assertEquals(expectedLegs.size(), legs.size());
+			Assert.assertEquals(7.0*3600, legs.get(0).getDepartureTime(), 0.0);
+			for (int j = 0; j < legs.size(); j++) {
+				Assert.assertEquals(expectedLegs.get(j).getDepartureTime(), legs.get(j).getDepartureTime(), 1e-8);
+				Assert.assertEquals(expectedLegs.get(j).getTravelTime(), legs.get(j).getTravelTime(), 1e-8);
+				Assert.assertEquals(((NetworkRoute) expectedLegs.get(j).getRoute()).getLinkIds(), ((NetworkRoute) legs.get(j).getRoute()).getLinkIds());
+			}
+		}
+	}
+
+	private static Plan createPlanWithDurations(final Person person) {
+		PopulationFactory factory = PopulationUtils.getFactory();
+		Plan plan = factory.createPlan();
+		plan.setPerson(person);
+		Activity home = factory.createActivityFromLinkId("h", Id.create("1", Link.class));
+		home.setMaximumDuration(7.0*3600);
+		plan.addActivity(home);
+		plan.addLeg(factory.createLeg(TransportMode.car));
+		Activity work = factory.createActivityFromLinkId("w", Id.create("3", Link.class));
+		work.setMaximumDuration(8.0*3600);
+		plan.addActivity(work);
+		plan.addLeg(factory.createLeg(TransportMode.car));
+		plan.addActivity(factory.createActivityFromLinkId("h", Id.create("1", Link.class)));
+		return plan;
+	}
+
 	private static class Fixture {
 		public final Scenario s = ScenarioUtils.createScenario(ConfigUtils.createConfig());
 
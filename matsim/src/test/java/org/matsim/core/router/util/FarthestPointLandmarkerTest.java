@@ -0,0 +1,89 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router.util;
+
+import java.awt.geom.Rectangle2D;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.router.costcalculators.FreespeedTravelTimeAndDisutility;
+
+public class FarthestPointLandmarkerTest {
+
+	private final TravelDisutility travelDisutility = new FreespeedTravelTimeAndDisutility(-6.0 / 3600, 6.0 / 3600, 0.0);
+
+	@Test
+	public void testDisconnectedCentralNode() {
+		Network network = NetworkUtils.createNetwork();
+		Node[][] nodes = new Node[5][5];
+		for (int x = 0; x < 5; x++) {
+			for (int y = 0; y < 5; y++) {
+				nodes[x][y] = NetworkUtils.createAndAddNode(network, Id.createNodeId(x + "_" + y), new Coord(x * 100, y * 100));
+			}
+		}
+		// a ring around the center, the central node is not connected to the rest
+		for (int i = 0; i < 4; i++) {
+			createLinks(network, nodes[i][0], nodes[i + 1][0]);
+			createLinks(network, nodes[4][i], nodes[4][i + 1]);
+			createLinks(network, nodes[i][4], nodes[i + 1][4]);
+			createLinks(network, nodes[0][i], nodes[0][i + 1]);
+		}
+
+		Node[] landmarks = new FarthestPointLandmarker(this.travelDisutility).identifyLandmarks(4, network);
+
+		Assert.assertEquals(4, landmarks.length);
+		List<Node> landmarkList = Arrays.asList(landmarks);
+		Assert.assertFalse(landmarkList.contains(nodes[2][2]));
+		Assert.assertEquals(4, landmarkList.stream().distinct().count());
+		for (Node landmark : landmarks) {
+			Assert.assertFalse("landmark " + landmark.getId() + " is not on the ring", landmark.getInLinks().isEmpty());
+		}
+	}
+
+	@Test
+	public void testTooSmallComponent() {
+		Network network = NetworkUtils.createNetwork();
+		Node a = NetworkUtils.createAndAddNode(network, Id.createNodeId("a"), new Coord(0, 0));
+		Node b = NetworkUtils.createAndAddNode(network, Id.createNodeId("b"), new Coord(100, 0));
+		NetworkUtils.createAndAddNode(network, Id.createNodeId("c"), new Coord(100, 100));
+		NetworkUtils.createAndAddNode(network, Id.createNodeId("d"), new Coord(0, 100));
+		createLinks(network, a, b);
+
+		// only two landmarks fit into the component of a and b, so the pie slices landmarker is used
+		Node[] landmarks = new FarthestPointLandmarker(this.travelDisutility).identifyLandmarks(3, network);
+
+		Node[] expected = new PieSlicesLandmarker(new Rectangle2D.Double()).identifyLandmarks(3, network);
+		Assert.assertArrayEquals(expected, landmarks);
+	}
+
+	private static void createLinks(final Network network, final Node a, final Node b) {
+		double length = NetworkUtils.getEuclideanDistance(a.getCoord(), b.getCoord());
+		NetworkUtils.createAndAddLink(network, Id.createLinkId(a.getId() + "-" + b.getId()), a, b, length, 10, 1000, 1);
+		NetworkUtils.createAndAddLink(network, Id.createLinkId(b.getId() + "-" + a.getId()), b, a, length, 10, 1000, 1);
+	}
+
+}
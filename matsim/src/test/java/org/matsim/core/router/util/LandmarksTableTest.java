@@ -0,0 +1,70 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router.util;
+
+import java.io.File;
+import java.nio.file.Path;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.matsim.testcases.MatsimTestUtils;
+
+public class LandmarksTableTest {
+
+	@Rule
+	public MatsimTestUtils utils = new MatsimTestUtils();
+
+	@Test
+	public void testWriteAndRead() throws Exception {
+		LandmarksTable table = new LandmarksTable(100, 3, new int[] {5, 17, 42});
+		for (int row = 0; row < 100; row++) {
+			for (int col = 0; col < 6; col++) {
+				table.set(row, col, row * 10.0 + col);
+			}
+		}
+		table.set(3, 2, Double.POSITIVE_INFINITY);
+
+		Path file = new File(this.utils.getOutputDirectory(), "landmarks.bin").toPath();
+		table.write(file);
+		LandmarksTable read = LandmarksTable.read(file, 100, 3);
+
+		Assert.assertNotNull(read);
+		Assert.assertEquals(100, read.getNodeCount());
+		Assert.assertEquals(3, read.getLandmarkCount());
+		Assert.assertArrayEquals(new int[] {5, 17, 42}, read.getLandmarkNodeIndices());
+		for (int row = 0; row < 100; row++) {
+			for (int col = 0; col < 6; col++) {
+				Assert.assertEquals(table.get(row, col), read.get(row, col), 0.0);
+			}
+		}
+	}
+
+	@Test
+	public void testReadOtherNetwork() throws Exception {
+		LandmarksTable table = new LandmarksTable(10, 2, new int[] {1, 2});
+		Path file = new File(this.utils.getOutputDirectory(), "landmarks.bin").toPath();
+		table.write(file);
+
+		Assert.assertNull(LandmarksTable.read(file, 11, 2));
+		Assert.assertNull(LandmarksTable.read(file, 10, 3));
+	}
+
+}
@@ -1,11 +1,16 @@
 package org.matsim.core.scoring;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
 import org.junit.Assert;
 import org.junit.Test;
 import org.matsim.api.core.v01.Coord;
 import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.Scenario;
 import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.events.PersonMoneyEvent;
 import org.matsim.api.core.v01.population.Activity;
 import org.matsim.api.core.v01.population.Leg;
 import org.matsim.api.core.v01.population.Person;
@@ -69,6 +74,109 @@ public class ScoringFunctionsForPopulationTest {
 		Assert.assertEquals("transit_walk", ((Leg) rs.lastTrip.getTripElements().get(4)).getMode());
 	}
 
+	@Test
+	public void testShardedScoring() {
+		Scenario scenario = ScenarioUtils.createScenario(ConfigUtils.createConfig());
+		Population population = scenario.getPopulation();
+		PopulationFactory pf = population.getFactory();
+		List<Id<Person>> personIds = new ArrayList<>();
+		for (int i = 0; i < 20; i++) {
+			Person p = pf.createPerson(Id.create(i, Person.class));
+			population.addPerson(p);
+			personIds.add(p.getId());
+		}
+
+		ScoringFunctionsForPopulation[] sfs = new ScoringFunctionsForPopulation[2];
+		for (int i = 0; i < sfs.length; i++) {
+			ControlerListenerManagerImpl controlerListenerManager = new ControlerListenerManagerImpl();
+			sfs[i] = new ScoringFunctionsForPopulation(controlerListenerManager, EventsUtils.createEventsManager(), new EventsToActivities(),
+					new EventsToLegs(scenario), population, agentId -> new LoggingScoringFunction(), i == 0 ? 0 : 3);
+			controlerListenerManager.fireControlerIterationStartsEvent(0);
+		}
+
+		String[] activityTypes = {"home", "work", "shop"};
+		String[] modes = {"car", "pt", "walk"};
+		boolean[] nextIsLeg = new boolean[personIds.size()];
+		Random random = new Random(42);
+		for (int i = 0; i < 5000; i++) {
+			int person = random.nextInt(personIds.size());
+			Id<Person> personId = personIds.get(person);
+			boolean money = random.nextInt(3) == 0;
+			boolean leg = nextIsLeg[person];
+			if (!money) {
+				nextIsLeg[person] = !leg;
+			}
+			for (ScoringFunctionsForPopulation sf : sfs) {
+				if (!money && !leg) {
+					sf.handleActivity(new PersonExperiencedActivity(personId, pf.createActivityFromCoord(activityTypes[i % 3], new Coord(0, 0))));
+				} else if (!money) {
+					sf.handleLeg(new PersonExperiencedLeg(personId, pf.createLeg(modes[i % 3])));
+				} else {
+					sf.handleEvent(new PersonMoneyEvent(i, personId, i % 7));
+				}
+			}
+		}
+		for (ScoringFunctionsForPopulation sf : sfs) {
+			sf.finishScoringFunctions();
+		}
+
+		for (Id<Person> personId : personIds) {
+			LoggingScoringFunction expected = (LoggingScoringFunction) sfs[0].getScoringFunctionForAgent(personId);
+			LoggingScoringFunction actual = (LoggingScoringFunction) sfs[1].getScoringFunctionForAgent(personId);
+			Assert.assertFalse(expected.log.isEmpty());
+			Assert.assertEquals(expected.log, actual.log);
+			Assert.assertEquals(expected.getScore(), actual.getScore(), 0.0);
+		}
+	}
+
+	private static class LoggingScoringFunction implements ScoringFunction {
+
+		final List<String> log = new ArrayList<>();
+		double score = 0;
+
+		@Override
+		public void handleActivity(Activity activity) {
+			this.log.add(activity.getType());
+			this.score = 0.5 * this.score + 1;
+		}
+
+		@Override
+		public void handleLeg(Leg leg) {
+			this.log.add(leg.getMode());
+			this.score = 0.5 * this.score - 1;
+		}
+
+		@Override
+		public void handleTrip(TripStructureUtils.Trip trip) {
+			this.log.add("trip " + trip.getTripElements().size());
+		}
+
+		@Override
+		public void agentStuck(double time) {
+			this.log.add("stuck");
+		}
+
+		@Override
+		public void addMoney(double amount) {
+			this.score = 0.5 * this.score + amount;
+		}
+
+		@Override
+		public void finish() {
+			this.log.add("finish");
+		}
+
+		@Override
+		public double getScore() {
+			return this.score;
+		}
+
+		@Override
+		public void handleEvent(Event event) {
+			this.log.add(event.getEventType());
+		}
+	}
+
 	private static class RecordingScoringFunction implements ScoringFunction {
 
 		int tripCounter = 0;
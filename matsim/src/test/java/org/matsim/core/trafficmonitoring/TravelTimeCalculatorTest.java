@@ -22,8 +22,13 @@ package org.matsim.core.trafficmonitoring;
 
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.util.Collections;
 
 import javax.xml.parsers.ParserConfigurationException;
 
@@ -319,6 +324,178 @@ public class TravelTimeCalculatorTest extends MatsimTestCase {
 		assertEquals(linkTravelTime2, ttcalc.getLinkTravelTimes().getLinkTravelTime(link1, firstTimeBinStart + 2.5*timeBinSize, null, null), EPSILON);
 	}
 
+	/**
+	 * Tests that frozen travel times are the same as the live ones, for both travel time getters, both data containers and both
+	 * kinds of snapshots, that they are discarded by reset, and that the live travel times are the same again afterwards.
+	 */
+	public void testFrozenTravelTimes() {
+		for (TravelTimeCalculatorConfigGroup.TravelTimeSnapshotType snapshotType : new TravelTimeCalculatorConfigGroup.TravelTimeSnapshotType[] {
+				TravelTimeCalculatorConfigGroup.TravelTimeSnapshotType.heap, TravelTimeCalculatorConfigGroup.TravelTimeSnapshotType.memoryMapped }) {
+			for (TravelTimeCalculatorConfigGroup.TravelTimeCalculatorType calculatorType : TravelTimeCalculatorConfigGroup.TravelTimeCalculatorType.values()) {
+				for (String getterType : new String[] { "average", "linearinterpolation" }) {
+					Config config = ConfigUtils.createConfig();
+					config.travelTimeCalculator().setTravelTimeGetterType(getterType);
+					config.travelTimeCalculator().setTravelTimeCalculatorType(calculatorType.name());
+					config.travelTimeCalculator().setTraveltimeBinSize(15*60);
+					config.travelTimeCalculator().setMaxTime(12*3600);
+
+					Scenario scenario = ScenarioUtils.createScenario(config);
+					Network network = scenario.getNetwork();
+					final Node node1 = NetworkUtils.createAndAddNode(network, Id.create("1", Node.class), new Coord(0, 0));
+					final Node node2 = NetworkUtils.createAndAddNode(network, Id.create("2", Node.class), new Coord(1000, 0));
+					final Node node3 = NetworkUtils.createAndAddNode(network, Id.create("3", Node.class), new Coord(2000, 0));
+					Link link1 = NetworkUtils.createAndAddLink(network,Id.create("1", Link.class), node1, node2, 1000.0, 10.0, 3600.0, 1.0 );
+					Link link2 = NetworkUtils.createAndAddLink(network,Id.create("2", Link.class), node2, node3, 1000.0, 20.0, 3600.0, 1.0 );
+					Id<Vehicle> vehId = Id.create("1", Vehicle.class);
+
+					TravelTimeCalculator ttcalc = TravelTimeCalculator.create(network, config.travelTimeCalculator());
+					ttcalc.handleEvent(new LinkEnterEvent(7.0*3600, vehId, link1.getId()));
+					ttcalc.handleEvent(new LinkLeaveEvent(7.0*3600 + 50*60, vehId, link1.getId()));
+					ttcalc.handleEvent(new LinkEnterEvent(7.5*3600, vehId, link1.getId()));
+					ttcalc.handleEvent(new LinkLeaveEvent(7.5*3600 + 20*60, vehId, link1.getId()));
+					ttcalc.handleEvent(new LinkEnterEvent(11.9*3600, vehId, link1.getId()));
+					ttcalc.handleEvent(new LinkLeaveEvent(11.9*3600 + 10*60, vehId, link1.getId()));
+
+					double[] times = new double[200];
+					double[] expected1 = new double[times.length];
+					double[] expected2 = new double[times.length];
+					for (int i = 0; i < times.length; i++) {
+						times[i] = i * 250.0;
+						expected1[i] = ttcalc.getLinkTravelTimes().getLinkTravelTime(link1, times[i], null, null);
+						expected2[i] = ttcalc.getLinkTravelTimes().getLinkTravelTime(link2, times[i], null, null);
+					}
+
+					ttcalc.freezeLinkTravelTimes(snapshotType);
+					// events after freezing are not visible until the next reset
+					ttcalc.handleEvent(new LinkEnterEvent(8.0*3600, vehId, link2.getId()));
+					ttcalc.handleEvent(new LinkLeaveEvent(8.0*3600 + 30*60, vehId, link2.getId()));
+					for (int i = 0; i < times.length; i++) {
+						String message = snapshotType + "/" + calculatorType + "/" + getterType + " at " + times[i];
+						assertEquals(message, expected1[i], ttcalc.getLinkTravelTimes().getLinkTravelTime(link1, times[i], null, null), 1e-3);
+						assertEquals(message, expected2[i], ttcalc.getLinkTravelTimes().getLinkTravelTime(link2, times[i], null, null), 1e-3);
+					}
+
+					ttcalc.reset(1);
+					assertEquals(NetworkUtils.getFreespeedTravelTime(link1), ttcalc.getLinkTravelTimes().getLinkTravelTime(link1, 7.0*3600, null, null), EPSILON);
+
+					// the caches released by the snapshot are rebuilt for the live travel times of the next iteration
+					ttcalc.handleEvent(new LinkEnterEvent(7.0*3600, vehId, link1.getId()));
+					ttcalc.handleEvent(new LinkLeaveEvent(7.0*3600 + 50*60, vehId, link1.getId()));
+					ttcalc.handleEvent(new LinkEnterEvent(7.5*3600, vehId, link1.getId()));
+					ttcalc.handleEvent(new LinkLeaveEvent(7.5*3600 + 20*60, vehId, link1.getId()));
+					ttcalc.handleEvent(new LinkEnterEvent(11.9*3600, vehId, link1.getId()));
+					ttcalc.handleEvent(new LinkLeaveEvent(11.9*3600 + 10*60, vehId, link1.getId()));
+					for (int i = 0; i < times.length; i++) {
+						String message = snapshotType + "/" + calculatorType + "/" + getterType + " at " + times[i] + " after reset";
+						assertEquals(message, expected1[i], ttcalc.getLinkTravelTimes().getLinkTravelTime(link1, times[i], null, null), EPSILON);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Tests that link travel times passed by a {@link LinkTravelTimeCollector} are exactly the same as the ones from the
+	 * events, and that link leave events are then ignored.
+	 */
+	public void testLinkTravelTimesFromMobsim() {
+		for (TravelTimeCalculatorConfigGroup.TravelTimeCalculatorType calculatorType : TravelTimeCalculatorConfigGroup.TravelTimeCalculatorType.values()) {
+			Config config = ConfigUtils.createConfig();
+			config.travelTimeCalculator().setTravelTimeCalculatorType(calculatorType.name());
+			config.travelTimeCalculator().setTraveltimeBinSize(15*60);
+			config.travelTimeCalculator().setMaxTime(12*3600);
+
+			Scenario scenario = ScenarioUtils.createScenario(config);
+			Network network = scenario.getNetwork();
+			final Node node1 = NetworkUtils.createAndAddNode(network, Id.create("1", Node.class), new Coord(0, 0));
+			final Node node2 = NetworkUtils.createAndAddNode(network, Id.create("2", Node.class), new Coord(1000, 0));
+			final Node node3 = NetworkUtils.createAndAddNode(network, Id.create("3", Node.class), new Coord(2000, 0));
+			Link link1 = NetworkUtils.createAndAddLink(network,Id.create("1", Link.class), node1, node2, 1000.0, 10.0, 3600.0, 1.0 );
+			Link link2 = NetworkUtils.createAndAddLink(network,Id.create("2", Link.class), node2, node3, 1000.0, 20.0, 3600.0, 1.0 );
+			Id<Vehicle> vehId = Id.create("1", Vehicle.class);
+
+			TravelTimeCalculator fromEvents = TravelTimeCalculator.create(network, config.travelTimeCalculator());
+			TravelTimeCalculator fromMobsim = TravelTimeCalculator.create(network, config.travelTimeCalculator());
+			LinkTravelTimeCollector collector = new LinkTravelTimeCollector(Collections.singleton(fromMobsim));
+			collector.notifyMobsimInitialized(null);
+
+			double[][] travels = { { 7.0*3600, 50*60 }, { 7.0*3600 + 10, 31.7 }, { 7.5*3600, 20*60 }, { 7.5*3600 + 1, 0.1 }, { 11.9*3600, 10*60 } };
+			for (Link link : new Link[] { link1, link2 }) {
+				for (double[] travel : travels) {
+					LinkEnterEvent enter = new LinkEnterEvent(travel[0], vehId, link.getId());
+					LinkLeaveEvent leave = new LinkLeaveEvent(travel[0] + travel[1], vehId, link.getId());
+					fromEvents.handleEvent(enter);
+					fromEvents.handleEvent(leave);
+					fromMobsim.handleEvent(enter);
+					fromMobsim.handleEvent(leave);
+					collector.addLinkTravelTime(link.getId(), travel[0], travel[0] + travel[1], TransportMode.car);
+				}
+			}
+			assertEquals(NetworkUtils.getFreespeedTravelTime(link1), fromMobsim.getLinkTravelTimes().getLinkTravelTime(link1, 7.0*3600, null, null), EPSILON);
+
+			collector.notifyMobsimBeforeCleanup(null);
+			for (int i = 0; i < 200; i++) {
+				double time = i * 250.0;
+				for (Link link : new Link[] { link1, link2 }) {
+					assertEquals(calculatorType + " at " + time, fromEvents.getLinkTravelTimes().getLinkTravelTime(link, time, null, null),
+							fromMobsim.getLinkTravelTimes().getLinkTravelTime(link, time, null, null), 0.0);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Tests that travel times restored from the state of a calculator are exactly the same as the original ones, for both
+	 * data containers.
+	 */
+	public void testWriteAndReadState() throws IOException {
+		for (TravelTimeCalculatorConfigGroup.TravelTimeCalculatorType calculatorType : TravelTimeCalculatorConfigGroup.TravelTimeCalculatorType.values()) {
+			Config config = ConfigUtils.createConfig();
+			config.travelTimeCalculator().setTravelTimeCalculatorType(calculatorType.name());
+			config.travelTimeCalculator().setTraveltimeBinSize(15*60);
+			config.travelTimeCalculator().setMaxTime(12*3600);
+
+			Scenario scenario = ScenarioUtils.createScenario(config);
+			Network network = scenario.getNetwork();
+			final Node node1 = NetworkUtils.createAndAddNode(network, Id.create("1", Node.class), new Coord(0, 0));
+			final Node node2 = NetworkUtils.createAndAddNode(network, Id.create("2", Node.class), new Coord(1000, 0));
+			final Node node3 = NetworkUtils.createAndAddNode(network, Id.create("3", Node.class), new Coord(2000, 0));
+			Link link1 = NetworkUtils.createAndAddLink(network,Id.create("1", Link.class), node1, node2, 1000.0, 10.0, 3600.0, 1.0 );
+			Link link2 = NetworkUtils.createAndAddLink(network,Id.create("2", Link.class), node2, node3, 1000.0, 20.0, 3600.0, 1.0 );
+			Id<Vehicle> vehId = Id.create("1", Vehicle.class);
+
+			TravelTimeCalculator ttcalc = TravelTimeCalculator.create(network, config.travelTimeCalculator());
+			ttcalc.handleEvent(new LinkEnterEvent(7.0*3600, vehId, link1.getId()));
+			ttcalc.handleEvent(new LinkLeaveEvent(7.0*3600 + 50*60 + 0.3, vehId, link1.getId()));
+			ttcalc.handleEvent(new LinkEnterEvent(7.1*3600, vehId, link1.getId()));
+			ttcalc.handleEvent(new LinkLeaveEvent(7.1*3600 + 20*60 + 0.7, vehId, link1.getId()));
+			ttcalc.handleEvent(new LinkEnterEvent(11.9*3600, vehId, link2.getId()));
+			ttcalc.handleEvent(new LinkLeaveEvent(11.9*3600 + 10*60, vehId, link2.getId()));
+
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			try (DataOutputStream out = new DataOutputStream(bytes)) {
+				ttcalc.writeState(out);
+			}
+
+			TravelTimeCalculator restored = TravelTimeCalculator.create(network, config.travelTimeCalculator());
+			// travel times collected before are replaced by the restored ones
+			restored.handleEvent(new LinkEnterEvent(8.0*3600, vehId, link2.getId()));
+			restored.handleEvent(new LinkLeaveEvent(8.0*3600 + 30*60, vehId, link2.getId()));
+			try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+				restored.readState(in);
+			}
+
+			for (int i = 0; i < 200; i++) {
+				double time = i * 250.0;
+				String message = calculatorType + " at " + time;
+				assertEquals(message, ttcalc.getLinkTravelTimes().getLinkTravelTime(link1, time, null, null),
+						restored.getLinkTravelTimes().getLinkTravelTime(link1, time, null, null), 0.0);
+				assertEquals(message, ttcalc.getLinkTravelTimes().getLinkTravelTime(link2, time, null, null),
+						restored.getLinkTravelTimes().getLinkTravelTime(link2, time, null, null), 0.0);
+			}
+		}
+	}
+
 	/**
 	 * Tests that calculating LinkTravelTimes works also without reading in a complete scenario including population.
 	 *
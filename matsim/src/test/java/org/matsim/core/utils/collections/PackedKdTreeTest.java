@@ -0,0 +1,190 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.utils.collections;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test for {@link PackedKdTree}, comparing its results with a linear scan over all points.
+ */
+public class PackedKdTreeTest {
+
+	@Test
+	public void testEmptyTree() {
+		PackedKdTree<String> tree = new PackedKdTree.Builder<String>().build();
+		Assert.assertEquals(0, tree.size());
+		Assert.assertNull(tree.getClosest(1.0, 2.0));
+		PackedKdTree.Neighbors<String> neighbors = new PackedKdTree.Neighbors<>();
+		Assert.assertEquals(0, tree.getNearest(1.0, 2.0, 3, neighbors));
+		Assert.assertEquals(0, tree.getDisk(1.0, 2.0, 100.0, (x, y, value) -> Assert.fail()));
+		Assert.assertEquals(0, tree.execute(0.0, 0.0, 10.0, 10.0, (x, y, value) -> Assert.fail()));
+	}
+
+	@Test
+	public void testSmallTree() {
+		PackedKdTree<String> tree = new PackedKdTree.Builder<String>()
+				.put(10.0, 10.0, "10.0, 10.0")
+				.put(15.0, 15.0, "15.0, 15.0")
+				.put(-15.0, 0.0, "-15.0, 0.0")
+				.put(20.0, 10.0, "20.0, 10.0")
+				.put(100.0, 0.0, "100.0, 0.0")
+				.put(15.0, 15.0, "15.0, 15.0 B")
+				.build();
+		Assert.assertEquals(6, tree.size());
+		Assert.assertEquals("-15.0, 0.0", tree.getClosest(-20.0, 1.0));
+		Assert.assertEquals("100.0, 0.0", tree.getClosest(1000.0, 1000.0));
+
+		PackedKdTree.Neighbors<String> neighbors = new PackedKdTree.Neighbors<>();
+		Assert.assertEquals(3, tree.getNearest(16.0, 16.0, 3, neighbors));
+		Assert.assertEquals(new HashSet<>(Arrays.asList("15.0, 15.0", "15.0, 15.0 B")),
+				new HashSet<>(Arrays.asList(neighbors.getValue(0), neighbors.getValue(1))));
+		Assert.assertEquals(Math.sqrt(2.0), neighbors.getDistance(0), 1e-10);
+		Assert.assertEquals("20.0, 10.0", neighbors.getValue(2));
+		Assert.assertEquals(20.0, neighbors.getX(2), 0.0);
+		Assert.assertEquals(10.0, neighbors.getY(2), 0.0);
+
+		Assert.assertEquals(6, tree.getNearest(0.0, 0.0, 10, neighbors));
+
+		List<String> found = new ArrayList<>();
+		Assert.assertEquals(4, tree.getDisk(15.0, 12.0, 6.0, (x, y, value) -> found.add(value)));
+		Assert.assertEquals(new HashSet<>(Arrays.asList("10.0, 10.0", "15.0, 15.0", "15.0, 15.0 B", "20.0, 10.0")), new HashSet<>(found));
+	}
+
+	@Test
+	public void testQueries_randomPoints() {
+		Random random = new Random(4711);
+		int n = 5000;
+		double[] xs = new double[n];
+		double[] ys = new double[n];
+		PackedKdTree.Builder<Integer> builder = new PackedKdTree.Builder<>();
+		for (int i = 0; i < n; i++) {
+			// a coarse grid, so that there are many points with equal coordinates
+			xs[i] = random.nextInt(200) * 5.0;
+			ys[i] = random.nextInt(100) * 5.0;
+			builder.put(xs[i], ys[i], i);
+		}
+		PackedKdTree<Integer> tree = builder.build();
+		Assert.assertEquals(n, tree.size());
+
+		PackedKdTree.Neighbors<Integer> neighbors = new PackedKdTree.Neighbors<>();
+		for (int q = 0; q < 500; q++) {
+			double x = random.nextDouble() * 1200 - 100;
+			double y = random.nextDouble() * 700 - 100;
+			double[] distances = new double[n];
+			for (int i = 0; i < n; i++) {
+				distances[i] = Math.hypot(xs[i] - x, ys[i] - y);
+			}
+			double[] sorted = distances.clone();
+			Arrays.sort(sorted);
+
+			int closest = tree.getClosest(x, y);
+			Assert.assertEquals(sorted[0], distances[closest], 1e-9);
+
+			int k = 1 + random.nextInt(20);
+			Assert.assertEquals(k, tree.getNearest(x, y, k, neighbors));
+			for (int rank = 0; rank < k; rank++) {
+				Assert.assertEquals(sorted[rank], neighbors.getDistance(rank), 1e-9);
+				Assert.assertEquals(distances[neighbors.getValue(rank)], neighbors.getDistance(rank), 1e-9);
+			}
+
+			double radius = random.nextDouble() * 50;
+			Set<Integer> expected = new HashSet<>();
+			for (int i = 0; i < n; i++) {
+				if ((xs[i] - x) * (xs[i] - x) + (ys[i] - y) * (ys[i] - y) <= radius * radius) {
+					expected.add(i);
+				}
+			}
+			Set<Integer> found = new HashSet<>();
+			Assert.assertEquals(expected.size(), tree.getDisk(x, y, radius, (px, py, value) -> {
+				Assert.assertEquals(xs[value], px, 0.0);
+				Assert.assertEquals(ys[value], py, 0.0);
+				found.add(value);
+			}));
+			Assert.assertEquals(expected, found);
+
+			double maxX = x + random.nextDouble() * 100;
+			double maxY = y + random.nextDouble() * 100;
+			expected.clear();
+			for (int i = 0; i < n; i++) {
+				if (xs[i] >= x && xs[i] <= maxX && ys[i] >= y && ys[i] <= maxY) {
+					expected.add(i);
+				}
+			}
+			found.clear();
+			Assert.assertEquals(expected.size(), tree.execute(x, y, maxX, maxY, (px, py, value) -> found.add(value)));
+			Assert.assertEquals(expected, found);
+		}
+	}
+
+	@Test
+	public void testParallelBuildAndBatchQuery() {
+		Random random = new Random(42);
+		int n = 100_000;
+		PackedKdTree.Builder<Integer> builder = new PackedKdTree.Builder<>();
+		QuadTree<Integer> quadTree = new QuadTree<>(0.0, 0.0, 10000.0, 10000.0);
+		for (int i = 0; i < n; i++) {
+			double x = random.nextDouble() * 10000;
+			double y = random.nextDouble() * 10000;
+			builder.put(x, y, i);
+			quadTree.put(x, y, i);
+		}
+		PackedKdTree<Integer> sequential = builder.build();
+		PackedKdTree<Integer> parallel = builder.build(4);
+		Assert.assertEquals(n, parallel.size());
+
+		int numberOfQueries = 2000;
+		double[] xs = new double[numberOfQueries];
+		double[] ys = new double[numberOfQueries];
+		for (int q = 0; q < numberOfQueries; q++) {
+			xs[q] = random.nextDouble() * 10000;
+			ys[q] = random.nextDouble() * 10000;
+			Integer expected = quadTree.getClosest(xs[q], ys[q]);
+			Assert.assertEquals(expected, sequential.getClosest(xs[q], ys[q]));
+			Assert.assertEquals(expected, parallel.getClosest(xs[q], ys[q]));
+			Assert.assertEquals(quadTree.getDisk(xs[q], ys[q], 100.0).size(), parallel.getDisk(xs[q], ys[q], 100.0, (x, y, value) -> { }));
+		}
+
+		int k = 5;
+		int[][] found = new int[numberOfQueries][k];
+		AtomicInteger count = new AtomicInteger();
+		parallel.getNearest(xs, ys, k, 3, (query, rank, value, distance) -> {
+			found[query][rank] = value;
+			count.incrementAndGet();
+		});
+		Assert.assertEquals(numberOfQueries * k, count.get());
+		PackedKdTree.Neighbors<Integer> neighbors = new PackedKdTree.Neighbors<>();
+		for (int q = 0; q < numberOfQueries; q++) {
+			sequential.getNearest(xs[q], ys[q], k, neighbors);
+			for (int rank = 0; rank < k; rank++) {
+				Assert.assertEquals(neighbors.getValue(rank).intValue(), found[q][rank]);
+			}
+		}
+	}
+
+}
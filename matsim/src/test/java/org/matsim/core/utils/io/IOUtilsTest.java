@@ -33,6 +33,7 @@ import java.nio.file.Paths;
 
 import org.apache.log4j.Logger;
 import org.junit.Assert;
+import org.junit.Assume;
 import org.junit.Rule;
 import org.junit.Test;
 import org.matsim.core.controler.OutputDirectoryLogging;
@@ -218,6 +219,93 @@ public class IOUtilsTest {
 		Assert.assertTrue("compressed file should be less than 50 bytes, but is " + file.length(), file.length() < 50);
 	}
 	
+	@Test
+	public void testGetBufferedWriter_gzipped_parallel() throws IOException {
+		String filename = this.utils.getOutputDirectory() + "test.txt.gz";
+		int lines = 200000; // more than two blocks
+		BufferedWriter writer = IOUtils.getBufferedWriter(filename, IOUtils.CHARSET_UTF8, false, 3);
+		for (int i = 0; i < lines; i++) {
+			writer.write("line " + i + "\n");
+		}
+		writer.close();
+		Assert.assertTrue(new File(filename).length() < ParallelGZIPOutputStream.BLOCK_SIZE);
+
+		// the multi-member file must be readable as a whole with the standard gzip decompression
+		BufferedReader reader = IOUtils.getBufferedReader(filename);
+		for (int i = 0; i < lines; i++) {
+			Assert.assertEquals("line " + i, reader.readLine());
+		}
+		Assert.assertNull(reader.readLine());
+		reader.close();
+	}
+
+	@Test
+	public void testGetBufferedWriter_gzipped_parallel_flush() throws IOException {
+		int lines = 200000;
+		String flushedFilename = this.utils.getOutputDirectory() + "flushed.txt.gz";
+		BufferedWriter writer = IOUtils.getBufferedWriter(flushedFilename, IOUtils.CHARSET_UTF8, false, 3);
+		for (int i = 0; i < lines; i++) {
+			writer.write("line " + i + "\n");
+			writer.flush();
+		}
+		writer.close();
+		String filename = this.utils.getOutputDirectory() + "test.txt.gz";
+		writer = IOUtils.getBufferedWriter(filename, IOUtils.CHARSET_UTF8, false, 3);
+		for (int i = 0; i < lines; i++) {
+			writer.write("line " + i + "\n");
+		}
+		writer.close();
+
+		// flushing must not end the blocks, so the data is compressed exactly the same way
+		Assert.assertEquals(new File(filename).length(), new File(flushedFilename).length());
+		BufferedReader reader = IOUtils.getBufferedReader(flushedFilename);
+		for (int i = 0; i < lines; i++) {
+			Assert.assertEquals("line " + i, reader.readLine());
+		}
+		Assert.assertNull(reader.readLine());
+		reader.close();
+	}
+
+	@Test
+	public void testGetBufferedWriter_gzipped_parallel_empty() throws IOException {
+		String filename = this.utils.getOutputDirectory() + "test.txt.gz";
+		IOUtils.getBufferedWriter(filename, IOUtils.CHARSET_UTF8, false, 2).close();
+		BufferedReader reader = IOUtils.getBufferedReader(filename);
+		Assert.assertNull(reader.readLine());
+		reader.close();
+	}
+
+	@Test
+	public void testGetBufferedWriter_zst() throws IOException {
+		Assume.assumeTrue("zstd-jni is not on the classpath", isClassAvailable("com.github.luben.zstd.ZstdOutputStream"));
+		for (int threads : new int[] {1, 2}) {
+			String filename = this.utils.getOutputDirectory() + "test" + threads + ".txt.zst";
+			int lines = 100000;
+			BufferedWriter writer = IOUtils.getBufferedWriter(filename, IOUtils.CHARSET_UTF8, false, threads);
+			for (int i = 0; i < lines; i++) {
+				writer.write("line " + i + "\n");
+			}
+			writer.close();
+			Assert.assertTrue(new File(filename).length() < 10 * lines);
+
+			BufferedReader reader = IOUtils.getBufferedReader(filename);
+			for (int i = 0; i < lines; i++) {
+				Assert.assertEquals("line " + i, reader.readLine());
+			}
+			Assert.assertNull(reader.readLine());
+			reader.close();
+		}
+	}
+
+	private static boolean isClassAvailable(final String className) {
+		try {
+			Class.forName(className);
+			return true;
+		} catch (ClassNotFoundException | LinkageError e) {
+			return false;
+		}
+	}
+
 	@Test
 	public void testGetBufferedWriter_append_lz4() throws IOException {
 		String filename = this.utils.getOutputDirectory() + "test.txt.lz4";
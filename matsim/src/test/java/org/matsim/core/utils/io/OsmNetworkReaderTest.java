@@ -26,6 +26,7 @@ import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.Scenario;
 import org.matsim.api.core.v01.network.Link;
 import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
 import org.matsim.core.config.ConfigUtils;
 import org.matsim.core.network.algorithms.NetworkCleaner;
 import org.matsim.core.scenario.ScenarioUtils;
@@ -35,6 +36,14 @@ import org.matsim.core.utils.geometry.transformations.TransformationFactory;
 import org.matsim.testcases.MatsimTestUtils;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.DeflaterOutputStream;
 
 /**
  * @author mrieser
@@ -305,4 +314,171 @@ public class OsmNetworkReaderTest {
 		Assert.assertNotNull("Could not find converted link 3", link3);
 		Assert.assertNull(net.getLinks().get(Id.create("5", Link.class)));
 	}
+
+	/**
+	 * Tests that reading a PBF file results in the same network as reading the same data as xml.
+	 */
+	@Test
+	public void testConversion_pbf() throws IOException {
+		double[][] coords = { { 47.1234567, 8.1234567 }, { 47.2, 8.3 }, { 47.25, 8.2 }, { 47.3000001, 8.25 }, { 47.4, 8.4 } };
+		StringBuilder xml = new StringBuilder("<?xml version='1.0' encoding='UTF-8'?>\n<osm version=\"0.6\">\n");
+		for (int i = 0; i < coords.length; i++) {
+			xml.append("  <node id=\"" + (i + 1) + "\" lat=\"" + coords[i][0] + "\" lon=\"" + coords[i][1] + "\"/>\n");
+		}
+		long[][] wayNodes = { { 1, 2, 3 }, { 3, 4 }, { 4, 5, 1 }, { 2, 5 } };
+		String[][] wayTags = { { "highway", "motorway" }, { "highway", "primary", "maxspeed", "40", "name", "x" },
+				{ "highway", "residential", "oneway", "yes" }, { "highway", "footway" } };
+		for (int w = 0; w < wayNodes.length; w++) {
+			xml.append("  <way id=\"" + (w + 1) + "\">\n");
+			for (long nodeId : wayNodes[w]) {
+				xml.append("    <nd ref=\"" + nodeId + "\"/>\n");
+			}
+			for (int t = 0; t < wayTags[w].length; t += 2) {
+				xml.append("    <tag k=\"" + wayTags[w][t] + "\" v=\"" + wayTags[w][t + 1] + "\"/>\n");
+			}
+			xml.append("  </way>\n");
+		}
+		xml.append("</osm>");
+
+		// nodes 1 to 4 as dense nodes, node 5 as plain node, and the ways in a separate block
+		ByteArrayOutputStream pbf = new ByteArrayOutputStream();
+		Pbf header = new Pbf().string(4, "OsmSchema-V0.6").string(4, "DenseNodes");
+		writeBlob(pbf, "OSMHeader", header.toByteArray());
+		Pbf dense = new Pbf();
+		long[] ids = new long[4];
+		long[] lats = new long[4];
+		long[] lons = new long[4];
+		for (int i = 0; i < 4; i++) {
+			ids[i] = 1; // delta coded ids 1 to 4
+			lats[i] = Math.round(coords[i][0] * 1e7) - (i == 0 ? 0 : Math.round(coords[i - 1][0] * 1e7));
+			lons[i] = Math.round(coords[i][1] * 1e7) - (i == 0 ? 0 : Math.round(coords[i - 1][1] * 1e7));
+		}
+		dense.packedSigned(1, ids).packedSigned(8, lats).packedSigned(9, lons);
+		Pbf node = new Pbf().signed(1, 5).signed(8, Math.round(coords[4][0] * 1e7)).signed(9, Math.round(coords[4][1] * 1e7));
+		Pbf nodeGroup = new Pbf().message(2, dense).message(1, node);
+		writeBlob(pbf, "OSMData", new Pbf().message(1, new Pbf().string(1, "")).message(2, nodeGroup).toByteArray());
+
+		List<String> strings = new ArrayList<>(Collections.singletonList(""));
+		Pbf wayGroup = new Pbf();
+		for (int w = 0; w < wayNodes.length; w++) {
+			long[] keys = new long[wayTags[w].length / 2];
+			long[] values = new long[keys.length];
+			for (int t = 0; t < keys.length; t++) {
+				for (int k = 0; k < 2; k++) {
+					String string = wayTags[w][2 * t + k];
+					if (!strings.contains(string)) {
+						strings.add(string);
+					}
+					(k == 0 ? keys : values)[t] = strings.indexOf(string);
+				}
+			}
+			long[] refs = new long[wayNodes[w].length];
+			for (int i = 0; i < refs.length; i++) {
+				refs[i] = wayNodes[w][i] - (i == 0 ? 0 : wayNodes[w][i - 1]);
+			}
+			wayGroup.message(3, new Pbf().varint(1, w + 1).packed(2, keys).packed(3, values).packedSigned(8, refs));
+		}
+		Pbf stringTable = new Pbf();
+		for (String string : strings) {
+			stringTable.string(1, string);
+		}
+		writeBlob(pbf, "OSMData", new Pbf().message(1, stringTable).message(2, wayGroup).toByteArray());
+
+		CoordinateTransformation ct = TransformationFactory.getCoordinateTransformation(TransformationFactory.WGS84, TransformationFactory.CH1903_LV03);
+		Network xmlNetwork = ScenarioUtils.createScenario(ConfigUtils.createConfig()).getNetwork();
+		new OsmNetworkReader(xmlNetwork, ct).parse(() -> new ByteArrayInputStream(xml.toString().getBytes()));
+		for (int threads : new int[] { 1, 3 }) {
+			Network pbfNetwork = ScenarioUtils.createScenario(ConfigUtils.createConfig()).getNetwork();
+			OsmNetworkReader reader = new OsmNetworkReader(pbfNetwork, ct);
+			reader.setPbfDecodingThreads(threads);
+			reader.parsePbf(() -> new ByteArrayInputStream(pbf.toByteArray()));
+
+			// nodes 2 and 5 are only used inside of ways, they only show up in the link lengths
+			Assert.assertEquals(3, xmlNetwork.getNodes().size());
+			Assert.assertEquals(xmlNetwork.getNodes().size(), pbfNetwork.getNodes().size());
+			for (Node xmlNode : xmlNetwork.getNodes().values()) {
+				Assert.assertEquals(xmlNode.getCoord(), pbfNetwork.getNodes().get(xmlNode.getId()).getCoord());
+			}
+			Assert.assertEquals(xmlNetwork.getLinks().size(), pbfNetwork.getLinks().size());
+			for (Link xmlLink : xmlNetwork.getLinks().values()) {
+				Link pbfLink = pbfNetwork.getLinks().get(xmlLink.getId());
+				Assert.assertEquals(xmlLink.getFromNode().getId(), pbfLink.getFromNode().getId());
+				Assert.assertEquals(xmlLink.getToNode().getId(), pbfLink.getToNode().getId());
+				Assert.assertEquals(xmlLink.getLength(), pbfLink.getLength(), 0.0);
+				Assert.assertEquals(xmlLink.getFreespeed(), pbfLink.getFreespeed(), 0.0);
+				Assert.assertEquals(xmlLink.getCapacity(), pbfLink.getCapacity(), 0.0);
+				Assert.assertEquals(xmlLink.getNumberOfLanes(), pbfLink.getNumberOfLanes(), 0.0);
+			}
+		}
+	}
+
+	private static void writeBlob(final ByteArrayOutputStream out, final String type, final byte[] data) throws IOException {
+		ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+		try (DeflaterOutputStream deflater = new DeflaterOutputStream(compressed)) {
+			deflater.write(data);
+		}
+		byte[] blob = new Pbf().varint(2, data.length).bytes(3, compressed.toByteArray()).toByteArray();
+		byte[] header = new Pbf().string(1, type).varint(3, blob.length).toByteArray();
+		new DataOutputStream(out).writeInt(header.length);
+		out.write(header);
+		out.write(blob);
+	}
+
+	/** writes the protobuf wire format */
+	private static class Pbf {
+		private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+		private void rawVarint(long value) {
+			while ((value & ~0x7fL) != 0) {
+				this.out.write((int) ((value & 0x7f) | 0x80));
+				value >>>= 7;
+			}
+			this.out.write((int) value);
+		}
+
+		Pbf varint(final int field, final long value) {
+			rawVarint(field << 3);
+			rawVarint(value);
+			return this;
+		}
+
+		Pbf signed(final int field, final long value) {
+			return varint(field, (value << 1) ^ (value >> 63));
+		}
+
+		Pbf bytes(final int field, final byte[] bytes) {
+			rawVarint((field << 3) | 2);
+			rawVarint(bytes.length);
+			this.out.write(bytes, 0, bytes.length);
+			return this;
+		}
+
+		Pbf string(final int field, final String string) {
+			return bytes(field, string.getBytes(StandardCharsets.UTF_8));
+		}
+
+		Pbf message(final int field, final Pbf message) {
+			return bytes(field, message.toByteArray());
+		}
+
+		Pbf packed(final int field, final long[] values) {
+			Pbf packed = new Pbf();
+			for (long value : values) {
+				packed.rawVarint(value);
+			}
+			return bytes(field, packed.toByteArray());
+		}
+
+		Pbf packedSigned(final int field, final long[] values) {
+			long[] encoded = new long[values.length];
+			for (int i = 0; i < values.length; i++) {
+				encoded[i] = (values[i] << 1) ^ (values[i] >> 63);
+			}
+			return packed(field, encoded);
+		}
+
+		byte[] toByteArray() {
+			return this.out.toByteArray();
+		}
+	}
 }
@@ -0,0 +1,250 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.pt.router;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.core.config.groups.PlanCalcScoreConfigGroup;
+import org.matsim.core.config.groups.PlansCalcRouteConfigGroup;
+import org.matsim.core.config.groups.VspExperimentalConfigGroup;
+import org.matsim.core.utils.geometry.CoordUtils;
+import org.matsim.pt.config.TransitRouterConfigGroup;
+import org.matsim.pt.routes.ExperimentalTransitRoute;
+import org.matsim.pt.transitSchedule.TransitScheduleFactoryImpl;
+import org.matsim.pt.transitSchedule.api.Departure;
+import org.matsim.pt.transitSchedule.api.TransitLine;
+import org.matsim.pt.transitSchedule.api.TransitRoute;
+import org.matsim.pt.transitSchedule.api.TransitRouteStop;
+import org.matsim.pt.transitSchedule.api.TransitSchedule;
+import org.matsim.pt.transitSchedule.api.TransitScheduleFactory;
+import org.matsim.pt.transitSchedule.api.TransitStopFacility;
+import org.matsim.testcases.MatsimTestCase;
+
+public class RaptorTransitRouterTest {
+
+	@Test
+	public void testSingleLine() {
+		Fixture f = new Fixture();
+		RaptorTransitRouter router = f.createRouter();
+		Coord toCoord = new Coord(4000, -100);
+		List<Leg> legs = router.calcRoute(new FakeFacility(new Coord(0, 100)), new FakeFacility(toCoord), 6.0 * 3600, null);
+		assertEquals(3, legs.size());
+		assertEquals(TransportMode.transit_walk, legs.get(0).getMode());
+		assertEquals(TransportMode.pt, legs.get(1).getMode());
+		assertEquals(TransportMode.transit_walk, legs.get(2).getMode());
+		ExperimentalTransitRoute ptRoute = (ExperimentalTransitRoute) legs.get(1).getRoute();
+		assertEquals(Id.create("A", TransitStopFacility.class), ptRoute.getAccessStopId());
+		assertEquals(Id.create("C", TransitStopFacility.class), ptRoute.getEgressStopId());
+		assertEquals(Id.create("red", TransitLine.class), ptRoute.getLineId());
+		// the agent takes the 06:10 departure, arriving in C at 06:20
+		double expectedTravelTime = 20.0 * 60 + CoordUtils.calcEuclideanDistance(f.stopC.getCoord(), toCoord) / f.config.getBeelineWalkSpeed();
+		assertEquals(expectedTravelTime, sumTravelTimes(legs), MatsimTestCase.EPSILON);
+	}
+
+	@Test
+	public void testLineChange() {
+		Fixture f = new Fixture();
+		RaptorTransitRouter router = f.createRouter();
+		Coord toCoord = new Coord(4000, 2100);
+		List<Leg> legs = router.calcRoute(new FakeFacility(new Coord(0, 100)), new FakeFacility(toCoord), 6.0 * 3600, null);
+		assertEquals(4, legs.size());
+		assertEquals(Id.create("red", TransitLine.class), ((ExperimentalTransitRoute) legs.get(1).getRoute()).getLineId());
+		assertEquals(Id.create("blue", TransitLine.class), ((ExperimentalTransitRoute) legs.get(2).getRoute()).getLineId());
+		// red arrives in C at 06:20, blue departs at 06:20 and arrives in D at 06:25
+		double expectedTravelTime = 25.0 * 60 + CoordUtils.calcEuclideanDistance(f.stopD.getCoord(), toCoord) / f.config.getBeelineWalkSpeed();
+		assertEquals(expectedTravelTime, sumTravelTimes(legs), MatsimTestCase.EPSILON);
+	}
+
+	@Test
+	public void testMinimalTransferTime() {
+		Fixture f = new Fixture();
+		f.schedule.getMinimalTransferTimes().set(f.stopC.getId(), f.stopC.getId(), 120.0);
+		RaptorTransitRouter router = f.createRouter();
+		Coord toCoord = new Coord(4000, 2100);
+		List<Leg> legs = router.calcRoute(new FakeFacility(new Coord(0, 100)), new FakeFacility(toCoord), 6.0 * 3600, null);
+		assertEquals(4, legs.size());
+		// the blue departure at 06:20 cannot be reached anymore, the agent is ready at 06:22 and takes the one at 06:25
+		assertEquals(Id.create("blue", TransitLine.class), ((ExperimentalTransitRoute) legs.get(2).getRoute()).getLineId());
+		assertEquals(8.0 * 60, legs.get(2).getTravelTime(), MatsimTestCase.EPSILON);
+	}
+
+	@Test
+	public void testWalkTransfer() {
+		Fixture f = new Fixture();
+		RaptorTransitRouter router = f.createRouter();
+		Coord toCoord = new Coord(4050, 4100);
+		List<Leg> legs = router.calcRoute(new FakeFacility(new Coord(0, 100)), new FakeFacility(toCoord), 6.0 * 3600, null);
+		assertEquals(5, legs.size());
+		assertEquals(TransportMode.transit_walk, legs.get(0).getMode());
+		assertEquals(TransportMode.pt, legs.get(1).getMode());
+		assertEquals(TransportMode.transit_walk, legs.get(2).getMode());
+		assertEquals(TransportMode.pt, legs.get(3).getMode());
+		assertEquals(TransportMode.transit_walk, legs.get(4).getMode());
+		ExperimentalTransitRoute ptRoute = (ExperimentalTransitRoute) legs.get(3).getRoute();
+		assertEquals(Id.create("E", TransitStopFacility.class), ptRoute.getAccessStopId());
+		assertEquals(Id.create("green", TransitLine.class), ptRoute.getLineId());
+		// red arrives in C at 06:20, green departs in E at 06:30 and arrives in F at 06:40
+		double expectedTravelTime = 40.0 * 60 + CoordUtils.calcEuclideanDistance(f.stopF.getCoord(), toCoord) / f.config.getBeelineWalkSpeed();
+		assertEquals(expectedTravelTime, sumTravelTimes(legs), MatsimTestCase.EPSILON);
+	}
+
+	@Test
+	public void testDirectWalkCheaper() {
+		Fixture f = new Fixture();
+		RaptorTransitRouter router = f.createRouter();
+		Coord fromCoord = new Coord(0, 100);
+		Coord toCoord = new Coord(100, 200);
+		List<Leg> legs = router.calcRoute(new FakeFacility(fromCoord), new FakeFacility(toCoord), 6.0 * 3600, null);
+		assertEquals(1, legs.size());
+		assertEquals(TransportMode.transit_walk, legs.get(0).getMode());
+		assertEquals(CoordUtils.calcEuclideanDistance(fromCoord, toCoord) / f.config.getBeelineWalkSpeed(), legs.get(0).getTravelTime(), MatsimTestCase.EPSILON);
+	}
+
+	@Test
+	public void testAfterMidnight() {
+		Fixture f = new Fixture();
+		RaptorTransitRouter router = f.createRouter();
+		Coord toCoord = new Coord(4000, -100);
+		double departureTime = 31.5 * 3600;
+		List<Leg> legs = router.calcRoute(new FakeFacility(new Coord(0, 100)), new FakeFacility(toCoord), departureTime, null);
+		assertEquals(3, legs.size());
+		// the 07:40 departure of the next day leaves at 31:40 and arrives in C at 31:50
+		double expectedTravelTime = 20.0 * 60 + CoordUtils.calcEuclideanDistance(f.stopC.getCoord(), toCoord) / f.config.getBeelineWalkSpeed();
+		assertEquals(expectedTravelTime, sumTravelTimes(legs), MatsimTestCase.EPSILON);
+	}
+
+	@Test
+	public void testRangeQuery() {
+		Fixture f = new Fixture();
+		RaptorTransitRouter router = f.createRouter();
+		Coord fromCoord = new Coord(0, 100);
+		Coord toCoord = new Coord(4000, 2100);
+		double accessTime = CoordUtils.calcEuclideanDistance(fromCoord, f.stopA.getCoord()) / f.config.getBeelineWalkSpeed();
+		double egressTime = CoordUtils.calcEuclideanDistance(f.stopD.getCoord(), toCoord) / f.config.getBeelineWalkSpeed();
+		List<RaptorTransitRouter.Journey> journeys = router.calcRangeRoutes(new FakeFacility(fromCoord), new FakeFacility(toCoord),
+				6.0 * 3600, 7.0 * 3600, null);
+		// one journey for each red departure from 06:10 to 07:00
+		assertEquals(6, journeys.size());
+		for (int i = 0; i < journeys.size(); i++) {
+			RaptorTransitRouter.Journey journey = journeys.get(i);
+			double tripStart = 6.0 * 3600 + (i + 1) * 600;
+			assertEquals(tripStart - accessTime, journey.getDepartureTime(), MatsimTestCase.EPSILON);
+			assertEquals(tripStart + 900.0 + egressTime, journey.getArrivalTime(), MatsimTestCase.EPSILON);
+			assertEquals(1, journey.getNumberOfTransfers());
+			assertEquals(4, journey.getLegs().size());
+		}
+	}
+
+	@Test
+	public void testRangeQuery_fewerTransfers() {
+		Fixture f = new Fixture();
+		// a slow direct connection from A to D, which arrives later than the connection with a line change
+		List<TransitRouteStop> stops = new ArrayList<>();
+		stops.add(f.factory.createTransitRouteStop(f.stopA, 0, 0));
+		stops.add(f.factory.createTransitRouteStop(f.stopD, 1800, 1800));
+		f.addLine("yellow", stops, 6.0 * 3600 + 600, 1, 3600);
+		RaptorTransitRouter router = f.createRouter();
+		Coord toCoord = new Coord(4000, 2100);
+		double egressTime = CoordUtils.calcEuclideanDistance(f.stopD.getCoord(), toCoord) / f.config.getBeelineWalkSpeed();
+		List<RaptorTransitRouter.Journey> journeys = router.calcRangeRoutes(new FakeFacility(new Coord(0, 100)), new FakeFacility(toCoord),
+				6.0 * 3600 + 300, 6.0 * 3600 + 600, null);
+		// both journeys catch the 06:10 departures in A
+		assertEquals(2, journeys.size());
+		assertEquals(journeys.get(0).getDepartureTime(), journeys.get(1).getDepartureTime(), MatsimTestCase.EPSILON);
+		assertEquals(0, journeys.get(0).getNumberOfTransfers());
+		assertEquals(6.0 * 3600 + 2400 + egressTime, journeys.get(0).getArrivalTime(), MatsimTestCase.EPSILON);
+		assertEquals(3, journeys.get(0).getLegs().size());
+		assertEquals(1, journeys.get(1).getNumberOfTransfers());
+		assertEquals(6.0 * 3600 + 1500 + egressTime, journeys.get(1).getArrivalTime(), MatsimTestCase.EPSILON);
+		assertEquals(4, journeys.get(1).getLegs().size());
+	}
+
+	private static double sumTravelTimes(final List<Leg> legs) {
+		double travelTime = 0.0;
+		for (Leg leg : legs) {
+			travelTime += leg.getTravelTime();
+		}
+		return travelTime;
+	}
+
+	/**
+	 * Red runs from A over B to C every 10 minutes, blue from C to D every 5 minutes and green from E, which is
+	 * 50 meters away from C, to F every 15 minutes.
+	 */
+	private static class Fixture {
+		final TransitScheduleFactory factory = new TransitScheduleFactoryImpl();
+		final TransitSchedule schedule = this.factory.createTransitSchedule();
+		final TransitStopFacility stopA = createStop("A", 0, 0);
+		final TransitStopFacility stopB = createStop("B", 2000, 0);
+		final TransitStopFacility stopC = createStop("C", 4000, 0);
+		final TransitStopFacility stopD = createStop("D", 4000, 2000);
+		final TransitStopFacility stopE = createStop("E", 4050, 0);
+		final TransitStopFacility stopF = createStop("F", 4050, 4000);
+		final TransitRouterConfig config;
+
+		Fixture() {
+			List<TransitRouteStop> red = new ArrayList<>();
+			red.add(this.factory.createTransitRouteStop(this.stopA, 0, 0));
+			red.add(this.factory.createTransitRouteStop(this.stopB, 300, 300));
+			red.add(this.factory.createTransitRouteStop(this.stopC, 600, 600));
+			addLine("red", red, 6.0 * 3600, 13, 600);
+			List<TransitRouteStop> blue = new ArrayList<>();
+			blue.add(this.factory.createTransitRouteStop(this.stopC, 0, 0));
+			blue.add(this.factory.createTransitRouteStop(this.stopD, 300, 300));
+			addLine("blue", blue, 6.0 * 3600, 25, 300);
+			List<TransitRouteStop> green = new ArrayList<>();
+			green.add(this.factory.createTransitRouteStop(this.stopE, 0, 0));
+			green.add(this.factory.createTransitRouteStop(this.stopF, 600, 600));
+			addLine("green", green, 6.0 * 3600, 9, 900);
+
+			this.config = new TransitRouterConfig(new PlanCalcScoreConfigGroup(), new PlansCalcRouteConfigGroup(),
+					new TransitRouterConfigGroup(), new VspExperimentalConfigGroup());
+		}
+
+		private TransitStopFacility createStop(final String id, final double x, final double y) {
+			TransitStopFacility stop = this.factory.createTransitStopFacility(Id.create(id, TransitStopFacility.class), new Coord(x, y), false);
+			this.schedule.addStopFacility(stop);
+			return stop;
+		}
+
+		void addLine(final String id, final List<TransitRouteStop> stops, final double firstDeparture, final int departures, final double headway) {
+			TransitLine line = this.factory.createTransitLine(Id.create(id, TransitLine.class));
+			TransitRoute route = this.factory.createTransitRoute(Id.create(id, TransitRoute.class), null, stops, "bus");
+			for (int i = 0; i < departures; i++) {
+				route.addDeparture(this.factory.createDeparture(Id.create(id + i, Departure.class), firstDeparture + i * headway));
+			}
+			line.addRoute(route);
+			this.schedule.addTransitLine(line);
+		}
+
+		RaptorTransitRouter createRouter() {
+			return new RaptorTransitRouterFactory(this.schedule, this.config).get();
+		}
+	}
+
+}
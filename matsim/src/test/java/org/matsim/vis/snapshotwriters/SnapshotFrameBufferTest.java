@@ -0,0 +1,123 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.vis.snapshotwriters;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.vis.snapshotwriters.AgentSnapshotInfo.AgentState;
+
+public class SnapshotFrameBufferTest {
+
+	private final AgentSnapshotInfoFactory factory = new AgentSnapshotInfoFactory(new SnapshotLinkWidthCalculator());
+
+	private void write(final SnapshotFrameBuffer buffer, final double time, final int agents) {
+		buffer.write(time, frame -> {
+			for (int i = 0; i < agents; i++) {
+				AgentSnapshotInfo info = this.factory.createAgentSnapshotInfo(Id.create(i, Person.class), time, i, 0.0, 0.0);
+				info.setAgentState(AgentState.PERSON_DRIVING_CAR);
+				frame.add(info, i % 3);
+			}
+		});
+	}
+
+	@Test
+	public void testReadFrames() {
+		SnapshotFrameBuffer buffer = new SnapshotFrameBuffer(4);
+		Assert.assertFalse(buffer.hasReaders());
+		write(buffer, 0.0, 5); // not seen by the reader attached later
+
+		SnapshotFrameBuffer.Reader reader = buffer.attachReader();
+		Assert.assertTrue(buffer.hasReaders());
+		SnapshotFrame frame = new SnapshotFrame(1);
+		Assert.assertFalse(reader.read(frame));
+
+		write(buffer, 1.0, 3);
+		write(buffer, 2.0, 2000);
+		Assert.assertTrue(reader.read(frame));
+		Assert.assertEquals(1.0, frame.getTime(), 0.0);
+		Assert.assertEquals(3, frame.size());
+		Assert.assertEquals(Id.create(2, Person.class), frame.getAgentId(2));
+		Assert.assertEquals(2, frame.getLinkIndex(2));
+		Assert.assertEquals(1.0, frame.getEasting(2), 0.0);
+		Assert.assertEquals(2.0, frame.getNorthing(2), 0.0);
+		Assert.assertEquals(AgentState.PERSON_DRIVING_CAR, frame.getAgentState(2));
+
+		Assert.assertTrue(reader.read(frame));
+		Assert.assertEquals(2.0, frame.getTime(), 0.0);
+		Assert.assertEquals(2000, frame.size());
+		Assert.assertEquals(1999.0, frame.getNorthing(1999), 0.0);
+		Assert.assertFalse(reader.read(frame));
+		Assert.assertEquals(0, reader.getDroppedFrames());
+
+		reader.close();
+		Assert.assertFalse(buffer.hasReaders());
+	}
+
+	@Test
+	public void testSlowReaderDropsFrames() {
+		SnapshotFrameBuffer buffer = new SnapshotFrameBuffer(4);
+		SnapshotFrameBuffer.Reader reader = buffer.attachReader();
+		for (int t = 0; t < 10; t++) {
+			write(buffer, t, 1);
+		}
+		SnapshotFrame frame = new SnapshotFrame();
+		for (int t = 6; t < 10; t++) {
+			Assert.assertTrue(reader.read(frame));
+			Assert.assertEquals(t, frame.getTime(), 0.0);
+		}
+		Assert.assertFalse(reader.read(frame));
+		Assert.assertEquals(6, reader.getDroppedFrames());
+	}
+
+	@Test
+	public void testConcurrentReader() throws InterruptedException {
+		final SnapshotFrameBuffer buffer = new SnapshotFrameBuffer(2);
+		final SnapshotFrameBuffer.Reader reader = buffer.attachReader();
+		final int numberOfFrames = 2000;
+		final long[] framesRead = new long[1];
+		final boolean[] consistent = { true };
+		Thread consumer = new Thread(() -> {
+			SnapshotFrame frame = new SnapshotFrame(1);
+			double lastTime = -1;
+			while (lastTime < numberOfFrames - 1) {
+				if (reader.read(frame)) {
+					framesRead[0]++;
+					// every agent of a frame carries the time of the frame as its easting
+					for (int i = 0; i < frame.size(); i++) {
+						consistent[0] &= frame.getEasting(i) == frame.getTime();
+					}
+					consistent[0] &= frame.size() == (int) frame.getTime() % 100 && frame.getTime() > lastTime;
+					lastTime = frame.getTime();
+				}
+			}
+		});
+		consumer.start();
+		for (int t = 0; t < numberOfFrames; t++) {
+			write(buffer, t, t % 100);
+		}
+		consumer.join(60000);
+		Assert.assertFalse(consumer.isAlive());
+		Assert.assertTrue(consistent[0]);
+		Assert.assertEquals(numberOfFrames, framesRead[0] + reader.getDroppedFrames());
+	}
+
+}
@@ -0,0 +1,169 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2019 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.vis.snapshotwriters;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.api.core.v01.population.Population;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.controler.PrepareForSimUtils;
+import org.matsim.core.events.EventsUtils;
+import org.matsim.core.mobsim.framework.events.MobsimAfterSimStepEvent;
+import org.matsim.core.mobsim.framework.events.MobsimInitializedEvent;
+import org.matsim.core.mobsim.framework.listeners.MobsimAfterSimStepListener;
+import org.matsim.core.mobsim.framework.listeners.MobsimInitializedListener;
+import org.matsim.core.mobsim.qsim.QSim;
+import org.matsim.core.mobsim.qsim.QSimBuilder;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.population.PopulationUtils;
+import org.matsim.core.population.routes.NetworkRoute;
+import org.matsim.core.population.routes.RouteUtils;
+import org.matsim.core.scenario.ScenarioUtils;
+
+/**
+ * Runs a QSim with a {@link SnapshotFrameProducer} and a reader attached, and checks that the frames written by the
+ * primitive path of the links hold the same positions as the {@link AgentSnapshotInfo}s of the links.
+ */
+public class SnapshotFrameProducerTest {
+
+	@Test
+	public void testFramesOfRunningQSim() {
+		Config config = ConfigUtils.createConfig();
+		config.qsim().setSnapshotPeriod(0.0);
+		Scenario scenario = ScenarioUtils.createScenario(config);
+		createNetwork(scenario.getNetwork());
+		createPopulation(scenario.getPopulation(), 20);
+		PrepareForSimUtils.createDefaultPrepareForSim(scenario).run();
+
+		SnapshotFrameBuffer buffer = new SnapshotFrameBuffer(4);
+		SnapshotFrameBuffer.Reader reader = buffer.attachReader();
+		FrameChecker checker = new FrameChecker(new SnapshotFrameProducer(buffer, 0.0), reader);
+
+		QSim qsim = new QSimBuilder(config).useDefaults().build(scenario, EventsUtils.createEventsManager());
+		qsim.addQueueSimulationListeners(checker);
+		qsim.run();
+		reader.close();
+
+		Assert.assertTrue(checker.frames > 0);
+		Assert.assertTrue("no vehicle was ever seen on a link", checker.maxDrivers > 1);
+		Assert.assertEquals(0, reader.getDroppedFrames());
+	}
+
+	/**
+	 * Calls the producer and then reads the frame it has written, so that the frame can be compared to what the links
+	 * report at the same time step.
+	 */
+	private static final class FrameChecker implements MobsimInitializedListener, MobsimAfterSimStepListener {
+
+		private final SnapshotFrameProducer producer;
+		private final SnapshotFrameBuffer.Reader reader;
+		private final SnapshotFrame frame = new SnapshotFrame(1);
+		private final SnapshotFrame scratch = new SnapshotFrame(1);
+		private VisMobsim mobsim = null;
+		private int frames = 0;
+		private int maxDrivers = 0;
+
+		FrameChecker(final SnapshotFrameProducer producer, final SnapshotFrameBuffer.Reader reader) {
+			this.producer = producer;
+			this.reader = reader;
+		}
+
+		@Override
+		public void notifyMobsimInitialized(final MobsimInitializedEvent e) {
+			this.producer.notifyMobsimInitialized(e);
+			this.mobsim = (VisMobsim) e.getQueueSimulation();
+		}
+
+		@Override
+		public void notifyMobsimAfterSimStep(final MobsimAfterSimStepEvent e) {
+			this.producer.notifyMobsimAfterSimStep(e);
+			Assert.assertTrue(this.reader.read(this.frame));
+			Assert.assertFalse(this.reader.read(this.scratch));
+			Assert.assertEquals(e.getSimulationTime(), this.frame.getTime(), 0.0);
+			this.frames++;
+
+			int i = 0;
+			int drivers = 0;
+			for (VisLink link : this.mobsim.getVisNetwork().getVisLinks().values()) {
+				List<AgentSnapshotInfo> infos = new ArrayList<>();
+				link.getVisData().addAgentSnapshotInfo(infos);
+				for (AgentSnapshotInfo info : infos) {
+					Assert.assertTrue(i < this.frame.size());
+					Assert.assertEquals(info.getId(), this.frame.getAgentId(i));
+					Assert.assertEquals(link.getLink().getId(), this.frame.getLinkId(i));
+					Assert.assertEquals(info.getEasting(), this.frame.getEasting(i), 1e-9);
+					Assert.assertEquals(info.getNorthing(), this.frame.getNorthing(i), 1e-9);
+					Assert.assertEquals(info.getAgentState(), this.frame.getAgentState(i));
+					Assert.assertEquals(info.getColorValueBetweenZeroAndOne(), this.frame.getColorValueBetweenZeroAndOne(i), 1e-6);
+					if (info.getAgentState() == AgentSnapshotInfo.AgentState.PERSON_DRIVING_CAR) {
+						drivers++;
+					}
+					i++;
+				}
+			}
+			Assert.assertEquals(i, this.frame.size());
+			this.maxDrivers = Math.max(this.maxDrivers, drivers);
+		}
+	}
+
+	private static void createNetwork(final Network network) {
+		Node node1 = NetworkUtils.createAndAddNode(network, Id.create("1", Node.class), new Coord(0, 0));
+		Node node2 = NetworkUtils.createAndAddNode(network, Id.create("2", Node.class), new Coord(1000, 0));
+		Node node3 = NetworkUtils.createAndAddNode(network, Id.create("3", Node.class), new Coord(1000, 1000));
+		Node node4 = NetworkUtils.createAndAddNode(network, Id.create("4", Node.class), new Coord(2000, 1500));
+		NetworkUtils.createAndAddLink(network, Id.create("1", Link.class), node1, node2, 1000, 10, 600, 1);
+		NetworkUtils.createAndAddLink(network, Id.create("2", Link.class), node2, node3, 1200, 10, 600, 2);
+		NetworkUtils.createAndAddLink(network, Id.create("3", Link.class), node3, node4, 1500, 15, 600, 1);
+	}
+
+	private static void createPopulation(final Population population, final int count) {
+		for (int i = 0; i < count; i++) {
+			Person person = population.getFactory().createPerson(Id.create(i, Person.class));
+			Plan plan = population.getFactory().createPlan();
+			Activity home = PopulationUtils.createActivityFromLinkId("h", Id.create("1", Link.class));
+			home.setEndTime(6 * 3600 + 2 * i);
+			plan.addActivity(home);
+			Leg leg = population.getFactory().createLeg(TransportMode.car);
+			NetworkRoute route = RouteUtils.createLinkNetworkRouteImpl(Id.create("1", Link.class), Id.create("3", Link.class));
+			route.setLinkIds(Id.create("1", Link.class), NetworkUtils.getLinkIds("2"), Id.create("3", Link.class));
+			leg.setRoute(route);
+			plan.addLeg(leg);
+			plan.addActivity(PopulationUtils.createActivityFromLinkId("w", Id.create("3", Link.class)));
+			person.addPlan(plan);
+			population.addPerson(person);
+		}
+	}
+
+}